@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.connectors.fs;
+
+import org.apache.flink.streaming.connectors.fs.bucketing.BucketingSink;
+
+/**
+ * A {@link Writer} for bulk-encoded formats, i.e. formats that buffer many elements and encode
+ * them together, such as the row groups of Parquet or the stripes of ORC files.
+ *
+ * <p>A bulk-encoded file is only readable once its footer has been written, so it can neither be
+ * flushed to a consistent intermediate state nor truncated to a valid length at recovery. The
+ * {@link BucketingSink} therefore never calls {@link #flush()} on a {@code BulkWriter}. Instead,
+ * it closes the current part file on every checkpoint, which moves it to the {@code pending}
+ * state, and opens a new part file for the elements that arrive after the checkpoint. Part files
+ * are additionally rolled when {@link #getPos()} exceeds the batch size of the sink.
+ *
+ * @param <T> The type of the elements that are being written by the sink.
+ */
+public interface BulkWriter<T> extends Writer<T> {
+}
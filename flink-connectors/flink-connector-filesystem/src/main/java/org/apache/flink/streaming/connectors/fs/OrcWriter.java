@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.connectors.fs;
+
+import org.apache.flink.util.Preconditions;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.orc.CompressionKind;
+import org.apache.orc.OrcFile;
+import org.apache.orc.TypeDescription;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * A {@link BulkWriter} that writes the bucket files as Apache ORC files.
+ *
+ * <p>The elements are converted into the columns of a {@link VectorizedRowBatch} by a user-given
+ * {@link RowEncoder}. Every full row batch is handed to the ORC writer, which buffers the columns
+ * until a stripe of the configured size is complete and then compresses and writes it to the file.
+ * The default stripe size is {@code 64 MB} and the default compression is
+ * {@link CompressionKind#ZLIB}. Because the sink rolls bulk-encoded part files on every
+ * checkpoint, a part file holds at most the elements of one checkpoint interval.
+ *
+ * @param <T> The type of the elements that are being written by the sink.
+ */
+public class OrcWriter<T> implements BulkWriter<T> {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Converts an element into one row of a {@link VectorizedRowBatch}.
+	 *
+	 * @param <T> The type of the elements that are being written by the sink.
+	 */
+	public interface RowEncoder<T> extends Serializable {
+
+		/**
+		 * Writes the fields of the given element into the column vectors of the batch, at the
+		 * given row.
+		 */
+		void encode(T element, VectorizedRowBatch batch, int row) throws IOException;
+	}
+
+	/** The ORC schema as string, because {@link TypeDescription} is not serializable. */
+	private final String schemaString;
+
+	private final RowEncoder<T> encoder;
+
+	private long stripeSize = 64L * 1024L * 1024L;
+
+	private int rowBatchSize = VectorizedRowBatch.DEFAULT_SIZE;
+
+	private CompressionKind compression = CompressionKind.ZLIB;
+
+	private transient org.apache.orc.Writer writer;
+
+	private transient VectorizedRowBatch rowBatch;
+
+	/**
+	 * Creates a new {@code OrcWriter} that writes files of the given ORC schema, for example
+	 * {@code "struct<id:bigint,name:string>"}.
+	 *
+	 * @param schema The ORC schema of the written files.
+	 * @param encoder The encoder that converts the elements into rows of the schema.
+	 */
+	public OrcWriter(String schema, RowEncoder<T> encoder) {
+		// verify that the schema is valid
+		TypeDescription.fromString(Preconditions.checkNotNull(schema));
+		this.schemaString = schema;
+		this.encoder = Preconditions.checkNotNull(encoder);
+	}
+
+	/**
+	 * Sets the size of the stripes, in bytes. A stripe is buffered in memory until it is
+	 * complete, so this bounds the memory used by every open part file.
+	 */
+	public OrcWriter<T> setStripeSize(long stripeSize) {
+		Preconditions.checkArgument(stripeSize > 0, "The stripe size must be positive.");
+		this.stripeSize = stripeSize;
+		return this;
+	}
+
+	/**
+	 * Sets the number of rows that are encoded into one {@link VectorizedRowBatch} before it is
+	 * handed to the ORC writer.
+	 */
+	public OrcWriter<T> setRowBatchSize(int rowBatchSize) {
+		Preconditions.checkArgument(rowBatchSize > 0, "The row batch size must be positive.");
+		this.rowBatchSize = rowBatchSize;
+		return this;
+	}
+
+	/**
+	 * Sets the compression of the stripes.
+	 */
+	public OrcWriter<T> setCompression(CompressionKind compression) {
+		this.compression = Preconditions.checkNotNull(compression);
+		return this;
+	}
+
+	@Override
+	public void open(FileSystem fs, Path path) throws IOException {
+		if (writer != null) {
+			throw new IllegalStateException("Writer has already been opened");
+		}
+
+		TypeDescription schema = TypeDescription.fromString(schemaString);
+
+		writer = OrcFile.createWriter(path, OrcFile.writerOptions(fs.getConf())
+			.fileSystem(fs)
+			.setSchema(schema)
+			.stripeSize(stripeSize)
+			.compress(compression));
+		rowBatch = schema.createRowBatch(rowBatchSize);
+	}
+
+	/**
+	 * ORC files can not be flushed to a readable intermediate state. The sink never calls this
+	 * method on a {@link BulkWriter} but closes the part file instead.
+	 */
+	@Override
+	public long flush() throws IOException {
+		throw new UnsupportedOperationException("ORC files can not be flushed, they are rolled on checkpoints.");
+	}
+
+	/**
+	 * Returns the estimated size of the rows that were handed to the ORC writer so far. This
+	 * does not include the rows in the current row batch.
+	 */
+	@Override
+	public long getPos() throws IOException {
+		if (writer == null) {
+			throw new IllegalStateException("Writer is not open");
+		}
+		return writer.getRawDataSize();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (writer != null) {
+			try {
+				if (rowBatch.size > 0) {
+					writer.addRowBatch(rowBatch);
+				}
+				writer.close();
+			} finally {
+				writer = null;
+				rowBatch = null;
+			}
+		}
+	}
+
+	@Override
+	public void write(T element) throws IOException {
+		if (writer == null) {
+			throw new IllegalStateException("Writer is not open");
+		}
+
+		encoder.encode(element, rowBatch, rowBatch.size++);
+
+		if (rowBatch.size == rowBatch.getMaxSize()) {
+			writer.addRowBatch(rowBatch);
+			rowBatch.reset();
+		}
+	}
+
+	@Override
+	public OrcWriter<T> duplicate() {
+		OrcWriter<T> result = new OrcWriter<>(schemaString, encoder);
+		result.stripeSize = stripeSize;
+		result.rowBatchSize = rowBatchSize;
+		result.compression = compression;
+		return result;
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.connectors.fs;
+
+import org.apache.flink.util.Preconditions;
+
+import org.apache.avro.Schema;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+
+import java.io.IOException;
+
+/**
+ * A {@link BulkWriter} that writes the bucket files as Apache Parquet files. The elements are
+ * Avro records (generic, specific or reflect) of the schema given at construction time.
+ *
+ * <p>The elements are buffered column by column in memory until a row group of the configured
+ * size is complete, which is then compressed and written to the file. The default row group size
+ * is {@link ParquetWriter#DEFAULT_BLOCK_SIZE} and the default compression is
+ * {@link CompressionCodecName#SNAPPY}. Because the sink rolls bulk-encoded part files on every
+ * checkpoint, a part file holds at most the elements of one checkpoint interval.
+ *
+ * @param <T> The type of the Avro records written to the files.
+ */
+public class ParquetAvroWriter<T> implements BulkWriter<T> {
+	private static final long serialVersionUID = 1L;
+
+	/** The Avro schema as string, because {@link Schema} is not serializable. */
+	private final String schemaString;
+
+	private int rowGroupSize = ParquetWriter.DEFAULT_BLOCK_SIZE;
+
+	private int pageSize = ParquetWriter.DEFAULT_PAGE_SIZE;
+
+	private CompressionCodecName compressionCodec = CompressionCodecName.SNAPPY;
+
+	private transient ParquetWriter<T> writer;
+
+	/**
+	 * Creates a new {@code ParquetAvroWriter} that writes records of the given Avro schema.
+	 *
+	 * @param schema The Avro schema of the written records.
+	 */
+	public ParquetAvroWriter(Schema schema) {
+		this(Preconditions.checkNotNull(schema).toString());
+	}
+
+	private ParquetAvroWriter(String schemaString) {
+		this.schemaString = schemaString;
+	}
+
+	/**
+	 * Sets the size of the row groups, in bytes. A row group is buffered in memory until it is
+	 * complete, so this bounds the memory used by every open part file.
+	 */
+	public ParquetAvroWriter<T> setRowGroupSize(int rowGroupSize) {
+		Preconditions.checkArgument(rowGroupSize > 0, "The row group size must be positive.");
+		this.rowGroupSize = rowGroupSize;
+		return this;
+	}
+
+	/**
+	 * Sets the size of the pages within the column chunks of a row group, in bytes.
+	 */
+	public ParquetAvroWriter<T> setPageSize(int pageSize) {
+		Preconditions.checkArgument(pageSize > 0, "The page size must be positive.");
+		this.pageSize = pageSize;
+		return this;
+	}
+
+	/**
+	 * Sets the codec that is used to compress the pages of the column chunks.
+	 */
+	public ParquetAvroWriter<T> setCompressionCodec(CompressionCodecName compressionCodec) {
+		this.compressionCodec = Preconditions.checkNotNull(compressionCodec);
+		return this;
+	}
+
+	@Override
+	public void open(FileSystem fs, Path path) throws IOException {
+		if (writer != null) {
+			throw new IllegalStateException("Writer has already been opened");
+		}
+
+		writer = AvroParquetWriter.<T>builder(fs.makeQualified(path))
+			.withConf(fs.getConf())
+			.withSchema(new Schema.Parser().parse(schemaString))
+			.withRowGroupSize(rowGroupSize)
+			.withPageSize(pageSize)
+			.withCompressionCodec(compressionCodec)
+			.withWriteMode(ParquetFileWriter.Mode.CREATE)
+			.build();
+	}
+
+	/**
+	 * Parquet files can not be flushed to a readable intermediate state. The sink never calls this
+	 * method on a {@link BulkWriter} but closes the part file instead.
+	 */
+	@Override
+	public long flush() throws IOException {
+		throw new UnsupportedOperationException("Parquet files can not be flushed, they are rolled on checkpoints.");
+	}
+
+	/**
+	 * Returns the size of the written row groups plus the size of the currently buffered row group.
+	 */
+	@Override
+	public long getPos() throws IOException {
+		if (writer == null) {
+			throw new IllegalStateException("Writer is not open");
+		}
+		return writer.getDataSize();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (writer != null) {
+			try {
+				writer.close();
+			} finally {
+				writer = null;
+			}
+		}
+	}
+
+	@Override
+	public void write(T element) throws IOException {
+		if (writer == null) {
+			throw new IllegalStateException("Writer is not open");
+		}
+		writer.write(element);
+	}
+
+	@Override
+	public ParquetAvroWriter<T> duplicate() {
+		ParquetAvroWriter<T> result = new ParquetAvroWriter<>(schemaString);
+		result.rowGroupSize = rowGroupSize;
+		result.pageSize = pageSize;
+		result.compressionCodec = compressionCodec;
+		return result;
+	}
+}
@@ -812,6 +812,8 @@ public class RollingSink<T> extends RichSinkFunction<T>
 	 * @param writer The {@code Writer} to use.
 	 */
 	public RollingSink<T> setWriter(Writer<T> writer) {
+		Preconditions.checkArgument(!(writer instanceof BulkWriter),
+			"The RollingSink does not support bulk writers, use the BucketingSink instead.");
 		this.writerTemplate = writer;
 		return this;
 	}
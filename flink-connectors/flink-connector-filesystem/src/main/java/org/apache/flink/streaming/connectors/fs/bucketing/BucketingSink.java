@@ -32,7 +32,10 @@ import org.apache.flink.streaming.api.checkpoint.CheckpointedFunction;
 import org.apache.flink.streaming.api.checkpoint.CheckpointedRestoring;
 import org.apache.flink.streaming.api.functions.sink.RichSinkFunction;
 import org.apache.flink.streaming.api.operators.StreamingRuntimeContext;
+import org.apache.flink.streaming.connectors.fs.BulkWriter;
 import org.apache.flink.streaming.connectors.fs.Clock;
+import org.apache.flink.streaming.connectors.fs.OrcWriter;
+import org.apache.flink.streaming.connectors.fs.ParquetAvroWriter;
 import org.apache.flink.streaming.connectors.fs.RollingSink;
 import org.apache.flink.streaming.connectors.fs.SequenceFileWriter;
 import org.apache.flink.streaming.connectors.fs.StringWriter;
@@ -131,6 +134,12 @@ import java.util.Iterator;
  *         {@link #setWriter(Writer)}. For example, {@link SequenceFileWriter}
  *         can be used to write Hadoop {@code SequenceFiles}.
  *     </li>
+ *     <li>
+ *         Bulk-encoded formats, like the ones written by {@link ParquetAvroWriter} and {@link OrcWriter},
+ *         can not be truncated to a valid length. Part files written by a {@link BulkWriter} are therefore
+ *         closed and moved to the {@code pending} state on every checkpoint, in addition to the rolling
+ *         by batch size.
+ *     </li>
  * </ol>
  *
  * <p>
@@ -146,6 +155,7 @@ import java.util.Iterator;
  * @see DateTimeBucketer
  * @see StringWriter
  * @see SequenceFileWriter
+ * @see BulkWriter
  *
  * @param <T> Type of the elements emitted by this sink
  */
@@ -688,7 +698,13 @@ public class BucketingSink<T>
 				BucketState<T> bucketState = bucketStateEntry.getValue();
 
 				if (bucketState.isWriterOpen) {
-					bucketState.currentFileValidLength = bucketState.writer.flush();
+					if (bucketState.writer instanceof BulkWriter) {
+						// bulk-encoded files can not be truncated at recovery, so they are
+						// rolled and become part of the pending files of this checkpoint
+						closeCurrentPartFile(bucketState);
+					} else {
+						bucketState.currentFileValidLength = bucketState.writer.flush();
+					}
 				}
 
 				synchronized (bucketState.pendingFilesPerCheckpoint) {
@@ -944,6 +960,7 @@ public class BucketingSink<T>
 
 	/**
 	 * Sets the {@link Writer} to be used for writing the incoming elements to bucket files.
+	 * If the writer is a {@link BulkWriter}, the part files are rolled on every checkpoint.
 	 *
 	 * @param writer The {@code Writer} to use.
 	 */
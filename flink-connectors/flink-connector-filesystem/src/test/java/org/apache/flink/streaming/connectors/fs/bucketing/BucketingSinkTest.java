@@ -18,6 +18,7 @@
 package org.apache.flink.streaming.connectors.fs.bucketing;
 
 import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
 import org.apache.avro.file.DataFileConstants;
 import org.apache.avro.file.DataFileStream;
 import org.apache.avro.generic.GenericData;
@@ -31,6 +32,8 @@ import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.streaming.api.operators.StreamSink;
 import org.apache.flink.streaming.connectors.fs.AvroKeyValueSinkWriter;
 import org.apache.flink.streaming.connectors.fs.Clock;
+import org.apache.flink.streaming.connectors.fs.OrcWriter;
+import org.apache.flink.streaming.connectors.fs.ParquetAvroWriter;
 import org.apache.flink.streaming.connectors.fs.SequenceFileWriter;
 import org.apache.flink.streaming.connectors.fs.StringWriter;
 import org.apache.flink.streaming.connectors.fs.Writer;
@@ -46,9 +49,19 @@ import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.Text;
+import org.apache.orc.CompressionKind;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.RecordReader;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
@@ -60,6 +73,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -841,6 +855,169 @@ public class BucketingSinkTest {
 		inStream.close();
 	}
 
+	/**
+	 * This tests that the part files of a {@link ParquetAvroWriter} are rolled on every
+	 * checkpoint and that no valid-length files are needed at restore.
+	 */
+	@Test
+	public void testParquetAvroWriterRollsOnCheckpoint() throws Exception {
+		final File outDir = tempFolder.newFolder();
+
+		Schema schema = SchemaBuilder.record("Message").fields()
+			.requiredInt("id")
+			.requiredString("message")
+			.endRecord();
+
+		BucketingSink<GenericRecord> sink = new BucketingSink<GenericRecord>(outDir.getAbsolutePath())
+			.setWriter(new ParquetAvroWriter<GenericRecord>(schema)
+				.setRowGroupSize(1024 * 1024)
+				.setCompressionCodec(CompressionCodecName.UNCOMPRESSED))
+			.setBucketer(new BasePathBucketer<GenericRecord>())
+			.setPartPrefix(PART_PREFIX)
+			.setInProgressPrefix("")
+			.setPendingPrefix("")
+			.setValidLengthPrefix("")
+			.setInProgressSuffix(IN_PROGRESS_SUFFIX)
+			.setPendingSuffix(PENDING_SUFFIX)
+			.setValidLengthSuffix(VALID_LENGTH_SUFFIX);
+
+		OneInputStreamOperatorTestHarness<GenericRecord, Object> testHarness = createTestSink(sink, 1, 0);
+		testHarness.setProcessingTime(0L);
+		testHarness.setup();
+		testHarness.open();
+
+		testHarness.processElement(new StreamRecord<>(createMessage(schema, 0)));
+		testHarness.processElement(new StreamRecord<>(createMessage(schema, 1)));
+		checkFs(outDir, 1, 0, 0, 0);
+
+		testHarness.snapshot(0, 0);
+		checkFs(outDir, 0, 1, 0, 0);
+
+		testHarness.processElement(new StreamRecord<>(createMessage(schema, 2)));
+		checkFs(outDir, 1, 1, 0, 0);
+
+		testHarness.notifyOfCompletedCheckpoint(0);
+		checkFs(outDir, 1, 0, 1, 0);
+
+		OperatorStateHandles snapshot = testHarness.snapshot(1, 0);
+		checkFs(outDir, 0, 1, 1, 0);
+
+		// elements after the last checkpoint are discarded at restore
+		testHarness.processElement(new StreamRecord<>(createMessage(schema, 3)));
+		testHarness.close();
+
+		sink = new BucketingSink<GenericRecord>(outDir.getAbsolutePath())
+			.setWriter(new ParquetAvroWriter<GenericRecord>(schema))
+			.setBucketer(new BasePathBucketer<GenericRecord>())
+			.setPartPrefix(PART_PREFIX)
+			.setInProgressPrefix("")
+			.setPendingPrefix("")
+			.setValidLengthPrefix("")
+			.setInProgressSuffix(IN_PROGRESS_SUFFIX)
+			.setPendingSuffix(PENDING_SUFFIX)
+			.setValidLengthSuffix(VALID_LENGTH_SUFFIX);
+
+		testHarness = createTestSink(sink, 1, 0);
+		testHarness.setup();
+		testHarness.initializeState(snapshot);
+		testHarness.open();
+		checkFs(outDir, 0, 1, 2, 0);
+		testHarness.close();
+
+		int numRecords = 0;
+		for (int partIdx = 0; partIdx < 2; partIdx++) {
+			ParquetReader<GenericRecord> reader = AvroParquetReader.<GenericRecord>builder(
+				new Path(outDir.getAbsolutePath(), PART_PREFIX + "-0-" + partIdx)).build();
+
+			GenericRecord record;
+			while ((record = reader.read()) != null) {
+				Assert.assertEquals(numRecords, record.get("id"));
+				Assert.assertEquals("message #" + numRecords, record.get("message").toString());
+				numRecords++;
+			}
+			reader.close();
+		}
+		Assert.assertEquals(3, numRecords);
+	}
+
+	private static GenericRecord createMessage(Schema schema, int id) {
+		GenericRecord record = new GenericData.Record(schema);
+		record.put("id", id);
+		record.put("message", "message #" + id);
+		return record;
+	}
+
+	/**
+	 * This tests {@link OrcWriter} with non-rolling output and a checkpoint in between.
+	 */
+	@Test
+	public void testOrcWriter() throws Exception {
+		final String outPath = hdfsURI + "/orc-non-rolling-out";
+
+		final int numElements = 20;
+
+		BucketingSink<Tuple2<Integer, String>> sink = new BucketingSink<Tuple2<Integer, String>>(outPath)
+			.setWriter(new OrcWriter<>("struct<id:int,message:string>", new TupleRowEncoder())
+				.setRowBatchSize(8)
+				.setCompression(CompressionKind.SNAPPY))
+			.setBucketer(new BasePathBucketer<Tuple2<Integer, String>>())
+			.setPartPrefix(PART_PREFIX)
+			.setPendingPrefix("")
+			.setPendingSuffix("");
+
+		OneInputStreamOperatorTestHarness<Tuple2<Integer, String>, Object> testHarness =
+			createTestSink(sink, 1, 0);
+
+		testHarness.setProcessingTime(0L);
+
+		testHarness.setup();
+		testHarness.open();
+
+		for (int i = 0; i < numElements; i++) {
+			if (i == numElements / 2) {
+				testHarness.snapshot(0, 0);
+				testHarness.notifyOfCompletedCheckpoint(0);
+			}
+			testHarness.processElement(new StreamRecord<>(Tuple2.of(
+				i, "message #" + Integer.toString(i)
+			)));
+		}
+
+		testHarness.close();
+
+		int numRows = 0;
+		for (int partIdx = 0; partIdx < 2; partIdx++) {
+			Reader reader = OrcFile.createReader(
+				new Path(outPath + "/" + PART_PREFIX + "-0-" + partIdx),
+				OrcFile.readerOptions(dfs.getConf()).filesystem(dfs));
+			Assert.assertEquals(numElements / 2, reader.getNumberOfRows());
+
+			RecordReader rows = reader.rows();
+			VectorizedRowBatch batch = reader.getSchema().createRowBatch();
+			while (rows.nextBatch(batch)) {
+				LongColumnVector ids = (LongColumnVector) batch.cols[0];
+				BytesColumnVector messages = (BytesColumnVector) batch.cols[1];
+				for (int row = 0; row < batch.size; row++) {
+					Assert.assertEquals(numRows, ids.vector[row]);
+					Assert.assertEquals("message #" + numRows, messages.toString(row));
+					numRows++;
+				}
+			}
+			rows.close();
+		}
+		Assert.assertEquals(numElements, numRows);
+	}
+
+	private static class TupleRowEncoder implements OrcWriter.RowEncoder<Tuple2<Integer, String>> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void encode(Tuple2<Integer, String> element, VectorizedRowBatch batch, int row) {
+			((LongColumnVector) batch.cols[0]).vector[row] = element.f0;
+			((BytesColumnVector) batch.cols[1]).setVal(row, element.f1.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
 	private static class StreamWriterWithConfigCheck<K, V> extends AvroKeyValueSinkWriter<K, V> {
 		private Map<String, String> properties;
 		private String key;
@@ -22,14 +22,13 @@ import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.streaming.api.functions.AssignerWithPeriodicWatermarks;
 import org.apache.flink.streaming.api.functions.AssignerWithPunctuatedWatermarks;
 import org.apache.flink.streaming.api.functions.source.SourceFunction.SourceContext;
+import org.apache.flink.streaming.connectors.kafka.internals.KafkaRecordBatch;
 import org.apache.flink.streaming.connectors.kafka.internals.KafkaTopicPartition;
-import org.apache.flink.streaming.connectors.kafka.internals.KafkaTopicPartitionState;
 import org.apache.flink.streaming.runtime.tasks.ProcessingTimeService;
 import org.apache.flink.streaming.util.serialization.KeyedDeserializationSchema;
 import org.apache.flink.util.SerializedValue;
 
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.common.TopicPartition;
 
 import java.util.Map;
 import java.util.Properties;
@@ -76,14 +75,14 @@ public class Kafka010Fetcher<T> extends Kafka09Fetcher<T> {
 	}
 
 	@Override
-	protected void emitRecord(
+	protected void addToBatch(
+			KafkaRecordBatch<T> batch,
 			T record,
-			KafkaTopicPartitionState<TopicPartition> partition,
 			long offset,
-			ConsumerRecord<?, ?> consumerRecord) throws Exception {
+			ConsumerRecord<?, ?> consumerRecord) {
 
 		// we attach the Kafka 0.10 timestamp here
-		emitRecordWithTimestamp(record, partition, offset, consumerRecord.timestamp());
+		batch.add(record, offset, consumerRecord.timestamp());
 	}
 
 	/**
@@ -82,6 +82,9 @@ class SimpleConsumerThread<T> extends Thread {
 	private final ExceptionProxy errorHandler;
 	
 	private final long invalidOffsetBehavior;
+
+	/** The reusable buffer for the records that are emitted per partition and fetch */
+	private final KafkaRecordBatch<T> batch;
 	
 	private volatile boolean running = true;
 	
@@ -118,6 +121,7 @@ class SimpleConsumerThread<T> extends Thread {
 		this.unassignedPartitions = requireNonNull(unassignedPartitions);
 		this.newPartitionsQueue = new ClosableBlockingQueue<>();
 		this.invalidOffsetBehavior = invalidOffsetBehavior;
+		this.batch = new KafkaRecordBatch<>();
 		
 		// these are the actual configuration values of Kafka + their original default values.
 		this.soTimeout = getInt(config, "socket.timeout.ms", 30000);
@@ -327,6 +331,7 @@ class SimpleConsumerThread<T> extends Thread {
 
 				int messagesInFetch = 0;
 				int deletedMessages = 0;
+				final KafkaRecordBatch<T> batch = this.batch;
 				Iterator<KafkaTopicPartitionState<TopicAndPartition>> partitionsIterator = partitions.iterator();
 				
 				partitionsLoop:
@@ -377,18 +382,23 @@ class SimpleConsumerThread<T> extends Thread {
 									currentPartition.getTopic(), currentPartition.getPartition(), offset);
 							
 							if (deserializer.isEndOfStream(value)) {
-								// remove partition from subscribed partitions.
+								// emit what we have so far and remove partition from subscribed partitions.
+								owner.emitRecordBatch(batch, currentPartition);
 								partitionsIterator.remove();
 								continue partitionsLoop;
 							}
 							
-							owner.emitRecord(value, currentPartition, offset);
+							batch.add(value, offset);
 						}
 						else {
 							// no longer running
 							return;
 						}
 					}
+
+					// emit all records of the partition in this fetch under one lock acquisition.
+					// this also updates the offset state atomically
+					owner.emitRecordBatch(batch, currentPartition);
 				}
 				LOG.debug("This fetch contained {} messages ({} deleted messages)", messagesInFetch, deletedMessages);
 			} // end of fetch loop
@@ -23,6 +23,7 @@ import org.apache.flink.streaming.api.functions.AssignerWithPeriodicWatermarks;
 import org.apache.flink.streaming.api.functions.AssignerWithPunctuatedWatermarks;
 import org.apache.flink.streaming.api.functions.source.SourceFunction.SourceContext;
 import org.apache.flink.streaming.connectors.kafka.internals.AbstractFetcher;
+import org.apache.flink.streaming.connectors.kafka.internals.KafkaRecordBatch;
 import org.apache.flink.streaming.connectors.kafka.internals.KafkaTopicPartition;
 import org.apache.flink.streaming.connectors.kafka.internals.KafkaTopicPartitionState;
 import org.apache.flink.streaming.runtime.tasks.ProcessingTimeService;
@@ -97,7 +98,8 @@ public class Kafka09Fetcher<T> extends AbstractFetcher<T, TopicPartition> {
 
 		final MetricGroup kafkaMetricGroup = metricGroup.addGroup("KafkaConsumer");
 		addOffsetStateGauge(kafkaMetricGroup);
-		
+		addRecordBatchGauges(kafkaMetricGroup);
+
 		this.consumerThread = new KafkaConsumerThread(
 				LOG,
 				handover,
@@ -119,6 +121,9 @@ public class Kafka09Fetcher<T> extends AbstractFetcher<T, TopicPartition> {
 		try {
 			final Handover handover = this.handover;
 
+			// the records of one partition in one poll are emitted as one batch
+			final KafkaRecordBatch<T> batch = new KafkaRecordBatch<>();
+
 			// kick off the actual Kafka consumer
 			consumerThread.start();
 
@@ -144,10 +149,12 @@ public class Kafka09Fetcher<T> extends AbstractFetcher<T, TopicPartition> {
 							break;
 						}
 
-						// emit the actual record. this also updates offset state atomically
-						// and deals with timestamps and watermark generation
-						emitRecord(value, partition, record.offset(), record);
+						addToBatch(batch, value, record.offset(), record);
 					}
+
+					// emit the records of the partition under one lock acquisition. this also
+					// updates the offset state atomically and deals with timestamps and watermark generation
+					emitRecordBatch(batch, partition);
 				}
 			}
 		}
@@ -180,14 +187,14 @@ public class Kafka09Fetcher<T> extends AbstractFetcher<T, TopicPartition> {
 	//   reuses most of the 0.9 fetcher behavior
 	// ------------------------------------------------------------------------
 
-	protected void emitRecord(
+	protected void addToBatch(
+			KafkaRecordBatch<T> batch,
 			T record,
-			KafkaTopicPartitionState<TopicPartition> partition,
 			long offset,
-			@SuppressWarnings("UnusedParameters") ConsumerRecord<?, ?> consumerRecord) throws Exception {
+			@SuppressWarnings("UnusedParameters") ConsumerRecord<?, ?> consumerRecord) {
 
 		// the 0.9 Fetcher does not try to extract a timestamp
-		emitRecord(record, partition, offset);
+		batch.add(record, offset);
 	}
 
 	/**
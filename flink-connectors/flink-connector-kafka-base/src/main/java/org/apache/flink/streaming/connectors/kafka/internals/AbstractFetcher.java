@@ -73,6 +73,12 @@ public abstract class AbstractFetcher<T, KPH> {
 	/** Only relevant for punctuated watermarks: The current cross partition watermark */
 	private volatile long maxWatermarkSoFar = Long.MIN_VALUE;
 
+	/** The number of records in the latest batch emitted via {@link #emitRecordBatch} */
+	private volatile long lastBatchSize;
+
+	/** The time (in nanoseconds) that the checkpoint lock was held to emit the latest batch */
+	private volatile long lastBatchLockHoldTimeNanos;
+
 	// ------------------------------------------------------------------------
 	
 	protected AbstractFetcher(
@@ -277,6 +283,122 @@ public abstract class AbstractFetcher<T, KPH> {
 		}
 	}
 
+	/**
+	 * Emits all records of a batch that was fetched from one Kafka partition.
+	 *
+	 * <p>In contrast to {@link #emitRecord(Object, KafkaTopicPartitionState, long)}, the checkpoint
+	 * lock is acquired only once for the whole batch, and the partition offset is advanced only
+	 * once, to the offset of the last record in the batch. Because the records and the offset
+	 * update happen atomically under the same lock acquisition, a checkpoint either sees the
+	 * complete batch or none of it.
+	 *
+	 * <p>With periodic watermarks, the timestamps are extracted inside the same lock acquisition,
+	 * right before the records are emitted. The periodic watermark emitter runs under the
+	 * checkpoint lock, so it cannot emit a watermark that the assigner derived from records of the
+	 * batch before these records were emitted. With punctuated watermarks, timestamp extraction
+	 * and watermark generation happen outside of the checkpoint lock, as the watermarks are only
+	 * emitted after the batch.
+	 *
+	 * <p>If the batch contains Kafka timestamps (see {@link KafkaRecordBatch#add(Object, long, long)}),
+	 * they are attached to the records. The batch is cleared after the records were emitted.
+	 *
+	 * @param batch The records, offsets and timestamps fetched from the partition
+	 * @param partitionState The state of the Kafka partition from which the records were fetched
+	 */
+	protected void emitRecordBatch(KafkaRecordBatch<T> batch, KafkaTopicPartitionState<KPH> partitionState) throws Exception {
+		final int size = batch.size();
+		if (size == 0) {
+			return;
+		}
+
+		Watermark newWatermark = null;
+
+		if (timestampWatermarkMode == PUNCTUATED_WATERMARKS) {
+			@SuppressWarnings("unchecked")
+			final KafkaTopicPartitionStateWithPunctuatedWatermarks<T, KPH> withWatermarksState =
+					(KafkaTopicPartitionStateWithPunctuatedWatermarks<T, KPH>) partitionState;
+
+			// the per-partition watermarks only ever increase, so the last one
+			// generated within the batch is the one to consider after emission
+			for (int i = 0; i < size; i++) {
+				T record = batch.getRecord(i);
+				if (record != null) {
+					long timestamp = withWatermarksState.getTimestampForRecord(record, batch.getTimestamp(i));
+					batch.setTimestamp(i, timestamp);
+
+					Watermark watermark = withWatermarksState.checkAndGetNewWatermark(record, timestamp);
+					if (watermark != null) {
+						newWatermark = watermark;
+					}
+				}
+			}
+		}
+
+		final boolean attachTimestamps = timestampWatermarkMode != NO_TIMESTAMPS_WATERMARKS || batch.hasTimestamps();
+
+		// emit the records, using the checkpoint lock to guarantee
+		// atomicity of the batch emission and offset state update
+		final long lockAcquiredTime;
+		final long lockReleasedTime;
+		synchronized (checkpointLock) {
+			lockAcquiredTime = System.nanoTime();
+
+			if (timestampWatermarkMode == PERIODIC_WATERMARKS) {
+				extractTimestampsWithPeriodicWatermarks(batch, partitionState);
+			}
+
+			for (int i = 0; i < size; i++) {
+				T record = batch.getRecord(i);
+				if (record != null) {
+					if (attachTimestamps) {
+						sourceContext.collectWithTimestamp(record, batch.getTimestamp(i));
+					} else {
+						sourceContext.collect(record);
+					}
+				}
+			}
+			partitionState.setOffset(batch.getLastOffset());
+
+			lockReleasedTime = System.nanoTime();
+		}
+
+		lastBatchSize = size;
+		lastBatchLockHoldTimeNanos = lockReleasedTime - lockAcquiredTime;
+
+		batch.clear();
+
+		// if we also have a new per-partition watermark, check if that is also a
+		// new cross-partition watermark
+		if (newWatermark != null) {
+			updateMinPunctuatedWatermark(newWatermark);
+		}
+	}
+
+	/**
+	 * Extracts the timestamps of all records of a batch with an assigner that is also a periodic
+	 * watermark generator. The caller must hold the checkpoint lock, so that the periodic emitter
+	 * cannot run between the extraction and the emission of the records.
+	 */
+	private void extractTimestampsWithPeriodicWatermarks(
+			KafkaRecordBatch<T> batch, KafkaTopicPartitionState<KPH> partitionState) {
+
+		@SuppressWarnings("unchecked")
+		final KafkaTopicPartitionStateWithPeriodicWatermarks<T, KPH> withWatermarksState =
+				(KafkaTopicPartitionStateWithPeriodicWatermarks<T, KPH>) partitionState;
+
+		// the periodic emitter accesses the assigner under the checkpoint lock and the partition
+		// state lock, so we also lock the partition state, in the same order
+		//noinspection SynchronizationOnLocalVariableOrMethodParameter
+		synchronized (withWatermarksState) {
+			for (int i = 0; i < batch.size(); i++) {
+				T record = batch.getRecord(i);
+				if (record != null) {
+					batch.setTimestamp(i, withWatermarksState.getTimestampForRecord(record, batch.getTimestamp(i)));
+				}
+			}
+		}
+	}
+
 	/**
 	 * Record emission, if a timestamp will be attached from an assigner that is
 	 * also a periodic watermark generator.
@@ -466,6 +588,27 @@ public abstract class AbstractFetcher<T, KPH> {
 		}
 	}
 
+	/**
+	 * Add the size of the latest emitted record batch and the time that the checkpoint
+	 * lock was held to emit it to the metric group.
+	 *
+	 * @param metricGroup The metric group to use
+	 */
+	protected void addRecordBatchGauges(MetricGroup metricGroup) {
+		metricGroup.gauge("records-per-batch", new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return lastBatchSize;
+			}
+		});
+		metricGroup.gauge("batch-lock-hold-time-nanos", new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return lastBatchLockHoldTimeNanos;
+			}
+		});
+	}
+
 	/**
 	 * Gauge types
 	 */
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.connectors.kafka.internals;
+
+import org.apache.flink.annotation.Internal;
+
+import java.util.Arrays;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+
+/**
+ * A reusable buffer for the records of one Kafka partition that were fetched in one poll,
+ * together with their offsets and (optionally) their Kafka timestamps.
+ *
+ * <p>The fetchers fill the batch outside of the checkpoint lock and hand it to
+ * {@link AbstractFetcher#emitRecordBatch(KafkaRecordBatch, KafkaTopicPartitionState)}, which
+ * emits all records and advances the partition offset under a single lock acquisition.
+ *
+ * <p>The batch may contain {@code null} records (records that the deserialization schema
+ * skipped). Those are not emitted, but their offsets are still accounted for.
+ *
+ * <p>This class is not thread safe. Each fetcher thread uses its own batch.
+ *
+ * @param <T> The type of the records in the batch.
+ */
+@Internal
+public final class KafkaRecordBatch<T> {
+
+	private static final int DEFAULT_INITIAL_CAPACITY = 64;
+
+	/** The buffered records, possibly {@code null} for skipped records */
+	private T[] records;
+
+	/** The offsets of the buffered records */
+	private long[] offsets;
+
+	/** The timestamps of the buffered records */
+	private long[] timestamps;
+
+	/** The number of records in the batch */
+	private int size;
+
+	/** Flag whether the records were added with a Kafka timestamp */
+	private boolean hasTimestamps;
+
+	// ------------------------------------------------------------------------
+
+	public KafkaRecordBatch() {
+		this(DEFAULT_INITIAL_CAPACITY);
+	}
+
+	@SuppressWarnings("unchecked")
+	public KafkaRecordBatch(int initialCapacity) {
+		checkArgument(initialCapacity > 0, "The initial capacity must be larger than 0.");
+
+		this.records = (T[]) new Object[initialCapacity];
+		this.offsets = new long[initialCapacity];
+		this.timestamps = new long[initialCapacity];
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Adds a record without a Kafka timestamp to the batch.
+	 *
+	 * @param record The record, or {@code null} if the record was skipped.
+	 * @param offset The offset of the record.
+	 */
+	public void add(T record, long offset) {
+		append(record, offset, Long.MIN_VALUE);
+	}
+
+	/**
+	 * Adds a record with a Kafka timestamp to the batch.
+	 *
+	 * @param record The record, or {@code null} if the record was skipped.
+	 * @param offset The offset of the record.
+	 * @param timestamp The timestamp that Kafka attached to the record.
+	 */
+	public void add(T record, long offset, long timestamp) {
+		append(record, offset, timestamp);
+		hasTimestamps = true;
+	}
+
+	private void append(T record, long offset, long timestamp) {
+		if (size == records.length) {
+			int newCapacity = records.length * 2;
+			records = Arrays.copyOf(records, newCapacity);
+			offsets = Arrays.copyOf(offsets, newCapacity);
+			timestamps = Arrays.copyOf(timestamps, newCapacity);
+		}
+
+		records[size] = record;
+		offsets[size] = offset;
+		timestamps[size] = timestamp;
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	boolean hasTimestamps() {
+		return hasTimestamps;
+	}
+
+	T getRecord(int index) {
+		return records[index];
+	}
+
+	long getOffset(int index) {
+		return offsets[index];
+	}
+
+	long getTimestamp(int index) {
+		return timestamps[index];
+	}
+
+	void setTimestamp(int index, long timestamp) {
+		timestamps[index] = timestamp;
+	}
+
+	/**
+	 * Gets the offset of the last record in the batch, which is the offset that the
+	 * partition state advances to once the batch is emitted.
+	 */
+	long getLastOffset() {
+		return offsets[size - 1];
+	}
+
+	/**
+	 * Empties the batch, releasing the references to the buffered records.
+	 */
+	public void clear() {
+		Arrays.fill(records, 0, size, null);
+		size = 0;
+		hasTimestamps = false;
+	}
+}
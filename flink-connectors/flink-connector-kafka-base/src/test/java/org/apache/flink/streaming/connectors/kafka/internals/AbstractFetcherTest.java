@@ -162,6 +162,88 @@ public class AbstractFetcherTest {
 		assertFalse(sourceContext.hasWatermark());
 	}
 
+	@Test
+	public void testEmitRecordBatch() throws Exception {
+		final String testTopic = "test topic name";
+		Map<KafkaTopicPartition, Long> originalPartitions = new HashMap<>();
+		originalPartitions.put(new KafkaTopicPartition(testTopic, 1), KafkaTopicPartitionStateSentinel.LATEST_OFFSET);
+
+		TestSourceContext<Long> sourceContext = new TestSourceContext<>();
+
+		TestFetcher<Long> fetcher = new TestFetcher<>(
+			sourceContext,
+			originalPartitions,
+			null, /* periodic watermark assigner */
+			null, /* punctuated watermark assigner */
+			mock(TestProcessingTimeService.class),
+			0);
+
+		final KafkaTopicPartitionState<Object> partitionStateHolder = fetcher.subscribedPartitionStates()[0];
+		final KafkaRecordBatch<Long> batch = new KafkaRecordBatch<>(1);
+
+		batch.add(1L, 1L);
+		batch.add(2L, 2L);
+		fetcher.emitRecordBatch(batch, partitionStateHolder);
+		assertEquals(2L, sourceContext.getLatestElement().getValue().longValue());
+		assertFalse(sourceContext.getLatestElement().hasTimestamp());
+		assertEquals(2L, partitionStateHolder.getOffset());
+		assertTrue(batch.isEmpty());
+
+		// a trailing null record is skipped, but still advances the offset
+		batch.add(3L, 3L, 103L);
+		batch.add(null, 4L, 104L);
+		fetcher.emitRecordBatch(batch, partitionStateHolder);
+		assertEquals(3L, sourceContext.getLatestElement().getValue().longValue());
+		assertEquals(103L, sourceContext.getLatestElement().getTimestamp());
+		assertEquals(4L, partitionStateHolder.getOffset());
+
+		// an empty batch does not touch the offset
+		fetcher.emitRecordBatch(batch, partitionStateHolder);
+		assertEquals(4L, partitionStateHolder.getOffset());
+	}
+
+	@Test
+	public void testEmitRecordBatchWithPunctuatedWatermarks() throws Exception {
+		final String testTopic = "test topic name";
+		Map<KafkaTopicPartition, Long> originalPartitions = new HashMap<>();
+		originalPartitions.put(new KafkaTopicPartition(testTopic, 7), KafkaTopicPartitionStateSentinel.LATEST_OFFSET);
+		originalPartitions.put(new KafkaTopicPartition(testTopic, 13), KafkaTopicPartitionStateSentinel.LATEST_OFFSET);
+
+		TestSourceContext<Long> sourceContext = new TestSourceContext<>();
+
+		TestFetcher<Long> fetcher = new TestFetcher<>(
+				sourceContext,
+				originalPartitions,
+				null, /* periodic watermark assigner */
+				new SerializedValue<AssignerWithPunctuatedWatermarks<Long>>(new PunctuatedTestExtractor()),
+				new TestProcessingTimeService(),
+				0);
+
+		final KafkaTopicPartitionState<Object> part1 = fetcher.subscribedPartitionStates()[0];
+		final KafkaTopicPartitionState<Object> part2 = fetcher.subscribedPartitionStates()[1];
+		final KafkaRecordBatch<Long> batch = new KafkaRecordBatch<>();
+
+		// elements generate a watermark if the timestamp is a multiple of three
+		batch.add(3L, 1L);
+		batch.add(6L, 2L);
+		batch.add(7L, 3L);
+		fetcher.emitRecordBatch(batch, part1);
+		assertEquals(7L, sourceContext.getLatestElement().getValue().longValue());
+		assertEquals(7L, sourceContext.getLatestElement().getTimestamp());
+		assertEquals(3L, part1.getOffset());
+		assertFalse(sourceContext.hasWatermark());
+
+		batch.add(9L, 1L);
+		batch.add(null, 2L);
+		fetcher.emitRecordBatch(batch, part2);
+		assertEquals(9L, sourceContext.getLatestElement().getValue().longValue());
+		assertEquals(2L, part2.getOffset());
+
+		// the cross-partition watermark is the minimum of the latest watermarks of the batches
+		assertTrue(sourceContext.hasWatermark());
+		assertEquals(6L, sourceContext.getLatestWatermark().getTimestamp());
+	}
+
 	// ------------------------------------------------------------------------
 	//   Timestamps & watermarks tests
 	// ------------------------------------------------------------------------
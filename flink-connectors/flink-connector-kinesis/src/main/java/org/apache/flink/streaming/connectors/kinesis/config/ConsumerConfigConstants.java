@@ -86,6 +86,18 @@ public class ConsumerConfigConstants extends AWSConfigConstants {
 	/** The interval between each getRecords request to a AWS Kinesis shard in milliseconds */
 	public static final String SHARD_GETRECORDS_INTERVAL_MILLIS = "flink.shard.getrecords.intervalmillis";
 
+	/**
+	 * Whether the number of records per getRecords request and the interval between requests should be adapted
+	 * to the record sizes, the lag of the shard and throttling (instead of using the fixed configured values)
+	 */
+	public static final String SHARD_USE_ADAPTIVE_READS = "flink.shard.adaptivereads";
+
+	/** The maximum interval between getRecords requests when adaptive reads are enabled and the shard is caught up */
+	public static final String SHARD_IDLE_INTERVAL_MAX_MILLIS = "flink.shard.idle.interval.max";
+
+	/** The number of threads shared by all shard consumers of a subtask; 0 uses one thread per shard */
+	public static final String SHARD_CONSUMER_THREADS = "flink.shard.consumer.threads";
+
 	/** The maximum number of getShardIterator attempts if we get ProvisionedThroughputExceededException */
 	public static final String SHARD_GETITERATOR_RETRIES = "flink.shard.getiterator.maxretries";
 
@@ -125,6 +137,12 @@ public class ConsumerConfigConstants extends AWSConfigConstants {
 
 	public static final long DEFAULT_SHARD_GETRECORDS_INTERVAL_MILLIS = 0L;
 
+	public static final boolean DEFAULT_SHARD_USE_ADAPTIVE_READS = false;
+
+	public static final long DEFAULT_SHARD_IDLE_INTERVAL_MAX_MILLIS = 1000L;
+
+	public static final int DEFAULT_SHARD_CONSUMER_THREADS = 0;
+
 	public static final int DEFAULT_SHARD_GETITERATOR_RETRIES = 3;
 
 	public static final long DEFAULT_SHARD_GETITERATOR_BACKOFF_BASE = 300L;
@@ -18,6 +18,7 @@
 package org.apache.flink.streaming.connectors.kinesis.internals;
 
 import org.apache.flink.api.common.functions.RuntimeContext;
+import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.streaming.api.functions.source.SourceFunction;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.connectors.kinesis.FlinkKinesisConsumer;
@@ -45,6 +46,7 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -61,7 +63,8 @@ import static org.apache.flink.util.Preconditions.checkNotNull;
  *     		  subscribed to the same shard) and determinate across subtask restores (the subtask will always subscribe
  *     		  to the same subset of shards even after restoring)</li>
  *     <li>2. decide where in each discovered shard should the fetcher start subscribing to</li>
- *     <li>3. subscribe to shards by creating a single thread for each shard</li>
+ *     <li>3. subscribe to shards by creating a {@link ShardConsumer} for each shard, running either in a thread of
+ *            its own or in a pool of threads shared by all shard consumers of the subtask</li>
  * </ul>
  *
  * <p>The fetcher manages two states: 1) last seen shard ids of each subscribed stream (used for continuous shard discovery),
@@ -113,6 +116,13 @@ public class KinesisDataFetcher<T> {
 	/** Executor service to run {@link ShardConsumer}s to consume Kinesis shards */
 	private final ExecutorService shardConsumersExecutor;
 
+	/**
+	 * Scheduler that runs the {@link ShardConsumer}s if they share a fixed number of threads, see
+	 * {@link ConsumerConfigConstants#SHARD_CONSUMER_THREADS}; null if each shard consumer runs in its own thread.
+	 * If set, this is also the {@link KinesisDataFetcher#shardConsumersExecutor}.
+	 */
+	private final ScheduledExecutorService shardConsumersScheduler;
+
 	// ------------------------------------------------------------------------
 	//  Managed state, accessed and updated across multiple threads
 	// ------------------------------------------------------------------------
@@ -213,8 +223,19 @@ public class KinesisDataFetcher<T> {
 		this.subscribedShardsState = checkNotNull(subscribedShardsState);
 		this.subscribedStreamsToLastDiscoveredShardIds = checkNotNull(subscribedStreamsToLastDiscoveredShardIds);
 
-		this.shardConsumersExecutor =
-			createShardConsumersThreadPool(runtimeContext.getTaskNameWithSubtasks());
+		final int numShardConsumerThreads = Integer.valueOf(configProps.getProperty(
+			ConsumerConfigConstants.SHARD_CONSUMER_THREADS,
+			Integer.toString(ConsumerConfigConstants.DEFAULT_SHARD_CONSUMER_THREADS)));
+
+		if (numShardConsumerThreads > 0) {
+			this.shardConsumersScheduler = Executors.newScheduledThreadPool(
+				numShardConsumerThreads, createShardConsumersThreadFactory(runtimeContext.getTaskNameWithSubtasks()));
+			this.shardConsumersExecutor = shardConsumersScheduler;
+		} else {
+			this.shardConsumersScheduler = null;
+			this.shardConsumersExecutor = Executors.newCachedThreadPool(
+				createShardConsumersThreadFactory(runtimeContext.getTaskNameWithSubtasks()));
+		}
 	}
 
 	/**
@@ -555,6 +576,29 @@ public class KinesisDataFetcher<T> {
 		return configProps;
 	}
 
+	/**
+	 * Gets the scheduler that shard consumers use to schedule their next fetch, if the fetcher
+	 * pools its shard consumers.
+	 *
+	 * @return the shared scheduler, or null if each shard consumer runs in its own thread
+	 */
+	protected ScheduledExecutorService getShardConsumersScheduler() {
+		return shardConsumersScheduler;
+	}
+
+	/**
+	 * Gets the metric group for the metrics of a single subscribed shard.
+	 *
+	 * @param shard the subscribed shard
+	 * @return the metric group of the shard
+	 */
+	protected MetricGroup getShardMetricGroup(KinesisStreamShard shard) {
+		return runtimeContext.getMetricGroup()
+			.addGroup("KinesisConsumer")
+			.addGroup(shard.getStreamName())
+			.addGroup(shard.getShard().getShardId());
+	}
+
 	protected KinesisDeserializationSchema<T> getClonedDeserializationSchema() {
 		try {
 			return InstantiationUtil.clone(deserializationSchema, runtimeContext.getUserCodeClassLoader());
@@ -649,17 +693,19 @@ public class KinesisDataFetcher<T> {
 		return (Math.abs(shard.hashCode() % totalNumberOfConsumerSubtasks)) == indexOfThisConsumerSubtask;
 	}
 
-	private static ExecutorService createShardConsumersThreadPool(final String subtaskName) {
-		return Executors.newCachedThreadPool(new ThreadFactory() {
+	private static ThreadFactory createShardConsumersThreadFactory(final String subtaskName) {
+		return new ThreadFactory() {
+
+			private final AtomicLong threadCount = new AtomicLong(0);
+
 			@Override
 			public Thread newThread(Runnable runnable) {
-				final AtomicLong threadCount = new AtomicLong(0);
 				Thread thread = new Thread(runnable);
 				thread.setName("shardConsumers-" + subtaskName + "-thread-" + threadCount.getAndIncrement());
 				thread.setDaemon(true);
 				return thread;
 			}
-		});
+		};
 	}
 
 	/**
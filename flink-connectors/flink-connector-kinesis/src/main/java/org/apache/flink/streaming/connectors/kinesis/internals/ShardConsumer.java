@@ -20,8 +20,12 @@ package org.apache.flink.streaming.connectors.kinesis.internals;
 import com.amazonaws.services.kinesis.clientlibrary.types.UserRecord;
 import com.amazonaws.services.kinesis.model.ExpiredIteratorException;
 import com.amazonaws.services.kinesis.model.GetRecordsResult;
+import com.amazonaws.services.kinesis.model.ProvisionedThroughputExceededException;
 import com.amazonaws.services.kinesis.model.Record;
 import com.amazonaws.services.kinesis.model.ShardIteratorType;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.streaming.api.TimeCharacteristic;
 import org.apache.flink.streaming.connectors.kinesis.config.ConsumerConfigConstants;
 import org.apache.flink.streaming.connectors.kinesis.model.KinesisStreamShard;
@@ -41,17 +45,39 @@ import java.text.ParseException;
 import java.util.Date;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static org.apache.flink.util.Preconditions.checkArgument;
 import static org.apache.flink.util.Preconditions.checkNotNull;
 
 /**
- * Thread that does the actual data pulling from AWS Kinesis shards. Each thread is in charge of one Kinesis shard only.
+ * Runnable that does the actual data pulling from AWS Kinesis shards. Each consumer is in charge of one Kinesis shard only.
+ *
+ * <p>By default, each consumer runs in its own thread and loops over the getRecords requests. If the fetcher pools the
+ * shard consumers (see {@link ConsumerConfigConstants#SHARD_CONSUMER_THREADS}), each run fetches a single batch of
+ * records and schedules the next run with the fetcher's shared scheduler, so that the waiting between requests does
+ * not occupy a thread.
+ *
+ * <p>If adaptive reads are enabled (see {@link ConsumerConfigConstants#SHARD_USE_ADAPTIVE_READS}), the number of
+ * records per request is sized from the recently fetched record sizes to stay within the read throughput of the shard,
+ * the interval between requests grows while the shard is caught up ({@code millisBehindLatest} is 0), and throttled
+ * requests are retried with exponential backoff instead of failing the consumer.
  */
 public class ShardConsumer<T> implements Runnable {
 
 	private static final Logger LOG = LoggerFactory.getLogger(ShardConsumer.class);
 
+	/** The maximum number of records that a single getRecords request can return */
+	private static final int KINESIS_MAX_RECORDS_PER_GETRECORDS = 10000;
+
+	/** The maximum read throughput of a single Kinesis shard, in bytes per second */
+	private static final long KINESIS_SHARD_BYTES_PER_SECOND_LIMIT = 2 * 1024L * 1024L;
+
+	/** The minimum interval between getRecords requests, as a shard supports up to 5 read requests per second */
+	private static final long KINESIS_SHARD_MIN_GETRECORDS_INTERVAL_MILLIS = 200L;
+
 	private final KinesisDeserializationSchema<T> deserializer;
 
 	private final KinesisProxyInterface kinesis;
@@ -62,11 +88,47 @@ public class ShardConsumer<T> implements Runnable {
 
 	private final KinesisStreamShard subscribedShard;
 
-	private final int maxNumberOfRecordsPerFetch;
 	private final long fetchIntervalMillis;
 
+	/** The maximum number of records per getRecords request; only changes with adaptive reads */
+	private volatile int maxNumberOfRecordsPerFetch;
+
+	/** The delay before the next getRecords request; only changes with adaptive reads */
+	private long nextFetchDelayMillis;
+
+	private final boolean useAdaptiveReads;
+	private final long idleIntervalMaxMillis;
+
+	private final long throttleBackoffBaseMillis;
+	private final long throttleBackoffMaxMillis;
+	private final double throttleBackoffExpConstant;
+
+	/** The number of throttled getRecords requests since the last successful request */
+	private int consecutiveThrottles;
+
+	/** The backoff before retrying the last throttled getRecords request, if the consumer runs with the scheduler */
+	private long throttleRetryDelayMillis;
+
+	/** The last reported number of milliseconds that the shard consumer is behind the tip of the shard */
+	private volatile long millisBehindLatest = -1L;
+
+	/** Counts the getRecords requests that were throttled by Kinesis */
+	private final Counter throttledFetchesCounter;
+
+	/**
+	 * The scheduler to run this consumer with if the fetcher pools its shard consumers;
+	 * null if this consumer runs in a thread of its own.
+	 */
+	private final ScheduledExecutorService scheduler;
+
 	private SequenceNumber lastSequenceNum;
 
+	/** The shard iterator for the next getRecords request; null once the shard has been completely read */
+	private String nextShardItr;
+
+	/** Flag whether the initial shard iterator has been determined */
+	private boolean initialized;
+
 	private Date initTimestamp;
 
 	/**
@@ -112,6 +174,40 @@ public class ShardConsumer<T> implements Runnable {
 		this.fetchIntervalMillis = Long.valueOf(consumerConfig.getProperty(
 			ConsumerConfigConstants.SHARD_GETRECORDS_INTERVAL_MILLIS,
 			Long.toString(ConsumerConfigConstants.DEFAULT_SHARD_GETRECORDS_INTERVAL_MILLIS)));
+		this.nextFetchDelayMillis = fetchIntervalMillis;
+
+		this.useAdaptiveReads = Boolean.valueOf(consumerConfig.getProperty(
+			ConsumerConfigConstants.SHARD_USE_ADAPTIVE_READS,
+			Boolean.toString(ConsumerConfigConstants.DEFAULT_SHARD_USE_ADAPTIVE_READS)));
+		this.idleIntervalMaxMillis = Long.valueOf(consumerConfig.getProperty(
+			ConsumerConfigConstants.SHARD_IDLE_INTERVAL_MAX_MILLIS,
+			Long.toString(ConsumerConfigConstants.DEFAULT_SHARD_IDLE_INTERVAL_MAX_MILLIS)));
+		this.throttleBackoffBaseMillis = Long.valueOf(consumerConfig.getProperty(
+			ConsumerConfigConstants.SHARD_GETRECORDS_BACKOFF_BASE,
+			Long.toString(ConsumerConfigConstants.DEFAULT_SHARD_GETRECORDS_BACKOFF_BASE)));
+		this.throttleBackoffMaxMillis = Long.valueOf(consumerConfig.getProperty(
+			ConsumerConfigConstants.SHARD_GETRECORDS_BACKOFF_MAX,
+			Long.toString(ConsumerConfigConstants.DEFAULT_SHARD_GETRECORDS_BACKOFF_MAX)));
+		this.throttleBackoffExpConstant = Double.valueOf(consumerConfig.getProperty(
+			ConsumerConfigConstants.SHARD_GETRECORDS_BACKOFF_EXPONENTIAL_CONSTANT,
+			Double.toString(ConsumerConfigConstants.DEFAULT_SHARD_GETRECORDS_BACKOFF_EXPONENTIAL_CONSTANT)));
+
+		this.scheduler = fetcherRef.getShardConsumersScheduler();
+
+		MetricGroup shardMetricGroup = fetcherRef.getShardMetricGroup(subscribedShard);
+		shardMetricGroup.gauge("millisBehindLatest", new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return millisBehindLatest;
+			}
+		});
+		shardMetricGroup.gauge("maxNumberOfRecordsPerFetch", new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return maxNumberOfRecordsPerFetch;
+			}
+		});
+		this.throttledFetchesCounter = shardMetricGroup.counter("numThrottledFetches");
 
 		if (lastSequenceNum.equals(SentinelSequenceNumber.SENTINEL_AT_TIMESTAMP_SEQUENCE_NUM.get())) {
 			String timestamp = consumerConfig.getProperty(ConsumerConfigConstants.STREAM_INITIAL_TIMESTAMP);
@@ -125,94 +221,195 @@ public class ShardConsumer<T> implements Runnable {
 		}
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public void run() {
-		String nextShardItr;
-
 		try {
-			// before infinitely looping, we set the initial nextShardItr appropriately
+			if (!initialized) {
+				initialized = initializeShardIterator();
+			}
 
-			if (lastSequenceNum.equals(SentinelSequenceNumber.SENTINEL_LATEST_SEQUENCE_NUM.get())) {
-				// if the shard is already closed, there will be no latest next record to get for this shard
-				if (subscribedShard.isClosed()) {
-					nextShardItr = null;
-				} else {
-					nextShardItr = kinesis.getShardIterator(subscribedShard, ShardIteratorType.LATEST.toString(), null);
-				}
-			} else if (lastSequenceNum.equals(SentinelSequenceNumber.SENTINEL_EARLIEST_SEQUENCE_NUM.get())) {
-				nextShardItr = kinesis.getShardIterator(subscribedShard, ShardIteratorType.TRIM_HORIZON.toString(), null);
-			} else if (lastSequenceNum.equals(SentinelSequenceNumber.SENTINEL_SHARD_ENDING_SEQUENCE_NUM.get())) {
-				nextShardItr = null;
-			} else if (lastSequenceNum.equals(SentinelSequenceNumber.SENTINEL_AT_TIMESTAMP_SEQUENCE_NUM.get())) {
-				nextShardItr = kinesis.getShardIterator(subscribedShard, ShardIteratorType.AT_TIMESTAMP.toString(), initTimestamp);
-			} else {
-				// we will be starting from an actual sequence number (due to restore from failure).
-				// if the last sequence number refers to an aggregated record, we need to clean up any dangling sub-records
-				// from the last aggregated record; otherwise, we can simply start iterating from the record right after.
-
-				if (lastSequenceNum.isAggregated()) {
-					String itrForLastAggregatedRecord =
-						kinesis.getShardIterator(subscribedShard, ShardIteratorType.AT_SEQUENCE_NUMBER.toString(), lastSequenceNum.getSequenceNumber());
-
-					// get only the last aggregated record
-					GetRecordsResult getRecordsResult = getRecords(itrForLastAggregatedRecord, 1);
-
-					List<UserRecord> fetchedRecords = deaggregateRecords(
-						getRecordsResult.getRecords(),
-						subscribedShard.getShard().getHashKeyRange().getStartingHashKey(),
-						subscribedShard.getShard().getHashKeyRange().getEndingHashKey());
-
-					long lastSubSequenceNum = lastSequenceNum.getSubSequenceNumber();
-					for (UserRecord record : fetchedRecords) {
-						// we have found a dangling sub-record if it has a larger subsequence number
-						// than our last sequence number; if so, collect the record and update state
-						if (record.getSubSequenceNumber() > lastSubSequenceNum) {
-							deserializeRecordForCollectionAndUpdateState(record);
-						}
+			if (scheduler == null) {
+				// this consumer owns the thread, so it loops until the shard is read completely
+				while (isRunning()) {
+					if (nextShardItr == null) {
+						markShardAsCompletelyRead();
+						break;
 					}
 
-					// set the nextShardItr so we can continue iterating in the next while loop
-					nextShardItr = getRecordsResult.getNextShardIterator();
+					if (nextFetchDelayMillis != 0) {
+						Thread.sleep(nextFetchDelayMillis);
+					}
+					fetchNextBatch();
+				}
+			} else {
+				// the thread is shared with other consumers, so we fetch a single batch and schedule
+				// the next fetch instead of sleeping; throttled requests are retried the same way
+				if (!initialized) {
+					scheduler.schedule(this, throttleRetryDelayMillis, TimeUnit.MILLISECONDS);
+				} else if (nextShardItr == null) {
+					markShardAsCompletelyRead();
 				} else {
-					// the last record was non-aggregated, so we can simply start from the next record
-					nextShardItr = kinesis.getShardIterator(subscribedShard, ShardIteratorType.AFTER_SEQUENCE_NUMBER.toString(), lastSequenceNum.getSequenceNumber());
+					long delayMillis = fetchNextBatch() ? nextFetchDelayMillis : throttleRetryDelayMillis;
+					scheduler.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
 				}
 			}
+		} catch (RejectedExecutionException e) {
+			// the scheduler rejects the next fetch only if the fetcher is shutting down
+			if (scheduler == null || !scheduler.isShutdown()) {
+				fetcherRef.stopWithError(e);
+			}
+		} catch (Throwable t) {
+			fetcherRef.stopWithError(t);
+		}
+	}
 
-			while(isRunning()) {
-				if (nextShardItr == null) {
-					fetcherRef.updateState(subscribedShardStateIndex, SentinelSequenceNumber.SENTINEL_SHARD_ENDING_SEQUENCE_NUM.get());
-
-					// we can close this consumer thread once we've reached the end of the subscribed shard
-					break;
-				} else {
-					if (fetchIntervalMillis != 0) {
-						Thread.sleep(fetchIntervalMillis);
-					}
+	/**
+	 * Determines the shard iterator to start consuming the shard with, which is null if there are no records to read
+	 * from the shard. If the consumer starts from an aggregated record, the remaining sub-records of that record are
+	 * collected here.
+	 *
+	 * @return true if the initial shard iterator was determined, false if the request for the aggregated record was
+	 *         throttled and has to be retried after {@link #throttleRetryDelayMillis}
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean initializeShardIterator() throws Exception {
+		String initialShardItr;
 
-					GetRecordsResult getRecordsResult = getRecords(nextShardItr, maxNumberOfRecordsPerFetch);
+		if (lastSequenceNum.equals(SentinelSequenceNumber.SENTINEL_LATEST_SEQUENCE_NUM.get())) {
+			// if the shard is already closed, there will be no latest next record to get for this shard
+			if (subscribedShard.isClosed()) {
+				initialShardItr = null;
+			} else {
+				initialShardItr = kinesis.getShardIterator(subscribedShard, ShardIteratorType.LATEST.toString(), null);
+			}
+		} else if (lastSequenceNum.equals(SentinelSequenceNumber.SENTINEL_EARLIEST_SEQUENCE_NUM.get())) {
+			initialShardItr = kinesis.getShardIterator(subscribedShard, ShardIteratorType.TRIM_HORIZON.toString(), null);
+		} else if (lastSequenceNum.equals(SentinelSequenceNumber.SENTINEL_SHARD_ENDING_SEQUENCE_NUM.get())) {
+			initialShardItr = null;
+		} else if (lastSequenceNum.equals(SentinelSequenceNumber.SENTINEL_AT_TIMESTAMP_SEQUENCE_NUM.get())) {
+			initialShardItr = kinesis.getShardIterator(subscribedShard, ShardIteratorType.AT_TIMESTAMP.toString(), initTimestamp);
+		} else {
+			// we will be starting from an actual sequence number (due to restore from failure).
+			// if the last sequence number refers to an aggregated record, we need to clean up any dangling sub-records
+			// from the last aggregated record; otherwise, we can simply start iterating from the record right after.
+
+			if (lastSequenceNum.isAggregated()) {
+				String itrForLastAggregatedRecord =
+					kinesis.getShardIterator(subscribedShard, ShardIteratorType.AT_SEQUENCE_NUMBER.toString(), lastSequenceNum.getSequenceNumber());
+
+				// get only the last aggregated record
+				GetRecordsResult getRecordsResult = getRecords(itrForLastAggregatedRecord, 1);
+				if (getRecordsResult == null) {
+					return false;
+				}
 
-					// each of the Kinesis records may be aggregated, so we must deaggregate them before proceeding
-					List<UserRecord> fetchedRecords = deaggregateRecords(
-						getRecordsResult.getRecords(),
-						subscribedShard.getShard().getHashKeyRange().getStartingHashKey(),
-						subscribedShard.getShard().getHashKeyRange().getEndingHashKey());
+				List<UserRecord> fetchedRecords = deaggregateRecords(
+					getRecordsResult.getRecords(),
+					subscribedShard.getShard().getHashKeyRange().getStartingHashKey(),
+					subscribedShard.getShard().getHashKeyRange().getEndingHashKey());
 
-					for (UserRecord record : fetchedRecords) {
+				long lastSubSequenceNum = lastSequenceNum.getSubSequenceNumber();
+				for (UserRecord record : fetchedRecords) {
+					// we have found a dangling sub-record if it has a larger subsequence number
+					// than our last sequence number; if so, collect the record and update state
+					if (record.getSubSequenceNumber() > lastSubSequenceNum) {
 						deserializeRecordForCollectionAndUpdateState(record);
 					}
-
-					nextShardItr = getRecordsResult.getNextShardIterator();
 				}
+
+				// continue iterating after the last aggregated record
+				initialShardItr = getRecordsResult.getNextShardIterator();
+			} else {
+				// the last record was non-aggregated, so we can simply start from the next record
+				initialShardItr = kinesis.getShardIterator(subscribedShard, ShardIteratorType.AFTER_SEQUENCE_NUMBER.toString(), lastSequenceNum.getSequenceNumber());
 			}
-		} catch (Throwable t) {
-			fetcherRef.stopWithError(t);
+		}
+
+		nextShardItr = initialShardItr;
+		return true;
+	}
+
+	/**
+	 * Fetches the next batch of records with the current shard iterator, collects them and advances the iterator.
+	 * With adaptive reads, this also determines the size of and the delay before the next request.
+	 *
+	 * @return true if a batch was fetched, false if the request was throttled and has to be retried after
+	 *         {@link #throttleRetryDelayMillis}
+	 */
+	private boolean fetchNextBatch() throws Exception {
+		GetRecordsResult getRecordsResult = getRecords(nextShardItr, maxNumberOfRecordsPerFetch);
+		if (getRecordsResult == null) {
+			return false;
+		}
+
+		if (getRecordsResult.getMillisBehindLatest() != null) {
+			millisBehindLatest = getRecordsResult.getMillisBehindLatest();
+		}
+
+		if (useAdaptiveReads) {
+			// the record sizes must be determined before the records are deaggregated and collected,
+			// as collecting the records consumes their data buffers
+			adaptToFetchedRecords(getRecordsResult);
+		}
+
+		// each of the Kinesis records may be aggregated, so we must deaggregate them before proceeding
+		List<UserRecord> fetchedRecords = deaggregateRecords(
+			getRecordsResult.getRecords(),
+			subscribedShard.getShard().getHashKeyRange().getStartingHashKey(),
+			subscribedShard.getShard().getHashKeyRange().getEndingHashKey());
+
+		for (UserRecord record : fetchedRecords) {
+			deserializeRecordForCollectionAndUpdateState(record);
+		}
+
+		nextShardItr = getRecordsResult.getNextShardIterator();
+		return true;
+	}
+
+	/**
+	 * Adapts the number of records and the delay of the next getRecords request to the result of the last request.
+	 *
+	 * <p>The number of records is chosen so that requests at the minimal interval would stay within the read
+	 * throughput of the shard, given the average size of the last fetched records. While the shard is caught up,
+	 * the delay between requests doubles up to the configured maximum idle interval; as soon as the shard lags
+	 * behind again, requests are issued at the minimal interval.
+	 */
+	private void adaptToFetchedRecords(GetRecordsResult getRecordsResult) {
+		final long minIntervalMillis = Math.max(fetchIntervalMillis, KINESIS_SHARD_MIN_GETRECORDS_INTERVAL_MILLIS);
+		final List<Record> records = getRecordsResult.getRecords();
+
+		if (!records.isEmpty()) {
+			long batchSizeBytes = 0L;
+			for (Record record : records) {
+				batchSizeBytes += record.getData().remaining();
+			}
+
+			long averageRecordSizeBytes = Math.max(1L, batchSizeBytes / records.size());
+			long bytesPerFetch = KINESIS_SHARD_BYTES_PER_SECOND_LIMIT * minIntervalMillis / 1000L;
+
+			maxNumberOfRecordsPerFetch = (int) Math.max(1L,
+				Math.min(KINESIS_MAX_RECORDS_PER_GETRECORDS, bytesPerFetch / averageRecordSizeBytes));
+		}
+
+		Long behindLatest = getRecordsResult.getMillisBehindLatest();
+		if (behindLatest != null && behindLatest == 0L) {
+			// caught up with the tip of the shard; back off to save the request quota
+			nextFetchDelayMillis = Math.max(minIntervalMillis, Math.min(idleIntervalMaxMillis, nextFetchDelayMillis * 2));
+		} else {
+			nextFetchDelayMillis = minIntervalMillis;
 		}
 	}
 
 	/**
-	 * The loop in run() checks this before fetching next batch of records. Since this runnable will be executed
+	 * Marks the subscribed shard as completely read in the fetcher's state.
+	 */
+	private void markShardAsCompletelyRead() {
+		fetcherRef.updateState(subscribedShardStateIndex, SentinelSequenceNumber.SENTINEL_SHARD_ENDING_SEQUENCE_NUM.get());
+	}
+
+	/**
+	 * The loop in run() checks this before fetching next batch of records, if the consumer runs in its own thread.
+	 * Since this runnable will be executed
 	 * by the ExecutorService {@link KinesisDataFetcher#shardConsumersExecutor}, the only way to close down this thread
 	 * would be by calling shutdownNow() on {@link KinesisDataFetcher#shardConsumersExecutor} and let the executor service
 	 * interrupt all currently running {@link ShardConsumer}s.
@@ -274,9 +471,14 @@ public class ShardConsumer<T> implements Runnable {
 	 * {@link ShardConsumer#lastSequenceNum} may refer to a sub-record in the middle of an aggregated record, leading to
 	 * incorrect shard iteration if the iterator had to be refreshed.
 	 *
+	 * With adaptive reads, throttled requests are retried after an exponential backoff. If the consumer runs in a thread
+	 * of its own, this method sleeps for the backoff and retries the request. If the consumer runs with the fetcher's
+	 * shared scheduler, this method returns null instead, so that the caller can reschedule the request after
+	 * {@link #throttleRetryDelayMillis} without blocking a scheduler thread.
+	 *
 	 * @param shardItr shard iterator to use
 	 * @param maxNumberOfRecords the maximum number of records to fetch for this getRecords attempt
-	 * @return get records result
+	 * @return get records result, or null if the request was throttled and the consumer runs with the scheduler
 	 * @throws InterruptedException
 	 */
 	private GetRecordsResult getRecords(String shardItr, int maxNumberOfRecords) throws InterruptedException {
@@ -284,6 +486,28 @@ public class ShardConsumer<T> implements Runnable {
 		while (getRecordsResult == null) {
 			try {
 				getRecordsResult = kinesis.getRecords(shardItr, maxNumberOfRecords);
+				consecutiveThrottles = 0;
+			} catch (ProvisionedThroughputExceededException ptEx) {
+				throttledFetchesCounter.inc();
+				if (!useAdaptiveReads) {
+					throw ptEx;
+				}
+
+				// with adaptive reads, throttling is not fatal: we request fewer records and back off
+				maxNumberOfRecords = Math.max(1, maxNumberOfRecords / 2);
+				maxNumberOfRecordsPerFetch = maxNumberOfRecords;
+
+				long backoffMillis = KinesisProxy.fullJitterBackoff(
+					throttleBackoffBaseMillis, throttleBackoffMaxMillis, throttleBackoffExpConstant, consecutiveThrottles++);
+				LOG.warn("getRecords for shard {} was throttled; retrying with at most {} records in {} millis",
+					subscribedShard, maxNumberOfRecords, backoffMillis);
+
+				if (scheduler != null) {
+					throttleRetryDelayMillis = backoffMillis;
+					return null;
+				}
+
+				Thread.sleep(backoffMillis);
 			} catch (ExpiredIteratorException eiEx) {
 				LOG.warn("Encountered an unexpected expired iterator {} for shard {};" +
 					" refreshing the iterator ...", shardItr, subscribedShard);
@@ -211,8 +211,9 @@ public class KinesisProxy implements KinesisProxyInterface {
 		}
 
 		if (getRecordsResult == null) {
-			throw new RuntimeException("Rate Exceeded for getRecords operation - all " + getRecordsMaxAttempts +
-				" retry attempts returned ProvisionedThroughputExceededException.");
+			// surfaced as the throttling exception, so that callers can distinguish it from other failures
+			throw new ProvisionedThroughputExceededException("Rate Exceeded for getRecords operation - all " +
+				getRecordsMaxAttempts + " retry attempts returned ProvisionedThroughputExceededException.");
 		}
 
 		return getRecordsResult;
@@ -393,7 +394,17 @@ public class KinesisProxy implements KinesisProxyInterface {
 		return describeStreamResult;
 	}
 
-	private static long fullJitterBackoff(long base, long max, double power, int attempt) {
+	/**
+	 * Computes a "full jitter" exponential backoff time, i.e. a random time between 0 and the exponential backoff
+	 * {@code min(max, base * power^attempt)}.
+	 *
+	 * @param base the base backoff time in milliseconds
+	 * @param max the maximum backoff time in milliseconds
+	 * @param power the exponential constant
+	 * @param attempt the number of attempts so far
+	 * @return the backoff time in milliseconds
+	 */
+	public static long fullJitterBackoff(long base, long max, double power, int attempt) {
 		long exponentialBackoff = (long) Math.min(max, base * Math.pow(power, attempt));
 		return (long)(seed.nextDouble()*exponentialBackoff); // random jitter between 0 and the exponential backoff
 	}
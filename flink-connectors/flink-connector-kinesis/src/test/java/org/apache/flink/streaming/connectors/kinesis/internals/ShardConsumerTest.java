@@ -20,6 +20,7 @@ package org.apache.flink.streaming.connectors.kinesis.internals;
 import com.amazonaws.services.kinesis.model.HashKeyRange;
 import com.amazonaws.services.kinesis.model.Shard;
 import org.apache.commons.lang.StringUtils;
+import org.apache.flink.streaming.connectors.kinesis.config.ConsumerConfigConstants;
 import org.apache.flink.streaming.connectors.kinesis.model.KinesisStreamShard;
 import org.apache.flink.streaming.connectors.kinesis.model.KinesisStreamShardState;
 import org.apache.flink.streaming.connectors.kinesis.model.SentinelSequenceNumber;
@@ -32,11 +33,16 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.Properties;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class ShardConsumerTest {
@@ -119,4 +125,184 @@ public class ShardConsumerTest {
 			SentinelSequenceNumber.SENTINEL_SHARD_ENDING_SEQUENCE_NUM.get()));
 	}
 
+	@Test
+	public void testAdaptiveReadsWithThrottling() {
+		KinesisStreamShard fakeToBeConsumedShard = new KinesisStreamShard(
+			"fakeStream",
+			new Shard()
+				.withShardId(KinesisShardIdGenerator.generateFromShardOrder(0))
+				.withHashKeyRange(
+					new HashKeyRange()
+						.withStartingHashKey("0")
+						.withEndingHashKey(new BigInteger(StringUtils.repeat("FF", 16), 16).toString())));
+
+		LinkedList<KinesisStreamShardState> subscribedShardsStateUnderTest = new LinkedList<>();
+		subscribedShardsStateUnderTest.add(
+			new KinesisStreamShardState(fakeToBeConsumedShard, new SequenceNumber("fakeStartingState")));
+
+		Properties consumerConfig = new Properties();
+		consumerConfig.setProperty(ConsumerConfigConstants.SHARD_USE_ADAPTIVE_READS, "true");
+		consumerConfig.setProperty(ConsumerConfigConstants.SHARD_GETRECORDS_BACKOFF_BASE, "1");
+		consumerConfig.setProperty(ConsumerConfigConstants.SHARD_GETRECORDS_BACKOFF_MAX, "1");
+
+		AtomicReference<Throwable> error = new AtomicReference<>();
+
+		TestableKinesisDataFetcher fetcher =
+			new TestableKinesisDataFetcher(
+				Collections.singletonList("fakeStream"),
+				consumerConfig,
+				10,
+				2,
+				error,
+				subscribedShardsStateUnderTest,
+				KinesisDataFetcher.createInitialSubscribedStreamsToLastDiscoveredShardsState(Collections.singletonList("fakeStream")),
+				Mockito.mock(KinesisProxyInterface.class));
+
+		// Get a total of 1000 records with 3 getRecords() calls, and the 2nd getRecords() call is throttled once
+		FakeKinesisBehavioursFactory.SingleShardEmittingFixNumOfRecordsWithThrottlingKinesis fakeKinesis =
+			FakeKinesisBehavioursFactory.totalNumOfRecordsAfterNumOfGetRecordsCallsWithThrottling(1000, 3, 2);
+
+		new ShardConsumer<>(
+			fetcher,
+			0,
+			subscribedShardsStateUnderTest.get(0).getKinesisStreamShard(),
+			subscribedShardsStateUnderTest.get(0).getLastProcessedSequenceNum(),
+			fakeKinesis).run();
+
+		assertNull(error.get());
+		assertTrue(fetcher.getNumOfElementsCollected() == 1000);
+		assertTrue(subscribedShardsStateUnderTest.get(0).getLastProcessedSequenceNum().equals(
+			SentinelSequenceNumber.SENTINEL_SHARD_ENDING_SEQUENCE_NUM.get()));
+
+		// the first request uses the configured count; the fetched records are only a few bytes large, so the
+		// following requests ask for the Kinesis maximum, except for the retry of the throttled request
+		assertEquals(Arrays.asList(100, 10000, 5000, 10000), fakeKinesis.getRequestedNumOfRecords());
+	}
+
+	@Test
+	public void testPooledShardConsumer() throws Exception {
+		KinesisStreamShard fakeToBeConsumedShard = new KinesisStreamShard(
+			"fakeStream",
+			new Shard()
+				.withShardId(KinesisShardIdGenerator.generateFromShardOrder(0))
+				.withHashKeyRange(
+					new HashKeyRange()
+						.withStartingHashKey("0")
+						.withEndingHashKey(new BigInteger(StringUtils.repeat("FF", 16), 16).toString())));
+
+		LinkedList<KinesisStreamShardState> subscribedShardsStateUnderTest = new LinkedList<>();
+		subscribedShardsStateUnderTest.add(
+			new KinesisStreamShardState(fakeToBeConsumedShard, new SequenceNumber("fakeStartingState")));
+
+		Properties consumerConfig = new Properties();
+		consumerConfig.setProperty(ConsumerConfigConstants.SHARD_CONSUMER_THREADS, "1");
+
+		AtomicReference<Throwable> error = new AtomicReference<>();
+
+		TestableKinesisDataFetcher fetcher =
+			new TestableKinesisDataFetcher(
+				Collections.singletonList("fakeStream"),
+				consumerConfig,
+				10,
+				2,
+				error,
+				subscribedShardsStateUnderTest,
+				KinesisDataFetcher.createInitialSubscribedStreamsToLastDiscoveredShardsState(Collections.singletonList("fakeStream")),
+				Mockito.mock(KinesisProxyInterface.class));
+
+		ScheduledExecutorService scheduler = fetcher.getShardConsumersScheduler();
+		assertNotNull(scheduler);
+
+		try {
+			// the consumer fetches one batch per run and reschedules itself until the shard is read completely
+			scheduler.submit(new ShardConsumer<>(
+				fetcher,
+				0,
+				subscribedShardsStateUnderTest.get(0).getKinesisStreamShard(),
+				subscribedShardsStateUnderTest.get(0).getLastProcessedSequenceNum(),
+				FakeKinesisBehavioursFactory.totalNumOfRecordsAfterNumOfGetRecordsCalls(1000, 9)));
+
+			long deadline = System.currentTimeMillis() + 10000L;
+			while (!subscribedShardsStateUnderTest.get(0).getLastProcessedSequenceNum().equals(
+					SentinelSequenceNumber.SENTINEL_SHARD_ENDING_SEQUENCE_NUM.get())
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(10L);
+			}
+		} finally {
+			scheduler.shutdownNow();
+		}
+
+		assertNull(error.get());
+		assertTrue(fetcher.getNumOfElementsCollected() == 1000);
+		assertTrue(subscribedShardsStateUnderTest.get(0).getLastProcessedSequenceNum().equals(
+			SentinelSequenceNumber.SENTINEL_SHARD_ENDING_SEQUENCE_NUM.get()));
+	}
+
+	@Test
+	public void testPooledShardConsumerReschedulesThrottledFetch() throws Exception {
+		KinesisStreamShard fakeToBeConsumedShard = new KinesisStreamShard(
+			"fakeStream",
+			new Shard()
+				.withShardId(KinesisShardIdGenerator.generateFromShardOrder(0))
+				.withHashKeyRange(
+					new HashKeyRange()
+						.withStartingHashKey("0")
+						.withEndingHashKey(new BigInteger(StringUtils.repeat("FF", 16), 16).toString())));
+
+		LinkedList<KinesisStreamShardState> subscribedShardsStateUnderTest = new LinkedList<>();
+		subscribedShardsStateUnderTest.add(
+			new KinesisStreamShardState(fakeToBeConsumedShard, new SequenceNumber("fakeStartingState")));
+
+		Properties consumerConfig = new Properties();
+		consumerConfig.setProperty(ConsumerConfigConstants.SHARD_CONSUMER_THREADS, "1");
+		consumerConfig.setProperty(ConsumerConfigConstants.SHARD_USE_ADAPTIVE_READS, "true");
+		consumerConfig.setProperty(ConsumerConfigConstants.SHARD_GETRECORDS_BACKOFF_BASE, "1");
+		consumerConfig.setProperty(ConsumerConfigConstants.SHARD_GETRECORDS_BACKOFF_MAX, "1");
+
+		AtomicReference<Throwable> error = new AtomicReference<>();
+
+		TestableKinesisDataFetcher fetcher =
+			new TestableKinesisDataFetcher(
+				Collections.singletonList("fakeStream"),
+				consumerConfig,
+				10,
+				2,
+				error,
+				subscribedShardsStateUnderTest,
+				KinesisDataFetcher.createInitialSubscribedStreamsToLastDiscoveredShardsState(Collections.singletonList("fakeStream")),
+				Mockito.mock(KinesisProxyInterface.class));
+
+		// Get a total of 1000 records with 3 getRecords() calls, and the 2nd getRecords() call is throttled once
+		FakeKinesisBehavioursFactory.SingleShardEmittingFixNumOfRecordsWithThrottlingKinesis fakeKinesis =
+			FakeKinesisBehavioursFactory.totalNumOfRecordsAfterNumOfGetRecordsCallsWithThrottling(1000, 3, 2);
+
+		ScheduledExecutorService scheduler = fetcher.getShardConsumersScheduler();
+		assertNotNull(scheduler);
+
+		try {
+			// the throttled request returns to the scheduler and is retried by a later run of the consumer
+			scheduler.submit(new ShardConsumer<>(
+				fetcher,
+				0,
+				subscribedShardsStateUnderTest.get(0).getKinesisStreamShard(),
+				subscribedShardsStateUnderTest.get(0).getLastProcessedSequenceNum(),
+				fakeKinesis));
+
+			long deadline = System.currentTimeMillis() + 10000L;
+			while (!subscribedShardsStateUnderTest.get(0).getLastProcessedSequenceNum().equals(
+					SentinelSequenceNumber.SENTINEL_SHARD_ENDING_SEQUENCE_NUM.get())
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(10L);
+			}
+		} finally {
+			scheduler.shutdownNow();
+		}
+
+		assertNull(error.get());
+		assertTrue(fetcher.getNumOfElementsCollected() == 1000);
+		assertTrue(subscribedShardsStateUnderTest.get(0).getLastProcessedSequenceNum().equals(
+			SentinelSequenceNumber.SENTINEL_SHARD_ENDING_SEQUENCE_NUM.get()));
+		assertEquals(Arrays.asList(100, 10000, 5000, 10000), fakeKinesis.getRequestedNumOfRecords());
+	}
+
 }
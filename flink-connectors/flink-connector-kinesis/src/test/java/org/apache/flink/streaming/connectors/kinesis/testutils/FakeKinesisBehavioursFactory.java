@@ -19,6 +19,7 @@ package org.apache.flink.streaming.connectors.kinesis.testutils;
 
 import com.amazonaws.services.kinesis.model.ExpiredIteratorException;
 import com.amazonaws.services.kinesis.model.GetRecordsResult;
+import com.amazonaws.services.kinesis.model.ProvisionedThroughputExceededException;
 import com.amazonaws.services.kinesis.model.Record;
 import com.amazonaws.services.kinesis.model.Shard;
 import org.apache.flink.configuration.ConfigConstants;
@@ -86,6 +87,54 @@ public class FakeKinesisBehavioursFactory {
 			numOfRecords, numOfGetRecordsCall, orderOfCallToExpire);
 	}
 
+	public static SingleShardEmittingFixNumOfRecordsWithThrottlingKinesis totalNumOfRecordsAfterNumOfGetRecordsCallsWithThrottling(
+		final int numOfRecords, final int numOfGetRecordsCall, final int orderOfCallToThrottle) {
+		return new SingleShardEmittingFixNumOfRecordsWithThrottlingKinesis(
+			numOfRecords, numOfGetRecordsCall, orderOfCallToThrottle);
+	}
+
+	/**
+	 * Throttles the getRecords() call of the given order once, and reports the shard as caught up
+	 * with the last batch of records. Also records the number of records that each call requested.
+	 */
+	public static class SingleShardEmittingFixNumOfRecordsWithThrottlingKinesis extends SingleShardEmittingFixNumOfRecordsKinesis {
+
+		private final int orderOfCallToThrottle;
+		private final List<Integer> requestedNumOfRecords = new ArrayList<>();
+		private boolean throttledOnceAlready = false;
+
+		public SingleShardEmittingFixNumOfRecordsWithThrottlingKinesis(final int numOfRecords,
+																		final int numOfGetRecordsCalls,
+																		final int orderOfCallToThrottle) {
+			super(numOfRecords, numOfGetRecordsCalls);
+			checkArgument(orderOfCallToThrottle <= numOfGetRecordsCalls,
+				"can not test throttling if orderOfCallToThrottle is larger than numOfGetRecordsCalls");
+			this.orderOfCallToThrottle = orderOfCallToThrottle;
+		}
+
+		@Override
+		public GetRecordsResult getRecords(String shardIterator, int maxRecordsToGet) {
+			requestedNumOfRecords.add(maxRecordsToGet);
+
+			if ((Integer.valueOf(shardIterator) == orderOfCallToThrottle - 1) && !throttledOnceAlready) {
+				throttledOnceAlready = true;
+				throw new ProvisionedThroughputExceededException("Artificial throttling");
+			}
+
+			boolean isLastBatch = Integer.valueOf(shardIterator) == totalNumOfGetRecordsCalls - 1;
+
+			// assuming that the maxRecordsToGet is always large enough
+			return new GetRecordsResult()
+				.withRecords(shardItrToRecordBatch.get(shardIterator))
+				.withMillisBehindLatest(isLastBatch ? 0L : 1000L)
+				.withNextShardIterator(isLastBatch ? null : String.valueOf(Integer.valueOf(shardIterator) + 1));
+		}
+
+		public List<Integer> getRequestedNumOfRecords() {
+			return requestedNumOfRecords;
+		}
+	}
+
 	public static class SingleShardEmittingFixNumOfRecordsWithExpiredIteratorKinesis extends SingleShardEmittingFixNumOfRecordsKinesis {
 
 		private boolean expiredOnceAlready = false;
@@ -18,6 +18,8 @@
 package org.apache.flink.streaming.connectors.kinesis.testutils;
 
 import org.apache.flink.api.common.functions.RuntimeContext;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.metrics.groups.UnregisteredMetricsGroup;
 import org.apache.flink.streaming.api.functions.source.SourceFunction;
 import org.apache.flink.streaming.connectors.kinesis.internals.KinesisDataFetcher;
 import org.apache.flink.streaming.connectors.kinesis.model.KinesisStreamShardState;
@@ -117,6 +119,13 @@ public class TestableKinesisDataFetcher extends KinesisDataFetcher<String> {
 			}
 		});
 
+		Mockito.when(mockedRuntimeContext.getMetricGroup()).thenAnswer(new Answer<MetricGroup>() {
+			@Override
+			public MetricGroup answer(InvocationOnMock invocationOnMock) throws Throwable {
+				return new UnregisteredMetricsGroup();
+			}
+		});
+
 		return mockedRuntimeContext;
 	}
 }
@@ -144,6 +144,10 @@ public abstract class AbstractRocksDBState<K, N, S extends State, SD extends Sta
 		return backend.db.get(columnFamily, tmpKeySerializationStream.toByteArray());
 	}
 
+	protected N getCurrentNamespace() {
+		return currentNamespace;
+	}
+
 	protected void writeCurrentKeyWithGroupAndNamespace() throws IOException {
 		writeKeyWithGroupAndNamespace(
 			backend.getCurrentKeyGroupIndex(),
@@ -27,32 +27,39 @@ import org.apache.flink.api.common.state.ReducingStateDescriptor;
 import org.apache.flink.api.common.state.StateDescriptor;
 import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.VoidSerializer;
 import org.apache.flink.api.common.typeutils.base.array.BytePrimitiveArraySerializer;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.api.java.typeutils.runtime.DataInputViewStream;
 import org.apache.flink.configuration.ConfigConstants;
+import org.apache.flink.core.fs.CloseableRegistry;
 import org.apache.flink.core.fs.FSDataInputStream;
 import org.apache.flink.core.memory.ByteArrayInputStreamWithPos;
 import org.apache.flink.core.memory.DataInputView;
 import org.apache.flink.core.memory.DataInputViewStreamWrapper;
 import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.migration.MigrationNamespaceSerializerProxy;
 import org.apache.flink.migration.MigrationUtil;
 import org.apache.flink.migration.contrib.streaming.state.RocksDBStateBackend;
 import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions.CheckpointType;
 import org.apache.flink.runtime.io.async.AbstractAsyncIOCallable;
 import org.apache.flink.runtime.io.async.AsyncStoppableTaskWithCallback;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
+import org.apache.flink.runtime.state.CheckpointListener;
 import org.apache.flink.runtime.state.CheckpointStreamFactory;
 import org.apache.flink.runtime.state.DoneFuture;
+import org.apache.flink.runtime.state.IncrementalKeyGroupsStateHandle;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
 import org.apache.flink.runtime.state.KeyGroupsStateHandle;
 import org.apache.flink.runtime.state.KeyedBackendSerializationProxy;
 import org.apache.flink.runtime.state.RegisteredBackendStateMetaInfo;
+import org.apache.flink.runtime.state.StateUtil;
 import org.apache.flink.runtime.state.StreamStateHandle;
 import org.apache.flink.runtime.state.internal.InternalAggregatingState;
 import org.apache.flink.runtime.state.internal.InternalFoldingState;
@@ -61,10 +68,14 @@ import org.apache.flink.runtime.state.internal.InternalMapState;
 import org.apache.flink.runtime.state.internal.InternalReducingState;
 import org.apache.flink.runtime.state.internal.InternalValueState;
 import org.apache.flink.runtime.util.SerializableObject;
+import org.apache.flink.streaming.api.operators.InternalTimerQueue;
+import org.apache.flink.streaming.api.operators.InternalTimerQueueFactory;
 import org.apache.flink.util.FileUtils;
+import org.apache.flink.util.FlinkRuntimeException;
 import org.apache.flink.util.IOUtils;
 import org.apache.flink.util.InstantiationUtil;
 import org.apache.flink.util.Preconditions;
+import org.rocksdb.Checkpoint;
 import org.rocksdb.ColumnFamilyDescriptor;
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.ColumnFamilyOptions;
@@ -79,8 +90,12 @@ import org.slf4j.LoggerFactory;
 
 import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
@@ -88,6 +103,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
 import java.util.concurrent.RunnableFuture;
 
 /**
@@ -95,8 +113,16 @@ import java.util.concurrent.RunnableFuture;
  * streams provided by a {@link org.apache.flink.runtime.state.CheckpointStreamFactory} upon
  * checkpointing. This state backend can store very large state that exceeds memory and spills
  * to disk. Except for the snapshotting, this class should be accessed as if it is not threadsafe.
+ *
+ * <p>With incremental checkpointing, checkpoints are taken from native RocksDB checkpoints and only
+ * upload the SST files that are not part of the last completed checkpoint of this backend. The
+ * remaining SST files are referenced from the earlier checkpoints.
+ *
+ * <p>Optionally, the backend also stores the timers of the keyed operator, in one column family per
+ * timer queue (see {@link RocksDBTimerQueue}).
  */
-public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
+public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K>
+		implements CheckpointListener, InternalTimerQueueFactory<K> {
 
 	private static final Logger LOG = LoggerFactory.getLogger(RocksDBKeyedStateBackend.class);
 
@@ -132,9 +158,36 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 	 */
 	private Map<String, Tuple2<ColumnFamilyHandle, RegisteredBackendStateMetaInfo<?, ?>>> kvStateInformation;
 
+	/** Prefix of the names of the column families that hold timers, which separates them from k/v states */
+	static final String TIMER_STATE_NAME_PREFIX = "_timer_state/";
+
 	/** Number of bytes required to prefix the key groups. */
 	private final int keyGroupPrefixBytes;
 
+	/** True if checkpoints only upload the SST files that changed since the last completed checkpoint */
+	private final boolean enableIncrementalCheckpointing;
+
+	/** True if the backend creates the timer queues of the timer services of the operator */
+	private final boolean enableTimersInRocksDB;
+
+	/** The timer queues created by this backend, which are disposed with the backend */
+	private final List<RocksDBTimerQueue<K, ?>> timerQueues = new ArrayList<>();
+
+	/** The write-back cache of the deserialized values of the value states, or null if values are not cached */
+	private final RocksDBStateCache stateCache;
+
+	/**
+	 * Identifies the SST files of this backend and of the backends it was restored from. SST file names
+	 * are only unique within one lineage of RocksDB instances.
+	 */
+	private String backendIdentifier;
+
+	/** The SST files of the incremental snapshots that were taken since the last completed checkpoint */
+	private final SortedMap<Long, Map<String, StreamStateHandle>> materializedSstFiles = new TreeMap<>();
+
+	/** The id of the last completed checkpoint that is the base for incremental snapshots, -1 if none */
+	private long lastCompletedCheckpointId = -1L;
+
 	public RocksDBKeyedStateBackend(
 			JobID jobId,
 			String operatorIdentifier,
@@ -149,9 +202,110 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 			ExecutionConfig executionConfig
 	) throws IOException {
 
+		this(
+				jobId,
+				operatorIdentifier,
+				userCodeClassLoader,
+				instanceBasePath,
+				dbOptions,
+				columnFamilyOptions,
+				kvStateRegistry,
+				keySerializer,
+				numberOfKeyGroups,
+				keyGroupRange,
+				executionConfig,
+				false);
+	}
+
+	public RocksDBKeyedStateBackend(
+			JobID jobId,
+			String operatorIdentifier,
+			ClassLoader userCodeClassLoader,
+			File instanceBasePath,
+			DBOptions dbOptions,
+			ColumnFamilyOptions columnFamilyOptions,
+			TaskKvStateRegistry kvStateRegistry,
+			TypeSerializer<K> keySerializer,
+			int numberOfKeyGroups,
+			KeyGroupRange keyGroupRange,
+			ExecutionConfig executionConfig,
+			boolean enableIncrementalCheckpointing
+	) throws IOException {
+
+		this(
+				jobId,
+				operatorIdentifier,
+				userCodeClassLoader,
+				instanceBasePath,
+				dbOptions,
+				columnFamilyOptions,
+				kvStateRegistry,
+				keySerializer,
+				numberOfKeyGroups,
+				keyGroupRange,
+				executionConfig,
+				enableIncrementalCheckpointing,
+				false);
+	}
+
+	public RocksDBKeyedStateBackend(
+			JobID jobId,
+			String operatorIdentifier,
+			ClassLoader userCodeClassLoader,
+			File instanceBasePath,
+			DBOptions dbOptions,
+			ColumnFamilyOptions columnFamilyOptions,
+			TaskKvStateRegistry kvStateRegistry,
+			TypeSerializer<K> keySerializer,
+			int numberOfKeyGroups,
+			KeyGroupRange keyGroupRange,
+			ExecutionConfig executionConfig,
+			boolean enableIncrementalCheckpointing,
+			boolean enableTimersInRocksDB
+	) throws IOException {
+
+		this(
+				jobId,
+				operatorIdentifier,
+				userCodeClassLoader,
+				instanceBasePath,
+				dbOptions,
+				columnFamilyOptions,
+				kvStateRegistry,
+				keySerializer,
+				numberOfKeyGroups,
+				keyGroupRange,
+				executionConfig,
+				enableIncrementalCheckpointing,
+				enableTimersInRocksDB,
+				0,
+				null);
+	}
+
+	public RocksDBKeyedStateBackend(
+			JobID jobId,
+			String operatorIdentifier,
+			ClassLoader userCodeClassLoader,
+			File instanceBasePath,
+			DBOptions dbOptions,
+			ColumnFamilyOptions columnFamilyOptions,
+			TaskKvStateRegistry kvStateRegistry,
+			TypeSerializer<K> keySerializer,
+			int numberOfKeyGroups,
+			KeyGroupRange keyGroupRange,
+			ExecutionConfig executionConfig,
+			boolean enableIncrementalCheckpointing,
+			boolean enableTimersInRocksDB,
+			int stateCacheSize,
+			MetricGroup stateCacheMetricGroup
+	) throws IOException {
+
 		super(kvStateRegistry, keySerializer, userCodeClassLoader, numberOfKeyGroups, keyGroupRange, executionConfig);
 		this.columnOptions = Preconditions.checkNotNull(columnFamilyOptions);
 		this.dbOptions = Preconditions.checkNotNull(dbOptions);
+		this.enableIncrementalCheckpointing = enableIncrementalCheckpointing;
+		this.enableTimersInRocksDB = enableTimersInRocksDB;
+		this.backendIdentifier = UUID.randomUUID().toString();
 
 		this.instanceBasePath = Preconditions.checkNotNull(instanceBasePath);
 		this.instanceRocksDBPath = new File(instanceBasePath, "db");
@@ -176,19 +330,13 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 		// RocksDB seems to need this...
 		columnFamilyDescriptors.add(new ColumnFamilyDescriptor("default".getBytes(ConfigConstants.DEFAULT_CHARSET)));
 		List<ColumnFamilyHandle> columnFamilyHandles = new ArrayList<>(1);
-		try {
-
-			db = RocksDB.open(
-					Preconditions.checkNotNull(dbOptions),
-					instanceRocksDBPath.getAbsolutePath(),
-					columnFamilyDescriptors,
-					columnFamilyHandles);
-
-		} catch (RocksDBException e) {
-			throw new IOException("Error while opening RocksDB instance.", e);
-		}
+		db = openDB(instanceRocksDBPath.getAbsolutePath(), columnFamilyDescriptors, columnFamilyHandles);
 		keyGroupPrefixBytes = getNumberOfKeyGroups() > (Byte.MAX_VALUE + 1) ? 2 : 1;
 		kvStateInformation = new HashMap<>();
+
+		this.stateCache = stateCacheSize > 0 ?
+				new RocksDBStateCache(this, stateCacheSize, stateCacheMetricGroup) :
+				null;
 	}
 
 	/**
@@ -198,6 +346,11 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 	public void dispose() {
 		super.dispose();
 
+		// the cached values are lost with the db
+		if (stateCache != null) {
+			stateCache.dispose();
+		}
+
 		// Acquire the lock, so that no ongoing snapshots access the db during cleanup
 		synchronized (asyncSnapshotLock) {
 			// IMPORTANT: null reference to signal potential async checkpoint workers that the db was disposed, as
@@ -205,6 +358,12 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 			// and access it in a synchronized block that locks on #dbDisposeLock.
 			if (db != null) {
 
+				for (RocksDBTimerQueue<K, ?> timerQueue : timerQueues) {
+					timerQueue.dispose();
+				}
+
+				timerQueues.clear();
+
 				for (Tuple2<ColumnFamilyHandle, RegisteredBackendStateMetaInfo<?, ?>> column :
 						kvStateInformation.values()) {
 					try {
@@ -236,6 +395,22 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 		}
 	}
 
+	private RocksDB openDB(
+			String path,
+			List<ColumnFamilyDescriptor> columnFamilyDescriptors,
+			List<ColumnFamilyHandle> columnFamilyHandles) throws IOException {
+
+		try {
+			return RocksDB.open(
+					Preconditions.checkNotNull(dbOptions),
+					path,
+					columnFamilyDescriptors,
+					columnFamilyHandles);
+		} catch (RocksDBException e) {
+			throw new IOException("Error while opening RocksDB instance.", e);
+		}
+	}
+
 	public int getKeyGroupPrefixBytes() {
 		return keyGroupPrefixBytes;
 	}
@@ -244,6 +419,22 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 		return !kvStateInformation.isEmpty();
 	}
 
+	/**
+	 * Returns the write-back cache of the value states, or null if the values are not cached.
+	 */
+	RocksDBStateCache getStateCache() {
+		return stateCache;
+	}
+
+	/**
+	 * Writes the updated values of the state cache to RocksDB, so that snapshots of RocksDB contain them.
+	 */
+	private void flushStateCache() throws IOException {
+		if (stateCache != null) {
+			stateCache.flush();
+		}
+	}
+
 	/**
 	 * Triggers an asynchronous snapshot of the keyed state backend from RocksDB. This snapshot can be canceled and
 	 * is also stopped when the backend is closed through {@link #dispose()}. For each backend, this method must always
@@ -263,6 +454,80 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 			final CheckpointStreamFactory streamFactory,
 			CheckpointOptions checkpointOptions) throws Exception {
 
+		// savepoints must be self-contained and are therefore always full snapshots
+		if (enableIncrementalCheckpointing && checkpointOptions.getCheckpointType() != CheckpointType.SAVEPOINT) {
+			return snapshotIncrementally(checkpointId, timestamp, streamFactory);
+		} else {
+			return snapshotFully(checkpointId, timestamp, streamFactory);
+		}
+	}
+
+	private RunnableFuture<KeyGroupsStateHandle> snapshotIncrementally(
+			final long checkpointId,
+			final long checkpointTimestamp,
+			final CheckpointStreamFactory checkpointStreamFactory) throws Exception {
+
+		long startTime = System.currentTimeMillis();
+
+		final RocksDBIncrementalSnapshotOperation snapshotOperation =
+				new RocksDBIncrementalSnapshotOperation(this, checkpointStreamFactory, checkpointId, checkpointTimestamp);
+
+		// hold the db lock while operation on the db to guard us against async db disposal
+		synchronized (asyncSnapshotLock) {
+
+			if (db == null) {
+				throw new IOException("RocksDB closed.");
+			}
+
+			if (!hasRegisteredState()) {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("Asynchronous RocksDB snapshot performed on empty keyed state at " + checkpointTimestamp +
+							" . Returning null.");
+				}
+				return DoneFuture.nullValue();
+			}
+
+			flushStateCache();
+			snapshotOperation.takeSnapshot();
+		}
+
+		AbstractAsyncIOCallable<KeyGroupsStateHandle, CloseableRegistry> ioCallable =
+				new AbstractAsyncIOCallable<KeyGroupsStateHandle, CloseableRegistry>() {
+
+					@Override
+					public CloseableRegistry openIOHandle() throws Exception {
+						return snapshotOperation.openCloseableRegistry();
+					}
+
+					@Override
+					public KeyGroupsStateHandle performOperation() throws Exception {
+						long startTime = System.currentTimeMillis();
+
+						try {
+							return snapshotOperation.materializeSnapshot();
+						} finally {
+							LOG.info("Asynchronous incremental RocksDB snapshot ({}, asynchronous part) in thread {} took {} ms.",
+									checkpointStreamFactory, Thread.currentThread(), (System.currentTimeMillis() - startTime));
+						}
+					}
+
+					@Override
+					public void done(boolean canceled) {
+						snapshotOperation.releaseResources(canceled);
+					}
+				};
+
+		LOG.info("Asynchronous incremental RocksDB snapshot (" + checkpointStreamFactory + ", synchronous part) in thread " +
+				Thread.currentThread() + " took " + (System.currentTimeMillis() - startTime) + " ms.");
+
+		return AsyncStoppableTaskWithCallback.from(ioCallable);
+	}
+
+	private RunnableFuture<KeyGroupsStateHandle> snapshotFully(
+			final long checkpointId,
+			final long timestamp,
+			final CheckpointStreamFactory streamFactory) throws Exception {
+
 		long startTime = System.currentTimeMillis();
 
 		final RocksDBSnapshotOperation snapshotOperation = new RocksDBSnapshotOperation(this, streamFactory);
@@ -279,6 +544,7 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 					return DoneFuture.nullValue();
 				}
 
+				flushStateCache();
 				snapshotOperation.takeDBSnapShot(checkpointId, timestamp);
 			} else {
 				throw new IOException("RocksDB closed.");
@@ -619,6 +885,270 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 		}
 	}
 
+	/**
+	 * Encapsulates the process to perform an incremental snapshot of a RocksDBKeyedStateBackend.
+	 */
+	static final class RocksDBIncrementalSnapshotOperation {
+
+		/** Name suffix of the immutable data files of RocksDB, which are shared between snapshots */
+		static final String SST_FILE_SUFFIX = ".sst";
+
+		private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+		private final RocksDBKeyedStateBackend<?> stateBackend;
+		private final CheckpointStreamFactory checkpointStreamFactory;
+		private final long checkpointId;
+		private final long checkpointTimestamp;
+
+		/** Local directory of the native RocksDB checkpoint */
+		private File backupPath;
+
+		/** The backend identifier at the time of the snapshot */
+		private String backendIdentifier;
+
+		/** Meta data of all k/v states at the time of the snapshot */
+		private List<KeyedBackendSerializationProxy.StateMetaInfo<?, ?>> stateMetaInfos;
+
+		/** SST files of the last completed checkpoint, by file name */
+		private Map<String, StreamStateHandle> baseSstFiles;
+
+		/** Closes all streams of the asynchronous part if the snapshot is stopped */
+		private CloseableRegistry closeableRegistry;
+
+		private final Map<String, StreamStateHandle> newSstFiles = new HashMap<>();
+		private final Map<String, StreamStateHandle> referencedSstFiles = new HashMap<>();
+		private final Map<String, StreamStateHandle> miscFiles = new HashMap<>();
+		private StreamStateHandle metaStateHandle;
+
+		RocksDBIncrementalSnapshotOperation(
+				RocksDBKeyedStateBackend<?> stateBackend,
+				CheckpointStreamFactory checkpointStreamFactory,
+				long checkpointId,
+				long checkpointTimestamp) {
+
+			this.stateBackend = stateBackend;
+			this.checkpointStreamFactory = checkpointStreamFactory;
+			this.checkpointId = checkpointId;
+			this.checkpointTimestamp = checkpointTimestamp;
+		}
+
+		/**
+		 * 1) Creates a native RocksDB checkpoint, which hard-links the current files of the data base into
+		 * a local directory, and captures the meta data of the k/v states.
+		 *
+		 * @throws Exception
+		 */
+		void takeSnapshot() throws Exception {
+			Preconditions.checkState(backupPath == null, "Only one ongoing snapshot allowed!");
+
+			backendIdentifier = stateBackend.backendIdentifier;
+
+			stateMetaInfos = new ArrayList<>(stateBackend.kvStateInformation.size());
+			for (Tuple2<ColumnFamilyHandle, RegisteredBackendStateMetaInfo<?, ?>> column :
+					stateBackend.kvStateInformation.values()) {
+
+				RegisteredBackendStateMetaInfo<?, ?> metaInfo = column.f1;
+
+				stateMetaInfos.add(new KeyedBackendSerializationProxy.StateMetaInfo<>(
+						metaInfo.getStateType(),
+						metaInfo.getName(),
+						metaInfo.getNamespaceSerializer(),
+						metaInfo.getStateSerializer()));
+			}
+
+			synchronized (stateBackend.materializedSstFiles) {
+				Map<String, StreamStateHandle> lastCompletedSstFiles =
+						stateBackend.materializedSstFiles.get(stateBackend.lastCompletedCheckpointId);
+
+				int numUnconfirmedSnapshots =
+						stateBackend.materializedSstFiles.tailMap(stateBackend.lastCompletedCheckpointId + 1).size();
+
+				if (lastCompletedSstFiles == null || numUnconfirmedSnapshots >= MAX_UNCONFIRMED_SNAPSHOTS) {
+					baseSstFiles = new HashMap<>();
+				} else {
+					baseSstFiles = new HashMap<>(lastCompletedSstFiles);
+				}
+			}
+
+			backupPath = new File(stateBackend.instanceBasePath, "chk-" + checkpointId);
+			if (backupPath.exists()) {
+				FileUtils.deleteDirectory(backupPath);
+			}
+
+			Checkpoint checkpoint = Checkpoint.create(stateBackend.db);
+			try {
+				checkpoint.createCheckpoint(backupPath.getAbsolutePath());
+			} finally {
+				IOUtils.closeQuietly(checkpoint);
+			}
+		}
+
+		/**
+		 * 2) Opens the registry through which the streams of the asynchronous part can be closed.
+		 *
+		 * @return the registry for the streams of the asynchronous part
+		 * @throws IOException
+		 */
+		CloseableRegistry openCloseableRegistry() throws IOException {
+			Preconditions.checkState(closeableRegistry == null, "Snapshot was already materialized.");
+			closeableRegistry = new CloseableRegistry();
+			stateBackend.cancelStreamRegistry.registerClosable(closeableRegistry);
+			return closeableRegistry;
+		}
+
+		/**
+		 * 3) Uploads the new files of the native checkpoint and the meta data of the k/v states.
+		 *
+		 * @return a handle to the incremental snapshot
+		 * @throws Exception
+		 */
+		KeyGroupsStateHandle materializeSnapshot() throws Exception {
+			try {
+				File[] files = backupPath.listFiles();
+				if (files == null) {
+					throw new IOException("Could not list the files of the RocksDB checkpoint " + backupPath + '.');
+				}
+
+				for (File file : files) {
+					String fileName = file.getName();
+
+					if (fileName.endsWith(SST_FILE_SUFFIX)) {
+						StreamStateHandle baseSstFile = baseSstFiles.get(fileName);
+
+						if (baseSstFile != null) {
+							referencedSstFiles.put(fileName, baseSstFile);
+						} else {
+							newSstFiles.put(fileName, materializeLocalFile(file));
+						}
+					} else {
+						miscFiles.put(fileName, materializeLocalFile(file));
+					}
+				}
+
+				metaStateHandle = materializeMetaData();
+
+				Map<String, StreamStateHandle> sstFiles = new HashMap<>(referencedSstFiles);
+				sstFiles.putAll(newSstFiles);
+
+				synchronized (stateBackend.materializedSstFiles) {
+					stateBackend.materializedSstFiles.put(checkpointId, sstFiles);
+
+					// forget the oldest snapshots if the checkpoints keep failing
+					SortedMap<Long, Map<String, StreamStateHandle>> unconfirmedSstFiles =
+							stateBackend.materializedSstFiles.tailMap(stateBackend.lastCompletedCheckpointId + 1);
+
+					while (unconfirmedSstFiles.size() > MAX_UNCONFIRMED_SNAPSHOTS) {
+						unconfirmedSstFiles.remove(unconfirmedSstFiles.firstKey());
+					}
+				}
+
+				return new IncrementalKeyGroupsStateHandle(
+						stateBackend.keyGroupRange,
+						backendIdentifier,
+						checkpointId,
+						metaStateHandle,
+						newSstFiles,
+						referencedSstFiles,
+						miscFiles);
+			} catch (Exception e) {
+				discardUploadedStates();
+				throw e;
+			} finally {
+				stateBackend.cancelStreamRegistry.unregisterClosable(closeableRegistry);
+			}
+		}
+
+		/**
+		 * 4) Deletes the native checkpoint and, if the snapshot was canceled, the uploaded files.
+		 */
+		void releaseResources(boolean canceled) {
+			if (backupPath != null) {
+				try {
+					FileUtils.deleteDirectory(backupPath);
+				} catch (IOException e) {
+					LOG.warn("Could not delete the local RocksDB checkpoint {}.", backupPath, e);
+				}
+			}
+
+			if (canceled) {
+				discardUploadedStates();
+			}
+		}
+
+		private void discardUploadedStates() {
+			List<StreamStateHandle> uploadedStates = new ArrayList<>(newSstFiles.size() + miscFiles.size() + 1);
+			uploadedStates.addAll(newSstFiles.values());
+			uploadedStates.addAll(miscFiles.values());
+			uploadedStates.add(metaStateHandle);
+
+			try {
+				StateUtil.bestEffortDiscardAllStateObjects(uploadedStates);
+			} catch (Exception e) {
+				LOG.warn("Could not properly discard the uploaded files of incremental snapshot {}.", checkpointId, e);
+			}
+		}
+
+		private StreamStateHandle materializeLocalFile(File file) throws Exception {
+			InputStream inputStream = null;
+			CheckpointStreamFactory.CheckpointStateOutputStream outputStream = null;
+
+			try {
+				inputStream = new FileInputStream(file);
+				closeableRegistry.registerClosable(inputStream);
+
+				outputStream = checkpointStreamFactory.createCheckpointStateOutputStream(checkpointId, checkpointTimestamp);
+				closeableRegistry.registerClosable(outputStream);
+
+				byte[] buffer = new byte[COPY_BUFFER_SIZE];
+				int numBytes;
+				while ((numBytes = inputStream.read(buffer)) != -1) {
+					outputStream.write(buffer, 0, numBytes);
+				}
+
+				closeableRegistry.unregisterClosable(outputStream);
+				StreamStateHandle stateHandle = outputStream.closeAndGetHandle();
+				outputStream = null;
+
+				return stateHandle;
+			} finally {
+				if (inputStream != null) {
+					closeableRegistry.unregisterClosable(inputStream);
+					IOUtils.closeQuietly(inputStream);
+				}
+
+				if (outputStream != null) {
+					closeableRegistry.unregisterClosable(outputStream);
+					IOUtils.closeQuietly(outputStream);
+				}
+			}
+		}
+
+		private StreamStateHandle materializeMetaData() throws Exception {
+			CheckpointStreamFactory.CheckpointStateOutputStream outputStream =
+					checkpointStreamFactory.createCheckpointStateOutputStream(checkpointId, checkpointTimestamp);
+
+			try {
+				closeableRegistry.registerClosable(outputStream);
+
+				KeyedBackendSerializationProxy serializationProxy =
+						new KeyedBackendSerializationProxy(stateBackend.getKeySerializer(), stateMetaInfos);
+
+				serializationProxy.write(new DataOutputViewStreamWrapper(outputStream));
+
+				closeableRegistry.unregisterClosable(outputStream);
+				StreamStateHandle stateHandle = outputStream.closeAndGetHandle();
+				outputStream = null;
+
+				return stateHandle;
+			} finally {
+				if (outputStream != null) {
+					closeableRegistry.unregisterClosable(outputStream);
+					IOUtils.closeQuietly(outputStream);
+				}
+			}
+		}
+	}
+
 	@Override
 	public void restore(Collection<KeyGroupsStateHandle> restoreState) throws Exception {
 		LOG.info("Initializing RocksDB keyed state backend from snapshot.");
@@ -631,6 +1161,9 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 			if (MigrationUtil.isOldSavepointKeyedState(restoreState)) {
 				LOG.info("Converting RocksDB state from old savepoint.");
 				restoreOldSavepointKeyedState(restoreState);
+			} else if (containsIncrementalStateHandle(restoreState)) {
+				RocksDBIncrementalRestoreOperation restoreOperation = new RocksDBIncrementalRestoreOperation(this);
+				restoreOperation.doRestore(restoreState);
 			} else {
 				RocksDBRestoreOperation restoreOperation = new RocksDBRestoreOperation(this);
 				restoreOperation.doRestore(restoreState);
@@ -728,6 +1261,8 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 			currentStateHandleKVStateColumnFamilies = new ArrayList<>(metaInfoProxyList.size());
 
 			for (KeyedBackendSerializationProxy.StateMetaInfo<?, ?> metaInfoProxy : metaInfoProxyList) {
+				rocksDBKeyedStateBackend.checkTimerStateCanBeRestored(metaInfoProxy.getStateName());
+
 				Tuple2<ColumnFamilyHandle, RegisteredBackendStateMetaInfo<?, ?>> columnFamily =
 						rocksDBKeyedStateBackend.kvStateInformation.get(metaInfoProxy.getStateName());
 
@@ -794,6 +1329,181 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 		}
 	}
 
+	private static boolean containsIncrementalStateHandle(Collection<KeyGroupsStateHandle> restoreState) {
+		for (KeyGroupsStateHandle stateHandle : restoreState) {
+			if (stateHandle instanceof IncrementalKeyGroupsStateHandle) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Encapsulates the process of restoring a RocksDBKeyedStateBackend from an incremental snapshot.
+	 */
+	static final class RocksDBIncrementalRestoreOperation {
+
+		private final RocksDBKeyedStateBackend<?> stateBackend;
+
+		/**
+		 * Creates a restore operation object for the given state backend instance.
+		 *
+		 * @param stateBackend the state backend into which we restore
+		 */
+		RocksDBIncrementalRestoreOperation(RocksDBKeyedStateBackend<?> stateBackend) {
+			this.stateBackend = Preconditions.checkNotNull(stateBackend);
+		}
+
+		/**
+		 * Replaces the empty data base of the backend with the data base of the incremental snapshot.
+		 *
+		 * @param restoreStateHandles The state handles to restore, which must consist of exactly one
+		 *                            incremental snapshot for the key-group range of the backend.
+		 * @throws Exception
+		 */
+		void doRestore(Collection<KeyGroupsStateHandle> restoreStateHandles) throws Exception {
+			IncrementalKeyGroupsStateHandle restoreStateHandle = null;
+
+			for (KeyGroupsStateHandle stateHandle : restoreStateHandles) {
+				if (stateHandle == null) {
+					continue;
+				}
+
+				if (restoreStateHandle != null || !(stateHandle instanceof IncrementalKeyGroupsStateHandle)) {
+					throw new UnsupportedOperationException("Incremental snapshots can only be restored " +
+							"with the parallelism that created them. Take a savepoint to rescale the job.");
+				}
+
+				restoreStateHandle = (IncrementalKeyGroupsStateHandle) stateHandle;
+			}
+
+			Preconditions.checkState(restoreStateHandle != null);
+
+			if (!restoreStateHandle.getGroupRangeOffsets().getKeyGroupRange().equals(stateBackend.keyGroupRange)) {
+				throw new UnsupportedOperationException("The incremental snapshot for key-groups " +
+						restoreStateHandle.getGroupRangeOffsets().getKeyGroupRange() + " cannot be restored " +
+						"into a backend for key-groups " + stateBackend.keyGroupRange + ". Take a savepoint to rescale the job.");
+			}
+
+			Preconditions.checkState(!stateBackend.hasRegisteredState(),
+					"The incremental snapshot must be restored into an empty backend.");
+
+			List<KeyedBackendSerializationProxy.StateMetaInfo<?, ?>> stateMetaInfos =
+					readMetaData(restoreStateHandle.getMetaStateHandle());
+
+			// the restored files replace the empty data base that was created with the backend
+			stateBackend.db.close();
+			stateBackend.db = null;
+
+			File restorePath = stateBackend.instanceRocksDBPath;
+			FileUtils.deleteDirectory(restorePath);
+			if (!restorePath.mkdirs()) {
+				throw new IOException("Could not create RocksDB data directory " + restorePath + '.');
+			}
+
+			for (Map.Entry<String, StreamStateHandle> sharedFile : restoreStateHandle.getSharedState().entrySet()) {
+				restoreLocalFile(sharedFile.getValue(), new File(restorePath, sharedFile.getKey()));
+			}
+
+			for (Map.Entry<String, StreamStateHandle> privateFile : restoreStateHandle.getPrivateState().entrySet()) {
+				restoreLocalFile(privateFile.getValue(), new File(restorePath, privateFile.getKey()));
+			}
+
+			List<ColumnFamilyDescriptor> columnFamilyDescriptors = new ArrayList<>(1 + stateMetaInfos.size());
+			columnFamilyDescriptors.add(new ColumnFamilyDescriptor("default".getBytes(ConfigConstants.DEFAULT_CHARSET)));
+			for (KeyedBackendSerializationProxy.StateMetaInfo<?, ?> stateMetaInfo : stateMetaInfos) {
+				stateBackend.checkTimerStateCanBeRestored(stateMetaInfo.getStateName());
+
+				columnFamilyDescriptors.add(new ColumnFamilyDescriptor(
+						stateMetaInfo.getStateName().getBytes(ConfigConstants.DEFAULT_CHARSET),
+						stateBackend.columnOptions));
+			}
+
+			List<ColumnFamilyHandle> columnFamilyHandles = new ArrayList<>(columnFamilyDescriptors.size());
+			stateBackend.db = stateBackend.openDB(
+					restorePath.getAbsolutePath(), columnFamilyDescriptors, columnFamilyHandles);
+
+			for (int i = 0; i < stateMetaInfos.size(); ++i) {
+				RegisteredBackendStateMetaInfo<?, ?> stateMetaInfo =
+						new RegisteredBackendStateMetaInfo<>(stateMetaInfos.get(i));
+
+				stateBackend.kvStateInformation.put(
+						stateMetaInfo.getName(),
+						new Tuple2<ColumnFamilyHandle, RegisteredBackendStateMetaInfo<?, ?>>(
+								columnFamilyHandles.get(i + 1), stateMetaInfo));
+			}
+
+			// continue the lineage of the restored backend, so that its files are shared with the next checkpoint
+			stateBackend.backendIdentifier = restoreStateHandle.getBackendIdentifier();
+
+			synchronized (stateBackend.materializedSstFiles) {
+				stateBackend.materializedSstFiles.clear();
+				stateBackend.materializedSstFiles.put(
+						restoreStateHandle.getCheckpointId(), restoreStateHandle.getSharedState());
+				stateBackend.lastCompletedCheckpointId = restoreStateHandle.getCheckpointId();
+			}
+		}
+
+		private List<KeyedBackendSerializationProxy.StateMetaInfo<?, ?>> readMetaData(
+				StreamStateHandle metaStateHandle) throws Exception {
+
+			FSDataInputStream inputStream = null;
+
+			try {
+				inputStream = metaStateHandle.openInputStream();
+				stateBackend.cancelStreamRegistry.registerClosable(inputStream);
+
+				KeyedBackendSerializationProxy serializationProxy =
+						new KeyedBackendSerializationProxy(stateBackend.userCodeClassLoader);
+
+				serializationProxy.read(new DataInputViewStreamWrapper(inputStream));
+
+				return serializationProxy.getNamedStateSerializationProxies();
+			} finally {
+				if (inputStream != null) {
+					stateBackend.cancelStreamRegistry.unregisterClosable(inputStream);
+					IOUtils.closeQuietly(inputStream);
+				}
+			}
+		}
+
+		private void restoreLocalFile(StreamStateHandle stateHandle, File targetFile) throws IOException {
+			FSDataInputStream inputStream = null;
+			OutputStream outputStream = null;
+
+			try {
+				inputStream = stateHandle.openInputStream();
+				stateBackend.cancelStreamRegistry.registerClosable(inputStream);
+
+				outputStream = new FileOutputStream(targetFile);
+				stateBackend.cancelStreamRegistry.registerClosable(outputStream);
+
+				IOUtils.copyBytes(inputStream, outputStream, false);
+			} finally {
+				if (inputStream != null) {
+					stateBackend.cancelStreamRegistry.unregisterClosable(inputStream);
+					IOUtils.closeQuietly(inputStream);
+				}
+
+				if (outputStream != null) {
+					stateBackend.cancelStreamRegistry.unregisterClosable(outputStream);
+					outputStream.close();
+				}
+			}
+		}
+	}
+
+	@Override
+	public void notifyCheckpointComplete(long completedCheckpointId) {
+		synchronized (materializedSstFiles) {
+			// only snapshots of this backend can become the base of the next incremental snapshot
+			if (materializedSstFiles.containsKey(completedCheckpointId)) {
+				lastCompletedCheckpointId = completedCheckpointId;
+				materializedSstFiles.headMap(completedCheckpointId).clear();
+			}
+		}
+	}
+
 	// ------------------------------------------------------------------------
 	//  State factories
 	// ------------------------------------------------------------------------
@@ -845,6 +1555,46 @@ public class RocksDBKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 		}
 	}
 
+	/**
+	 * Creates the queue for the timers of a timer service of the operator, if timers are stored in RocksDB.
+	 * The timers of each queue are stored in their own column family, which is registered like the column
+	 * family of a k/v state, so that the timers are part of the full and incremental snapshots of this backend.
+	 */
+	@Override
+	public <N> InternalTimerQueue<K, N> createTimerQueue(String name, TypeSerializer<N> namespaceSerializer) {
+		if (!enableTimersInRocksDB) {
+			return null;
+		}
+
+		ValueStateDescriptor<Void> timersDescriptor =
+				new ValueStateDescriptor<>(TIMER_STATE_NAME_PREFIX + name, VoidSerializer.INSTANCE);
+
+		try {
+			ColumnFamilyHandle columnFamily = getColumnFamily(timersDescriptor, namespaceSerializer);
+			RocksDBTimerQueue<K, N> timerQueue = new RocksDBTimerQueue<>(columnFamily, namespaceSerializer, this);
+			timerQueues.add(timerQueue);
+			return timerQueue;
+		} catch (IOException e) {
+			throw new FlinkRuntimeException("Could not create the timer queue " + name + '.', e);
+		}
+	}
+
+	/**
+	 * The timers of a {@link RocksDBTimerQueue} are only part of the k/v state of the snapshots, and not of
+	 * the raw keyed state to which the timer services write their timers. A snapshot that contains timers
+	 * in RocksDB can therefore only be restored if timers are stored in RocksDB, otherwise the timers
+	 * would be silently lost.
+	 */
+	private void checkTimerStateCanBeRestored(String stateName) {
+		if (!enableTimersInRocksDB && stateName.startsWith(TIMER_STATE_NAME_PREFIX)) {
+			throw new IllegalStateException("The snapshot contains the timers " +
+					stateName.substring(TIMER_STATE_NAME_PREFIX.length()) + " that were stored in RocksDB, " +
+					"but storing timers in RocksDB is disabled. Enable it with " +
+					"RocksDBStateBackend#setTimersInRocksDBEnabled(true) or '" +
+					RocksDBStateBackendFactory.ROCKSDB_TIMERS_CONF_KEY + "' to restore the timers.");
+		}
+	}
+
 	@Override
 	protected <N, T> InternalValueState<N, T> createValueState(
 			TypeSerializer<N> namespaceSerializer,
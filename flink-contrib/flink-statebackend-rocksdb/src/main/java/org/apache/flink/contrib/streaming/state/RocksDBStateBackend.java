@@ -21,14 +21,18 @@ import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.common.JobID;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.core.fs.Path;
+import org.apache.flink.metrics.MetricGroup;
 import org.apache.flink.runtime.execution.Environment;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
 import org.apache.flink.runtime.state.AbstractStateBackend;
 import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.DefaultOperatorStateBackend;
 import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.OperatorStateBackend;
 import org.apache.flink.runtime.state.filesystem.FsStateBackend;
 import org.apache.flink.util.AbstractID;
+import org.apache.flink.util.Preconditions;
 
 import org.rocksdb.ColumnFamilyOptions;
 import org.rocksdb.DBOptions;
@@ -106,6 +110,15 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 	/** The options factory to create the RocksDB options in the cluster */
 	private OptionsFactory optionsFactory;
 
+	/** True if checkpoints only upload the RocksDB files that changed since the last checkpoint */
+	private final boolean enableIncrementalCheckpointing;
+
+	/** True if the timers of keyed operators are stored in RocksDB instead of on the Java heap */
+	private boolean enableTimersInRocksDB;
+
+	/** The number of values of value states that each keyed backend caches deserialized, 0 to disable the cache */
+	private int stateCacheSize;
+
 	/** Whether we already lazily initialized our local storage directories. */
 	private transient boolean isInitialized = false;
 
@@ -126,6 +139,23 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 		this(new Path(checkpointDataUri).toUri());
 	}
 
+	/**
+	 * Creates a new {@code RocksDBStateBackend} that stores its checkpoint data in the
+	 * file system and location defined by the given URI.
+	 *
+	 * <p>A state backend that stores checkpoints in HDFS or S3 must specify the file system
+	 * host and port in the URI, or have the Hadoop configuration that describes the file system
+	 * (host / high-availability group / possibly credentials) either referenced from the Flink
+	 * config, or included in the classpath.
+	 *
+	 * @param checkpointDataUri The URI describing the filesystem and path to the checkpoint data directory.
+	 * @param enableIncrementalCheckpointing True if incremental checkpointing is enabled.
+	 * @throws IOException Thrown, if no file system can be found for the scheme in the URI.
+	 */
+	public RocksDBStateBackend(String checkpointDataUri, boolean enableIncrementalCheckpointing) throws IOException {
+		this(new Path(checkpointDataUri).toUri(), enableIncrementalCheckpointing);
+	}
+
 	/**
 	 * Creates a new {@code RocksDBStateBackend} that stores its checkpoint data in the
 	 * file system and location defined by the given URI.
@@ -142,6 +172,23 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 		this(new FsStateBackend(checkpointDataUri));
 	}
 
+	/**
+	 * Creates a new {@code RocksDBStateBackend} that stores its checkpoint data in the
+	 * file system and location defined by the given URI.
+	 *
+	 * <p>A state backend that stores checkpoints in HDFS or S3 must specify the file system
+	 * host and port in the URI, or have the Hadoop configuration that describes the file system
+	 * (host / high-availability group / possibly credentials) either referenced from the Flink
+	 * config, or included in the classpath.
+	 *
+	 * @param checkpointDataUri The URI describing the filesystem and path to the checkpoint data directory.
+	 * @param enableIncrementalCheckpointing True if incremental checkpointing is enabled.
+	 * @throws IOException Thrown, if no file system can be found for the scheme in the URI.
+	 */
+	public RocksDBStateBackend(URI checkpointDataUri, boolean enableIncrementalCheckpointing) throws IOException {
+		this(new FsStateBackend(checkpointDataUri), enableIncrementalCheckpointing);
+	}
+
 	/**
 	 * Creates a new {@code RocksDBStateBackend} that uses the given state backend to store its
 	 * checkpoint data streams. Typically, one would supply a filesystem or database state backend
@@ -153,7 +200,26 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 	 * @param checkpointStreamBackend The backend to store the
 	 */
 	public RocksDBStateBackend(AbstractStateBackend checkpointStreamBackend) {
+		this(checkpointStreamBackend, false);
+	}
+
+	/**
+	 * Creates a new {@code RocksDBStateBackend} that uses the given state backend to store its
+	 * checkpoint data streams. Typically, one would supply a filesystem or database state backend
+	 * here where the snapshots from RocksDB would be stored.
+	 *
+	 * <p>With incremental checkpointing, each checkpoint is based on a native RocksDB checkpoint
+	 * and only uploads the SST files that were created since the last completed checkpoint. The
+	 * other SST files are shared with earlier checkpoints. Savepoints are always full snapshots.
+	 * Incremental checkpoints cannot be externalized and can only be restored with the same
+	 * parallelism.
+	 *
+	 * @param checkpointStreamBackend The backend to store the
+	 * @param enableIncrementalCheckpointing True if incremental checkpointing is enabled.
+	 */
+	public RocksDBStateBackend(AbstractStateBackend checkpointStreamBackend, boolean enableIncrementalCheckpointing) {
 		this.checkpointStreamBackend = requireNonNull(checkpointStreamBackend);
+		this.enableIncrementalCheckpointing = enableIncrementalCheckpointing;
 	}
 
 	// ------------------------------------------------------------------------
@@ -249,6 +315,10 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 		File instanceBasePath =
 				new File(getNextStoragePath(), "job-" + jobId.toString() + "_op-" + operatorIdentifier + "_uuid-" + UUID.randomUUID());
 
+		MetricGroup stateCacheMetricGroup = stateCacheSize > 0 && env.getMetricGroup() != null ?
+				env.getMetricGroup().addGroup("RocksDBStateCache").addGroup(operatorIdentifier) :
+				null;
+
 		return new RocksDBKeyedStateBackend<>(
 				jobID,
 				operatorIdentifier,
@@ -260,7 +330,23 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 				keySerializer,
 				numberOfKeyGroups,
 				keyGroupRange,
-				env.getExecutionConfig());
+				env.getExecutionConfig(),
+				enableIncrementalCheckpointing,
+				enableTimersInRocksDB,
+				stateCacheSize,
+				stateCacheMetricGroup);
+	}
+
+	@Override
+	public OperatorStateBackend createOperatorStateBackend(
+			Environment env,
+			String operatorIdentifier) throws Exception {
+
+		// operator state is snapshotted asynchronously, like the keyed state in RocksDB
+		return new DefaultOperatorStateBackend(
+				env.getUserClassLoader(),
+				env.getExecutionConfig(),
+				true);
 	}
 
 	// ------------------------------------------------------------------------
@@ -336,6 +422,56 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 		}
 	}
 
+	/**
+	 * Gets whether incremental checkpointing is enabled for this state backend.
+	 */
+	public boolean isIncrementalCheckpointsEnabled() {
+		return enableIncrementalCheckpointing;
+	}
+
+	/**
+	 * Sets whether the timers of keyed operators are stored in RocksDB. By default, the timers are
+	 * kept on the Java heap, which is faster but limits the number of timers to what fits into memory.
+	 *
+	 * <p>Timers in RocksDB are part of the snapshots of the keyed state, so that they are also covered
+	 * by incremental checkpoints.
+	 *
+	 * @param enableTimersInRocksDB True if the timers should be stored in RocksDB.
+	 */
+	public void setTimersInRocksDBEnabled(boolean enableTimersInRocksDB) {
+		this.enableTimersInRocksDB = enableTimersInRocksDB;
+	}
+
+	/**
+	 * Gets whether the timers of keyed operators are stored in RocksDB.
+	 */
+	public boolean isTimersInRocksDBEnabled() {
+		return enableTimersInRocksDB;
+	}
+
+	/**
+	 * Sets the number of values of value states that each keyed state backend keeps deserialized in a
+	 * write-back cache. Cached values are read and updated without serialization and without accessing
+	 * RocksDB, which pays off if the same keys are accessed repeatedly. Updated values are written to
+	 * RocksDB when they are evicted and before each checkpoint. By default, no values are cached.
+	 *
+	 * <p>Like with the heap state backends, values that are returned by a cached value state must not be
+	 * modified, unless they are written back with {@code update()}. Queryable states are never cached.
+	 *
+	 * @param stateCacheSize The maximum number of cached values per keyed state backend, 0 to disable the cache.
+	 */
+	public void setStateCacheSize(int stateCacheSize) {
+		Preconditions.checkArgument(stateCacheSize >= 0, "The state cache size must not be negative.");
+		this.stateCacheSize = stateCacheSize;
+	}
+
+	/**
+	 * Gets the number of values of value states that each keyed state backend caches, 0 if the cache is disabled.
+	 */
+	public int getStateCacheSize() {
+		return stateCacheSize;
+	}
+
 	// ------------------------------------------------------------------------
 	//  Parametrize with RocksDB Options
 	// ------------------------------------------------------------------------
@@ -433,6 +569,9 @@ public class RocksDBStateBackend extends AbstractStateBackend {
 			", configuredDbBasePaths=" + Arrays.toString(configuredDbBasePaths) +
 			", initializedDbBasePaths=" + Arrays.toString(initializedDbBasePaths) +
 			", checkpointStreamBackend=" + checkpointStreamBackend +
+			", enableIncrementalCheckpointing=" + enableIncrementalCheckpointing +
+			", enableTimersInRocksDB=" + enableTimersInRocksDB +
+			", stateCacheSize=" + stateCacheSize +
 			'}';
 	}
 
@@ -43,6 +43,12 @@ public class RocksDBStateBackendFactory implements StateBackendFactory<RocksDBSt
 	public static final String CHECKPOINT_DIRECTORY_URI_CONF_KEY = "state.backend.fs.checkpointdir";
 	/** The key under which the config stores the directory where RocksDB should be stored */
 	public static final String ROCKSDB_CHECKPOINT_DIRECTORY_URI_CONF_KEY = "state.backend.rocksdb.checkpointdir";
+	/** The key under which the config stores whether checkpoints should be incremental */
+	public static final String ROCKSDB_INCREMENTAL_CHECKPOINTS_CONF_KEY = "state.backend.rocksdb.checkpoints.incremental";
+	/** The key under which the config stores whether the timers of keyed operators should be stored in RocksDB */
+	public static final String ROCKSDB_TIMERS_CONF_KEY = "state.backend.rocksdb.timers";
+	/** The key under which the config stores the number of values that each keyed backend caches deserialized */
+	public static final String ROCKSDB_STATE_CACHE_SIZE_CONF_KEY = "state.backend.rocksdb.state-cache.size";
 
 	@Override
 	public RocksDBStateBackend createFromConfig(Configuration config) 
@@ -50,6 +56,9 @@ public class RocksDBStateBackendFactory implements StateBackendFactory<RocksDBSt
 
 		final String checkpointDirURI = config.getString(CHECKPOINT_DIRECTORY_URI_CONF_KEY, null);
 		final String rocksdbLocalPath = config.getString(ROCKSDB_CHECKPOINT_DIRECTORY_URI_CONF_KEY, null);
+		final boolean incrementalCheckpoints = config.getBoolean(ROCKSDB_INCREMENTAL_CHECKPOINTS_CONF_KEY, false);
+		final boolean timersInRocksDB = config.getBoolean(ROCKSDB_TIMERS_CONF_KEY, false);
+		final int stateCacheSize = config.getInteger(ROCKSDB_STATE_CACHE_SIZE_CONF_KEY, 0);
 
 		if (checkpointDirURI == null) {
 			throw new IllegalConfigurationException(
@@ -59,13 +68,16 @@ public class RocksDBStateBackendFactory implements StateBackendFactory<RocksDBSt
 
 		try {
 			Path path = new Path(checkpointDirURI);
-			RocksDBStateBackend backend = new RocksDBStateBackend(path.toUri());
+			RocksDBStateBackend backend = new RocksDBStateBackend(path.toUri(), incrementalCheckpoints);
 			if (rocksdbLocalPath != null) {
 				String[] directories = rocksdbLocalPath.split(",|" + File.pathSeparator);
 				backend.setDbStoragePaths(directories);
 			}
-			LOG.info("State backend is set to RocksDB (configured DB storage paths {}, checkpoints to filesystem {} ) ",
-					backend.getDbStoragePaths(), path);
+			backend.setTimersInRocksDBEnabled(timersInRocksDB);
+			backend.setStateCacheSize(stateCacheSize);
+			LOG.info("State backend is set to RocksDB (configured DB storage paths {}, checkpoints to filesystem {}, " +
+					"incremental checkpoints {}, timers in RocksDB {}, state cache size {}) ",
+					backend.getDbStoragePaths(), path, incrementalCheckpoints, timersInRocksDB, stateCacheSize);
 
 			return backend;
 		}
@@ -0,0 +1,331 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.core.memory.ByteArrayOutputStreamWithPos;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.metrics.SimpleCounter;
+import org.apache.flink.util.Preconditions;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded write-back cache of the deserialized values of the {@link RocksDBValueState RocksDBValueStates}
+ * of a {@link RocksDBKeyedStateBackend}. Reading a cached value or updating a value does not serialize
+ * anything and does not access RocksDB.
+ *
+ * <p>The entries are identified by the column family of the state, the key-group, the key and the namespace,
+ * and are evicted in least-recently-used order. Updated entries are only written to RocksDB when they are
+ * evicted, or when the backend flushes the cache before a snapshot. In both cases, the dirty entries are
+ * written in one {@link WriteBatch}. Entries are evicted in batches of a tenth of the capacity, so that
+ * the write batches do not become too small.
+ *
+ * <p>The keys and namespaces of the entries are copies, so that objects which are reused by the caller do not
+ * change the entries. The {@link RocksDBValueState} also copies mutable values when they are read or updated,
+ * so that a value which is modified without an update is not changed in the cache, just like in RocksDB.
+ *
+ * <p>The cache is not thread-safe and must only be accessed by the task thread.
+ */
+class RocksDBStateCache {
+
+	/** The backend that owns the RocksDB instance */
+	private final RocksDBKeyedStateBackend<?> backend;
+
+	/** The maximum number of cached entries */
+	private final int capacity;
+
+	/** The number of entries that are evicted together when the cache is full */
+	private final int evictionBatchSize;
+
+	/** The cached entries in least-recently-used order */
+	private final LinkedHashMap<CacheKey, CacheEntry> entries;
+
+	private final Counter hits;
+
+	private final Counter misses;
+
+	private final WriteOptions writeOptions;
+
+	/** Streams for serializing the entries that are written to RocksDB */
+	private final ByteArrayOutputStreamWithPos keySerializationStream;
+	private final DataOutputViewStreamWrapper keySerializationDataOutputView;
+	private final ByteArrayOutputStreamWithPos valueSerializationStream;
+	private final DataOutputViewStreamWrapper valueSerializationDataOutputView;
+
+	RocksDBStateCache(RocksDBKeyedStateBackend<?> backend, int capacity, MetricGroup metricGroup) {
+		Preconditions.checkArgument(capacity > 0, "The capacity of the cache must be positive.");
+
+		this.backend = Preconditions.checkNotNull(backend);
+		this.capacity = capacity;
+		this.evictionBatchSize = Math.max(1, capacity / 10);
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+
+		this.hits = new SimpleCounter();
+		this.misses = new SimpleCounter();
+
+		this.writeOptions = new WriteOptions();
+		this.writeOptions.setDisableWAL(true);
+
+		this.keySerializationStream = new ByteArrayOutputStreamWithPos(128);
+		this.keySerializationDataOutputView = new DataOutputViewStreamWrapper(keySerializationStream);
+		this.valueSerializationStream = new ByteArrayOutputStreamWithPos(128);
+		this.valueSerializationDataOutputView = new DataOutputViewStreamWrapper(valueSerializationStream);
+
+		if (metricGroup != null) {
+			registerMetrics(metricGroup);
+		}
+	}
+
+	private void registerMetrics(MetricGroup metricGroup) {
+		metricGroup.counter("numHits", hits);
+		metricGroup.counter("numMisses", misses);
+
+		metricGroup.gauge("hitRate", new Gauge<Double>() {
+			@Override
+			public Double getValue() {
+				return getHitRate();
+			}
+		});
+
+		metricGroup.gauge("numEntries", new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return entries.size();
+			}
+		});
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns the cached entry for the given key, or null if the key is not cached.
+	 */
+	CacheEntry get(CacheKey key) {
+		CacheEntry entry = entries.get(key);
+
+		if (entry != null) {
+			hits.inc();
+		} else {
+			misses.inc();
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Caches the value of the given key, evicting the least recently used entries if the cache is full.
+	 *
+	 * @param key The key of the value.
+	 * @param state The state of the value, which writes the value to RocksDB.
+	 * @param value The value, or null if RocksDB holds no value for the key.
+	 * @param dirty True if the value differs from the value in RocksDB.
+	 */
+	void put(CacheKey key, RocksDBValueState<?, ?, ?> state, Object value, boolean dirty) throws IOException {
+		CacheEntry entry = entries.get(key);
+
+		if (entry != null) {
+			// a clean value is either loaded from RocksDB or was just written to RocksDB
+			entry.value = value;
+			entry.dirty = dirty;
+		} else {
+			// the key and namespace of the lookup may be reused objects of the caller
+			entries.put(state.copyCacheKey(key), new CacheEntry(state, value, dirty));
+
+			if (entries.size() > capacity) {
+				evict(evictionBatchSize);
+			}
+		}
+	}
+
+	/**
+	 * Writes all dirty entries to RocksDB. The entries stay in the cache.
+	 */
+	void flush() throws IOException {
+		try (WriteBatch writeBatch = new WriteBatch()) {
+			int numWrites = 0;
+
+			for (Map.Entry<CacheKey, CacheEntry> entry : entries.entrySet()) {
+				if (entry.getValue().dirty) {
+					write(writeBatch, entry.getKey(), entry.getValue());
+					entry.getValue().dirty = false;
+					++numWrites;
+				}
+			}
+
+			if (numWrites > 0) {
+				backend.db.write(writeOptions, writeBatch);
+			}
+		} catch (RocksDBException e) {
+			throw new IOException("Error while writing the state cache to RocksDB.", e);
+		}
+	}
+
+	/**
+	 * Drops all entries without writing them to RocksDB and releases the native resources of the cache.
+	 */
+	void dispose() {
+		entries.clear();
+		writeOptions.close();
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	long getNumHits() {
+		return hits.getCount();
+	}
+
+	long getNumMisses() {
+		return misses.getCount();
+	}
+
+	double getHitRate() {
+		long numHits = hits.getCount();
+		long numAccesses = numHits + misses.getCount();
+
+		return numAccesses > 0 ? (double) numHits / numAccesses : 0.0;
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Removes the given number of least recently used entries and writes the dirty ones to RocksDB.
+	 */
+	private void evict(int numEntries) throws IOException {
+		try (WriteBatch writeBatch = new WriteBatch()) {
+			int numWrites = 0;
+
+			Iterator<Map.Entry<CacheKey, CacheEntry>> iterator = entries.entrySet().iterator();
+			for (int i = 0; i < numEntries && iterator.hasNext(); ++i) {
+				Map.Entry<CacheKey, CacheEntry> entry = iterator.next();
+
+				if (entry.getValue().dirty) {
+					write(writeBatch, entry.getKey(), entry.getValue());
+					++numWrites;
+				}
+
+				iterator.remove();
+			}
+
+			if (numWrites > 0) {
+				backend.db.write(writeOptions, writeBatch);
+			}
+		} catch (RocksDBException e) {
+			throw new IOException("Error while writing evicted entries of the state cache to RocksDB.", e);
+		}
+	}
+
+	private void write(WriteBatch writeBatch, CacheKey key, CacheEntry entry) throws IOException {
+		// dirty entries always have a value, deletions are written to RocksDB directly
+		entry.state.serializeCachedKeyAndValue(
+				key,
+				entry.value,
+				keySerializationStream,
+				keySerializationDataOutputView,
+				valueSerializationStream,
+				valueSerializationDataOutputView);
+
+		writeBatch.put(key.columnFamily, keySerializationStream.toByteArray(), valueSerializationStream.toByteArray());
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Identifies a cached value by the column family of its state, its key-group, key and namespace.
+	 */
+	static final class CacheKey {
+
+		final ColumnFamilyHandle columnFamily;
+
+		final int keyGroup;
+
+		final Object key;
+
+		final Object namespace;
+
+		private final int hashCode;
+
+		CacheKey(ColumnFamilyHandle columnFamily, int keyGroup, Object key, Object namespace) {
+			this.columnFamily = columnFamily;
+			this.keyGroup = keyGroup;
+			this.key = key;
+			this.namespace = namespace;
+
+			int result = System.identityHashCode(columnFamily);
+			result = 31 * result + keyGroup;
+			result = 31 * result + key.hashCode();
+			result = 31 * result + namespace.hashCode();
+			this.hashCode = result;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+
+			CacheKey that = (CacheKey) o;
+
+			return columnFamily == that.columnFamily &&
+					keyGroup == that.keyGroup &&
+					key.equals(that.key) &&
+					namespace.equals(that.namespace);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	/**
+	 * A cached value and the state that writes it to RocksDB.
+	 */
+	static final class CacheEntry {
+
+		final RocksDBValueState<?, ?, ?> state;
+
+		/** The value, or null if RocksDB holds no value for the key */
+		Object value;
+
+		/** True if the value was updated since it was last written to RocksDB */
+		boolean dirty;
+
+		CacheEntry(RocksDBValueState<?, ?, ?> state, Object value, boolean dirty) {
+			this.state = state;
+			this.value = value;
+			this.dirty = dirty;
+		}
+	}
+}
@@ -0,0 +1,367 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.ByteArrayInputStreamWithPos;
+import org.apache.flink.core.memory.ByteArrayOutputStreamWithPos;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.streaming.api.operators.InternalTimer;
+import org.apache.flink.streaming.api.operators.InternalTimerHeap;
+import org.apache.flink.streaming.api.operators.InternalTimerQueue;
+import org.apache.flink.util.FlinkRuntimeException;
+import org.apache.flink.util.Preconditions;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteOptions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An {@link InternalTimerQueue} that stores its timers in a column family of the RocksDB instance
+ * of a {@link RocksDBKeyedStateBackend}, so that the number of timers is not limited by the memory.
+ *
+ * <p>Every timer is a row with an empty value. The key of the row is the key-group of the timer,
+ * followed by the timestamp, the key and the namespace of the timer. The timestamp is written
+ * big-endian with a flipped sign bit, so that RocksDB orders the timers of each key-group by
+ * timestamp. Because the rows start with the key-group, like the rows of the k/v states, the timers
+ * are part of the full and incremental snapshots of the backend, and are redistributed with the
+ * key-groups on rescaling.
+ *
+ * <p>The queue keeps the first timer of every local key-group in memory, in an {@link InternalTimerHeap}.
+ * {@link #peek()} therefore never accesses RocksDB, and {@link #poll()} only needs one seek to load
+ * the next timer of the key-group of the polled timer. The heads are loaded lazily, so that restoring
+ * timers into the queue only writes to RocksDB.
+ *
+ * <p>The queue does not read before writing. Therefore {@link #add(InternalTimer)} and
+ * {@link #remove(InternalTimer)} always return true.
+ *
+ * @param <K> Type of the keys to which timers are scoped.
+ * @param <N> Type of the namespace to which timers are scoped.
+ */
+class RocksDBTimerQueue<K, N> implements InternalTimerQueue<K, N> {
+
+	/** The value of every timer row */
+	private static final byte[] EMPTY_VALUE = new byte[0];
+
+	/** The backend that owns the RocksDB instance */
+	private final RocksDBKeyedStateBackend<K> backend;
+
+	/** The column family that holds the timers of this queue */
+	private final ColumnFamilyHandle columnFamily;
+
+	private final TypeSerializer<K> keySerializer;
+
+	private final TypeSerializer<N> namespaceSerializer;
+
+	/** The local key-groups of the backend */
+	private final KeyGroupRange localKeyGroupRange;
+
+	/** The first timer of every local key-group, or null if the key-group has no timers */
+	private final InternalTimer<K, N>[] headTimersByKeyGroup;
+
+	/** The first timers of the local key-groups, ordered by timestamp */
+	private final InternalTimerHeap<K, N> headTimers;
+
+	/** True once the first timers of the local key-groups were loaded from RocksDB */
+	private boolean headTimersLoaded;
+
+	private final WriteOptions writeOptions;
+
+	private final ByteArrayOutputStreamWithPos keySerializationStream;
+
+	private final DataOutputViewStreamWrapper keySerializationDataOutputView;
+
+	@SuppressWarnings("unchecked")
+	RocksDBTimerQueue(
+			ColumnFamilyHandle columnFamily,
+			TypeSerializer<N> namespaceSerializer,
+			RocksDBKeyedStateBackend<K> backend) {
+
+		this.columnFamily = Preconditions.checkNotNull(columnFamily);
+		this.namespaceSerializer = Preconditions.checkNotNull(namespaceSerializer);
+		this.backend = Preconditions.checkNotNull(backend);
+		this.keySerializer = backend.getKeySerializer();
+		this.localKeyGroupRange = backend.getKeyGroupRange();
+
+		this.headTimersByKeyGroup = new InternalTimer[localKeyGroupRange.getNumberOfKeyGroups()];
+		this.headTimers = new InternalTimerHeap<>(
+				Math.max(1, localKeyGroupRange.getNumberOfKeyGroups()),
+				localKeyGroupRange,
+				backend.getNumberOfKeyGroups());
+
+		this.writeOptions = new WriteOptions();
+		this.writeOptions.setDisableWAL(true);
+
+		this.keySerializationStream = new ByteArrayOutputStreamWithPos(128);
+		this.keySerializationDataOutputView = new DataOutputViewStreamWrapper(keySerializationStream);
+	}
+
+	@Override
+	public InternalTimer<K, N> peek() {
+		loadHeadTimers();
+		return headTimers.peek();
+	}
+
+	@Override
+	public InternalTimer<K, N> poll() {
+		loadHeadTimers();
+
+		InternalTimer<K, N> headTimer = headTimers.poll();
+		if (headTimer == null) {
+			return null;
+		}
+
+		int keyGroupIdx = getKeyGroupOfTimer(headTimer);
+
+		try {
+			backend.db.remove(columnFamily, writeOptions, serializeTimer(headTimer, keyGroupIdx));
+		} catch (IOException | RocksDBException e) {
+			throw new FlinkRuntimeException("Error while removing timer from RocksDB.", e);
+		}
+
+		headTimersByKeyGroup[keyGroupIdx - localKeyGroupRange.getStartKeyGroup()] = null;
+		loadHeadTimer(keyGroupIdx);
+
+		return headTimer;
+	}
+
+	@Override
+	public boolean add(InternalTimer<K, N> timer) {
+		int keyGroupIdx = getKeyGroupOfTimer(timer);
+
+		try {
+			backend.db.put(columnFamily, writeOptions, serializeTimer(timer, keyGroupIdx), EMPTY_VALUE);
+		} catch (IOException | RocksDBException e) {
+			throw new FlinkRuntimeException("Error while adding timer to RocksDB.", e);
+		}
+
+		// if the heads are not loaded yet, the new timer is picked up when they are loaded
+		if (headTimersLoaded) {
+			int localIdx = keyGroupIdx - localKeyGroupRange.getStartKeyGroup();
+			InternalTimer<K, N> headTimer = headTimersByKeyGroup[localIdx];
+
+			if (headTimer == null || timer.getTimestamp() < headTimer.getTimestamp()) {
+				if (headTimer != null) {
+					headTimers.remove(headTimer);
+				}
+
+				headTimersByKeyGroup[localIdx] = timer;
+				headTimers.add(timer);
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public boolean remove(InternalTimer<K, N> timer) {
+		int keyGroupIdx = getKeyGroupOfTimer(timer);
+
+		try {
+			backend.db.remove(columnFamily, writeOptions, serializeTimer(timer, keyGroupIdx));
+		} catch (IOException | RocksDBException e) {
+			throw new FlinkRuntimeException("Error while removing timer from RocksDB.", e);
+		}
+
+		if (headTimersLoaded) {
+			int localIdx = keyGroupIdx - localKeyGroupRange.getStartKeyGroup();
+			InternalTimer<K, N> headTimer = headTimersByKeyGroup[localIdx];
+
+			if (timer.equals(headTimer)) {
+				headTimers.remove(headTimer);
+				headTimersByKeyGroup[localIdx] = null;
+				loadHeadTimer(keyGroupIdx);
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the number of timers in the queue. This scans all timers in RocksDB.
+	 */
+	@Override
+	public int size() {
+		int size = 0;
+
+		RocksIterator iterator = backend.db.newIterator(columnFamily);
+		try {
+			for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+				++size;
+			}
+		} finally {
+			iterator.close();
+		}
+
+		return size;
+	}
+
+	/**
+	 * The timers are part of the snapshots of the keyed state backend and are therefore not written to
+	 * the snapshot of the timer service. The backend refuses to restore the timers of a snapshot if
+	 * timers are not stored in RocksDB.
+	 */
+	@Override
+	public Collection<InternalTimer<K, N>> getTimersForKeyGroupSnapshot(int keyGroupIdx) {
+		return null;
+	}
+
+	/**
+	 * Returns an iterator over a copy of all timers, ordered by key-group and timestamp. This scans all
+	 * timers in RocksDB.
+	 */
+	@Override
+	public Iterator<InternalTimer<K, N>> iterator() {
+		List<InternalTimer<K, N>> timers = new ArrayList<>();
+
+		RocksIterator iterator = backend.db.newIterator(columnFamily);
+		try {
+			for (iterator.seekToFirst(); iterator.isValid(); iterator.next()) {
+				timers.add(deserializeTimer(iterator.key()));
+			}
+		} finally {
+			iterator.close();
+		}
+
+		return timers.iterator();
+	}
+
+	// ------------------------------------------------------------------------
+	//  head timers
+	// ------------------------------------------------------------------------
+
+	private void loadHeadTimers() {
+		if (headTimersLoaded) {
+			return;
+		}
+
+		for (int keyGroupIdx : localKeyGroupRange) {
+			loadHeadTimer(keyGroupIdx);
+		}
+
+		headTimersLoaded = true;
+	}
+
+	/**
+	 * Loads the first timer of the given key-group from RocksDB, if the key-group has any timers.
+	 */
+	private void loadHeadTimer(int keyGroupIdx) {
+		byte[] keyGroupPrefix = serializeKeyGroup(keyGroupIdx);
+
+		RocksIterator iterator = backend.db.newIterator(columnFamily);
+		try {
+			iterator.seek(keyGroupPrefix);
+
+			if (iterator.isValid() && startsWith(iterator.key(), keyGroupPrefix)) {
+				InternalTimer<K, N> headTimer = deserializeTimer(iterator.key());
+				headTimersByKeyGroup[keyGroupIdx - localKeyGroupRange.getStartKeyGroup()] = headTimer;
+				headTimers.add(headTimer);
+			}
+		} finally {
+			iterator.close();
+		}
+	}
+
+	private static boolean startsWith(byte[] bytes, byte[] prefix) {
+		if (bytes.length < prefix.length) {
+			return false;
+		}
+
+		for (int i = 0; i < prefix.length; ++i) {
+			if (bytes[i] != prefix[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Releases the native resources of the queue. Called by the backend when it is disposed.
+	 */
+	void dispose() {
+		writeOptions.close();
+	}
+
+	// ------------------------------------------------------------------------
+	//  serialization
+	// ------------------------------------------------------------------------
+
+	private int getKeyGroupOfTimer(InternalTimer<K, N> timer) {
+		return KeyGroupRangeAssignment.assignToKeyGroup(timer.getKey(), backend.getNumberOfKeyGroups());
+	}
+
+	private byte[] serializeKeyGroup(int keyGroupIdx) {
+		keySerializationStream.reset();
+
+		try {
+			writeKeyGroup(keyGroupIdx);
+		} catch (IOException e) {
+			throw new FlinkRuntimeException("Error while serializing the key-group of a timer.", e);
+		}
+
+		return keySerializationStream.toByteArray();
+	}
+
+	private byte[] serializeTimer(InternalTimer<K, N> timer, int keyGroupIdx) throws IOException {
+		keySerializationStream.reset();
+
+		writeKeyGroup(keyGroupIdx);
+
+		// flip the sign bit, so that the unsigned byte order of the timestamps is their numeric order
+		keySerializationDataOutputView.writeLong(timer.getTimestamp() ^ Long.MIN_VALUE);
+		keySerializer.serialize(timer.getKey(), keySerializationDataOutputView);
+		namespaceSerializer.serialize(timer.getNamespace(), keySerializationDataOutputView);
+
+		return keySerializationStream.toByteArray();
+	}
+
+	private void writeKeyGroup(int keyGroupIdx) throws IOException {
+		for (int i = backend.getKeyGroupPrefixBytes(); --i >= 0;) {
+			keySerializationDataOutputView.writeByte(keyGroupIdx >>> (i << 3));
+		}
+	}
+
+	private InternalTimer<K, N> deserializeTimer(byte[] bytes) {
+		ByteArrayInputStreamWithPos inputStream = new ByteArrayInputStreamWithPos(bytes);
+		DataInputViewStreamWrapper inputView = new DataInputViewStreamWrapper(inputStream);
+
+		try {
+			inputView.skipBytesToRead(backend.getKeyGroupPrefixBytes());
+
+			long timestamp = inputView.readLong() ^ Long.MIN_VALUE;
+			K key = keySerializer.deserialize(inputView);
+			N namespace = namespaceSerializer.deserialize(inputView);
+
+			return new InternalTimer<>(timestamp, key, namespace);
+		} catch (IOException e) {
+			throw new FlinkRuntimeException("Error while deserializing timer from RocksDB.", e);
+		}
+	}
+}
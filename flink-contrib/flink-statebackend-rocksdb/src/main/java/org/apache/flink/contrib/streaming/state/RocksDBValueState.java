@@ -23,7 +23,9 @@ import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.core.memory.DataInputViewStreamWrapper;
 import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.core.memory.ByteArrayOutputStreamWithPos;
 import org.apache.flink.runtime.state.internal.InternalValueState;
+import org.apache.flink.util.Preconditions;
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.WriteOptions;
@@ -51,6 +53,9 @@ public class RocksDBValueState<K, N, V>
 	 */
 	private final WriteOptions writeOptions;
 
+	/** The cache of the deserialized values, or null if the values are not cached */
+	private final RocksDBStateCache cache;
+
 	/**
 	 * Creates a new {@code RocksDBValueState}.
 	 *
@@ -68,18 +73,33 @@ public class RocksDBValueState<K, N, V>
 
 		writeOptions = new WriteOptions();
 		writeOptions.setDisableWAL(true);
+
+		// queryable state is read from RocksDB by other threads and must therefore not be cached
+		this.cache = stateDesc.isQueryable() ? null : backend.getStateCache();
 	}
 
 	@Override
+	@SuppressWarnings("unchecked")
 	public V value() {
 		try {
-			writeCurrentKeyWithGroupAndNamespace();
-			byte[] key = keySerializationStream.toByteArray();
-			byte[] valueBytes = backend.db.get(columnFamily, key);
-			if (valueBytes == null) {
-				return stateDesc.getDefaultValue();
+			V value;
+
+			if (cache != null) {
+				RocksDBStateCache.CacheKey cacheKey = createCurrentCacheKey();
+				RocksDBStateCache.CacheEntry entry = cache.get(cacheKey);
+
+				if (entry != null) {
+					// the cached object must not change if the caller modifies the returned value
+					value = copyIfMutable((V) entry.value);
+				} else {
+					value = readCurrentValue();
+					cache.put(cacheKey, this, copyIfMutable(value), false);
+				}
+			} else {
+				value = readCurrentValue();
 			}
-			return valueSerializer.deserialize(new DataInputViewStreamWrapper(new ByteArrayInputStream(valueBytes)));
+
+			return value != null ? value : stateDesc.getDefaultValue();
 		} catch (IOException|RocksDBException e) {
 			throw new RuntimeException("Error while retrieving data from RocksDB.", e);
 		}
@@ -91,6 +111,14 @@ public class RocksDBValueState<K, N, V>
 			clear();
 			return;
 		}
+
+		if (cache != null) {
+			// the value is written to RocksDB when it is evicted or before the next snapshot. The
+			// cached object must not change if the caller modifies the value after the update.
+			cache.put(createCurrentCacheKey(), this, copyIfMutable(value), true);
+			return;
+		}
+
 		DataOutputViewStreamWrapper out = new DataOutputViewStreamWrapper(keySerializationStream);
 		try {
 			writeCurrentKeyWithGroupAndNamespace();
@@ -102,4 +130,84 @@ public class RocksDBValueState<K, N, V>
 			throw new RuntimeException("Error while adding data to RocksDB", e);
 		}
 	}
+
+	@Override
+	public void clear() {
+		super.clear();
+
+		if (cache != null) {
+			try {
+				cache.put(createCurrentCacheKey(), this, null, false);
+			} catch (IOException e) {
+				throw new RuntimeException("Error while removing entry from RocksDB", e);
+			}
+		}
+	}
+
+	/**
+	 * Reads the value of the current key and namespace from RocksDB.
+	 *
+	 * @return The value, or null if RocksDB holds no value.
+	 */
+	private V readCurrentValue() throws IOException, RocksDBException {
+		writeCurrentKeyWithGroupAndNamespace();
+		byte[] key = keySerializationStream.toByteArray();
+		byte[] valueBytes = backend.db.get(columnFamily, key);
+		if (valueBytes == null) {
+			return null;
+		}
+		return valueSerializer.deserialize(new DataInputViewStreamWrapper(new ByteArrayInputStream(valueBytes)));
+	}
+
+	private RocksDBStateCache.CacheKey createCurrentCacheKey() {
+		K currentKey = backend.getCurrentKey();
+		Preconditions.checkNotNull(currentKey, "No key set. This method should not be called outside of a keyed context.");
+
+		return new RocksDBStateCache.CacheKey(
+				columnFamily,
+				backend.getCurrentKeyGroupIndex(),
+				currentKey,
+				getCurrentNamespace());
+	}
+
+	/**
+	 * Copies the key and namespace of the given cache key, so that the cache does not hold objects
+	 * which the caller might reuse.
+	 */
+	@SuppressWarnings("unchecked")
+	RocksDBStateCache.CacheKey copyCacheKey(RocksDBStateCache.CacheKey cacheKey) {
+		return new RocksDBStateCache.CacheKey(
+				cacheKey.columnFamily,
+				cacheKey.keyGroup,
+				backend.getKeySerializer().copy((K) cacheKey.key),
+				namespaceSerializer.copy((N) cacheKey.namespace));
+	}
+
+	private V copyIfMutable(V value) {
+		return value == null || valueSerializer.isImmutableType() ? value : valueSerializer.copy(value);
+	}
+
+	/**
+	 * Serializes a cached value and its key, key-group and namespace, so that the {@link RocksDBStateCache}
+	 * can write the value to RocksDB.
+	 */
+	@SuppressWarnings("unchecked")
+	void serializeCachedKeyAndValue(
+			RocksDBStateCache.CacheKey cacheKey,
+			Object value,
+			ByteArrayOutputStreamWithPos keySerializationStream,
+			DataOutputViewStreamWrapper keySerializationDataOutputView,
+			ByteArrayOutputStreamWithPos valueSerializationStream,
+			DataOutputViewStreamWrapper valueSerializationDataOutputView) throws IOException {
+
+		writeKeyWithGroupAndNamespace(
+				cacheKey.keyGroup,
+				(K) cacheKey.key,
+				(N) cacheKey.namespace,
+				keySerializationStream,
+				keySerializationDataOutputView);
+
+		valueSerializationStream.reset();
+		valueSerializer.serialize((V) value, valueSerializationDataOutputView);
+	}
 }
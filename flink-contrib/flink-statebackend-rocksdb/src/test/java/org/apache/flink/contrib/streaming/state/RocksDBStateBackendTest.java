@@ -31,13 +31,17 @@ import org.apache.flink.runtime.execution.Environment;
 import org.apache.flink.runtime.operators.testutils.DummyEnvironment;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
+import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.IncrementalKeyGroupsStateHandle;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyGroupsStateHandle;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.runtime.state.StateBackendTestBase;
 import org.apache.flink.runtime.state.VoidNamespace;
 import org.apache.flink.runtime.state.VoidNamespaceSerializer;
 import org.apache.flink.runtime.state.filesystem.FsStateBackend;
 import org.apache.flink.runtime.util.BlockerCheckpointStreamFactory;
+import org.apache.flink.util.FutureUtil;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -55,11 +59,13 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.RunnableFuture;
 
 import static junit.framework.TestCase.assertNotNull;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
@@ -335,6 +341,82 @@ public class RocksDBStateBackendTest extends StateBackendTestBase<RocksDBStateBa
 	}
 
 
+	@Test
+	public void testIncrementalCheckpointReusesFilesOfCompletedCheckpoint() throws Exception {
+		String checkpointPath = tempFolder.newFolder().toURI().toString();
+		RocksDBStateBackend backend = new RocksDBStateBackend(new FsStateBackend(checkpointPath), true);
+		backend.setDbStoragePath(tempFolder.newFolder().getAbsolutePath());
+
+		Environment env = new DummyEnvironment("TestTask", 1, 0);
+		CheckpointStreamFactory streamFactory = backend.createStreamFactory(new JobID(), "test_op");
+		SharedStateRegistry sharedStateRegistry = new SharedStateRegistry();
+
+		ValueStateDescriptor<String> kvId = new ValueStateDescriptor<>("id", String.class, null);
+		kvId.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		RocksDBKeyedStateBackend<Integer> keyedBackend = (RocksDBKeyedStateBackend<Integer>) backend.createKeyedStateBackend(
+				env, new JobID(), "test_op", IntSerializer.INSTANCE, 2, new KeyGroupRange(0, 1), mock(TaskKvStateRegistry.class));
+
+		try {
+			ValueState<String> state =
+					keyedBackend.getPartitionedState(VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, kvId);
+
+			keyedBackend.setCurrentKey(1);
+			state.update("1");
+
+			IncrementalKeyGroupsStateHandle snapshot1 = (IncrementalKeyGroupsStateHandle) FutureUtil.runIfNotDoneAndGet(
+					keyedBackend.snapshot(1L, 1L, streamFactory, CheckpointOptions.forFullCheckpoint()));
+
+			assertFalse(snapshot1.getNewSharedState().isEmpty());
+			assertTrue(snapshot1.getReferencedSharedState().isEmpty());
+
+			snapshot1.registerSharedStates(sharedStateRegistry);
+			keyedBackend.notifyCheckpointComplete(1L);
+
+			keyedBackend.setCurrentKey(2);
+			state.update("2");
+
+			IncrementalKeyGroupsStateHandle snapshot2 = (IncrementalKeyGroupsStateHandle) FutureUtil.runIfNotDoneAndGet(
+					keyedBackend.snapshot(2L, 2L, streamFactory, CheckpointOptions.forFullCheckpoint()));
+
+			// only the new data is uploaded, the files of the completed checkpoint are reused
+			assertFalse(snapshot2.getNewSharedState().isEmpty());
+			assertEquals(snapshot1.getNewSharedState().keySet(), snapshot2.getReferencedSharedState().keySet());
+
+			snapshot2.checkReferencedSharedState(sharedStateRegistry);
+			snapshot2.registerSharedStates(sharedStateRegistry);
+
+			// subsuming the first checkpoint keeps the files that the second one references
+			snapshot1.discardState(sharedStateRegistry);
+			for (String fileName : snapshot2.getReferencedSharedState().keySet()) {
+				assertEquals(1, sharedStateRegistry.getReferenceCount(snapshot2.getSharedStateRegistryKey(fileName)));
+			}
+
+			keyedBackend.dispose();
+
+			keyedBackend = (RocksDBKeyedStateBackend<Integer>) backend.createKeyedStateBackend(
+					env, new JobID(), "test_op", IntSerializer.INSTANCE, 2, new KeyGroupRange(0, 1), mock(TaskKvStateRegistry.class));
+			keyedBackend.restore(Collections.<KeyGroupsStateHandle>singletonList(snapshot2));
+
+			state = keyedBackend.getPartitionedState(VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, kvId);
+
+			keyedBackend.setCurrentKey(1);
+			assertEquals("1", state.value());
+			keyedBackend.setCurrentKey(2);
+			assertEquals("2", state.value());
+
+			// savepoints are always self-contained
+			KeyGroupsStateHandle savepoint = FutureUtil.runIfNotDoneAndGet(
+					keyedBackend.snapshot(3L, 3L, streamFactory, CheckpointOptions.forSavepoint(checkpointPath)));
+			assertFalse(savepoint instanceof IncrementalKeyGroupsStateHandle);
+
+			savepoint.discardState();
+			snapshot2.discardState(sharedStateRegistry);
+		} finally {
+			keyedBackend.dispose();
+		}
+	}
+
 	private void runStateUpdates() throws Exception{
 		for (int i = 50; i < 150; ++i) {
 			if (i % 10 == 0) {
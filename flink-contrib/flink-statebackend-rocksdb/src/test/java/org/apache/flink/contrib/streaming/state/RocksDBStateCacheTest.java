@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.IntValueSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.operators.testutils.DummyEnvironment;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupsStateHandle;
+import org.apache.flink.runtime.state.VoidNamespace;
+import org.apache.flink.runtime.state.VoidNamespaceSerializer;
+import org.apache.flink.types.IntValue;
+import org.apache.flink.util.FutureUtil;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for the {@link RocksDBStateCache}.
+ */
+public class RocksDBStateCacheTest {
+
+	private static final int MAX_PARALLELISM = 16;
+
+	@Rule
+	public final TemporaryFolder tmp = new TemporaryFolder();
+
+	/**
+	 * Tests that repeated reads of a key are served by the cache.
+	 */
+	@Test
+	public void testRepeatedReadsHitTheCache() throws Exception {
+		RocksDBKeyedStateBackend<Integer> keyedBackend = createKeyedBackend(createBackend(100));
+
+		try {
+			ValueState<String> state = getState(keyedBackend, new ValueStateDescriptor<>("test", StringSerializer.INSTANCE));
+			RocksDBStateCache cache = keyedBackend.getStateCache();
+
+			keyedBackend.setCurrentKey(1);
+			state.update("hello");
+			assertEquals("hello", state.value());
+			assertEquals("hello", state.value());
+
+			// keys without value are cached as well
+			keyedBackend.setCurrentKey(2);
+			assertNull(state.value());
+			assertNull(state.value());
+
+			assertEquals(3L, cache.getNumHits());
+			assertEquals(1L, cache.getNumMisses());
+			assertEquals(0.75, cache.getHitRate(), 0.0);
+			assertEquals(2, cache.size());
+		} finally {
+			keyedBackend.dispose();
+		}
+	}
+
+	/**
+	 * Tests that modifying a value without updating the state does not change the cached value,
+	 * just like it does not change the value in RocksDB.
+	 */
+	@Test
+	public void testModifiedValuesAreNotCached() throws Exception {
+		RocksDBKeyedStateBackend<Integer> keyedBackend = createKeyedBackend(createBackend(100));
+
+		try {
+			ValueState<IntValue> state = keyedBackend.getPartitionedState(
+					VoidNamespace.INSTANCE,
+					VoidNamespaceSerializer.INSTANCE,
+					new ValueStateDescriptor<>("test", IntValueSerializer.INSTANCE));
+
+			keyedBackend.setCurrentKey(1);
+
+			IntValue value = new IntValue(1);
+			state.update(value);
+			value.setValue(2);
+
+			IntValue read = state.value();
+			assertEquals(1, read.getValue());
+			read.setValue(3);
+
+			assertEquals(1, state.value().getValue());
+			assertEquals(1, keyedBackend.getStateCache().size());
+		} finally {
+			keyedBackend.dispose();
+		}
+	}
+
+	/**
+	 * Tests that updated and cleared values are part of snapshots, whether they were evicted or are
+	 * still cached when the snapshot is taken.
+	 */
+	@Test
+	public void testUpdatesArePartOfSnapshots() throws Exception {
+		RocksDBStateBackend backend = createBackend(10);
+		CheckpointStreamFactory streamFactory = backend.createStreamFactory(new JobID(), "test-op");
+		ValueStateDescriptor<String> descriptor = new ValueStateDescriptor<>("test", StringSerializer.INSTANCE);
+
+		RocksDBKeyedStateBackend<Integer> keyedBackend = createKeyedBackend(backend);
+		KeyGroupsStateHandle snapshot;
+
+		try {
+			ValueState<String> state = getState(keyedBackend, descriptor);
+
+			// most of the values are evicted before the snapshot
+			for (int key = 0; key < 100; ++key) {
+				keyedBackend.setCurrentKey(key);
+				state.update("first-" + key);
+			}
+
+			for (int key = 0; key < 5; ++key) {
+				keyedBackend.setCurrentKey(key);
+				state.update("second-" + key);
+			}
+
+			// clear a cached and an evicted value
+			keyedBackend.setCurrentKey(4);
+			state.clear();
+			keyedBackend.setCurrentKey(50);
+			state.clear();
+			assertNull(state.value());
+
+			snapshot = FutureUtil.runIfNotDoneAndGet(
+					keyedBackend.snapshot(1L, 1L, streamFactory, CheckpointOptions.forFullCheckpoint()));
+		} finally {
+			keyedBackend.dispose();
+		}
+
+		// restore without cache, so that all values are read from RocksDB
+		keyedBackend = createKeyedBackend(createBackend(0));
+
+		try {
+			keyedBackend.restore(Collections.singletonList(snapshot));
+			ValueState<String> state = getState(keyedBackend, descriptor);
+
+			for (int key = 0; key < 100; ++key) {
+				keyedBackend.setCurrentKey(key);
+
+				if (key == 4 || key == 50) {
+					assertNull(state.value());
+				} else if (key < 5) {
+					assertEquals("second-" + key, state.value());
+				} else {
+					assertEquals("first-" + key, state.value());
+				}
+			}
+		} finally {
+			keyedBackend.dispose();
+			snapshot.discardState();
+		}
+	}
+
+	/**
+	 * Tests that queryable states are not cached, because they are read from RocksDB by other threads.
+	 */
+	@Test
+	public void testQueryableStatesAreNotCached() throws Exception {
+		RocksDBKeyedStateBackend<Integer> keyedBackend = createKeyedBackend(createBackend(100));
+
+		try {
+			ValueStateDescriptor<String> descriptor = new ValueStateDescriptor<>("test", StringSerializer.INSTANCE);
+			descriptor.setQueryable("test-query");
+			ValueState<String> state = getState(keyedBackend, descriptor);
+
+			keyedBackend.setCurrentKey(1);
+			state.update("hello");
+			assertEquals("hello", state.value());
+
+			assertEquals(0, keyedBackend.getStateCache().size());
+		} finally {
+			keyedBackend.dispose();
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	private RocksDBStateBackend createBackend(int stateCacheSize) throws Exception {
+		RocksDBStateBackend backend = new RocksDBStateBackend(tmp.newFolder().toURI());
+		backend.setDbStoragePath(tmp.newFolder().getAbsolutePath());
+		backend.setStateCacheSize(stateCacheSize);
+		return backend;
+	}
+
+	private static RocksDBKeyedStateBackend<Integer> createKeyedBackend(RocksDBStateBackend backend) throws Exception {
+		return (RocksDBKeyedStateBackend<Integer>) backend.createKeyedStateBackend(
+				new DummyEnvironment("TestTask", 1, 0),
+				new JobID(),
+				"test-op",
+				IntSerializer.INSTANCE,
+				MAX_PARALLELISM,
+				new KeyGroupRange(0, MAX_PARALLELISM - 1),
+				mock(TaskKvStateRegistry.class));
+	}
+
+	private static ValueState<String> getState(
+			RocksDBKeyedStateBackend<Integer> keyedBackend,
+			ValueStateDescriptor<String> descriptor) throws Exception {
+
+		return keyedBackend.getPartitionedState(VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, descriptor);
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.contrib.streaming.state;
+
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.operators.testutils.DummyEnvironment;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupsStateHandle;
+import org.apache.flink.streaming.api.operators.InternalTimer;
+import org.apache.flink.streaming.api.operators.InternalTimerQueue;
+import org.apache.flink.util.FutureUtil;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for the {@link RocksDBTimerQueue}.
+ */
+public class RocksDBTimerQueueTest {
+
+	private static final int MAX_PARALLELISM = 16;
+
+	@Rule
+	public final TemporaryFolder tmp = new TemporaryFolder();
+
+	/**
+	 * Randomly adds and removes timers and checks that the timers are polled in timestamp order.
+	 */
+	@Test
+	public void testRandomAddRemovePoll() throws Exception {
+		RocksDBStateBackend backend = createBackend(true);
+		RocksDBKeyedStateBackend<Integer> keyedBackend = createKeyedBackend(backend);
+
+		try {
+			InternalTimerQueue<Integer, String> queue = keyedBackend.createTimerQueue("test", StringSerializer.INSTANCE);
+
+			Random random = new Random(42L);
+			Set<InternalTimer<Integer, String>> expected = new HashSet<>();
+
+			for (int i = 0; i < 1000; ++i) {
+				InternalTimer<Integer, String> timer = createTimer(random);
+				queue.add(timer);
+				expected.add(timer);
+
+				// poll from time to time, so that the head timers are loaded and must be kept up to date
+				if (random.nextInt(10) == 0) {
+					InternalTimer<Integer, String> head = queue.poll();
+					assertEquals(getSmallestTimestamp(expected), head.getTimestamp());
+					assertTrue(expected.remove(head));
+				}
+
+				if (random.nextInt(3) == 0) {
+					InternalTimer<Integer, String> toRemove = createTimer(random);
+					queue.remove(toRemove);
+					expected.remove(toRemove);
+				}
+			}
+
+			assertEquals(expected.size(), queue.size());
+
+			long lastTimestamp = Long.MIN_VALUE;
+			InternalTimer<Integer, String> timer;
+
+			while ((timer = queue.poll()) != null) {
+				assertTrue(timer.getTimestamp() >= lastTimestamp);
+				assertTrue(expected.remove(timer));
+				lastTimestamp = timer.getTimestamp();
+			}
+
+			assertTrue(expected.isEmpty());
+			assertEquals(0, queue.size());
+		} finally {
+			keyedBackend.dispose();
+		}
+	}
+
+	/**
+	 * Tests that the timers are part of the snapshots of the keyed state backend.
+	 */
+	@Test
+	public void testTimersAreSnapshotted() throws Exception {
+		RocksDBStateBackend backend = createBackend(true);
+		CheckpointStreamFactory streamFactory = backend.createStreamFactory(new JobID(), "test-op");
+
+		RocksDBKeyedStateBackend<Integer> keyedBackend = createKeyedBackend(backend);
+		Set<InternalTimer<Integer, String>> expected = new HashSet<>();
+		KeyGroupsStateHandle snapshot;
+
+		try {
+			InternalTimerQueue<Integer, String> queue = keyedBackend.createTimerQueue("test", StringSerializer.INSTANCE);
+
+			Random random = new Random(42L);
+			for (int i = 0; i < 100; ++i) {
+				InternalTimer<Integer, String> timer = createTimer(random);
+				queue.add(timer);
+				expected.add(timer);
+			}
+
+			// the timers are not written to the snapshot of the timer service
+			for (int keyGroupIdx = 0; keyGroupIdx < MAX_PARALLELISM; ++keyGroupIdx) {
+				assertNull(queue.getTimersForKeyGroupSnapshot(keyGroupIdx));
+			}
+
+			snapshot = FutureUtil.runIfNotDoneAndGet(
+					keyedBackend.snapshot(1L, 1L, streamFactory, CheckpointOptions.forFullCheckpoint()));
+		} finally {
+			keyedBackend.dispose();
+		}
+
+		keyedBackend = createKeyedBackend(backend);
+
+		try {
+			keyedBackend.restore(Collections.singletonList(snapshot));
+
+			InternalTimerQueue<Integer, String> queue = keyedBackend.createTimerQueue("test", StringSerializer.INSTANCE);
+
+			Set<InternalTimer<Integer, String>> restored = new HashSet<>();
+			for (InternalTimer<Integer, String> timer : queue) {
+				restored.add(timer);
+			}
+
+			assertEquals(expected, restored);
+			assertEquals(getSmallestTimestamp(expected), queue.peek().getTimestamp());
+		} finally {
+			keyedBackend.dispose();
+			snapshot.discardState();
+		}
+	}
+
+	/**
+	 * Tests that timers stored in RocksDB are not silently dropped when a snapshot is restored
+	 * with timers in RocksDB disabled.
+	 */
+	@Test
+	public void testRestoreTimersWithTimersInRocksDBDisabled() throws Exception {
+		RocksDBStateBackend backend = createBackend(true);
+		CheckpointStreamFactory streamFactory = backend.createStreamFactory(new JobID(), "test-op");
+
+		RocksDBKeyedStateBackend<Integer> keyedBackend = createKeyedBackend(backend);
+		KeyGroupsStateHandle snapshot;
+
+		try {
+			InternalTimerQueue<Integer, String> queue = keyedBackend.createTimerQueue("test", StringSerializer.INSTANCE);
+			queue.add(new InternalTimer<>(42L, 1, "ns"));
+
+			snapshot = FutureUtil.runIfNotDoneAndGet(
+					keyedBackend.snapshot(1L, 1L, streamFactory, CheckpointOptions.forFullCheckpoint()));
+		} finally {
+			keyedBackend.dispose();
+		}
+
+		keyedBackend = createKeyedBackend(createBackend(false));
+
+		try {
+			keyedBackend.restore(Collections.singletonList(snapshot));
+			fail("Restoring timers stored in RocksDB with timers in RocksDB disabled should fail.");
+		} catch (IllegalStateException expected) {
+			// expected
+		} finally {
+			keyedBackend.dispose();
+			snapshot.discardState();
+		}
+	}
+
+	/**
+	 * Tests that the timers stay on the Java heap unless they are enabled in RocksDB.
+	 */
+	@Test
+	public void testTimersInRocksDBDisabledByDefault() throws Exception {
+		RocksDBKeyedStateBackend<Integer> keyedBackend = createKeyedBackend(createBackend(false));
+
+		try {
+			assertNull(keyedBackend.createTimerQueue("test", StringSerializer.INSTANCE));
+		} finally {
+			keyedBackend.dispose();
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	private RocksDBStateBackend createBackend(boolean enableTimersInRocksDB) throws Exception {
+		RocksDBStateBackend backend = new RocksDBStateBackend(tmp.newFolder().toURI());
+		backend.setDbStoragePath(tmp.newFolder().getAbsolutePath());
+
+		if (enableTimersInRocksDB) {
+			backend.setTimersInRocksDBEnabled(true);
+		}
+
+		return backend;
+	}
+
+	private static RocksDBKeyedStateBackend<Integer> createKeyedBackend(RocksDBStateBackend backend) throws Exception {
+		return (RocksDBKeyedStateBackend<Integer>) backend.createKeyedStateBackend(
+				new DummyEnvironment("TestTask", 1, 0),
+				new JobID(),
+				"test-op",
+				IntSerializer.INSTANCE,
+				MAX_PARALLELISM,
+				new KeyGroupRange(0, MAX_PARALLELISM - 1),
+				mock(TaskKvStateRegistry.class));
+	}
+
+	private static InternalTimer<Integer, String> createTimer(Random random) {
+		// include negative timestamps to check the ordering of the serialized timestamps
+		return new InternalTimer<>(random.nextInt(200) - 100, random.nextInt(50), "ns-" + random.nextInt(2));
+	}
+
+	private static long getSmallestTimestamp(Set<InternalTimer<Integer, String>> timers) {
+		long smallest = Long.MAX_VALUE;
+		for (InternalTimer<Integer, String> timer : timers) {
+			smallest = Math.min(smallest, timer.getTimestamp());
+		}
+		return smallest;
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.api.common.state;
+
+import org.apache.flink.annotation.PublicEvolving;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A map-like operator state that holds the same contents on all parallel instances of an
+ * operator. It is meant for small data sets, such as rules or dimension tables, that are sent
+ * to all parallel instances by a broadcast stream and that are read by all instances.
+ *
+ * <p>The state is only modified by the elements of the broadcast stream, which every parallel
+ * instance receives identically. Therefore, each instance checkpoints its own copy, and on
+ * rescaling every new instance gets exactly one of the copies.
+ *
+ * @param <K> Type of the keys in the state.
+ * @param <V> Type of the values in the state.
+ */
+@PublicEvolving
+public interface BroadcastState<K, V> extends ReadOnlyBroadcastState<K, V> {
+
+	/**
+	 * Associates a new value with the given key.
+	 *
+	 * @param key The key of the mapping
+	 * @param value The new value of the mapping
+	 *
+	 * @throws Exception Thrown if the system cannot access the state.
+	 */
+	void put(K key, V value) throws Exception;
+
+	/**
+	 * Copies all of the mappings from the given map into the state.
+	 *
+	 * @param map The mappings to be stored in this state
+	 *
+	 * @throws Exception Thrown if the system cannot access the state.
+	 */
+	void putAll(Map<K, V> map) throws Exception;
+
+	/**
+	 * Deletes the mapping of the given key.
+	 *
+	 * @param key The key of the mapping
+	 *
+	 * @throws Exception Thrown if the system cannot access the state.
+	 */
+	void remove(K key) throws Exception;
+
+	/**
+	 * Returns an iterator over all the mappings in the state.
+	 *
+	 * @return An iterator over all the mappings in the state
+	 *
+	 * @throws Exception Thrown if the system cannot access the state.
+	 */
+	Iterator<Map.Entry<K, V>> iterator() throws Exception;
+
+	/**
+	 * Returns all the mappings in the state.
+	 *
+	 * @return An iterable view of all the key-value pairs in the state
+	 *
+	 * @throws Exception Thrown if the system cannot access the state.
+	 */
+	Iterable<Map.Entry<K, V>> entries() throws Exception;
+}
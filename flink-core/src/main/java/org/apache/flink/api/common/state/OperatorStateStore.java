@@ -56,6 +56,24 @@ public interface OperatorStateStore {
 	 */
 	<T extends Serializable> ListState<T> getSerializableListState(String stateName) throws Exception;
 
+	/**
+	 * Creates (or restores) a {@link BroadcastState broadcast state}. Each state is registered under a
+	 * unique name. The provided serializers are used to de/serialize the state in case of checkpointing
+	 * (snapshot/restore).
+	 *
+	 * <p>The broadcast state must have the same contents on all parallel instances of the operator.
+	 * Each parallel instance checkpoints its copy, and in case of changed operator parallelism every
+	 * new instance gets exactly one of the copies.
+	 *
+	 * @param stateDescriptor The descriptor for this state, providing a name and the serializers.
+	 * @param <K> The type of the keys in the broadcast state.
+	 * @param <V> The type of the values in the broadcast state.
+	 *
+	 * @return The broadcast state.
+	 * @throws Exception
+	 */
+	<K, V> BroadcastState<K, V> getBroadcastState(MapStateDescriptor<K, V> stateDescriptor) throws Exception;
+
 	/**
 	 * Returns a set with the names of all currently registered states.
 	 * @return set of names for all registered states.
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.api.common.state;
+
+import org.apache.flink.annotation.PublicEvolving;
+
+import java.util.Map;
+
+/**
+ * A read-only view of a {@link BroadcastState}.
+ *
+ * <p>Functions that may only read the broadcast state get this view, because the broadcast state
+ * must stay identical on all parallel instances. Modifying the returned values or entries breaks
+ * this guarantee and must not be done.
+ *
+ * @param <K> Type of the keys in the state.
+ * @param <V> Type of the values in the state.
+ */
+@PublicEvolving
+public interface ReadOnlyBroadcastState<K, V> extends State {
+
+	/**
+	 * Returns the current value associated with the given key.
+	 *
+	 * @param key The key of the mapping
+	 * @return The value of the mapping with the given key, or {@code null} if there is none
+	 *
+	 * @throws Exception Thrown if the system cannot access the state.
+	 */
+	V get(K key) throws Exception;
+
+	/**
+	 * Returns whether there exists the given mapping.
+	 *
+	 * @param key The key of the mapping
+	 * @return True if there exists a mapping whose key equals to the given key
+	 *
+	 * @throws Exception Thrown if the system cannot access the state.
+	 */
+	boolean contains(K key) throws Exception;
+
+	/**
+	 * Returns an immutable iterable over the mappings in the state.
+	 *
+	 * @return An immutable iterable over the mappings in the state
+	 *
+	 * @throws Exception Thrown if the system cannot access the state.
+	 */
+	Iterable<Map.Entry<K, V>> immutableEntries() throws Exception;
+}
@@ -59,4 +59,13 @@ public class CoreOptions {
 	public static final ConfigOption<Integer> MAX_RETAINED_CHECKPOINTS = ConfigOptions
 		.key("state.checkpoints.num-retained")
 		.defaultValue(1);
+
+	/**
+	 * Whether tasks keep a copy of their checkpointed state on the local disk of the TaskManager,
+	 * to restore from it instead of the checkpoint storage when they are rescheduled to the same
+	 * TaskManager.
+	 */
+	public static final ConfigOption<Boolean> LOCAL_RECOVERY = ConfigOptions
+		.key("state.backend.local-recovery")
+		.defaultValue(false);
 }
@@ -67,6 +67,37 @@ public class TaskManagerOptions {
 		key("taskmanager.net.memory.extra-buffers-per-gate")
 			.defaultValue(8);
 
+	/**
+	 * Whether to use credit-based flow control between remote input channels and the producing
+	 * subpartitions.
+	 *
+	 * <p>If enabled, each remote input channel announces the number of buffers it can accept
+	 * (its credit) and the producer only sends buffers for which the receiver has credit. The
+	 * {@link #NETWORK_BUFFERS_PER_CHANNEL} buffers of each input channel are exclusive credit of
+	 * that channel and the {@link #NETWORK_EXTRA_BUFFERS_PER_GATE} buffers of each input gate are
+	 * floating credit, which is handed to channels with a backlog. A slow channel therefore never
+	 * blocks the TCP connection that it shares with other channels.
+	 */
+	public static final ConfigOption<Boolean> NETWORK_CREDIT_BASED_FLOW_CONTROL =
+		key("taskmanager.net.credit-based-flow-control")
+			.defaultValue(false);
+
+	/**
+	 * Whether to compress the data buffers of pipelined result partitions with LZ4 before they
+	 * are sent to the consumers.
+	 */
+	public static final ConfigOption<Boolean> NETWORK_COMPRESSION_PIPELINED =
+		key("taskmanager.net.compression.pipelined")
+			.defaultValue(false);
+
+	/**
+	 * Whether to compress the data buffers of blocking result partitions with LZ4. The buffers stay
+	 * compressed in memory, in the spilled subpartition files and on the wire.
+	 */
+	public static final ConfigOption<Boolean> NETWORK_COMPRESSION_BLOCKING =
+		key("taskmanager.net.compression.blocking")
+			.defaultValue(false);
+
 	// ------------------------------------------------------------------------
 	//  Task Options
 	// ------------------------------------------------------------------------
@@ -100,6 +131,26 @@ public class TaskManagerOptions {
 			key("task.checkpoint.alignment.max-size")
 			.defaultValue(-1L);
 
+	/**
+	 * The maximum number of bytes of in-flight records that an unaligned checkpoint may log.
+	 * The log is kept on the heap of the task until all in-flight records of the checkpoint
+	 * arrived. If more than the configured amount of data is logged, the checkpoint is
+	 * aborted (skipped).
+	 *
+	 * <p>A value of {@code -1} indicates that there is no limit.
+	 */
+	public static final ConfigOption<Long> TASK_CHECKPOINT_IN_FLIGHT_BYTES_LIMIT =
+			key("task.checkpoint.unaligned.max-in-flight-size")
+			.defaultValue(64L * 1024L * 1024L);
+
+	/**
+	 * The maximum number of threads of a TaskManager that transfer the parts of multi-part
+	 * snapshots of keyed state concurrently. The threads are shared by all tasks of the TaskManager.
+	 */
+	public static final ConfigOption<Integer> STATE_TRANSFER_THREADS =
+			key("taskmanager.state.transfer-threads")
+			.defaultValue(4);
+
 	// ------------------------------------------------------------------------
 
 	/** Not intended to be instantiated */
@@ -175,6 +175,24 @@ public class NFA<T> implements Serializable {
 		return stringSharedBuffer.isEmpty();
 	}
 
+	/**
+	 * Stores the entries of the {@link SharedBuffer} in the given keyed state instead of
+	 * serializing them together with the NFA. The modified entries have to be written back
+	 * with {@link #flushSharedBuffer()} before the NFA itself is stored.
+	 *
+	 * @param entriesState The state which stores the shared buffer entries of the current key
+	 */
+	public void setSharedBufferEntriesState(final SharedBuffer.EntriesState<String, T> entriesState) {
+		stringSharedBuffer.setEntriesState(entriesState);
+	}
+
+	/**
+	 * Writes the modified entries of the {@link SharedBuffer} back to its keyed state.
+	 */
+	public void flushSharedBuffer() {
+		stringSharedBuffer.flush();
+	}
+
 	/**
 	 * Processes the next input event. If some of the computations reach a final state then the
 	 * resulting event sequences are returned. If computations time out and timeout handling is
@@ -16,14 +16,25 @@
  * limitations under the License.
  */
 
+
 package org.apache.flink.cep.nfa;
 
 import com.google.common.collect.LinkedHashMultimap;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.state.KeyedStateStore;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.ListSerializer;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.core.memory.DataInputView;
 import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
+import org.apache.flink.util.FlinkRuntimeException;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
@@ -34,6 +45,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -48,7 +60,13 @@ import java.util.Stack;
  *
  * The values are wrapped in a {@link SharedBufferEntry}. The shared buffer entry allows to store
  * relations between different entries. A dewey versioning scheme allows to discriminate between
- * different relations (e.g. preceding element).
+ * different relations (e.g. preceding element). An edge refers to its target entry by the key,
+ * value and timestamp of the target, so that the entries can be stored independently of each other.
+ *
+ * By default, all entries are kept in the pages and are serialized with the shared buffer. If the
+ * shared buffer is bound to an {@link EntriesState}, the entries are stored in keyed state, grouped
+ * by their timestamp, and the pages only cache the entries which are accessed while processing an
+ * element. The cached entries have to be written back with {@link #flush()}.
  *
  * The implementation is strongly based on the paper "Efficient Pattern Matching over Event Streams".
  *
@@ -62,13 +80,100 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 
 	private final TypeSerializer<V> valueSerializer;
 
+	/**
+	 * Lower bound of the timestamps of the stored entries. It allows to skip the scan of the
+	 * entries in state when pruning, as long as no entry can have expired. The bound is stored
+	 * with the entries in the {@link EntriesState}, not with the shared buffer itself.
+	 */
+	private transient long lowestTimestampBound = Long.MAX_VALUE;
+
+	/** The lower bound as it is currently stored in the {@link EntriesState} */
+	private transient long storedLowestTimestampBound;
+
 	private transient Map<K, SharedBufferPage<K, V>> pages;
 
+	/** The state which stores the entries, or null if the entries are only kept in the pages */
+	private transient EntriesState<K, V> entriesState;
+
+	/** The timestamps of the entries which have been loaded from the state into the pages */
+	private transient Set<Long> loadedTimestamps;
+
+	/** The timestamps of the entries which have been modified since the last flush */
+	private transient Set<Long> changedTimestamps;
+
 	public SharedBuffer(final TypeSerializer<V> valueSerializer) {
 		this.valueSerializer = valueSerializer;
 		pages = new HashMap<>();
 	}
 
+	/**
+	 * Stores the entries of this shared buffer in the given state. Entries which are still kept in
+	 * the pages, e.g. because the shared buffer has been restored from an earlier version, are
+	 * moved to the state with the next {@link #flush()}.
+	 *
+	 * @param entriesState The state which stores the entries of the current key
+	 */
+	public void setEntriesState(final EntriesState<K, V> entriesState) {
+		this.entriesState = entriesState;
+		this.loadedTimestamps = new HashSet<>();
+		this.changedTimestamps = new HashSet<>();
+		this.lowestTimestampBound = entriesState.getLowestTimestampBound();
+		this.storedLowestTimestampBound = lowestTimestampBound;
+
+		for (SharedBufferPage<K, V> page : pages.values()) {
+			for (ValueTimeWrapper<V> valueTime : page.entries.keySet()) {
+				loadedTimestamps.add(valueTime.getTimestamp());
+				changedTimestamps.add(valueTime.getTimestamp());
+				lowestTimestampBound = Math.min(lowestTimestampBound, valueTime.getTimestamp());
+			}
+		}
+	}
+
+	/**
+	 * Writes the modified entries back to the state and clears the cached entries. This is a
+	 * no-op if the shared buffer is not bound to an {@link EntriesState}.
+	 */
+	public void flush() {
+		if (entriesState == null) {
+			return;
+		}
+
+		if (!changedTimestamps.isEmpty()) {
+			Map<Long, List<SharedBufferEntry<K, V>>> changedEntries = new HashMap<>();
+
+			for (Long timestamp : changedTimestamps) {
+				changedEntries.put(timestamp, new ArrayList<SharedBufferEntry<K, V>>());
+			}
+
+			for (SharedBufferPage<K, V> page : pages.values()) {
+				for (SharedBufferEntry<K, V> entry : page.entries.values()) {
+					List<SharedBufferEntry<K, V>> entries = changedEntries.get(entry.getValueTime().getTimestamp());
+
+					if (entries != null) {
+						entries.add(entry);
+					}
+				}
+			}
+
+			for (Map.Entry<Long, List<SharedBufferEntry<K, V>>> entries : changedEntries.entrySet()) {
+				if (entries.getValue().isEmpty()) {
+					entriesState.remove(entries.getKey());
+				} else {
+					entriesState.put(entries.getKey(), entries.getValue());
+				}
+			}
+		}
+
+		if (lowestTimestampBound != storedLowestTimestampBound) {
+			entriesState.setLowestTimestampBound(lowestTimestampBound);
+			storedLowestTimestampBound = lowestTimestampBound;
+		}
+
+		pages.clear();
+		loadedTimestamps.clear();
+		changedTimestamps.clear();
+	}
+
 	/**
 	 * Stores given value (value + timestamp) under the given key. It assigns a preceding element
 	 * relation to the entry which is defined by the previous key, value (value + timestamp).
@@ -89,16 +194,9 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 			final V previousValue,
 			final long previousTimestamp,
 			final DeweyNumber version) {
-		SharedBufferPage<K, V> page;
-
-		if (!pages.containsKey(key)) {
-			page = new SharedBufferPage<K, V>(key);
-			pages.put(key, page);
-		} else {
-			page = pages.get(key);
-		}
 
-		final SharedBufferEntry<K, V> previousSharedBufferEntry = get(previousKey, previousValue, previousTimestamp);
+		final SharedBufferEntry<K, V> previousSharedBufferEntry = previousValue != null ?
+			get(previousKey, previousValue, previousTimestamp) : null;
 
 		// sanity check whether we've found the previous element
 		if (previousSharedBufferEntry == null && previousValue != null) {
@@ -108,10 +206,7 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 				"relation has been already pruned, even though you expect it to be still there.");
 		}
 
-		page.add(
-			new ValueTimeWrapper<>(value, timestamp),
-			previousSharedBufferEntry,
-			version);
+		add(key, new ValueTimeWrapper<>(value, timestamp), previousSharedBufferEntry, version);
 	}
 
 	/**
@@ -128,19 +223,8 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 		final V value,
 		final long timestamp,
 		final DeweyNumber version) {
-		SharedBufferPage<K, V> page;
 
-		if (!pages.containsKey(key)) {
-			page = new SharedBufferPage<K, V>(key);
-			pages.put(key, page);
-		} else {
-			page = pages.get(key);
-		}
-
-		page.add(
-			new ValueTimeWrapper<>(value, timestamp),
-			null,
-			version);
+		add(key, new ValueTimeWrapper<>(value, timestamp), null, version);
 	}
 
 	/**
@@ -156,10 +240,19 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 		final V value,
 		final long timestamp) {
 
-		return pages.containsKey(key) && pages.get(key).contains(new ValueTimeWrapper<>(value, timestamp));
+		return get(key, value, timestamp) != null;
 	}
 
+	/**
+	 * Checks whether the shared buffer contains any entries. If the entries are stored in state,
+	 * the cached entries are flushed first.
+	 */
 	public boolean isEmpty() {
+		if (entriesState != null) {
+			flush();
+			return entriesState.isEmpty();
+		}
+
 		for (SharedBufferPage<K, V> page: pages.values()) {
 			if (!page.isEmpty()) {
 				return false;
@@ -175,6 +268,11 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 	 *                         lower than the pruning timestamp will be removed.
 	 */
 	public void prune(long pruningTimestamp) {
+		if (entriesState != null) {
+			pruneEntriesState(pruningTimestamp);
+			return;
+		}
+
 		Iterator<Map.Entry<K, SharedBufferPage<K, V>>> iter = pages.entrySet().iterator();
 
 		while (iter.hasNext()) {
@@ -244,9 +342,11 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 						// of this previous relation
 						final DeweyNumber currentVersion = extractionState.getVersion();
 						if (currentVersion.isCompatibleWith(edge.getVersion())) {
+							final SharedBufferEntry<K, V> target = getTarget(edge);
+
 							if (firstMatch) {
 								// for the first match we don't have to copy the current path
-								extractionStates.push(new ExtractionState<>(edge.getTarget(), edge.getVersion(), currentPath));
+								extractionStates.push(new ExtractionState<>(target, edge.getVersion(), currentPath));
 								firstMatch = false;
 							} else {
 								final Stack<SharedBufferEntry<K, V>> copy = new Stack<>();
@@ -254,7 +354,7 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 
 								extractionStates.push(
 									new ExtractionState<>(
-										edge.getTarget(),
+										target,
 										edge.getVersion(),
 										copy));
 							}
@@ -281,6 +381,7 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 
 		if (entry != null) {
 			entry.increaseReferenceCounter();
+			markChanged(timestamp);
 		}
 	}
 
@@ -297,6 +398,7 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 
 		if (entry != null ) {
 			entry.decreaseReferenceCounter();
+			markChanged(timestamp);
 		}
 	}
 
@@ -373,11 +475,17 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 					for (SharedBufferEdge<K, V> edge: sharedBuffer.edges) {
 						// in order to serialize the previous relation we simply serialize the ids
 						// of the source and target SharedBufferEntry
-						if (edge.target != null) {
-							if (!entryIDs.containsKey(edge.getTarget())) {
-								throw new RuntimeException("Could not find id for entry: " + edge.getTarget());
+						if (edge.getTargetValueTime() != null) {
+							// only look at the pages, the serialization must not load any entries
+							SharedBufferPage<K, V> targetPage = pages.get(edge.getTargetKey());
+							SharedBufferEntry<K, V> edgeTarget = targetPage != null ?
+								targetPage.get(edge.getTargetValueTime()) : null;
+
+							if (edgeTarget == null || !entryIDs.containsKey(edgeTarget)) {
+								throw new RuntimeException("Could not find id for entry with key " +
+									edge.getTargetKey() + " and " + edge.getTargetValueTime());
 							} else {
-								int targetId = entryIDs.get(edge.getTarget());
+								int targetId = entryIDs.get(edgeTarget);
 
 								oos.writeInt(id);
 								oos.writeInt(targetId);
@@ -400,6 +508,7 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 		ois.defaultReadObject();
 
 		this.pages = new HashMap<>();
+		this.lowestTimestampBound = Long.MAX_VALUE;
 
 		int numberPages = ois.readInt();
 
@@ -420,7 +529,7 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 				long timestamp = ois.readLong();
 
 				ValueTimeWrapper<V> valueTimeWrapper = new ValueTimeWrapper<>(value, timestamp);
-				SharedBufferEntry<K, V> sharedBufferEntry = new SharedBufferEntry<K, V>(valueTimeWrapper, page);
+				SharedBufferEntry<K, V> sharedBufferEntry = new SharedBufferEntry<K, V>(key, valueTimeWrapper);
 
 				sharedBufferEntry.referenceCounter = ois.readInt();
 
@@ -459,7 +568,9 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 					target = null;
 				}
 
-				sourceEntry.edges.add(new SharedBufferEdge<K, V>(target, version));
+				sourceEntry.edges.add(target != null ?
+					new SharedBufferEdge<>(target.getKey(), target.getValueTime(), version) :
+					new SharedBufferEdge<K, V>(null, null, version));
 			}
 		}
 	}
@@ -479,7 +590,6 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 	static <T> SharedBuffer<String, T> migrateSharedBuffer(SharedBuffer<State<T>, T> buffer) {
 
 		final Map<String, SharedBufferPage<String, T>> pageMap = new HashMap<>();
-		final Map<SharedBufferEntry<State<T>, T>, SharedBufferEntry<String, T>> entries = new HashMap<>();
 
 		for (Map.Entry<State<T>, SharedBufferPage<State<T>, T>> page : buffer.pages.entrySet()) {
 			final SharedBufferPage<String, T> newPage = new SharedBufferPage<>(page.getKey().getName());
@@ -487,25 +597,19 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 
 			for (Map.Entry<ValueTimeWrapper<T>, SharedBufferEntry<State<T>, T>> pageEntry : page.getValue().entries.entrySet()) {
 				final SharedBufferEntry<String, T> newSharedBufferEntry = new SharedBufferEntry<>(
-					pageEntry.getKey(),
-					newPage);
+					newPage.getKey(),
+					pageEntry.getKey());
 				newSharedBufferEntry.referenceCounter = pageEntry.getValue().referenceCounter;
-				entries.put(pageEntry.getValue(), newSharedBufferEntry);
-				newPage.entries.put(pageEntry.getKey(), newSharedBufferEntry);
-			}
-		}
 
-		for (Map.Entry<State<T>, SharedBufferPage<State<T>, T>> page : buffer.pages.entrySet()) {
-			for (Map.Entry<ValueTimeWrapper<T>, SharedBufferEntry<State<T>, T>> pageEntry : page.getValue().entries.entrySet()) {
-				final SharedBufferEntry<String, T> newEntry = entries.get(pageEntry.getValue());
 				for (SharedBufferEdge<State<T>, T> edge : pageEntry.getValue().edges) {
-					final SharedBufferEntry<String, T> targetNewEntry = entries.get(edge.getTarget());
-
 					final SharedBufferEdge<String, T> newEdge = new SharedBufferEdge<>(
-						targetNewEntry,
+						edge.getTargetKey() != null ? edge.getTargetKey().getName() : null,
+						edge.getTargetValueTime(),
 						edge.getVersion());
-					newEntry.edges.add(newEdge);
+					newSharedBufferEntry.edges.add(newEdge);
 				}
+
+				newPage.entries.put(pageEntry.getKey(), newSharedBufferEntry);
 			}
 		}
 
@@ -516,6 +620,8 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 		final K key,
 		final V value,
 		final long timestamp) {
+		loadEntries(timestamp);
+
 		if (pages.containsKey(key)) {
 			return pages
 				.get(key)
@@ -525,24 +631,156 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 		}
 	}
 
+	/**
+	 * Returns the target entry of the given edge, or null if the edge has no target.
+	 */
+	private SharedBufferEntry<K, V> getTarget(final SharedBufferEdge<K, V> edge) {
+		final ValueTimeWrapper<V> targetValueTime = edge.getTargetValueTime();
+
+		if (targetValueTime == null) {
+			return null;
+		}
+
+		final SharedBufferEntry<K, V> target = get(edge.getTargetKey(), targetValueTime.getValue(), targetValueTime.getTimestamp());
+
+		if (target == null) {
+			throw new IllegalStateException("Could not find the shared buffer entry with key: " +
+				edge.getTargetKey() + ", value: " + targetValueTime.getValue() + " and timestamp: " +
+				targetValueTime.getTimestamp() + ". This indicates a corrupted state.");
+		}
+
+		return target;
+	}
+
+	private void add(
+		final K key,
+		final ValueTimeWrapper<V> valueTime,
+		final SharedBufferEntry<K, V> previous,
+		final DeweyNumber version) {
+		loadEntries(valueTime.getTimestamp());
+
+		SharedBufferPage<K, V> page;
+
+		if (!pages.containsKey(key)) {
+			page = new SharedBufferPage<K, V>(key);
+			pages.put(key, page);
+		} else {
+			page = pages.get(key);
+		}
+
+		page.add(valueTime, previous, version);
+
+		lowestTimestampBound = Math.min(lowestTimestampBound, valueTime.getTimestamp());
+		markChanged(valueTime.getTimestamp());
+
+		if (previous != null) {
+			markChanged(previous.getValueTime().getTimestamp());
+		}
+	}
+
 	private void internalRemove(final SharedBufferEntry<K, V> entry) {
 		Stack<SharedBufferEntry<K, V>> entriesToRemove = new Stack<>();
 		entriesToRemove.add(entry);
 
+		// the entries are only removed from their pages at the end, so that entries which are
+		// reachable on several paths can still be looked up by the edges pointing to them
+		List<SharedBufferEntry<K, V>> removedEntries = new ArrayList<>();
+
 		while (!entriesToRemove.isEmpty()) {
 			SharedBufferEntry<K, V> currentEntry = entriesToRemove.pop();
 
 			if (currentEntry.getReferenceCounter() == 0) {
-				currentEntry.remove();
+				removedEntries.add(currentEntry);
 
 				for (SharedBufferEdge<K, V> edge: currentEntry.getEdges()) {
-					if (edge.getTarget() != null) {
-						edge.getTarget().decreaseReferenceCounter();
-						entriesToRemove.push(edge.getTarget());
+					ValueTimeWrapper<V> targetValueTime = edge.getTargetValueTime();
+
+					if (targetValueTime != null) {
+						SharedBufferEntry<K, V> target = get(
+							edge.getTargetKey(),
+							targetValueTime.getValue(),
+							targetValueTime.getTimestamp());
+
+						// the target might have been pruned already
+						if (target != null) {
+							target.decreaseReferenceCounter();
+							markChanged(targetValueTime.getTimestamp());
+							entriesToRemove.push(target);
+						}
 					}
 				}
 			}
 		}
+
+		for (SharedBufferEntry<K, V> removedEntry : removedEntries) {
+			SharedBufferPage<K, V> page = pages.get(removedEntry.getKey());
+
+			if (page != null) {
+				page.remove(removedEntry.getValueTime());
+			}
+
+			markChanged(removedEntry.getValueTime().getTimestamp());
+		}
+	}
+
+	/**
+	 * Loads the entries with the given timestamp from the state into the pages, unless they have
+	 * been loaded since the last flush.
+	 */
+	private void loadEntries(final long timestamp) {
+		if (entriesState == null || !loadedTimestamps.add(timestamp)) {
+			return;
+		}
+
+		List<SharedBufferEntry<K, V>> entries = entriesState.get(timestamp);
+
+		if (entries != null) {
+			for (SharedBufferEntry<K, V> entry : entries) {
+				SharedBufferPage<K, V> page = pages.get(entry.getKey());
+
+				if (page == null) {
+					page = new SharedBufferPage<>(entry.getKey());
+					pages.put(entry.getKey(), page);
+				}
+
+				page.entries.put(entry.getValueTime(), entry);
+			}
+		}
+	}
+
+	private void markChanged(final long timestamp) {
+		if (entriesState != null) {
+			changedTimestamps.add(timestamp);
+		}
+	}
+
+	/**
+	 * Removes the entries which have expired from the state. The timestamps of the stored entries
+	 * are only scanned if the lower bound of the timestamps shows that some entries could have expired.
+	 */
+	private void pruneEntriesState(final long pruningTimestamp) {
+		if (lowestTimestampBound > pruningTimestamp) {
+			return;
+		}
+
+		flush();
+
+		List<Long> expiredTimestamps = new ArrayList<>();
+		long lowestTimestamp = Long.MAX_VALUE;
+
+		for (Long timestamp : entriesState.getTimestamps()) {
+			if (timestamp <= pruningTimestamp) {
+				expiredTimestamps.add(timestamp);
+			} else {
+				lowestTimestamp = Math.min(lowestTimestamp, timestamp);
+			}
+		}
+
+		for (Long timestamp : expiredTimestamps) {
+			entriesState.remove(timestamp);
+		}
+
+		lowestTimestampBound = lowestTimestamp;
 	}
 
 	@Override
@@ -574,6 +812,123 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 		return Objects.hash(pages, valueSerializer);
 	}
 
+	/**
+	 * The state which stores the entries of a {@link SharedBuffer} per key. The entries are grouped
+	 * by their timestamp, so that an element only reads and writes the entries it refers to instead
+	 * of the whole shared buffer.
+	 *
+	 * @param <K> Type of the keys of the shared buffer
+	 * @param <V> Type of the values of the shared buffer
+	 */
+	@Internal
+	public static class EntriesState<K extends Serializable, V> {
+
+		private final MapState<Long, List<SharedBufferEntry<K, V>>> state;
+
+		private final TypeSerializer<List<SharedBufferEntry<K, V>>> entriesSerializer;
+
+		/** The lower bound of the timestamps of the stored entries, absent if there are no entries */
+		private final ValueState<Long> lowestTimestampState;
+
+		/**
+		 * Creates the state for the entries of shared buffers.
+		 *
+		 * @param stateStore The keyed state store in which the entries are stored
+		 * @param name The name of the state
+		 * @param keySerializer Serializer for the keys of the shared buffer
+		 * @param valueSerializer Serializer for the values of the shared buffer
+		 */
+		public EntriesState(
+				KeyedStateStore stateStore,
+				String name,
+				TypeSerializer<K> keySerializer,
+				TypeSerializer<V> valueSerializer) {
+
+			this.entriesSerializer = new ListSerializer<>(
+				new SharedBufferEntrySerializer<>(keySerializer, valueSerializer));
+
+			this.state = stateStore.getMapState(new MapStateDescriptor<>(
+				name, LongSerializer.INSTANCE, entriesSerializer));
+
+			this.lowestTimestampState = stateStore.getState(new ValueStateDescriptor<>(
+				name + "-lowestTimestamp", LongSerializer.INSTANCE));
+		}
+
+		long getLowestTimestampBound() {
+			try {
+				Long lowestTimestamp = lowestTimestampState.value();
+				return lowestTimestamp != null ? lowestTimestamp : Long.MAX_VALUE;
+			} catch (Exception e) {
+				throw new FlinkRuntimeException("Could not read the lowest timestamp of the shared buffer entries.", e);
+			}
+		}
+
+		void setLowestTimestampBound(long lowestTimestamp) {
+			try {
+				if (lowestTimestamp == Long.MAX_VALUE) {
+					lowestTimestampState.clear();
+				} else {
+					lowestTimestampState.update(lowestTimestamp);
+				}
+			} catch (Exception e) {
+				throw new FlinkRuntimeException("Could not write the lowest timestamp of the shared buffer entries.", e);
+			}
+		}
+
+		List<SharedBufferEntry<K, V>> get(long timestamp) {
+			try {
+				List<SharedBufferEntry<K, V>> entries = state.get(timestamp);
+
+				// the heap state backend returns the stored objects, which must not be modified in place
+				return entries != null ? entriesSerializer.copy(entries) : null;
+			} catch (Exception e) {
+				throw new FlinkRuntimeException("Could not read the shared buffer entries with timestamp " + timestamp + '.', e);
+			}
+		}
+
+		void put(long timestamp, List<SharedBufferEntry<K, V>> entries) {
+			try {
+				state.put(timestamp, entries);
+			} catch (Exception e) {
+				throw new FlinkRuntimeException("Could not write the shared buffer entries with timestamp " + timestamp + '.', e);
+			}
+		}
+
+		void remove(long timestamp) {
+			try {
+				state.remove(timestamp);
+			} catch (Exception e) {
+				throw new FlinkRuntimeException("Could not remove the shared buffer entries with timestamp " + timestamp + '.', e);
+			}
+		}
+
+		Collection<Long> getTimestamps() {
+			try {
+				List<Long> timestamps = new ArrayList<>();
+				Iterable<Long> keys = state.keys();
+
+				if (keys != null) {
+					for (Long timestamp : keys) {
+						timestamps.add(timestamp);
+					}
+				}
+
+				return timestamps;
+			} catch (Exception e) {
+				throw new FlinkRuntimeException("Could not read the timestamps of the shared buffer entries.", e);
+			}
+		}
+
+		boolean isEmpty() {
+			try {
+				Iterable<Long> keys = state.keys();
+				return keys == null || !keys.iterator().hasNext();
+			} catch (Exception e) {
+				throw new FlinkRuntimeException("Could not read the timestamps of the shared buffer entries.", e);
+			}
+		}
+	}
+
 	/**
 	 * The SharedBufferPage represents a set of elements which have been stored under the same key.
 	 *
@@ -609,7 +964,7 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 			SharedBufferEntry<K, V> sharedBufferEntry = entries.get(valueTime);
 
 			if (sharedBufferEntry == null) {
-				sharedBufferEntry = new SharedBufferEntry<K, V>(valueTime, this);
+				sharedBufferEntry = new SharedBufferEntry<K, V>(key, valueTime);
 
 				entries.put(valueTime, sharedBufferEntry);
 			}
@@ -617,10 +972,10 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 			SharedBufferEdge<K, V> newEdge;
 
 			if (previous != null) {
-				newEdge = new SharedBufferEdge<>(previous, version);
+				newEdge = new SharedBufferEdge<>(previous.getKey(), previous.getValueTime(), version);
 				previous.increaseReferenceCounter();
 			} else {
-				newEdge = new SharedBufferEdge<>(null, version);
+				newEdge = new SharedBufferEdge<K, V>(null, null, version);
 			}
 
 			sharedBufferEntry.addEdge(newEdge);
@@ -697,38 +1052,26 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 
 	/**
 	 * Entry of a {@link SharedBufferPage}. The entry contains the value timestamp pair, a set of
-	 * edges to other shared buffer entries denoting a relation, a reference to the owning page and
+	 * edges to other shared buffer entries denoting a relation, the key of the owning page and
 	 * a reference counter. The reference counter counts how many references are kept to this entry.
 	 *
 	 * @param <K> Type of the key
 	 * @param <V> Type of the value
 	 */
 	private static class SharedBufferEntry<K, V> {
+		private final K key;
 		private final ValueTimeWrapper<V> valueTime;
 		private final Set<SharedBufferEdge<K, V>> edges;
-		private final SharedBufferPage<K, V> page;
 		private int referenceCounter;
 
 		public SharedBufferEntry(
-			final ValueTimeWrapper<V> valueTime,
-			final SharedBufferPage<K, V> page) {
-			this(valueTime, null, page);
-		}
-
-		public SharedBufferEntry(
-			final ValueTimeWrapper<V> valueTime,
-			final SharedBufferEdge<K, V> edge,
-			final SharedBufferPage<K, V> page) {
+			final K key,
+			final ValueTimeWrapper<V> valueTime) {
+			this.key = key;
 			this.valueTime = valueTime;
 			edges = new HashSet<>();
 
-			if (edge != null) {
-				edges.add(edge);
-			}
-
 			referenceCounter = 0;
-
-			this.page = page;
 		}
 
 		public ValueTimeWrapper<V> getValueTime() {
@@ -740,23 +1083,13 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 		}
 
 		public K getKey() {
-			return page.getKey();
+			return key;
 		}
 
 		public void addEdge(SharedBufferEdge<K, V> edge) {
 			edges.add(edge);
 		}
 
-		public boolean remove() {
-			if (page != null) {
-				page.remove(valueTime);
-
-				return true;
-			} else {
-				return false;
-			}
-		}
-
 		public void increaseReferenceCounter() {
 			referenceCounter++;
 		}
@@ -798,22 +1131,29 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 	}
 
 	/**
-	 * Versioned edge between two shared buffer entries
+	 * Versioned edge between two shared buffer entries. The target entry is referenced by its key
+	 * and its value timestamp pair.
 	 *
 	 * @param <K> Type of the key
 	 * @param <V> Type of the value
 	 */
 	public static class SharedBufferEdge<K, V> {
-		private final SharedBufferEntry<K, V> target;
+		private final K targetKey;
+		private final ValueTimeWrapper<V> targetValueTime;
 		private final DeweyNumber version;
 
-		public SharedBufferEdge(final SharedBufferEntry<K, V> target, final DeweyNumber version) {
-			this.target = target;
+		public SharedBufferEdge(final K targetKey, final ValueTimeWrapper<V> targetValueTime, final DeweyNumber version) {
+			this.targetKey = targetKey;
+			this.targetValueTime = targetValueTime;
 			this.version = version;
 		}
 
-		public SharedBufferEntry<K, V> getTarget() {
-			return target;
+		public K getTargetKey() {
+			return targetKey;
+		}
+
+		public ValueTimeWrapper<V> getTargetValueTime() {
+			return targetValueTime;
 		}
 
 		public DeweyNumber getVersion() {
@@ -822,7 +1162,7 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 
 		@Override
 		public String toString() {
-			return "SharedBufferEdge(" + target + ", " + version + ")";
+			return "SharedBufferEdge(" + targetKey + ", " + targetValueTime + ", " + version + ")";
 		}
 
 		@Override
@@ -832,11 +1172,11 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 				SharedBufferEdge<K, V> other = (SharedBufferEdge<K, V>) obj;
 
 				if (version.equals(other.version)) {
-					if (target == null && other.target == null) {
+					if (targetValueTime == null && other.targetValueTime == null) {
 						return true;
-					} else if (target != null && other.target != null) {
-						return target.getKey().equals(other.target.getKey()) &&
-							target.getValueTime().equals(other.target.getValueTime());
+					} else if (targetValueTime != null && other.targetValueTime != null) {
+						return targetKey.equals(other.targetKey) &&
+							targetValueTime.equals(other.targetValueTime);
 					} else {
 						return false;
 					}
@@ -850,8 +1190,8 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 
 		@Override
 		public int hashCode() {
-			if (target != null) {
-				return Objects.hash(target.getKey(), target.getValueTime(), version);
+			if (targetValueTime != null) {
+				return Objects.hash(targetKey, targetValueTime, version);
 			} else {
 				return version.hashCode();
 			}
@@ -942,4 +1282,166 @@ public class SharedBuffer<K extends Serializable, V> implements Serializable {
 			return "ExtractionState(" + entry + ", " + version + ", [" +  StringUtils.join(path, ", ") + "])";
 		}
 	}
+
+	/**
+	 * Serializer for the {@link SharedBufferEntry SharedBufferEntries} which are stored in an
+	 * {@link EntriesState}. The targets of the edges are written as key, value and timestamp.
+	 *
+	 * @param <K> Type of the key
+	 * @param <V> Type of the value
+	 */
+	private static class SharedBufferEntrySerializer<K, V> extends TypeSerializer<SharedBufferEntry<K, V>> {
+
+		private static final long serialVersionUID = -2563197416473527519L;
+
+		private final TypeSerializer<K> keySerializer;
+
+		private final TypeSerializer<V> valueSerializer;
+
+		SharedBufferEntrySerializer(TypeSerializer<K> keySerializer, TypeSerializer<V> valueSerializer) {
+			this.keySerializer = keySerializer;
+			this.valueSerializer = valueSerializer;
+		}
+
+		@Override
+		public boolean isImmutableType() {
+			return false;
+		}
+
+		@Override
+		public TypeSerializer<SharedBufferEntry<K, V>> duplicate() {
+			return new SharedBufferEntrySerializer<>(keySerializer.duplicate(), valueSerializer.duplicate());
+		}
+
+		@Override
+		public SharedBufferEntry<K, V> createInstance() {
+			return null;
+		}
+
+		@Override
+		public SharedBufferEntry<K, V> copy(SharedBufferEntry<K, V> from) {
+			SharedBufferEntry<K, V> copy = new SharedBufferEntry<>(
+				keySerializer.copy(from.getKey()),
+				copyValueTime(from.getValueTime()));
+
+			copy.referenceCounter = from.referenceCounter;
+
+			for (SharedBufferEdge<K, V> edge : from.edges) {
+				copy.edges.add(new SharedBufferEdge<>(
+					edge.getTargetValueTime() != null ? keySerializer.copy(edge.getTargetKey()) : null,
+					edge.getTargetValueTime() != null ? copyValueTime(edge.getTargetValueTime()) : null,
+					new DeweyNumber(edge.getVersion())));
+			}
+
+			return copy;
+		}
+
+		@Override
+		public SharedBufferEntry<K, V> copy(SharedBufferEntry<K, V> from, SharedBufferEntry<K, V> reuse) {
+			return copy(from);
+		}
+
+		@Override
+		public int getLength() {
+			return -1;
+		}
+
+		@Override
+		public void serialize(SharedBufferEntry<K, V> record, DataOutputView target) throws IOException {
+			keySerializer.serialize(record.getKey(), target);
+			serializeValueTime(record.getValueTime(), target);
+			target.writeInt(record.referenceCounter);
+
+			target.writeInt(record.edges.size());
+
+			for (SharedBufferEdge<K, V> edge : record.edges) {
+				if (edge.getTargetValueTime() != null) {
+					target.writeBoolean(true);
+					keySerializer.serialize(edge.getTargetKey(), target);
+					serializeValueTime(edge.getTargetValueTime(), target);
+				} else {
+					target.writeBoolean(false);
+				}
+
+				target.writeUTF(edge.getVersion().toString());
+			}
+		}
+
+		@Override
+		public SharedBufferEntry<K, V> deserialize(DataInputView source) throws IOException {
+			SharedBufferEntry<K, V> entry = new SharedBufferEntry<>(
+				keySerializer.deserialize(source),
+				deserializeValueTime(source));
+
+			entry.referenceCounter = source.readInt();
+
+			int numberEdges = source.readInt();
+
+			for (int i = 0; i < numberEdges; i++) {
+				K targetKey = null;
+				ValueTimeWrapper<V> targetValueTime = null;
+
+				if (source.readBoolean()) {
+					targetKey = keySerializer.deserialize(source);
+					targetValueTime = deserializeValueTime(source);
+				}
+
+				DeweyNumber version = DeweyNumber.fromString(source.readUTF());
+
+				entry.edges.add(new SharedBufferEdge<>(targetKey, targetValueTime, version));
+			}
+
+			return entry;
+		}
+
+		@Override
+		public SharedBufferEntry<K, V> deserialize(SharedBufferEntry<K, V> reuse, DataInputView source) throws IOException {
+			return deserialize(source);
+		}
+
+		@Override
+		public void copy(DataInputView source, DataOutputView target) throws IOException {
+			serialize(deserialize(source), target);
+		}
+
+		private ValueTimeWrapper<V> copyValueTime(ValueTimeWrapper<V> valueTime) {
+			return new ValueTimeWrapper<>(valueSerializer.copy(valueTime.getValue()), valueTime.getTimestamp());
+		}
+
+		private void serializeValueTime(ValueTimeWrapper<V> valueTime, DataOutputView target) throws IOException {
+			valueSerializer.serialize(valueTime.getValue(), target);
+			target.writeLong(valueTime.getTimestamp());
+		}
+
+		private ValueTimeWrapper<V> deserializeValueTime(DataInputView source) throws IOException {
+			V value = valueSerializer.deserialize(source);
+			long timestamp = source.readLong();
+
+			return new ValueTimeWrapper<>(value, timestamp);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof SharedBufferEntrySerializer) {
+				@SuppressWarnings("unchecked")
+				SharedBufferEntrySerializer<K, V> other = (SharedBufferEntrySerializer<K, V>) obj;
+
+				return other.canEqual(this) &&
+					keySerializer.equals(other.keySerializer) &&
+					valueSerializer.equals(other.valueSerializer);
+			} else {
+				return false;
+			}
+		}
+
+		@Override
+		public boolean canEqual(Object obj) {
+			return obj instanceof SharedBufferEntrySerializer;
+		}
+
+		@Override
+		public int hashCode() {
+			return 37 * keySerializer.hashCode() + valueSerializer.hashCode();
+		}
+	}
 }
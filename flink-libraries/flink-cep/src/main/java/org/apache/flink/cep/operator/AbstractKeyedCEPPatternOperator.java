@@ -19,11 +19,17 @@
 package org.apache.flink.cep.operator;
 
 import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
 import org.apache.flink.api.common.state.ValueState;
 import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.ListSerializer;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
 import org.apache.flink.api.java.functions.KeySelector;
 import org.apache.flink.cep.nfa.NFA;
+import org.apache.flink.cep.nfa.SharedBuffer;
 import org.apache.flink.cep.nfa.compiler.NFACompiler;
 import org.apache.flink.core.fs.FSDataInputStream;
 import org.apache.flink.core.memory.DataInputView;
@@ -45,15 +51,20 @@ import org.apache.flink.util.Preconditions;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.PriorityQueue;
 
 /**
  * Abstract CEP pattern operator for a keyed input stream. For each key, the operator creates
- * a {@link NFA} and a priority queue to buffer out of order elements. Both data structures are
- * stored using the managed keyed state. Additionally, the set of all seen keys is kept as part of the
- * operator state. This is necessary to trigger the execution for all keys upon receiving a new
- * watermark.
+ * a {@link NFA} and buffers out of order elements by their timestamp. Both data structures are
+ * stored using the managed keyed state. The partial matches of the NFA are kept in a map state
+ * of their own, so that an element only accesses the entries of the {@link SharedBuffer} it
+ * refers to, instead of deserializing and serializing all partial matches of the key. Additionally,
+ * the set of all seen keys is kept as part of the operator state. This is necessary to trigger the
+ * execution for all keys upon receiving a new watermark.
  *
  * @param <IN> Type of the input elements
  * @param <KEY> Type of the key on which the input stream is keyed
@@ -80,12 +91,20 @@ public abstract class AbstractKeyedCEPPatternOperator<IN, KEY, OUT>
 	///////////////			State			//////////////
 
 	private static final String NFA_OPERATOR_STATE_NAME = "nfaOperatorState";
+	private static final String NFA_SHARED_BUFFER_STATE_NAME = "nfaSharedBufferState";
+	private static final String EVENT_QUEUE_STATE_NAME = "eventQueuesStateName";
 	private static final String PRIORITY_QUEUE_STATE_NAME = "priorityQueueStateName";
 
 	private transient ValueState<NFA<IN>> nfaOperatorState;
+	private transient SharedBuffer.EntriesState<String, IN> sharedBufferEntriesState;
+	private transient MapState<Long, List<IN>> elementQueueState;
+
+	/**
+	 * The priority queues of earlier versions. They are only read to move their elements
+	 * to the {@link #elementQueueState}.
+	 */
 	private transient ValueState<PriorityQueue<StreamRecord<IN>>> priorityQueueOperatorState;
 
-	private final PriorityQueueFactory<StreamRecord<IN>> priorityQueueFactory = new PriorityQueueStreamRecordFactory<>();
 	private final NFACompiler.NFAFactory<IN> nfaFactory;
 
 	/**
@@ -125,6 +144,22 @@ public abstract class AbstractKeyedCEPPatternOperator<IN, KEY, OUT>
 					new NFA.Serializer<IN>()));
 		}
 
+		if (sharedBufferEntriesState == null) {
+			sharedBufferEntriesState = new SharedBuffer.EntriesState<>(
+				getKeyedStateStore(),
+				NFA_SHARED_BUFFER_STATE_NAME,
+				StringSerializer.INSTANCE,
+				inputSerializer);
+		}
+
+		if (elementQueueState == null) {
+			elementQueueState = getRuntimeContext().getMapState(
+				new MapStateDescriptor<>(
+					EVENT_QUEUE_STATE_NAME,
+					LongSerializer.INSTANCE,
+					new ListSerializer<>(inputSerializer)));
+		}
+
 		@SuppressWarnings("unchecked,rawtypes")
 		TypeSerializer<StreamRecord<IN>> streamRecordSerializer =
 			(TypeSerializer) new StreamElementSerializer<>(inputSerializer);
@@ -154,31 +189,41 @@ public abstract class AbstractKeyedCEPPatternOperator<IN, KEY, OUT>
 				@Override
 				public void onWatermark(KEY key, Watermark watermark) throws IOException {
 
-					// 1) get the queue of pending elements for the key and the corresponding NFA,
+					// 1) get the timestamps of the pending elements for the key and the corresponding NFA,
 					// 2) process the pending elements in event time order by feeding them in the NFA
 					// 3) advance the time to the current watermark, so that expired patterns are discarded.
-					// 4) update the stored state for the key, by only storing the new NFA and priority queue iff they
-					//		have state to be used later.
-
-					// STEP 1
-					PriorityQueue<StreamRecord<IN>> priorityQueue = getPriorityQueue();
-					NFA<IN> nfa = getNFA();
-
-					// STEP 2
-					while (!priorityQueue.isEmpty() && priorityQueue.peek().getTimestamp() <= watermark.getTimestamp()) {
-						StreamRecord<IN> streamRecord = priorityQueue.poll();
-						processEvent(nfa, streamRecord.getValue(), streamRecord.getTimestamp());
-					}
-
-					// STEP 3
-					advanceTime(nfa, watermark.getTimestamp());
-
-					// STEP 4
-					updatePriorityQueue(priorityQueue);
-					updateNFA(nfa);
-
-					if (priorityQueue.isEmpty() && nfa.isEmpty()) {
-						watermarkCallbackService.unregisterKeyFromWatermarkCallback(key);
+					// 4) update the stored state for the key, by only storing the new NFA iff it
+					//		has state to be used later, and by removing the processed elements.
+
+					try {
+						// STEP 1
+						migratePriorityQueue();
+						PriorityQueue<Long> sortedTimestamps = getSortedTimestamps();
+						NFA<IN> nfa = getNFA();
+
+						// STEP 2
+						while (!sortedTimestamps.isEmpty() && sortedTimestamps.peek() <= watermark.getTimestamp()) {
+							long timestamp = sortedTimestamps.poll();
+
+							for (IN element : elementQueueState.get(timestamp)) {
+								processEvent(nfa, element, timestamp);
+							}
+							elementQueueState.remove(timestamp);
+						}
+
+						// STEP 3
+						advanceTime(nfa, watermark.getTimestamp());
+
+						// STEP 4
+						updateNFA(nfa);
+
+						if (sortedTimestamps.isEmpty() && nfa.isEmpty()) {
+							watermarkCallbackService.unregisterKeyFromWatermarkCallback(key);
+						}
+					} catch (IOException | RuntimeException e) {
+						throw e;
+					} catch (Exception e) {
+						throw new IOException("Could not process the watermark " + watermark + " for key " + key + '.', e);
 					}
 				}
 			},
@@ -198,26 +243,67 @@ public abstract class AbstractKeyedCEPPatternOperator<IN, KEY, OUT>
 		} else {
 			getInternalWatermarkCallbackService().registerKeyForWatermarkCallback(keySelector.getKey(element.getValue()));
 
-			PriorityQueue<StreamRecord<IN>> priorityQueue = getPriorityQueue();
-
 			// event time processing
 			// we have to buffer the elements until we receive the proper watermark
-			if (getExecutionConfig().isObjectReuseEnabled()) {
-				// copy the StreamRecord so that it cannot be changed
-				priorityQueue.offer(new StreamRecord<IN>(inputSerializer.copy(element.getValue()), element.getTimestamp()));
-			} else {
-				priorityQueue.offer(element);
+			bufferEvent(element.getValue(), element.getTimestamp());
+		}
+	}
+
+	private void bufferEvent(IN event, long timestamp) throws Exception {
+		List<IN> elementsForTimestamp = elementQueueState.get(timestamp);
+		if (elementsForTimestamp == null) {
+			elementsForTimestamp = new ArrayList<>();
+		}
+
+		if (getExecutionConfig().isObjectReuseEnabled()) {
+			// copy the element so that it cannot be changed
+			elementsForTimestamp.add(inputSerializer.copy(event));
+		} else {
+			elementsForTimestamp.add(event);
+		}
+		elementQueueState.put(timestamp, elementsForTimestamp);
+	}
+
+	private PriorityQueue<Long> getSortedTimestamps() throws Exception {
+		PriorityQueue<Long> sortedTimestamps = new PriorityQueue<>();
+
+		Iterable<Long> timestamps = elementQueueState.keys();
+		if (timestamps != null) {
+			for (Long timestamp : timestamps) {
+				sortedTimestamps.offer(timestamp);
+			}
+		}
+		return sortedTimestamps;
+	}
+
+	/**
+	 * Moves the elements of the priority queue of the current key, which has been restored from
+	 * an earlier version, to the buffered elements.
+	 */
+	private void migratePriorityQueue() throws Exception {
+		PriorityQueue<StreamRecord<IN>> priorityQueue = priorityQueueOperatorState.value();
+
+		if (priorityQueue != null) {
+			for (StreamRecord<IN> streamRecord : priorityQueue) {
+				bufferEvent(streamRecord.getValue(), streamRecord.getTimestamp());
 			}
-			updatePriorityQueue(priorityQueue);
+			priorityQueueOperatorState.clear();
 		}
 	}
 
 	private NFA<IN> getNFA() throws IOException {
 		NFA<IN> nfa = nfaOperatorState.value();
-		return nfa != null ? nfa : nfaFactory.createNFA();
+		if (nfa == null) {
+			nfa = nfaFactory.createNFA();
+		}
+
+		nfa.setSharedBufferEntriesState(sharedBufferEntriesState);
+		return nfa;
 	}
 
 	private void updateNFA(NFA<IN> nfa) throws IOException {
+		nfa.flushSharedBuffer();
+
 		if (nfa.isEmpty()) {
 			nfaOperatorState.clear();
 		} else {
@@ -225,19 +311,6 @@ public abstract class AbstractKeyedCEPPatternOperator<IN, KEY, OUT>
 		}
 	}
 
-	private PriorityQueue<StreamRecord<IN>> getPriorityQueue() throws IOException {
-		PriorityQueue<StreamRecord<IN>> priorityQueue = priorityQueueOperatorState.value();
-		return priorityQueue != null ? priorityQueue : priorityQueueFactory.createPriorityQueue();
-	}
-
-	private void updatePriorityQueue(PriorityQueue<StreamRecord<IN>> queue) throws IOException {
-		if (queue.isEmpty()) {
-			priorityQueueOperatorState.clear();
-		} else {
-			priorityQueueOperatorState.update(queue);
-		}
-	}
-
 	/**
 	 * Process the given event by giving it to the NFA and outputting the produced set of matched
 	 * event sequences.
@@ -281,20 +354,19 @@ public abstract class AbstractKeyedCEPPatternOperator<IN, KEY, OUT>
 			@SuppressWarnings("unchecked")
 			NFA<IN> nfa = (NFA<IN>) ois.readObject();
 
+			// finally register the retrieved state with the new keyed state.
+			setCurrentKey((byte) 0);
+			nfaOperatorState.update(nfa);
+
 			// retrieve the elements that were pending in the priority queue
 			MultiplexingStreamRecordSerializer<IN> recordSerializer = new MultiplexingStreamRecordSerializer<>(inputSerializer);
-			PriorityQueue<StreamRecord<IN>> priorityQueue = priorityQueueFactory.createPriorityQueue();
 			int entries = ois.readInt();
 			for (int i = 0; i < entries; i++) {
 				StreamElement streamElement = recordSerializer.deserialize(inputView);
-				priorityQueue.offer(streamElement.<IN>asRecord());
+				StreamRecord<IN> streamRecord = streamElement.asRecord();
+				bufferEvent(streamRecord.getValue(), streamRecord.getTimestamp());
 			}
 
-			// finally register the retrieved state with the new keyed state.
-			setCurrentKey((byte) 0);
-			nfaOperatorState.update(nfa);
-			priorityQueueOperatorState.update(priorityQueue);
-
 			if (!isProcessingTime) {
 				// this is relevant only for event/ingestion time
 
@@ -464,15 +536,22 @@ public abstract class AbstractKeyedCEPPatternOperator<IN, KEY, OUT>
 	}
 
 	@VisibleForTesting
-	public boolean hasNonEmptyPQ(KEY key) throws IOException {
+	public boolean hasNonEmptyPQ(KEY key) throws Exception {
 		setCurrentKey(key);
-		return priorityQueueOperatorState.value() != null;
+		return !getSortedTimestamps().isEmpty();
 	}
 
 	@VisibleForTesting
-	public int getPQSize(KEY key) throws IOException {
+	public int getPQSize(KEY key) throws Exception {
 		setCurrentKey(key);
-		PriorityQueue<StreamRecord<IN>> pq = getPriorityQueue();
-		return pq == null ? -1 : pq.size();
+		int counter = 0;
+
+		Iterable<Map.Entry<Long, List<IN>>> elements = elementQueueState.entries();
+		if (elements != null) {
+			for (Map.Entry<Long, List<IN>> elementsForTimestamp : elements) {
+				counter += elementsForTimestamp.getValue().size();
+			}
+		}
+		return counter;
 	}
 }
@@ -19,6 +19,12 @@
 package org.apache.flink.cep.nfa;
 
 import com.google.common.collect.LinkedHashMultimap;
+import org.apache.flink.api.common.state.KeyedStateStore;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
 import org.apache.flink.cep.Event;
 import org.apache.flink.util.TestLogger;
 import org.junit.Test;
@@ -30,9 +36,17 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class SharedBufferTest extends TestLogger {
 
@@ -133,4 +147,155 @@ public class SharedBufferTest extends TestLogger {
 
 		assertEquals(sharedBuffer, copy);
 	}
+
+	/**
+	 * Tests that the entries of a shared buffer which is bound to an entries state are stored in
+	 * the state, grouped by timestamp, and are loaded again when they are accessed.
+	 */
+	@Test
+	public void testSharedBufferWithEntriesState() throws Exception {
+		TestMapState<Object, Object> mapState = new TestMapState<>();
+		TestValueState<Object> lowestTimestampState = new TestValueState<>();
+		SharedBuffer<String, Event> sharedBuffer = new SharedBuffer<>(Event.createTypeSerializer());
+		sharedBuffer.setEntriesState(new SharedBuffer.EntriesState<>(
+			createStateStore(mapState, lowestTimestampState), "entries", StringSerializer.INSTANCE, Event.createTypeSerializer()));
+
+		Event[] events = new Event[4];
+
+		for (int i = 0; i < events.length; i++) {
+			events[i] = new Event(i + 1, "e" + (i + 1), i);
+		}
+
+		sharedBuffer.put("a", events[0], 1L, DeweyNumber.fromString("1"));
+		sharedBuffer.put("b", events[1], 2L, "a", events[0], 1L, DeweyNumber.fromString("1.0"));
+		sharedBuffer.flush();
+
+		assertEquals(2, mapState.map.size());
+		assertEquals(1L, lowestTimestampState.value);
+
+		sharedBuffer.put("c", events[2], 3L, "b", events[1], 2L, DeweyNumber.fromString("1.0.0"));
+		sharedBuffer.flush();
+
+		assertEquals(3, mapState.map.size());
+
+		// the entries are not serialized together with the shared buffer
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(baos);
+		oos.writeObject(sharedBuffer);
+
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		@SuppressWarnings("unchecked")
+		SharedBuffer<String, Event> copy = (SharedBuffer<String, Event>) ois.readObject();
+		assertTrue(copy.isEmpty());
+
+		LinkedHashMultimap<String, Event> expectedPattern = LinkedHashMultimap.create();
+		expectedPattern.put("a", events[0]);
+		expectedPattern.put("b", events[1]);
+		expectedPattern.put("c", events[2]);
+
+		Collection<LinkedHashMultimap<String, Event>> patterns =
+			sharedBuffer.extractPatterns("c", events[2], 3L, DeweyNumber.fromString("1.0.0"));
+
+		assertEquals(Collections.singletonList(expectedPattern), patterns);
+
+		// removing the last entry releases and removes the whole path
+		sharedBuffer.remove("c", events[2], 3L);
+
+		assertTrue(sharedBuffer.isEmpty());
+		assertTrue(mapState.map.isEmpty());
+
+		sharedBuffer.put("a", events[3], 5L, DeweyNumber.fromString("2"));
+		sharedBuffer.prune(4L);
+
+		assertTrue(sharedBuffer.contains("a", events[3], 5L));
+
+		sharedBuffer.prune(5L);
+
+		assertFalse(sharedBuffer.contains("a", events[3], 5L));
+		assertTrue(sharedBuffer.isEmpty());
+		assertNull(lowestTimestampState.value);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static KeyedStateStore createStateStore(MapState<Object, Object> mapState, ValueState<Object> valueState) {
+		KeyedStateStore stateStore = mock(KeyedStateStore.class);
+		when(stateStore.getMapState(any(MapStateDescriptor.class))).thenReturn(mapState);
+		when(stateStore.getState(any(ValueStateDescriptor.class))).thenReturn(valueState);
+		return stateStore;
+	}
+
+	private static class TestValueState<T> implements ValueState<T> {
+
+		private T value;
+
+		@Override
+		public T value() {
+			return value;
+		}
+
+		@Override
+		public void update(T value) {
+			this.value = value;
+		}
+
+		@Override
+		public void clear() {
+			value = null;
+		}
+	}
+
+	private static class TestMapState<UK, UV> implements MapState<UK, UV> {
+
+		private final Map<UK, UV> map = new HashMap<>();
+
+		@Override
+		public UV get(UK key) {
+			return map.get(key);
+		}
+
+		@Override
+		public void put(UK key, UV value) {
+			map.put(key, value);
+		}
+
+		@Override
+		public void putAll(Map<UK, UV> map) {
+			this.map.putAll(map);
+		}
+
+		@Override
+		public void remove(UK key) {
+			map.remove(key);
+		}
+
+		@Override
+		public boolean contains(UK key) {
+			return map.containsKey(key);
+		}
+
+		@Override
+		public Iterable<Map.Entry<UK, UV>> entries() {
+			return map.entrySet();
+		}
+
+		@Override
+		public Iterable<UK> keys() {
+			return map.keySet();
+		}
+
+		@Override
+		public Iterable<UV> values() {
+			return map.values();
+		}
+
+		@Override
+		public Iterator<Map.Entry<UK, UV>> iterator() {
+			return map.entrySet().iterator();
+		}
+
+		@Override
+		public void clear() {
+			map.clear();
+		}
+	}
 }
@@ -21,6 +21,7 @@ package org.apache.flink.runtime.checkpoint;
 import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.common.JobID;
 import org.apache.flink.configuration.ConfigConstants;
+import org.apache.flink.core.fs.Path;
 import org.apache.flink.runtime.checkpoint.savepoint.SavepointStore;
 import org.apache.flink.runtime.concurrent.ApplyFunction;
 import org.apache.flink.runtime.concurrent.Future;
@@ -36,8 +37,10 @@ import org.apache.flink.runtime.jobgraph.JobVertexID;
 import org.apache.flink.runtime.jobgraph.tasks.ExternalizedCheckpointSettings;
 import org.apache.flink.runtime.messages.checkpoint.AcknowledgeCheckpoint;
 import org.apache.flink.runtime.messages.checkpoint.DeclineCheckpoint;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.runtime.state.StateObject;
 import org.apache.flink.runtime.state.TaskStateHandles;
+import org.apache.flink.runtime.state.filesystem.FileStateContainerCleaner;
 
 import org.apache.flink.runtime.taskmanager.DispatcherThreadFactory;
 import org.slf4j.Logger;
@@ -109,6 +112,14 @@ public class CheckpointCoordinator {
 	 * accessing this don't block the job manager actor and run asynchronously. */
 	private final CompletedCheckpointStore completedCheckpointStore;
 
+	/** Registry that reference-counts the state shared by the retained completed checkpoints.
+	 * Replaced on every recovery, so that pending asynchronous discards of earlier runs cannot
+	 * interfere with the recovered checkpoints. Only accessed in synchronized scope */
+	private SharedStateRegistry sharedStateRegistry;
+
+	/** Deletes the container files of aborted checkpoints, whose file segments are never registered */
+	private final FileStateContainerCleaner containerCleaner = new FileStateContainerCleaner();
+
 	/** Default directory for persistent checkpoints; <code>null</code> if none configured.
 	 * THIS WILL BE REPLACED BY PROPER STATE-BACKEND METADATA WRITING */
 	@Nullable
@@ -218,6 +229,7 @@ public class CheckpointCoordinator {
 		this.completedCheckpointStore = checkNotNull(completedCheckpointStore);
 		this.checkpointDirectory = checkpointDirectory;
 		this.executor = checkNotNull(executor);
+		this.sharedStateRegistry = new SharedStateRegistry();
 
 		this.recentPendingCheckpoints = new ArrayDeque<>(NUM_GHOST_CHECKPOINT_IDS);
 
@@ -277,12 +289,15 @@ public class CheckpointCoordinator {
 				timer.shutdownNow();
 
 				// clear and discard all pending checkpoints
+				long latestPendingCheckpointId = -1L;
 				for (PendingCheckpoint pending : pendingCheckpoints.values()) {
 					pending.abortError(new Exception("Checkpoint Coordinator is shutting down"));
+					latestPendingCheckpointId = Math.max(latestPendingCheckpointId, pending.getCheckpointId());
 				}
 				pendingCheckpoints.clear();
+				deleteUnreferencedContainers(latestPendingCheckpointId, false);
 
-				completedCheckpointStore.shutdown(jobStatus);
+				completedCheckpointStore.shutdown(jobStatus, sharedStateRegistry);
 				checkpointIdCounter.shutdown(jobStatus);
 			}
 		}
@@ -505,6 +520,7 @@ public class CheckpointCoordinator {
 							checkpoint.abortExpired();
 							pendingCheckpoints.remove(checkpointID);
 							rememberRecentCheckpointId(checkpointID);
+							deleteUnreferencedContainers(checkpointID, false);
 
 							triggerQueuedRequests();
 						}
@@ -588,6 +604,7 @@ public class CheckpointCoordinator {
 				// guard the map against concurrent modifications
 				synchronized (lock) {
 					pendingCheckpoints.remove(checkpointID);
+					deleteUnreferencedContainers(checkpointID, false);
 				}
 
 				int numUnsuccessful = numUnsuccessfulCheckpointsTriggers.incrementAndGet();
@@ -637,6 +654,7 @@ public class CheckpointCoordinator {
 				pendingCheckpoints.remove(checkpointId);
 				checkpoint.abortDeclined();
 				rememberRecentCheckpointId(checkpointId);
+				deleteUnreferencedContainers(checkpointId, false);
 
 				// we don't have to schedule another "dissolving" checkpoint any more because the
 				// cancellation barriers take care of breaking downstream alignments
@@ -703,6 +721,12 @@ public class CheckpointCoordinator {
 				return false;
 			}
 
+			// the directories of the container files are needed to delete the containers of
+			// aborted checkpoints, also of those whose state is discarded below
+			if (message.getSubtaskState() != null) {
+				containerCleaner.addJobDirectories(message.getSubtaskState().getFileSegments());
+			}
+
 			final PendingCheckpoint checkpoint = pendingCheckpoints.get(checkpointId);
 
 			if (checkpoint != null && !checkpoint.isDiscarded()) {
@@ -779,6 +803,7 @@ public class CheckpointCoordinator {
 	private void completePendingCheckpoint(PendingCheckpoint pendingCheckpoint) throws CheckpointException {
 		final long checkpointId = pendingCheckpoint.getCheckpointId();
 		CompletedCheckpoint completedCheckpoint = null;
+		boolean sharedStatesRegistered = false;
 
 		try {
 			// externalize the checkpoint if required
@@ -788,7 +813,12 @@ public class CheckpointCoordinator {
 				completedCheckpoint = pendingCheckpoint.finalizeCheckpointNonExternalized();
 			}
 
-			completedCheckpointStore.addCheckpoint(completedCheckpoint);
+			// the shared state must be registered before the store subsumes older checkpoints
+			completedCheckpoint.checkReferencedSharedStates(sharedStateRegistry);
+			completedCheckpoint.registerSharedStates(sharedStateRegistry);
+			sharedStatesRegistered = true;
+
+			completedCheckpointStore.addCheckpoint(completedCheckpoint, sharedStateRegistry);
 
 			rememberRecentCheckpointId(checkpointId);
 			dropSubsumedCheckpoints(checkpointId);
@@ -799,15 +829,18 @@ public class CheckpointCoordinator {
 				pendingCheckpoint.abortError(exception);
 			}
 
+			deleteUnreferencedContainers(checkpointId, false);
+
 			if (completedCheckpoint != null) {
 				// we failed to store the completed checkpoint. Let's clean up
 				final CompletedCheckpoint cc = completedCheckpoint;
+				final SharedStateRegistry registry = sharedStatesRegistered ? sharedStateRegistry : null;
 
 				executor.execute(new Runnable() {
 					@Override
 					public void run() {
 						try {
-							cc.discard();
+							cc.discard(registry);
 						} catch (Throwable t) {
 							LOG.warn("Could not properly discard completed checkpoint {}.", cc.getCheckpointID(), t);
 						}
@@ -829,6 +862,9 @@ public class CheckpointCoordinator {
 		LOG.info("Completed checkpoint {} ({} bytes in {} ms).", checkpointId,
 			completedCheckpoint.getStateSize(), completedCheckpoint.getDuration());
 
+		// no task writes to the container files of earlier checkpoints any more
+		deleteUnreferencedContainers(checkpointId, true);
+
 		if (LOG.isDebugEnabled()) {
 			StringBuilder builder = new StringBuilder();
 			builder.append("Checkpoint state: ");
@@ -943,6 +979,14 @@ public class CheckpointCoordinator {
 			// Recover the checkpoints
 			completedCheckpointStore.recover();
 
+			// register the shared state of all recovered checkpoints at a fresh registry, so that
+			// pending discards of checkpoints of previous runs go against the old registry
+			sharedStateRegistry = new SharedStateRegistry();
+			for (CompletedCheckpoint completedCheckpoint : completedCheckpointStore.getAllCheckpoints()) {
+				containerCleaner.addJobDirectories(completedCheckpoint.getFileSegments());
+				completedCheckpoint.registerSharedStates(sharedStateRegistry);
+			}
+
 			// restore from the latest checkpoint
 			CompletedCheckpoint latest = completedCheckpointStore.getLatestCheckpoint();
 
@@ -1012,6 +1056,12 @@ public class CheckpointCoordinator {
 		return checkpointIdCounter;
 	}
 
+	public SharedStateRegistry getSharedStateRegistry() {
+		synchronized (lock) {
+			return sharedStateRegistry;
+		}
+	}
+
 	public long getCheckpointTimeout() {
 		return checkpointTimeout;
 	}
@@ -1046,11 +1096,14 @@ public class CheckpointCoordinator {
 				currentPeriodicTrigger = null;
 			}
 
+			long latestPendingCheckpointId = -1L;
 			for (PendingCheckpoint p : pendingCheckpoints.values()) {
 				p.abortError(new Exception("Checkpoint Coordinator is suspending."));
+				latestPendingCheckpointId = Math.max(latestPendingCheckpointId, p.getCheckpointId());
 			}
 
 			pendingCheckpoints.clear();
+			deleteUnreferencedContainers(latestPendingCheckpointId, false);
 			numUnsuccessfulCheckpointsTriggers.set(0);
 		}
 	}
@@ -1088,6 +1141,47 @@ public class CheckpointCoordinator {
 		}
 	}
 
+	/**
+	 * Deletes the container files of the checkpoints up to the given checkpoint asynchronously, unless
+	 * they are referenced by a pending checkpoint or registered by a completed checkpoint. The file
+	 * segments are only registered when their checkpoint completes, so that the container files of
+	 * aborted checkpoints, and of states whose acknowledgement was declined or came too late, would
+	 * otherwise never be deleted.
+	 *
+	 * <p>NOTE: The caller of this method must hold the lock when invoking the method!
+	 *
+	 * @param upToCheckpointId The latest checkpoint whose container files are deleted, or a negative
+	 *                         value if there is no checkpoint to clean up.
+	 * @param isCompleted True if the given checkpoint completed.
+	 */
+	private void deleteUnreferencedContainers(final long upToCheckpointId, final boolean isCompleted) {
+		if (upToCheckpointId <= 0) {
+			return;
+		}
+
+		final FileStateContainerCleaner.ContainerReferences references = new FileStateContainerCleaner.ContainerReferences() {
+			@Override
+			public boolean isReferenced(long checkpointId, Path containerFile) {
+				synchronized (lock) {
+					return pendingCheckpoints.containsKey(checkpointId) ||
+							sharedStateRegistry.isRegistered(containerFile.toString());
+				}
+			}
+		};
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					containerCleaner.deleteUnreferencedContainers(upToCheckpointId, isCompleted, references);
+				} catch (Throwable t) {
+					LOG.warn("Could not delete the container files of the checkpoints up to {} of job {}.",
+							upToCheckpointId, job, t);
+				}
+			}
+		});
+	}
+
 	/**
 	 * Discards the given state object asynchronously belonging to the given job, execution attempt
 	 * id and checkpoint id.
@@ -23,8 +23,12 @@ import org.apache.flink.api.common.JobID;
 import org.apache.flink.runtime.checkpoint.CompletedCheckpointStats.DiscardCallback;
 import org.apache.flink.runtime.jobgraph.JobStatus;
 import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.state.IncrementalKeyGroupsStateHandle;
+import org.apache.flink.runtime.state.KeyGroupsStateHandle;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.runtime.state.StateUtil;
 import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.filesystem.FileSegmentStateHandle;
 import org.apache.flink.util.ExceptionUtils;
 
 import org.slf4j.Logger;
@@ -32,6 +36,8 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static org.apache.flink.util.Preconditions.checkArgument;
@@ -184,22 +190,45 @@ public class CompletedCheckpoint implements Serializable {
 		return props;
 	}
 
-	public boolean subsume() throws Exception {
+	/**
+	 * Discards this checkpoint after a later checkpoint subsumed it, if its properties allow it.
+	 *
+	 * <p>The completed checkpoint stores may discard a deserialized copy of the checkpoint that was
+	 * registered at the coordinator. The shared state is therefore released at the given registry
+	 * of the coordinator, rather than through the state handles.
+	 *
+	 * @param sharedStateRegistry The registry of the shared state of all retained checkpoints.
+	 * @return True if the checkpoint was discarded.
+	 */
+	public boolean discardOnSubsume(SharedStateRegistry sharedStateRegistry) throws Exception {
+		checkNotNull(sharedStateRegistry);
+
 		if (props.discardOnSubsumed()) {
-			discard();
+			discard(sharedStateRegistry);
 			return true;
 		}
 
 		return false;
 	}
 
-	public boolean discard(JobStatus jobStatus) throws Exception {
+	/**
+	 * Discards this checkpoint when the job shuts down with the given status, if its properties
+	 * allow it.
+	 *
+	 * @param jobStatus The status with which the job shuts down.
+	 * @param sharedStateRegistry The registry of the shared state of all retained checkpoints.
+	 * @return True if the checkpoint was discarded.
+	 * @see #discardOnSubsume(SharedStateRegistry)
+	 */
+	public boolean discardOnShutdown(JobStatus jobStatus, SharedStateRegistry sharedStateRegistry) throws Exception {
+		checkNotNull(sharedStateRegistry);
+
 		if (jobStatus == JobStatus.FINISHED && props.discardOnJobFinished() ||
 				jobStatus == JobStatus.CANCELED && props.discardOnJobCancelled() ||
 				jobStatus == JobStatus.FAILED && props.discardOnJobFailed() ||
 				jobStatus == JobStatus.SUSPENDED && props.discardOnJobSuspended()) {
 
-			discard();
+			discard(sharedStateRegistry);
 			return true;
 		} else {
 			if (externalPointer != null) {
@@ -211,7 +240,19 @@ public class CompletedCheckpoint implements Serializable {
 		}
 	}
 
+	/**
+	 * Discards a checkpoint whose shared state was never registered, for example because the
+	 * checkpoint could not be added to the completed checkpoint store.
+	 */
 	void discard() throws Exception {
+		discard(null);
+	}
+
+	/**
+	 * Discards this checkpoint. If the shared state of the checkpoint was registered at the given
+	 * registry, it is released there. Otherwise, it is discarded with the rest of the state.
+	 */
+	void discard(@Nullable SharedStateRegistry sharedStateRegistry) throws Exception {
 		try {
 			// collect exceptions and continue cleanup
 			Exception exception = null;
@@ -227,11 +268,23 @@ public class CompletedCheckpoint implements Serializable {
 			}
 
 			// drop the actual state
-			try {
-				StateUtil.bestEffortDiscardAllStateObjects(taskStates.values());
+			if (sharedStateRegistry != null) {
+				for (TaskState taskState : taskStates.values()) {
+					try {
+						taskState.discardState(sharedStateRegistry);
+					}
+					catch (Exception e) {
+						exception = ExceptionUtils.firstOrSuppressed(e, exception);
+					}
+				}
 			}
-			catch (Exception e) {
-				exception = ExceptionUtils.firstOrSuppressed(e, exception);
+			else {
+				try {
+					StateUtil.bestEffortDiscardAllStateObjects(taskStates.values());
+				}
+				catch (Exception e) {
+					exception = ExceptionUtils.firstOrSuppressed(e, exception);
+				}
 			}
 
 			if (exception != null) {
@@ -281,6 +334,73 @@ public class CompletedCheckpoint implements Serializable {
 		return externalPointer;
 	}
 
+	/**
+	 * Checks that the shared state which the snapshots of this checkpoint reuse from earlier
+	 * checkpoints is still registered at the given registry. This must be checked before a newly
+	 * completed checkpoint registers its own shared state.
+	 *
+	 * @param sharedStateRegistry The registry of the shared state of all retained checkpoints.
+	 * @throws IllegalStateException If this checkpoint references shared state that was discarded.
+	 */
+	public void checkReferencedSharedStates(SharedStateRegistry sharedStateRegistry) {
+		for (IncrementalKeyGroupsStateHandle stateHandle : getIncrementalKeyGroupsStateHandles()) {
+			stateHandle.checkReferencedSharedState(sharedStateRegistry);
+		}
+	}
+
+	/**
+	 * Registers the shared state of this checkpoint at the given registry, i.e. the shared files of
+	 * incremental snapshots and the container files of file segments. Afterwards, discarding this
+	 * checkpoint only discards shared state that no other registered checkpoint references.
+	 *
+	 * @param sharedStateRegistry The registry of the shared state of all retained checkpoints.
+	 * @see SubtaskState#registerFileSegments(SharedStateRegistry)
+	 */
+	public void registerSharedStates(SharedStateRegistry sharedStateRegistry) {
+		for (IncrementalKeyGroupsStateHandle stateHandle : getIncrementalKeyGroupsStateHandles()) {
+			stateHandle.registerSharedStates(sharedStateRegistry);
+		}
+
+		for (TaskState taskState : taskStates.values()) {
+			for (SubtaskState subtaskState : taskState.getStates()) {
+				subtaskState.registerFileSegments(sharedStateRegistry);
+			}
+		}
+	}
+
+	/**
+	 * Returns the file segments of all subtask states of this checkpoint.
+	 *
+	 * @see SubtaskState#getFileSegments()
+	 */
+	public List<FileSegmentStateHandle> getFileSegments() {
+		List<FileSegmentStateHandle> fileSegments = new ArrayList<>();
+
+		for (TaskState taskState : taskStates.values()) {
+			for (SubtaskState subtaskState : taskState.getStates()) {
+				fileSegments.addAll(subtaskState.getFileSegments());
+			}
+		}
+
+		return fileSegments;
+	}
+
+	private List<IncrementalKeyGroupsStateHandle> getIncrementalKeyGroupsStateHandles() {
+		List<IncrementalKeyGroupsStateHandle> result = new ArrayList<>();
+
+		for (TaskState taskState : taskStates.values()) {
+			for (SubtaskState subtaskState : taskState.getStates()) {
+				KeyGroupsStateHandle managedKeyedState = subtaskState.getManagedKeyedState();
+
+				if (managedKeyedState instanceof IncrementalKeyGroupsStateHandle) {
+					result.add((IncrementalKeyGroupsStateHandle) managedKeyedState);
+				}
+			}
+		}
+
+		return result;
+	}
+
 	/**
 	 * Sets the callback for tracking when this checkpoint is discarded.
 	 *
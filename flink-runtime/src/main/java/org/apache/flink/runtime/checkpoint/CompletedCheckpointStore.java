@@ -19,6 +19,7 @@
 package org.apache.flink.runtime.checkpoint;
 
 import org.apache.flink.runtime.jobgraph.JobStatus;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 
 import java.util.List;
 
@@ -40,9 +41,13 @@ public interface CompletedCheckpointStore {
 	 *
 	 * <p>Only a bounded number of checkpoints is kept. When exceeding the maximum number of
 	 * retained checkpoints, the oldest one will be discarded via {@link
-	 * CompletedCheckpoint#discard()}.
+	 * CompletedCheckpoint#discardOnSubsume(SharedStateRegistry)}.
+	 *
+	 * @param checkpoint The completed checkpoint to add.
+	 * @param sharedStateRegistry The registry at which the shared state of the retained
+	 *                            checkpoints is registered, used to discard subsumed checkpoints.
 	 */
-	void addCheckpoint(CompletedCheckpoint checkpoint) throws Exception;
+	void addCheckpoint(CompletedCheckpoint checkpoint, SharedStateRegistry sharedStateRegistry) throws Exception;
 
 	/**
 	 * Returns the latest {@link CompletedCheckpoint} instance or <code>null</code> if none was
@@ -57,8 +62,10 @@ public interface CompletedCheckpointStore {
 	 * actually be discarded or kept.
 	 *
 	 * @param jobStatus Job state on shut down
+	 * @param sharedStateRegistry The registry at which the shared state of the retained
+	 *                            checkpoints is registered, used to discard the checkpoints.
 	 */
-	void shutdown(JobStatus jobStatus) throws Exception;
+	void shutdown(JobStatus jobStatus, SharedStateRegistry sharedStateRegistry) throws Exception;
 
 	/**
 	 * Returns all {@link CompletedCheckpoint} instances.
@@ -246,6 +246,35 @@ public class RoundRobinOperatorStateRepartitioner implements OperatorStateRepart
 				}
 			}
 		}
+
+		// All copies of a uniformly broadcast state are identical, so every parallel instance gets only one of them
+		Map<String, List<Tuple2<StreamStateHandle, OperatorStateHandle.StateMetaInfo>>> uniformBroadcastNameToState =
+				nameToStateByMode.getByMode(OperatorStateHandle.Mode.UNIFORM_BROADCAST);
+
+		for (int i = 0; i < parallelism; ++i) {
+
+			Map<StreamStateHandle, OperatorStateHandle> mergeMap = mergeMapList.get(i);
+
+			for (Map.Entry<String, List<Tuple2<StreamStateHandle, OperatorStateHandle.StateMetaInfo>>> e :
+					uniformBroadcastNameToState.entrySet()) {
+
+				List<Tuple2<StreamStateHandle, OperatorStateHandle.StateMetaInfo>> current = e.getValue();
+
+				// pick the copies round robin to spread the reads over the state handles
+				Tuple2<StreamStateHandle, OperatorStateHandle.StateMetaInfo> handleWithMetaInfo =
+						current.get(i % current.size());
+
+				OperatorStateHandle operatorStateHandle = mergeMap.get(handleWithMetaInfo.f0);
+				if (operatorStateHandle == null) {
+					operatorStateHandle = new OperatorStateHandle(
+							new HashMap<String, OperatorStateHandle.StateMetaInfo>(),
+							handleWithMetaInfo.f0);
+
+					mergeMap.put(handleWithMetaInfo.f0, operatorStateHandle);
+				}
+				operatorStateHandle.getStateNameToPartitionOffsets().put(e.getKey(), handleWithMetaInfo.f1);
+			}
+		}
 		return mergeMapList;
 	}
 
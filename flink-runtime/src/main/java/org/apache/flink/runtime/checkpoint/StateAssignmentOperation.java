@@ -22,6 +22,7 @@ import org.apache.flink.runtime.executiongraph.Execution;
 import org.apache.flink.runtime.executiongraph.ExecutionJobVertex;
 import org.apache.flink.runtime.jobgraph.JobVertexID;
 import org.apache.flink.runtime.state.ChainedStateHandle;
+import org.apache.flink.runtime.state.IncrementalKeyGroupsStateHandle;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 import org.apache.flink.runtime.state.KeyGroupsStateHandle;
@@ -140,6 +141,25 @@ public class StateAssignmentOperation {
 					" has parallelism " + newParallelism + " whereas the corresponding " +
 					"state object has a parallelism of " + oldParallelism);
 		}
+
+		if (oldParallelism != newParallelism && hasIncrementalKeyedState(taskState)) {
+			throw new IllegalStateException("Cannot restore the latest checkpoint because " +
+					"the keyed state of the operator " + executionJobVertex.getJobVertexId() + " was " +
+					"checkpointed incrementally and its parallelism changed from " + oldParallelism +
+					" to " + newParallelism + ". Incremental checkpoints can only be restored with the " +
+					"parallelism that created them. To rescale the job, restore it from a savepoint, " +
+					"which is always a full snapshot.");
+		}
+	}
+
+	private static boolean hasIncrementalKeyedState(TaskState taskState) {
+		for (SubtaskState subtaskState : taskState.getStates()) {
+			if (subtaskState.getManagedKeyedState() instanceof IncrementalKeyGroupsStateHandle ||
+					subtaskState.getRawKeyedState() instanceof IncrementalKeyGroupsStateHandle) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	private static void assignTaskStatesToOperatorInstances(
@@ -218,9 +238,13 @@ public class StateAssignmentOperation {
 			// non-partitioned state
 			ChainedStateHandle<StreamStateHandle> nonPartitionableState = null;
 
+			// in-flight records of unaligned checkpoints are bound to the input channels of the subtask
+			StreamStateHandle inFlightState = null;
+
 			if (oldParallelism == newParallelism) {
 				if (taskState.getState(subTaskIdx) != null) {
 					nonPartitionableState = taskState.getState(subTaskIdx).getLegacyOperatorState();
+					inFlightState = taskState.getState(subTaskIdx).getInFlightState();
 				}
 			}
 
@@ -278,7 +302,8 @@ public class StateAssignmentOperation {
 					operatorStateFromBackend,
 					operatorStateFromStream,
 					newKeyedStatesBackend,
-					newKeyedStateStream);
+					newKeyedStateStream,
+					inFlightState);
 
 			currentExecutionAttempt.setInitialState(taskStateHandles);
 		}
@@ -19,13 +19,20 @@
 package org.apache.flink.runtime.checkpoint;
 
 import org.apache.flink.runtime.state.ChainedStateHandle;
+import org.apache.flink.runtime.state.IncrementalKeyGroupsStateHandle;
 import org.apache.flink.runtime.state.KeyGroupsStateHandle;
+import org.apache.flink.runtime.state.MultiStreamStateHandle;
 import org.apache.flink.runtime.state.OperatorStateHandle;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.runtime.state.StateObject;
 import org.apache.flink.runtime.state.StateUtil;
 import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.filesystem.FileSegmentStateHandle;
+import org.apache.flink.util.ExceptionUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.apache.flink.util.Preconditions.checkNotNull;
 
@@ -63,6 +70,12 @@ public class SubtaskState implements StateObject {
 	 */
 	private final KeyGroupsStateHandle rawKeyedState;
 
+	/**
+	 * Records that were in flight between the tasks when an unaligned checkpoint was taken.
+	 * Null for aligned checkpoints.
+	 */
+	private final StreamStateHandle inFlightState;
+
 	/**
 	 * The state size. This is also part of the deserialized state handle.
 	 * We store it here in order to not deserialize the state handle when
@@ -77,11 +90,23 @@ public class SubtaskState implements StateObject {
 			KeyGroupsStateHandle managedKeyedState,
 			KeyGroupsStateHandle rawKeyedState) {
 
+		this(legacyOperatorState, managedOperatorState, rawOperatorState, managedKeyedState, rawKeyedState, null);
+	}
+
+	public SubtaskState(
+			ChainedStateHandle<StreamStateHandle> legacyOperatorState,
+			ChainedStateHandle<OperatorStateHandle> managedOperatorState,
+			ChainedStateHandle<OperatorStateHandle> rawOperatorState,
+			KeyGroupsStateHandle managedKeyedState,
+			KeyGroupsStateHandle rawKeyedState,
+			StreamStateHandle inFlightState) {
+
 		this.legacyOperatorState = checkNotNull(legacyOperatorState, "State");
 		this.managedOperatorState = managedOperatorState;
 		this.rawOperatorState = rawOperatorState;
 		this.managedKeyedState = managedKeyedState;
 		this.rawKeyedState = rawKeyedState;
+		this.inFlightState = inFlightState;
 
 		try {
 			long calculateStateSize = getSizeNullSafe(legacyOperatorState);
@@ -89,6 +114,7 @@ public class SubtaskState implements StateObject {
 			calculateStateSize += getSizeNullSafe(rawOperatorState);
 			calculateStateSize += getSizeNullSafe(managedKeyedState);
 			calculateStateSize += getSizeNullSafe(rawKeyedState);
+			calculateStateSize += getSizeNullSafe(inFlightState);
 			stateSize = calculateStateSize;
 		} catch (Exception e) {
 			throw new RuntimeException("Failed to get state size.", e);
@@ -122,11 +148,93 @@ public class SubtaskState implements StateObject {
 		return rawKeyedState;
 	}
 
+	public StreamStateHandle getInFlightState() {
+		return inFlightState;
+	}
+
 	@Override
 	public long getStateSize() {
 		return stateSize;
 	}
 
+	/**
+	 * Registers the container files of the {@link FileSegmentStateHandle file segments} of this
+	 * state at the given registry, so that a container file is only deleted when no registered
+	 * state references it any more. The shared files of incremental snapshots are skipped, because
+	 * they hold the references to their container files while they are registered themselves.
+	 *
+	 * @param registry The registry of the shared state of the completed checkpoints.
+	 * @see #discardState(SharedStateRegistry)
+	 */
+	public void registerFileSegments(SharedStateRegistry registry) {
+		for (FileSegmentStateHandle fileSegment : collectFileSegments(false)) {
+			fileSegment.registerSharedState(registry);
+		}
+	}
+
+	/**
+	 * Returns all {@link FileSegmentStateHandle file segments} that were written for this state,
+	 * without the shared files that incremental snapshots reuse from earlier checkpoints.
+	 */
+	public List<FileSegmentStateHandle> getFileSegments() {
+		return collectFileSegments(true);
+	}
+
+	private List<FileSegmentStateHandle> collectFileSegments(boolean includeNewSharedState) {
+		List<FileSegmentStateHandle> fileSegments = new ArrayList<>();
+
+		collectFileSegments(fileSegments, legacyOperatorState, includeNewSharedState);
+		collectFileSegments(fileSegments, managedOperatorState, includeNewSharedState);
+		collectFileSegments(fileSegments, rawOperatorState, includeNewSharedState);
+		collectFileSegments(fileSegments, managedKeyedState, includeNewSharedState);
+		collectFileSegments(fileSegments, rawKeyedState, includeNewSharedState);
+		collectFileSegments(fileSegments, inFlightState, includeNewSharedState);
+
+		return fileSegments;
+	}
+
+	private static void collectFileSegments(
+			List<FileSegmentStateHandle> fileSegments,
+			ChainedStateHandle<? extends StreamStateHandle> chainedStateHandle,
+			boolean includeNewSharedState) {
+
+		if (chainedStateHandle != null) {
+			for (int i = 0; i < chainedStateHandle.getLength(); ++i) {
+				collectFileSegments(fileSegments, chainedStateHandle.get(i), includeNewSharedState);
+			}
+		}
+	}
+
+	private static void collectFileSegments(
+			List<FileSegmentStateHandle> fileSegments,
+			StreamStateHandle stateHandle,
+			boolean includeNewSharedState) {
+
+		if (stateHandle instanceof FileSegmentStateHandle) {
+			fileSegments.add((FileSegmentStateHandle) stateHandle);
+		} else if (stateHandle instanceof MultiStreamStateHandle) {
+			for (StreamStateHandle innerStateHandle : ((MultiStreamStateHandle) stateHandle).getStateHandles()) {
+				collectFileSegments(fileSegments, innerStateHandle, includeNewSharedState);
+			}
+		} else if (stateHandle instanceof OperatorStateHandle) {
+			collectFileSegments(fileSegments, ((OperatorStateHandle) stateHandle).getDelegateStateHandle(), includeNewSharedState);
+		} else if (stateHandle instanceof IncrementalKeyGroupsStateHandle) {
+			IncrementalKeyGroupsStateHandle incrementalHandle = (IncrementalKeyGroupsStateHandle) stateHandle;
+
+			collectFileSegments(fileSegments, incrementalHandle.getMetaStateHandle(), includeNewSharedState);
+			for (StreamStateHandle privateStateHandle : incrementalHandle.getPrivateState().values()) {
+				collectFileSegments(fileSegments, privateStateHandle, includeNewSharedState);
+			}
+			if (includeNewSharedState) {
+				for (StreamStateHandle newSharedStateHandle : incrementalHandle.getNewSharedState().values()) {
+					collectFileSegments(fileSegments, newSharedStateHandle, true);
+				}
+			}
+		} else if (stateHandle instanceof KeyGroupsStateHandle) {
+			collectFileSegments(fileSegments, ((KeyGroupsStateHandle) stateHandle).getDelegateStateHandle(), includeNewSharedState);
+		}
+	}
+
 	@Override
 	public void discardState() throws Exception {
 		StateUtil.bestEffortDiscardAllStateObjects(
@@ -135,7 +243,51 @@ public class SubtaskState implements StateObject {
 						managedOperatorState,
 						rawOperatorState,
 						managedKeyedState,
-						rawKeyedState));
+						rawKeyedState,
+						inFlightState));
+	}
+
+	/**
+	 * Discards the state of a completed checkpoint. The shared files of incremental snapshots
+	 * and the container files of file segments are not discarded, but released at the given
+	 * registry, which discards them once no other completed checkpoint references them.
+	 *
+	 * @param registry The registry of the shared state of the completed checkpoints.
+	 */
+	public void discardState(SharedStateRegistry registry) throws Exception {
+		Exception exception = null;
+
+		for (FileSegmentStateHandle fileSegment : collectFileSegments(false)) {
+			fileSegment.unregisterSharedState(registry);
+		}
+
+		KeyGroupsStateHandle keyedState = managedKeyedState;
+		if (keyedState instanceof IncrementalKeyGroupsStateHandle) {
+			keyedState = null;
+
+			try {
+				((IncrementalKeyGroupsStateHandle) managedKeyedState).discardState(registry);
+			} catch (Exception e) {
+				exception = e;
+			}
+		}
+
+		try {
+			StateUtil.bestEffortDiscardAllStateObjects(
+					Arrays.asList(
+							legacyOperatorState,
+							managedOperatorState,
+							rawOperatorState,
+							keyedState,
+							rawKeyedState,
+							inFlightState));
+		} catch (Exception e) {
+			exception = ExceptionUtils.firstOrSuppressed(e, exception);
+		}
+
+		if (exception != null) {
+			throw exception;
+		}
 	}
 
 	// --------------------------------------------------------------------------------------------
@@ -175,9 +327,14 @@ public class SubtaskState implements StateObject {
 				: that.managedKeyedState != null) {
 			return false;
 		}
-		return rawKeyedState != null ?
-				rawKeyedState.equals(that.rawKeyedState)
-				: that.rawKeyedState == null;
+		if (rawKeyedState != null ?
+				!rawKeyedState.equals(that.rawKeyedState)
+				: that.rawKeyedState != null) {
+			return false;
+		}
+		return inFlightState != null ?
+				inFlightState.equals(that.inFlightState)
+				: that.inFlightState == null;
 
 	}
 
@@ -188,6 +345,7 @@ public class SubtaskState implements StateObject {
 		result = 31 * result + (rawOperatorState != null ? rawOperatorState.hashCode() : 0);
 		result = 31 * result + (managedKeyedState != null ? managedKeyedState.hashCode() : 0);
 		result = 31 * result + (rawKeyedState != null ? rawKeyedState.hashCode() : 0);
+		result = 31 * result + (inFlightState != null ? inFlightState.hashCode() : 0);
 		result = 31 * result + (int) (stateSize ^ (stateSize >>> 32));
 		return result;
 	}
@@ -200,6 +358,7 @@ public class SubtaskState implements StateObject {
 				", operatorStateFromStream=" + rawOperatorState +
 				", keyedStateFromBackend=" + managedKeyedState +
 				", keyedStateHandleFromStream=" + rawKeyedState +
+				", inFlightState=" + inFlightState +
 				", stateSize=" + stateSize +
 				'}';
 	}
@@ -19,8 +19,10 @@
 package org.apache.flink.runtime.checkpoint;
 
 import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.runtime.state.StateObject;
 import org.apache.flink.runtime.state.StateUtil;
+import org.apache.flink.util.ExceptionUtils;
 import org.apache.flink.util.Preconditions;
 
 import java.util.Collection;
@@ -115,7 +117,7 @@ public class TaskState implements StateObject {
 
 	public boolean hasNonPartitionedState() {
 		for(SubtaskState sts : subtaskStates.values()) {
-			if (sts != null && !sts.getLegacyOperatorState().isEmpty()) {
+			if (sts != null && (!sts.getLegacyOperatorState().isEmpty() || sts.getInFlightState() != null)) {
 				return true;
 			}
 		}
@@ -127,6 +129,30 @@ public class TaskState implements StateObject {
 		StateUtil.bestEffortDiscardAllStateObjects(subtaskStates.values());
 	}
 
+	/**
+	 * Discards the state of a completed checkpoint, releasing its shared state at the given registry.
+	 *
+	 * @param registry The registry of the shared state of the completed checkpoints.
+	 * @see SubtaskState#discardState(SharedStateRegistry)
+	 */
+	public void discardState(SharedStateRegistry registry) throws Exception {
+		Exception exception = null;
+
+		for (SubtaskState subtaskState : subtaskStates.values()) {
+			if (subtaskState != null) {
+				try {
+					subtaskState.discardState(registry);
+				} catch (Exception e) {
+					exception = ExceptionUtils.firstOrSuppressed(e, exception);
+				}
+			}
+		}
+
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
 
 	@Override
 	public long getStateSize() {
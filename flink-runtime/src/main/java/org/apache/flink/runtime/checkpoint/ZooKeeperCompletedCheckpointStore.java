@@ -27,6 +27,7 @@ import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.runtime.jobgraph.JobStatus;
 import org.apache.flink.runtime.jobmanager.HighAvailabilityMode;
 import org.apache.flink.runtime.state.RetrievableStateHandle;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.runtime.zookeeper.RetrievableStateStorageHelper;
 import org.apache.flink.runtime.zookeeper.ZooKeeperStateHandleStore;
 import org.apache.flink.util.FlinkException;
@@ -66,6 +67,10 @@ import static org.apache.flink.util.Preconditions.checkNotNull;
  * same program, it is OK to take any valid successful checkpoint as long as the "history" of
  * checkpoints is consistent. Currently, after recovery we start out with only a single
  * checkpoint to circumvent those situations.
+ *
+ * <p>Subsumed checkpoints are discarded through copies that are retrieved from the state handles in
+ * ZooKeeper. Their shared state is therefore released at the {@link SharedStateRegistry} that is
+ * passed in by the checkpoint coordinator, at which the original checkpoints were registered.
  */
 public class ZooKeeperCompletedCheckpointStore implements CompletedCheckpointStore {
 
@@ -173,10 +178,12 @@ public class ZooKeeperCompletedCheckpointStore implements CompletedCheckpointSto
 	 * Synchronously writes the new checkpoints to ZooKeeper and asynchronously removes older ones.
 	 *
 	 * @param checkpoint Completed checkpoint to add.
+	 * @param sharedStateRegistry The registry at which the shared state of the retained checkpoints is registered.
 	 */
 	@Override
-	public void addCheckpoint(CompletedCheckpoint checkpoint) throws Exception {
+	public void addCheckpoint(CompletedCheckpoint checkpoint, SharedStateRegistry sharedStateRegistry) throws Exception {
 		checkNotNull(checkpoint, "Checkpoint");
+		checkNotNull(sharedStateRegistry, "Shared state registry");
 
 		// First add the new one. If it fails, we don't want to loose existing data.
 		String path = checkpointIdToPath(checkpoint.getCheckpointID());
@@ -189,7 +196,7 @@ public class ZooKeeperCompletedCheckpointStore implements CompletedCheckpointSto
 		// Everything worked, let's remove a previous checkpoint if necessary.
 		while (checkpointStateHandles.size() > maxNumberOfCheckpointsToRetain) {
 			try {
-				removeSubsumed(checkpointStateHandles.removeFirst());
+				removeSubsumed(checkpointStateHandles.removeFirst(), sharedStateRegistry);
 			} catch (Exception e) {
 				LOG.warn("Failed to subsume the old checkpoint", e);
 			}
@@ -261,13 +268,13 @@ public class ZooKeeperCompletedCheckpointStore implements CompletedCheckpointSto
 	}
 
 	@Override
-	public void shutdown(JobStatus jobStatus) throws Exception {
+	public void shutdown(JobStatus jobStatus, SharedStateRegistry sharedStateRegistry) throws Exception {
 		if (jobStatus.isGloballyTerminalState()) {
 			LOG.info("Shutting down");
 
 			for (Tuple2<RetrievableStateHandle<CompletedCheckpoint>, String> checkpoint : checkpointStateHandles) {
 				try {
-					removeShutdown(checkpoint, jobStatus);
+					removeShutdown(checkpoint, jobStatus, sharedStateRegistry);
 				} catch (Exception e) {
 					LOG.error("Failed to discard checkpoint.", e);
 				}
@@ -289,11 +296,14 @@ public class ZooKeeperCompletedCheckpointStore implements CompletedCheckpointSto
 
 	// ------------------------------------------------------------------------
 
-	private void removeSubsumed(final Tuple2<RetrievableStateHandle<CompletedCheckpoint>, String> stateHandleAndPath) throws Exception {
+	private void removeSubsumed(
+			final Tuple2<RetrievableStateHandle<CompletedCheckpoint>, String> stateHandleAndPath,
+			final SharedStateRegistry sharedStateRegistry) throws Exception {
+
 		Callable<Void> action = new Callable<Void>() {
 			@Override
 			public Void call() throws Exception {
-				stateHandleAndPath.f0.retrieveState().subsume();
+				stateHandleAndPath.f0.retrieveState().discardOnSubsume(sharedStateRegistry);
 				return null;
 			}
 		};
@@ -303,13 +313,14 @@ public class ZooKeeperCompletedCheckpointStore implements CompletedCheckpointSto
 
 	private void removeShutdown(
 			final Tuple2<RetrievableStateHandle<CompletedCheckpoint>, String> stateHandleAndPath,
-			final JobStatus jobStatus) throws Exception {
+			final JobStatus jobStatus,
+			final SharedStateRegistry sharedStateRegistry) throws Exception {
 
 		Callable<Void> action = new Callable<Void>() {
 			@Override
 			public Void call() throws Exception {
 				CompletedCheckpoint checkpoint = stateHandleAndPath.f0.retrieveState();
-				checkpoint.discard(jobStatus);
+				checkpoint.discardOnShutdown(jobStatus, sharedStateRegistry);
 				return null;
 			}
 		};
@@ -23,11 +23,14 @@ import org.apache.flink.runtime.checkpoint.SubtaskState;
 import org.apache.flink.runtime.checkpoint.TaskState;
 import org.apache.flink.runtime.jobgraph.JobVertexID;
 import org.apache.flink.runtime.state.ChainedStateHandle;
+import org.apache.flink.runtime.state.IncrementalKeyGroupsStateHandle;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
 import org.apache.flink.runtime.state.KeyGroupsStateHandle;
+import org.apache.flink.runtime.state.MultiStreamStateHandle;
 import org.apache.flink.runtime.state.OperatorStateHandle;
 import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.filesystem.FileSegmentStateHandle;
 import org.apache.flink.runtime.state.filesystem.FileStateHandle;
 import org.apache.flink.runtime.state.memory.ByteStreamStateHandle;
 
@@ -54,6 +57,8 @@ class SavepointV1Serializer implements SavepointSerializer<SavepointV1> {
 	private static final byte FILE_STREAM_STATE_HANDLE = 2;
 	private static final byte KEY_GROUPS_HANDLE = 3;
 	private static final byte PARTITIONABLE_OPERATOR_STATE_HANDLE = 4;
+	private static final byte FILE_SEGMENT_STATE_HANDLE = 5;
+	private static final byte MULTI_STREAM_STATE_HANDLE = 6;
 
 
 	public static final SavepointV1Serializer INSTANCE = new SavepointV1Serializer();
@@ -126,6 +131,11 @@ class SavepointV1Serializer implements SavepointSerializer<SavepointV1> {
 
 	private static void serializeSubtaskState(SubtaskState subtaskState, DataOutputStream dos) throws IOException {
 
+		if (subtaskState.getInFlightState() != null) {
+			throw new IOException("The in-flight records of an unaligned checkpoint cannot be stored " +
+					"in savepoint format version 1. Unaligned checkpoints cannot be externalized.");
+		}
+
 		dos.writeLong(-1);
 
 		ChainedStateHandle<StreamStateHandle> nonPartitionableState = subtaskState.getLegacyOperatorState();
@@ -212,7 +222,10 @@ class SavepointV1Serializer implements SavepointSerializer<SavepointV1> {
 	private static void serializeKeyGroupStateHandle(
 			KeyGroupsStateHandle stateHandle, DataOutputStream dos) throws IOException {
 
-		if (stateHandle != null) {
+		if (stateHandle instanceof IncrementalKeyGroupsStateHandle) {
+			throw new IOException("Incremental snapshots of keyed state share files with other checkpoints " +
+					"and cannot be stored in savepoint format version 1.");
+		} else if (stateHandle != null) {
 			dos.writeByte(KEY_GROUPS_HANDLE);
 			dos.writeInt(stateHandle.getGroupRangeOffsets().getKeyGroupRange().getStartKeyGroup());
 			dos.writeInt(stateHandle.getNumberOfKeyGroups());
@@ -316,6 +329,13 @@ class SavepointV1Serializer implements SavepointSerializer<SavepointV1> {
 			dos.writeLong(stateHandle.getStateSize());
 			dos.writeUTF(fileStateHandle.getFilePath().toString());
 
+		} else if (stateHandle instanceof FileSegmentStateHandle) {
+			dos.writeByte(FILE_SEGMENT_STATE_HANDLE);
+			FileSegmentStateHandle fileSegmentStateHandle = (FileSegmentStateHandle) stateHandle;
+			dos.writeLong(fileSegmentStateHandle.getStartPosition());
+			dos.writeLong(stateHandle.getStateSize());
+			dos.writeUTF(fileSegmentStateHandle.getFilePath().toString());
+
 		} else if (stateHandle instanceof ByteStreamStateHandle) {
 			dos.writeByte(BYTE_STREAM_STATE_HANDLE);
 			ByteStreamStateHandle byteStreamStateHandle = (ByteStreamStateHandle) stateHandle;
@@ -324,6 +344,14 @@ class SavepointV1Serializer implements SavepointSerializer<SavepointV1> {
 			dos.writeInt(internalData.length);
 			dos.write(byteStreamStateHandle.getData());
 
+		} else if (stateHandle instanceof MultiStreamStateHandle) {
+			dos.writeByte(MULTI_STREAM_STATE_HANDLE);
+			List<StreamStateHandle> innerStateHandles = ((MultiStreamStateHandle) stateHandle).getStateHandles();
+			dos.writeInt(innerStateHandles.size());
+			for (StreamStateHandle innerStateHandle : innerStateHandles) {
+				serializeStreamStateHandle(innerStateHandle, dos);
+			}
+
 		} else {
 			throw new IOException("Unknown implementation of StreamStateHandle: " + stateHandle.getClass());
 		}
@@ -339,12 +367,24 @@ class SavepointV1Serializer implements SavepointSerializer<SavepointV1> {
 			long size = dis.readLong();
 			String pathString = dis.readUTF();
 			return new FileStateHandle(new Path(pathString), size);
+		} else if (FILE_SEGMENT_STATE_HANDLE == type) {
+			long startPosition = dis.readLong();
+			long size = dis.readLong();
+			String pathString = dis.readUTF();
+			return new FileSegmentStateHandle(new Path(pathString), startPosition, size);
 		} else if (BYTE_STREAM_STATE_HANDLE == type) {
 			String handleName = dis.readUTF();
 			int numBytes = dis.readInt();
 			byte[] data = new byte[numBytes];
 			dis.readFully(data);
 			return new ByteStreamStateHandle(handleName, data);
+		} else if (MULTI_STREAM_STATE_HANDLE == type) {
+			int numInnerStateHandles = dis.readInt();
+			List<StreamStateHandle> innerStateHandles = new ArrayList<>(numInnerStateHandles);
+			for (int i = 0; i < numInnerStateHandles; ++i) {
+				innerStateHandles.add(deserializeStreamStateHandle(dis));
+			}
+			return new MultiStreamStateHandle(innerStateHandles);
 		} else {
 			throw new IOException("Unknown implementation of StreamStateHandle, code: " + type);
 		}
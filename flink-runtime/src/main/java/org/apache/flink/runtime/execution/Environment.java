@@ -38,6 +38,8 @@ import org.apache.flink.runtime.jobgraph.tasks.InputSplitProvider;
 import org.apache.flink.runtime.memory.MemoryManager;
 import org.apache.flink.runtime.metrics.groups.TaskMetricGroup;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.state.StateTransferPool;
+import org.apache.flink.runtime.state.TaskLocalStateCleaner;
 import org.apache.flink.runtime.state.internal.InternalKvState;
 import org.apache.flink.runtime.taskmanager.TaskManagerRuntimeInfo;
 
@@ -143,6 +145,16 @@ public interface Environment {
 
 	BroadcastVariableManager getBroadcastVariableManager();
 
+	/**
+	 * Returns the pool of the TaskManager that transfers the parts of multi-part snapshots.
+	 */
+	StateTransferPool getStateTransferPool();
+
+	/**
+	 * Returns the cleaner of the TaskManager that deletes the local state copies of released tasks.
+	 */
+	TaskLocalStateCleaner getTaskLocalStateCleaner();
+
 	/**
 	 * Return the registry for accumulators which are periodically sent to the job manager.
 	 * @return the registry
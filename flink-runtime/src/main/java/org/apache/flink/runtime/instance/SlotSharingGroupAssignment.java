@@ -277,7 +277,14 @@ public class SlotSharingGroupAssignment {
 	/**
 	 * 
 	 */
-	SimpleSlot getSlotForTask(JobVertexID vertexID, Iterable<TaskManagerLocation> locationPreferences) {
+	/**
+	 * Gets a slot suitable for the given task vertex, preferring slots at the given locations.
+	 *
+	 * @param vertexID The ID of the vertex to get a slot for.
+	 * @param locationPreferences The locations that the task prefers to run at.
+	 * @return A slot to execute the given vertex in, or null, if none is available.
+	 */
+	public SimpleSlot getSlotForTask(JobVertexID vertexID, Iterable<TaskManagerLocation> locationPreferences) {
 		synchronized (lock) {
 			Tuple2<SharedSlot, Locality> p = getSlotForTaskInternal(vertexID, locationPreferences, false);
 
@@ -316,7 +323,15 @@ public class SlotSharingGroupAssignment {
 		return getSlotForTask(constraint, vertex.getPreferredLocationsBasedOnInputs());
 	}
 	
-	SimpleSlot getSlotForTask(CoLocationConstraint constraint, Iterable<TaskManagerLocation> locationPreferences) {
+	/**
+	 * Gets a slot for a task that has a co-location constraint, preferring slots at the given
+	 * locations if the constraint is not yet assigned to a location.
+	 *
+	 * @param constraint The co-location constraint of the task.
+	 * @param locationPreferences The locations that the task prefers to run at.
+	 * @return A slot to execute the task in, or null, if none is available.
+	 */
+	public SimpleSlot getSlotForTask(CoLocationConstraint constraint, Iterable<TaskManagerLocation> locationPreferences) {
 		synchronized (lock) {
 			if (constraint.isAssignedAndAlive()) {
 				// the shared slot of the co-location group is initialized and set we allocate a sub-slot
@@ -356,6 +356,12 @@ final class SegmentWriteRequest implements WriteRequest {
 
 final class BufferWriteRequest implements WriteRequest {
 
+	/** Flag of the header of a written buffer, which is set for data buffers (and unset for events). */
+	static final int IS_BUFFER_FLAG = 1;
+
+	/** Flag of the header of a written buffer, which is set if the buffer data is compressed. */
+	static final int IS_COMPRESSED_FLAG = 2;
+
 	private final AsynchronousFileIOChannel<Buffer, WriteRequest> channel;
 
 	private final Buffer buffer;
@@ -369,7 +375,7 @@ final class BufferWriteRequest implements WriteRequest {
 	public void write() throws IOException {
 		final ByteBuffer header = ByteBuffer.allocateDirect(8);
 
-		header.putInt(buffer.isBuffer() ? 1 : 0);
+		header.putInt((buffer.isBuffer() ? IS_BUFFER_FLAG : 0) | (buffer.isCompressed() ? IS_COMPRESSED_FLAG : 0));
 		header.putInt(buffer.getSize());
 		header.flip();
 
@@ -408,7 +414,8 @@ final class BufferReadRequest implements ReadRequest {
 			fileChannel.read(header);
 			header.flip();
 
-			final boolean isBuffer = header.getInt() == 1;
+			final int flags = header.getInt();
+			final boolean isBuffer = (flags & BufferWriteRequest.IS_BUFFER_FLAG) != 0;
 			final int size = header.getInt();
 
 			if (size > buffer.getMemorySegment().size()) {
@@ -423,6 +430,8 @@ final class BufferReadRequest implements ReadRequest {
 				buffer.tagAsEvent();
 			}
 
+			buffer.setCompressed((flags & BufferWriteRequest.IS_COMPRESSED_FLAG) != 0);
+
 			hasReachedEndOfFile.set(fileChannel.size() - fileChannel.position() == 0);
 		}
 		else {
@@ -462,7 +471,7 @@ final class FileSegmentReadRequest implements ReadRequest {
 
 			final long position = fileChannel.position();
 
-			final boolean isBuffer = header.getInt() == 1;
+			final boolean isBuffer = (header.getInt() & BufferWriteRequest.IS_BUFFER_FLAG) != 0;
 			final int length = header.getInt();
 
 			fileSegment = new FileSegment(fileChannel, position, length, isBuffer);
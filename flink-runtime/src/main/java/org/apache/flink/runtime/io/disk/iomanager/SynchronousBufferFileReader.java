@@ -51,7 +51,8 @@ public class SynchronousBufferFileReader extends SynchronousFileIOChannel implem
 			fileChannel.read(header);
 			header.flip();
 
-			final boolean isBuffer = header.getInt() == 1;
+			final int flags = header.getInt();
+			final boolean isBuffer = (flags & BufferWriteRequest.IS_BUFFER_FLAG) != 0;
 			final int size = header.getInt();
 
 			if (size > buffer.getMemorySegment().size()) {
@@ -66,6 +67,8 @@ public class SynchronousBufferFileReader extends SynchronousFileIOChannel implem
 				buffer.tagAsEvent();
 			}
 
+			buffer.setCompressed((flags & BufferWriteRequest.IS_COMPRESSED_FLAG) != 0);
+
 			hasReachedEndOfFile = fileChannel.size() - fileChannel.position() == 0;
 		}
 		else {
@@ -23,10 +23,12 @@ import org.apache.flink.runtime.executiongraph.ExecutionAttemptID;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager.IOMode;
 import org.apache.flink.runtime.io.network.api.writer.ResultPartitionWriter;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.buffer.BufferPool;
 import org.apache.flink.runtime.io.network.buffer.NetworkBufferPool;
 import org.apache.flink.runtime.io.network.partition.ResultPartition;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionManager;
+import org.apache.flink.runtime.io.network.partition.ResultPartitionType;
 import org.apache.flink.runtime.io.network.partition.consumer.SingleInputGate;
 import org.apache.flink.runtime.jobgraph.JobVertexID;
 import org.apache.flink.runtime.query.KvStateRegistry;
@@ -78,6 +80,15 @@ public class NetworkEnvironment {
 	/** Number of extra network buffers to use for each outgoing/ingoing gate (result partition/input gate). */
 	private final int extraNetworkBuffersPerGate;
 
+	/** Whether remote input channels use credit-based flow control. */
+	private final boolean isCreditBased;
+
+	/** Whether the data buffers of pipelined result partitions are compressed. */
+	private final boolean isPipelinedCompressionEnabled;
+
+	/** Whether the data buffers of blocking result partitions are compressed. */
+	private final boolean isBlockingCompressionEnabled;
+
 	private boolean isShutdown;
 
 	public NetworkEnvironment(
@@ -93,6 +104,27 @@ public class NetworkEnvironment {
 			int networkBuffersPerChannel,
 			int extraNetworkBuffersPerGate) {
 
+		this(networkBufferPool, connectionManager, resultPartitionManager, taskEventDispatcher,
+			kvStateRegistry, kvStateServer, defaultIOMode, partitionRequestInitialBackoff,
+			partitionRequestMaxBackoff, networkBuffersPerChannel, extraNetworkBuffersPerGate, false, false, false);
+	}
+
+	public NetworkEnvironment(
+			NetworkBufferPool networkBufferPool,
+			ConnectionManager connectionManager,
+			ResultPartitionManager resultPartitionManager,
+			TaskEventDispatcher taskEventDispatcher,
+			KvStateRegistry kvStateRegistry,
+			KvStateServer kvStateServer,
+			IOMode defaultIOMode,
+			int partitionRequestInitialBackoff,
+			int partitionRequestMaxBackoff,
+			int networkBuffersPerChannel,
+			int extraNetworkBuffersPerGate,
+			boolean isCreditBased,
+			boolean isPipelinedCompressionEnabled,
+			boolean isBlockingCompressionEnabled) {
+
 		this.networkBufferPool = checkNotNull(networkBufferPool);
 		this.connectionManager = checkNotNull(connectionManager);
 		this.resultPartitionManager = checkNotNull(resultPartitionManager);
@@ -109,6 +141,9 @@ public class NetworkEnvironment {
 		isShutdown = false;
 		this.networkBuffersPerChannel = networkBuffersPerChannel;
 		this.extraNetworkBuffersPerGate = extraNetworkBuffersPerGate;
+		this.isCreditBased = isCreditBased;
+		this.isPipelinedCompressionEnabled = isPipelinedCompressionEnabled;
+		this.isBlockingCompressionEnabled = isBlockingCompressionEnabled;
 	}
 
 	// --------------------------------------------------------------------------------------------
@@ -143,6 +178,17 @@ public class NetworkEnvironment {
 		return partitionRequestMaxBackoff;
 	}
 
+	public boolean isCreditBased() {
+		return isCreditBased;
+	}
+
+	/**
+	 * Returns whether the data buffers of result partitions of the given type are compressed.
+	 */
+	public boolean isCompressionEnabled(ResultPartitionType partitionType) {
+		return partitionType.isPipelined() ? isPipelinedCompressionEnabled : isBlockingCompressionEnabled;
+	}
+
 	public KvStateRegistry getKvStateRegistry() {
 		return kvStateRegistry;
 	}
@@ -187,6 +233,10 @@ public class NetworkEnvironment {
 							maxNumberOfMemorySegments);
 					partition.registerBufferPool(bufferPool);
 
+					if (isCompressionEnabled(partition.getPartitionType())) {
+						partition.setBufferCompressor(new BufferCompressor());
+					}
+
 					resultPartitionManager.registerResultPartition(partition);
 				} catch (Throwable t) {
 					if (bufferPool != null) {
@@ -214,9 +264,20 @@ public class NetworkEnvironment {
 					int maxNumberOfMemorySegments = gate.getConsumedPartitionType().isBounded() ?
 						gate.getNumberOfInputChannels() * networkBuffersPerChannel +
 							extraNetworkBuffersPerGate : Integer.MAX_VALUE;
-					bufferPool = networkBufferPool.createBufferPool(gate.getNumberOfInputChannels(),
-						maxNumberOfMemorySegments);
-					gate.setBufferPool(bufferPool);
+
+					if (isCreditBased) {
+						// all exclusive and floating credit has to be backed by guaranteed buffers
+						int numberOfRequiredMemorySegments = gate.getNumberOfInputChannels() * networkBuffersPerChannel +
+							extraNetworkBuffersPerGate;
+						bufferPool = networkBufferPool.createBufferPool(numberOfRequiredMemorySegments,
+							Math.max(numberOfRequiredMemorySegments, maxNumberOfMemorySegments));
+						gate.setBufferPool(bufferPool);
+						gate.enableCreditBasedFlowControl(networkBuffersPerChannel, extraNetworkBuffersPerGate);
+					} else {
+						bufferPool = networkBufferPool.createBufferPool(gate.getNumberOfInputChannels(),
+							maxNumberOfMemorySegments);
+						gate.setBufferPool(bufferPool);
+					}
 				} catch (Throwable t) {
 					if (bufferPool != null) {
 						bufferPool.lazyDestroy();
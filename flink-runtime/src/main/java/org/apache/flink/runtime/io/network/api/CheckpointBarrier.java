@@ -18,6 +18,7 @@
 
 package org.apache.flink.runtime.io.network.api;
 
+import static org.apache.flink.util.Preconditions.checkArgument;
 import static org.apache.flink.util.Preconditions.checkNotNull;
 
 import java.io.IOException;
@@ -40,6 +41,11 @@ import org.apache.flink.runtime.event.RuntimeEvent;
  * <p>Depending on the semantic guarantees, may hold off post-checkpoint data until the checkpoint
  * is complete (exactly once).
  * 
+ * <p>For unaligned checkpoints, a barrier may be placed ahead of data buffers that were already
+ * queued in the producer's subpartition. The number of such overtaken buffers is carried in the
+ * barrier, so that the consumer knows which buffers following the barrier still belong to the
+ * pre-checkpoint data.
+ *
  * <p>The checkpoint barrier IDs are strictly monotonous increasing.
  */
 public class CheckpointBarrier extends RuntimeEvent {
@@ -48,10 +54,20 @@ public class CheckpointBarrier extends RuntimeEvent {
 	private final long timestamp;
 	private final CheckpointOptions checkpointOptions;
 
+	/** The number of data buffers that this barrier overtook in the producer's queue */
+	private final int numOvertakenBuffers;
+
 	public CheckpointBarrier(long id, long timestamp, CheckpointOptions checkpointOptions) {
+		this(id, timestamp, checkpointOptions, 0);
+	}
+
+	public CheckpointBarrier(long id, long timestamp, CheckpointOptions checkpointOptions, int numOvertakenBuffers) {
+		checkArgument(numOvertakenBuffers >= 0, "Negative number of overtaken buffers");
+
 		this.id = id;
 		this.timestamp = timestamp;
 		this.checkpointOptions = checkNotNull(checkpointOptions);
+		this.numOvertakenBuffers = numOvertakenBuffers;
 	}
 
 	public long getId() {
@@ -66,6 +82,17 @@ public class CheckpointBarrier extends RuntimeEvent {
 		return checkpointOptions;
 	}
 
+	public int getNumOvertakenBuffers() {
+		return numOvertakenBuffers;
+	}
+
+	/**
+	 * Creates a copy of this barrier that reports the given number of overtaken buffers.
+	 */
+	public CheckpointBarrier withOvertakenBuffers(int numOvertakenBuffers) {
+		return new CheckpointBarrier(id, timestamp, checkpointOptions, numOvertakenBuffers);
+	}
+
 	// ------------------------------------------------------------------------
 	// Serialization
 	// ------------------------------------------------------------------------
@@ -105,12 +132,14 @@ public class CheckpointBarrier extends RuntimeEvent {
 		else {
 			CheckpointBarrier that = (CheckpointBarrier) other;
 			return that.id == this.id && that.timestamp == this.timestamp &&
+					that.numOvertakenBuffers == this.numOvertakenBuffers &&
 					this.checkpointOptions.equals(that.checkpointOptions);
 		}
 	}
 
 	@Override
 	public String toString() {
-		return String.format("CheckpointBarrier %d @ %d Options: %s", id, timestamp, checkpointOptions);
+		return String.format("CheckpointBarrier %d @ %d Options: %s Overtaken buffers: %d",
+				id, timestamp, checkpointOptions, numOvertakenBuffers);
 	}
 }
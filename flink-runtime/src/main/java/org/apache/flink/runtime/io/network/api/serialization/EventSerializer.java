@@ -71,11 +71,12 @@ public class EventSerializer {
 
 			ByteBuffer buf;
 			if (checkpointType == CheckpointType.FULL_CHECKPOINT) {
-				buf = ByteBuffer.allocate(24);
+				buf = ByteBuffer.allocate(28);
 				buf.putInt(0, CHECKPOINT_BARRIER_EVENT);
 				buf.putLong(4, barrier.getId());
 				buf.putLong(12, barrier.getTimestamp());
 				buf.putInt(20, checkpointType.ordinal());
+				buf.putInt(24, barrier.getNumOvertakenBuffers());
 			} else if (checkpointType == CheckpointType.SAVEPOINT) {
 				String targetLocation = checkpointOptions.getTargetLocation();
 				assert(targetLocation != null);
@@ -204,6 +205,7 @@ public class EventSerializer {
 				long timestamp = buffer.getLong();
 
 				CheckpointOptions checkpointOptions;
+				int numOvertakenBuffers = 0;
 
 				int checkpointTypeOrdinal = buffer.getInt();
 				Preconditions.checkElementIndex(type, CheckpointType.values().length, "Illegal CheckpointType ordinal");
@@ -211,6 +213,7 @@ public class EventSerializer {
 
 				if (checkpointType == CheckpointType.FULL_CHECKPOINT) {
 					checkpointOptions = CheckpointOptions.forFullCheckpoint();
+					numOvertakenBuffers = buffer.getInt();
 				} else if (checkpointType == CheckpointType.SAVEPOINT) {
 					int len = buffer.getInt();
 					byte[] bytes = new byte[len];
@@ -222,7 +225,7 @@ public class EventSerializer {
 					throw new IOException("Unknown checkpoint type: " + checkpointType);
 				}
 
-				return new CheckpointBarrier(id, timestamp, checkpointOptions);
+				return new CheckpointBarrier(id, timestamp, checkpointOptions, numOvertakenBuffers);
 			}
 			else if (type == END_OF_SUPERSTEP_EVENT) {
 				return EndOfSuperstepEvent.INSTANCE;
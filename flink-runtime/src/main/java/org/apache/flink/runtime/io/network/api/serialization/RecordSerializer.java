@@ -20,6 +20,7 @@
 package org.apache.flink.runtime.io.network.api.serialization;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.apache.flink.core.io.IOReadableWritable;
 import org.apache.flink.runtime.metrics.groups.TaskIOMetricGroup;
@@ -75,6 +76,22 @@ public interface RecordSerializer<T extends IOReadableWritable> {
 	 */
 	SerializationResult addRecord(T record) throws IOException;
 
+	/**
+	 * Starts copying the given, already serialized record to the target buffer
+	 * (if available). This allows to serialize a record only once if it is
+	 * sent to several channels.
+	 *
+	 * <p>The serializer does not modify the position or limit of the given
+	 * buffer, but the content of the buffer must not change until the record
+	 * has been completely copied.</p>
+	 *
+	 * @param serializedRecord the serialized record, without its length
+	 * @return how much information was written to the target buffer and
+	 *         whether this buffer is full
+	 * @throws IOException
+	 */
+	SerializationResult addSerializedRecord(ByteBuffer serializedRecord) throws IOException;
+
 	/**
 	 * Sets a (next) target buffer to use and continues writing remaining data
 	 * to it until it is full.
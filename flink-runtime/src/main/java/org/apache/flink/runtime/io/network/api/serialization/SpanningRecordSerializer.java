@@ -104,6 +104,37 @@ public class SpanningRecordSerializer<T extends IOReadableWritable> implements R
 		return getSerializationResult();
 	}
 
+	/**
+	 * Starts copying the given serialized record to the target buffer (if
+	 * available). The record is not copied to the intermediate data
+	 * serialization buffer, but read through a view of the given buffer.
+	 *
+	 * @param serializedRecord the serialized record, without its length
+	 * @return how much information was written to the target buffer and
+	 *         whether this buffer is full
+	 * @throws IOException
+	 */
+	@Override
+	public SerializationResult addSerializedRecord(ByteBuffer serializedRecord) throws IOException {
+		if (CHECKED) {
+			if (this.dataBuffer.hasRemaining()) {
+				throw new IllegalStateException("Pending serialization of previous record.");
+			}
+		}
+
+		this.lengthBuffer.clear();
+		this.lengthBuffer.putInt(0, serializedRecord.remaining());
+
+		// the view has its own position, so that several serializers can read the same record
+		this.dataBuffer = serializedRecord.duplicate();
+
+		// Copy from intermediate buffers to current target memory segment
+		copyToTargetBufferFrom(this.lengthBuffer);
+		copyToTargetBufferFrom(this.dataBuffer);
+
+		return getSerializationResult();
+	}
+
 	@Override
 	public SerializationResult setNextBuffer(Buffer buffer) throws IOException {
 		this.targetBuffer = buffer;
@@ -21,15 +21,18 @@ package org.apache.flink.runtime.io.network.api.writer;
 import org.apache.flink.core.io.IOReadableWritable;
 import org.apache.flink.metrics.Counter;
 import org.apache.flink.metrics.SimpleCounter;
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
 import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
 import org.apache.flink.runtime.metrics.groups.TaskIOMetricGroup;
 import org.apache.flink.runtime.event.AbstractEvent;
 import org.apache.flink.runtime.io.network.api.serialization.RecordSerializer;
 import org.apache.flink.runtime.io.network.api.serialization.SpanningRecordSerializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.util.DataOutputSerializer;
 import org.apache.flink.util.XORShiftRandom;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 import static org.apache.flink.runtime.io.network.api.serialization.RecordSerializer.SerializationResult;
@@ -58,6 +61,9 @@ public class RecordWriter<T extends IOReadableWritable> {
 	/** {@link RecordSerializer} per outgoing channel */
 	private final RecordSerializer<T>[] serializers;
 
+	/** Intermediate buffer for records which are serialized once and sent to several channels */
+	private final DataOutputSerializer multiChannelSerializationBuffer = new DataOutputSerializer(128);
+
 	private final Random RNG = new XORShiftRandom();
 
 	private Counter numBytesOut = new SimpleCounter();
@@ -85,18 +91,36 @@ public class RecordWriter<T extends IOReadableWritable> {
 	}
 
 	public void emit(T record) throws IOException, InterruptedException {
-		for (int targetChannel : channelSelector.selectChannels(record, numChannels)) {
-			sendToTarget(record, targetChannel);
+		int[] targetChannels = channelSelector.selectChannels(record, numChannels);
+
+		if (targetChannels.length > 1) {
+			// serialize the record only once for all selected channels
+			ByteBuffer serializedRecord = serializeRecord(record);
+
+			for (int targetChannel : targetChannels) {
+				sendToTarget(serializedRecord, targetChannel);
+			}
+		} else {
+			for (int targetChannel : targetChannels) {
+				sendToTarget(record, targetChannel);
+			}
 		}
 	}
 
 	/**
 	 * This is used to broadcast Streaming Watermarks in-band with records. This ignores
-	 * the {@link ChannelSelector}.
+	 * the {@link ChannelSelector}. The record is serialized only once for all channels.
 	 */
 	public void broadcastEmit(T record) throws IOException, InterruptedException {
+		if (numChannels == 1) {
+			sendToTarget(record, 0);
+			return;
+		}
+
+		ByteBuffer serializedRecord = serializeRecord(record);
+
 		for (int targetChannel = 0; targetChannel < numChannels; targetChannel++) {
-			sendToTarget(record, targetChannel);
+			sendToTarget(serializedRecord, targetChannel);
 		}
 	}
 
@@ -111,27 +135,59 @@ public class RecordWriter<T extends IOReadableWritable> {
 		RecordSerializer<T> serializer = serializers[targetChannel];
 
 		synchronized (serializer) {
-			SerializationResult result = serializer.addRecord(record);
+			copyToTarget(serializer.addRecord(record), targetChannel, serializer);
+		}
+	}
 
-			while (result.isFullBuffer()) {
-				Buffer buffer = serializer.getCurrentBuffer();
+	private void sendToTarget(ByteBuffer serializedRecord, int targetChannel) throws IOException, InterruptedException {
+		RecordSerializer<T> serializer = serializers[targetChannel];
 
-				if (buffer != null) {
-					numBytesOut.inc(buffer.getSize());
-					writeAndClearBuffer(buffer, targetChannel, serializer);
+		synchronized (serializer) {
+			copyToTarget(serializer.addSerializedRecord(serializedRecord), targetChannel, serializer);
+		}
+	}
 
-					// If this was a full record, we are done. Not breaking
-					// out of the loop at this point will lead to another
-					// buffer request before breaking out (that would not be
-					// a problem per se, but it can lead to stalls in the
-					// pipeline).
-					if (result.isFullRecord()) {
-						break;
-					}
-				} else {
-					buffer = targetPartition.getBufferProvider().requestBufferBlocking();
-					result = serializer.setNextBuffer(buffer);
+	/**
+	 * Serializes the record to the intermediate buffer which is shared by all channels.
+	 * The buffer is reused for the next record, which is fine because a record is always
+	 * completely copied to the target buffers before the next record is serialized.
+	 */
+	private ByteBuffer serializeRecord(T record) throws IOException {
+		multiChannelSerializationBuffer.clear();
+		record.write(multiChannelSerializationBuffer);
+
+		return multiChannelSerializationBuffer.wrapAsByteBuffer();
+	}
+
+	/**
+	 * Copies the record which has been added to the serializer to the target buffers,
+	 * requesting new buffers until the record has been written completely.
+	 *
+	 * Needs to be synchronized on the serializer!
+	 */
+	private void copyToTarget(
+			SerializationResult result,
+			int targetChannel,
+			RecordSerializer<T> serializer) throws IOException, InterruptedException {
+
+		while (result.isFullBuffer()) {
+			Buffer buffer = serializer.getCurrentBuffer();
+
+			if (buffer != null) {
+				numBytesOut.inc(buffer.getSize());
+				writeAndClearBuffer(buffer, targetChannel, serializer);
+
+				// If this was a full record, we are done. Not breaking
+				// out of the loop at this point will lead to another
+				// buffer request before breaking out (that would not be
+				// a problem per se, but it can lead to stalls in the
+				// pipeline).
+				if (result.isFullRecord()) {
+					break;
 				}
+			} else {
+				buffer = targetPartition.getBufferProvider().requestBufferBlocking();
+				result = serializer.setNextBuffer(buffer);
 			}
 		}
 	}
@@ -164,6 +220,30 @@ public class RecordWriter<T extends IOReadableWritable> {
 		}
 	}
 
+	/**
+	 * Broadcasts the checkpoint barrier of an unaligned checkpoint. In contrast to
+	 * {@link #broadcastEvent(AbstractEvent)}, the barrier may overtake the data buffers that are
+	 * still queued in the target partition.
+	 */
+	public void broadcastCheckpointBarrier(CheckpointBarrier barrier) throws IOException, InterruptedException {
+		for (int targetChannel = 0; targetChannel < numChannels; targetChannel++) {
+			RecordSerializer<T> serializer = serializers[targetChannel];
+
+			synchronized (serializer) {
+				Buffer buffer = serializer.getCurrentBuffer();
+				if (buffer != null) {
+					numBytesOut.inc(buffer.getSize());
+					writeAndClearBuffer(buffer, targetChannel, serializer);
+				} else if (serializer.hasData()) {
+					// sanity check
+					throw new IllegalStateException("No buffer, but serializer has buffered data.");
+				}
+
+				targetPartition.writeCheckpointBarrier(barrier, targetChannel);
+			}
+		}
+	}
+
 	public void flush() throws IOException {
 		for (int targetChannel = 0; targetChannel < numChannels; targetChannel++) {
 			RecordSerializer<T> serializer = serializers[targetChannel];
@@ -19,6 +19,7 @@
 package org.apache.flink.runtime.io.network.api.writer;
 
 import org.apache.flink.runtime.event.TaskEvent;
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
 import org.apache.flink.runtime.io.network.api.TaskEventHandler;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
@@ -72,6 +73,18 @@ public class ResultPartitionWriter implements EventListener<TaskEvent> {
 		partition.add(buffer, targetChannel);
 	}
 
+	/**
+	 * Writes the checkpoint barrier of an unaligned checkpoint to the given target channel. The
+	 * barrier may overtake data buffers that have not been consumed from that channel yet.
+	 *
+	 * @param barrier the checkpoint barrier to write
+	 * @param targetChannel the channel to write the barrier to
+	 * @throws IOException
+	 */
+	public void writeCheckpointBarrier(CheckpointBarrier barrier, int targetChannel) throws IOException {
+		partition.addCheckpointBarrier(barrier, targetChannel);
+	}
+
 	/**
 	 * Writes the given buffer to all available target channels.
 	 *
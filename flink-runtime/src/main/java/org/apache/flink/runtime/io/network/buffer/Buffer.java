@@ -40,6 +40,9 @@ public class Buffer {
 
 	private boolean isBuffer;
 
+	/** Whether the data of this buffer has been compressed by a {@link BufferCompressor} */
+	private boolean isCompressed;
+
 	/** The current number of references to this buffer */
 	private int referenceCount = 1;
 
@@ -73,6 +76,18 @@ public class Buffer {
 		isBuffer = false;
 	}
 
+	public boolean isCompressed() {
+		return isCompressed;
+	}
+
+	public void setCompressed(boolean isCompressed) {
+		synchronized (recycleLock) {
+			ensureNotRecycled();
+		}
+
+		this.isCompressed = isCompressed;
+	}
+
 	public MemorySegment getMemorySegment() {
 		synchronized (recycleLock) {
 			ensureNotRecycled();
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.buffer;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.nio.ByteBuffer;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Compresses the data of network {@link Buffer} instances with LZ4.
+ *
+ * <p>The compressed data is written back to the {@link org.apache.flink.core.memory.MemorySegment}
+ * of the buffer, which is tagged as compressed. Buffers, which do not become smaller by
+ * compressing them, are left untouched. Compressed buffers are restored by a
+ * {@link BufferDecompressor} before their data is deserialized.
+ *
+ * <p>The compressor may be shared by all subpartitions of a result partition and is therefore
+ * thread-safe.
+ */
+public class BufferCompressor {
+
+	private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+
+	/** Intermediate buffer for the compressed data, grown on demand */
+	private ByteBuffer compressionBuffer = ByteBuffer.allocate(0);
+
+	/**
+	 * Compresses the data of the given buffer in place.
+	 *
+	 * @param buffer The data buffer to compress
+	 *
+	 * @return <code>true</code> if the buffer has been compressed, <code>false</code> if it has
+	 * been left uncompressed because compressing it would not reduce its size
+	 */
+	public synchronized boolean compress(Buffer buffer) {
+		checkNotNull(buffer);
+		checkArgument(buffer.isBuffer(), "Events are never compressed.");
+		checkArgument(!buffer.isCompressed(), "Buffer is already compressed.");
+
+		final int size = buffer.getSize();
+		if (size == 0) {
+			return false;
+		}
+
+		final int maxCompressedLength = compressor.maxCompressedLength(size);
+		if (compressionBuffer.capacity() < maxCompressedLength) {
+			compressionBuffer = ByteBuffer.allocate(maxCompressedLength);
+		}
+
+		final int compressedLength = compressor.compress(
+			buffer.getNioBuffer(), 0, size, compressionBuffer, 0, maxCompressedLength);
+
+		if (compressedLength >= size) {
+			return false;
+		}
+
+		buffer.getMemorySegment().put(0, compressionBuffer.array(), 0, compressedLength);
+		buffer.setSize(compressedLength);
+		buffer.setCompressed(true);
+
+		return true;
+	}
+}
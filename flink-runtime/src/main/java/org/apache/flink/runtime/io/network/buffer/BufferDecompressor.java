@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.buffer;
+
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * Restores the data of network {@link Buffer} instances, which have been compressed by a
+ * {@link BufferCompressor}.
+ *
+ * <p>This class is not thread-safe. Each input gate uses its own decompressor.
+ */
+public class BufferDecompressor {
+
+	private final LZ4SafeDecompressor decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+
+	/** Intermediate buffer for the decompressed data, grown on demand */
+	private ByteBuffer decompressionBuffer = ByteBuffer.allocate(0);
+
+	/**
+	 * Decompresses the data of the given buffer in place.
+	 *
+	 * <p>The decompressed data has to fit into the memory segment of the buffer, which is always
+	 * the case if the buffer has the size of the network buffers of the producer.
+	 *
+	 * @param buffer The compressed data buffer
+	 *
+	 * @throws IOException Thrown if the data of the buffer is corrupt
+	 */
+	public void decompress(Buffer buffer) throws IOException {
+		checkNotNull(buffer);
+		checkArgument(buffer.isCompressed(), "Buffer is not compressed.");
+
+		final int maxLength = buffer.getMemorySegment().size();
+		if (decompressionBuffer.capacity() < maxLength) {
+			decompressionBuffer = ByteBuffer.allocate(maxLength);
+		}
+
+		final int length;
+		try {
+			length = decompressor.decompress(
+				buffer.getNioBuffer(), 0, buffer.getSize(), decompressionBuffer, 0, maxLength);
+		} catch (LZ4Exception e) {
+			throw new IOException("Failed to decompress buffer.", e);
+		}
+
+		buffer.getMemorySegment().put(0, decompressionBuffer.array(), 0, length);
+		buffer.setSize(length);
+		buffer.setCompressed(false);
+	}
+}
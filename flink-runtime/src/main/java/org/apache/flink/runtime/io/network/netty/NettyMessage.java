@@ -150,6 +150,9 @@ abstract class NettyMessage {
 			else if (msgId == CloseRequest.ID) {
 				decodedMsg = new CloseRequest();
 			}
+			else if (msgId == AddCredit.ID) {
+				decodedMsg = new AddCredit();
+			}
 			else {
 				throw new IllegalStateException("Received unknown message from producer: " + msg);
 			}
@@ -175,10 +178,15 @@ abstract class NettyMessage {
 
 		int sequenceNumber;
 
+		/** The number of buffers queued at the producer for the receiver after this one. */
+		int backlog;
+
 		// ---- Deserialization -----------------------------------------------
 
 		boolean isBuffer;
 
+		boolean isCompressed;
+
 		int size;
 
 		ByteBuf retainedSlice;
@@ -190,15 +198,24 @@ abstract class NettyMessage {
 		}
 
 		public BufferResponse(Buffer buffer, int sequenceNumber, InputChannelID receiverId) {
+			this(buffer, sequenceNumber, receiverId, 0);
+		}
+
+		public BufferResponse(Buffer buffer, int sequenceNumber, InputChannelID receiverId, int backlog) {
 			this.buffer = buffer;
 			this.sequenceNumber = sequenceNumber;
 			this.receiverId = receiverId;
+			this.backlog = backlog;
 		}
 
 		boolean isBuffer() {
 			return isBuffer;
 		}
 
+		boolean isCompressed() {
+			return isCompressed;
+		}
+
 		int getSize() {
 			return size;
 		}
@@ -220,7 +237,7 @@ abstract class NettyMessage {
 
 		@Override
 		ByteBuf write(ByteBufAllocator allocator) throws IOException {
-			int length = 16 + 4 + 1 + 4 + buffer.getSize();
+			int length = 16 + 4 + 4 + 1 + 1 + 4 + buffer.getSize();
 
 			ByteBuf result = null;
 			try {
@@ -228,7 +245,9 @@ abstract class NettyMessage {
 
 				receiverId.writeTo(result);
 				result.writeInt(sequenceNumber);
+				result.writeInt(backlog);
 				result.writeBoolean(buffer.isBuffer());
+				result.writeBoolean(buffer.isCompressed());
 				result.writeInt(buffer.getSize());
 				result.writeBytes(buffer.getNioBuffer());
 
@@ -252,7 +271,9 @@ abstract class NettyMessage {
 		void readFrom(ByteBuf buffer) {
 			receiverId = InputChannelID.fromByteBuf(buffer);
 			sequenceNumber = buffer.readInt();
+			backlog = buffer.readInt();
 			isBuffer = buffer.readBoolean();
+			isCompressed = buffer.readBoolean();
 			size = buffer.readInt();
 
 			retainedSlice = buffer.readSlice(size);
@@ -346,13 +367,24 @@ abstract class NettyMessage {
 
 		InputChannelID receiverId;
 
+		/**
+		 * The initial credit of the receiver. A non-positive credit means that the receiver
+		 * does not use credit-based flow control.
+		 */
+		int credit;
+
 		public PartitionRequest() {
 		}
 
 		PartitionRequest(ResultPartitionID partitionId, int queueIndex, InputChannelID receiverId) {
+			this(partitionId, queueIndex, receiverId, -1);
+		}
+
+		PartitionRequest(ResultPartitionID partitionId, int queueIndex, InputChannelID receiverId, int credit) {
 			this.partitionId = partitionId;
 			this.queueIndex = queueIndex;
 			this.receiverId = receiverId;
+			this.credit = credit;
 		}
 
 		@Override
@@ -360,12 +392,13 @@ abstract class NettyMessage {
 			ByteBuf result = null;
 
 			try {
-				result = allocateBuffer(allocator, ID, 16 + 16 + 4 + 16);
+				result = allocateBuffer(allocator, ID, 16 + 16 + 4 + 16 + 4);
 
 				partitionId.getPartitionId().writeTo(result);
 				partitionId.getProducerId().writeTo(result);
 				result.writeInt(queueIndex);
 				receiverId.writeTo(result);
+				result.writeInt(credit);
 
 				return result;
 			}
@@ -383,11 +416,12 @@ abstract class NettyMessage {
 			partitionId = new ResultPartitionID(IntermediateResultPartitionID.fromByteBuf(buffer), ExecutionAttemptID.fromByteBuf(buffer));
 			queueIndex = buffer.readInt();
 			receiverId = InputChannelID.fromByteBuf(buffer);
+			credit = buffer.readInt();
 		}
 
 		@Override
 		public String toString() {
-			return String.format("PartitionRequest(%s:%d)", partitionId, queueIndex);
+			return String.format("PartitionRequest(%s:%d:%d)", partitionId, queueIndex, credit);
 		}
 	}
 
@@ -501,6 +535,59 @@ abstract class NettyMessage {
 		}
 	}
 
+	/**
+	 * Announces additional credit of the {@link InputChannel} identified by
+	 * {@link InputChannelID} to the producer. Each credit allows the producer to send one
+	 * more buffer to the respective receiver.
+	 */
+	static class AddCredit extends NettyMessage {
+
+		final static byte ID = 6;
+
+		InputChannelID receiverId;
+
+		int credit;
+
+		public AddCredit() {
+		}
+
+		AddCredit(InputChannelID receiverId, int credit) {
+			this.receiverId = receiverId;
+			this.credit = credit;
+		}
+
+		@Override
+		ByteBuf write(ByteBufAllocator allocator) throws Exception {
+			ByteBuf result = null;
+
+			try {
+				result = allocateBuffer(allocator, ID, 16 + 4);
+				receiverId.writeTo(result);
+				result.writeInt(credit);
+			}
+			catch (Throwable t) {
+				if (result != null) {
+					result.release();
+				}
+
+				throw new IOException(t);
+			}
+
+			return result;
+		}
+
+		@Override
+		void readFrom(ByteBuf buffer) throws Exception {
+			receiverId = InputChannelID.fromByteBuf(buffer);
+			credit = buffer.readInt();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("AddCredit(%s:%d)", receiverId, credit);
+		}
+	}
+
 	static class CloseRequest extends NettyMessage {
 
 		private static final byte ID = 5;
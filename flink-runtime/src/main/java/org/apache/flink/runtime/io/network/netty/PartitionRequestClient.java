@@ -104,7 +104,7 @@ public class PartitionRequestClient {
 		partitionRequestHandler.addInputChannel(inputChannel);
 
 		final PartitionRequest request = new PartitionRequest(
-				partitionId, subpartitionIndex, inputChannel.getInputChannelId());
+				partitionId, subpartitionIndex, inputChannel.getInputChannelId(), inputChannel.getInitialCredit());
 
 		final ChannelFutureListener listener = new ChannelFutureListener() {
 			@Override
@@ -165,6 +165,14 @@ public class PartitionRequestClient {
 						});
 	}
 
+	/**
+	 * Notifies the client that the given input channel has credit, which has not been
+	 * announced to the producer yet. The credit is sent by the network I/O thread.
+	 */
+	public void notifyCreditAvailable(RemoteInputChannel inputChannel) {
+		partitionRequestHandler.notifyCreditAvailable(inputChannel);
+	}
+
 	public void close(RemoteInputChannel inputChannel) throws IOException {
 
 		partitionRequestHandler.removeInputChannel(inputChannel);
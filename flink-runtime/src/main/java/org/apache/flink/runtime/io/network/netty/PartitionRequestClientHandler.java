@@ -19,6 +19,8 @@
 package org.apache.flink.runtime.io.network.netty;
 
 import com.google.common.collect.Maps;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import org.apache.flink.core.memory.MemorySegment;
@@ -82,6 +84,40 @@ class PartitionRequestClientHandler extends ChannelInboundHandlerAdapter {
 		inputChannels.remove(listener.getInputChannelId());
 	}
 
+	/**
+	 * Sends the unannounced credit of the given input channel to the producer. The credit is
+	 * collected and sent by the network I/O thread, so that credit returned concurrently is
+	 * announced with a single message.
+	 */
+	void notifyCreditAvailable(final RemoteInputChannel inputChannel) {
+		if (ctx == null) {
+			return;
+		}
+
+		ctx.executor().execute(new Runnable() {
+			@Override
+			public void run() {
+				if (inputChannels.containsKey(inputChannel.getInputChannelId())) {
+					int credit = inputChannel.getAndResetUnannouncedCredit();
+
+					if (credit > 0) {
+						ctx.writeAndFlush(new NettyMessage.AddCredit(inputChannel.getInputChannelId(), credit))
+							.addListener(new ChannelFutureListener() {
+								@Override
+								public void operationComplete(ChannelFuture future) throws Exception {
+									if (!future.isSuccess()) {
+										inputChannel.onError(new LocalTransportException(
+											"Sending the credit announcement failed.",
+											future.channel().localAddress(), future.cause()));
+									}
+								}
+							});
+					}
+				}
+			}
+		});
+	}
+
 	void cancelRequestFor(InputChannelID inputChannelId) {
 		if (inputChannelId == null || ctx == null) {
 			return;
@@ -292,8 +328,9 @@ class PartitionRequestClientHandler extends ChannelInboundHandlerAdapter {
 					if (buffer != null) {
 						buffer.setSize(bufferOrEvent.getSize());
 						bufferOrEvent.getNettyBuffer().readBytes(buffer.getNioBuffer());
+						buffer.setCompressed(bufferOrEvent.isCompressed());
 
-						inputChannel.onBuffer(buffer, bufferOrEvent.sequenceNumber);
+						inputChannel.onBuffer(buffer, bufferOrEvent.sequenceNumber, bufferOrEvent.backlog);
 
 						return true;
 					}
@@ -316,7 +353,7 @@ class PartitionRequestClientHandler extends ChannelInboundHandlerAdapter {
 				MemorySegment memSeg = MemorySegmentFactory.wrap(byteArray);
 				Buffer buffer = new Buffer(memSeg, FreeingBufferRecycler.INSTANCE, false);
 
-				inputChannel.onBuffer(buffer, bufferOrEvent.sequenceNumber);
+				inputChannel.onBuffer(buffer, bufferOrEvent.sequenceNumber, bufferOrEvent.backlog);
 
 				return true;
 			}
@@ -442,12 +479,13 @@ class PartitionRequestClientHandler extends ChannelInboundHandlerAdapter {
 				buffer.setSize(stagedBufferResponse.getSize());
 
 				stagedBufferResponse.getNettyBuffer().readBytes(buffer.getNioBuffer());
+				buffer.setCompressed(stagedBufferResponse.isCompressed());
 				stagedBufferResponse.releaseBuffer();
 
 				RemoteInputChannel inputChannel = inputChannels.get(stagedBufferResponse.receiverId);
 
 				if (inputChannel != null) {
-					inputChannel.onBuffer(buffer, stagedBufferResponse.sequenceNumber);
+					inputChannel.onBuffer(buffer, stagedBufferResponse.sequenceNumber, stagedBufferResponse.backlog);
 
 					success = true;
 				}
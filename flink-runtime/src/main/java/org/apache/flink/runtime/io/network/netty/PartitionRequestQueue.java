@@ -36,6 +36,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
@@ -44,6 +46,10 @@ import static org.apache.flink.runtime.io.network.netty.NettyMessage.BufferRespo
 /**
  * A nonEmptyReader of partition queues, which listens for channel writability changed
  * events before writing and flushing {@link Buffer} instances.
+ *
+ * <p>Readers of receivers with credit-based flow control are only queued while their
+ * receiver has credit. Readers without credit are re-queued as soon as the receiver
+ * announces new credit via {@link #addCredit(InputChannelID, int)}.
  */
 class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 
@@ -53,6 +59,9 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 
 	private final Queue<SequenceNumberingViewReader> nonEmptyReader = new ArrayDeque<>();
 
+	/** All readers created for this channel, which have not been released yet. */
+	private final Map<InputChannelID, SequenceNumberingViewReader> allReaders = new HashMap<>();
+
 	private final Set<InputChannelID> released = Sets.newHashSet();
 
 	private boolean fatalError;
@@ -86,6 +95,33 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 		});
 	}
 
+	/**
+	 * Registers a newly created reader. Called by the network I/O thread.
+	 */
+	void notifyReaderCreated(final SequenceNumberingViewReader reader) {
+		allReaders.put(reader.getReceiverId(), reader);
+	}
+
+	/**
+	 * Adds credit announced by a receiver and enqueues its reader, if it has data available
+	 * and was waiting for credit. Called by the network I/O thread.
+	 */
+	void addCredit(InputChannelID receiverId, int credit) throws Exception {
+		if (fatalError) {
+			return;
+		}
+
+		// The reader might have been released concurrently to the credit announcement
+		SequenceNumberingViewReader reader = allReaders.get(receiverId);
+		if (reader != null) {
+			reader.addCredit(credit);
+
+			if (reader.isAvailable()) {
+				enqueueAvailableReader(reader);
+			}
+		}
+	}
+
 	public void cancel(InputChannelID receiverId) {
 		ctx.pipeline().fireUserEventTriggered(receiverId);
 	}
@@ -102,13 +138,20 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 		// hand over of reader queues and cancelled producers.
 
 		if (msg.getClass() == SequenceNumberingViewReader.class) {
-			// Queue a non-empty reader for consumption. If the queue
-			// is empty, we try trigger the actual write. Otherwise this
-			// will be handled by the writeAndFlushIfPossible calls.
-			boolean triggerWrite = nonEmptyReader.isEmpty();
-			nonEmptyReader.add((SequenceNumberingViewReader) msg);
-			if (triggerWrite) {
-				writeAndFlushNextMessageIfPossible(ctx.channel());
+			SequenceNumberingViewReader reader = (SequenceNumberingViewReader) msg;
+			if (released.contains(reader.getReceiverId())) {
+				return;
+			}
+
+			if (!allReaders.containsKey(reader.getReceiverId())) {
+				allReaders.put(reader.getReceiverId(), reader);
+			}
+
+			// Queue a non-empty reader for consumption, unless its receiver has
+			// no credit. In this case, the reader is queued after the receiver
+			// announced new credit.
+			if (reader.hasCredit()) {
+				enqueueAvailableReader(reader);
 			}
 		} else if (msg.getClass() == InputChannelID.class) {
 			// Release partition view that get a cancel request.
@@ -118,21 +161,44 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 			}
 
 			// Cancel the request for the input channel
-			int size = nonEmptyReader.size();
-			for (int i = 0; i < size; i++) {
-				SequenceNumberingViewReader reader = nonEmptyReader.poll();
-				if (reader.getReceiverId().equals(toCancel)) {
-					reader.releaseAllResources();
-					markAsReleased(reader.getReceiverId());
-				} else {
-					nonEmptyReader.add(reader);
+			SequenceNumberingViewReader toRelease = allReaders.get(toCancel);
+			if (toRelease != null) {
+				if (toRelease.isRegisteredAsAvailable()) {
+					nonEmptyReader.remove(toRelease);
+					toRelease.setRegisteredAsAvailable(false);
 				}
+
+				toRelease.releaseAllResources();
+				markAsReleased(toCancel);
 			}
 		} else {
 			ctx.fireUserEventTriggered(msg);
 		}
 	}
 
+	/**
+	 * Queues a reader for consumption, if it is not queued yet. If the queue was empty, we
+	 * try to trigger the actual write. Otherwise this will be handled by the
+	 * writeAndFlushNextMessageIfPossible calls.
+	 */
+	private void enqueueAvailableReader(final SequenceNumberingViewReader reader) throws Exception {
+		if (reader.isRegisteredAsAvailable()) {
+			return;
+		}
+
+		boolean triggerWrite = nonEmptyReader.isEmpty();
+		registerAvailableReader(reader);
+
+		if (triggerWrite) {
+			writeAndFlushNextMessageIfPossible(ctx.channel());
+		}
+	}
+
+	private void registerAvailableReader(SequenceNumberingViewReader reader) {
+		nonEmptyReader.add(reader);
+		reader.setRegisteredAsAvailable(true);
+	}
+
 	@Override
 	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
 		writeAndFlushNextMessageIfPossible(ctx.channel());
@@ -159,6 +225,8 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 						return;
 					}
 
+					reader.setRegisteredAsAvailable(false);
+
 					next = reader.getNextBuffer();
 
 					if (next == null) {
@@ -184,14 +252,17 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 						// this channel was now removed from the non-empty reader queue
 						// we re-add it in case it has more data, because in that case no
 						// "non-empty" notification will come for that reader from the queue.
-						if (next.moreAvailable()) {
-							nonEmptyReader.add(reader);
+						// If the receiver has no credit left, the reader is re-added when
+						// new credit is announced.
+						if (next.moreAvailable() && reader.hasCredit()) {
+							registerAvailableReader(reader);
 						}
 
 						BufferResponse msg = new BufferResponse(
 							next.buffer(),
 							reader.getSequenceNumber(),
-							reader.getReceiverId());
+							reader.getReceiverId(),
+							reader.getBuffersInBacklog());
 
 						if (isEndOfPartitionEvent(next.buffer())) {
 							reader.notifySubpartitionConsumed();
@@ -248,9 +319,16 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 	private void releaseAllResources() throws IOException {
 		SequenceNumberingViewReader reader;
 		while ((reader = nonEmptyReader.poll()) != null) {
-			reader.releaseAllResources();
-			markAsReleased(reader.getReceiverId());
+			reader.setRegisteredAsAvailable(false);
+		}
+
+		// release all readers, including the ones waiting for data or credit
+		for (SequenceNumberingViewReader toRelease : allReaders.values()) {
+			toRelease.releaseAllResources();
+			released.add(toRelease.getReceiverId());
 		}
+
+		allReaders.clear();
 	}
 
 	/**
@@ -258,6 +336,7 @@ class PartitionRequestQueue extends ChannelInboundHandlerAdapter {
 	 */
 	private void markAsReleased(InputChannelID receiverId) {
 		released.add(receiverId);
+		allReaders.remove(receiverId);
 	}
 
 	// This listener is called after an element of the current nonEmptyReader has been
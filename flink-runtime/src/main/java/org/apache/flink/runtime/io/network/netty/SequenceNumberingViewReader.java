@@ -37,6 +37,10 @@ import java.util.concurrent.atomic.AtomicLong;
  *
  * <p>It also keeps track of available buffers and notifies the outbound
  * handler about non-emptiness, similar to the {@link LocalInputChannel}.
+ *
+ * <p>If the receiver uses credit-based flow control, the reader additionally keeps
+ * track of the credit announced by the receiver. A buffer is only handed out if the
+ * receiver has credit for it.
  */
 class SequenceNumberingViewReader implements BufferAvailabilityListener {
 
@@ -52,9 +56,30 @@ class SequenceNumberingViewReader implements BufferAvailabilityListener {
 
 	private int sequenceNumber = -1;
 
+	/** Whether the receiver uses credit-based flow control. */
+	private final boolean isCreditBased;
+
+	/**
+	 * The number of buffers the receiver can currently accept. Only accessed by the network
+	 * I/O thread.
+	 */
+	private int numCreditsAvailable;
+
+	/**
+	 * Flag indicating whether this reader is currently queued as available at the
+	 * {@link PartitionRequestQueue}. Only accessed by the network I/O thread.
+	 */
+	private boolean isRegisteredAsAvailable;
+
 	SequenceNumberingViewReader(InputChannelID receiverId, PartitionRequestQueue requestQueue) {
+		this(receiverId, -1, requestQueue);
+	}
+
+	SequenceNumberingViewReader(InputChannelID receiverId, int initialCredit, PartitionRequestQueue requestQueue) {
 		this.receiverId = receiverId;
 		this.requestQueue = requestQueue;
+		this.isCreditBased = initialCredit > 0;
+		this.numCreditsAvailable = initialCredit;
 	}
 
 	void requestSubpartitionView(
@@ -88,12 +113,57 @@ class SequenceNumberingViewReader implements BufferAvailabilityListener {
 		return sequenceNumber;
 	}
 
+	/**
+	 * Adds credit announced by the receiver.
+	 */
+	void addCredit(int credit) {
+		numCreditsAvailable += credit;
+	}
+
+	int getNumCreditsAvailable() {
+		return numCreditsAvailable;
+	}
+
+	/**
+	 * Returns whether the receiver can accept another buffer. Always <code>true</code> if the
+	 * receiver does not use credit-based flow control.
+	 */
+	boolean hasCredit() {
+		return !isCreditBased || numCreditsAvailable > 0;
+	}
+
+	/**
+	 * Returns whether this reader has buffers available and the receiver has credit for them.
+	 */
+	boolean isAvailable() {
+		return numBuffersAvailable.get() > 0 && hasCredit();
+	}
+
+	/**
+	 * Returns the number of buffers queued at the subpartition, which have not been sent yet.
+	 */
+	int getBuffersInBacklog() {
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(0, numBuffersAvailable.get()));
+	}
+
+	boolean isRegisteredAsAvailable() {
+		return isRegisteredAsAvailable;
+	}
+
+	void setRegisteredAsAvailable(boolean isRegisteredAsAvailable) {
+		this.isRegisteredAsAvailable = isRegisteredAsAvailable;
+	}
+
 	public BufferAndAvailability getNextBuffer() throws IOException, InterruptedException {
 		Buffer next = subpartitionView.getNextBuffer();
 		if (next != null) {
 			long remaining = numBuffersAvailable.decrementAndGet();
 			sequenceNumber++;
 
+			if (isCreditBased) {
+				numCreditsAvailable--;
+			}
+
 			if (remaining >= 0) {
 				return new BufferAndAvailability(next, remaining > 0);
 			} else {
@@ -135,6 +205,7 @@ class SequenceNumberingViewReader implements BufferAvailabilityListener {
 			", receiverId=" + receiverId +
 			", numBuffersAvailable=" + numBuffersAvailable.get() +
 			", sequenceNumber=" + sequenceNumber +
+			", numCreditsAvailable=" + numCreditsAvailable +
 			'}';
 	}
 }
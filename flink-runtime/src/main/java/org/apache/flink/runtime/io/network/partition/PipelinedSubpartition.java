@@ -18,6 +18,7 @@
 
 package org.apache.flink.runtime.io.network.partition;
 
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
 import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
 import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
@@ -85,6 +86,53 @@ class PipelinedSubpartition extends ResultSubpartition {
 		return true;
 	}
 
+	/**
+	 * Adds the checkpoint barrier right after the last queued event, overtaking all data buffers
+	 * that were added after that event and have not been consumed yet. Events are never overtaken.
+	 * Buffers that were already handed to the consumer are not overtaken either, neither in the
+	 * network stack nor in the input channels of the consuming task.
+	 */
+	@Override
+	public boolean addCheckpointBarrier(CheckpointBarrier barrier) throws IOException {
+		checkNotNull(barrier);
+
+		// view reference accessible outside the lock, but assigned inside the locked scope
+		final PipelinedSubpartitionView reader;
+		final boolean atHead;
+
+		synchronized (buffers) {
+			if (isFinished || isReleased) {
+				return false;
+			}
+
+			// take the trailing data buffers out of the queue to put the barrier in front of them
+			final ArrayDeque<Buffer> overtaken = new ArrayDeque<>();
+			while (!buffers.isEmpty() && buffers.peekLast().isBuffer()) {
+				overtaken.addFirst(buffers.pollLast());
+			}
+
+			final Buffer barrierBuffer = EventSerializer.toBuffer(barrier.withOvertakenBuffers(overtaken.size()));
+
+			buffers.add(barrierBuffer);
+			buffers.addAll(overtaken);
+			atHead = buffers.peekFirst() == barrierBuffer;
+			reader = readView;
+			updateStatistics(barrierBuffer);
+		}
+
+		// Notify the listener outside of the synchronized block
+		if (reader != null) {
+			reader.notifyBuffersAvailable(1);
+
+			// a local consumer has no queue of its own, let it consume this subpartition next
+			if (atHead) {
+				reader.notifyPriorityEvent();
+			}
+		}
+
+		return true;
+	}
+
 	@Override
 	public void finish() throws IOException {
 		final Buffer buffer = EventSerializer.toBuffer(EndOfPartitionEvent.INSTANCE);
@@ -54,6 +54,16 @@ class PipelinedSubpartitionView implements ResultSubpartitionView {
 		availabilityListener.notifyBuffersAvailable(numBuffers);
 	}
 
+	/**
+	 * Notifies the listener that an event was put at the head of the subpartition, if the
+	 * listener is a {@link PriorityEventListener}.
+	 */
+	void notifyPriorityEvent() {
+		if (availabilityListener instanceof PriorityEventListener) {
+			((PriorityEventListener) availabilityListener).notifyPriorityEvent();
+		}
+	}
+
 	@Override
 	public void notifySubpartitionConsumed() {
 		releaseAllResources();
@@ -21,7 +21,9 @@ package org.apache.flink.runtime.io.network.partition;
 import org.apache.flink.api.common.JobID;
 import org.apache.flink.runtime.executiongraph.IntermediateResultPartition;
 import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferCompressor;
 import org.apache.flink.runtime.io.network.buffer.BufferPool;
 import org.apache.flink.runtime.io.network.buffer.BufferPoolOwner;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
@@ -112,6 +114,9 @@ public class ResultPartition implements BufferPoolOwner {
 
 	private BufferPool bufferPool;
 
+	/** Compresses the data buffers before they are added to a subpartition, <code>null</code> if disabled */
+	private BufferCompressor bufferCompressor;
+
 	private boolean hasNotifiedPipelinedConsumers;
 
 	private boolean isFinished;
@@ -200,6 +205,19 @@ public class ResultPartition implements BufferPoolOwner {
 		}
 	}
 
+	/**
+	 * Enables the compression of all data buffers, which are added to this result partition.
+	 * Event buffers are never compressed.
+	 *
+	 * <p>The compressed buffers are kept compressed in the subpartitions (including their spilled
+	 * files) and on the wire. They are decompressed by the input gate of the consumer.
+	 */
+	public void setBufferCompressor(BufferCompressor bufferCompressor) {
+		checkState(totalNumberOfBuffers == 0, "Bug in result partition setup logic: Buffers have already been added.");
+
+		this.bufferCompressor = checkNotNull(bufferCompressor);
+	}
+
 	public JobID getJobId() {
 		return jobId;
 	}
@@ -263,6 +281,10 @@ public class ResultPartition implements BufferPoolOwner {
 
 			final ResultSubpartition subpartition = subpartitions[subpartitionIndex];
 
+			if (bufferCompressor != null && buffer.isBuffer()) {
+				bufferCompressor.compress(buffer);
+			}
+
 			synchronized (subpartition) {
 				success = subpartition.add(buffer);
 
@@ -281,6 +303,31 @@ public class ResultPartition implements BufferPoolOwner {
 		}
 	}
 
+	/**
+	 * Adds a checkpoint barrier of an unaligned checkpoint to the subpartition with the given
+	 * index. The barrier may overtake data buffers that are still queued in the subpartition.
+	 *
+	 * @see ResultSubpartition#addCheckpointBarrier(CheckpointBarrier)
+	 */
+	public void addCheckpointBarrier(CheckpointBarrier barrier, int subpartitionIndex) throws IOException {
+		checkInProduceState();
+
+		final ResultSubpartition subpartition = subpartitions[subpartitionIndex];
+
+		final boolean success;
+		synchronized (subpartition) {
+			success = subpartition.addCheckpointBarrier(barrier);
+
+			if (success) {
+				totalNumberOfBuffers++;
+			}
+		}
+
+		if (success) {
+			notifyPipelinedConsumers();
+		}
+	}
+
 	/**
 	 * Finishes the result partition.
 	 *
@@ -18,6 +18,8 @@
 
 package org.apache.flink.runtime.io.network.partition;
 
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
+import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
 
@@ -73,6 +75,33 @@ public abstract class ResultSubpartition {
 
 	abstract public boolean add(Buffer buffer) throws IOException;
 
+	/**
+	 * Adds a checkpoint barrier of an unaligned checkpoint. Subpartitions that are able to do so
+	 * place the barrier ahead of the data buffers that are queued but not yet consumed, and record
+	 * the number of overtaken buffers in the barrier.
+	 *
+	 * <p>The default implementation does not reorder any data and appends the barrier like any
+	 * other event.
+	 *
+	 * @param barrier The checkpoint barrier to add.
+	 * @return <tt>true</tt> if the barrier was added, <tt>false</tt> if the subpartition was
+	 * already finished or released.
+	 */
+	public boolean addCheckpointBarrier(CheckpointBarrier barrier) throws IOException {
+		final Buffer buffer = EventSerializer.toBuffer(barrier);
+
+		boolean success = false;
+		try {
+			success = add(buffer);
+			return success;
+		}
+		finally {
+			if (!success) {
+				buffer.recycle();
+			}
+		}
+	}
+
 	abstract public void finish() throws IOException;
 
 	abstract public void release() throws IOException;
@@ -116,6 +116,14 @@ public abstract class InputChannel {
 		inputGate.notifyChannelNonEmpty(this);
 	}
 
+	/**
+	 * Notifies the owning {@link SingleInputGate} that an event was put at the head of this
+	 * channel, ahead of the data that was queued before it, and should be consumed next.
+	 */
+	protected void notifyChannelPriorityEvent() {
+		inputGate.notifyChannelPriorityEvent(this);
+	}
+
 	// ------------------------------------------------------------------------
 	// Consume
 	// ------------------------------------------------------------------------
@@ -79,4 +79,11 @@ public interface InputGate {
 	void registerListener(InputGateListener listener);
 
 	int getPageSize();
+
+	/**
+	 * Lets the checkpoint barriers of unaligned checkpoints overtake the data buffers that are
+	 * queued in the input channels of this gate, and moves the channels with such a barrier to the
+	 * head of the queue of channels with data.
+	 */
+	void enableCheckpointBarrierOvertaking();
 }
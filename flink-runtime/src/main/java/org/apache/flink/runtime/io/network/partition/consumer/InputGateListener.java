@@ -32,4 +32,12 @@ public interface InputGateListener {
 	 */
 	void notifyInputGateNonEmpty(InputGate inputGate);
 
+	/**
+	 * Notification callback if an event was put at the head of an input channel of the input
+	 * gate, ahead of the data that was queued before it, and the input gate should be consumed next.
+	 *
+	 * @param inputGate Input Gate with the event.
+	 */
+	void notifyInputGatePriorityEvent(InputGate inputGate);
+
 }
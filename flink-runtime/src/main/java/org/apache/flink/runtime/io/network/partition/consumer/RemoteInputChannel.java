@@ -18,11 +18,17 @@
 
 package org.apache.flink.runtime.io.network.partition.consumer;
 
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions.CheckpointType;
 import org.apache.flink.runtime.event.TaskEvent;
 import org.apache.flink.runtime.io.network.ConnectionID;
 import org.apache.flink.runtime.io.network.ConnectionManager;
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
+import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
+import org.apache.flink.runtime.io.network.buffer.BufferRecycler;
 import org.apache.flink.runtime.io.network.netty.PartitionRequestClient;
 import org.apache.flink.runtime.io.network.partition.PartitionNotFoundException;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
@@ -30,8 +36,9 @@ import org.apache.flink.runtime.metrics.groups.TaskIOMetricGroup;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
-import java.util.Queue;
+import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.flink.util.Preconditions.checkNotNull;
 import static org.apache.flink.util.Preconditions.checkState;
@@ -54,7 +61,7 @@ public class RemoteInputChannel extends InputChannel {
 	 * The received buffers. Received buffers are enqueued by the network I/O thread and the queue
 	 * is consumed by the receiving task thread.
 	 */
-	private final Queue<Buffer> receivedBuffers = new ArrayDeque<>();
+	private final ArrayDeque<Buffer> receivedBuffers = new ArrayDeque<>();
 
 	/**
 	 * Flag indicating whether this channel has been released. Either called by the receiving task
@@ -71,6 +78,28 @@ public class RemoteInputChannel extends InputChannel {
 	 */
 	private int expectedSequenceNumber = 0;
 
+	// ---- Credit-based flow control -----------------------------------------
+
+	/** Whether this channel uses credit-based flow control, fixed at construction. */
+	private final boolean isCreditBased;
+
+	/**
+	 * Credit, which has been returned by consumed buffers, but not yet been announced to the
+	 * producer. Incremented by the thread recycling the buffers and reset by the network I/O
+	 * thread when sending the credit.
+	 */
+	private final AtomicInteger unannouncedCredit = new AtomicInteger();
+
+	/** The number of floating credits of the input gate, which are currently held by this channel. */
+	private final AtomicInteger numFloatingCredits = new AtomicInteger();
+
+	/**
+	 * The recycler that received data buffers are re-wrapped with. All buffers of a channel come
+	 * from the buffer pool of the input gate, so the recycler is created once and reused. This is
+	 * modified by the network I/O thread only.
+	 */
+	private CreditReturningBufferRecycler creditReturningRecycler;
+
 	public RemoteInputChannel(
 		SingleInputGate inputGate,
 		int channelIndex,
@@ -92,10 +121,25 @@ public class RemoteInputChannel extends InputChannel {
 		int maxBackoff,
 		TaskIOMetricGroup metrics) {
 
+		this(inputGate, channelIndex, partitionId, connectionId, connectionManager, initialBackOff, maxBackoff, false, metrics);
+	}
+
+	public RemoteInputChannel(
+		SingleInputGate inputGate,
+		int channelIndex,
+		ResultPartitionID partitionId,
+		ConnectionID connectionId,
+		ConnectionManager connectionManager,
+		int initialBackOff,
+		int maxBackoff,
+		boolean isCreditBased,
+		TaskIOMetricGroup metrics) {
+
 		super(inputGate, channelIndex, partitionId, initialBackOff, maxBackoff, metrics.getNumBytesInRemoteCounter());
 
 		this.connectionId = checkNotNull(connectionId);
 		this.connectionManager = checkNotNull(connectionManager);
+		this.isCreditBased = isCreditBased;
 	}
 
 	// ------------------------------------------------------------------------
@@ -145,6 +189,12 @@ public class RemoteInputChannel extends InputChannel {
 			remaining = receivedBuffers.size();
 		}
 
+		if (!next.isBuffer() && isCreditBased) {
+			// Events are not backed by buffers of the input gate and hand
+			// back their credit as soon as they have been consumed.
+			returnCredit();
+		}
+
 		numBytesIn.inc(next.getSize());
 		return new BufferAndAvailability(next, remaining > 0);
 	}
@@ -190,6 +240,8 @@ public class RemoteInputChannel extends InputChannel {
 				}
 			}
 
+			inputGate.returnFloatingCredits(numFloatingCredits.getAndSet(0));
+
 			// The released flag has to be set before closing the connection to ensure that
 			// buffers received concurrently with closing are properly recycled.
 			if (partitionRequestClient != null) {
@@ -231,16 +283,80 @@ public class RemoteInputChannel extends InputChannel {
 		return inputGate.getBufferProvider();
 	}
 
+	/**
+	 * Returns the credit to announce with the partition request or <tt>-1</tt> if this channel
+	 * does not use credit-based flow control.
+	 */
+	public int getInitialCredit() {
+		if (isCreditBased) {
+			return inputGate.getExclusiveCreditsPerChannel() + numFloatingCredits.get();
+		} else {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns the credit, which has not been announced to the producer yet, and resets it.
+	 *
+	 * <p>Called by the network I/O thread before sending the credit to the producer.
+	 */
+	public int getAndResetUnannouncedCredit() {
+		return unannouncedCredit.getAndSet(0);
+	}
+
+	@VisibleForTesting
+	int getNumberOfFloatingCredits() {
+		return numFloatingCredits.get();
+	}
+
 	public void onBuffer(Buffer buffer, int sequenceNumber) {
+		onBuffer(buffer, sequenceNumber, 0);
+	}
+
+	/**
+	 * Handles a buffer received from the producer.
+	 *
+	 * @param buffer The received buffer
+	 * @param sequenceNumber The sequence number of the buffer
+	 * @param backlog The number of buffers queued for this channel at the producer after this one
+	 */
+	public void onBuffer(Buffer buffer, int sequenceNumber, int backlog) {
 		boolean success = false;
 
+		if (isCreditBased) {
+			if (buffer.isBuffer()) {
+				// Data buffers are taken from the buffer pool of the input gate. Re-wrap the memory
+				// segment in order to get notified when the buffer is recycled and its credit can
+				// be returned.
+				Buffer creditBuffer = new Buffer(
+					buffer.getMemorySegment(), getCreditReturningRecycler(buffer.getRecycler()));
+				creditBuffer.setSize(buffer.getSize());
+				buffer = creditBuffer;
+			}
+
+			if (backlog > 0) {
+				requestFloatingCredits(backlog);
+			}
+		}
+
+		boolean priorityEvent = false;
+
 		try {
+			// the barrier of an unaligned checkpoint overtakes the data that is still queued
+			final CheckpointBarrier overtakingBarrier = getOvertakingCheckpointBarrier(buffer);
+
 			synchronized (receivedBuffers) {
 				if (!isReleased.get()) {
 					if (expectedSequenceNumber == sequenceNumber) {
 						int available = receivedBuffers.size();
 
-						receivedBuffers.add(buffer);
+						if (overtakingBarrier != null) {
+							buffer = addOvertakingCheckpointBarrier(buffer, overtakingBarrier);
+							priorityEvent = receivedBuffers.peek() == buffer;
+						}
+						else {
+							receivedBuffers.add(buffer);
+						}
 						expectedSequenceNumber++;
 
 						if (available == 0) {
@@ -253,11 +369,71 @@ public class RemoteInputChannel extends InputChannel {
 					}
 				}
 			}
+		} catch (IOException e) {
+			onError(e);
 		} finally {
 			if (!success) {
 				buffer.recycle();
 			}
 		}
+
+		// notify outside of the lock, like for non-empty notifications
+		if (priorityEvent) {
+			notifyChannelPriorityEvent();
+		}
+	}
+
+	/**
+	 * Returns the checkpoint barrier that the given buffer holds, if the barrier may overtake the
+	 * data that is queued in this channel, or null otherwise. Only the barriers of unaligned
+	 * checkpoints overtake data, savepoints are always aligned.
+	 */
+	private CheckpointBarrier getOvertakingCheckpointBarrier(Buffer buffer) throws IOException {
+		if (buffer.isBuffer() || !inputGate.isCheckpointBarrierOvertakingEnabled()) {
+			return null;
+		}
+
+		final ClassLoader classLoader = getClass().getClassLoader();
+		if (!EventSerializer.isEvent(buffer, CheckpointBarrier.class, classLoader)) {
+			return null;
+		}
+
+		final CheckpointBarrier barrier = (CheckpointBarrier) EventSerializer.fromBuffer(buffer, classLoader);
+		return barrier.getCheckpointOptions().getCheckpointType() == CheckpointType.FULL_CHECKPOINT ? barrier : null;
+	}
+
+	/**
+	 * Puts the checkpoint barrier right after the last queued event, overtaking all data buffers
+	 * that were received after that event. The overtaken buffers are added to the number of
+	 * buffers that the barrier overtook at the producer. Must be called under the lock of the
+	 * received buffers.
+	 *
+	 * @return The buffer that holds the barrier in the queue.
+	 */
+	private Buffer addOvertakingCheckpointBarrier(Buffer buffer, CheckpointBarrier barrier) throws IOException {
+		int numOvertaken = 0;
+		Iterator<Buffer> queued = receivedBuffers.descendingIterator();
+		while (queued.hasNext() && queued.next().isBuffer()) {
+			numOvertaken++;
+		}
+
+		if (numOvertaken == 0) {
+			receivedBuffers.add(buffer);
+			return buffer;
+		}
+
+		final Buffer barrierBuffer = EventSerializer.toBuffer(
+				barrier.withOvertakenBuffers(barrier.getNumOvertakenBuffers() + numOvertaken));
+
+		final ArrayDeque<Buffer> overtaken = new ArrayDeque<>(numOvertaken);
+		for (int i = 0; i < numOvertaken; i++) {
+			overtaken.addFirst(receivedBuffers.pollLast());
+		}
+		buffer.recycle();
+
+		receivedBuffers.add(barrierBuffer);
+		receivedBuffers.addAll(overtaken);
+		return barrierBuffer;
 	}
 
 	public void onEmptyBuffer(int sequenceNumber) {
@@ -270,6 +446,11 @@ public class RemoteInputChannel extends InputChannel {
 				}
 			}
 		}
+
+		if (isCreditBased) {
+			// An empty buffer has used up a credit at the producer without occupying a buffer
+			returnCredit();
+		}
 	}
 
 	public void onFailedPartitionRequest() {
@@ -280,6 +461,93 @@ public class RemoteInputChannel extends InputChannel {
 		setError(cause);
 	}
 
+	// ------------------------------------------------------------------------
+	// Credit-based flow control
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Takes floating credits from the input gate to cover the backlog of the producer and
+	 * announces them. The floating credits already held by this channel count towards the
+	 * backlog.
+	 */
+	private void requestFloatingCredits(int backlog) {
+		int numMissing = backlog - numFloatingCredits.get();
+
+		if (numMissing > 0) {
+			int numGranted = inputGate.requestFloatingCredits(numMissing);
+
+			if (numGranted > 0) {
+				numFloatingCredits.addAndGet(numGranted);
+				announceCredit(numGranted);
+			}
+		}
+	}
+
+	/**
+	 * Returns the credit of a consumed buffer. Floating credit is handed back to the input gate
+	 * in order to make it available to other channels. Otherwise, exclusive credit is announced
+	 * to the producer again.
+	 */
+	private void returnCredit() {
+		while (true) {
+			int floating = numFloatingCredits.get();
+
+			if (floating == 0) {
+				announceCredit(1);
+				return;
+			} else if (numFloatingCredits.compareAndSet(floating, floating - 1)) {
+				inputGate.returnFloatingCredits(1);
+				return;
+			}
+		}
+	}
+
+	private void announceCredit(int credit) {
+		if (isReleased.get()) {
+			return;
+		}
+
+		// Only the first credit after the last announcement triggers the network I/O
+		// thread. Further credit is piggy-backed onto the pending announcement.
+		if (unannouncedCredit.getAndAdd(credit) == 0) {
+			PartitionRequestClient client = partitionRequestClient;
+			if (client != null) {
+				client.notifyCreditAvailable(this);
+			}
+		}
+	}
+
+	private BufferRecycler getCreditReturningRecycler(BufferRecycler delegate) {
+		CreditReturningBufferRecycler recycler = creditReturningRecycler;
+
+		if (recycler == null || recycler.delegate != delegate) {
+			recycler = new CreditReturningBufferRecycler(delegate);
+			creditReturningRecycler = recycler;
+		}
+
+		return recycler;
+	}
+
+	/**
+	 * Recycles a received buffer to the recycler it was received with, i.e. the buffer pool of the
+	 * input gate, and returns its credit.
+	 */
+	private class CreditReturningBufferRecycler implements BufferRecycler {
+
+		private final BufferRecycler delegate;
+
+		CreditReturningBufferRecycler(BufferRecycler delegate) {
+			this.delegate = checkNotNull(delegate);
+		}
+
+		@Override
+		public void recycle(MemorySegment memorySegment) {
+			delegate.recycle(memorySegment);
+
+			returnCredit();
+		}
+	}
+
 	private static class BufferReorderingException extends IOException {
 
 		private static final long serialVersionUID = -888282210356266816L;
@@ -31,6 +31,7 @@ import org.apache.flink.runtime.io.network.NetworkEnvironment;
 import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
 import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferDecompressor;
 import org.apache.flink.runtime.io.network.buffer.BufferPool;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
@@ -51,6 +52,7 @@ import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Timer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.flink.util.Preconditions.checkArgument;
 import static org.apache.flink.util.Preconditions.checkNotNull;
@@ -148,11 +150,30 @@ public class SingleInputGate implements InputGate {
 	 */
 	private BufferPool bufferPool;
 
+	/**
+	 * The number of exclusive credits of each remote input channel, or <tt>-1</tt> if credit-based
+	 * flow control is disabled for this input gate.
+	 */
+	private volatile int exclusiveCreditsPerChannel = -1;
+
+	/**
+	 * The floating credits of this input gate, which are not currently handed to any remote
+	 * input channel. Floating credits are shared by all remote input channels of this gate and
+	 * are requested by channels, which have a backlog at the producer.
+	 */
+	private final AtomicInteger availableFloatingCredits = new AtomicInteger();
+
 	private boolean hasReceivedAllEndOfPartitionEvents;
 
 	/** Flag indicating whether partitions have been requested. */
 	private boolean requestedPartitionsFlag;
 
+	/**
+	 * Flag indicating whether the checkpoint barriers of unaligned checkpoints may overtake the
+	 * data that is queued in the input channels.
+	 */
+	private volatile boolean checkpointBarrierOvertaking;
+
 	/** Flag indicating whether all resources have been released. */
 	private volatile boolean isReleased;
 
@@ -166,6 +187,9 @@ public class SingleInputGate implements InputGate {
 	/** A timer to retrigger local partition requests. Only initialized if actually needed. */
 	private Timer retriggerLocalRequestTimer;
 
+	/** Decompresses the compressed data buffers of the producers, created on demand. */
+	private BufferDecompressor bufferDecompressor;
+
 	public SingleInputGate(
 		String owningTaskName,
 		JobID jobId,
@@ -260,7 +284,7 @@ public class SingleInputGate implements InputGate {
 
 	public void setBufferPool(BufferPool bufferPool) {
 		// Sanity checks
-		checkArgument(numberOfInputChannels == bufferPool.getNumberOfRequiredMemorySegments(),
+		checkArgument(numberOfInputChannels <= bufferPool.getNumberOfRequiredMemorySegments(),
 				"Bug in input gate setup logic: buffer pool has not enough guaranteed buffers " +
 						"for this input gate. Input gates require at least as many buffers as " +
 						"there are input channels.");
@@ -271,6 +295,82 @@ public class SingleInputGate implements InputGate {
 		this.bufferPool = checkNotNull(bufferPool);
 	}
 
+	/**
+	 * Enables credit-based flow control for the remote input channels of this gate.
+	 *
+	 * <p>The buffer pool of this gate has to guarantee at least as many buffers as there is
+	 * exclusive and floating credit, because every announced credit has to be backed by a buffer
+	 * when the respective data arrives.
+	 *
+	 * @param exclusiveCreditsPerChannel Number of buffers exclusively available to each channel
+	 * @param floatingCredits Number of buffers shared by all channels of this gate
+	 */
+	public void enableCreditBasedFlowControl(int exclusiveCreditsPerChannel, int floatingCredits) {
+		checkArgument(exclusiveCreditsPerChannel > 0, "Number of exclusive credits must be positive.");
+		checkArgument(floatingCredits >= 0, "Number of floating credits must be non-negative.");
+
+		checkState(bufferPool != null, "Bug in input gate setup logic: buffer pool has not been set.");
+		checkState(numberOfInputChannels * exclusiveCreditsPerChannel + floatingCredits <=
+				bufferPool.getNumberOfRequiredMemorySegments(),
+			"Bug in input gate setup logic: buffer pool has not enough guaranteed buffers " +
+				"to back all exclusive and floating credits.");
+
+		this.availableFloatingCredits.set(floatingCredits);
+		this.exclusiveCreditsPerChannel = exclusiveCreditsPerChannel;
+	}
+
+	/**
+	 * Returns whether the remote input channels of this gate use credit-based flow control.
+	 */
+	public boolean isCreditBased() {
+		return exclusiveCreditsPerChannel > 0;
+	}
+
+	/**
+	 * Returns the number of exclusive credits of each remote input channel or <tt>-1</tt> if
+	 * credit-based flow control is disabled.
+	 */
+	int getExclusiveCreditsPerChannel() {
+		return exclusiveCreditsPerChannel;
+	}
+
+	/**
+	 * Tries to take up to the given number of floating credits from this gate.
+	 *
+	 * @param numRequested Maximum number of floating credits to take
+	 *
+	 * @return The number of floating credits, which have actually been taken (possibly 0)
+	 */
+	int requestFloatingCredits(int numRequested) {
+		while (numRequested > 0) {
+			int available = availableFloatingCredits.get();
+			if (available == 0) {
+				return 0;
+			}
+
+			int granted = Math.min(available, numRequested);
+			if (availableFloatingCredits.compareAndSet(available, available - granted)) {
+				return granted;
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Returns floating credits, which have been taken via {@link #requestFloatingCredits(int)}.
+	 */
+	void returnFloatingCredits(int numCredits) {
+		if (numCredits > 0) {
+			availableFloatingCredits.addAndGet(numCredits);
+		}
+	}
+
+	@VisibleForTesting
+	int getNumberOfAvailableFloatingCredits() {
+		return availableFloatingCredits.get();
+	}
+
 	public void setInputChannel(IntermediateResultPartitionID partitionId, InputChannel inputChannel) {
 		synchronized (requestLock) {
 			if (inputChannels.put(checkNotNull(partitionId), checkNotNull(inputChannel)) == null
@@ -488,6 +588,10 @@ public class SingleInputGate implements InputGate {
 
 		final Buffer buffer = result.buffer();
 		if (buffer.isBuffer()) {
+			if (buffer.isCompressed()) {
+				decompress(buffer);
+			}
+
 			return new BufferOrEvent(buffer, currentChannel.getChannelIndex(), moreAvailable);
 		}
 		else {
@@ -539,10 +643,59 @@ public class SingleInputGate implements InputGate {
 		queueChannel(checkNotNull(channel));
 	}
 
+	/**
+	 * Moves the given channel to the head of the channels with data, so that the event at the
+	 * head of the channel is consumed next. Channels that are not queued are not added, because
+	 * they are either empty or currently consumed and re-queued by {@link #getNextBufferOrEvent()}.
+	 */
+	void notifyChannelPriorityEvent(InputChannel channel) {
+		checkNotNull(channel);
+
+		synchronized (inputChannelsWithData) {
+			if (!inputChannelsWithData.remove(channel)) {
+				return;
+			}
+
+			inputChannelsWithData.addFirst(channel);
+		}
+
+		InputGateListener listener = inputGateListener;
+		if (listener != null) {
+			listener.notifyInputGatePriorityEvent(this);
+		}
+	}
+
+	@Override
+	public void enableCheckpointBarrierOvertaking() {
+		checkpointBarrierOvertaking = true;
+	}
+
+	/**
+	 * Checks whether the checkpoint barriers of unaligned checkpoints may overtake the data that
+	 * is queued in the input channels of this gate.
+	 */
+	boolean isCheckpointBarrierOvertakingEnabled() {
+		return checkpointBarrierOvertaking;
+	}
+
 	void triggerPartitionStateCheck(ResultPartitionID partitionId) {
 		taskActions.triggerPartitionProducerStateCheck(jobId, consumedResultId, partitionId);
 	}
 
+	private void decompress(Buffer buffer) throws IOException {
+		if (bufferDecompressor == null) {
+			bufferDecompressor = new BufferDecompressor();
+		}
+
+		try {
+			bufferDecompressor.decompress(buffer);
+		}
+		catch (IOException e) {
+			buffer.recycle();
+			throw e;
+		}
+	}
+
 	private void queueChannel(InputChannel channel) {
 		int availableChannels;
 
@@ -625,6 +778,7 @@ public class SingleInputGate implements InputGate {
 					networkEnvironment.getConnectionManager(),
 					networkEnvironment.getPartitionRequestInitialBackoff(),
 					networkEnvironment.getPartitionRequestMaxBackoff(),
+					networkEnvironment.isCreditBased(),
 					metrics
 				);
 
@@ -211,11 +211,37 @@ public class UnionInputGate implements InputGate, InputGateListener {
 		return pageSize;
 	}
 
+	@Override
+	public void enableCheckpointBarrierOvertaking() {
+		for (InputGate inputGate : inputGates) {
+			inputGate.enableCheckpointBarrierOvertaking();
+		}
+	}
+
 	@Override
 	public void notifyInputGateNonEmpty(InputGate inputGate) {
 		queueInputGate(checkNotNull(inputGate));
 	}
 
+	@Override
+	public void notifyInputGatePriorityEvent(InputGate inputGate) {
+		checkNotNull(inputGate);
+
+		// only queued gates are moved, the others are empty or re-queued after their current buffer
+		synchronized (inputGatesWithData) {
+			if (!inputGatesWithData.remove(inputGate)) {
+				return;
+			}
+
+			inputGatesWithData.addFirst(inputGate);
+		}
+
+		InputGateListener listener = inputGateListener;
+		if (listener != null) {
+			listener.notifyInputGatePriorityEvent(this);
+		}
+	}
+
 	private void queueInputGate(InputGate inputGate) {
 		int availableInputGates;
 
@@ -103,13 +103,28 @@ public class Scheduler implements InstanceListener, SlotAvailabilityListener, Sl
 	/** The Executor which is used to execute newSlotAvailable futures. */
 	private final Executor executor;
 
+	/** True if tasks that restore state prefer their previous location, to recover from a local copy of their state */
+	private final boolean localRecovery;
+
 	// ------------------------------------------------------------------------
 
 	/**
 	 * Creates a new scheduler.
 	 */
 	public Scheduler(Executor executor) {
+		this(executor, false);
+	}
+
+	/**
+	 * Creates a new scheduler.
+	 *
+	 * @param executor The executor which is used to execute newSlotAvailable futures.
+	 * @param localRecovery True if tasks that restore state should be scheduled to their previous
+	 *                      location, where they may find a local copy of their state.
+	 */
+	public Scheduler(Executor executor, boolean localRecovery) {
 		this.executor = Preconditions.checkNotNull(executor);
+		this.localRecovery = localRecovery;
 	}
 	
 	/**
@@ -169,7 +184,8 @@ public class Scheduler implements InstanceListener, SlotAvailabilityListener, Sl
 
 		final ExecutionVertex vertex = task.getTaskToExecute().getVertex();
 		
-		final Iterable<TaskManagerLocation> preferredLocations = vertex.getPreferredLocationsBasedOnInputs();
+		final Iterable<TaskManagerLocation> preferredLocations = localRecovery ?
+				vertex.getPreferredLocations() : vertex.getPreferredLocationsBasedOnInputs();
 		final boolean forceExternalLocation = false &&
 									preferredLocations != null && preferredLocations.iterator().hasNext();
 	
@@ -198,10 +214,10 @@ public class Scheduler implements InstanceListener, SlotAvailabilityListener, Sl
 				// get a slot from the group, if the group has one for us (and can fulfill the constraint)
 				final SimpleSlot slotFromGroup;
 				if (constraint == null) {
-					slotFromGroup = assignment.getSlotForTask(vertex);
+					slotFromGroup = assignment.getSlotForTask(vertex.getJobvertexId(), preferredLocations);
 				}
 				else {
-					slotFromGroup = assignment.getSlotForTask(vertex, constraint);
+					slotFromGroup = assignment.getSlotForTask(constraint, preferredLocations);
 				}
 
 				SimpleSlot newSlot = null;
@@ -235,7 +251,7 @@ public class Scheduler implements InstanceListener, SlotAvailabilityListener, Sl
 						localOnly = true;
 					}
 					else {
-						locations = vertex.getPreferredLocationsBasedOnInputs();
+						locations = preferredLocations;
 						localOnly = forceExternalLocation;
 					}
 					
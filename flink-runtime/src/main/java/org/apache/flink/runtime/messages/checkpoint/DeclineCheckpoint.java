@@ -24,6 +24,7 @@ import org.apache.flink.runtime.checkpoint.decline.CheckpointDeclineOnCancellati
 import org.apache.flink.runtime.checkpoint.decline.CheckpointDeclineSubsumedException;
 import org.apache.flink.runtime.checkpoint.decline.CheckpointDeclineTaskNotCheckpointingException;
 import org.apache.flink.runtime.checkpoint.decline.CheckpointDeclineTaskNotReadyException;
+import org.apache.flink.runtime.checkpoint.decline.InFlightRecordLimitExceededException;
 import org.apache.flink.runtime.checkpoint.decline.InputEndOfStreamException;
 import org.apache.flink.runtime.executiongraph.ExecutionAttemptID;
 import org.apache.flink.runtime.util.SerializedThrowable;
@@ -54,6 +55,7 @@ public class DeclineCheckpoint extends AbstractCheckpointMessage implements java
 			reason.getClass() == CheckpointDeclineSubsumedException.class ||
 			reason.getClass() == CheckpointDeclineTaskNotCheckpointingException.class ||
 			reason.getClass() == CheckpointDeclineTaskNotReadyException.class ||
+			reason.getClass() == InFlightRecordLimitExceededException.class ||
 			reason.getClass() == InputEndOfStreamException.class)
 		{
 			// null or known common exceptions that cannot reference any dynamically loaded code
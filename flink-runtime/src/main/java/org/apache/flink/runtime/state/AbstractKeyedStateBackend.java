@@ -63,6 +63,13 @@ import static org.apache.flink.util.Preconditions.checkNotNull;
 public abstract class AbstractKeyedStateBackend<K>
 		implements KeyedStateBackend<K>, Snapshotable<KeyGroupsStateHandle>, Closeable {
 
+	/**
+	 * Number of incremental snapshots that may be taken on top of the last completed checkpoint before
+	 * a backend falls back to a snapshot that does not build on it, because the notification that
+	 * would advance the base was lost.
+	 */
+	protected static final int MAX_UNCONFIRMED_SNAPSHOTS = 2;
+
 	/** {@link TypeSerializer} for our key. */
 	protected final TypeSerializer<K> keySerializer;
 
@@ -20,8 +20,10 @@ package org.apache.flink.runtime.state;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.state.BroadcastState;
 import org.apache.flink.api.common.state.ListState;
 import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.MapStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.common.ExecutionConfig;
 import org.apache.flink.core.fs.CloseableRegistry;
@@ -32,7 +34,11 @@ import org.apache.flink.core.memory.DataInputViewStreamWrapper;
 import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
 import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.io.async.AbstractAsyncIOCallable;
+import org.apache.flink.runtime.io.async.AsyncStoppableTaskWithCallback;
 import org.apache.flink.util.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.Serializable;
@@ -43,6 +49,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Default implementation of OperatorStateStore that provides the ability to make snapshots.
@@ -50,21 +57,40 @@ import java.util.concurrent.RunnableFuture;
 @Internal
 public class DefaultOperatorStateBackend implements OperatorStateBackend {
 
+	private static final Logger LOG = LoggerFactory.getLogger(DefaultOperatorStateBackend.class);
+
 	/** The default namespace for state in cases where no state name is provided */
 	public static final String DEFAULT_OPERATOR_STATE_NAME = "_default_";
 	
 	private final Map<String, PartitionableListState<?>> registeredStates;
+	private final Map<String, HeapBroadcastState<?, ?>> registeredBroadcastStates;
 	private final CloseableRegistry closeStreamOnCancelRegistry;
 	private final JavaSerializer<Serializable> javaSerializer;
 	private final ClassLoader userClassloader;
 	private final ExecutionConfig executionConfig;
 
+	/**
+	 * Determines whether or not we run snapshots asynchronously. Asynchronous snapshots copy the states in the
+	 * synchronous part and write the copies in the asynchronous part.
+	 */
+	private final boolean asynchronousSnapshots;
+
 	public DefaultOperatorStateBackend(ClassLoader userClassLoader, ExecutionConfig executionConfig) throws IOException {
+		this(userClassLoader, executionConfig, false);
+	}
+
+	public DefaultOperatorStateBackend(
+			ClassLoader userClassLoader,
+			ExecutionConfig executionConfig,
+			boolean asynchronousSnapshots) throws IOException {
+
 		this.closeStreamOnCancelRegistry = new CloseableRegistry();
 		this.userClassloader = Preconditions.checkNotNull(userClassLoader);
 		this.executionConfig = executionConfig;
 		this.javaSerializer = new JavaSerializer<>();
 		this.registeredStates = new HashMap<>();
+		this.registeredBroadcastStates = new HashMap<>();
+		this.asynchronousSnapshots = asynchronousSnapshots;
 	}
 
 	public ExecutionConfig getExecutionConfig() {
@@ -84,6 +110,7 @@ public class DefaultOperatorStateBackend implements OperatorStateBackend {
 	@Override
 	public void dispose() {
 		registeredStates.clear();
+		registeredBroadcastStates.clear();
 	}
 
 	@SuppressWarnings("unchecked")
@@ -106,6 +133,42 @@ public class DefaultOperatorStateBackend implements OperatorStateBackend {
 		return getOperatorState(stateDescriptor, OperatorStateHandle.Mode.BROADCAST);
 	}
 
+	@SuppressWarnings("unchecked")
+	@Override
+	public <K, V> BroadcastState<K, V> getBroadcastState(MapStateDescriptor<K, V> stateDescriptor) throws Exception {
+
+		Preconditions.checkNotNull(stateDescriptor);
+
+		stateDescriptor.initializeSerializerUnlessSet(getExecutionConfig());
+
+		String name = Preconditions.checkNotNull(stateDescriptor.getName());
+
+		HeapBroadcastState<K, V> broadcastState = (HeapBroadcastState<K, V>) registeredBroadcastStates.get(name);
+
+		if (null == broadcastState) {
+
+			// the broadcast state is kept as a list state with a single map element, so that it
+			// is snapshotted and restored together with all other operator states
+			PartitionableListState<Map<K, V>> listState = (PartitionableListState<Map<K, V>>) getOperatorState(
+					new ListStateDescriptor<>(name, stateDescriptor.getSerializer()),
+					OperatorStateHandle.Mode.UNIFORM_BROADCAST);
+
+			List<Map<K, V>> internalList = listState.getInternalList();
+
+			Preconditions.checkState(internalList.size() <= 1,
+					"Found more than one copy of broadcast state " + name + '.');
+
+			if (internalList.isEmpty()) {
+				internalList.add(new HashMap<K, V>());
+			}
+
+			broadcastState = new HeapBroadcastState<>(internalList.get(0));
+			registeredBroadcastStates.put(name, broadcastState);
+		}
+
+		return broadcastState;
+	}
+
 	private <S> ListState<S> getOperatorState(
 			ListStateDescriptor<S> stateDescriptor,
 			OperatorStateHandle.Mode mode) throws IOException {
@@ -163,18 +226,23 @@ public class DefaultOperatorStateBackend implements OperatorStateBackend {
 
 	@Override
 	public RunnableFuture<OperatorStateHandle> snapshot(
-			long checkpointId,
-			long timestamp,
-			CheckpointStreamFactory streamFactory,
+			final long checkpointId,
+			final long timestamp,
+			final CheckpointStreamFactory streamFactory,
 			CheckpointOptions checkpointOptions) throws Exception {
 
 		if (registeredStates.isEmpty()) {
 			return DoneFuture.nullValue();
 		}
 
-		List<OperatorBackendSerializationProxy.StateMetaInfo<?>> metaInfoList =
+		long syncStartTime = System.currentTimeMillis();
+
+		final List<OperatorBackendSerializationProxy.StateMetaInfo<?>> metaInfoList =
 				new ArrayList<>(registeredStates.size());
 
+		// asynchronous snapshots write copies of the states, which the task can not modify concurrently
+		final Map<String, PartitionableListState<?>> statesToWrite = new HashMap<>(registeredStates.size());
+
 		for (Map.Entry<String, PartitionableListState<?>> entry : registeredStates.entrySet()) {
 			PartitionableListState<?> state = entry.getValue();
 			OperatorBackendSerializationProxy.StateMetaInfo<?> metaInfo =
@@ -183,39 +251,98 @@ public class DefaultOperatorStateBackend implements OperatorStateBackend {
 							state.getPartitionStateSerializer(),
 							state.getAssignmentMode());
 			metaInfoList.add(metaInfo);
+			statesToWrite.put(entry.getKey(), asynchronousSnapshots ? state.deepCopy() : state);
 		}
 
-		Map<String, OperatorStateHandle.StateMetaInfo> writtenStatesMetaData = new HashMap<>(registeredStates.size());
+		//--------------------------------------------------- this becomes the end of sync part
+
+		// implementation of the async IO operation, based on FutureTask
+		final AbstractAsyncIOCallable<OperatorStateHandle, CheckpointStreamFactory.CheckpointStateOutputStream> ioCallable =
+				new AbstractAsyncIOCallable<OperatorStateHandle, CheckpointStreamFactory.CheckpointStateOutputStream>() {
+
+					AtomicBoolean open = new AtomicBoolean(false);
+
+					@Override
+					public CheckpointStreamFactory.CheckpointStateOutputStream openIOHandle() throws Exception {
+						if (open.compareAndSet(false, true)) {
+							CheckpointStreamFactory.CheckpointStateOutputStream stream =
+									streamFactory.createCheckpointStateOutputStream(checkpointId, timestamp);
+							try {
+								closeStreamOnCancelRegistry.registerClosable(stream);
+								return stream;
+							} catch (Exception ex) {
+								open.set(false);
+								throw ex;
+							}
+						} else {
+							throw new IOException("Operation already opened.");
+						}
+					}
+
+					@Override
+					public OperatorStateHandle performOperation() throws Exception {
+						long asyncStartTime = System.currentTimeMillis();
 
-		CheckpointStreamFactory.CheckpointStateOutputStream out = streamFactory.
-				createCheckpointStateOutputStream(checkpointId, timestamp);
+						CheckpointStreamFactory.CheckpointStateOutputStream out = getIoHandle();
+						DataOutputView dov = new DataOutputViewStreamWrapper(out);
 
-		try {
-			closeStreamOnCancelRegistry.registerClosable(out);
+						OperatorBackendSerializationProxy backendSerializationProxy =
+								new OperatorBackendSerializationProxy(metaInfoList);
 
-			DataOutputView dov = new DataOutputViewStreamWrapper(out);
+						backendSerializationProxy.write(dov);
 
-			OperatorBackendSerializationProxy backendSerializationProxy =
-					new OperatorBackendSerializationProxy(metaInfoList);
+						Map<String, OperatorStateHandle.StateMetaInfo> writtenStatesMetaData =
+								new HashMap<>(statesToWrite.size());
 
-			backendSerializationProxy.write(dov);
+						dov.writeInt(statesToWrite.size());
+						for (Map.Entry<String, PartitionableListState<?>> entry : statesToWrite.entrySet()) {
 
-			dov.writeInt(registeredStates.size());
-			for (Map.Entry<String, PartitionableListState<?>> entry : registeredStates.entrySet()) {
+							PartitionableListState<?> value = entry.getValue();
+							long[] partitionOffsets = value.write(out);
+							OperatorStateHandle.Mode mode = value.getAssignmentMode();
+							writtenStatesMetaData.put(
+									entry.getKey(), new OperatorStateHandle.StateMetaInfo(partitionOffsets, mode));
+						}
 
-				PartitionableListState<?> value = entry.getValue();
-				long[] partitionOffsets = value.write(out);
-				OperatorStateHandle.Mode mode = value.getAssignmentMode();
-				writtenStatesMetaData.put(entry.getKey(), new OperatorStateHandle.StateMetaInfo(partitionOffsets, mode));
-			}
+						if (open.compareAndSet(true, false)) {
+							OperatorStateHandle handle =
+									new OperatorStateHandle(writtenStatesMetaData, out.closeAndGetHandle());
+
+							if (asynchronousSnapshots) {
+								LOG.info("DefaultOperatorStateBackend snapshot ({}, asynchronous part) in thread {} took {} ms.",
+										streamFactory, Thread.currentThread(), (System.currentTimeMillis() - asyncStartTime));
+							}
+
+							return handle;
+						} else {
+							throw new IOException("Checkpoint stream already closed.");
+						}
+					}
+
+					@Override
+					public void done(boolean canceled) {
+						if (open.compareAndSet(true, false)) {
+							CheckpointStreamFactory.CheckpointStateOutputStream stream = getIoHandle();
+							if (null != stream) {
+								closeStreamOnCancelRegistry.unregisterClosable(stream);
+								IOUtils.closeQuietly(stream);
+							}
+						}
+					}
+				};
+
+		AsyncStoppableTaskWithCallback<OperatorStateHandle> task = AsyncStoppableTaskWithCallback.from(ioCallable);
 
-			OperatorStateHandle handle = new OperatorStateHandle(writtenStatesMetaData, out.closeAndGetHandle());
+		if (!asynchronousSnapshots) {
+			task.run();
+		}
 
-			return new DoneFuture<>(handle);
-		} finally {
-			closeStreamOnCancelRegistry.unregisterClosable(out);
-			out.close();
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("DefaultOperatorStateBackend snapshot (" + streamFactory + ", synchronous part) in thread " +
+					Thread.currentThread() + " took " + (System.currentTimeMillis() - syncStartTime) + " ms.");
 		}
+
+		return task;
 	}
 
 	@Override
@@ -297,10 +424,37 @@ public class DefaultOperatorStateBackend implements OperatorStateBackend {
 				TypeSerializer<S> partitionStateSerializer,
 				OperatorStateHandle.Mode assignmentMode) {
 
+			this(name, partitionStateSerializer, assignmentMode, new ArrayList<S>());
+		}
+
+		private PartitionableListState(
+				String name,
+				TypeSerializer<S> partitionStateSerializer,
+				OperatorStateHandle.Mode assignmentMode,
+				List<S> internalList) {
+
 			this.name = Preconditions.checkNotNull(name);
 			this.partitionStateSerializer = Preconditions.checkNotNull(partitionStateSerializer);
 			this.assignmentMode = Preconditions.checkNotNull(assignmentMode);
-			this.internalList = new ArrayList<>();
+			this.internalList = Preconditions.checkNotNull(internalList);
+		}
+
+		/**
+		 * Creates a deep copy of this state, which can be written concurrently to modifications of this state. The
+		 * copy has its own duplicate of the serializer, because serializers are not thread-safe.
+		 */
+		public PartitionableListState<S> deepCopy() {
+			List<S> copiedList = new ArrayList<>(internalList.size());
+
+			if (partitionStateSerializer.isImmutableType()) {
+				copiedList.addAll(internalList);
+			} else {
+				for (S element : internalList) {
+					copiedList.add(partitionStateSerializer.copy(element));
+				}
+			}
+
+			return new PartitionableListState<>(name, partitionStateSerializer.duplicate(), assignmentMode, copiedList);
 		}
 
 		public String getName() {
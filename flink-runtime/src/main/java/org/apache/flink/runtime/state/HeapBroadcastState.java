@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.api.common.state.BroadcastState;
+import org.apache.flink.util.Preconditions;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A {@link BroadcastState} that is backed by a map on the Java heap. The map is the single
+ * element of a {@link DefaultOperatorStateBackend.PartitionableListState} with assignment mode
+ * {@link OperatorStateHandle.Mode#UNIFORM_BROADCAST}, so that changes to this state are part of
+ * the snapshots of that list state.
+ *
+ * @param <K> The type of the keys in the state.
+ * @param <V> The type of the values in the state.
+ */
+class HeapBroadcastState<K, V> implements BroadcastState<K, V> {
+
+	/** The map that holds the contents of the state. */
+	private final Map<K, V> backingMap;
+
+	HeapBroadcastState(Map<K, V> backingMap) {
+		this.backingMap = Preconditions.checkNotNull(backingMap);
+	}
+
+	@Override
+	public V get(K key) {
+		return backingMap.get(key);
+	}
+
+	@Override
+	public boolean contains(K key) {
+		return backingMap.containsKey(key);
+	}
+
+	@Override
+	public Iterable<Map.Entry<K, V>> immutableEntries() {
+		return Collections.unmodifiableSet(backingMap.entrySet());
+	}
+
+	@Override
+	public void put(K key, V value) {
+		backingMap.put(key, value);
+	}
+
+	@Override
+	public void putAll(Map<K, V> map) {
+		backingMap.putAll(map);
+	}
+
+	@Override
+	public void remove(K key) {
+		backingMap.remove(key);
+	}
+
+	@Override
+	public Iterator<Map.Entry<K, V>> iterator() {
+		return backingMap.entrySet().iterator();
+	}
+
+	@Override
+	public Iterable<Map.Entry<K, V>> entries() {
+		return backingMap.entrySet();
+	}
+
+	@Override
+	public void clear() {
+		backingMap.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "HeapBroadcastState{" +
+				"backingMap=" + backingMap +
+				'}';
+	}
+}
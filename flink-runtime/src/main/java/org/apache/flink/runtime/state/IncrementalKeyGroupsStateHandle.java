@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.util.ExceptionUtils;
+import org.apache.flink.util.Preconditions;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A handle to an incremental snapshot of a keyed state backend, e.g. a RocksDB checkpoint. The
+ * snapshot consists of a meta data stream (the delegate of this handle), private files that only
+ * belong to this snapshot, and shared files that may also be referenced by other snapshots of the
+ * same backend.
+ *
+ * <p>Shared files are either new, i.e. uploaded for this snapshot, or referenced, i.e. uploaded by
+ * an earlier snapshot and reused by this one. Once the checkpoint of this handle has completed, all
+ * shared files are reference-counted through the {@link SharedStateRegistry} of the checkpoint
+ * coordinator, and the handle must be discarded with {@link #discardState(SharedStateRegistry)}.
+ * The handle does not remember the registry, because the completed checkpoint stores may discard
+ * deserialized copies of it. Discarding a handle that never became part of a completed checkpoint
+ * with {@link #discardState()} only discards the new shared files, because the referenced ones
+ * still belong to earlier checkpoints.
+ *
+ * <p>An incremental snapshot always covers the complete key-group range of the backend that
+ * created it and can therefore not be redistributed to a different parallelism.
+ */
+public class IncrementalKeyGroupsStateHandle extends KeyGroupsStateHandle {
+
+	private static final long serialVersionUID = -5327004765264785386L;
+
+	/** Identifies the lineage of backends whose shared files may be referenced by this handle */
+	private final String backendIdentifier;
+
+	/** The id of the checkpoint that created this handle */
+	private final long checkpointId;
+
+	/** Shared files that were uploaded for this snapshot, by file name */
+	private final Map<String, StreamStateHandle> newSharedState;
+
+	/** Shared files that were uploaded by earlier snapshots of the same backend, by file name */
+	private final Map<String, StreamStateHandle> referencedSharedState;
+
+	/** Files that only belong to this snapshot, by file name */
+	private final Map<String, StreamStateHandle> privateState;
+
+	public IncrementalKeyGroupsStateHandle(
+			KeyGroupRange keyGroupRange,
+			String backendIdentifier,
+			long checkpointId,
+			StreamStateHandle metaStateHandle,
+			Map<String, StreamStateHandle> newSharedState,
+			Map<String, StreamStateHandle> referencedSharedState,
+			Map<String, StreamStateHandle> privateState) {
+
+		super(new KeyGroupRangeOffsets(keyGroupRange), metaStateHandle);
+
+		this.backendIdentifier = Preconditions.checkNotNull(backendIdentifier);
+		this.checkpointId = checkpointId;
+		this.newSharedState = new HashMap<>(Preconditions.checkNotNull(newSharedState));
+		this.referencedSharedState = new HashMap<>(Preconditions.checkNotNull(referencedSharedState));
+		this.privateState = new HashMap<>(Preconditions.checkNotNull(privateState));
+	}
+
+	public String getBackendIdentifier() {
+		return backendIdentifier;
+	}
+
+	public long getCheckpointId() {
+		return checkpointId;
+	}
+
+	/**
+	 * @return handle to the meta data stream of the snapshot
+	 */
+	public StreamStateHandle getMetaStateHandle() {
+		return getDelegateStateHandle();
+	}
+
+	public Map<String, StreamStateHandle> getNewSharedState() {
+		return newSharedState;
+	}
+
+	public Map<String, StreamStateHandle> getReferencedSharedState() {
+		return referencedSharedState;
+	}
+
+	public Map<String, StreamStateHandle> getPrivateState() {
+		return privateState;
+	}
+
+	/**
+	 * @return all shared files of this snapshot, new and referenced, by file name
+	 */
+	public Map<String, StreamStateHandle> getSharedState() {
+		Map<String, StreamStateHandle> sharedState =
+				new HashMap<>(newSharedState.size() + referencedSharedState.size());
+		sharedState.putAll(referencedSharedState);
+		sharedState.putAll(newSharedState);
+		return sharedState;
+	}
+
+	/**
+	 * Returns the key under which the given shared file is registered in a {@link SharedStateRegistry}.
+	 *
+	 * @param fileName the name of a shared file
+	 * @return the registry key of the shared file
+	 */
+	public String getSharedStateRegistryKey(String fileName) {
+		return backendIdentifier + '-' + fileName;
+	}
+
+	/**
+	 * Checks that all shared files that this snapshot reuses from earlier snapshots are still
+	 * registered, i.e. that they have not been discarded together with the checkpoints that
+	 * created them.
+	 *
+	 * @param registry the registry to check against
+	 * @throws IllegalStateException if a referenced shared file is not registered
+	 */
+	public void checkReferencedSharedState(SharedStateRegistry registry) {
+		for (String fileName : referencedSharedState.keySet()) {
+			String key = getSharedStateRegistryKey(fileName);
+			if (!registry.isRegistered(key)) {
+				throw new IllegalStateException("Snapshot of checkpoint " + checkpointId +
+						" references the shared state " + key + " which is no longer available.");
+			}
+		}
+	}
+
+	/**
+	 * Registers all shared files of this snapshot at the given registry. From then on, the handle
+	 * must be discarded with {@link #discardState(SharedStateRegistry)}, which releases the
+	 * references to the shared files instead of discarding them.
+	 *
+	 * @param registry the registry to register the shared files at
+	 */
+	public void registerSharedStates(SharedStateRegistry registry) {
+		Preconditions.checkNotNull(registry);
+
+		registerSharedStates(registry, referencedSharedState);
+		registerSharedStates(registry, newSharedState);
+	}
+
+	private void registerSharedStates(SharedStateRegistry registry, Map<String, StreamStateHandle> sharedState) {
+		for (Map.Entry<String, StreamStateHandle> entry : sharedState.entrySet()) {
+			StreamStateHandle registered =
+					registry.registerReference(getSharedStateRegistryKey(entry.getKey()), entry.getValue());
+
+			// use the registered copy in case the file was uploaded more than once
+			entry.setValue(registered);
+		}
+	}
+
+	@Override
+	public KeyGroupsStateHandle getKeyGroupIntersection(KeyGroupRange keyGroupRange) {
+		KeyGroupRange ownRange = getGroupRangeOffsets().getKeyGroupRange();
+		KeyGroupRange intersection = ownRange.getIntersection(keyGroupRange);
+
+		if (intersection.equals(ownRange)) {
+			return this;
+		} else if (intersection.getNumberOfKeyGroups() == 0) {
+			return new KeyGroupsStateHandle(getGroupRangeOffsets().getIntersection(keyGroupRange), getMetaStateHandle());
+		} else {
+			throw new UnsupportedOperationException("The incremental snapshot of checkpoint " + checkpointId +
+					" for key-groups " + ownRange + " cannot be split to restore key-groups " + keyGroupRange +
+					". Incremental snapshots can only be restored with the parallelism that created them. " +
+					"Take a savepoint to rescale the job.");
+		}
+	}
+
+	/**
+	 * Discards a snapshot that never became part of a completed checkpoint, i.e. whose shared
+	 * files were never registered. Besides the meta data and the private files, this discards the
+	 * new shared files, because no other snapshot can reference them.
+	 */
+	@Override
+	public void discardState() throws Exception {
+		Exception exception = discardPrivateState();
+
+		try {
+			StateUtil.bestEffortDiscardAllStateObjects(newSharedState.values());
+		} catch (Exception e) {
+			exception = ExceptionUtils.firstOrSuppressed(e, exception);
+		}
+
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	/**
+	 * Discards a snapshot of a completed checkpoint, whose shared files were registered at the
+	 * given registry. Besides the meta data and the private files, this releases the references to
+	 * all shared files, which are discarded by the registry once no other snapshot references them.
+	 *
+	 * @param registry the registry at which the shared files of this snapshot were registered
+	 */
+	public void discardState(SharedStateRegistry registry) throws Exception {
+		Preconditions.checkNotNull(registry);
+
+		Exception exception = discardPrivateState();
+
+		for (String fileName : newSharedState.keySet()) {
+			registry.unregisterReference(getSharedStateRegistryKey(fileName));
+		}
+
+		for (String fileName : referencedSharedState.keySet()) {
+			registry.unregisterReference(getSharedStateRegistryKey(fileName));
+		}
+
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	private Exception discardPrivateState() {
+		Exception exception = null;
+
+		try {
+			getMetaStateHandle().discardState();
+		} catch (Exception e) {
+			exception = e;
+		}
+
+		try {
+			StateUtil.bestEffortDiscardAllStateObjects(privateState.values());
+		} catch (Exception e) {
+			exception = ExceptionUtils.firstOrSuppressed(e, exception);
+		}
+
+		return exception;
+	}
+
+	/**
+	 * Returns the size of the complete snapshot, including the shared files that it reuses
+	 * from earlier snapshots.
+	 */
+	@Override
+	public long getStateSize() {
+		long size = getMetaStateHandle().getStateSize();
+
+		for (StreamStateHandle stateHandle : privateState.values()) {
+			size += stateHandle.getStateSize();
+		}
+
+		for (StreamStateHandle stateHandle : newSharedState.values()) {
+			size += stateHandle.getStateSize();
+		}
+
+		for (StreamStateHandle stateHandle : referencedSharedState.values()) {
+			size += stateHandle.getStateSize();
+		}
+
+		return size;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+
+		if (!(o instanceof IncrementalKeyGroupsStateHandle)) {
+			return false;
+		}
+
+		IncrementalKeyGroupsStateHandle that = (IncrementalKeyGroupsStateHandle) o;
+
+		return super.equals(o) &&
+				checkpointId == that.checkpointId &&
+				backendIdentifier.equals(that.backendIdentifier) &&
+				newSharedState.equals(that.newSharedState) &&
+				referencedSharedState.equals(that.referencedSharedState) &&
+				privateState.equals(that.privateState);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = super.hashCode();
+		result = 31 * result + backendIdentifier.hashCode();
+		result = 31 * result + (int) (checkpointId ^ (checkpointId >>> 32));
+		result = 31 * result + newSharedState.hashCode();
+		result = 31 * result + referencedSharedState.hashCode();
+		result = 31 * result + privateState.hashCode();
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "IncrementalKeyGroupsStateHandle{" +
+				"keyGroupRange=" + getGroupRangeOffsets().getKeyGroupRange() +
+				", backendIdentifier='" + backendIdentifier + '\'' +
+				", checkpointId=" + checkpointId +
+				", metaStateHandle=" + getMetaStateHandle() +
+				", newSharedState=" + newSharedState.keySet() +
+				", referencedSharedState=" + referencedSharedState.keySet() +
+				", privateState=" + privateState.keySet() +
+				'}';
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.core.fs.FSDataInputStream;
+import org.apache.flink.runtime.state.filesystem.FileStateHandle;
+import org.apache.flink.util.Preconditions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * A {@link StreamStateHandle} that reads the state from a copy on the local disk of the TaskManager,
+ * and falls back to the primary copy (e.g. in a distributed file system) if the local copy cannot
+ * be opened.
+ *
+ * <p>Discarding this handle only discards the local copy, because the primary copy belongs to the
+ * checkpoint from which the state is restored.
+ */
+public class LocalCopyStreamStateHandle implements StreamStateHandle {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger LOG = LoggerFactory.getLogger(LocalCopyStreamStateHandle.class);
+
+	/** Handle to the copy of the state on the local disk */
+	private final FileStateHandle localHandle;
+
+	/** Handle to the primary copy of the state */
+	private final StreamStateHandle primaryHandle;
+
+	public LocalCopyStreamStateHandle(FileStateHandle localHandle, StreamStateHandle primaryHandle) {
+		this.localHandle = Preconditions.checkNotNull(localHandle);
+		this.primaryHandle = Preconditions.checkNotNull(primaryHandle);
+	}
+
+	public FileStateHandle getLocalHandle() {
+		return localHandle;
+	}
+
+	public StreamStateHandle getPrimaryHandle() {
+		return primaryHandle;
+	}
+
+	@Override
+	public FSDataInputStream openInputStream() throws IOException {
+		try {
+			return localHandle.openInputStream();
+		} catch (IOException e) {
+			LOG.warn("Could not open the local copy {} of state {}. Falling back to the primary copy.",
+					localHandle.getFilePath(), primaryHandle, e);
+
+			return primaryHandle.openInputStream();
+		}
+	}
+
+	@Override
+	public void discardState() throws Exception {
+		localHandle.discardState();
+	}
+
+	@Override
+	public long getStateSize() {
+		return primaryHandle.getStateSize();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+
+		if (!(o instanceof LocalCopyStreamStateHandle)) {
+			return false;
+		}
+
+		LocalCopyStreamStateHandle that = (LocalCopyStreamStateHandle) o;
+
+		return localHandle.equals(that.localHandle) && primaryHandle.equals(that.primaryHandle);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * localHandle.hashCode() + primaryHandle.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "LocalCopyStreamStateHandle{" +
+				"localHandle=" + localHandle +
+				", primaryHandle=" + primaryHandle +
+				'}';
+	}
+}
@@ -20,12 +20,19 @@ package org.apache.flink.runtime.state;
 
 import org.apache.flink.core.fs.AbstractMultiFSDataInputStream;
 import org.apache.flink.core.fs.FSDataInputStream;
+import org.apache.flink.runtime.state.memory.ByteStreamStateHandle;
+import org.apache.flink.util.IOUtils;
 import org.apache.flink.util.Preconditions;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Wrapper class that takes multiple {@link StreamStateHandle} and makes them look like a single one. This is done by
@@ -52,6 +59,24 @@ public class MultiStreamStateHandle implements StreamStateHandle {
 		return new MultiFSDataInputStream(stateHandles);
 	}
 
+	/**
+	 * Opens a stream over all inner handles that reads the inner handles which follow the currently read one
+	 * ahead, in the given executor. This overlaps the transfer of the inner handles when the stream is read
+	 * sequentially. The read-ahead handles are buffered in memory.
+	 *
+	 * @param executor The executor that reads the inner handles ahead.
+	 * @param numReadAheadHandles The maximum number of inner handles that are read ahead.
+	 */
+	public FSDataInputStream openInputStream(ExecutorService executor, int numReadAheadHandles) throws IOException {
+		Preconditions.checkNotNull(executor);
+		Preconditions.checkArgument(numReadAheadHandles >= 0);
+		return new ReadAheadMultiFSDataInputStream(stateHandles, executor, numReadAheadHandles);
+	}
+
+	public List<StreamStateHandle> getStateHandles() {
+		return Collections.unmodifiableList(stateHandles);
+	}
+
 	@Override
 	public void discardState() throws Exception {
 		StateUtil.bestEffortDiscardAllStateObjects(stateHandles);
@@ -62,6 +87,14 @@ public class MultiStreamStateHandle implements StreamStateHandle {
 		return stateSize;
 	}
 
+	@Override
+	public String toString() {
+		return "MultiStreamStateHandle{" +
+				"stateHandles=" + stateHandles +
+				", stateSize=" + stateSize +
+				'}';
+	}
+
 	static final class MultiFSDataInputStream extends AbstractMultiFSDataInputStream {
 
 		private final TreeMap<Long, StreamStateHandle> stateHandleMap;
@@ -93,4 +126,120 @@ public class MultiStreamStateHandle implements StreamStateHandle {
 			return null;
 		}
 	}
+
+	/**
+	 * Stream over the inner handles that reads the handles which follow the currently read one ahead.
+	 */
+	static final class ReadAheadMultiFSDataInputStream extends AbstractMultiFSDataInputStream {
+
+		private final List<StreamStateHandle> stateHandles;
+
+		/** The offsets of the inner handles in the virtual global stream */
+		private final long[] startOffsets;
+
+		/** The data of the inner handles that are read ahead, by the index of the handle */
+		private final TreeMap<Integer, Future<byte[]>> readAheadHandles;
+
+		private final ExecutorService executor;
+
+		private final int numReadAheadHandles;
+
+		ReadAheadMultiFSDataInputStream(
+				List<StreamStateHandle> stateHandles,
+				ExecutorService executor,
+				int numReadAheadHandles) throws IOException {
+
+			this.stateHandles = stateHandles;
+			this.executor = executor;
+			this.numReadAheadHandles = numReadAheadHandles;
+			this.readAheadHandles = new TreeMap<>();
+			this.startOffsets = new long[stateHandles.size()];
+			this.totalPos = 0L;
+
+			long calculateSize = 0L;
+			for (int i = 0; i < stateHandles.size(); ++i) {
+				startOffsets[i] = calculateSize;
+				calculateSize += stateHandles.get(i).getStateSize();
+			}
+			this.totalAvailable = calculateSize;
+
+			if (totalAvailable > 0L) {
+				delegate = getSeekedStreamForOffset(0L);
+			}
+		}
+
+		@Override
+		protected FSDataInputStream getSeekedStreamForOffset(long globalStreamOffset) throws IOException {
+			// the last handle that starts at or before the offset, which skips empty handles
+			int index = stateHandles.size() - 1;
+			while (index > 0 && startOffsets[index] > globalStreamOffset) {
+				--index;
+			}
+
+			// the handles before the current one are not read anymore
+			while (!readAheadHandles.isEmpty() && readAheadHandles.firstKey() < index) {
+				readAheadHandles.pollFirstEntry().getValue().cancel(true);
+			}
+
+			Future<byte[]> readAheadData = readAheadHandles.remove(index);
+
+			for (int i = index + 1; i <= index + numReadAheadHandles && i < stateHandles.size(); ++i) {
+				if (!readAheadHandles.containsKey(i) && stateHandles.get(i).getStateSize() <= Integer.MAX_VALUE) {
+					readAheadHandles.put(i, executor.submit(new ReadAheadCall(stateHandles.get(i))));
+				}
+			}
+
+			FSDataInputStream stream;
+			if (readAheadData != null) {
+				stream = new ByteStreamStateHandle(String.valueOf(index), getReadAheadData(readAheadData)).openInputStream();
+			} else {
+				stream = stateHandles.get(index).openInputStream();
+			}
+
+			stream.seek(globalStreamOffset - startOffsets[index]);
+			return stream;
+		}
+
+		@Override
+		public void close() throws IOException {
+			super.close();
+
+			for (Future<byte[]> readAheadData : readAheadHandles.values()) {
+				readAheadData.cancel(true);
+			}
+			readAheadHandles.clear();
+		}
+
+		private static byte[] getReadAheadData(Future<byte[]> readAheadData) throws IOException {
+			try {
+				return readAheadData.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while reading a state handle ahead.", e);
+			} catch (ExecutionException e) {
+				throw new IOException("Could not read a state handle ahead.", e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Reads the complete data of a handle into memory.
+	 */
+	private static final class ReadAheadCall implements Callable<byte[]> {
+
+		private final StreamStateHandle stateHandle;
+
+		ReadAheadCall(StreamStateHandle stateHandle) {
+			this.stateHandle = stateHandle;
+		}
+
+		@Override
+		public byte[] call() throws Exception {
+			byte[] data = new byte[(int) stateHandle.getStateSize()];
+			try (FSDataInputStream inputStream = stateHandle.openInputStream()) {
+				IOUtils.readFully(inputStream, data, 0, data.length);
+			}
+			return data;
+		}
+	}
 }
@@ -32,8 +32,17 @@ import java.util.Map;
  */
 public class OperatorStateHandle implements StreamStateHandle {
 
+	/**
+	 * The modes that determine how an operator state is redistributed on restore. New modes must
+	 * only be appended, because the modes are serialized by their ordinal.
+	 */
 	public enum Mode {
-		SPLIT_DISTRIBUTE, BROADCAST
+		/** The list elements of all parallel instances are split and distributed among the new instances. */
+		SPLIT_DISTRIBUTE,
+		/** Every new instance receives the union of the list elements of all parallel instances. */
+		BROADCAST,
+		/** All parallel instances hold the same state, and every new instance receives one copy of it. */
+		UNIFORM_BROADCAST
 	}
 
 	private static final long serialVersionUID = 35876522969227335L;
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.runtime.state.filesystem.FileSegmentStateHandle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * A registry that reference-counts state which is shared between several completed
+ * checkpoints, for example the immutable files of an incremental snapshot that are
+ * referenced by every later checkpoint until they are compacted away.
+ *
+ * <p>Each shared state object is identified by a key that is stable across checkpoints.
+ * A state object is discarded once the last checkpoint that references it is discarded.
+ * The registry is owned by the checkpoint coordinator; all methods are thread-safe.
+ *
+ * <p>A shared state object that is a {@link FileSegmentStateHandle} holds a reference to its
+ * container file for as long as it is registered, because the container file cannot be deleted
+ * by discarding the segment.
+ */
+public class SharedStateRegistry {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SharedStateRegistry.class);
+
+	/** All registered state objects with their current reference counts */
+	private final Map<String, SharedStateEntry> registeredStates = new HashMap<>();
+
+	/**
+	 * Registers a reference to the state object under the given key. If the key is not known
+	 * to the registry yet, the given state object becomes the registered one. Otherwise only the
+	 * reference count of the registered state object is increased and the given object, if it is a
+	 * different physical copy of the same state, is discarded.
+	 *
+	 * @param key the key that identifies the shared state
+	 * @param state the state object that was created for the key
+	 * @return the state object that is registered under the key
+	 */
+	public StreamStateHandle registerReference(String key, StreamStateHandle state) {
+		checkNotNull(key);
+		checkNotNull(state);
+
+		StreamStateHandle duplicate = null;
+		StreamStateHandle registered;
+
+		synchronized (registeredStates) {
+			SharedStateEntry entry = registeredStates.get(key);
+
+			if (entry == null) {
+				entry = new SharedStateEntry(state);
+				registeredStates.put(key, entry);
+
+				if (state instanceof FileSegmentStateHandle) {
+					((FileSegmentStateHandle) state).registerSharedState(this);
+				}
+			} else {
+				entry.increaseReferenceCount();
+
+				if (entry.getState() != state && !entry.getState().equals(state)) {
+					duplicate = state;
+				}
+			}
+
+			registered = entry.getState();
+		}
+
+		if (duplicate != null) {
+			LOG.debug("Discarding duplicate of shared state {}.", key);
+			discardQuietly(key, duplicate);
+		}
+
+		return registered;
+	}
+
+	/**
+	 * Checks whether a state object is currently registered under the given key.
+	 *
+	 * @param key the key that identifies the shared state
+	 * @return true if a state object is registered under the key
+	 */
+	public boolean isRegistered(String key) {
+		synchronized (registeredStates) {
+			return registeredStates.containsKey(key);
+		}
+	}
+
+	/**
+	 * Releases one reference to the state object registered under the given key. The state
+	 * object is discarded when no more references to it exist.
+	 *
+	 * @param key the key that identifies the shared state
+	 */
+	public void unregisterReference(String key) {
+		checkNotNull(key);
+
+		StreamStateHandle toDiscard = null;
+
+		synchronized (registeredStates) {
+			SharedStateEntry entry = registeredStates.get(key);
+
+			if (entry == null) {
+				LOG.warn("Cannot unregister shared state {} because it is not registered.", key);
+				return;
+			}
+
+			if (entry.decreaseReferenceCount() == 0) {
+				registeredStates.remove(key);
+				toDiscard = entry.getState();
+			}
+		}
+
+		if (toDiscard instanceof FileSegmentStateHandle) {
+			// release the reference to the container file instead, which may hold other state
+			((FileSegmentStateHandle) toDiscard).unregisterSharedState(this);
+		} else if (toDiscard != null) {
+			discardQuietly(key, toDiscard);
+		}
+	}
+
+	/**
+	 * Returns the number of references to the state object that is registered under the
+	 * given key, or 0 if no state object is registered under the key.
+	 */
+	public int getReferenceCount(String key) {
+		synchronized (registeredStates) {
+			SharedStateEntry entry = registeredStates.get(key);
+			return entry == null ? 0 : entry.getReferenceCount();
+		}
+	}
+
+	@Override
+	public String toString() {
+		synchronized (registeredStates) {
+			return "SharedStateRegistry{" +
+					"registeredStates=" + registeredStates +
+					'}';
+		}
+	}
+
+	private static void discardQuietly(String key, StreamStateHandle state) {
+		try {
+			state.discardState();
+		} catch (Exception e) {
+			LOG.warn("Could not discard shared state {}.", key, e);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A registered state object together with the number of references to it.
+	 */
+	private static final class SharedStateEntry {
+
+		private final StreamStateHandle state;
+
+		private int referenceCount;
+
+		SharedStateEntry(StreamStateHandle state) {
+			this.state = state;
+			this.referenceCount = 1;
+		}
+
+		StreamStateHandle getState() {
+			return state;
+		}
+
+		int getReferenceCount() {
+			return referenceCount;
+		}
+
+		void increaseReferenceCount() {
+			++referenceCount;
+		}
+
+		int decreaseReferenceCount() {
+			return --referenceCount;
+		}
+
+		@Override
+		public String toString() {
+			return "SharedStateEntry{" +
+					"state=" + state +
+					", referenceCount=" + referenceCount +
+					'}';
+		}
+	}
+}
@@ -20,7 +20,10 @@ package org.apache.flink.runtime.state;
 
 import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.core.fs.CloseableRegistry;
+import org.apache.flink.runtime.io.async.AbstractAsyncIOCallable;
+import org.apache.flink.runtime.io.async.AsyncStoppableTaskWithCallback;
 import org.apache.flink.util.ExceptionUtils;
+import org.apache.flink.util.IOUtils;
 import org.apache.flink.util.Preconditions;
 
 import java.io.Closeable;
@@ -50,6 +53,9 @@ public class StateSnapshotContextSynchronousImpl implements StateSnapshotContext
 	private KeyedStateCheckpointOutputStream keyedStateCheckpointOutputStream;
 	private OperatorStateCheckpointOutputStream operatorStateCheckpointOutputStream;
 
+	/** Writes the raw keyed state in the asynchronous part of the snapshot, null if it is written synchronously */
+	private AsyncKeyedStateWriter asyncKeyedStateWriter;
+
 	@VisibleForTesting
 	public StateSnapshotContextSynchronousImpl(long checkpointId, long checkpointTimestamp) {
 		this.checkpointId = checkpointId;
@@ -94,6 +100,8 @@ public class StateSnapshotContextSynchronousImpl implements StateSnapshotContext
 
 	@Override
 	public KeyedStateCheckpointOutputStream getRawKeyedOperatorStateOutput() throws Exception {
+		Preconditions.checkState(null == asyncKeyedStateWriter, "The raw keyed state is written asynchronously.");
+
 		if (null == keyedStateCheckpointOutputStream) {
 			Preconditions.checkState(keyGroupRange != KeyGroupRange.EMPTY_KEY_GROUP_RANGE, "Not a keyed operator");
 			keyedStateCheckpointOutputStream = new KeyedStateCheckpointOutputStream(openAndRegisterNewStream(), keyGroupRange);
@@ -109,7 +117,26 @@ public class StateSnapshotContextSynchronousImpl implements StateSnapshotContext
 		return operatorStateCheckpointOutputStream;
 	}
 
+	/**
+	 * Sets the writer of the raw keyed state, which writes the raw keyed state stream in the asynchronous part of the
+	 * snapshot instead of the synchronous part. The writer must only write data that is not modified after the
+	 * synchronous part. The raw keyed state stream can then not be obtained for synchronous writes anymore.
+	 *
+	 * @param asyncKeyedStateWriter The writer of the raw keyed state.
+	 */
+	public void setAsyncKeyedStateWriter(AsyncKeyedStateWriter asyncKeyedStateWriter) {
+		Preconditions.checkState(keyGroupRange != KeyGroupRange.EMPTY_KEY_GROUP_RANGE, "Not a keyed operator");
+		Preconditions.checkState(null == keyedStateCheckpointOutputStream && null == this.asyncKeyedStateWriter,
+				"The raw keyed state is already written.");
+
+		this.asyncKeyedStateWriter = Preconditions.checkNotNull(asyncKeyedStateWriter);
+	}
+
 	public RunnableFuture<KeyGroupsStateHandle> getKeyedStateStreamFuture() throws IOException {
+		if (null != asyncKeyedStateWriter) {
+			return createAsyncKeyedStateFuture(asyncKeyedStateWriter);
+		}
+
 		return closeAndUnregisterStreamToObtainStateHandle(keyedStateCheckpointOutputStream);
 	}
 
@@ -129,6 +156,39 @@ public class StateSnapshotContextSynchronousImpl implements StateSnapshotContext
 		return new DoneFuture<>(stream.closeAndGetHandle());
 	}
 
+	private RunnableFuture<KeyGroupsStateHandle> createAsyncKeyedStateFuture(final AsyncKeyedStateWriter writer) {
+		AbstractAsyncIOCallable<KeyGroupsStateHandle, CheckpointStreamFactory.CheckpointStateOutputStream> ioCallable =
+				new AbstractAsyncIOCallable<KeyGroupsStateHandle, CheckpointStreamFactory.CheckpointStateOutputStream>() {
+
+					@Override
+					public CheckpointStreamFactory.CheckpointStateOutputStream openIOHandle() throws Exception {
+						return openAndRegisterNewStream();
+					}
+
+					@Override
+					public KeyGroupsStateHandle performOperation() throws Exception {
+						KeyedStateCheckpointOutputStream out =
+								new KeyedStateCheckpointOutputStream(getIoHandle(), keyGroupRange);
+
+						writer.writeKeyedState(out);
+
+						closableRegistry.unregisterClosable(getIoHandle());
+						return out.closeAndGetHandle();
+					}
+
+					@Override
+					public void done(boolean canceled) {
+						CheckpointStreamFactory.CheckpointStateOutputStream stream = getIoHandle();
+						if (null != stream) {
+							closableRegistry.unregisterClosable(stream);
+							IOUtils.closeQuietly(stream);
+						}
+					}
+				};
+
+		return AsyncStoppableTaskWithCallback.from(ioCallable);
+	}
+
 	private <T extends StreamStateHandle> void closeAndUnregisterStream(NonClosingCheckpointOutputStream<T> stream) throws IOException {
 		Preconditions.checkNotNull(stream);
 
@@ -164,4 +224,18 @@ public class StateSnapshotContextSynchronousImpl implements StateSnapshotContext
 			throw exception;
 		}
 	}
+
+	/**
+	 * Writes the raw keyed state in the asynchronous part of a snapshot.
+	 */
+	public interface AsyncKeyedStateWriter {
+
+		/**
+		 * Writes the raw keyed state to the given stream.
+		 *
+		 * @param out The raw keyed state stream.
+		 * @throws Exception Thrown if the state could not be written.
+		 */
+		void writeKeyedState(KeyedStateCheckpointOutputStream out) throws Exception;
+	}
 }
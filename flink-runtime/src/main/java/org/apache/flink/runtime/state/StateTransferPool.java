@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.configuration.TaskManagerOptions;
+import org.apache.flink.runtime.util.ExecutorThreadFactory;
+import org.apache.flink.util.ExceptionUtils;
+import org.apache.flink.util.Preconditions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pool of threads that transfers the parts of multi-part snapshots to and from the checkpoint
+ * storage. The pool is owned by the TaskManager and shared by all of its tasks, so that the number
+ * of concurrent transfers is bounded by the configured number of threads
+ * ({@link TaskManagerOptions#STATE_TRANSFER_THREADS}), no matter how many tasks take snapshots at
+ * the same time. The threads are started with the first transfer, and idle threads are released
+ * after {@link #IDLE_THREAD_TIMEOUT_SECONDS}. The TaskManager shuts the pool down when it stops.
+ */
+public class StateTransferPool {
+
+	private static final Logger LOG = LoggerFactory.getLogger(StateTransferPool.class);
+
+	/** The time after which idle transfer threads are released */
+	static final long IDLE_THREAD_TIMEOUT_SECONDS = 60L;
+
+	/** The lock that guards the creation and shutdown of the executor */
+	private final Object lock = new Object();
+
+	/** The maximum number of threads that transfer snapshot parts concurrently */
+	private final int numberOfThreads;
+
+	/** The executor of the transfer threads, started with the first transfer */
+	private ExecutorService executor;
+
+	/** Flag marking the pool as shut down */
+	private boolean isShutdown;
+
+	/**
+	 * Creates a new transfer pool.
+	 *
+	 * @param numberOfThreads The maximum number of threads that transfer snapshot parts concurrently.
+	 */
+	public StateTransferPool(int numberOfThreads) {
+		Preconditions.checkArgument(numberOfThreads >= 1, "The number of transfer threads must be at least 1.");
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	/**
+	 * Creates the transfer pool of a TaskManager with the number of threads given in the configuration.
+	 *
+	 * @param configuration The configuration of the TaskManager.
+	 *
+	 * @return The transfer pool.
+	 */
+	public static StateTransferPool fromConfiguration(Configuration configuration) {
+		return new StateTransferPool(configuration.getInteger(TaskManagerOptions.STATE_TRANSFER_THREADS));
+	}
+
+	/**
+	 * Gets the maximum number of threads that transfer snapshot parts concurrently.
+	 */
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+
+	/**
+	 * Gets the executor of the transfer threads.
+	 *
+	 * @throws IllegalStateException Thrown, if the pool has been shut down.
+	 */
+	public ExecutorService getExecutor() {
+		synchronized (lock) {
+			Preconditions.checkState(!isShutdown, "The state transfer pool has been shut down.");
+
+			if (executor == null) {
+				ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
+						numberOfThreads,
+						numberOfThreads,
+						IDLE_THREAD_TIMEOUT_SECONDS,
+						TimeUnit.SECONDS,
+						new LinkedBlockingQueue<Runnable>(),
+						new ExecutorThreadFactory("StateTransfer"));
+
+				threadPool.allowCoreThreadTimeOut(true);
+				executor = threadPool;
+			}
+
+			return executor;
+		}
+	}
+
+	/**
+	 * Shuts the pool down and interrupts the running transfers. Transfers that are submitted afterwards fail.
+	 */
+	public void shutdown() {
+		synchronized (lock) {
+			if (!isShutdown) {
+				isShutdown = true;
+
+				if (executor != null) {
+					executor.shutdownNow();
+					executor = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Submits the given transfers to the transfer threads.
+	 *
+	 * @param transfers The transfers to run.
+	 * @param <T> The type of the state that the transfers produce.
+	 *
+	 * @return The futures of the transfers, in the order of the transfers.
+	 */
+	public <T extends StateObject> List<Future<T>> submitAll(List<? extends Callable<T>> transfers) {
+		if (transfers.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		ExecutorService transferExecutor = getExecutor();
+		List<Future<T>> futures = new ArrayList<>(transfers.size());
+
+		try {
+			for (Callable<T> transfer : transfers) {
+				futures.add(transferExecutor.submit(transfer));
+			}
+		} catch (RuntimeException e) {
+			cancelAll(futures);
+			throw e;
+		}
+
+		return futures;
+	}
+
+	/**
+	 * Waits until all given transfers are done. If one transfer fails or the waiting thread is
+	 * interrupted, all transfers are cancelled and the state of the completed ones is discarded.
+	 *
+	 * @param transfers The futures of the transfers.
+	 * @param <T> The type of the state that the transfers produce.
+	 *
+	 * @return The state of the transfers, in the order of the transfers.
+	 *
+	 * @throws Exception The exception of the first transfer that failed.
+	 */
+	public static <T extends StateObject> List<T> getAll(List<Future<T>> transfers) throws Exception {
+		List<T> results = new ArrayList<>(transfers.size());
+
+		try {
+			for (Future<T> transfer : transfers) {
+				results.add(transfer.get());
+			}
+		} catch (ExecutionException e) {
+			cancelAll(transfers);
+			ExceptionUtils.rethrowException(e.getCause(), "Snapshot part transfer failed.");
+		} catch (Exception e) {
+			cancelAll(transfers);
+			throw e;
+		}
+
+		return results;
+	}
+
+	/**
+	 * Cancels the given transfers and discards the state of the transfers that are already completed.
+	 *
+	 * @param transfers The futures of the transfers.
+	 */
+	public static void cancelAll(List<? extends Future<? extends StateObject>> transfers) {
+		for (Future<? extends StateObject> transfer : transfers) {
+			if (!transfer.cancel(true) && transfer.isDone()) {
+				try {
+					StateObject state = transfer.get();
+					if (state != null) {
+						state.discardState();
+					}
+				} catch (ExecutionException ignored) {
+					// the transfer failed and did not produce any state
+				} catch (Exception e) {
+					LOG.warn("Could not discard the state of a cancelled snapshot part transfer.", e);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.runtime.util.ExecutorThreadFactory;
+import org.apache.flink.util.FileUtils;
+import org.apache.flink.util.Preconditions;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes the local copies of the checkpointed state of subtasks that were released by their
+ * {@link TaskLocalStateStore}. The local copies of a released subtask are kept for a while, so that
+ * a new execution attempt of the subtask on the same TaskManager can claim and restore from them,
+ * and are deleted afterwards unless they were claimed.
+ *
+ * <p>The cleaner is owned by the TaskManager and shared by the stores of all of its tasks. When the
+ * TaskManager shuts down, the cleaner deletes all released local copies right away, because no new
+ * execution attempt can claim them anymore.
+ */
+public class TaskLocalStateCleaner {
+
+	/** The default time for which the local copies of a released subtask are kept for a new execution attempt */
+	public static final long DEFAULT_RETENTION_MILLIS = 5 * 60 * 1000L;
+
+	/** The time for which the local copies of a released subtask are kept */
+	private final long retentionMillis;
+
+	/** The directories of the released subtasks, with the token of their scheduled deletion */
+	private final Map<File, Object> scheduledDeletions = new HashMap<>();
+
+	/** Deletes the directories of released subtasks, started with the first release */
+	private ScheduledExecutorService executor;
+
+	/** Flag marking the cleaner as shut down */
+	private boolean isShutdown;
+
+	public TaskLocalStateCleaner() {
+		this(DEFAULT_RETENTION_MILLIS);
+	}
+
+	public TaskLocalStateCleaner(long retentionMillis) {
+		Preconditions.checkArgument(retentionMillis >= 0L, "The retention time must not be negative.");
+		this.retentionMillis = retentionMillis;
+	}
+
+	/**
+	 * Schedules the deletion of the directory of a released subtask. If the cleaner has been shut
+	 * down, the directory is deleted right away.
+	 *
+	 * @param subtaskDirectory the directory that holds the local copies of the subtask
+	 */
+	public void scheduleDeletion(final File subtaskDirectory) {
+		final Object token = new Object();
+
+		synchronized (scheduledDeletions) {
+			if (isShutdown) {
+				FileUtils.deleteDirectoryQuietly(subtaskDirectory);
+				return;
+			}
+
+			scheduledDeletions.put(subtaskDirectory, token);
+
+			if (executor == null) {
+				executor = Executors.newSingleThreadScheduledExecutor(
+						new ExecutorThreadFactory("ReleasedLocalStateDeleter"));
+			}
+
+			executor.schedule(
+					new Runnable() {
+						@Override
+						public void run() {
+							deleteIfNotClaimed(subtaskDirectory, token);
+						}
+					},
+					retentionMillis,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Claims the directory of a released subtask for a new execution attempt, which cancels its
+	 * scheduled deletion.
+	 *
+	 * @param subtaskDirectory the directory that holds the local copies of the subtask
+	 */
+	public void claim(File subtaskDirectory) {
+		synchronized (scheduledDeletions) {
+			scheduledDeletions.remove(subtaskDirectory);
+		}
+	}
+
+	/**
+	 * Shuts the cleaner down and deletes the directories of all released subtasks that were not
+	 * claimed yet.
+	 */
+	public void shutdown() {
+		synchronized (scheduledDeletions) {
+			if (!isShutdown) {
+				isShutdown = true;
+
+				if (executor != null) {
+					executor.shutdownNow();
+					executor = null;
+				}
+
+				for (File subtaskDirectory : scheduledDeletions.keySet()) {
+					FileUtils.deleteDirectoryQuietly(subtaskDirectory);
+				}
+
+				scheduledDeletions.clear();
+			}
+		}
+	}
+
+	private void deleteIfNotClaimed(File subtaskDirectory, Object token) {
+		synchronized (scheduledDeletions) {
+			// delete under the lock, so that no new execution attempt starts to use the directory meanwhile
+			if (scheduledDeletions.get(subtaskDirectory) == token) {
+				scheduledDeletions.remove(subtaskDirectory);
+				FileUtils.deleteDirectoryQuietly(subtaskDirectory);
+			}
+		}
+	}
+}
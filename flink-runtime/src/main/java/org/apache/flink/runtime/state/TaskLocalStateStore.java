@@ -0,0 +1,642 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.state.filesystem.FileStateHandle;
+import org.apache.flink.runtime.state.memory.ByteStreamStateHandle;
+import org.apache.flink.util.FileUtils;
+import org.apache.flink.util.InstantiationUtil;
+import org.apache.flink.util.Preconditions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Keeps a secondary copy of the checkpointed state of a subtask on the local disk of the TaskManager,
+ * so that the subtask can restore from the local copy instead of the primary copy when it is
+ * rescheduled to the same TaskManager after a failure.
+ *
+ * <p>The local copies are written by the stream factories created through
+ * {@link #createStreamFactory(CheckpointStreamFactory)}, which write every checkpoint stream to the
+ * primary stream and to a local file. Once a checkpoint is confirmed, the mapping from the handles of
+ * the primary copies to the local files is written next to the local files, and the local copies of
+ * all earlier checkpoints are deleted. Because the mapping is kept on disk, it survives the failure
+ * of the subtask and can be picked up by the next execution attempt on the same TaskManager through
+ * {@link #retrieveLocalCopies(TaskStateHandles)}.
+ *
+ * <p>The local copies are deleted when the subtask finishes. When the subtask is cancelled or fails,
+ * they are {@link #release() released} and kept for a while for a new execution attempt on the same
+ * TaskManager, until the {@link TaskLocalStateCleaner} of the TaskManager deletes them.
+ *
+ * <p>Local copies are a best-effort optimization. Failures while writing or reading them never fail a
+ * checkpoint or a restore, they only make the subtask use the primary copy.
+ */
+public class TaskLocalStateStore {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TaskLocalStateStore.class);
+
+	/** Prefix of the directories that hold the local copies of one checkpoint */
+	private static final String CHECKPOINT_DIR_PREFIX = "chk_";
+
+	/** Name of the file that maps the handles of the primary copies to the local files */
+	private static final String LOCAL_COPIES_FILE_NAME = "_local_copies";
+
+	/** The directory of the subtask under which the local copies are stored */
+	private final File subtaskDirectory;
+
+	/** The cleaner of the TaskManager that deletes the local copies of released subtasks */
+	private final TaskLocalStateCleaner cleaner;
+
+	/** Class loader to read the mappings, which contain the state handles of the primary copies */
+	private final ClassLoader userCodeClassLoader;
+
+	/** Local copies of checkpoints that are not confirmed yet, by checkpoint id */
+	private final SortedMap<Long, Map<StreamStateHandle, String>> pendingLocalCopies;
+
+	/** Lock for the pending local copies and the last confirmed checkpoint */
+	private final Object lock = new Object();
+
+	/** The id of the last confirmed checkpoint, or -1 if no checkpoint was confirmed yet */
+	private long lastConfirmedCheckpointId;
+
+	public TaskLocalStateStore(File subtaskDirectory, TaskLocalStateCleaner cleaner, ClassLoader userCodeClassLoader) {
+		this.subtaskDirectory = Preconditions.checkNotNull(subtaskDirectory);
+		this.cleaner = Preconditions.checkNotNull(cleaner);
+		this.userCodeClassLoader = Preconditions.checkNotNull(userCodeClassLoader);
+		this.pendingLocalCopies = new TreeMap<>();
+		this.lastConfirmedCheckpointId = -1L;
+
+		// a new execution attempt claims the local copies of a released earlier attempt
+		cleaner.claim(subtaskDirectory);
+	}
+
+	/**
+	 * Creates the store for a subtask. The directory of the subtask is chosen among the given local
+	 * directories by subtask index and is the same for all execution attempts of the subtask.
+	 *
+	 * @param localDirectories the local directories of the TaskManager, e.g. its temp directories
+	 * @param jobId the id of the job
+	 * @param jobVertexId the id of the job vertex
+	 * @param subtaskIndex the index of the subtask
+	 * @param cleaner the cleaner of the TaskManager that deletes the local copies of released subtasks
+	 * @param userCodeClassLoader class loader to read the stored mappings
+	 * @return the store for the subtask
+	 */
+	public static TaskLocalStateStore forSubtask(
+			File[] localDirectories,
+			JobID jobId,
+			JobVertexID jobVertexId,
+			int subtaskIndex,
+			TaskLocalStateCleaner cleaner,
+			ClassLoader userCodeClassLoader) {
+
+		Preconditions.checkArgument(localDirectories.length > 0, "No local directories for local state.");
+
+		File rootDirectory = localDirectories[subtaskIndex % localDirectories.length];
+		File subtaskDirectory = new File(
+				new File(new File(rootDirectory, "localState"), "job_" + jobId),
+				"vertex_" + jobVertexId + "_" + subtaskIndex);
+
+		return new TaskLocalStateStore(subtaskDirectory, cleaner, userCodeClassLoader);
+	}
+
+	/**
+	 * Creates a stream factory whose streams write to the streams of the given factory and keep a
+	 * local copy of the written state in this store.
+	 *
+	 * @param primaryFactory the factory for the primary copies
+	 * @return the stream factory that also writes local copies
+	 */
+	public CheckpointStreamFactory createStreamFactory(CheckpointStreamFactory primaryFactory) {
+		return new LocalCopyCheckpointStreamFactory(Preconditions.checkNotNull(primaryFactory));
+	}
+
+	/**
+	 * Confirms the local copies of the given checkpoint, so that they can be used for recovery, and
+	 * deletes the local copies of all earlier checkpoints.
+	 *
+	 * @param checkpointId the id of the completed checkpoint
+	 */
+	public void confirmCheckpoint(long checkpointId) {
+		Map<StreamStateHandle, String> localCopies;
+
+		synchronized (lock) {
+			if (checkpointId <= lastConfirmedCheckpointId) {
+				return;
+			}
+
+			lastConfirmedCheckpointId = checkpointId;
+			localCopies = pendingLocalCopies.remove(checkpointId);
+
+			// the local copies of earlier checkpoints are not needed anymore, the files
+			// are deleted together with their checkpoint directories below
+			pendingLocalCopies.headMap(checkpointId).clear();
+		}
+
+		if (localCopies != null) {
+			try {
+				writeLocalCopies(checkpointId, localCopies);
+			} catch (Exception e) {
+				LOG.warn("Could not confirm the local copies of checkpoint {} in {}.",
+						checkpointId, subtaskDirectory, e);
+			}
+		}
+
+		for (File checkpointDirectory : listCheckpointDirectories()) {
+			if (getCheckpointId(checkpointDirectory) < checkpointId) {
+				FileUtils.deleteDirectoryQuietly(checkpointDirectory);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the handles to the primary copies of the given state by handles that read the local
+	 * copies of the last confirmed checkpoint, where such local copies exist. All other handles are
+	 * kept as they are.
+	 *
+	 * @param stateHandles the state to restore
+	 * @return the state to restore, reading local copies where possible
+	 */
+	public TaskStateHandles retrieveLocalCopies(TaskStateHandles stateHandles) {
+		Map<StreamStateHandle, File> localCopies = readLocalCopies();
+
+		if (localCopies.isEmpty()) {
+			return stateHandles;
+		}
+
+		ChainedStateHandle<StreamStateHandle> legacyOperatorState = stateHandles.getLegacyOperatorState();
+
+		if (legacyOperatorState != null) {
+			List<StreamStateHandle> resolved = new ArrayList<>(legacyOperatorState.getLength());
+			for (int i = 0; i < legacyOperatorState.getLength(); ++i) {
+				resolved.add(resolveLocalCopy(legacyOperatorState.get(i), localCopies));
+			}
+			legacyOperatorState = new ChainedStateHandle<>(resolved);
+		}
+
+		return new TaskStateHandles(
+				legacyOperatorState,
+				resolveOperatorStateLocalCopies(stateHandles.getManagedOperatorState(), localCopies),
+				resolveOperatorStateLocalCopies(stateHandles.getRawOperatorState(), localCopies),
+				resolveKeyedStateLocalCopies(stateHandles.getManagedKeyedState(), localCopies),
+				resolveKeyedStateLocalCopies(stateHandles.getRawKeyedState(), localCopies),
+				resolveLocalCopy(stateHandles.getInFlightState(), localCopies));
+	}
+
+	/**
+	 * Releases the local copies of a subtask that was cancelled or failed. The local copies of
+	 * checkpoints that were not confirmed are deleted right away. The local copies of the last
+	 * confirmed checkpoint are kept for a while, so that a new execution attempt of the subtask on
+	 * this TaskManager can restore from them, and are deleted afterwards by the
+	 * {@link TaskLocalStateCleaner} unless a new execution attempt created a store for the subtask
+	 * in the meantime.
+	 */
+	public void release() {
+		synchronized (lock) {
+			pendingLocalCopies.clear();
+		}
+
+		// keep the latest checkpoint whose local copies were confirmed, possibly by an earlier attempt
+		File latestConfirmed = null;
+		for (File checkpointDirectory : listCheckpointDirectories()) {
+			if (new File(checkpointDirectory, LOCAL_COPIES_FILE_NAME).isFile() &&
+					(latestConfirmed == null || getCheckpointId(checkpointDirectory) > getCheckpointId(latestConfirmed))) {
+				latestConfirmed = checkpointDirectory;
+			}
+		}
+
+		for (File checkpointDirectory : listCheckpointDirectories()) {
+			if (!checkpointDirectory.equals(latestConfirmed)) {
+				FileUtils.deleteDirectoryQuietly(checkpointDirectory);
+			}
+		}
+
+		cleaner.scheduleDeletion(subtaskDirectory);
+	}
+
+	/**
+	 * Deletes all local copies of the subtask.
+	 */
+	public void dispose() {
+		synchronized (lock) {
+			pendingLocalCopies.clear();
+		}
+
+		FileUtils.deleteDirectoryQuietly(subtaskDirectory);
+	}
+
+	@VisibleForTesting
+	File getSubtaskDirectory() {
+		return subtaskDirectory;
+	}
+
+	// ------------------------------------------------------------------------
+	//  local copies
+	// ------------------------------------------------------------------------
+
+	private File createLocalFile(long checkpointId) throws IOException {
+		File checkpointDirectory = new File(subtaskDirectory, CHECKPOINT_DIR_PREFIX + checkpointId);
+
+		if (!checkpointDirectory.isDirectory() && !checkpointDirectory.mkdirs() && !checkpointDirectory.isDirectory()) {
+			throw new IOException("Could not create the local state directory " + checkpointDirectory + '.');
+		}
+
+		return new File(checkpointDirectory, UUID.randomUUID().toString());
+	}
+
+	private void registerLocalCopy(long checkpointId, StreamStateHandle primaryHandle, File localFile) {
+		synchronized (lock) {
+			if (checkpointId > lastConfirmedCheckpointId) {
+				Map<StreamStateHandle, String> localCopies = pendingLocalCopies.get(checkpointId);
+				if (localCopies == null) {
+					localCopies = new HashMap<>();
+					pendingLocalCopies.put(checkpointId, localCopies);
+				}
+
+				localCopies.put(primaryHandle, localFile.getName());
+				return;
+			}
+		}
+
+		// the checkpoint is older than the last confirmed one and will never be used for recovery
+		deleteQuietly(localFile);
+	}
+
+	private void writeLocalCopies(long checkpointId, Map<StreamStateHandle, String> localCopies) throws IOException {
+		File checkpointDirectory = new File(subtaskDirectory, CHECKPOINT_DIR_PREFIX + checkpointId);
+		File tmpFile = new File(checkpointDirectory, LOCAL_COPIES_FILE_NAME + ".inprogress");
+		File targetFile = new File(checkpointDirectory, LOCAL_COPIES_FILE_NAME);
+
+		Files.write(tmpFile.toPath(), InstantiationUtil.serializeObject(new HashMap<>(localCopies)));
+
+		if (!tmpFile.renameTo(targetFile)) {
+			deleteQuietly(tmpFile);
+			throw new IOException("Could not rename " + tmpFile + " to " + targetFile + '.');
+		}
+	}
+
+	private Map<StreamStateHandle, File> readLocalCopies() {
+		Map<StreamStateHandle, File> localCopies = new HashMap<>();
+
+		for (File checkpointDirectory : listCheckpointDirectories()) {
+			File localCopiesFile = new File(checkpointDirectory, LOCAL_COPIES_FILE_NAME);
+
+			if (localCopiesFile.isFile()) {
+				try {
+					Map<StreamStateHandle, String> fileNames = InstantiationUtil.deserializeObject(
+							Files.readAllBytes(localCopiesFile.toPath()), userCodeClassLoader);
+
+					for (Map.Entry<StreamStateHandle, String> entry : fileNames.entrySet()) {
+						localCopies.put(entry.getKey(), new File(checkpointDirectory, entry.getValue()));
+					}
+				} catch (Exception e) {
+					LOG.warn("Could not read the local copies in {}.", checkpointDirectory, e);
+				}
+			}
+		}
+
+		return localCopies;
+	}
+
+	private List<File> listCheckpointDirectories() {
+		File[] files = subtaskDirectory.listFiles();
+		List<File> checkpointDirectories = new ArrayList<>();
+
+		if (files != null) {
+			for (File file : files) {
+				if (file.isDirectory() && getCheckpointId(file) >= 0L) {
+					checkpointDirectories.add(file);
+				}
+			}
+		}
+
+		return checkpointDirectories;
+	}
+
+	private static long getCheckpointId(File checkpointDirectory) {
+		String name = checkpointDirectory.getName();
+
+		if (name.startsWith(CHECKPOINT_DIR_PREFIX)) {
+			try {
+				return Long.parseLong(name.substring(CHECKPOINT_DIR_PREFIX.length()));
+			} catch (NumberFormatException ignored) {
+				// not a checkpoint directory
+			}
+		}
+
+		return -1L;
+	}
+
+	private static void deleteQuietly(File file) {
+		if (file.exists() && !file.delete()) {
+			LOG.debug("Could not delete local state file {}.", file);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+	//  resolving local copies of state handles
+	// ------------------------------------------------------------------------
+
+	private static StreamStateHandle resolveLocalCopy(StreamStateHandle handle, Map<StreamStateHandle, File> localCopies) {
+		if (handle == null) {
+			return null;
+		}
+
+		File localFile = localCopies.get(handle);
+
+		if (localFile == null || !localFile.isFile()) {
+			return handle;
+		}
+
+		return new LocalCopyStreamStateHandle(
+				new FileStateHandle(new Path(localFile.toURI()), localFile.length()),
+				handle);
+	}
+
+	private static Collection<KeyGroupsStateHandle> resolveKeyedStateLocalCopies(
+			Collection<KeyGroupsStateHandle> handles,
+			Map<StreamStateHandle, File> localCopies) {
+
+		if (handles == null) {
+			return null;
+		}
+
+		List<KeyGroupsStateHandle> resolved = new ArrayList<>(handles.size());
+
+		for (KeyGroupsStateHandle handle : handles) {
+			// incremental snapshots consist of more than one stream and are restored from the primary copy
+			if (handle != null && handle.getClass() == KeyGroupsStateHandle.class) {
+				StreamStateHandle delegate = resolveLocalCopy(handle.getDelegateStateHandle(), localCopies);
+
+				if (delegate != handle.getDelegateStateHandle()) {
+					handle = new KeyGroupsStateHandle(handle.getGroupRangeOffsets(), delegate);
+				}
+			}
+
+			resolved.add(handle);
+		}
+
+		return resolved;
+	}
+
+	private static List<Collection<OperatorStateHandle>> resolveOperatorStateLocalCopies(
+			List<Collection<OperatorStateHandle>> chainedHandles,
+			Map<StreamStateHandle, File> localCopies) {
+
+		if (chainedHandles == null) {
+			return null;
+		}
+
+		List<Collection<OperatorStateHandle>> resolved = new ArrayList<>(chainedHandles.size());
+
+		for (Collection<OperatorStateHandle> handles : chainedHandles) {
+			if (handles == null) {
+				resolved.add(null);
+				continue;
+			}
+
+			List<OperatorStateHandle> resolvedHandles = new ArrayList<>(handles.size());
+
+			for (OperatorStateHandle handle : handles) {
+				if (handle != null) {
+					StreamStateHandle delegate = resolveLocalCopy(handle.getDelegateStateHandle(), localCopies);
+
+					if (delegate != handle.getDelegateStateHandle()) {
+						handle = new OperatorStateHandle(handle.getStateNameToPartitionOffsets(), delegate);
+					}
+				}
+
+				resolvedHandles.add(handle);
+			}
+
+			resolved.add(resolvedHandles);
+		}
+
+		return resolved;
+	}
+
+	// ------------------------------------------------------------------------
+	//  streams that write local copies
+	// ------------------------------------------------------------------------
+
+	/**
+	 * A stream factory that creates streams which write both to the primary stream and to a local file.
+	 */
+	private final class LocalCopyCheckpointStreamFactory implements CheckpointStreamFactory {
+
+		private final CheckpointStreamFactory primaryFactory;
+
+		LocalCopyCheckpointStreamFactory(CheckpointStreamFactory primaryFactory) {
+			this.primaryFactory = primaryFactory;
+		}
+
+		@Override
+		public CheckpointStateOutputStream createCheckpointStateOutputStream(
+				long checkpointID,
+				long timestamp) throws Exception {
+
+			CheckpointStateOutputStream primaryStream =
+					primaryFactory.createCheckpointStateOutputStream(checkpointID, timestamp);
+
+			File localFile = null;
+			OutputStream localStream = null;
+
+			try {
+				localFile = createLocalFile(checkpointID);
+				localStream = new BufferedOutputStream(new FileOutputStream(localFile));
+			} catch (IOException e) {
+				LOG.warn("Could not create a local copy of the state of checkpoint {}.", checkpointID, e);
+
+				if (localFile != null) {
+					deleteQuietly(localFile);
+					localFile = null;
+				}
+			}
+
+			return new LocalCopyCheckpointStateOutputStream(checkpointID, primaryStream, localFile, localStream);
+		}
+
+		@Override
+		public void close() throws Exception {
+			primaryFactory.close();
+		}
+
+		@Override
+		public String toString() {
+			return "LocalCopyCheckpointStreamFactory{" +
+					"primaryFactory=" + primaryFactory +
+					", subtaskDirectory=" + subtaskDirectory +
+					'}';
+		}
+	}
+
+	/**
+	 * A stream that writes to the primary stream and to a local file. Failures of the local file only
+	 * drop the local copy, the state handle always refers to the primary stream.
+	 */
+	private final class LocalCopyCheckpointStateOutputStream extends CheckpointStreamFactory.CheckpointStateOutputStream {
+
+		private final long checkpointId;
+
+		private final CheckpointStreamFactory.CheckpointStateOutputStream primaryStream;
+
+		private File localFile;
+
+		private OutputStream localStream;
+
+		LocalCopyCheckpointStateOutputStream(
+				long checkpointId,
+				CheckpointStreamFactory.CheckpointStateOutputStream primaryStream,
+				File localFile,
+				OutputStream localStream) {
+
+			this.checkpointId = checkpointId;
+			this.primaryStream = primaryStream;
+			this.localFile = localFile;
+			this.localStream = localStream;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			primaryStream.write(b);
+
+			if (localStream != null) {
+				try {
+					localStream.write(b);
+				} catch (IOException e) {
+					dropLocalCopy(e);
+				}
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			primaryStream.write(b, off, len);
+
+			if (localStream != null) {
+				try {
+					localStream.write(b, off, len);
+				} catch (IOException e) {
+					dropLocalCopy(e);
+				}
+			}
+		}
+
+		@Override
+		public long getPos() throws IOException {
+			return primaryStream.getPos();
+		}
+
+		@Override
+		public void flush() throws IOException {
+			primaryStream.flush();
+
+			if (localStream != null) {
+				try {
+					localStream.flush();
+				} catch (IOException e) {
+					dropLocalCopy(e);
+				}
+			}
+		}
+
+		@Override
+		public void sync() throws IOException {
+			primaryStream.sync();
+		}
+
+		@Override
+		public StreamStateHandle closeAndGetHandle() throws IOException {
+			StreamStateHandle primaryHandle = null;
+
+			try {
+				primaryHandle = primaryStream.closeAndGetHandle();
+
+				if (localStream != null) {
+					localStream.close();
+					localStream = null;
+
+					// state that is kept in the handle itself does not need a local copy
+					if (primaryHandle != null && !(primaryHandle instanceof ByteStreamStateHandle)) {
+						registerLocalCopy(checkpointId, primaryHandle, localFile);
+						localFile = null;
+					}
+				}
+			} catch (IOException e) {
+				if (primaryHandle == null) {
+					throw e;
+				}
+
+				LOG.warn("Could not close the local copy {} of the state of checkpoint {}.", localFile, checkpointId, e);
+			} finally {
+				dropLocalCopy(null);
+			}
+
+			return primaryHandle;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				primaryStream.close();
+			} finally {
+				dropLocalCopy(null);
+			}
+		}
+
+		private void dropLocalCopy(IOException cause) {
+			if (cause != null) {
+				LOG.warn("Could not write the local copy {} of the state of checkpoint {}.", localFile, checkpointId, cause);
+			}
+
+			if (localStream != null) {
+				try {
+					localStream.close();
+				} catch (IOException ignored) {
+					// the file is deleted anyways
+				}
+				localStream = null;
+			}
+
+			if (localFile != null) {
+				deleteQuietly(localFile);
+				localFile = null;
+			}
+		}
+	}
+}
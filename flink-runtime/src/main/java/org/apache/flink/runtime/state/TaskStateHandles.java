@@ -51,6 +51,9 @@ public class TaskStateHandles implements Serializable {
 	/** Outer list represents the operator chain, each collection holds handles for raw/streamed state of a single operator */
 	private final List<Collection<OperatorStateHandle>> rawOperatorState;
 
+	/** Records that were in flight towards the task when an unaligned checkpoint was taken */
+	private final StreamStateHandle inFlightState;
+
 	public TaskStateHandles() {
 		this(null, null, null, null, null);
 	}
@@ -60,7 +63,8 @@ public class TaskStateHandles implements Serializable {
 				transform(checkpointStateHandles.getManagedOperatorState()),
 				transform(checkpointStateHandles.getRawOperatorState()),
 				transform(checkpointStateHandles.getManagedKeyedState()),
-				transform(checkpointStateHandles.getRawKeyedState()));
+				transform(checkpointStateHandles.getRawKeyedState()),
+				checkpointStateHandles.getInFlightState());
 	}
 
 	public TaskStateHandles(
@@ -70,11 +74,23 @@ public class TaskStateHandles implements Serializable {
 			Collection<KeyGroupsStateHandle> managedKeyedState,
 			Collection<KeyGroupsStateHandle> rawKeyedState) {
 
+		this(legacyOperatorState, managedOperatorState, rawOperatorState, managedKeyedState, rawKeyedState, null);
+	}
+
+	public TaskStateHandles(
+			ChainedStateHandle<StreamStateHandle> legacyOperatorState,
+			List<Collection<OperatorStateHandle>> managedOperatorState,
+			List<Collection<OperatorStateHandle>> rawOperatorState,
+			Collection<KeyGroupsStateHandle> managedKeyedState,
+			Collection<KeyGroupsStateHandle> rawKeyedState,
+			StreamStateHandle inFlightState) {
+
 		this.legacyOperatorState = legacyOperatorState;
 		this.managedKeyedState = managedKeyedState;
 		this.rawKeyedState = rawKeyedState;
 		this.managedOperatorState = managedOperatorState;
 		this.rawOperatorState = rawOperatorState;
+		this.inFlightState = inFlightState;
 	}
 
 	@Deprecated
@@ -98,6 +114,10 @@ public class TaskStateHandles implements Serializable {
 		return managedOperatorState;
 	}
 
+	public StreamStateHandle getInFlightState() {
+		return inFlightState;
+	}
+
 	private static List<Collection<OperatorStateHandle>> transform(ChainedStateHandle<OperatorStateHandle> in) {
 		if (null == in) {
 			return Collections.emptyList();
@@ -146,9 +166,14 @@ public class TaskStateHandles implements Serializable {
 				: that.rawOperatorState != null) {
 			return false;
 		}
-		return managedOperatorState != null ?
-				managedOperatorState.equals(that.managedOperatorState)
-				: that.managedOperatorState == null;
+		if (managedOperatorState != null ?
+				!managedOperatorState.equals(that.managedOperatorState)
+				: that.managedOperatorState != null) {
+			return false;
+		}
+		return inFlightState != null ?
+				inFlightState.equals(that.inFlightState)
+				: that.inFlightState == null;
 	}
 
 	@Override
@@ -158,6 +183,7 @@ public class TaskStateHandles implements Serializable {
 		result = 31 * result + (rawKeyedState != null ? rawKeyedState.hashCode() : 0);
 		result = 31 * result + (managedOperatorState != null ? managedOperatorState.hashCode() : 0);
 		result = 31 * result + (rawOperatorState != null ? rawOperatorState.hashCode() : 0);
+		result = 31 * result + (inFlightState != null ? inFlightState.hashCode() : 0);
 		return result;
 	}
 }
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.filesystem;
+
+import org.apache.flink.core.fs.FSDataInputStream;
+import org.apache.flink.core.fs.FileSystem;
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.runtime.state.SharedStateRegistry;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * {@link StreamStateHandle} for state that was written as one segment of a container file, which
+ * holds the small states of many streams of the same checkpoint (see {@link FileStateContainers}).
+ * The state is identified by the path of the container file, the position of the segment in the
+ * file and its length.
+ *
+ * <p>The container file is shared by all segments in it and therefore reference-counted through the
+ * {@link SharedStateRegistry} of the checkpoint coordinator: every segment of a completed checkpoint
+ * holds one reference to the container file, and the file is deleted when the last of these
+ * references is released. The handle does not remember the registry, because the completed
+ * checkpoint stores may discard deserialized copies of the registered checkpoints; the reference is
+ * released with {@link #unregisterSharedState(SharedStateRegistry)}.
+ *
+ * <p>Discarding a segment handle does not delete anything, because the container file may still
+ * hold the state of other tasks. The space of such segments is reclaimed together with the
+ * container file, and container files that are not referenced by any registered segment are
+ * deleted by the {@link FileStateContainerCleaner} of the checkpoint coordinator.
+ */
+public class FileSegmentStateHandle implements StreamStateHandle {
+
+	private static final long serialVersionUID = -3165620378478392735L;
+
+	private static final Logger LOG = LoggerFactory.getLogger(FileSegmentStateHandle.class);
+
+	/** The path to the container file in the filesystem, fully describing the file system */
+	private final Path filePath;
+
+	/** The position of the first byte of the state in the container file */
+	private final long startPosition;
+
+	/** The size of the state in the container file */
+	private final long stateSize;
+
+	/**
+	 * Creates a new handle for the segment of the given container file.
+	 *
+	 * @param filePath The path to the container file that stores the state.
+	 * @param startPosition The position of the state in the container file.
+	 * @param stateSize The size of the state, in bytes.
+	 */
+	public FileSegmentStateHandle(Path filePath, long startPosition, long stateSize) {
+		checkArgument(startPosition >= 0);
+		checkArgument(stateSize >= 0);
+		this.filePath = checkNotNull(filePath);
+		this.startPosition = startPosition;
+		this.stateSize = stateSize;
+	}
+
+	/**
+	 * Gets the path of the container file that stores this handle's state.
+	 */
+	public Path getFilePath() {
+		return filePath;
+	}
+
+	/**
+	 * Gets the position of this handle's state in the container file.
+	 */
+	public long getStartPosition() {
+		return startPosition;
+	}
+
+	/**
+	 * Returns the key under which the container file is registered in a {@link SharedStateRegistry}.
+	 */
+	public String getSharedStateRegistryKey() {
+		return filePath.toString();
+	}
+
+	/**
+	 * Registers a reference to the container file at the given registry. The reference must be
+	 * released with {@link #unregisterSharedState(SharedStateRegistry)}, and the container file
+	 * is deleted with the last reference.
+	 *
+	 * @param registry the registry to register the container file at
+	 */
+	public void registerSharedState(SharedStateRegistry registry) {
+		checkNotNull(registry);
+
+		registry.registerReference(getSharedStateRegistryKey(), new FileStateHandle(filePath, -1));
+	}
+
+	/**
+	 * Releases a reference to the container file at the given registry. The container file is
+	 * deleted when no other registered segment references it.
+	 *
+	 * @param registry the registry at which the container file was registered
+	 */
+	public void unregisterSharedState(SharedStateRegistry registry) {
+		checkNotNull(registry);
+
+		registry.unregisterReference(getSharedStateRegistryKey());
+	}
+
+	@Override
+	public FSDataInputStream openInputStream() throws IOException {
+		FSDataInputStream inStream = FileSystem.get(filePath.toUri()).open(filePath);
+
+		try {
+			inStream.seek(startPosition);
+		} catch (IOException e) {
+			inStream.close();
+			throw e;
+		}
+
+		return new SegmentInputStream(inStream, startPosition, stateSize);
+	}
+
+	/**
+	 * Does not delete anything, because the container file may still hold the state of other
+	 * segments. The references of registered segments to the container file are released with
+	 * {@link #unregisterSharedState(SharedStateRegistry)}.
+	 */
+	@Override
+	public void discardState() throws Exception {
+		LOG.debug("Not discarding the segment of container file {}.", filePath);
+	}
+
+	@Override
+	public long getStateSize() {
+		return stateSize;
+	}
+
+	// ------------------------------------------------------------------------
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof FileSegmentStateHandle)) {
+			return false;
+		}
+
+		FileSegmentStateHandle that = (FileSegmentStateHandle) o;
+		return startPosition == that.startPosition &&
+				stateSize == that.stateSize &&
+				filePath.equals(that.filePath);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = filePath.hashCode();
+		result = 31 * result + (int) (startPosition ^ (startPosition >>> 32));
+		result = 31 * result + (int) (stateSize ^ (stateSize >>> 32));
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("File Segment State: %s [%d bytes @ %d]", filePath, stateSize, startPosition);
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * An input stream that gives a view on one segment of a file. Positions are relative to the
+	 * start of the segment, and the stream ends with the segment.
+	 */
+	private static final class SegmentInputStream extends FSDataInputStream {
+
+		private final FSDataInputStream delegate;
+
+		private final long startPosition;
+
+		private final long endPosition;
+
+		SegmentInputStream(FSDataInputStream delegate, long startPosition, long length) {
+			this.delegate = delegate;
+			this.startPosition = startPosition;
+			this.endPosition = startPosition + length;
+		}
+
+		@Override
+		public void seek(long desired) throws IOException {
+			if (desired < 0 || startPosition + desired > endPosition) {
+				throw new IOException("Cannot seek to " + desired + " in a segment of " +
+						(endPosition - startPosition) + " bytes.");
+			}
+			delegate.seek(startPosition + desired);
+		}
+
+		@Override
+		public long getPos() throws IOException {
+			return delegate.getPos() - startPosition;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return delegate.getPos() < endPosition ? delegate.read() : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			long remaining = endPosition - delegate.getPos();
+			if (remaining <= 0) {
+				return len == 0 ? 0 : -1;
+			}
+			return delegate.read(b, off, (int) Math.min(len, remaining));
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long toSkip = Math.min(n, endPosition - delegate.getPos());
+			return toSkip > 0 ? delegate.skip(toSkip) : 0;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(delegate.available(), Math.max(0, endPosition - delegate.getPos()));
+		}
+
+		@Override
+		public void close() throws IOException {
+			delegate.close();
+		}
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.flink.runtime.state.filesystem;
+
+import org.apache.flink.core.fs.FileStatus;
+import org.apache.flink.core.fs.FileSystem;
+import org.apache.flink.core.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Deletes the container files (see {@link FileStateContainers}) of checkpoints that were aborted.
+ *
+ * <p>A container file is reference-counted through the registered {@link FileSegmentStateHandle
+ * file segments} in it. Segments are only registered when their checkpoint completes, so the
+ * container files that only hold segments of aborted checkpoints, or of states whose acknowledgement
+ * was declined or came too late, would never be deleted. The cleaner therefore looks at the
+ * directories of the checkpoints up to a given checkpoint, and deletes the container files that are
+ * neither referenced by a pending checkpoint nor registered by a completed checkpoint.
+ *
+ * <p>A TaskManager never appends a state to a container file of a checkpoint that is older than the
+ * latest checkpoint of which it wrote a state. Once a checkpoint completed, all TaskManagers wrote a
+ * state of it, so no container files of older checkpoints are created any more, and the directories
+ * of these checkpoints are not looked at again. The first cleanup of a job directory lists all its
+ * checkpoint directories, so that the container files of earlier runs of the job are deleted as well.
+ *
+ * <p>The job directories are learned from the paths of the file segments of acknowledged states.
+ * Deleting the container files blocks on file system operations and must not be called in the
+ * scope of the lock of the checkpoint coordinator.
+ */
+public class FileStateContainerCleaner {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FileStateContainerCleaner.class);
+
+	/** The job directories of the container files, with the id up to which they were finally cleaned up */
+	private final ConcurrentMap<Path, Long> cleanedUpCheckpointIds = new ConcurrentHashMap<>();
+
+	/**
+	 * Tells whether a container file is still referenced by a pending or completed checkpoint.
+	 */
+	public interface ContainerReferences {
+
+		/**
+		 * Returns true if the given container file of the given checkpoint must not be deleted.
+		 */
+		boolean isReferenced(long checkpointId, Path containerFile);
+	}
+
+	/**
+	 * Remembers the job directories of the container files of the given file segments.
+	 *
+	 * @param fileSegments The file segments of an acknowledged state.
+	 */
+	public void addJobDirectories(Collection<FileSegmentStateHandle> fileSegments) {
+		for (FileSegmentStateHandle fileSegment : fileSegments) {
+			Path checkpointDirectory = fileSegment.getFilePath().getParent();
+			Path jobDirectory = checkpointDirectory != null ? checkpointDirectory.getParent() : null;
+
+			if (jobDirectory != null) {
+				cleanedUpCheckpointIds.putIfAbsent(jobDirectory, -1L);
+			}
+		}
+	}
+
+	/**
+	 * Deletes the container files of the checkpoints up to the given checkpoint that are not
+	 * referenced any more.
+	 *
+	 * @param upToCheckpointId The latest checkpoint whose container files are deleted.
+	 * @param isCompleted True if the given checkpoint completed, so that the container files of
+	 *                    the checkpoints up to it do not need to be looked at again.
+	 * @param references Tells which container files must not be deleted.
+	 */
+	public synchronized void deleteUnreferencedContainers(
+			long upToCheckpointId,
+			boolean isCompleted,
+			ContainerReferences references) {
+
+		for (Map.Entry<Path, Long> entry : cleanedUpCheckpointIds.entrySet()) {
+			Path jobDirectory = entry.getKey();
+			long cleanedUpCheckpointId = entry.getValue();
+
+			if (cleanedUpCheckpointId >= upToCheckpointId) {
+				continue;
+			}
+
+			try {
+				FileSystem fs = jobDirectory.getFileSystem();
+
+				for (long checkpointId : getCheckpointIds(fs, jobDirectory, cleanedUpCheckpointId, upToCheckpointId)) {
+					deleteUnreferencedContainers(fs, jobDirectory, checkpointId, references);
+				}
+
+				if (isCompleted) {
+					cleanedUpCheckpointIds.put(jobDirectory, upToCheckpointId);
+				}
+			} catch (Exception e) {
+				LOG.warn("Could not delete the container files of the checkpoints up to {} in {}.",
+						upToCheckpointId, jobDirectory, e);
+			}
+		}
+	}
+
+	private static List<Long> getCheckpointIds(
+			FileSystem fs,
+			Path jobDirectory,
+			long cleanedUpCheckpointId,
+			long upToCheckpointId) throws IOException {
+
+		List<Long> checkpointIds = new ArrayList<>();
+
+		if (cleanedUpCheckpointId < 0) {
+			// the first cleanup of the job directory also finds the checkpoints of earlier runs
+			FileStatus[] statuses = fs.listStatus(jobDirectory);
+			if (statuses != null) {
+				for (FileStatus status : statuses) {
+					long checkpointId = parseCheckpointId(status.getPath().getName());
+					if (status.isDir() && checkpointId > 0 && checkpointId <= upToCheckpointId) {
+						checkpointIds.add(checkpointId);
+					}
+				}
+			}
+		} else {
+			for (long checkpointId = cleanedUpCheckpointId + 1; checkpointId <= upToCheckpointId; ++checkpointId) {
+				checkpointIds.add(checkpointId);
+			}
+		}
+
+		return checkpointIds;
+	}
+
+	private static void deleteUnreferencedContainers(
+			FileSystem fs,
+			Path jobDirectory,
+			long checkpointId,
+			ContainerReferences references) throws IOException {
+
+		Path checkpointDirectory = new Path(jobDirectory, FsCheckpointStreamFactory.CHECKPOINT_DIR_PREFIX + checkpointId);
+		if (!fs.exists(checkpointDirectory)) {
+			return;
+		}
+
+		FileStatus[] statuses = fs.listStatus(checkpointDirectory);
+		if (statuses == null) {
+			return;
+		}
+
+		for (FileStatus status : statuses) {
+			// the path is built like the path of the file segments, so that it can be compared to them
+			Path filePath = new Path(checkpointDirectory, status.getPath().getName());
+
+			if (filePath.getName().startsWith(FileStateContainers.CONTAINER_FILE_PREFIX) &&
+					!references.isReferenced(checkpointId, filePath)) {
+
+				LOG.debug("Deleting the unreferenced container file {} of checkpoint {}.", filePath, checkpointId);
+				fs.delete(filePath, false);
+			}
+		}
+	}
+
+	private static long parseCheckpointId(String checkpointDirectoryName) {
+		if (checkpointDirectoryName.startsWith(FsCheckpointStreamFactory.CHECKPOINT_DIR_PREFIX)) {
+			try {
+				return Long.parseLong(
+						checkpointDirectoryName.substring(FsCheckpointStreamFactory.CHECKPOINT_DIR_PREFIX.length()));
+			} catch (NumberFormatException ignored) {
+				// not a checkpoint directory
+			}
+		}
+
+		return -1L;
+	}
+}
@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.filesystem;
+
+import org.apache.flink.core.fs.FSDataOutputStream;
+import org.apache.flink.core.fs.FileSystem;
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.runtime.util.ExecutorThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The container files into which the {@link FsCheckpointStreamFactory FsCheckpointStreamFactories}
+ * of one TaskManager (JVM) write small states. Instead of creating one file per state, all small
+ * states of the same checkpoint of a job are appended to a shared container file, and each state is
+ * referenced by a {@link FileSegmentStateHandle} with the position and length of its segment.
+ *
+ * <p>There is at most one open container file per job checkpoint directory. It is closed when a
+ * state of a later checkpoint of the job arrives, when it exceeds {@link #MAX_CONTAINER_FILE_SIZE},
+ * or when it did not receive a state for {@link #IDLE_CONTAINER_TIMEOUT_MILLIS}. A container file
+ * only holds states of one checkpoint, so that it can be deleted together with that checkpoint.
+ * States of a checkpoint that is older than the latest checkpoint of the job never go to a container
+ * file, so that the {@link FileStateContainerCleaner} can delete the container files of aborted
+ * checkpoints once a later checkpoint completed.
+ *
+ * <p>Every state is flushed and synced before its handle is returned, so the file system must make
+ * synced data of files that are still open visible to readers, as for example HDFS does.
+ */
+final class FileStateContainers {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FileStateContainers.class);
+
+	/** The size after which a container file is closed and a new one is started */
+	static final long MAX_CONTAINER_FILE_SIZE = 256L * 1024L * 1024L;
+
+	/** The time after which a container file that did not receive a state is closed */
+	static final long IDLE_CONTAINER_TIMEOUT_MILLIS = 60 * 1000L;
+
+	/** The prefix of the names of the container files */
+	static final String CONTAINER_FILE_PREFIX = "container-";
+
+	/** The open container files, by the job directory of the checkpoints */
+	private static final Map<Path, Container> OPEN_CONTAINERS = new HashMap<>();
+
+	/** The latest checkpoint id of which a state was appended, by the job directory of the checkpoints */
+	private static final Map<Path, Long> LATEST_CHECKPOINT_IDS = new HashMap<>();
+
+	/** Closes idle container files, started with the first container file */
+	private static ScheduledExecutorService idleContainerCloser;
+
+	private FileStateContainers() {}
+
+	/**
+	 * Appends the given state to the container file of the checkpoint.
+	 *
+	 * @param fs The file system of the checkpoint directory.
+	 * @param jobDirectory The directory of the job, which holds the directories of all checkpoints.
+	 * @param checkpointDirectory The directory of the checkpoint.
+	 * @param checkpointId The id of the checkpoint.
+	 * @param data The buffer that holds the state.
+	 * @param length The length of the state in the buffer.
+	 *
+	 * @return The handle to the segment of the container file, or null if the state belongs to an
+	 *         older checkpoint than the latest one of which a state was appended.
+	 * @throws IOException Thrown, if the state could not be written to the container file.
+	 */
+	@Nullable
+	static FileSegmentStateHandle append(
+			FileSystem fs,
+			Path jobDirectory,
+			Path checkpointDirectory,
+			long checkpointId,
+			byte[] data,
+			int length) throws IOException {
+
+		while (true) {
+			Container container;
+
+			synchronized (OPEN_CONTAINERS) {
+				Long latestCheckpointId = LATEST_CHECKPOINT_IDS.get(jobDirectory);
+				if (latestCheckpointId != null && latestCheckpointId > checkpointId) {
+					// late state of an older checkpoint, which must neither go into the container
+					// file of the newer checkpoint nor into a container that is created after the
+					// older checkpoint may have been aborted and cleaned up
+					return null;
+				}
+				LATEST_CHECKPOINT_IDS.put(jobDirectory, checkpointId);
+
+				container = OPEN_CONTAINERS.get(jobDirectory);
+
+				if (container != null) {
+					if (container.checkpointId < checkpointId || container.isFull()) {
+						OPEN_CONTAINERS.remove(jobDirectory);
+						container.close();
+						container = null;
+					}
+				}
+
+				if (container == null) {
+					container = Container.create(fs, checkpointDirectory, checkpointId);
+					OPEN_CONTAINERS.put(jobDirectory, container);
+					startIdleContainerCloser();
+				}
+			}
+
+			FileSegmentStateHandle handle;
+			try {
+				handle = container.append(data, length);
+			} catch (IOException e) {
+				synchronized (OPEN_CONTAINERS) {
+					if (OPEN_CONTAINERS.get(jobDirectory) == container) {
+						OPEN_CONTAINERS.remove(jobDirectory);
+					}
+				}
+				container.close();
+				throw e;
+			}
+
+			// a null handle means that the container was closed concurrently, try again
+			if (handle != null) {
+				return handle;
+			}
+		}
+	}
+
+	private static void startIdleContainerCloser() {
+		assert Thread.holdsLock(OPEN_CONTAINERS);
+
+		if (idleContainerCloser == null) {
+			idleContainerCloser = Executors.newSingleThreadScheduledExecutor(
+					new ExecutorThreadFactory("FileStateContainerCloser"));
+
+			idleContainerCloser.scheduleWithFixedDelay(
+					new Runnable() {
+						@Override
+						public void run() {
+							closeIdleContainers();
+						}
+					},
+					IDLE_CONTAINER_TIMEOUT_MILLIS / 2,
+					IDLE_CONTAINER_TIMEOUT_MILLIS / 2,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private static void closeIdleContainers() {
+		long idleSince = System.currentTimeMillis() - IDLE_CONTAINER_TIMEOUT_MILLIS;
+
+		synchronized (OPEN_CONTAINERS) {
+			Iterator<Container> containers = OPEN_CONTAINERS.values().iterator();
+			while (containers.hasNext()) {
+				Container container = containers.next();
+				if (container.getLastAppendTime() < idleSince) {
+					containers.remove();
+					container.close();
+				}
+			}
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * One open container file.
+	 */
+	private static final class Container {
+
+		private final long checkpointId;
+
+		private final Path filePath;
+
+		private final FSDataOutputStream outStream;
+
+		private long position;
+
+		private volatile long lastAppendTime;
+
+		private boolean closed;
+
+		private Container(long checkpointId, Path filePath, FSDataOutputStream outStream) {
+			this.checkpointId = checkpointId;
+			this.filePath = filePath;
+			this.outStream = outStream;
+			this.lastAppendTime = System.currentTimeMillis();
+		}
+
+		static Container create(FileSystem fs, Path checkpointDirectory, long checkpointId) throws IOException {
+			fs.mkdirs(checkpointDirectory);
+
+			Exception latestException = null;
+			for (int attempt = 0; attempt < 10; attempt++) {
+				Path filePath = new Path(checkpointDirectory, CONTAINER_FILE_PREFIX + UUID.randomUUID().toString());
+				try {
+					return new Container(checkpointId, filePath, fs.create(filePath, false));
+				} catch (Exception e) {
+					latestException = e;
+				}
+			}
+
+			throw new IOException("Could not open a container file for the state of checkpoint " + checkpointId,
+					latestException);
+		}
+
+		/**
+		 * Appends the state and makes it durable. Returns null if the container is already closed.
+		 */
+		synchronized FileSegmentStateHandle append(byte[] data, int length) throws IOException {
+			if (closed) {
+				return null;
+			}
+
+			long startPosition = position;
+
+			outStream.write(data, 0, length);
+			outStream.flush();
+			outStream.sync();
+
+			position += length;
+			lastAppendTime = System.currentTimeMillis();
+
+			return new FileSegmentStateHandle(filePath, startPosition, length);
+		}
+
+		synchronized boolean isFull() {
+			return position >= MAX_CONTAINER_FILE_SIZE;
+		}
+
+		long getLastAppendTime() {
+			return lastAppendTime;
+		}
+
+		synchronized void close() {
+			if (!closed) {
+				closed = true;
+				try {
+					outStream.close();
+				} catch (Throwable t) {
+					LOG.warn("Could not close the state container file {}.", filePath, t);
+				}
+			}
+		}
+	}
+}
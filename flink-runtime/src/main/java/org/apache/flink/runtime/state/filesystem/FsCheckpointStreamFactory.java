@@ -43,6 +43,11 @@ import java.util.UUID;
  * files for each state, for example:
  *
  * {@code hdfs://namenode:port/flink-checkpoints/<job-id>/chk-17/6ba7b810-9dad-11d1-80b4-00c04fd430c8 }
+ *
+ * <p>Optionally, states up to a container state threshold are not written to files of their own, but
+ * appended to container files that are shared by all streams of the same checkpoint in the TaskManager
+ * (see {@link FileStateContainers}). This reduces the number of files that are created and deleted per
+ * checkpoint by roughly the number of stateful tasks per TaskManager.
  */
 public class FsCheckpointStreamFactory implements CheckpointStreamFactory {
 
@@ -51,12 +56,21 @@ public class FsCheckpointStreamFactory implements CheckpointStreamFactory {
 	/** Maximum size of state that is stored with the metadata, rather than in files */
 	private static final int MAX_FILE_STATE_THRESHOLD = 1024 * 1024;
 
+	/** Maximum size of state that is stored in shared container files, rather than in files of its own */
+	static final int MAX_CONTAINER_STATE_THRESHOLD = 1024 * 1024;
+
+	/** The prefix of the names of the directories of the checkpoints in the job directory */
+	static final String CHECKPOINT_DIR_PREFIX = "chk-";
+
 	/** Default size for the write buffer */
 	private static final int DEFAULT_WRITE_BUFFER_SIZE = 4096;
 
 	/** State below this size will be stored as part of the metadata, rather than in files */
 	private final int fileStateThreshold;
 
+	/** State up to this size will be stored in shared container files, 0 if containers are disabled */
+	private final int containerStateThreshold;
+
 	/** The directory (job specific) into this initialized instance of the backend stores its data */
 	private final Path checkpointDirectory;
 
@@ -86,6 +100,29 @@ public class FsCheckpointStreamFactory implements CheckpointStreamFactory {
 			JobID jobId,
 			int fileStateSizeThreshold) throws IOException {
 
+		this(checkpointDataUri, jobId, fileStateSizeThreshold, 0);
+	}
+
+	/**
+	 * Creates a new state backend that stores its checkpoint data in the file system and location
+	 * defined by the given URI, and small states in container files that are shared by all streams
+	 * of the same checkpoint in this TaskManager.
+	 *
+	 * @param checkpointDataUri The URI describing the filesystem (scheme and optionally authority),
+	 *                          and the path to the checkpoint data directory.
+	 * @param fileStateSizeThreshold State up to this size will be stored as part of the metadata,
+	 *                             rather than in files
+	 * @param containerStateSizeThreshold State up to this size will be stored in shared container
+	 *                                    files, rather than in files of its own. 0 disables containers.
+	 *
+	 * @throws IOException Thrown, if no file system can be found for the scheme in the URI.
+	 */
+	public FsCheckpointStreamFactory(
+			Path checkpointDataUri,
+			JobID jobId,
+			int fileStateSizeThreshold,
+			int containerStateSizeThreshold) throws IOException {
+
 		if (fileStateSizeThreshold < 0) {
 			throw new IllegalArgumentException("The threshold for file state size must be zero or larger.");
 		}
@@ -93,7 +130,15 @@ public class FsCheckpointStreamFactory implements CheckpointStreamFactory {
 			throw new IllegalArgumentException("The threshold for file state size cannot be larger than " +
 				MAX_FILE_STATE_THRESHOLD);
 		}
+		if (containerStateSizeThreshold < 0) {
+			throw new IllegalArgumentException("The threshold for container state size must be zero or larger.");
+		}
+		if (containerStateSizeThreshold > MAX_CONTAINER_STATE_THRESHOLD) {
+			throw new IllegalArgumentException("The threshold for container state size cannot be larger than " +
+				MAX_CONTAINER_STATE_THRESHOLD);
+		}
 		this.fileStateThreshold = fileStateSizeThreshold;
+		this.containerStateThreshold = containerStateSizeThreshold;
 
 		Path basePath = checkpointDataUri;
 		filesystem = basePath.getFileSystem();
@@ -113,8 +158,20 @@ public class FsCheckpointStreamFactory implements CheckpointStreamFactory {
 		checkFileSystemInitialized();
 
 		Path checkpointDir = createCheckpointDirPath(checkpointDirectory, checkpointID);
-		int bufferSize = Math.max(DEFAULT_WRITE_BUFFER_SIZE, fileStateThreshold);
-		return new FsCheckpointStateOutputStream(checkpointDir, filesystem, bufferSize, fileStateThreshold);
+
+		// streams that are not written for a checkpoint (id 0, e.g. the write-ahead log of the
+		// GenericWriteAheadSink) outlive the checkpoints and never go to container files
+		if (containerStateThreshold > 0 && checkpointID > 0) {
+			// only writes shorter than half the buffer size are buffered, so the buffer must be more
+			// than twice the container threshold for a state up to that size to stay in the buffer
+			int bufferSize = Math.max(
+					Math.max(DEFAULT_WRITE_BUFFER_SIZE, fileStateThreshold), 2 * (containerStateThreshold + 1));
+			return new FsCheckpointStateOutputStream(checkpointDir, filesystem, bufferSize, fileStateThreshold,
+					containerStateThreshold, checkpointDirectory, checkpointID);
+		} else {
+			int bufferSize = Math.max(DEFAULT_WRITE_BUFFER_SIZE, fileStateThreshold);
+			return new FsCheckpointStateOutputStream(checkpointDir, filesystem, bufferSize, fileStateThreshold);
+		}
 	}
 
 	// ------------------------------------------------------------------------
@@ -134,7 +191,7 @@ public class FsCheckpointStreamFactory implements CheckpointStreamFactory {
 	}
 
 	protected Path createCheckpointDirPath(Path checkpointDirectory, long checkpointID) {
-		return new Path(checkpointDirectory, "chk-" + checkpointID);
+		return new Path(checkpointDirectory, CHECKPOINT_DIR_PREFIX + checkpointID);
 	}
 
 	@Override
@@ -161,6 +218,14 @@ public class FsCheckpointStreamFactory implements CheckpointStreamFactory {
 
 		private final FileSystem fs;
 
+		/** State up to this size goes to a shared container file, 0 if containers are disabled */
+		private final int containerStateThreshold;
+
+		/** The job directory that identifies the container files, null if containers are disabled */
+		private final Path containerJobDirectory;
+
+		private final long checkpointId;
+
 		private Path statePath;
 
 		private volatile boolean closed;
@@ -169,7 +234,15 @@ public class FsCheckpointStreamFactory implements CheckpointStreamFactory {
 					Path basePath, FileSystem fs,
 					int bufferSize, int localStateThreshold)
 		{
-			if (bufferSize < localStateThreshold) {
+			this(basePath, fs, bufferSize, localStateThreshold, 0, null, -1L);
+		}
+
+		public FsCheckpointStateOutputStream(
+					Path basePath, FileSystem fs,
+					int bufferSize, int localStateThreshold,
+					int containerStateThreshold, Path containerJobDirectory, long checkpointId)
+		{
+			if (bufferSize < localStateThreshold || bufferSize < containerStateThreshold) {
 				throw new IllegalArgumentException();
 			}
 
@@ -177,6 +250,9 @@ public class FsCheckpointStreamFactory implements CheckpointStreamFactory {
 			this.fs = fs;
 			this.writeBuffer = new byte[bufferSize];
 			this.localStateThreshold = localStateThreshold;
+			this.containerStateThreshold = containerJobDirectory != null ? containerStateThreshold : 0;
+			this.containerJobDirectory = containerJobDirectory;
+			this.checkpointId = checkpointId;
 		}
 
 		@Override
@@ -304,6 +380,15 @@ public class FsCheckpointStreamFactory implements CheckpointStreamFactory {
 						return new ByteStreamStateHandle(createStatePath().toString(), bytes);
 					}
 					else {
+						if (outStream == null && pos <= containerStateThreshold) {
+							FileSegmentStateHandle segmentHandle = appendToContainer();
+							if (segmentHandle != null) {
+								closed = true;
+								pos = writeBuffer.length;
+								return segmentHandle;
+							}
+						}
+
 						try {
 							flush();
 
@@ -347,6 +432,22 @@ public class FsCheckpointStreamFactory implements CheckpointStreamFactory {
 			}
 		}
 
+		/**
+		 * Appends the buffered state to the shared container file of the checkpoint.
+		 *
+		 * @return The handle to the segment of the container file, or null if the state must be
+		 *         written to a file of its own.
+		 */
+		private FileSegmentStateHandle appendToContainer() {
+			try {
+				return FileStateContainers.append(fs, containerJobDirectory, basePath, checkpointId, writeBuffer, pos);
+			} catch (Exception e) {
+				LOG.warn("Could not append the state to a container file in {}. Writing it to a file of its own.",
+						basePath, e);
+				return null;
+			}
+		}
+
 		private Path createStatePath() {
 			return new Path(basePath, UUID.randomUUID().toString());
 		}
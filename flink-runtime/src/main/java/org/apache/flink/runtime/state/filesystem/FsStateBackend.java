@@ -20,6 +20,7 @@ package org.apache.flink.runtime.state.filesystem;
 
 import org.apache.flink.api.common.JobID;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.configuration.TaskManagerOptions;
 import org.apache.flink.core.fs.FileSystem;
 import org.apache.flink.core.fs.Path;
 import org.apache.flink.runtime.execution.Environment;
@@ -27,7 +28,10 @@ import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
 import org.apache.flink.runtime.state.AbstractStateBackend;
 import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.DefaultOperatorStateBackend;
 import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.OperatorStateBackend;
+import org.apache.flink.runtime.state.StateTransferPool;
 import org.apache.flink.runtime.state.heap.HeapKeyedStateBackend;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +74,15 @@ public class FsStateBackend extends AbstractStateBackend {
 	/** Switch to chose between synchronous and asynchronous snapshots */
 	private final boolean asynchronousSnapshots;
 
+	/** True if checkpoints of keyed state only write the state that changed since the last completed checkpoint */
+	private final boolean incrementalCheckpoints;
+
+	/** State up to this size is stored in container files shared by the tasks of a TaskManager, 0 to disable */
+	private int containerStateThreshold;
+
+	/** The number of parts of a full snapshot of keyed state, which are transferred concurrently */
+	private int numberOfTransferParts = 1;
+
 	/**
 	 * Creates a new state backend that stores its checkpoint data in the file system and location
 	 * defined by the given URI.
@@ -238,14 +251,45 @@ public class FsStateBackend extends AbstractStateBackend {
 			int fileStateSizeThreshold,
 			boolean asynchronousSnapshots) throws IOException {
 
+		this(checkpointDataUri, fileStateSizeThreshold, asynchronousSnapshots, false);
+	}
+
+	/**
+	 * Creates a new state backend that stores its checkpoint data in the file system and location
+	 * defined by the given URI.
+	 *
+	 * <p>With incremental checkpoints, a checkpoint of keyed state only writes the state that was
+	 * modified or removed since the last completed checkpoint, on top of the files of earlier
+	 * checkpoints. Restores replay a chain of at most a few deltas on top of a full snapshot.
+	 * Incremental checkpoints require asynchronous snapshots. Savepoints are always full snapshots,
+	 * and incremental checkpoints can neither be externalized nor restored with a different parallelism.
+	 *
+	 * @param checkpointDataUri The URI describing the filesystem (scheme and optionally authority),
+	 *                          and the path to the checkpoint data directory.
+	 * @param fileStateSizeThreshold State up to this size will be stored as part of the metadata,
+	 *                             rather than in files
+	 * @param asynchronousSnapshots Switch to enable asynchronous snapshots.
+	 * @param incrementalCheckpoints Switch to enable incremental checkpoints of keyed state.
+	 *
+	 * @throws IOException Thrown, if no file system can be found for the scheme in the URI.
+	 */
+	public FsStateBackend(
+			URI checkpointDataUri,
+			int fileStateSizeThreshold,
+			boolean asynchronousSnapshots,
+			boolean incrementalCheckpoints) throws IOException {
+
 		checkArgument(fileStateSizeThreshold >= 0, "The threshold for file state size must be zero or larger.");
 		checkArgument(fileStateSizeThreshold <= MAX_FILE_STATE_THRESHOLD,
 				"The threshold for file state size cannot be larger than %s", MAX_FILE_STATE_THRESHOLD);
+		checkArgument(asynchronousSnapshots || !incrementalCheckpoints,
+				"Incremental checkpoints require asynchronous snapshots.");
 
 		this.fileStateThreshold = fileStateSizeThreshold;
 		this.basePath = validateAndNormalizeUri(checkpointDataUri);
 
 		this.asynchronousSnapshots = asynchronousSnapshots;
+		this.incrementalCheckpoints = incrementalCheckpoints;
 	}
 
 	/**
@@ -271,13 +315,78 @@ public class FsStateBackend extends AbstractStateBackend {
 		return fileStateThreshold;
 	}
 
+	/**
+	 * Gets whether checkpoints of keyed state only write the state that changed since the last
+	 * completed checkpoint.
+	 *
+	 * @return True, if incremental checkpoints are enabled.
+	 */
+	public boolean isIncrementalCheckpointsEnabled() {
+		return incrementalCheckpoints;
+	}
+
+	/**
+	 * Sets the threshold up to which state is appended to container files, rather than written to
+	 * files of its own. A container file is shared by all tasks of a TaskManager that write state
+	 * for the same checkpoint, which reduces the number of files that are created and deleted per
+	 * checkpoint. The container files are reference-counted and deleted with the last checkpoint
+	 * state that they hold. State below the {@link #getMinFileSizeThreshold() file size threshold}
+	 * is still stored as part of the metadata.
+	 *
+	 * <p>Every state is synced to the container file before it is acknowledged, while the file is
+	 * still open. The file system must therefore make synced data visible to readers before the file
+	 * is closed, as HDFS does. By default, this threshold is 0, which disables the container files.
+	 *
+	 * @param containerStateThreshold The container state size threshold, in bytes.
+	 */
+	public void setContainerStateThreshold(int containerStateThreshold) {
+		checkArgument(containerStateThreshold >= 0, "The threshold for container state size must be zero or larger.");
+		checkArgument(containerStateThreshold <= FsCheckpointStreamFactory.MAX_CONTAINER_STATE_THRESHOLD,
+				"The threshold for container state size cannot be larger than %s",
+				FsCheckpointStreamFactory.MAX_CONTAINER_STATE_THRESHOLD);
+		this.containerStateThreshold = containerStateThreshold;
+	}
+
+	/**
+	 * Gets the threshold up to which state is appended to container files, rather than written to
+	 * files of its own. 0 if container files are disabled.
+	 *
+	 * @return The container state size threshold, in bytes.
+	 */
+	public int getContainerStateThreshold() {
+		return containerStateThreshold;
+	}
+
+	/**
+	 * Sets the number of parts that a full snapshot of keyed state is split into by key-group ranges. Each
+	 * part is written to a file of its own, and the parts are uploaded concurrently by the
+	 * {@link StateTransferPool} of the TaskManager, whose number of threads is configured with
+	 * {@link TaskManagerOptions#STATE_TRANSFER_THREADS}. When restoring, that many parts are read ahead.
+	 * By default, this is 1, which writes each snapshot to a single file.
+	 *
+	 * @param numberOfTransferParts The number of parts of a snapshot.
+	 */
+	public void setNumberOfTransferParts(int numberOfTransferParts) {
+		checkArgument(numberOfTransferParts >= 1, "The number of transfer parts must be at least 1.");
+		this.numberOfTransferParts = numberOfTransferParts;
+	}
+
+	/**
+	 * Gets the number of parts that a full snapshot of keyed state is split into.
+	 *
+	 * @return The number of transfer parts.
+	 */
+	public int getNumberOfTransferParts() {
+		return numberOfTransferParts;
+	}
+
 	// ------------------------------------------------------------------------
 	//  initialization and cleanup
 	// ------------------------------------------------------------------------
 
 	@Override
 	public CheckpointStreamFactory createStreamFactory(JobID jobId, String operatorIdentifier) throws IOException {
-		return new FsCheckpointStreamFactory(basePath, jobId, fileStateThreshold);
+		return new FsCheckpointStreamFactory(basePath, jobId, fileStateThreshold, containerStateThreshold);
 	}
 
 	@Override
@@ -299,14 +408,29 @@ public class FsStateBackend extends AbstractStateBackend {
 			KeyGroupRange keyGroupRange,
 			TaskKvStateRegistry kvStateRegistry) throws IOException {
 
-		return new HeapKeyedStateBackend<>(
+		HeapKeyedStateBackend<K> keyedStateBackend = new HeapKeyedStateBackend<>(
 				kvStateRegistry,
 				keySerializer,
 				env.getUserClassLoader(),
 				numberOfKeyGroups,
 				keyGroupRange,
 				asynchronousSnapshots,
+				incrementalCheckpoints,
 				env.getExecutionConfig());
+
+		keyedStateBackend.setNumberOfTransferParts(numberOfTransferParts, env.getStateTransferPool());
+		return keyedStateBackend;
+	}
+
+	@Override
+	public OperatorStateBackend createOperatorStateBackend(
+			Environment env,
+			String operatorIdentifier) throws Exception {
+
+		return new DefaultOperatorStateBackend(
+				env.getUserClassLoader(),
+				env.getExecutionConfig(),
+				asynchronousSnapshots);
 	}
 
 	@Override
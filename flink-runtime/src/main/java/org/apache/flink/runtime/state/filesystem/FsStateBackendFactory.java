@@ -38,12 +38,27 @@ public class FsStateBackendFactory implements StateBackendFactory<FsStateBackend
 	 * rather than in files */
 	public static final String MEMORY_THRESHOLD_CONF_KEY = "state.backend.fs.memory-threshold";
 
+	/** The key under which the config stores whether checkpoints of keyed state are incremental.
+	 * Incremental checkpoints also enable asynchronous snapshots */
+	public static final String INCREMENTAL_CHECKPOINTS_CONF_KEY = "state.backend.fs.checkpoints.incremental";
+
+	/** The key under which the config stores the threshold for state to be stored in container files
+	 * shared by the tasks of a TaskManager, rather than in files of its own */
+	public static final String CONTAINER_THRESHOLD_CONF_KEY = "state.backend.fs.container-threshold";
+
+	/** The key under which the config stores the number of parts that a snapshot of keyed state is
+	 * split into, which are transferred concurrently */
+	public static final String TRANSFER_PARTS_CONF_KEY = "state.backend.fs.checkpoints.transfer-parts";
+
 
 	@Override
 	public FsStateBackend createFromConfig(Configuration config) throws IllegalConfigurationException {
 		final String checkpointDirURI = config.getString(CHECKPOINT_DIRECTORY_URI_CONF_KEY, null);
 		final int memoryThreshold = config.getInteger(
 			MEMORY_THRESHOLD_CONF_KEY, FsStateBackend.DEFAULT_FILE_STATE_THRESHOLD);
+		final boolean incrementalCheckpoints = config.getBoolean(INCREMENTAL_CHECKPOINTS_CONF_KEY, false);
+		final int containerThreshold = config.getInteger(CONTAINER_THRESHOLD_CONF_KEY, 0);
+		final int transferParts = config.getInteger(TRANSFER_PARTS_CONF_KEY, 1);
 
 		if (checkpointDirURI == null) {
 			throw new IllegalConfigurationException(
@@ -53,7 +68,11 @@ public class FsStateBackendFactory implements StateBackendFactory<FsStateBackend
 
 		try {
 			Path path = new Path(checkpointDirURI);
-			return new FsStateBackend(path.toUri(), memoryThreshold);
+			FsStateBackend backend =
+					new FsStateBackend(path.toUri(), memoryThreshold, incrementalCheckpoints, incrementalCheckpoints);
+			backend.setContainerStateThreshold(containerThreshold);
+			backend.setNumberOfTransferParts(transferParts);
+			return backend;
 		}
 		catch (IOException | IllegalArgumentException e) {
 			throw new IllegalConfigurationException("Invalid configuration for the state backend", e);
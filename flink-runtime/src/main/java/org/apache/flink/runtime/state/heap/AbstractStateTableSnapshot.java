@@ -19,8 +19,12 @@
 package org.apache.flink.runtime.state.heap;
 
 import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.util.Preconditions;
 
+import java.io.IOException;
+
 /**
  * Abstract class to encapsulate the logic to take snapshots of {@link StateTable} implementations and also defines how
  * the snapshot is written during the serialization phase of checkpointing.
@@ -42,6 +46,58 @@ abstract class AbstractStateTableSnapshot<K, N, S, T extends StateTable<K, N, S>
 		this.owningStateTable = Preconditions.checkNotNull(owningStateTable);
 	}
 
+	@Override
+	public void writeMappingsInKeyGroup(DataOutputView dov, int keyGroupId) throws IOException {
+		writeMappingsInKeyGroup(
+				dov,
+				keyGroupId,
+				owningStateTable.keyContext.getKeySerializer(),
+				owningStateTable.metaInfo.getNamespaceSerializer(),
+				owningStateTable.metaInfo.getStateSerializer());
+	}
+
+	/**
+	 * Writes the data for the specified key-group to the output, with the given serializers.
+	 *
+	 * @param dov the output
+	 * @param keyGroupId the key-group to write
+	 * @param keySerializer the serializer for the keys
+	 * @param namespaceSerializer the serializer for the namespaces
+	 * @param stateSerializer the serializer for the states
+	 * @throws IOException on write related problems
+	 */
+	abstract void writeMappingsInKeyGroup(
+			DataOutputView dov,
+			int keyGroupId,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			TypeSerializer<S> stateSerializer) throws IOException;
+
+	@Override
+	public StateTableSnapshot createConcurrentWriter() {
+		final TypeSerializer<K> keySerializer = owningStateTable.keyContext.getKeySerializer().duplicate();
+		final TypeSerializer<N> namespaceSerializer = owningStateTable.metaInfo.getNamespaceSerializer().duplicate();
+		final TypeSerializer<S> stateSerializer = owningStateTable.metaInfo.getStateSerializer().duplicate();
+
+		return new StateTableSnapshot() {
+
+			@Override
+			public void writeMappingsInKeyGroup(DataOutputView dov, int keyGroupId) throws IOException {
+				AbstractStateTableSnapshot.this.writeMappingsInKeyGroup(
+						dov, keyGroupId, keySerializer, namespaceSerializer, stateSerializer);
+			}
+
+			@Override
+			public StateTableSnapshot createConcurrentWriter() {
+				return AbstractStateTableSnapshot.this.createConcurrentWriter();
+			}
+
+			@Override
+			public void release() {
+			}
+		};
+	}
+
 	/**
 	 * Optional hook to release resources for this snapshot at the end of its lifecycle.
 	 */
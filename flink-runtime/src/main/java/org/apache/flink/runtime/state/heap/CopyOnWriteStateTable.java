@@ -20,6 +20,7 @@ package org.apache.flink.runtime.state.heap;
 
 import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.runtime.state.RegisteredBackendStateMetaInfo;
 import org.apache.flink.runtime.state.StateTransformationFunction;
 import org.apache.flink.util.MathUtils;
@@ -27,9 +28,13 @@ import org.apache.flink.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.ConcurrentModificationException;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.TreeSet;
@@ -80,6 +85,11 @@ import java.util.TreeSet;
  * 9) We could consider smaller types (e.g. short) for the version counting and think about some reset strategy before
  * overflows, when there is no snapshot running. However, this would have to touch all entries in the map.
  * <p>
+ * 10) Every entry remembers the table version of its last modification, and the table can optionally remember the
+ * versions at which composite keys were removed. This allows delta snapshots that only contain the entries that were
+ * modified or removed since an earlier snapshot (see {@link #createDeltaSnapshot(int)}). Reads count as modifications,
+ * because users can modify the returned state objects in place.
+ * <p>
  * This class was initially based on the {@link java.util.HashMap} implementation of the Android JDK, but is now heavily
  * customized towards the use case of table for state entries.
  *
@@ -190,6 +200,12 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 	 */
 	private int modCount;
 
+	/**
+	 * The composite keys that were removed from this table, mapped to the table version of their removal. This is only
+	 * maintained if the table was created for delta snapshots, otherwise it is null.
+	 */
+	private final HashMap<Tuple2<K, N>, Integer> removedEntries;
+
 	/**
 	 * Constructs a new {@code StateTable} with default capacity of 1024.
 	 *
@@ -197,21 +213,42 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 	 * @param metaInfo   the meta information, including the type serializer for state copy-on-write.
 	 */
 	CopyOnWriteStateTable(InternalKeyContext<K> keyContext, RegisteredBackendStateMetaInfo<N, S> metaInfo) {
-		this(keyContext, metaInfo, 1024);
+		this(keyContext, metaInfo, false);
+	}
+
+	/**
+	 * Constructs a new {@code StateTable} with default capacity of 1024.
+	 *
+	 * @param keyContext           the key context.
+	 * @param metaInfo             the meta information, including the type serializer for state copy-on-write.
+	 * @param trackRemovedEntries  true if the table remembers removed composite keys for delta snapshots.
+	 */
+	CopyOnWriteStateTable(
+			InternalKeyContext<K> keyContext,
+			RegisteredBackendStateMetaInfo<N, S> metaInfo,
+			boolean trackRemovedEntries) {
+		this(keyContext, metaInfo, 1024, trackRemovedEntries);
 	}
 
 	/**
 	 * Constructs a new {@code StateTable} instance with the specified capacity.
 	 *
-	 * @param keyContext the key context.
-	 * @param metaInfo   the meta information, including the type serializer for state copy-on-write.
-	 * @param capacity   the initial capacity of this hash map.
+	 * @param keyContext           the key context.
+	 * @param metaInfo             the meta information, including the type serializer for state copy-on-write.
+	 * @param capacity             the initial capacity of this hash map.
+	 * @param trackRemovedEntries  true if the table remembers removed composite keys for delta snapshots.
 	 * @throws IllegalArgumentException when the capacity is less than zero.
 	 */
 	@SuppressWarnings("unchecked")
-	private CopyOnWriteStateTable(InternalKeyContext<K> keyContext, RegisteredBackendStateMetaInfo<N, S> metaInfo, int capacity) {
+	private CopyOnWriteStateTable(
+			InternalKeyContext<K> keyContext,
+			RegisteredBackendStateMetaInfo<N, S> metaInfo,
+			int capacity,
+			boolean trackRemovedEntries) {
 		super(keyContext, metaInfo);
 
+		this.removedEntries = trackRemovedEntries ? new HashMap<Tuple2<K, N>, Integer>() : null;
+
 		// initialized tables to EMPTY_TABLE.
 		this.primaryTable = (StateTableEntry<K, N, S>[]) EMPTY_TABLE;
 		this.incrementalRehashTable = (StateTableEntry<K, N, S>[]) EMPTY_TABLE;
@@ -279,6 +316,9 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 					e.state = getStateSerializer().copy(e.state);
 				}
 
+				// the caller may modify the returned state object in place. At this point, the state object is not
+				// shared with any snapshot and neither is the entry, so running snapshots are not affected.
+				e.modifiedVersion = stateTableVersion;
 				return e.state;
 			}
 		}
@@ -326,6 +366,11 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 		transform(keyContext.getCurrentKey(), namespace, value, transformation);
 	}
 
+	@Override
+	public void remove(K key, int keyGroup, N namespace) {
+		remove(key, namespace);
+	}
+
 	// Private implementation details of the API methods ---------------------------------------------------------------
 
 	/**
@@ -367,6 +412,7 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 
 		e.state = value;
 		e.stateVersion = stateTableVersion;
+		e.modifiedVersion = stateTableVersion;
 	}
 
 	/**
@@ -390,6 +436,7 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 
 		e.state = value;
 		e.stateVersion = stateTableVersion;
+		e.modifiedVersion = stateTableVersion;
 
 		return oldState;
 	}
@@ -451,6 +498,7 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 						entry.state,
 				value);
 		entry.stateVersion = stateTableVersion;
+		entry.modifiedVersion = stateTableVersion;
 	}
 
 	/**
@@ -508,6 +556,9 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 				} else {
 					--incrementalRehashTableSize;
 				}
+				if (removedEntries != null) {
+					removedEntries.put(new Tuple2<>(e.key, e.namespace), stateTableVersion);
+				}
 				return e;
 			}
 		}
@@ -651,6 +702,7 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 				hash,
 				table[index],
 				stateTableVersion,
+				stateTableVersion,
 				stateTableVersion);
 		table[index] = newEntry;
 
@@ -841,6 +893,71 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 		return new CopyOnWriteStateTableSnapshot<>(this);
 	}
 
+	/**
+	 * Creates a delta snapshot of this {@link CopyOnWriteStateTable}, relative to an earlier snapshot. The delta
+	 * contains all entries that were modified, and all composite keys that were removed, at or after the given base
+	 * version. Users should call {@link #releaseSnapshot(CopyOnWriteStateTableSnapshot)} after using the returned
+	 * object.
+	 *
+	 * @param baseVersion the version of the snapshot that the delta is relative to, as returned by
+	 *                    {@link CopyOnWriteStateTableSnapshot#getSnapshotVersion()} or {@link #startNewVersion()}.
+	 * @return a delta snapshot from this {@link CopyOnWriteStateTable}, for checkpointing.
+	 */
+	CopyOnWriteStateTableSnapshot<K, N, S> createDeltaSnapshot(int baseVersion) {
+		Preconditions.checkState(removedEntries != null, "The state table does not track removed entries.");
+		Preconditions.checkArgument(baseVersion <= stateTableVersion, "Unknown base version %s.", baseVersion);
+
+		List<Tuple2<K, N>> removedSinceBase = new ArrayList<>();
+		for (Map.Entry<Tuple2<K, N>, Integer> removedEntry : removedEntries.entrySet()) {
+			if (removedEntry.getValue() >= baseVersion) {
+				removedSinceBase.add(removedEntry.getKey());
+			}
+		}
+
+		return new CopyOnWriteStateTableSnapshot<>(this, baseVersion, removedSinceBase);
+	}
+
+	/**
+	 * Increases the version of this table without creating a snapshot. A delta snapshot relative to the returned
+	 * version only contains the modifications that happen after this call. This is used to mark restored state as
+	 * unmodified. This method must be called by the same Thread that does modifications to the
+	 * {@link CopyOnWriteStateTable}.
+	 *
+	 * @return the new version of this table.
+	 */
+	int startNewVersion() {
+		synchronized (snapshotVersions) {
+			if (++stateTableVersion < 0) {
+				throw new IllegalStateException("Version count overflow in CopyOnWriteStateTable. Enforcing restart.");
+			}
+			return stateTableVersion;
+		}
+	}
+
+	/**
+	 * Forgets the composite keys that were removed before the given version, because no future delta snapshot will
+	 * be relative to an earlier version.
+	 *
+	 * @param baseVersion the oldest version that future delta snapshots can be relative to.
+	 */
+	void pruneRemovedEntries(int baseVersion) {
+		if (removedEntries == null) {
+			return;
+		}
+
+		Iterator<Integer> removalVersions = removedEntries.values().iterator();
+		while (removalVersions.hasNext()) {
+			if (removalVersions.next() < baseVersion) {
+				removalVersions.remove();
+			}
+		}
+	}
+
+	@VisibleForTesting
+	int numRemovedEntries() {
+		return removedEntries != null ? removedEntries.size() : 0;
+	}
+
 	/**
 	 * Releases a snapshot for this {@link CopyOnWriteStateTable}. This method should be called once a snapshot is no more needed,
 	 * so that the {@link CopyOnWriteStateTable} can stop considering this snapshot for copy-on-write, thus avoiding unnecessary
@@ -900,17 +1017,23 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 		 */
 		int stateVersion;
 
+		/**
+		 * The version of the table when this entry was last modified or read. This is meta data for delta snapshots.
+		 */
+		int modifiedVersion;
+
 		/**
 		 * The computed secondary hash for the composite of key and namespace.
 		 */
 		final int hash;
 
 		StateTableEntry() {
-			this(null, null, null, 0, null, 0, 0);
+			this(null, null, null, 0, null, 0, 0, 0);
 		}
 
 		StateTableEntry(StateTableEntry<K, N, S> other, int entryVersion) {
-			this(other.key, other.namespace, other.state, other.hash, other.next, entryVersion, other.stateVersion);
+			this(other.key, other.namespace, other.state, other.hash, other.next,
+					entryVersion, other.stateVersion, other.modifiedVersion);
 		}
 
 		StateTableEntry(
@@ -920,7 +1043,8 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 				int hash,
 				StateTableEntry<K, N, S> next,
 				int entryVersion,
-				int stateVersion) {
+				int stateVersion,
+				int modifiedVersion) {
 			this.key = key;
 			this.namespace = namespace;
 			this.hash = hash;
@@ -928,6 +1052,7 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 			this.entryVersion = entryVersion;
 			this.state = state;
 			this.stateVersion = stateVersion;
+			this.modifiedVersion = modifiedVersion;
 		}
 
 		public final void setState(S value, int mapVersion) {
@@ -936,6 +1061,7 @@ public class CopyOnWriteStateTable<K, N, S> extends StateTable<K, N, S> implemen
 				this.state = value;
 				this.stateVersion = mapVersion;
 			}
+			this.modifiedVersion = mapVersion;
 		}
 
 		@Override
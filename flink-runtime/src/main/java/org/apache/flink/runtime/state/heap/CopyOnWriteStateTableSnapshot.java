@@ -20,11 +20,14 @@ package org.apache.flink.runtime.state.heap;
 
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.core.memory.DataOutputView;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * This class represents the snapshot of a {@link CopyOnWriteStateTable} and has a role in operator state checkpointing. Besides
@@ -70,18 +73,53 @@ public class CopyOnWriteStateTableSnapshot<K, N, S>
 	 */
 	private int[] keyGroupOffsets;
 
+	/**
+	 * For delta snapshots, the version of the earlier snapshot that the delta is relative to. Only entries that were
+	 * modified at or after this version belong to the delta. This is 0 for full snapshots.
+	 */
+	private final int deltaBaseVersion;
+
+	/**
+	 * For delta snapshots, the composite keys that were removed at or after the base version. Empty for full snapshots.
+	 */
+	private final Tuple2<K, N>[] removedEntries;
+
+	/**
+	 * Offsets for the individual key-groups in the removed entries. This is lazily created like the key-group offsets
+	 * of the entries.
+	 */
+	private int[] removedEntryKeyGroupOffsets;
+
 	/**
 	 * Creates a new {@link CopyOnWriteStateTableSnapshot}.
 	 *
 	 * @param owningStateTable the {@link CopyOnWriteStateTable} for which this object represents a snapshot.
 	 */
 	CopyOnWriteStateTableSnapshot(CopyOnWriteStateTable<K, N, S> owningStateTable) {
+		this(owningStateTable, 0, Collections.<Tuple2<K, N>>emptyList());
+	}
+
+	/**
+	 * Creates a new {@link CopyOnWriteStateTableSnapshot} that can be written as a delta to an earlier snapshot.
+	 *
+	 * @param owningStateTable the {@link CopyOnWriteStateTable} for which this object represents a snapshot.
+	 * @param deltaBaseVersion the version of the earlier snapshot, 0 to include all entries.
+	 * @param removedEntries   the composite keys that were removed at or after the base version.
+	 */
+	@SuppressWarnings("unchecked")
+	CopyOnWriteStateTableSnapshot(
+			CopyOnWriteStateTable<K, N, S> owningStateTable,
+			int deltaBaseVersion,
+			List<Tuple2<K, N>> removedEntries) {
 
 		super(owningStateTable);
 		this.snapshotData = owningStateTable.snapshotTableArrays();
 		this.snapshotVersion = owningStateTable.getStateTableVersion();
 		this.stateTableSize = owningStateTable.size();
 		this.keyGroupOffsets = null;
+		this.deltaBaseVersion = deltaBaseVersion;
+		this.removedEntries = removedEntries.toArray(new Tuple2[removedEntries.size()]);
+		this.removedEntryKeyGroupOffsets = null;
 	}
 
 	/**
@@ -144,13 +182,61 @@ public class CopyOnWriteStateTableSnapshot<K, N, S>
 		this.keyGroupOffsets = histogram;
 	}
 
+	/**
+	 * Partitions the removed entries by key-group, with the same algorithm as
+	 * {@link #partitionEntriesByKeyGroup()}.
+	 */
+	private void partitionRemovedEntriesByKeyGroup() {
+
+		if (null != removedEntryKeyGroupOffsets) {
+			return;
+		}
+
+		final KeyGroupRange keyGroupRange = owningStateTable.keyContext.getKeyGroupRange();
+		final int totalKeyGroups = owningStateTable.keyContext.getNumberOfKeyGroups();
+		final int baseKgIdx = keyGroupRange.getStartKeyGroup();
+		final int[] histogram = new int[keyGroupRange.getNumberOfKeyGroups() + 1];
+
+		Tuple2<K, N>[] unfold = removedEntries.clone();
+
+		for (Tuple2<K, N> removedEntry : unfold) {
+			int effectiveKgIdx =
+					KeyGroupRangeAssignment.computeKeyGroupForKeyHash(removedEntry.f0.hashCode(), totalKeyGroups) - baseKgIdx + 1;
+			++histogram[effectiveKgIdx];
+		}
+
+		for (int i = 1; i < histogram.length; ++i) {
+			histogram[i] += histogram[i - 1];
+		}
+
+		for (Tuple2<K, N> removedEntry : unfold) {
+			int effectiveKgIdx =
+					KeyGroupRangeAssignment.computeKeyGroupForKeyHash(removedEntry.f0.hashCode(), totalKeyGroups) - baseKgIdx;
+			removedEntries[histogram[effectiveKgIdx]++] = removedEntry;
+		}
+
+		this.removedEntryKeyGroupOffsets = histogram;
+	}
+
 	@Override
 	public void release() {
 		owningStateTable.releaseSnapshot(this);
 	}
 
 	@Override
-	public void writeMappingsInKeyGroup(DataOutputView dov, int keyGroupId) throws IOException {
+	public StateTableSnapshot createConcurrentWriter() {
+		// partition eagerly, so that the concurrent writers only read the partitioned entries
+		partitionEntriesByKeyGroup();
+		return super.createConcurrentWriter();
+	}
+
+	@Override
+	void writeMappingsInKeyGroup(
+			DataOutputView dov,
+			int keyGroupId,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			TypeSerializer<S> stateSerializer) throws IOException {
 
 		if (null == keyGroupOffsets) {
 			partitionEntriesByKeyGroup();
@@ -162,15 +248,76 @@ public class CopyOnWriteStateTableSnapshot<K, N, S>
 		int startOffset = keyGroupOffsetIdx < 0 ? 0 : keyGroupOffsets[keyGroupOffsetIdx];
 		int endOffset = keyGroupOffsets[keyGroupOffsetIdx + 1];
 
+		// write number of mappings in key-group
+		dov.writeInt(endOffset - startOffset);
+
+		// write mappings
+		for (int i = startOffset; i < endOffset; ++i) {
+			CopyOnWriteStateTable.StateTableEntry<K, N, S> toWrite = groupedOut[i];
+			groupedOut[i] = null; // free asap for GC
+			namespaceSerializer.serialize(toWrite.namespace, dov);
+			keySerializer.serialize(toWrite.key, dov);
+			stateSerializer.serialize(toWrite.state, dov);
+		}
+	}
+
+	/**
+	 * Writes the delta of the specified key-group to the output: first the composite keys that were removed at or
+	 * after the base version, then the mappings that were modified at or after the base version. For a snapshot
+	 * without base version, this writes no removed keys and all mappings of the key-group.
+	 *
+	 * @param dov the output
+	 * @param keyGroupId the key-group to write
+	 * @throws IOException on write related problems
+	 */
+	void writeDeltaInKeyGroup(DataOutputView dov, int keyGroupId) throws IOException {
+
+		if (null == keyGroupOffsets) {
+			partitionEntriesByKeyGroup();
+		}
+
+		if (null == removedEntryKeyGroupOffsets) {
+			partitionRemovedEntriesByKeyGroup();
+		}
+
+		KeyGroupRange keyGroupRange = owningStateTable.keyContext.getKeyGroupRange();
+		int keyGroupOffsetIdx = keyGroupId - keyGroupRange.getStartKeyGroup() - 1;
+
 		TypeSerializer<K> keySerializer = owningStateTable.keyContext.getKeySerializer();
 		TypeSerializer<N> namespaceSerializer = owningStateTable.metaInfo.getNamespaceSerializer();
 		TypeSerializer<S> stateSerializer = owningStateTable.metaInfo.getStateSerializer();
 
-		// write number of mappings in key-group
+		// write removed composite keys
+		int startOffset = keyGroupOffsetIdx < 0 ? 0 : removedEntryKeyGroupOffsets[keyGroupOffsetIdx];
+		int endOffset = removedEntryKeyGroupOffsets[keyGroupOffsetIdx + 1];
+
 		dov.writeInt(endOffset - startOffset);
 
-		// write mappings
 		for (int i = startOffset; i < endOffset; ++i) {
+			Tuple2<K, N> toWrite = removedEntries[i];
+			removedEntries[i] = null; // free asap for GC
+			namespaceSerializer.serialize(toWrite.f1, dov);
+			keySerializer.serialize(toWrite.f0, dov);
+		}
+
+		// write modified mappings
+		final CopyOnWriteStateTable.StateTableEntry<K, N, S>[] groupedOut = snapshotData;
+		startOffset = keyGroupOffsetIdx < 0 ? 0 : keyGroupOffsets[keyGroupOffsetIdx];
+		endOffset = keyGroupOffsets[keyGroupOffsetIdx + 1];
+
+		// move the modified mappings to the front of the key-group, so that we decide only once per mapping
+		int modifiedEndOffset = startOffset;
+		for (int i = startOffset; i < endOffset; ++i) {
+			CopyOnWriteStateTable.StateTableEntry<K, N, S> entry = groupedOut[i];
+			groupedOut[i] = null; // free asap for GC
+			if (entry.modifiedVersion >= deltaBaseVersion) {
+				groupedOut[modifiedEndOffset++] = entry;
+			}
+		}
+
+		dov.writeInt(modifiedEndOffset - startOffset);
+
+		for (int i = startOffset; i < modifiedEndOffset; ++i) {
 			CopyOnWriteStateTable.StateTableEntry<K, N, S> toWrite = groupedOut[i];
 			groupedOut[i] = null; // free asap for GC
 			namespaceSerializer.serialize(toWrite.namespace, dov);
@@ -31,6 +31,7 @@ import org.apache.flink.api.common.state.StateDescriptor;
 import org.apache.flink.api.common.state.ValueStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.core.fs.CloseableRegistry;
 import org.apache.flink.core.fs.FSDataInputStream;
 import org.apache.flink.core.memory.DataInputViewStreamWrapper;
 import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
@@ -43,14 +44,19 @@ import org.apache.flink.runtime.checkpoint.CheckpointOptions;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
 import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
 import org.apache.flink.runtime.state.ArrayListSerializer;
+import org.apache.flink.runtime.state.CheckpointListener;
 import org.apache.flink.runtime.state.CheckpointStreamFactory;
 import org.apache.flink.runtime.state.DoneFuture;
 import org.apache.flink.runtime.state.HashMapSerializer;
+import org.apache.flink.runtime.state.IncrementalKeyGroupsStateHandle;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
 import org.apache.flink.runtime.state.KeyGroupsStateHandle;
 import org.apache.flink.runtime.state.KeyedBackendSerializationProxy;
+import org.apache.flink.runtime.state.MultiStreamStateHandle;
 import org.apache.flink.runtime.state.RegisteredBackendStateMetaInfo;
+import org.apache.flink.runtime.state.StateTransferPool;
+import org.apache.flink.runtime.state.StateUtil;
 import org.apache.flink.runtime.state.StreamStateHandle;
 import org.apache.flink.runtime.state.internal.InternalAggregatingState;
 import org.apache.flink.runtime.state.internal.InternalFoldingState;
@@ -66,9 +72,16 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -77,12 +90,22 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * streams provided by a {@link org.apache.flink.runtime.state.CheckpointStreamFactory} upon
  * checkpointing.
  *
+ * <p>With incremental checkpointing, a checkpoint only writes the state that was modified or removed since the
+ * last completed checkpoint, as a delta on top of the chain of snapshots of that checkpoint. A chain starts with
+ * a full snapshot and is replayed in order on restore. Savepoints are always full snapshots.
+ *
  * @param <K> The key by which state is keyed.
  */
-public class HeapKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
+public class HeapKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> implements CheckpointListener {
 
 	private static final Logger LOG = LoggerFactory.getLogger(HeapKeyedStateBackend.class);
 
+	/** Maximum number of snapshots in a chain, i.e. one full snapshot and the deltas on top of it */
+	static final int MAX_SNAPSHOT_CHAIN_LENGTH = 10;
+
+	/** Name prefix of the snapshots in a chain, followed by the id of the checkpoint that wrote the snapshot */
+	private static final String SNAPSHOT_NAME_PREFIX = "chk-";
+
 	/**
 	 * Map of state tables that stores all state of key/value states. We store it centrally so
 	 * that we can easily checkpoint/restore it.
@@ -99,6 +122,47 @@ public class HeapKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 	 */
 	private final boolean asynchronousSnapshots;
 
+	/** True if checkpoints only write the state that changed since the last completed checkpoint */
+	private final boolean enableIncrementalCheckpointing;
+
+	/**
+	 * Identifies the snapshots of this backend and of the backends it was restored from. Snapshot names
+	 * are only unique within one lineage of backends.
+	 */
+	private String backendIdentifier;
+
+	/** The snapshot chains of the checkpoints that were taken since the last completed checkpoint */
+	private final SortedMap<Long, SnapshotChain> materializedSnapshots = new TreeMap<>();
+
+	/** The id of the last completed checkpoint that is the base for delta snapshots, -1 if none */
+	private long lastCompletedCheckpointId = -1L;
+
+	/** The number of parts of full snapshots, which are transferred concurrently */
+	private int numberOfTransferParts = 1;
+
+	/** The pool of the TaskManager that transfers the parts of full snapshots, null if snapshots have one part */
+	private StateTransferPool stateTransferPool;
+
+	public HeapKeyedStateBackend(
+			TaskKvStateRegistry kvStateRegistry,
+			TypeSerializer<K> keySerializer,
+			ClassLoader userCodeClassLoader,
+			int numberOfKeyGroups,
+			KeyGroupRange keyGroupRange,
+			boolean asynchronousSnapshots,
+			ExecutionConfig executionConfig) {
+
+		this(
+				kvStateRegistry,
+				keySerializer,
+				userCodeClassLoader,
+				numberOfKeyGroups,
+				keyGroupRange,
+				asynchronousSnapshots,
+				false,
+				executionConfig);
+	}
+
 	public HeapKeyedStateBackend(
 			TaskKvStateRegistry kvStateRegistry,
 			TypeSerializer<K> keySerializer,
@@ -106,13 +170,38 @@ public class HeapKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 			int numberOfKeyGroups,
 			KeyGroupRange keyGroupRange,
 			boolean asynchronousSnapshots,
+			boolean enableIncrementalCheckpointing,
 			ExecutionConfig executionConfig) {
 
 		super(kvStateRegistry, keySerializer, userCodeClassLoader, numberOfKeyGroups, keyGroupRange, executionConfig);
+
+		Preconditions.checkArgument(asynchronousSnapshots || !enableIncrementalCheckpointing,
+				"Incremental checkpoints require asynchronous snapshots.");
+
 		this.asynchronousSnapshots = asynchronousSnapshots;
+		this.enableIncrementalCheckpointing = enableIncrementalCheckpointing;
+		this.backendIdentifier = UUID.randomUUID().toString();
 		LOG.info("Initializing heap keyed state backend with stream factory.");
 	}
 
+	/**
+	 * Sets the number of parts that a full snapshot is split into by key-group ranges. Each part is written to a
+	 * stream of its own, and the parts are transferred concurrently by the given {@link StateTransferPool} of the
+	 * TaskManager, which bounds the number of concurrent transfers. When restoring, that many parts are read
+	 * ahead. By default, this is 1, which writes full snapshots to a single stream.
+	 *
+	 * @param numberOfTransferParts The number of parts of a full snapshot.
+	 * @param stateTransferPool The pool that transfers the parts, may be null if there is only one part.
+	 */
+	public void setNumberOfTransferParts(int numberOfTransferParts, StateTransferPool stateTransferPool) {
+		Preconditions.checkArgument(numberOfTransferParts >= 1, "The number of transfer parts must be at least 1.");
+		Preconditions.checkArgument(numberOfTransferParts == 1 || stateTransferPool != null,
+				"Snapshots with more than one part require a state transfer pool.");
+
+		this.numberOfTransferParts = numberOfTransferParts;
+		this.stateTransferPool = stateTransferPool;
+	}
+
 	// ------------------------------------------------------------------------
 	//  state backend operations
 	// ------------------------------------------------------------------------
@@ -233,6 +322,11 @@ public class HeapKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 			return DoneFuture.nullValue();
 		}
 
+		if (enableIncrementalCheckpointing &&
+				checkpointOptions.getCheckpointType() != CheckpointOptions.CheckpointType.SAVEPOINT) {
+			return snapshotIncrementally(checkpointId, timestamp, streamFactory);
+		}
+
 		long syncStartTime = System.currentTimeMillis();
 
 		Preconditions.checkState(stateTables.size() <= Short.MAX_VALUE,
@@ -296,21 +390,53 @@ public class HeapKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 						DataOutputViewStreamWrapper outView = new DataOutputViewStreamWrapper(stream);
 						serializationProxy.write(outView);
 
-						long[] keyGroupRangeOffsets = new long[keyGroupRange.getNumberOfKeyGroups()];
-
-						for (int keyGroupPos = 0; keyGroupPos < keyGroupRange.getNumberOfKeyGroups(); ++keyGroupPos) {
-							int keyGroupId = keyGroupRange.getKeyGroupId(keyGroupPos);
-							keyGroupRangeOffsets[keyGroupPos] = stream.getPos();
-							outView.writeInt(keyGroupId);
+						final long[] keyGroupRangeOffsets = new long[keyGroupRange.getNumberOfKeyGroups()];
+
+						// the first part is written to this stream, the other parts are transferred concurrently
+						final int numParts = Math.min(numberOfTransferParts, keyGroupRange.getNumberOfKeyGroups());
+
+						List<Callable<StreamStateHandle>> partWriters = new ArrayList<>(numParts - 1);
+						for (int part = 1; part < numParts; ++part) {
+							partWriters.add(createSnapshotPartWriter(
+									checkpointId,
+									timestamp,
+									streamFactory,
+									getKeyGroupPartStart(part, numParts),
+									getKeyGroupPartStart(part + 1, numParts),
+									keyGroupRangeOffsets,
+									kVStateToId,
+									cowStateStableSnapshots));
+						}
 
-							for (Map.Entry<String, StateTable<K, ?, ?>> kvState : stateTables.entrySet()) {
-								outView.writeShort(kVStateToId.get(kvState.getKey()));
-								cowStateStableSnapshots.get(kvState.getValue()).writeMappingsInKeyGroup(outView, keyGroupId);
-							}
+						List<Future<StreamStateHandle>> partTransfers = numParts > 1 ?
+								stateTransferPool.submitAll(partWriters) :
+								Collections.<Future<StreamStateHandle>>emptyList();
+						List<StreamStateHandle> partHandles;
+
+						try {
+							writeKeyGroups(
+									outView,
+									stream,
+									0,
+									getKeyGroupPartStart(1, numParts),
+									keyGroupRangeOffsets,
+									kVStateToId,
+									cowStateStableSnapshots);
+
+							partHandles = StateTransferPool.getAll(partTransfers);
+						} catch (Exception e) {
+							StateTransferPool.cancelAll(partTransfers);
+							throw e;
 						}
 
 						if (open.compareAndSet(true, false)) {
 							StreamStateHandle streamStateHandle = stream.closeAndGetHandle();
+
+							if (!partHandles.isEmpty()) {
+								streamStateHandle = combineSnapshotParts(
+										streamStateHandle, partHandles, keyGroupRangeOffsets, numParts);
+							}
+
 							KeyGroupRangeOffsets offsets = new KeyGroupRangeOffsets(keyGroupRange, keyGroupRangeOffsets);
 							final KeyGroupsStateHandle keyGroupsStateHandle = new KeyGroupsStateHandle(offsets, streamStateHandle);
 
@@ -352,6 +478,313 @@ public class HeapKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 		return task;
 	}
 
+	/**
+	 * Returns the position in the key-group range of the first key-group of the given part of a snapshot, or the
+	 * number of key-groups for the part after the last one.
+	 */
+	private int getKeyGroupPartStart(int part, int numParts) {
+		return (int) ((long) part * keyGroupRange.getNumberOfKeyGroups() / numParts);
+	}
+
+	/**
+	 * Writes the mappings of the key-groups between the given positions of the key-group range and stores the
+	 * stream positions of the key-groups in the offsets.
+	 */
+	private void writeKeyGroups(
+			DataOutputViewStreamWrapper outView,
+			CheckpointStreamFactory.CheckpointStateOutputStream stream,
+			int startKeyGroupPos,
+			int endKeyGroupPos,
+			long[] keyGroupRangeOffsets,
+			Map<String, Integer> kVStateToId,
+			Map<StateTable<K, ?, ?>, StateTableSnapshot> stateTableSnapshots) throws IOException {
+
+		for (int keyGroupPos = startKeyGroupPos; keyGroupPos < endKeyGroupPos; ++keyGroupPos) {
+			int keyGroupId = keyGroupRange.getKeyGroupId(keyGroupPos);
+			keyGroupRangeOffsets[keyGroupPos] = stream.getPos();
+			outView.writeInt(keyGroupId);
+
+			for (Map.Entry<StateTable<K, ?, ?>, StateTableSnapshot> stateTableSnapshot : stateTableSnapshots.entrySet()) {
+				outView.writeShort(kVStateToId.get(stateTableSnapshot.getKey().getMetaInfo().getName()));
+				stateTableSnapshot.getValue().writeMappingsInKeyGroup(outView, keyGroupId);
+			}
+		}
+	}
+
+	/**
+	 * Creates the writer of a part of a full snapshot, which writes the key-groups between the given positions of the
+	 * key-group range to a stream of its own. The stored offsets of the key-groups are relative to that stream.
+	 */
+	private Callable<StreamStateHandle> createSnapshotPartWriter(
+			final long checkpointId,
+			final long timestamp,
+			final CheckpointStreamFactory streamFactory,
+			final int startKeyGroupPos,
+			final int endKeyGroupPos,
+			final long[] keyGroupRangeOffsets,
+			final Map<String, Integer> kVStateToId,
+			Map<StateTable<K, ?, ?>, StateTableSnapshot> stateTableSnapshots) {
+
+		// each part writes with its own serializers
+		final Map<StateTable<K, ?, ?>, StateTableSnapshot> partWriters = new LinkedHashMap<>(stateTableSnapshots.size());
+		for (Map.Entry<StateTable<K, ?, ?>, StateTableSnapshot> stateTableSnapshot : stateTableSnapshots.entrySet()) {
+			partWriters.put(stateTableSnapshot.getKey(), stateTableSnapshot.getValue().createConcurrentWriter());
+		}
+
+		return new Callable<StreamStateHandle>() {
+			@Override
+			public StreamStateHandle call() throws Exception {
+				CheckpointStreamFactory.CheckpointStateOutputStream stream =
+						streamFactory.createCheckpointStateOutputStream(checkpointId, timestamp);
+
+				cancelStreamRegistry.registerClosable(stream);
+
+				try {
+					writeKeyGroups(
+							new DataOutputViewStreamWrapper(stream),
+							stream,
+							startKeyGroupPos,
+							endKeyGroupPos,
+							keyGroupRangeOffsets,
+							kVStateToId,
+							partWriters);
+
+					return stream.closeAndGetHandle();
+				} finally {
+					cancelStreamRegistry.unregisterClosable(stream);
+					IOUtils.closeQuietly(stream);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Combines the first part of a full snapshot with the other parts to one handle, and moves the offsets of the
+	 * key-groups in the other parts from the streams of the parts to the combined stream.
+	 */
+	private StreamStateHandle combineSnapshotParts(
+			StreamStateHandle firstPartHandle,
+			List<StreamStateHandle> otherPartHandles,
+			long[] keyGroupRangeOffsets,
+			int numParts) throws IOException {
+
+		List<StreamStateHandle> partHandles = new ArrayList<>(numParts);
+		partHandles.add(firstPartHandle);
+		partHandles.addAll(otherPartHandles);
+
+		long partStartOffset = 0L;
+		for (int part = 1; part < numParts; ++part) {
+			partStartOffset += partHandles.get(part - 1).getStateSize();
+
+			for (int keyGroupPos = getKeyGroupPartStart(part, numParts);
+					keyGroupPos < getKeyGroupPartStart(part + 1, numParts); ++keyGroupPos) {
+
+				keyGroupRangeOffsets[keyGroupPos] += partStartOffset;
+			}
+		}
+
+		return new MultiStreamStateHandle(partHandles);
+	}
+
+	/**
+	 * Takes a snapshot that only contains the state that was modified or removed since the last completed
+	 * checkpoint, on top of the snapshot chain of that checkpoint. Takes a full snapshot that starts a new chain
+	 * if there is no suitable base.
+	 */
+	@SuppressWarnings("unchecked")
+	private RunnableFuture<KeyGroupsStateHandle> snapshotIncrementally(
+			final long checkpointId,
+			final long timestamp,
+			final CheckpointStreamFactory streamFactory) throws Exception {
+
+		long syncStartTime = System.currentTimeMillis();
+
+		Preconditions.checkState(stateTables.size() <= Short.MAX_VALUE,
+				"Too many KV-States: " + stateTables.size() +
+						". Currently at most " + Short.MAX_VALUE + " states are supported");
+
+		final SnapshotChain baseChain;
+
+		synchronized (materializedSnapshots) {
+			SnapshotChain lastCompletedChain = materializedSnapshots.get(lastCompletedCheckpointId);
+
+			int numUnconfirmedSnapshots =
+					materializedSnapshots.tailMap(lastCompletedCheckpointId + 1).size();
+
+			if (lastCompletedChain == null ||
+					numUnconfirmedSnapshots >= MAX_UNCONFIRMED_SNAPSHOTS ||
+					lastCompletedChain.getSnapshots().size() >= MAX_SNAPSHOT_CHAIN_LENGTH) {
+				baseChain = null;
+			} else {
+				baseChain = lastCompletedChain;
+			}
+		}
+
+		final String snapshotBackendIdentifier = backendIdentifier;
+		final String snapshotName = SNAPSHOT_NAME_PREFIX + checkpointId;
+
+		final Map<String, StreamStateHandle> referencedSnapshots = baseChain != null ?
+				baseChain.getSnapshots() :
+				Collections.<String, StreamStateHandle>emptyMap();
+
+		List<KeyedBackendSerializationProxy.StateMetaInfo<?, ?>> metaInfoProxyList = new ArrayList<>(stateTables.size());
+
+		final List<CopyOnWriteStateTableSnapshot<K, ?, ?>> stateTableSnapshots = new ArrayList<>(stateTables.size());
+
+		final Map<String, Integer> stateTableVersions = new HashMap<>(stateTables.size());
+
+		for (Map.Entry<String, StateTable<K, ?, ?>> kvState : stateTables.entrySet()) {
+			RegisteredBackendStateMetaInfo<?, ?> metaInfo = kvState.getValue().getMetaInfo();
+			KeyedBackendSerializationProxy.StateMetaInfo<?, ?> metaInfoProxy = new KeyedBackendSerializationProxy.StateMetaInfo(
+					metaInfo.getStateType(),
+					metaInfo.getName(),
+					metaInfo.getNamespaceSerializer(),
+					metaInfo.getStateSerializer());
+
+			metaInfoProxyList.add(metaInfoProxy);
+
+			CopyOnWriteStateTable<K, ?, ?> stateTable = (CopyOnWriteStateTable<K, ?, ?>) kvState.getValue();
+			Integer baseVersion = baseChain != null ? baseChain.getStateTableVersions().get(kvState.getKey()) : null;
+
+			CopyOnWriteStateTableSnapshot<K, ?, ?> stateTableSnapshot;
+			if (baseVersion != null) {
+				stateTableSnapshot = stateTable.createDeltaSnapshot(baseVersion);
+			} else {
+				// no base, or the state was registered after the base was taken
+				stateTableSnapshot = stateTable.createSnapshot();
+			}
+
+			stateTableSnapshots.add(stateTableSnapshot);
+			stateTableVersions.put(kvState.getKey(), stateTableSnapshot.getSnapshotVersion());
+		}
+
+		final KeyedBackendSerializationProxy serializationProxy =
+				new KeyedBackendSerializationProxy(keySerializer, metaInfoProxyList);
+
+		//--------------------------------------------------- this becomes the end of sync part
+
+		final AbstractAsyncIOCallable<KeyGroupsStateHandle, CloseableRegistry> ioCallable =
+				new AbstractAsyncIOCallable<KeyGroupsStateHandle, CloseableRegistry>() {
+
+					/** The streams that were written so far, discarded if the snapshot fails */
+					private final List<StreamStateHandle> uploadedStates = new ArrayList<>(2);
+
+					@Override
+					public CloseableRegistry openIOHandle() throws Exception {
+						CloseableRegistry closeableRegistry = new CloseableRegistry();
+						cancelStreamRegistry.registerClosable(closeableRegistry);
+						return closeableRegistry;
+					}
+
+					@Override
+					public KeyGroupsStateHandle performOperation() throws Exception {
+						long asyncStartTime = System.currentTimeMillis();
+						CloseableRegistry closeableRegistry = getIoHandle();
+
+						try {
+							// 1) the deltas of all key-groups, or all state if there is no base
+							CheckpointStreamFactory.CheckpointStateOutputStream stream =
+									streamFactory.createCheckpointStateOutputStream(checkpointId, timestamp);
+							closeableRegistry.registerClosable(stream);
+
+							DataOutputViewStreamWrapper outView = new DataOutputViewStreamWrapper(stream);
+							serializationProxy.write(outView);
+
+							for (int keyGroupPos = 0; keyGroupPos < keyGroupRange.getNumberOfKeyGroups(); ++keyGroupPos) {
+								int keyGroupId = keyGroupRange.getKeyGroupId(keyGroupPos);
+								outView.writeInt(keyGroupId);
+
+								for (int kvStateId = 0; kvStateId < stateTableSnapshots.size(); ++kvStateId) {
+									outView.writeShort(kvStateId);
+									stateTableSnapshots.get(kvStateId).writeDeltaInKeyGroup(outView, keyGroupId);
+								}
+							}
+
+							closeableRegistry.unregisterClosable(stream);
+							StreamStateHandle snapshotHandle = stream.closeAndGetHandle();
+							uploadedStates.add(snapshotHandle);
+
+							// 2) the order in which a restore replays the snapshots of the chain
+							Map<String, StreamStateHandle> snapshots = new LinkedHashMap<>(referencedSnapshots);
+							snapshots.put(snapshotName, snapshotHandle);
+
+							stream = streamFactory.createCheckpointStateOutputStream(checkpointId, timestamp);
+							closeableRegistry.registerClosable(stream);
+
+							outView = new DataOutputViewStreamWrapper(stream);
+							outView.writeInt(snapshots.size());
+							for (String name : snapshots.keySet()) {
+								outView.writeUTF(name);
+							}
+
+							closeableRegistry.unregisterClosable(stream);
+							StreamStateHandle metaStateHandle = stream.closeAndGetHandle();
+							uploadedStates.add(metaStateHandle);
+
+							synchronized (materializedSnapshots) {
+								materializedSnapshots.put(checkpointId, new SnapshotChain(snapshots, stateTableVersions));
+
+								// forget the oldest snapshots if the checkpoints keep failing
+								SortedMap<Long, SnapshotChain> unconfirmedSnapshots =
+										materializedSnapshots.tailMap(lastCompletedCheckpointId + 1);
+
+								while (unconfirmedSnapshots.size() > MAX_UNCONFIRMED_SNAPSHOTS) {
+									unconfirmedSnapshots.remove(unconfirmedSnapshots.firstKey());
+								}
+							}
+
+							return new IncrementalKeyGroupsStateHandle(
+									keyGroupRange,
+									snapshotBackendIdentifier,
+									checkpointId,
+									metaStateHandle,
+									Collections.singletonMap(snapshotName, snapshotHandle),
+									referencedSnapshots,
+									Collections.<String, StreamStateHandle>emptyMap());
+						} catch (Exception e) {
+							discardUploadedStates();
+							throw e;
+						} finally {
+							LOG.info("Heap backend incremental snapshot ({}, asynchronous part) in thread {} took {} ms.",
+									streamFactory, Thread.currentThread(), (System.currentTimeMillis() - asyncStartTime));
+						}
+					}
+
+					@Override
+					public void done(boolean canceled) {
+						CloseableRegistry closeableRegistry = getIoHandle();
+						if (null != closeableRegistry) {
+							cancelStreamRegistry.unregisterClosable(closeableRegistry);
+							IOUtils.closeQuietly(closeableRegistry);
+						}
+
+						for (StateTableSnapshot snapshot : stateTableSnapshots) {
+							snapshot.release();
+						}
+
+						if (canceled) {
+							discardUploadedStates();
+						}
+					}
+
+					private void discardUploadedStates() {
+						try {
+							StateUtil.bestEffortDiscardAllStateObjects(uploadedStates);
+						} catch (Exception e) {
+							LOG.warn("Could not properly discard the incremental snapshot {}.", checkpointId, e);
+						}
+						uploadedStates.clear();
+					}
+				};
+
+		AsyncStoppableTaskWithCallback<KeyGroupsStateHandle> task = AsyncStoppableTaskWithCallback.from(ioCallable);
+
+		LOG.info("Heap backend incremental snapshot (" + streamFactory + ", synchronous part) in thread " +
+				Thread.currentThread() + " took " + (System.currentTimeMillis() - syncStartTime) + " ms.");
+
+		return task;
+	}
+
 	@SuppressWarnings("deprecation")
 	@Override
 	public void restore(Collection<KeyGroupsStateHandle> restoredState) throws Exception {
@@ -363,11 +796,203 @@ public class HeapKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 
 		if (MigrationUtil.isOldSavepointKeyedState(restoredState)) {
 			restoreOldSavepointKeyedState(restoredState);
+		} else if (containsIncrementalStateHandle(restoredState)) {
+			restoreIncrementalState(restoredState);
 		} else {
 			restorePartitionedState(restoredState);
 		}
 	}
 
+	private static boolean containsIncrementalStateHandle(Collection<KeyGroupsStateHandle> restoredState) {
+		for (KeyGroupsStateHandle stateHandle : restoredState) {
+			if (stateHandle instanceof IncrementalKeyGroupsStateHandle) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Restores the state of an incremental checkpoint by replaying its snapshot chain, starting with the full
+	 * snapshot. If this backend takes incremental checkpoints itself, the restored chain becomes the base of the
+	 * next delta snapshot.
+	 */
+	private void restoreIncrementalState(Collection<KeyGroupsStateHandle> restoredState) throws Exception {
+
+		IncrementalKeyGroupsStateHandle restoredStateHandle = null;
+
+		for (KeyGroupsStateHandle stateHandle : restoredState) {
+
+			if (stateHandle == null) {
+				continue;
+			}
+
+			if (restoredStateHandle != null ||
+					!(stateHandle instanceof IncrementalKeyGroupsStateHandle) ||
+					!keyGroupRange.equals(stateHandle.getGroupRangeOffsets().getKeyGroupRange())) {
+
+				throw new UnsupportedOperationException("Incremental checkpoints of the heap keyed state " +
+						"backend can only be restored with the parallelism that created them. Take a savepoint " +
+						"to rescale the job.");
+			}
+
+			restoredStateHandle = (IncrementalKeyGroupsStateHandle) stateHandle;
+		}
+
+		Preconditions.checkState(restoredStateHandle != null, "No incremental snapshot to restore.");
+
+		stateTables.clear();
+
+		Map<String, StreamStateHandle> sharedState = restoredStateHandle.getSharedState();
+		Map<String, StreamStateHandle> snapshots = new LinkedHashMap<>();
+
+		for (String snapshotName : readSnapshotChain(restoredStateHandle.getMetaStateHandle())) {
+			StreamStateHandle snapshotHandle = sharedState.get(snapshotName);
+
+			if (snapshotHandle == null) {
+				throw new IllegalStateException("The snapshot " + snapshotName +
+						" is missing in the incremental checkpoint " + restoredStateHandle.getCheckpointId() + '.');
+			}
+
+			replaySnapshot(snapshotHandle);
+			snapshots.put(snapshotName, snapshotHandle);
+		}
+
+		if (enableIncrementalCheckpointing) {
+			Map<String, Integer> stateTableVersions = new HashMap<>(stateTables.size());
+
+			// the restored state counts as unmodified for the next delta snapshot
+			for (Map.Entry<String, StateTable<K, ?, ?>> kvState : stateTables.entrySet()) {
+				CopyOnWriteStateTable<K, ?, ?> stateTable = (CopyOnWriteStateTable<K, ?, ?>) kvState.getValue();
+				int version = stateTable.startNewVersion();
+				stateTable.pruneRemovedEntries(version);
+				stateTableVersions.put(kvState.getKey(), version);
+			}
+
+			backendIdentifier = restoredStateHandle.getBackendIdentifier();
+
+			synchronized (materializedSnapshots) {
+				materializedSnapshots.clear();
+				materializedSnapshots.put(
+						restoredStateHandle.getCheckpointId(),
+						new SnapshotChain(snapshots, stateTableVersions));
+				lastCompletedCheckpointId = restoredStateHandle.getCheckpointId();
+			}
+		}
+	}
+
+	/**
+	 * Reads the names of the snapshots of a chain, in the order in which they are replayed.
+	 */
+	private List<String> readSnapshotChain(StreamStateHandle metaStateHandle) throws IOException {
+		FSDataInputStream fsDataInputStream = metaStateHandle.openInputStream();
+		cancelStreamRegistry.registerClosable(fsDataInputStream);
+
+		try {
+			DataInputViewStreamWrapper inView = new DataInputViewStreamWrapper(fsDataInputStream);
+
+			int numSnapshots = inView.readInt();
+			List<String> snapshotNames = new ArrayList<>(numSnapshots);
+			for (int i = 0; i < numSnapshots; ++i) {
+				snapshotNames.add(inView.readUTF());
+			}
+
+			return snapshotNames;
+		} finally {
+			cancelStreamRegistry.unregisterClosable(fsDataInputStream);
+			IOUtils.closeQuietly(fsDataInputStream);
+		}
+	}
+
+	/**
+	 * Applies one full or delta snapshot of a chain to the state tables.
+	 */
+	@SuppressWarnings("unchecked")
+	private void replaySnapshot(StreamStateHandle snapshotHandle) throws Exception {
+		FSDataInputStream fsDataInputStream = snapshotHandle.openInputStream();
+		cancelStreamRegistry.registerClosable(fsDataInputStream);
+
+		try {
+			DataInputViewStreamWrapper inView = new DataInputViewStreamWrapper(fsDataInputStream);
+
+			KeyedBackendSerializationProxy serializationProxy =
+					new KeyedBackendSerializationProxy(userCodeClassLoader);
+
+			serializationProxy.read(inView);
+
+			List<KeyedBackendSerializationProxy.StateMetaInfo<?, ?>> metaInfoList =
+					serializationProxy.getNamedStateSerializationProxies();
+
+			// the ids of the states are only valid within one snapshot of the chain
+			List<StateTable<K, ?, ?>> kvStatesById = new ArrayList<>(metaInfoList.size());
+
+			for (KeyedBackendSerializationProxy.StateMetaInfo<?, ?> metaInfoSerializationProxy : metaInfoList) {
+
+				StateTable<K, ?, ?> stateTable = stateTables.get(metaInfoSerializationProxy.getStateName());
+
+				if (null == stateTable) {
+
+					RegisteredBackendStateMetaInfo<?, ?> registeredBackendStateMetaInfo =
+							new RegisteredBackendStateMetaInfo<>(metaInfoSerializationProxy);
+
+					stateTable = newStateTable(registeredBackendStateMetaInfo);
+					stateTables.put(metaInfoSerializationProxy.getStateName(), stateTable);
+				}
+
+				kvStatesById.add(stateTable);
+			}
+
+			for (int keyGroupPos = 0; keyGroupPos < keyGroupRange.getNumberOfKeyGroups(); ++keyGroupPos) {
+				int keyGroupIndex = keyGroupRange.getKeyGroupId(keyGroupPos);
+
+				int writtenKeyGroupIndex = inView.readInt();
+
+				Preconditions.checkState(writtenKeyGroupIndex == keyGroupIndex,
+						"Unexpected key-group in restore.");
+
+				for (int i = 0; i < metaInfoList.size(); i++) {
+					int kvStateId = inView.readShort();
+
+					StateTableByKeyGroupReader keyGroupReader =
+							StateTableByKeyGroupReaders.deltaReaderForVersion(
+									kvStatesById.get(kvStateId),
+									serializationProxy.getRestoredVersion());
+
+					keyGroupReader.readMappingsInKeyGroup(inView, keyGroupIndex);
+				}
+			}
+		} finally {
+			cancelStreamRegistry.unregisterClosable(fsDataInputStream);
+			IOUtils.closeQuietly(fsDataInputStream);
+		}
+	}
+
+	@Override
+	public void notifyCheckpointComplete(long completedCheckpointId) {
+		SnapshotChain completedChain;
+
+		synchronized (materializedSnapshots) {
+			completedChain = materializedSnapshots.get(completedCheckpointId);
+
+			// notifications of checkpoints that were subsumed by an already completed checkpoint are ignored
+			if (completedChain == null) {
+				return;
+			}
+
+			lastCompletedCheckpointId = completedCheckpointId;
+			materializedSnapshots.headMap(completedCheckpointId).clear();
+		}
+
+		// future delta snapshots are relative to the completed checkpoint or a later one
+		for (Map.Entry<String, Integer> stateTableVersion : completedChain.getStateTableVersions().entrySet()) {
+			StateTable<K, ?, ?> stateTable = stateTables.get(stateTableVersion.getKey());
+
+			if (stateTable instanceof CopyOnWriteStateTable) {
+				((CopyOnWriteStateTable<K, ?, ?>) stateTable).pruneRemovedEntries(stateTableVersion.getValue());
+			}
+		}
+	}
+
 	@SuppressWarnings({"unchecked"})
 	private void restorePartitionedState(Collection<KeyGroupsStateHandle> state) throws Exception {
 
@@ -381,7 +1006,7 @@ public class HeapKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 				continue;
 			}
 
-			FSDataInputStream fsDataInputStream = keyGroupsHandle.openInputStream();
+			FSDataInputStream fsDataInputStream = openFullSnapshotStream(keyGroupsHandle);
 			cancelStreamRegistry.registerClosable(fsDataInputStream);
 
 			try {
@@ -441,6 +1066,21 @@ public class HeapKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 		}
 	}
 
+	/**
+	 * Opens the stream of a full snapshot. If the snapshot was written in multiple parts, the parts that follow the
+	 * currently read one are read ahead by the transfer threads.
+	 */
+	private FSDataInputStream openFullSnapshotStream(KeyGroupsStateHandle keyGroupsHandle) throws IOException {
+		StreamStateHandle delegateStateHandle = keyGroupsHandle.getDelegateStateHandle();
+
+		if (numberOfTransferParts > 1 && delegateStateHandle instanceof MultiStreamStateHandle) {
+			return ((MultiStreamStateHandle) delegateStateHandle).openInputStream(
+					stateTransferPool.getExecutor(), numberOfTransferParts - 1);
+		}
+
+		return keyGroupsHandle.openInputStream();
+	}
+
 	@Override
 	public String toString() {
 		return "HeapKeyedStateBackend";
@@ -506,7 +1146,7 @@ public class HeapKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 
 	public <N, V> StateTable<K, N, V> newStateTable(RegisteredBackendStateMetaInfo<N, V> newMetaInfo) {
 		return asynchronousSnapshots ?
-				new CopyOnWriteStateTable<>(this, newMetaInfo) :
+				new CopyOnWriteStateTable<>(this, newMetaInfo, enableIncrementalCheckpointing) :
 				new NestedMapsStateTable<>(this, newMetaInfo);
 	}
 
@@ -514,4 +1154,37 @@ public class HeapKeyedStateBackend<K> extends AbstractKeyedStateBackend<K> {
 	public boolean supportsAsynchronousSnapshots() {
 		return asynchronousSnapshots;
 	}
+
+	@VisibleForTesting
+	public boolean isIncrementalCheckpointingEnabled() {
+		return enableIncrementalCheckpointing;
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The snapshots that the restore of a checkpoint replays, together with the versions of the state tables
+	 * at the time of the last snapshot of the chain.
+	 */
+	private static final class SnapshotChain {
+
+		/** The snapshots of the chain in the order of their replay, by name */
+		private final Map<String, StreamStateHandle> snapshots;
+
+		/** The versions of the state tables at the time of the last snapshot, by state name */
+		private final Map<String, Integer> stateTableVersions;
+
+		SnapshotChain(Map<String, StreamStateHandle> snapshots, Map<String, Integer> stateTableVersions) {
+			this.snapshots = snapshots;
+			this.stateTableVersions = stateTableVersions;
+		}
+
+		Map<String, StreamStateHandle> getSnapshots() {
+			return snapshots;
+		}
+
+		Map<String, Integer> getStateTableVersions() {
+			return stateTableVersions;
+		}
+	}
 }
\ No newline at end of file
@@ -228,7 +228,8 @@ public class NestedMapsStateTable<K, N, S> extends StateTable<K, N, S> {
 		return keyedMap.put(key, value);
 	}
 
-	private void remove(K key, int keyGroupIndex, N namespace) {
+	@Override
+	public void remove(K key, int keyGroupIndex, N namespace) {
 		removeAndGetOld(key, keyGroupIndex, namespace);
 	}
 
@@ -338,12 +339,15 @@ public class NestedMapsStateTable<K, N, S> extends StateTable<K, N, S> {
 		 * implementations).
 		 */
 		@Override
-		public void writeMappingsInKeyGroup(DataOutputView dov, int keyGroupId) throws IOException {
+		void writeMappingsInKeyGroup(
+				DataOutputView dov,
+				int keyGroupId,
+				TypeSerializer<K> keySerializer,
+				TypeSerializer<N> namespaceSerializer,
+				TypeSerializer<S> stateSerializer) throws IOException {
+
 			final Map<N, Map<K, S>> keyGroupMap = owningStateTable.getMapForKeyGroup(keyGroupId);
 			if (null != keyGroupMap) {
-				TypeSerializer<K> keySerializer = owningStateTable.keyContext.getKeySerializer();
-				TypeSerializer<N> namespaceSerializer = owningStateTable.metaInfo.getNamespaceSerializer();
-				TypeSerializer<S> stateSerializer = owningStateTable.metaInfo.getStateSerializer();
 				dov.writeInt(countMappingsInKeyGroup(keyGroupMap));
 				for (Map.Entry<N, Map<K, S>> namespaceEntry : keyGroupMap.entrySet()) {
 					final N namespace = namespaceEntry.getKey();
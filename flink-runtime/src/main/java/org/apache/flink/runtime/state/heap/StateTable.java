@@ -182,6 +182,8 @@ public abstract class StateTable<K, N, S> {
 
 	public abstract void put(K key, int keyGroup, N namespace, S state);
 
+	public abstract void remove(K key, int keyGroup, N namespace);
+
 	// For testing --------------------------------------------------------------------------------
 
 	@VisibleForTesting
@@ -53,6 +53,27 @@ class StateTableByKeyGroupReaders {
 		}
 	}
 
+	/**
+	 * Creates a new StateTableByKeyGroupReader that applies de-serialized deltas of a key-group to the given table,
+	 * i.e. it first removes the mappings that were removed and then inserts the mappings that were modified since the
+	 * snapshot on which the delta is based. Full snapshots in the same format contain no removed mappings.
+	 *
+	 * @param table the {@link StateTable} to which the de-serialized deltas are applied.
+	 * @param version version for the de-serialization algorithm.
+	 * @param <K> type of key.
+	 * @param <N> type of namespace.
+	 * @param <S> type of state.
+	 * @return the appropriate reader.
+	 */
+	static <K, N, S> StateTableByKeyGroupReader deltaReaderForVersion(StateTable<K, N, S> table, int version) {
+		switch (version) {
+			case 2:
+				return new StateTableDeltaByKeyGroupReaderV2<>(table);
+			default:
+				throw new IllegalArgumentException("Unknown version for delta snapshots: " + version);
+		}
+	}
+
 	static abstract class AbstractStateTableByKeyGroupReader<K, N, S>
 			implements StateTableByKeyGroupReader {
 
@@ -133,4 +154,35 @@ class StateTableByKeyGroupReaders {
 			}
 		}
 	}
-}
\ No newline at end of file
+
+	private static final class StateTableDeltaByKeyGroupReaderV2<K, N, S>
+			extends AbstractStateTableByKeyGroupReader<K, N, S> {
+
+		StateTableDeltaByKeyGroupReaderV2(StateTable<K, N, S> stateTable) {
+			super(stateTable);
+		}
+
+		@Override
+		public void readMappingsInKeyGroup(DataInputView inView, int keyGroupId) throws IOException {
+
+			final TypeSerializer<K> keySerializer = getKeySerializer();
+			final TypeSerializer<N> namespaceSerializer = getNamespaceSerializer();
+			final TypeSerializer<S> stateSerializer = getStateSerializer();
+
+			int numRemovedKeys = inView.readInt();
+			for (int i = 0; i < numRemovedKeys; ++i) {
+				N namespace = namespaceSerializer.deserialize(inView);
+				K key = keySerializer.deserialize(inView);
+				stateTable.remove(key, keyGroupId, namespace);
+			}
+
+			int numKeys = inView.readInt();
+			for (int i = 0; i < numKeys; ++i) {
+				N namespace = namespaceSerializer.deserialize(inView);
+				K key = keySerializer.deserialize(inView);
+				S state = stateSerializer.deserialize(inView);
+				stateTable.put(key, keyGroupId, namespace, state);
+			}
+		}
+	}
+}
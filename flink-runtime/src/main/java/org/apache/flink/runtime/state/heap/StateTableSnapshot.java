@@ -37,6 +37,15 @@ interface StateTableSnapshot {
 	 */
 	void writeMappingsInKeyGroup(DataOutputView dov, int keyGroupId) throws IOException;
 
+	/**
+	 * Creates a writer for the key-groups of this snapshot that uses its own duplicates of the serializers. Different
+	 * key-groups of the snapshot can be written concurrently, each through its own writer. Releasing a writer has no
+	 * effect, the snapshot itself must still be released.
+	 *
+	 * @return a writer for the key-groups of this snapshot
+	 */
+	StateTableSnapshot createConcurrentWriter();
+
 	/**
 	 * Release the snapshot. All snapshots should be released when they are no longer used because some implementation
 	 * can only release resources after a release.
@@ -67,6 +67,8 @@ import org.apache.flink.runtime.rpc.FatalErrorHandler;
 import org.apache.flink.runtime.rpc.RpcEndpoint;
 import org.apache.flink.runtime.rpc.RpcMethod;
 import org.apache.flink.runtime.rpc.RpcService;
+import org.apache.flink.runtime.state.StateTransferPool;
+import org.apache.flink.runtime.state.TaskLocalStateCleaner;
 import org.apache.flink.runtime.taskexecutor.exceptions.CheckpointException;
 import org.apache.flink.runtime.taskexecutor.exceptions.PartitionException;
 import org.apache.flink.runtime.taskexecutor.exceptions.SlotAllocationException;
@@ -148,6 +150,10 @@ public class TaskExecutor extends RpcEndpoint<TaskExecutorGateway> {
 
 	private final FileCache fileCache;
 
+	private final StateTransferPool stateTransferPool;
+
+	private final TaskLocalStateCleaner taskLocalStateCleaner;
+
 	// --------- resource manager --------
 
 	private TaskExecutorToResourceManagerConnection resourceManagerConnection;
@@ -179,6 +185,8 @@ public class TaskExecutor extends RpcEndpoint<TaskExecutorGateway> {
 		TaskManagerMetricGroup taskManagerMetricGroup,
 		BroadcastVariableManager broadcastVariableManager,
 		FileCache fileCache,
+		StateTransferPool stateTransferPool,
+		TaskLocalStateCleaner taskLocalStateCleaner,
 		TaskSlotTable taskSlotTable,
 		JobManagerTable jobManagerTable,
 		JobLeaderService jobLeaderService,
@@ -200,6 +208,8 @@ public class TaskExecutor extends RpcEndpoint<TaskExecutorGateway> {
 		this.taskManagerMetricGroup = checkNotNull(taskManagerMetricGroup);
 		this.broadcastVariableManager = checkNotNull(broadcastVariableManager);
 		this.fileCache = checkNotNull(fileCache);
+		this.stateTransferPool = checkNotNull(stateTransferPool);
+		this.taskLocalStateCleaner = checkNotNull(taskLocalStateCleaner);
 		this.jobManagerTable = checkNotNull(jobManagerTable);
 		this.jobLeaderService = checkNotNull(jobLeaderService);
 
@@ -267,6 +277,10 @@ public class TaskExecutor extends RpcEndpoint<TaskExecutorGateway> {
 
 		fileCache.shutdown();
 
+		stateTransferPool.shutdown();
+
+		taskLocalStateCleaner.shutdown();
+
 		try {
 			super.shutDown();
 		} catch (Exception e) {
@@ -372,6 +386,8 @@ public class TaskExecutor extends RpcEndpoint<TaskExecutorGateway> {
 				checkpointResponder,
 				libraryCache,
 				fileCache,
+				stateTransferPool,
+				taskLocalStateCleaner,
 				taskManagerConfiguration,
 				taskMetricGroup,
 				resultPartitionConsumableNotifier,
@@ -135,6 +135,8 @@ public class TaskManagerRunner implements FatalErrorHandler {
 			taskManagerMetricGroup,
 			taskManagerServices.getBroadcastVariableManager(),
 			taskManagerServices.getFileCache(),
+			taskManagerServices.getStateTransferPool(),
+			taskManagerServices.getTaskLocalStateCleaner(),
 			taskManagerServices.getTaskSlotTable(),
 			taskManagerServices.getJobManagerTable(),
 			taskManagerServices.getJobLeaderService(),
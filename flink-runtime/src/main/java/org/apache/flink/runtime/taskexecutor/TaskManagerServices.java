@@ -39,6 +39,8 @@ import org.apache.flink.runtime.metrics.groups.TaskManagerMetricGroup;
 import org.apache.flink.runtime.query.KvStateRegistry;
 import org.apache.flink.runtime.query.netty.DisabledKvStateRequestStats;
 import org.apache.flink.runtime.query.netty.KvStateServer;
+import org.apache.flink.runtime.state.StateTransferPool;
+import org.apache.flink.runtime.state.TaskLocalStateCleaner;
 import org.apache.flink.runtime.taskexecutor.slot.TaskSlotTable;
 import org.apache.flink.runtime.taskexecutor.slot.TimerService;
 import org.apache.flink.runtime.taskexecutor.utils.TaskExecutorMetricsInitializer;
@@ -72,6 +74,8 @@ public class TaskManagerServices {
 	private final TaskManagerMetricGroup taskManagerMetricGroup;
 	private final BroadcastVariableManager broadcastVariableManager;
 	private final FileCache fileCache;
+	private final StateTransferPool stateTransferPool;
+	private final TaskLocalStateCleaner taskLocalStateCleaner;
 	private final TaskSlotTable taskSlotTable;
 	private final JobManagerTable jobManagerTable;
 	private final JobLeaderService jobLeaderService;
@@ -85,6 +89,8 @@ public class TaskManagerServices {
 		TaskManagerMetricGroup taskManagerMetricGroup,
 		BroadcastVariableManager broadcastVariableManager,
 		FileCache fileCache,
+		StateTransferPool stateTransferPool,
+		TaskLocalStateCleaner taskLocalStateCleaner,
 		TaskSlotTable taskSlotTable,
 		JobManagerTable jobManagerTable,
 		JobLeaderService jobLeaderService) {
@@ -97,6 +103,8 @@ public class TaskManagerServices {
 		this.taskManagerMetricGroup = Preconditions.checkNotNull(taskManagerMetricGroup);
 		this.broadcastVariableManager = Preconditions.checkNotNull(broadcastVariableManager);
 		this.fileCache = Preconditions.checkNotNull(fileCache);
+		this.stateTransferPool = Preconditions.checkNotNull(stateTransferPool);
+		this.taskLocalStateCleaner = Preconditions.checkNotNull(taskLocalStateCleaner);
 		this.taskSlotTable = Preconditions.checkNotNull(taskSlotTable);
 		this.jobManagerTable = Preconditions.checkNotNull(jobManagerTable);
 		this.jobLeaderService = Preconditions.checkNotNull(jobLeaderService);
@@ -137,6 +145,14 @@ public class TaskManagerServices {
 	public FileCache getFileCache() {
 		return fileCache;
 	}
+
+	public StateTransferPool getStateTransferPool() {
+		return stateTransferPool;
+	}
+
+	public TaskLocalStateCleaner getTaskLocalStateCleaner() {
+		return taskLocalStateCleaner;
+	}
 	
 	public TaskSlotTable getTaskSlotTable() {
 		return taskSlotTable;
@@ -198,6 +214,11 @@ public class TaskManagerServices {
 
 		final FileCache fileCache = new FileCache(taskManagerServicesConfiguration.getTmpDirPaths());
 
+		final StateTransferPool stateTransferPool = new StateTransferPool(
+			taskManagerServicesConfiguration.getNumberOfStateTransferThreads());
+
+		final TaskLocalStateCleaner taskLocalStateCleaner = new TaskLocalStateCleaner();
+
 		final List<ResourceProfile> resourceProfiles = new ArrayList<>(taskManagerServicesConfiguration.getNumberOfSlots());
 
 		for (int i = 0; i < taskManagerServicesConfiguration.getNumberOfSlots(); i++) {
@@ -223,6 +244,8 @@ public class TaskManagerServices {
 			taskManagerMetricGroup,
 			broadcastVariableManager,
 			fileCache,
+			stateTransferPool,
+			taskLocalStateCleaner,
 			taskSlotTable,
 			jobManagerTable,
 			jobLeaderService);
@@ -372,7 +395,10 @@ public class TaskManagerServices {
 			networkEnvironmentConfiguration.partitionRequestInitialBackoff(),
 			networkEnvironmentConfiguration.partitionRequestMaxBackoff(),
 			networkEnvironmentConfiguration.networkBuffersPerChannel(),
-			networkEnvironmentConfiguration.extraNetworkBuffersPerGate());
+			networkEnvironmentConfiguration.extraNetworkBuffersPerGate(),
+			networkEnvironmentConfiguration.isCreditBased(),
+			networkEnvironmentConfiguration.isPipelinedCompressionEnabled(),
+			networkEnvironmentConfiguration.isBlockingCompressionEnabled());
 	}
 
 	/**
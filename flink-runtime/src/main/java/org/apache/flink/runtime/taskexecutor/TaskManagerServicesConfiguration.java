@@ -68,6 +68,8 @@ public class TaskManagerServicesConfiguration {
 
 	private final long timerServiceShutdownTimeout;
 
+	private final int numberOfStateTransferThreads;
+
 	public TaskManagerServicesConfiguration(
 			InetAddress taskManagerAddress,
 			String[] tmpDirPaths,
@@ -78,7 +80,8 @@ public class TaskManagerServicesConfiguration {
 			boolean preAllocateMemory,
 			float memoryFraction,
 			MetricRegistryConfiguration metricRegistryConfiguration,
-			long timerServiceShutdownTimeout) {
+			long timerServiceShutdownTimeout,
+			int numberOfStateTransferThreads) {
 
 		this.taskManagerAddress = checkNotNull(taskManagerAddress);
 		this.tmpDirPaths = checkNotNull(tmpDirPaths);
@@ -95,6 +98,9 @@ public class TaskManagerServicesConfiguration {
 		checkArgument(timerServiceShutdownTimeout >= 0L, "The timer " +
 			"service shutdown timeout must be greater or equal to 0.");
 		this.timerServiceShutdownTimeout = timerServiceShutdownTimeout;
+
+		checkArgument(numberOfStateTransferThreads >= 1, "The number of state transfer threads must be at least 1.");
+		this.numberOfStateTransferThreads = numberOfStateTransferThreads;
 	}
 
 	// --------------------------------------------------------------------------------------------
@@ -142,6 +148,10 @@ public class TaskManagerServicesConfiguration {
 		return timerServiceShutdownTimeout;
 	}
 
+	public int getNumberOfStateTransferThreads() {
+		return numberOfStateTransferThreads;
+	}
+
 	// --------------------------------------------------------------------------------------------
 	//  Parsing of Flink configuration
 	// --------------------------------------------------------------------------------------------
@@ -204,6 +214,11 @@ public class TaskManagerServicesConfiguration {
 
 		long timerServiceShutdownTimeout = AkkaUtils.getTimeout(configuration).toMillis();
 
+		int numberOfStateTransferThreads = configuration.getInteger(TaskManagerOptions.STATE_TRANSFER_THREADS);
+		checkConfigParameter(numberOfStateTransferThreads >= 1, numberOfStateTransferThreads,
+			TaskManagerOptions.STATE_TRANSFER_THREADS.key(),
+			"The number of state transfer threads must be at least 1.");
+
 		return new TaskManagerServicesConfiguration(
 			remoteAddress,
 			tmpDirs,
@@ -214,7 +229,8 @@ public class TaskManagerServicesConfiguration {
 			preAllocateMemory,
 			memoryFraction,
 			metricRegistryConfiguration,
-			timerServiceShutdownTimeout);
+			timerServiceShutdownTimeout,
+			numberOfStateTransferThreads);
 	}
 
 	// --------------------------------------------------------------------------
@@ -322,6 +338,14 @@ public class TaskManagerServicesConfiguration {
 		int extraBuffersPerGate = configuration.getInteger(
 			TaskManagerOptions.NETWORK_EXTRA_BUFFERS_PER_GATE);
 
+		boolean isCreditBased = configuration.getBoolean(
+			TaskManagerOptions.NETWORK_CREDIT_BASED_FLOW_CONTROL);
+
+		boolean isPipelinedCompressionEnabled = configuration.getBoolean(
+			TaskManagerOptions.NETWORK_COMPRESSION_PIPELINED);
+		boolean isBlockingCompressionEnabled = configuration.getBoolean(
+			TaskManagerOptions.NETWORK_COMPRESSION_BLOCKING);
+
 		return new NetworkEnvironmentConfiguration(
 			numNetworkBuffers,
 			pageSize,
@@ -331,6 +355,9 @@ public class TaskManagerServicesConfiguration {
 			maxRequestBackoff,
 			buffersPerChannel,
 			extraBuffersPerGate,
+			isCreditBased,
+			isPipelinedCompressionEnabled,
+			isBlockingCompressionEnabled,
 			nettyConfig);
 	}
 
@@ -37,6 +37,8 @@ import org.apache.flink.runtime.jobgraph.tasks.InputSplitProvider;
 import org.apache.flink.runtime.memory.MemoryManager;
 import org.apache.flink.runtime.metrics.groups.TaskMetricGroup;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.state.StateTransferPool;
+import org.apache.flink.runtime.state.TaskLocalStateCleaner;
 
 import java.util.Map;
 import java.util.concurrent.Future;
@@ -63,6 +65,8 @@ public class RuntimeEnvironment implements Environment {
 	private final MemoryManager memManager;
 	private final IOManager ioManager;
 	private final BroadcastVariableManager bcVarManager;
+	private final StateTransferPool stateTransferPool;
+	private final TaskLocalStateCleaner taskLocalStateCleaner;
 	private final InputSplitProvider splitProvider;
 	
 	private final Map<String, Future<Path>> distCacheEntries;
@@ -95,6 +99,8 @@ public class RuntimeEnvironment implements Environment {
 			MemoryManager memManager,
 			IOManager ioManager,
 			BroadcastVariableManager bcVarManager,
+			StateTransferPool stateTransferPool,
+			TaskLocalStateCleaner taskLocalStateCleaner,
 			AccumulatorRegistry accumulatorRegistry,
 			TaskKvStateRegistry kvStateRegistry,
 			InputSplitProvider splitProvider,
@@ -117,6 +123,8 @@ public class RuntimeEnvironment implements Environment {
 		this.memManager = checkNotNull(memManager);
 		this.ioManager = checkNotNull(ioManager);
 		this.bcVarManager = checkNotNull(bcVarManager);
+		this.stateTransferPool = checkNotNull(stateTransferPool);
+		this.taskLocalStateCleaner = checkNotNull(taskLocalStateCleaner);
 		this.accumulatorRegistry = checkNotNull(accumulatorRegistry);
 		this.kvStateRegistry = checkNotNull(kvStateRegistry);
 		this.splitProvider = checkNotNull(splitProvider);
@@ -196,6 +204,16 @@ public class RuntimeEnvironment implements Environment {
 		return bcVarManager;
 	}
 
+	@Override
+	public StateTransferPool getStateTransferPool() {
+		return stateTransferPool;
+	}
+
+	@Override
+	public TaskLocalStateCleaner getTaskLocalStateCleaner() {
+		return taskLocalStateCleaner;
+	}
+
 	@Override
 	public AccumulatorRegistry getAccumulatorRegistry() {
 		return accumulatorRegistry;
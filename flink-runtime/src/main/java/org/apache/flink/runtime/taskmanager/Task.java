@@ -64,6 +64,8 @@ import org.apache.flink.runtime.jobmanager.PartitionProducerDisposedException;
 import org.apache.flink.runtime.memory.MemoryManager;
 import org.apache.flink.runtime.metrics.groups.TaskMetricGroup;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.state.StateTransferPool;
+import org.apache.flink.runtime.state.TaskLocalStateCleaner;
 import org.apache.flink.runtime.state.TaskStateHandles;
 import org.apache.flink.util.ExceptionUtils;
 import org.apache.flink.util.Preconditions;
@@ -172,6 +174,12 @@ public class Task implements Runnable, TaskActions {
 	/** The BroadcastVariableManager to be used by this task */
 	private final BroadcastVariableManager broadcastVariableManager;
 
+	/** The pool of the TaskManager that transfers the parts of multi-part snapshots */
+	private final StateTransferPool stateTransferPool;
+
+	/** The cleaner of the TaskManager that deletes the local state copies of released tasks */
+	private final TaskLocalStateCleaner taskLocalStateCleaner;
+
 	/** Serialized version of the job specific execution configuration (see {@link ExecutionConfig}). */
 	private final SerializedValue<ExecutionConfig> serializedExecutionConfig;
 
@@ -276,6 +284,8 @@ public class Task implements Runnable, TaskActions {
 		CheckpointResponder checkpointResponder,
 		LibraryCacheManager libraryCache,
 		FileCache fileCache,
+		StateTransferPool stateTransferPool,
+		TaskLocalStateCleaner taskLocalStateCleaner,
 		TaskManagerRuntimeInfo taskManagerConfig,
 		TaskMetricGroup metricGroup,
 		ResultPartitionConsumableNotifier resultPartitionConsumableNotifier,
@@ -324,6 +334,8 @@ public class Task implements Runnable, TaskActions {
 
 		this.libraryCache = Preconditions.checkNotNull(libraryCache);
 		this.fileCache = Preconditions.checkNotNull(fileCache);
+		this.stateTransferPool = Preconditions.checkNotNull(stateTransferPool);
+		this.taskLocalStateCleaner = Preconditions.checkNotNull(taskLocalStateCleaner);
 		this.network = Preconditions.checkNotNull(networkEnvironment);
 		this.taskManagerConfig = Preconditions.checkNotNull(taskManagerConfig);
 
@@ -622,7 +634,7 @@ public class Task implements Runnable, TaskActions {
 				jobId, vertexId, executionId, executionConfig, taskInfo,
 				jobConfiguration, taskConfiguration, userCodeClassLoader,
 				memoryManager, ioManager, broadcastVariableManager,
-				accumulatorRegistry, kvStateRegistry, inputSplitProvider,
+				stateTransferPool, taskLocalStateCleaner, accumulatorRegistry, kvStateRegistry, inputSplitProvider,
 				distributedCacheEntries, writers, inputGates,
 				checkpointResponder, taskManagerConfig, metrics, this);
 
@@ -1376,8 +1376,10 @@ class JobManager(
                     executionGraph.getUserClassLoader,
                     allowNonRestored)
 
-                executionGraph.getCheckpointCoordinator.getCheckpointStore
-                  .addCheckpoint(savepoint)
+                val checkpointCoordinator = executionGraph.getCheckpointCoordinator
+                checkpointCoordinator.getCheckpointStore.addCheckpoint(
+                  savepoint,
+                  checkpointCoordinator.getSharedStateRegistry)
 
                 // Reset the checkpoint ID counter
                 val nextCheckpointId: Long = savepoint.getCheckpointID + 1
@@ -2524,7 +2526,9 @@ object JobManager {
     try {
       blobServer = new BlobServer(configuration)
       instanceManager = new InstanceManager()
-      scheduler = new FlinkScheduler(ExecutionContext.fromExecutor(futureExecutor))
+      scheduler = new FlinkScheduler(
+        ExecutionContext.fromExecutor(futureExecutor),
+        configuration.getBoolean(CoreOptions.LOCAL_RECOVERY))
       libraryCacheManager = new BlobLibraryCacheManager(blobServer, cleanupInterval)
 
       instanceManager.addInstanceListener(scheduler)
@@ -31,4 +31,7 @@ case class NetworkEnvironmentConfiguration(
     partitionRequestMaxBackoff : Int,
     networkBuffersPerChannel: Int,
     extraNetworkBuffersPerGate: Int,
+    isCreditBased: Boolean,
+    isPipelinedCompressionEnabled: Boolean,
+    isBlockingCompressionEnabled: Boolean,
     nettyConfig: NettyConfig = null)
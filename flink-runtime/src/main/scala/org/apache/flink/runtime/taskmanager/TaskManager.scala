@@ -66,6 +66,7 @@ import org.apache.flink.runtime.metrics.{MetricRegistry => FlinkMetricRegistry}
 import org.apache.flink.runtime.process.ProcessReaper
 import org.apache.flink.runtime.security.SecurityUtils
 import org.apache.flink.runtime.security.SecurityUtils.SecurityConfiguration
+import org.apache.flink.runtime.state.{StateTransferPool, TaskLocalStateCleaner}
 import org.apache.flink.runtime.taskexecutor.{TaskManagerServices, TaskManagerServicesConfiguration, TaskManagerConfiguration}
 import org.apache.flink.runtime.util._
 import org.apache.flink.runtime.{FlinkActor, LeaderSessionMessageFilter, LogMessages}
@@ -148,6 +149,12 @@ class TaskManager(
   /** Handler for distributed files cached by this TaskManager */
   protected val fileCache = new FileCache(config.getTmpDirectories())
 
+  /** Pool of threads that transfer multi-part snapshots (shared between multiple Tasks) */
+  protected val stateTransferPool = StateTransferPool.fromConfiguration(config.getConfiguration())
+
+  /** Deleter of the local state copies of released tasks (shared between multiple Tasks) */
+  protected val taskLocalStateCleaner = new TaskLocalStateCleaner()
+
   private var taskManagerMetricGroup : TaskManagerMetricGroup = _
 
   /** Actors which want to be notified once this task manager has been
@@ -252,6 +259,18 @@ class TaskManager(
     } catch {
       case t: Exception => log.error("FileCache did not shutdown properly.", t)
     }
+
+    try {
+      stateTransferPool.shutdown()
+    } catch {
+      case t: Exception => log.error("State transfer pool did not shutdown properly.", t)
+    }
+
+    try {
+      taskLocalStateCleaner.shutdown()
+    } catch {
+      case t: Exception => log.error("Task local state cleaner did not shutdown properly.", t)
+    }
     
     // failsafe shutdown of the metrics registry
     try {
@@ -1181,6 +1200,8 @@ class TaskManager(
         checkpointResponder,
         libCache,
         fileCache,
+        stateTransferPool,
+        taskLocalStateCleaner,
         config,
         taskMetricGroup,
         resultPartitionConsumableNotifier,
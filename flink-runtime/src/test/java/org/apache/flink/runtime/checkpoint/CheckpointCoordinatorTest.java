@@ -37,11 +37,13 @@ import org.apache.flink.runtime.jobgraph.tasks.ExternalizedCheckpointSettings;
 import org.apache.flink.runtime.messages.checkpoint.AcknowledgeCheckpoint;
 import org.apache.flink.runtime.messages.checkpoint.DeclineCheckpoint;
 import org.apache.flink.runtime.state.ChainedStateHandle;
+import org.apache.flink.runtime.state.IncrementalKeyGroupsStateHandle;
 import org.apache.flink.runtime.state.KeyGroupRange;
 import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
 import org.apache.flink.runtime.state.KeyGroupsStateHandle;
 import org.apache.flink.runtime.state.OperatorStateHandle;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.runtime.state.StreamStateHandle;
 import org.apache.flink.runtime.state.TaskStateHandles;
 import org.apache.flink.runtime.state.filesystem.FileStateHandle;
@@ -56,6 +58,7 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.Serializable;
@@ -2193,6 +2196,83 @@ public class CheckpointCoordinatorTest {
 			"non-partitioned state changed.");
 	}
 
+	/**
+	 * Tests that incrementally checkpointed keyed state is not restored with a different parallelism.
+	 */
+	@Test
+	public void testRestoreFailureWhenParallelismOfIncrementalKeyedStateChanges() throws Exception {
+		JobVertexID jobVertexID = new JobVertexID();
+		TaskState taskState = createIncrementalKeyedTaskState(jobVertexID, 2, 16);
+
+		Map<JobVertexID, ExecutionJobVertex> tasks = new HashMap<>();
+		tasks.put(jobVertexID, mockExecutionJobVertex(jobVertexID, 3, 16));
+
+		StateAssignmentOperation stateAssignmentOperation = new StateAssignmentOperation(
+				LoggerFactory.getLogger(CheckpointCoordinatorTest.class),
+				tasks,
+				Collections.singletonMap(jobVertexID, taskState),
+				false);
+
+		try {
+			stateAssignmentOperation.assignStates();
+			fail("The restore should have failed because incremental keyed state cannot be rescaled.");
+		} catch (IllegalStateException expected) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests that incrementally checkpointed keyed state is restored if the parallelism did not change.
+	 */
+	@Test
+	public void testRestoreIncrementalKeyedStateWithSameParallelism() throws Exception {
+		JobVertexID jobVertexID = new JobVertexID();
+		TaskState taskState = createIncrementalKeyedTaskState(jobVertexID, 2, 16);
+
+		Map<JobVertexID, ExecutionJobVertex> tasks = new HashMap<>();
+		ExecutionJobVertex executionJobVertex = mockExecutionJobVertex(jobVertexID, 2, 16);
+		tasks.put(jobVertexID, executionJobVertex);
+
+		StateAssignmentOperation stateAssignmentOperation = new StateAssignmentOperation(
+				LoggerFactory.getLogger(CheckpointCoordinatorTest.class),
+				tasks,
+				Collections.singletonMap(jobVertexID, taskState),
+				false);
+
+		assertTrue(stateAssignmentOperation.assignStates());
+
+		for (ExecutionVertex executionVertex : executionJobVertex.getTaskVertices()) {
+			verify(executionVertex.getCurrentExecutionAttempt()).setInitialState(any(TaskStateHandles.class));
+		}
+	}
+
+	private static TaskState createIncrementalKeyedTaskState(
+			JobVertexID jobVertexID,
+			int parallelism,
+			int maxParallelism) {
+
+		TaskState taskState = new TaskState(jobVertexID, parallelism, maxParallelism, 1);
+		List<KeyGroupRange> keyGroupPartitions =
+				StateAssignmentOperation.createKeyGroupPartitions(maxParallelism, parallelism);
+
+		for (int index = 0; index < parallelism; index++) {
+			KeyGroupsStateHandle keyedState = new IncrementalKeyGroupsStateHandle(
+					keyGroupPartitions.get(index),
+					UUID.randomUUID().toString(),
+					1L,
+					new ByteStreamStateHandle("meta-" + index, new byte[0]),
+					Collections.<String, StreamStateHandle>emptyMap(),
+					Collections.<String, StreamStateHandle>emptyMap(),
+					Collections.<String, StreamStateHandle>emptyMap());
+
+			taskState.putState(index, new SubtaskState(
+					new ChainedStateHandle<>(Collections.<StreamStateHandle>singletonList(null)),
+					null, null, keyedState, null));
+		}
+
+		return taskState;
+	}
+
 	@Test
 	public void testRestoreLatestCheckpointedStateScaleIn() throws Exception {
 		testRestoreLatestCheckpointedStateWithChangingParallelism(false);
@@ -2449,6 +2529,44 @@ public class CheckpointCoordinatorTest {
 		Assert.assertEquals(2, checkCounts.get("t-3").intValue());
 	}
 
+	@Test
+	public void testUniformBroadcastModeStateHandle() {
+		List<OperatorStateHandle> previousStates = new ArrayList<>(2);
+		for (int i = 0; i < 2; ++i) {
+			Map<String, OperatorStateHandle.StateMetaInfo> metaInfoMap = new HashMap<>(1);
+			metaInfoMap.put("t-1", new OperatorStateHandle.StateMetaInfo(
+					new long[]{0}, OperatorStateHandle.Mode.UNIFORM_BROADCAST));
+			previousStates.add(new OperatorStateHandle(metaInfoMap, new ByteStreamStateHandle("test-" + i, new byte[10])));
+		}
+
+		OperatorStateRepartitioner repartitioner = RoundRobinOperatorStateRepartitioner.INSTANCE;
+
+		// scale up: every new subtask gets exactly one of the copies
+		List<Collection<OperatorStateHandle>> repartitionedStates = repartitioner.repartitionState(previousStates, 3);
+		Assert.assertEquals(3, repartitionedStates.size());
+
+		Map<StreamStateHandle, Integer> usedCopies = new HashMap<>(2);
+		for (Collection<OperatorStateHandle> operatorStateHandles : repartitionedStates) {
+			Assert.assertEquals(1, operatorStateHandles.size());
+
+			OperatorStateHandle operatorStateHandle = operatorStateHandles.iterator().next();
+			OperatorStateHandle.StateMetaInfo metaInfo = operatorStateHandle.getStateNameToPartitionOffsets().get("t-1");
+			Assert.assertEquals(OperatorStateHandle.Mode.UNIFORM_BROADCAST, metaInfo.getDistributionMode());
+			Assert.assertEquals(1, metaInfo.getOffsets().length);
+
+			Integer count = usedCopies.get(operatorStateHandle.getDelegateStateHandle());
+			usedCopies.put(operatorStateHandle.getDelegateStateHandle(), count == null ? 1 : count + 1);
+		}
+
+		// the copies are used round robin
+		Assert.assertEquals(2, usedCopies.size());
+
+		// scale down: the single subtask still gets only one copy
+		repartitionedStates = repartitioner.repartitionState(previousStates, 1);
+		Assert.assertEquals(1, repartitionedStates.size());
+		Assert.assertEquals(1, repartitionedStates.get(0).size());
+	}
+
 	// ------------------------------------------------------------------------
 	//  Utilities
 	// ------------------------------------------------------------------------
@@ -3011,7 +3129,9 @@ public class CheckpointCoordinatorTest {
 		ExecutionVertex vertex1 = mockExecutionVertex(new ExecutionAttemptID());
 
 		StandaloneCompletedCheckpointStore store = new StandaloneCompletedCheckpointStore(1);
-		store.addCheckpoint(new CompletedCheckpoint(new JobID(), 0, 0, 0, Collections.<JobVertexID, TaskState>emptyMap()));
+		store.addCheckpoint(
+			new CompletedCheckpoint(new JobID(), 0, 0, 0, Collections.<JobVertexID, TaskState>emptyMap()),
+			new SharedStateRegistry());
 
 		// set up the coordinator and validate the initial state
 		CheckpointCoordinator coord = new CheckpointCoordinator(
@@ -23,6 +23,7 @@ import org.apache.flink.core.fs.Path;
 import org.apache.flink.core.testutils.CommonTestUtils;
 import org.apache.flink.runtime.jobgraph.JobStatus;
 import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.runtime.state.filesystem.FileStateHandle;
 import org.junit.Rule;
 import org.junit.Test;
@@ -61,7 +62,7 @@ public class CompletedCheckpointTest {
 				new FileStateHandle(new Path(file.toURI()), file.length()),
 				file.getAbsolutePath());
 
-		checkpoint.discard(JobStatus.FAILED);
+		checkpoint.discardOnShutdown(JobStatus.FAILED, new SharedStateRegistry());
 
 		assertEquals(false, file.exists());
 	}
@@ -81,9 +82,10 @@ public class CompletedCheckpointTest {
 				new JobID(), 0, 0, 1, taskStates, props);
 
 		// Subsume
-		checkpoint.subsume();
+		SharedStateRegistry sharedStateRegistry = new SharedStateRegistry();
+		checkpoint.discardOnSubsume(sharedStateRegistry);
 
-		verify(state, times(1)).discardState();
+		verify(state, times(1)).discardState(sharedStateRegistry);
 	}
 
 	/**
@@ -102,6 +104,8 @@ public class CompletedCheckpointTest {
 		Map<JobVertexID, TaskState> taskStates = new HashMap<>();
 		taskStates.put(new JobVertexID(), state);
 
+		SharedStateRegistry sharedStateRegistry = new SharedStateRegistry();
+
 		for (JobStatus status : terminalStates) {
 			Mockito.reset(state);
 
@@ -112,8 +116,8 @@ public class CompletedCheckpointTest {
 					new FileStateHandle(new Path(file.toURI()), file.length()),
 					externalPath);
 
-			checkpoint.discard(status);
-			verify(state, times(0)).discardState();
+			checkpoint.discardOnShutdown(status, sharedStateRegistry);
+			verify(state, times(0)).discardState(sharedStateRegistry);
 			assertEquals(true, file.exists());
 
 			// Discard
@@ -121,8 +125,8 @@ public class CompletedCheckpointTest {
 			checkpoint = new CompletedCheckpoint(
 					new JobID(), 0, 0, 1, new HashMap<>(taskStates), props);
 
-			checkpoint.discard(status);
-			verify(state, times(1)).discardState();
+			checkpoint.discardOnShutdown(status, sharedStateRegistry);
+			verify(state, times(1)).discardState(sharedStateRegistry);
 		}
 	}
 
@@ -146,7 +150,7 @@ public class CompletedCheckpointTest {
 		CompletedCheckpointStats.DiscardCallback callback = mock(CompletedCheckpointStats.DiscardCallback.class);
 		completed.setDiscardCallback(callback);
 
-		completed.discard(JobStatus.FINISHED);
+		completed.discardOnShutdown(JobStatus.FINISHED, new SharedStateRegistry());
 		verify(callback, times(1)).notifyDiscardedCheckpoint();
 	}
 
@@ -35,6 +35,7 @@ import org.apache.flink.runtime.jobgraph.JobVertex;
 import org.apache.flink.runtime.jobgraph.tasks.AbstractInvokable;
 import org.apache.flink.runtime.jobgraph.tasks.ExternalizedCheckpointSettings;
 import org.apache.flink.runtime.jobmanager.scheduler.Scheduler;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.apache.flink.runtime.testingUtils.TestingUtils;
 import org.apache.flink.util.SerializedValue;
 import org.junit.AfterClass;
@@ -70,7 +71,7 @@ public class ExecutionGraphCheckpointCoordinatorTest {
 		graph.fail(new Exception("Test Exception"));
 
 		verify(counter, times(1)).shutdown(JobStatus.FAILED);
-		verify(store, times(1)).shutdown(JobStatus.FAILED);
+		verify(store, times(1)).shutdown(Matchers.eq(JobStatus.FAILED), Matchers.any(SharedStateRegistry.class));
 	}
 
 	/**
@@ -87,7 +88,7 @@ public class ExecutionGraphCheckpointCoordinatorTest {
 
 		// No shutdown
 		verify(counter, times(1)).shutdown(Matchers.eq(JobStatus.SUSPENDED));
-		verify(store, times(1)).shutdown(Matchers.eq(JobStatus.SUSPENDED));
+		verify(store, times(1)).shutdown(Matchers.eq(JobStatus.SUSPENDED), Matchers.any(SharedStateRegistry.class));
 	}
 
 	private ExecutionGraph createExecutionGraphAndEnableCheckpointing(
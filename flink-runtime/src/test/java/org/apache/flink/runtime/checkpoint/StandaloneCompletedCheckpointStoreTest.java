@@ -19,6 +19,7 @@
 package org.apache.flink.runtime.checkpoint;
 
 import org.apache.flink.runtime.jobgraph.JobStatus;
+import org.apache.flink.runtime.state.SharedStateRegistry;
 import org.junit.Test;
 
 import java.io.IOException;
@@ -27,6 +28,7 @@ import java.util.List;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.powermock.api.mockito.PowerMockito.doReturn;
 import static org.powermock.api.mockito.PowerMockito.doThrow;
 import static org.powermock.api.mockito.PowerMockito.mock;
@@ -51,10 +53,10 @@ public class StandaloneCompletedCheckpointStoreTest extends CompletedCheckpointS
 		CompletedCheckpointStore store = createCompletedCheckpoints(1);
 		TestCompletedCheckpoint checkpoint = createCheckpoint(0);
 
-		store.addCheckpoint(checkpoint);
+		store.addCheckpoint(checkpoint, new SharedStateRegistry());
 		assertEquals(1, store.getNumberOfRetainedCheckpoints());
 
-		store.shutdown(JobStatus.FINISHED);
+		store.shutdown(JobStatus.FINISHED, new SharedStateRegistry());
 
 		assertEquals(0, store.getNumberOfRetainedCheckpoints());
 		assertTrue(checkpoint.isDiscarded());
@@ -69,10 +71,10 @@ public class StandaloneCompletedCheckpointStoreTest extends CompletedCheckpointS
 		CompletedCheckpointStore store = createCompletedCheckpoints(1);
 		TestCompletedCheckpoint checkpoint = createCheckpoint(0);
 
-		store.addCheckpoint(checkpoint);
+		store.addCheckpoint(checkpoint, new SharedStateRegistry());
 		assertEquals(1, store.getNumberOfRetainedCheckpoints());
 
-		store.shutdown(JobStatus.SUSPENDED);
+		store.shutdown(JobStatus.SUSPENDED, new SharedStateRegistry());
 
 		assertEquals(0, store.getNumberOfRetainedCheckpoints());
 		assertTrue(checkpoint.isDiscarded());
@@ -91,10 +93,10 @@ public class StandaloneCompletedCheckpointStoreTest extends CompletedCheckpointS
 		for (long i = 0; i <= numCheckpointsToRetain; ++i) {
 			CompletedCheckpoint checkpointToAdd = mock(CompletedCheckpoint.class);
 			doReturn(i).when(checkpointToAdd).getCheckpointID();
-			doThrow(new IOException()).when(checkpointToAdd).subsume();
+			doThrow(new IOException()).when(checkpointToAdd).discardOnSubsume(any(SharedStateRegistry.class));
 			
 			try {
-				store.addCheckpoint(checkpointToAdd);
+				store.addCheckpoint(checkpointToAdd, new SharedStateRegistry());
 				
 				// The checkpoint should be in the store if we successfully add it into the store.
 				List<CompletedCheckpoint> addedCheckpoints = store.getAllCheckpoints();
@@ -19,22 +19,57 @@
 package org.apache.flink.runtime.checkpoint;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.core.fs.Path;
 import org.apache.flink.runtime.concurrent.Executors;
 import org.apache.flink.runtime.jobgraph.JobStatus;
+import org.apache.flink.runtime.jobgraph.JobVertexID;
+import org.apache.flink.runtime.messages.CheckpointMessagesTest;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.IncrementalKeyGroupsStateHandle;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeOffsets;
+import org.apache.flink.runtime.state.KeyGroupsStateHandle;
 import org.apache.flink.runtime.state.RetrievableStateHandle;
+import org.apache.flink.runtime.state.SharedStateRegistry;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.VoidNamespace;
+import org.apache.flink.runtime.state.VoidNamespaceSerializer;
+import org.apache.flink.runtime.state.filesystem.FileSegmentStateHandle;
+import org.apache.flink.runtime.state.filesystem.FileStateHandle;
+import org.apache.flink.runtime.state.filesystem.FsCheckpointStreamFactory;
+import org.apache.flink.runtime.state.heap.HeapKeyedStateBackend;
 import org.apache.flink.runtime.zookeeper.RetrievableStateStorageHelper;
 import org.apache.flink.runtime.zookeeper.ZooKeeperTestEnvironment;
+import org.apache.flink.util.FutureUtil;
+import org.apache.flink.util.InstantiationUtil;
 import org.junit.AfterClass;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
 
 /**
  * Tests for basic {@link CompletedCheckpointStore} contract and ZooKeeper state handling.
@@ -45,6 +80,9 @@ public class ZooKeeperCompletedCheckpointStoreITCase extends CompletedCheckpoint
 
 	private final static String CheckpointsPath = "/checkpoints";
 
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	@AfterClass
 	public static void tearDown() throws Exception {
 		if (ZooKeeper != null) {
@@ -70,6 +108,22 @@ public class ZooKeeperCompletedCheckpointStoreITCase extends CompletedCheckpoint
 		}, Executors.directExecutor());
 	}
 
+	/**
+	 * Creates a store whose state handles return a deserialized copy of the stored checkpoint,
+	 * like the handles of the file system state storage of a high-availability setup do.
+	 */
+	private CompletedCheckpointStore createSerializingCompletedCheckpoints(
+			int maxNumberOfCheckpointsToRetain) throws Exception {
+
+		return new ZooKeeperCompletedCheckpointStore(maxNumberOfCheckpointsToRetain,
+			ZooKeeper.createClient(), CheckpointsPath, new RetrievableStateStorageHelper<CompletedCheckpoint>() {
+			@Override
+			public RetrievableStateHandle<CompletedCheckpoint> store(CompletedCheckpoint state) throws Exception {
+				return new SerializedRetrievableStateHandle<>(state);
+			}
+		}, Executors.directExecutor());
+	}
+
 	// ---------------------------------------------------------------------------------------------
 
 	/**
@@ -86,9 +140,9 @@ public class ZooKeeperCompletedCheckpointStoreITCase extends CompletedCheckpoint
 		};
 
 		// Add multiple checkpoints
-		checkpoints.addCheckpoint(expected[0]);
-		checkpoints.addCheckpoint(expected[1]);
-		checkpoints.addCheckpoint(expected[2]);
+		checkpoints.addCheckpoint(expected[0], new SharedStateRegistry());
+		checkpoints.addCheckpoint(expected[1], new SharedStateRegistry());
+		checkpoints.addCheckpoint(expected[2], new SharedStateRegistry());
 
 		// All three should be in ZK
 		assertEquals(3, ZooKeeper.getClient().getChildren().forPath(CheckpointsPath).size());
@@ -106,7 +160,7 @@ public class ZooKeeperCompletedCheckpointStoreITCase extends CompletedCheckpoint
 		expectedCheckpoints.add(expected[2]);
 		expectedCheckpoints.add(createCheckpoint(3));
 
-		checkpoints.addCheckpoint(expectedCheckpoints.get(2));
+		checkpoints.addCheckpoint(expectedCheckpoints.get(2), new SharedStateRegistry());
 
 		List<CompletedCheckpoint> actualCheckpoints = checkpoints.getAllCheckpoints();
 
@@ -123,11 +177,11 @@ public class ZooKeeperCompletedCheckpointStoreITCase extends CompletedCheckpoint
 		CompletedCheckpointStore store = createCompletedCheckpoints(1);
 		TestCompletedCheckpoint checkpoint = createCheckpoint(0);
 
-		store.addCheckpoint(checkpoint);
+		store.addCheckpoint(checkpoint, new SharedStateRegistry());
 		assertEquals(1, store.getNumberOfRetainedCheckpoints());
 		assertNotNull(client.checkExists().forPath(CheckpointsPath + "/" + checkpoint.getCheckpointID()));
 
-		store.shutdown(JobStatus.FINISHED);
+		store.shutdown(JobStatus.FINISHED, new SharedStateRegistry());
 
 		assertEquals(0, store.getNumberOfRetainedCheckpoints());
 		assertNull(client.checkExists().forPath(CheckpointsPath + "/" + checkpoint.getCheckpointID()));
@@ -148,11 +202,11 @@ public class ZooKeeperCompletedCheckpointStoreITCase extends CompletedCheckpoint
 		CompletedCheckpointStore store = createCompletedCheckpoints(1);
 		TestCompletedCheckpoint checkpoint = createCheckpoint(0);
 
-		store.addCheckpoint(checkpoint);
+		store.addCheckpoint(checkpoint, new SharedStateRegistry());
 		assertEquals(1, store.getNumberOfRetainedCheckpoints());
 		assertNotNull(client.checkExists().forPath(CheckpointsPath + "/" + checkpoint.getCheckpointID()));
 
-		store.shutdown(JobStatus.SUSPENDED);
+		store.shutdown(JobStatus.SUSPENDED, new SharedStateRegistry());
 
 		assertEquals(0, store.getNumberOfRetainedCheckpoints());
 		assertNotNull(client.checkExists().forPath(CheckpointsPath + "/" + checkpoint.getCheckpointID()));
@@ -164,6 +218,244 @@ public class ZooKeeperCompletedCheckpointStoreITCase extends CompletedCheckpoint
 		assertEquals(checkpoint, recovered);
 	}
 
+	/**
+	 * Tests that subsuming incremental checkpoints keeps the shared files that the retained
+	 * checkpoints reference, although the store discards deserialized copies of the checkpoints
+	 * whose shared files were registered.
+	 */
+	@Test
+	public void testSubsumeKeepsSharedStateOfRetainedIncrementalCheckpoints() throws Exception {
+		CompletedCheckpointStore store = createSerializingCompletedCheckpoints(1);
+		SharedStateRegistry sharedStateRegistry = new SharedStateRegistry();
+
+		Map<String, StreamStateHandle> sharedState = new HashMap<>();
+		Map<String, File> sharedFiles = new HashMap<>();
+		List<File> metaFiles = new ArrayList<>();
+
+		for (long checkpointId = 1; checkpointId <= 3; ++checkpointId) {
+			// every checkpoint uploads one new file and references the files of all earlier ones
+			String fileName = checkpointId + ".sst";
+			File sharedFile = temporaryFolder.newFile();
+			File metaFile = temporaryFolder.newFile();
+
+			Map<String, StreamStateHandle> newSharedState = new HashMap<>();
+			newSharedState.put(fileName, createFileStateHandle(sharedFile));
+
+			IncrementalKeyGroupsStateHandle keyedState = new IncrementalKeyGroupsStateHandle(
+					new KeyGroupRange(0, 0),
+					"backend",
+					checkpointId,
+					createFileStateHandle(metaFile),
+					newSharedState,
+					new HashMap<>(sharedState),
+					Collections.<String, StreamStateHandle>emptyMap());
+
+			CompletedCheckpoint checkpoint = createCheckpointWithKeyedState(checkpointId, keyedState);
+			checkpoint.checkReferencedSharedStates(sharedStateRegistry);
+			checkpoint.registerSharedStates(sharedStateRegistry);
+			store.addCheckpoint(checkpoint, sharedStateRegistry);
+
+			sharedState.putAll(newSharedState);
+			sharedFiles.put(fileName, sharedFile);
+			metaFiles.add(metaFile);
+		}
+
+		assertEquals(1, store.getNumberOfRetainedCheckpoints());
+
+		// the subsumed checkpoints are discarded, but not the files the retained one references
+		assertFalse(metaFiles.get(0).exists());
+		assertFalse(metaFiles.get(1).exists());
+		assertTrue(metaFiles.get(2).exists());
+
+		for (Map.Entry<String, File> sharedFile : sharedFiles.entrySet()) {
+			assertTrue(sharedFile.getValue().exists());
+			assertEquals(1, sharedStateRegistry.getReferenceCount("backend-" + sharedFile.getKey()));
+		}
+
+		store.shutdown(JobStatus.FINISHED, sharedStateRegistry);
+
+		assertFalse(metaFiles.get(2).exists());
+
+		for (Map.Entry<String, File> sharedFile : sharedFiles.entrySet()) {
+			assertFalse(sharedFile.getValue().exists());
+			assertFalse(sharedStateRegistry.isRegistered("backend-" + sharedFile.getKey()));
+		}
+	}
+
+	/**
+	 * Tests that the container files of file segments are deleted once all segments in them are
+	 * subsumed, although the store discards deserialized copies of the registered checkpoints.
+	 */
+	@Test
+	public void testSubsumeDeletesContainersOfSubsumedFileSegments() throws Exception {
+		CompletedCheckpointStore store = createSerializingCompletedCheckpoints(1);
+		SharedStateRegistry sharedStateRegistry = new SharedStateRegistry();
+
+		File firstContainer = temporaryFolder.newFile();
+		File secondContainer = temporaryFolder.newFile();
+		File sharedContainer = temporaryFolder.newFile();
+
+		// the shared file of the first incremental snapshot is reused by the second one
+		Map<String, StreamStateHandle> sharedState = new HashMap<>();
+		sharedState.put("1.sst", createFileSegment(sharedContainer, 0L));
+
+		CompletedCheckpoint first = createCheckpointWithKeyedState(
+				1L,
+				new KeyGroupsStateHandle(
+						new KeyGroupRangeOffsets(new KeyGroupRange(0, 0)),
+						createFileSegment(firstContainer, 0L)),
+				new IncrementalKeyGroupsStateHandle(
+						new KeyGroupRange(1, 1),
+						"backend",
+						1L,
+						createFileSegment(firstContainer, 100L),
+						new HashMap<>(sharedState),
+						Collections.<String, StreamStateHandle>emptyMap(),
+						Collections.<String, StreamStateHandle>emptyMap()));
+
+		CompletedCheckpoint second = createCheckpointWithKeyedState(
+				2L,
+				new KeyGroupsStateHandle(
+						new KeyGroupRangeOffsets(new KeyGroupRange(0, 0)),
+						createFileSegment(secondContainer, 0L)),
+				new IncrementalKeyGroupsStateHandle(
+						new KeyGroupRange(1, 1),
+						"backend",
+						2L,
+						createFileSegment(secondContainer, 100L),
+						Collections.<String, StreamStateHandle>emptyMap(),
+						new HashMap<>(sharedState),
+						Collections.<String, StreamStateHandle>emptyMap()));
+
+		for (CompletedCheckpoint checkpoint : Arrays.asList(first, second)) {
+			checkpoint.checkReferencedSharedStates(sharedStateRegistry);
+			checkpoint.registerSharedStates(sharedStateRegistry);
+			store.addCheckpoint(checkpoint, sharedStateRegistry);
+		}
+
+		// the container of the subsumed segments is deleted, but not the one of the reused shared file
+		assertFalse(firstContainer.exists());
+		assertTrue(secondContainer.exists());
+		assertTrue(sharedContainer.exists());
+		assertEquals(1, sharedStateRegistry.getReferenceCount(new Path(sharedContainer.toURI()).toString()));
+
+		store.shutdown(JobStatus.FINISHED, sharedStateRegistry);
+
+		assertFalse(secondContainer.exists());
+		assertFalse(sharedContainer.exists());
+	}
+
+	/**
+	 * Tests that subsuming the checkpoints of a chain of heap backend snapshots keeps the full
+	 * snapshot and the deltas that the retained checkpoint is restored from, although the store
+	 * discards deserialized copies of the registered checkpoints.
+	 */
+	@Test
+	public void testSubsumeKeepsHeapSnapshotChainOfRetainedCheckpoint() throws Exception {
+		CompletedCheckpointStore store = createSerializingCompletedCheckpoints(1);
+		SharedStateRegistry sharedStateRegistry = new SharedStateRegistry();
+
+		CheckpointStreamFactory streamFactory = new FsCheckpointStreamFactory(
+				new Path(temporaryFolder.newFolder().toURI()), new JobID(), 0);
+
+		ValueStateDescriptor<String> stateDescriptor = new ValueStateDescriptor<>("state", String.class);
+		stateDescriptor.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		HeapKeyedStateBackend<String> keyedBackend = createHeapKeyedStateBackend();
+
+		try {
+			ValueState<String> state = keyedBackend.getPartitionedState(
+					VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, stateDescriptor);
+
+			for (long checkpointId = 1; checkpointId <= 3; ++checkpointId) {
+				keyedBackend.setCurrentKey("key-" + checkpointId);
+				state.update("value-" + checkpointId);
+
+				// the first snapshot contains all state, the later ones are deltas on top of it
+				IncrementalKeyGroupsStateHandle keyedState = (IncrementalKeyGroupsStateHandle) FutureUtil.runIfNotDoneAndGet(
+						keyedBackend.snapshot(checkpointId, checkpointId, streamFactory, CheckpointOptions.forFullCheckpoint()));
+
+				assertEquals(checkpointId - 1, keyedState.getReferencedSharedState().size());
+
+				CompletedCheckpoint checkpoint = createCheckpointWithKeyedState(checkpointId, keyedState);
+				checkpoint.checkReferencedSharedStates(sharedStateRegistry);
+				checkpoint.registerSharedStates(sharedStateRegistry);
+				store.addCheckpoint(checkpoint, sharedStateRegistry);
+
+				keyedBackend.notifyCheckpointComplete(checkpointId);
+			}
+		} finally {
+			keyedBackend.dispose();
+		}
+
+		assertEquals(1, store.getNumberOfRetainedCheckpoints());
+
+		// restoring the retained checkpoint replays the full snapshot and all deltas
+		TaskState taskState = store.getLatestCheckpoint().getTaskStates().values().iterator().next();
+		KeyGroupsStateHandle retainedState = taskState.getState(0).getManagedKeyedState();
+
+		keyedBackend = createHeapKeyedStateBackend();
+
+		try {
+			keyedBackend.restore(Collections.singletonList(retainedState));
+
+			ValueState<String> state = keyedBackend.getPartitionedState(
+					VoidNamespace.INSTANCE, VoidNamespaceSerializer.INSTANCE, stateDescriptor);
+
+			for (long checkpointId = 1; checkpointId <= 3; ++checkpointId) {
+				keyedBackend.setCurrentKey("key-" + checkpointId);
+				assertEquals("value-" + checkpointId, state.value());
+			}
+		} finally {
+			keyedBackend.dispose();
+		}
+	}
+
+	private static HeapKeyedStateBackend<String> createHeapKeyedStateBackend() {
+		return new HeapKeyedStateBackend<>(
+				mock(TaskKvStateRegistry.class),
+				StringSerializer.INSTANCE,
+				ZooKeeperCompletedCheckpointStoreITCase.class.getClassLoader(),
+				1,
+				new KeyGroupRange(0, 0),
+				true,
+				true,
+				new ExecutionConfig());
+	}
+
+	private static CompletedCheckpoint createCheckpointWithKeyedState(
+			long checkpointId,
+			KeyGroupsStateHandle... keyedStates) throws IOException {
+
+		JobVertexID jobVertexId = new JobVertexID();
+
+		TaskState taskState = new TaskState(jobVertexId, keyedStates.length, keyedStates.length, 1);
+		for (int i = 0; i < keyedStates.length; i++) {
+			taskState.putState(i, new SubtaskState(
+					CheckpointCoordinatorTest.generateChainedStateHandle(new CheckpointMessagesTest.MyHandle()),
+					null,
+					null,
+					keyedStates[i],
+					null));
+		}
+
+		return new CompletedCheckpoint(
+				new JobID(),
+				checkpointId,
+				checkpointId,
+				checkpointId,
+				Collections.singletonMap(jobVertexId, taskState),
+				CheckpointProperties.forStandardCheckpoint());
+	}
+
+	private static FileSegmentStateHandle createFileSegment(File containerFile, long startPosition) {
+		return new FileSegmentStateHandle(new Path(containerFile.toURI()), startPosition, 100L);
+	}
+
+	private static FileStateHandle createFileStateHandle(File file) {
+		return new FileStateHandle(new Path(file.toURI()), file.length());
+	}
+
 	static class HeapRetrievableStateHandle<T extends Serializable> implements RetrievableStateHandle<T> {
 
 		private static final long serialVersionUID = -268548467968932L;
@@ -189,4 +481,29 @@ public class ZooKeeperCompletedCheckpointStoreITCase extends CompletedCheckpoint
 			return 0;
 		}
 	}
+
+	static class SerializedRetrievableStateHandle<T extends Serializable> implements RetrievableStateHandle<T> {
+
+		private static final long serialVersionUID = 7158720958216530941L;
+
+		private final byte[] serializedState;
+
+		public SerializedRetrievableStateHandle(T state) throws IOException {
+			this.serializedState = InstantiationUtil.serializeObject(state);
+		}
+
+		@Override
+		public T retrieveState() throws Exception {
+			return InstantiationUtil.deserializeObject(serializedState, getClass().getClassLoader());
+		}
+
+		@Override
+		public void discardState() throws Exception {
+		}
+
+		@Override
+		public long getStateSize() {
+			return serializedState.length;
+		}
+	}
 }
@@ -49,6 +49,19 @@ public class EventSerializerTest {
 		testCheckpointBarrierSerialization(id, timestamp, savepoint);
 	}
 
+	@Test
+	public void testCheckpointBarrierOvertakenBuffersSerialization() throws Exception {
+		ClassLoader cl = Thread.currentThread().getContextClassLoader();
+
+		CheckpointBarrier barrier = new CheckpointBarrier(1L, 2L, CheckpointOptions.forFullCheckpoint(), 17);
+		ByteBuffer serialized = EventSerializer.toSerializedEvent(barrier);
+		CheckpointBarrier deserialized = (CheckpointBarrier) EventSerializer.fromSerializedEvent(serialized, cl);
+		assertFalse(serialized.hasRemaining());
+
+		assertEquals(barrier, deserialized);
+		assertEquals(17, deserialized.getNumOvertakenBuffers());
+	}
+
 	private void testCheckpointBarrierSerialization(long id, long timestamp, CheckpointOptions options) throws IOException {
 		ClassLoader cl = Thread.currentThread().getContextClassLoader();
 
@@ -29,7 +29,9 @@ import org.apache.flink.runtime.event.AbstractEvent;
 import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
 import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
 import org.apache.flink.runtime.io.network.api.EndOfSuperstepEvent;
+import org.apache.flink.runtime.io.network.api.serialization.AdaptiveSpanningRecordDeserializer;
 import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
+import org.apache.flink.runtime.io.network.api.serialization.RecordDeserializer.DeserializationResult;
 import org.apache.flink.runtime.io.network.api.serialization.RecordSerializer.SerializationResult;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
 import org.apache.flink.runtime.io.network.buffer.BufferPool;
@@ -53,6 +55,8 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.Random;
 import java.util.concurrent.Callable;
@@ -62,6 +66,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import static org.apache.flink.util.Preconditions.checkNotNull;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
@@ -434,6 +439,65 @@ public class RecordWriterTest {
 		assertTrue(buffer.isRecycled());
 	}
 
+	/**
+	 * Tests that a broadcast record is serialized only once and that every channel receives
+	 * all records, including records which span several buffers.
+	 */
+	@Test
+	public void testBroadcastEmitRecord() throws Exception {
+		Random rand = new XORShiftRandom();
+		int numChannels = 4;
+		int bufferSize = 32;
+		int lenBytes = 4; // serialized length
+
+		@SuppressWarnings("unchecked")
+		Queue<BufferOrEvent>[] queues = new Queue[numChannels];
+		for (int i = 0; i < numChannels; i++) {
+			queues[i] = new ArrayDeque<>();
+		}
+
+		ResultPartitionWriter partitionWriter = createCollectingPartitionWriter(queues, createBufferProvider(bufferSize));
+		RecordWriter<CountingByteArrayIO> writer = new RecordWriter<>(partitionWriter);
+
+		// records smaller than, larger than, exactly of, and several times the buffer size
+		List<byte[]> records = new ArrayList<>();
+		for (int size : new int[] {bufferSize / 2, bufferSize + 1, bufferSize - lenBytes, 3 * bufferSize}) {
+			byte[] bytes = new byte[size];
+			rand.nextBytes(bytes);
+			records.add(bytes);
+
+			CountingByteArrayIO record = new CountingByteArrayIO(bytes);
+			writer.broadcastEmit(record);
+
+			assertEquals(1, record.numWrites);
+		}
+
+		writer.flush();
+
+		for (int i = 0; i < numChannels; i++) {
+			AdaptiveSpanningRecordDeserializer<CountingByteArrayIO> deserializer = new AdaptiveSpanningRecordDeserializer<>();
+			int numRecords = 0;
+
+			for (BufferOrEvent bufferOrEvent : queues[i]) {
+				deserializer.setNextBuffer(bufferOrEvent.getBuffer());
+
+				DeserializationResult result;
+				do {
+					byte[] expected = records.get(numRecords);
+					CountingByteArrayIO target = new CountingByteArrayIO(new byte[expected.length]);
+
+					result = deserializer.getNextRecord(target);
+					if (result.isFullRecord()) {
+						assertArrayEquals(expected, target.bytes);
+						numRecords++;
+					}
+				} while (!result.isBufferConsumed());
+			}
+
+			assertEquals(records.size(), numRecords);
+		}
+	}
+
 	// ---------------------------------------------------------------------------------------------
 	// Helpers
 	// ---------------------------------------------------------------------------------------------
@@ -546,6 +610,28 @@ public class RecordWriterTest {
 		}
 	}
 
+	private static class CountingByteArrayIO implements IOReadableWritable {
+
+		private final byte[] bytes;
+
+		private int numWrites;
+
+		public CountingByteArrayIO(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		@Override
+		public void write(DataOutputView out) throws IOException {
+			numWrites++;
+			out.write(bytes);
+		}
+
+		@Override
+		public void read(DataInputView in) throws IOException {
+			in.readFully(bytes);
+		}
+	}
+
 	/**
 	 * RoundRobin channel selector starting at 0 ({@link RoundRobinChannelSelector} starts at 1).
 	 */
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.io.network.buffer;
+
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for the {@link BufferCompressor} and the {@link BufferDecompressor}.
+ */
+public class BufferCompressorTest {
+
+	private static final int BUFFER_SIZE = 32 * 1024;
+
+	@Test
+	public void testCompressDecompressHeapBuffer() throws Exception {
+		testCompressDecompress(MemorySegmentFactory.allocateUnpooledSegment(BUFFER_SIZE));
+	}
+
+	@Test
+	public void testCompressDecompressOffHeapBuffer() throws Exception {
+		testCompressDecompress(MemorySegmentFactory.wrapPooledOffHeapMemory(ByteBuffer.allocateDirect(BUFFER_SIZE), null));
+	}
+
+	private static void testCompressDecompress(MemorySegment segment) throws Exception {
+		final Buffer buffer = new Buffer(segment, mock(BufferRecycler.class));
+
+		// a partially filled buffer of compressible data
+		final int size = BUFFER_SIZE - 100;
+		for (int i = 0; i < size; i++) {
+			segment.put(i, (byte) (i % 7));
+		}
+		buffer.setSize(size);
+
+		assertTrue(new BufferCompressor().compress(buffer));
+		assertTrue(buffer.isCompressed());
+		assertTrue(buffer.getSize() < size);
+
+		new BufferDecompressor().decompress(buffer);
+		assertFalse(buffer.isCompressed());
+		assertEquals(size, buffer.getSize());
+
+		for (int i = 0; i < size; i++) {
+			assertEquals((byte) (i % 7), segment.get(i));
+		}
+	}
+
+	/**
+	 * Tests that buffers, which do not become smaller by compressing them, are left untouched.
+	 */
+	@Test
+	public void testIncompressibleBufferIsNotCompressed() {
+		final MemorySegment segment = MemorySegmentFactory.allocateUnpooledSegment(BUFFER_SIZE);
+		final Buffer buffer = new Buffer(segment, mock(BufferRecycler.class));
+
+		final byte[] data = new byte[BUFFER_SIZE];
+		new Random(42L).nextBytes(data);
+		segment.put(0, data);
+
+		assertFalse(new BufferCompressor().compress(buffer));
+		assertFalse(buffer.isCompressed());
+		assertEquals(BUFFER_SIZE, buffer.getSize());
+
+		final byte[] actual = new byte[BUFFER_SIZE];
+		segment.get(0, actual);
+		for (int i = 0; i < BUFFER_SIZE; i++) {
+			assertEquals(data[i], actual[i]);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEventsAreNotCompressed() {
+		final Buffer event = new Buffer(MemorySegmentFactory.allocateUnpooledSegment(BUFFER_SIZE), mock(BufferRecycler.class), false);
+
+		new BufferCompressor().compress(event);
+	}
+}
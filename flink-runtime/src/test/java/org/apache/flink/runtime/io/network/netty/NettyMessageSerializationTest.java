@@ -60,7 +60,9 @@ public class NettyMessageSerializationTest {
 				nioBuffer.putInt(i);
 			}
 
-			NettyMessage.BufferResponse expected = new NettyMessage.BufferResponse(buffer, random.nextInt(), new InputChannelID());
+			buffer.setCompressed(true);
+
+			NettyMessage.BufferResponse expected = new NettyMessage.BufferResponse(buffer, random.nextInt(), new InputChannelID(), random.nextInt());
 			NettyMessage.BufferResponse actual = encodeAndDecode(expected);
 
 			// Verify recycle has been called on buffer instance
@@ -83,6 +85,9 @@ public class NettyMessageSerializationTest {
 
 			assertEquals(expected.sequenceNumber, actual.sequenceNumber);
 			assertEquals(expected.receiverId, actual.receiverId);
+			assertEquals(expected.backlog, actual.backlog);
+			assertTrue(actual.isBuffer());
+			assertTrue(actual.isCompressed());
 		}
 
 		{
@@ -124,12 +129,13 @@ public class NettyMessageSerializationTest {
 		}
 
 		{
-			NettyMessage.PartitionRequest expected = new NettyMessage.PartitionRequest(new ResultPartitionID(new IntermediateResultPartitionID(), new ExecutionAttemptID()), random.nextInt(), new InputChannelID());
+			NettyMessage.PartitionRequest expected = new NettyMessage.PartitionRequest(new ResultPartitionID(new IntermediateResultPartitionID(), new ExecutionAttemptID()), random.nextInt(), new InputChannelID(), random.nextInt());
 			NettyMessage.PartitionRequest actual = encodeAndDecode(expected);
 
 			assertEquals(expected.partitionId, actual.partitionId);
 			assertEquals(expected.queueIndex, actual.queueIndex);
 			assertEquals(expected.receiverId, actual.receiverId);
+			assertEquals(expected.credit, actual.credit);
 		}
 
 		{
@@ -148,6 +154,14 @@ public class NettyMessageSerializationTest {
 			assertEquals(expected.receiverId, actual.receiverId);
 		}
 
+		{
+			NettyMessage.AddCredit expected = new NettyMessage.AddCredit(new InputChannelID(), random.nextInt(Integer.MAX_VALUE) + 1);
+			NettyMessage.AddCredit actual = encodeAndDecode(expected);
+
+			assertEquals(expected.receiverId, actual.receiverId);
+			assertEquals(expected.credit, actual.credit);
+		}
+
 		{
 			NettyMessage.CloseRequest expected = new NettyMessage.CloseRequest();
 			NettyMessage.CloseRequest actual = encodeAndDecode(expected);
@@ -20,15 +20,18 @@ package org.apache.flink.runtime.io.network.netty;
 
 import io.netty.channel.embedded.EmbeddedChannel;
 import org.apache.flink.runtime.execution.CancelTaskException;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
 import org.apache.flink.runtime.io.network.partition.BufferAvailabilityListener;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionProvider;
 import org.apache.flink.runtime.io.network.partition.ResultSubpartitionView;
 import org.apache.flink.runtime.io.network.partition.consumer.InputChannelID;
+import org.apache.flink.runtime.io.network.util.TestBufferFactory;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
@@ -72,4 +75,57 @@ public class PartitionRequestQueueTest {
 		NettyMessage.ErrorResponse err = (NettyMessage.ErrorResponse) msg;
 		assertTrue(err.cause instanceof CancelTaskException);
 	}
+
+	/**
+	 * Tests that buffers are only sent to a credit-based receiver as long as it has credit and
+	 * that sending continues after new credit has been announced.
+	 */
+	@Test
+	public void testSendOnlyWithCredit() throws Exception {
+		PartitionRequestQueue queue = new PartitionRequestQueue();
+
+		ResultPartitionProvider partitionProvider = mock(ResultPartitionProvider.class);
+		ResultPartitionID rpid = new ResultPartitionID();
+		BufferProvider bufferProvider = mock(BufferProvider.class);
+
+		Buffer first = TestBufferFactory.createBuffer();
+		Buffer second = TestBufferFactory.createBuffer();
+
+		ResultSubpartitionView view = mock(ResultSubpartitionView.class);
+		when(view.getNextBuffer()).thenReturn(first, second, null);
+
+		when(partitionProvider.createSubpartitionView(
+			eq(rpid),
+			eq(0),
+			eq(bufferProvider),
+			any(BufferAvailabilityListener.class))).thenReturn(view);
+
+		EmbeddedChannel ch = new EmbeddedChannel(queue);
+
+		InputChannelID receiverId = new InputChannelID();
+		SequenceNumberingViewReader seqView = new SequenceNumberingViewReader(receiverId, 1, queue);
+		seqView.requestSubpartitionView(partitionProvider, rpid, 0, bufferProvider);
+		queue.notifyReaderCreated(seqView);
+
+		// Two buffers are available, but the receiver has credit for one only
+		seqView.notifyBuffersAvailable(2);
+		ch.runPendingTasks();
+
+		Object msg = ch.readOutbound();
+		assertEquals(NettyMessage.BufferResponse.class, msg.getClass());
+		assertEquals(0, ((NettyMessage.BufferResponse) msg).sequenceNumber);
+		assertEquals(1, ((NettyMessage.BufferResponse) msg).backlog);
+		assertNull(ch.readOutbound());
+		assertEquals(0, seqView.getNumCreditsAvailable());
+
+		// New credit makes the remaining buffer available
+		queue.addCredit(receiverId, 1);
+		ch.runPendingTasks();
+
+		msg = ch.readOutbound();
+		assertEquals(NettyMessage.BufferResponse.class, msg.getClass());
+		assertEquals(1, ((NettyMessage.BufferResponse) msg).sequenceNumber);
+		assertEquals(0, ((NettyMessage.BufferResponse) msg).backlog);
+		assertNull(ch.readOutbound());
+	}
 }
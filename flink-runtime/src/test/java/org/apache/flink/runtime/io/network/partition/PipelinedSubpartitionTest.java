@@ -19,7 +19,11 @@
 package org.apache.flink.runtime.io.network.partition;
 
 import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
 import org.apache.flink.runtime.event.AbstractEvent;
+import org.apache.flink.runtime.io.network.api.CancelCheckpointMarker;
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
+import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
 import org.apache.flink.runtime.io.network.buffer.Buffer;
 import org.apache.flink.runtime.io.network.buffer.BufferProvider;
 import org.apache.flink.runtime.io.network.partition.consumer.BufferOrEvent;
@@ -115,6 +119,37 @@ public class PipelinedSubpartitionTest extends SubpartitionTestBase {
 		verify(listener, times(2)).notifyBuffersAvailable(eq(1L));
 	}
 
+	@Test
+	public void testCheckpointBarrierOvertakesQueuedBuffers() throws Exception {
+		final PipelinedSubpartition subpartition = createSubpartition();
+		final ClassLoader cl = getClass().getClassLoader();
+
+		ResultSubpartitionView view = subpartition.createReadView(null, mock(BufferAvailabilityListener.class));
+
+		Buffer first = createBuffer();
+		subpartition.add(first);
+		subpartition.add(EventSerializer.toBuffer(new CancelCheckpointMarker(1L)));
+		Buffer second = createBuffer();
+		subpartition.add(second);
+		Buffer third = createBuffer();
+		subpartition.add(third);
+
+		subpartition.addCheckpointBarrier(
+				new CheckpointBarrier(2L, System.currentTimeMillis(), CheckpointOptions.forFullCheckpoint()));
+
+		// data before the last event and the event itself are not overtaken
+		assertEquals(first, view.getNextBuffer());
+		assertEquals(CancelCheckpointMarker.class, EventSerializer.fromBuffer(view.getNextBuffer(), cl).getClass());
+
+		CheckpointBarrier barrier = (CheckpointBarrier) EventSerializer.fromBuffer(view.getNextBuffer(), cl);
+		assertEquals(2L, barrier.getId());
+		assertEquals(2, barrier.getNumOvertakenBuffers());
+
+		assertEquals(second, view.getNextBuffer());
+		assertEquals(third, view.getNextBuffer());
+		assertNull(view.getNextBuffer());
+	}
+
 	@Test
 	public void testConcurrentFastProduceAndFastConsume() throws Exception {
 		testProduceConsume(false, false);
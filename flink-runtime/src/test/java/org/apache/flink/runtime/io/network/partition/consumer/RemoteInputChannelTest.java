@@ -19,9 +19,17 @@
 package org.apache.flink.runtime.io.network.partition.consumer;
 
 import com.google.common.collect.Lists;
+import org.apache.flink.core.memory.MemorySegment;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
 import org.apache.flink.runtime.execution.CancelTaskException;
 import org.apache.flink.runtime.io.network.ConnectionID;
 import org.apache.flink.runtime.io.network.ConnectionManager;
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
+import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
+import org.apache.flink.runtime.io.network.api.serialization.EventSerializer;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.BufferPool;
 import org.apache.flink.runtime.io.network.netty.PartitionRequestClient;
 import org.apache.flink.runtime.io.network.partition.ProducerFailedException;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionID;
@@ -38,10 +46,14 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -281,6 +293,127 @@ public class RemoteInputChannelTest {
 
 	// ---------------------------------------------------------------------------------------------
 
+	/**
+	 * Tests the credit accounting of a channel with credit-based flow control: floating credit
+	 * is requested for the backlog of the producer and handed back to the gate first, after
+	 * that exclusive credit is announced to the producer again.
+	 */
+	@Test
+	public void testCreditBasedFlowControl() throws Exception {
+		final BufferPool bufferPool = mock(BufferPool.class);
+
+		final SingleInputGate inputGate = mock(SingleInputGate.class);
+		when(inputGate.getExclusiveCreditsPerChannel()).thenReturn(2);
+		when(inputGate.requestFloatingCredits(3)).thenReturn(2);
+
+		final PartitionRequestClient client = mock(PartitionRequestClient.class);
+		final RemoteInputChannel inputChannel = createRemoteInputChannel(
+			inputGate, client, new Tuple2<Integer, Integer>(0, 0), true);
+
+		inputChannel.requestSubpartition(0);
+		assertEquals(2, inputChannel.getInitialCredit());
+
+		// A backlog of 3 buffers requests floating credit, of which the gate grants 2
+		inputChannel.onBuffer(new Buffer(MemorySegmentFactory.allocateUnpooledSegment(1024), bufferPool), 0, 3);
+		assertEquals(2, inputChannel.getNumberOfFloatingCredits());
+		verify(client, times(1)).notifyCreditAvailable(eq(inputChannel));
+		assertEquals(2, inputChannel.getAndResetUnannouncedCredit());
+
+		// Recycling hands floating credit back to the gate
+		for (int i = 1; i < 3; i++) {
+			inputChannel.getNextBuffer().buffer().recycle();
+			inputChannel.onBuffer(new Buffer(MemorySegmentFactory.allocateUnpooledSegment(1024), bufferPool), i, 0);
+		}
+
+		assertEquals(0, inputChannel.getNumberOfFloatingCredits());
+		verify(inputGate, times(2)).returnFloatingCredits(eq(1));
+		verify(bufferPool, times(2)).recycle(any(MemorySegment.class));
+
+		// Afterwards exclusive credit is announced again
+		Buffer last = inputChannel.getNextBuffer().buffer();
+		assertFalse(last.isRecycled());
+		last.recycle();
+
+		verify(client, times(2)).notifyCreditAvailable(eq(inputChannel));
+		assertEquals(1, inputChannel.getAndResetUnannouncedCredit());
+	}
+
+	/**
+	 * Tests that the barrier of an unaligned checkpoint overtakes the data buffers that are
+	 * queued after the last event and counts them on top of the buffers that it overtook at the
+	 * producer, while savepoint barriers stay in line.
+	 */
+	@Test
+	public void testCheckpointBarrierOvertakesQueuedBuffers() throws Exception {
+		final SingleInputGate inputGate = mock(SingleInputGate.class);
+		when(inputGate.isCheckpointBarrierOvertakingEnabled()).thenReturn(true);
+
+		final RemoteInputChannel inputChannel = createRemoteInputChannel(inputGate);
+		inputChannel.requestSubpartition(0);
+
+		final ClassLoader classLoader = getClass().getClassLoader();
+
+		final Buffer first = TestBufferFactory.createBuffer();
+		final Buffer second = TestBufferFactory.createBuffer();
+		final Buffer third = TestBufferFactory.createBuffer();
+
+		inputChannel.onBuffer(first, 0);
+		inputChannel.onBuffer(EventSerializer.toBuffer(EndOfPartitionEvent.INSTANCE), 1);
+		inputChannel.onBuffer(second, 2);
+		inputChannel.onBuffer(third, 3);
+
+		// the savepoint barrier does not overtake
+		inputChannel.onBuffer(EventSerializer.toBuffer(
+			new CheckpointBarrier(1, 0, CheckpointOptions.forSavepoint("target"))), 4);
+		verify(inputGate, never()).notifyChannelPriorityEvent(eq(inputChannel));
+
+		final Buffer fourth = TestBufferFactory.createBuffer();
+		inputChannel.onBuffer(fourth, 5);
+
+		// the checkpoint barrier overtakes the buffer after the savepoint barrier
+		inputChannel.onBuffer(EventSerializer.toBuffer(
+			new CheckpointBarrier(2, 0, CheckpointOptions.forFullCheckpoint()).withOvertakenBuffers(3)), 6);
+
+		assertSame(first, inputChannel.getNextBuffer().buffer());
+		assertTrue(EventSerializer.fromBuffer(inputChannel.getNextBuffer().buffer(), classLoader) instanceof EndOfPartitionEvent);
+		assertSame(second, inputChannel.getNextBuffer().buffer());
+		assertSame(third, inputChannel.getNextBuffer().buffer());
+		assertEquals(1L, ((CheckpointBarrier) EventSerializer.fromBuffer(inputChannel.getNextBuffer().buffer(), classLoader)).getId());
+
+		CheckpointBarrier barrier = (CheckpointBarrier) EventSerializer.fromBuffer(inputChannel.getNextBuffer().buffer(), classLoader);
+		assertEquals(2L, barrier.getId());
+		assertEquals(4, barrier.getNumOvertakenBuffers());
+
+		assertSame(fourth, inputChannel.getNextBuffer().buffer());
+
+		// the barrier was not queued first, so the gate is not notified about a priority event
+		verify(inputGate, never()).notifyChannelPriorityEvent(eq(inputChannel));
+	}
+
+	/**
+	 * Tests that the gate is notified about a checkpoint barrier that overtook all queued data.
+	 */
+	@Test
+	public void testCheckpointBarrierAtHeadNotifiesPriorityEvent() throws Exception {
+		final SingleInputGate inputGate = mock(SingleInputGate.class);
+		when(inputGate.isCheckpointBarrierOvertakingEnabled()).thenReturn(true);
+
+		final RemoteInputChannel inputChannel = createRemoteInputChannel(inputGate);
+		inputChannel.requestSubpartition(0);
+
+		final Buffer buffer = TestBufferFactory.createBuffer();
+		inputChannel.onBuffer(buffer, 0);
+		inputChannel.onBuffer(EventSerializer.toBuffer(
+			new CheckpointBarrier(1, 0, CheckpointOptions.forFullCheckpoint())), 1);
+
+		verify(inputGate, times(1)).notifyChannelPriorityEvent(eq(inputChannel));
+
+		CheckpointBarrier barrier = (CheckpointBarrier) EventSerializer.fromBuffer(
+			inputChannel.getNextBuffer().buffer(), getClass().getClassLoader());
+		assertEquals(1, barrier.getNumOvertakenBuffers());
+		assertSame(buffer, inputChannel.getNextBuffer().buffer());
+	}
+
 	private RemoteInputChannel createRemoteInputChannel(SingleInputGate inputGate)
 			throws IOException, InterruptedException {
 
@@ -294,6 +427,16 @@ public class RemoteInputChannelTest {
 			Tuple2<Integer, Integer> initialAndMaxRequestBackoff)
 			throws IOException, InterruptedException {
 
+		return createRemoteInputChannel(inputGate, partitionRequestClient, initialAndMaxRequestBackoff, false);
+	}
+
+	private RemoteInputChannel createRemoteInputChannel(
+			SingleInputGate inputGate,
+			PartitionRequestClient partitionRequestClient,
+			Tuple2<Integer, Integer> initialAndMaxRequestBackoff,
+			boolean isCreditBased)
+			throws IOException, InterruptedException {
+
 		final ConnectionManager connectionManager = mock(ConnectionManager.class);
 		when(connectionManager.createPartitionRequestClient(any(ConnectionID.class)))
 				.thenReturn(partitionRequestClient);
@@ -306,6 +449,7 @@ public class RemoteInputChannelTest {
 			connectionManager,
 			initialAndMaxRequestBackoff._1(),
 			initialAndMaxRequestBackoff._2(),
+			isCreditBased,
 			new UnregisteredTaskMetricsGroup.DummyTaskIOMetricGroup());
 	}
 }
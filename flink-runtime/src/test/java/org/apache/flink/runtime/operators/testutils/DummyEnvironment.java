@@ -38,6 +38,8 @@ import org.apache.flink.runtime.memory.MemoryManager;
 import org.apache.flink.runtime.metrics.groups.TaskMetricGroup;
 import org.apache.flink.runtime.query.KvStateRegistry;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.state.StateTransferPool;
+import org.apache.flink.runtime.state.TaskLocalStateCleaner;
 import org.apache.flink.runtime.taskmanager.TaskManagerRuntimeInfo;
 import org.apache.flink.runtime.util.TestingTaskManagerRuntimeInfo;
 
@@ -141,6 +143,16 @@ public class DummyEnvironment implements Environment {
 		return null;
 	}
 
+	@Override
+	public StateTransferPool getStateTransferPool() {
+		return null;
+	}
+
+	@Override
+	public TaskLocalStateCleaner getTaskLocalStateCleaner() {
+		return null;
+	}
+
 	@Override
 	public AccumulatorRegistry getAccumulatorRegistry() {
 		return null;
@@ -46,6 +46,8 @@ import org.apache.flink.runtime.memory.MemoryManager;
 import org.apache.flink.runtime.metrics.groups.TaskMetricGroup;
 import org.apache.flink.runtime.query.KvStateRegistry;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.state.StateTransferPool;
+import org.apache.flink.runtime.state.TaskLocalStateCleaner;
 import org.apache.flink.runtime.taskmanager.TaskManagerRuntimeInfo;
 import org.apache.flink.runtime.util.TestingTaskManagerRuntimeInfo;
 import org.apache.flink.types.Record;
@@ -299,6 +301,16 @@ public class MockEnvironment implements Environment {
 		return this.bcVarManager;
 	}
 
+	@Override
+	public StateTransferPool getStateTransferPool() {
+		return null;
+	}
+
+	@Override
+	public TaskLocalStateCleaner getTaskLocalStateCleaner() {
+		return null;
+	}
+
 	@Override
 	public AccumulatorRegistry getAccumulatorRegistry() {
 		return this.accumulatorRegistry;
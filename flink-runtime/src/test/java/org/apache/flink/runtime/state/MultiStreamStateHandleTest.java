@@ -29,6 +29,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
@@ -111,6 +113,50 @@ public class MultiStreamStateHandleTest {
 		}
 	}
 
+	@Test
+	public void testReadAheadLinearRead() throws IOException {
+		MultiStreamStateHandle multiStreamStateHandle = new MultiStreamStateHandle(streamStateHandles);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try (FSDataInputStream in = multiStreamStateHandle.openInputStream(executor, 3)) {
+
+			for (int i = 0; i < TEST_DATA_LENGTH; ++i) {
+				assertEquals(i, in.getPos());
+				assertEquals(testData[i], in.read());
+			}
+
+			assertEquals(-1, in.read());
+			assertEquals(TEST_DATA_LENGTH, in.getPos());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testReadAheadRandomRead() throws IOException {
+		MultiStreamStateHandle multiStreamStateHandle = new MultiStreamStateHandle(streamStateHandles);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try (FSDataInputStream in = multiStreamStateHandle.openInputStream(executor, 3)) {
+
+			for (int i = 0; i < 1000; ++i) {
+				int pos = random.nextInt(TEST_DATA_LENGTH);
+				int readLen = random.nextInt(TEST_DATA_LENGTH);
+				in.seek(pos);
+				while (--readLen > 0 && pos < TEST_DATA_LENGTH) {
+					assertEquals(pos, in.getPos());
+					assertEquals(testData[pos++], in.read());
+				}
+			}
+
+			in.seek(TEST_DATA_LENGTH);
+			assertEquals(TEST_DATA_LENGTH, in.getPos());
+			assertEquals(-1, in.read());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
 	@Test
 	public void testEmptyList() throws IOException {
 
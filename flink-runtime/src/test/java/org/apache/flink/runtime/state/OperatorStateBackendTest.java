@@ -19,9 +19,13 @@ package org.apache.flink.runtime.state;
 
 import org.apache.flink.api.common.ExecutionConfig;
 import org.apache.flink.api.common.JobID;
+import org.apache.flink.api.common.state.BroadcastState;
 import org.apache.flink.api.common.state.ListState;
 import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.MapStateDescriptor;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
 import org.apache.flink.api.java.typeutils.runtime.kryo.KryoSerializer;
 import org.apache.flink.runtime.checkpoint.CheckpointOptions;
 import org.apache.flink.runtime.execution.Environment;
@@ -35,6 +39,7 @@ import java.io.Serializable;
 import java.io.File;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.RunnableFuture;
 
@@ -282,6 +287,129 @@ public class OperatorStateBackendTest {
 		}
 	}
 
+	@Test
+	public void testBroadcastStateSnapshotRestore() throws Exception {
+		AbstractStateBackend abstractStateBackend = new MemoryStateBackend(4096);
+
+		OperatorStateBackend operatorStateBackend =
+				abstractStateBackend.createOperatorStateBackend(createMockEnvironment(), "test-op-name");
+
+		MapStateDescriptor<String, Integer> stateDescriptor =
+				new MapStateDescriptor<>("rules", StringSerializer.INSTANCE, IntSerializer.INSTANCE);
+
+		BroadcastState<String, Integer> broadcastState = operatorStateBackend.getBroadcastState(stateDescriptor);
+		assertTrue(broadcastState == operatorStateBackend.getBroadcastState(stateDescriptor));
+
+		broadcastState.put("a", 1);
+		broadcastState.put("b", 2);
+		broadcastState.put("c", 3);
+		broadcastState.remove("c");
+
+		CheckpointStreamFactory streamFactory = abstractStateBackend.createStreamFactory(new JobID(), "testOperator");
+		OperatorStateHandle stateHandle = FutureUtil.runIfNotDoneAndGet(
+				operatorStateBackend.snapshot(1, 1, streamFactory, CheckpointOptions.forFullCheckpoint()));
+
+		try {
+			assertEquals(OperatorStateHandle.Mode.UNIFORM_BROADCAST,
+					stateHandle.getStateNameToPartitionOffsets().get("rules").getDistributionMode());
+
+			operatorStateBackend.close();
+			operatorStateBackend.dispose();
+
+			operatorStateBackend = abstractStateBackend.createOperatorStateBackend(
+					createMockEnvironment(),
+					"testOperator");
+
+			operatorStateBackend.restore(Collections.singletonList(stateHandle));
+
+			assertEquals(1, operatorStateBackend.getRegisteredStateNames().size());
+
+			broadcastState = operatorStateBackend.getBroadcastState(stateDescriptor);
+
+			assertEquals(Integer.valueOf(1), broadcastState.get("a"));
+			assertEquals(Integer.valueOf(2), broadcastState.get("b"));
+			assertFalse(broadcastState.contains("c"));
+
+			int numEntries = 0;
+			for (Map.Entry<String, Integer> ignored : broadcastState.immutableEntries()) {
+				++numEntries;
+			}
+			assertEquals(2, numEntries);
+
+			// the broadcast state cannot be accessed as a list state of another mode
+			try {
+				operatorStateBackend.getOperatorState(new ListStateDescriptor<>("rules", StringSerializer.INSTANCE));
+				fail("Expected an exception because of the incompatible assignment mode.");
+			} catch (IllegalStateException expected) {
+				// expected
+			}
+
+			operatorStateBackend.close();
+			operatorStateBackend.dispose();
+		} finally {
+			stateHandle.discardState();
+		}
+	}
+
+	@Test
+	public void testAsyncSnapshotIsIsolatedFromModifications() throws Exception {
+		AbstractStateBackend abstractStateBackend = new MemoryStateBackend(4096, true);
+
+		OperatorStateBackend operatorStateBackend =
+				abstractStateBackend.createOperatorStateBackend(createMockEnvironment(), "test-op-name");
+
+		ListStateDescriptor<Integer> listStateDescriptor = new ListStateDescriptor<>("offsets", IntSerializer.INSTANCE);
+		MapStateDescriptor<String, Integer> broadcastStateDescriptor =
+				new MapStateDescriptor<>("rules", StringSerializer.INSTANCE, IntSerializer.INSTANCE);
+
+		ListState<Integer> listState = operatorStateBackend.getOperatorState(listStateDescriptor);
+		BroadcastState<String, Integer> broadcastState = operatorStateBackend.getBroadcastState(broadcastStateDescriptor);
+
+		listState.add(1);
+		listState.add(2);
+		broadcastState.put("a", 1);
+
+		CheckpointStreamFactory streamFactory = abstractStateBackend.createStreamFactory(new JobID(), "testOperator");
+		RunnableFuture<OperatorStateHandle> snapshot =
+				operatorStateBackend.snapshot(1, 1, streamFactory, CheckpointOptions.forFullCheckpoint());
+
+		// the asynchronous part did not run yet
+		assertFalse(snapshot.isDone());
+
+		// modifications after the synchronous part are not part of the snapshot
+		listState.clear();
+		listState.add(3);
+		broadcastState.put("a", 2);
+		broadcastState.put("b", 3);
+
+		OperatorStateHandle stateHandle = FutureUtil.runIfNotDoneAndGet(snapshot);
+
+		try {
+			operatorStateBackend.close();
+			operatorStateBackend.dispose();
+
+			operatorStateBackend = abstractStateBackend.createOperatorStateBackend(
+					createMockEnvironment(),
+					"testOperator");
+
+			operatorStateBackend.restore(Collections.singletonList(stateHandle));
+
+			Iterator<Integer> it = operatorStateBackend.getOperatorState(listStateDescriptor).get().iterator();
+			assertEquals(Integer.valueOf(1), it.next());
+			assertEquals(Integer.valueOf(2), it.next());
+			assertFalse(it.hasNext());
+
+			broadcastState = operatorStateBackend.getBroadcastState(broadcastStateDescriptor);
+			assertEquals(Integer.valueOf(1), broadcastState.get("a"));
+			assertFalse(broadcastState.contains("b"));
+
+			operatorStateBackend.close();
+			operatorStateBackend.dispose();
+		} finally {
+			stateHandle.discardState();
+		}
+	}
+
 	// ------------------------------------------------------------------------
 	//  utilities
 	// ------------------------------------------------------------------------
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.util.TestLogger;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link SharedStateRegistry} and the shared state of {@link IncrementalKeyGroupsStateHandle}.
+ */
+public class SharedStateRegistryTest extends TestLogger {
+
+	/**
+	 * Tests that a shared state object is only discarded when its last reference is released.
+	 */
+	@Test
+	public void testReferenceCounting() throws Exception {
+		SharedStateRegistry registry = new SharedStateRegistry();
+		StreamStateHandle state = mock(StreamStateHandle.class);
+
+		assertSame(state, registry.registerReference("key", state));
+		assertSame(state, registry.registerReference("key", state));
+		assertEquals(2, registry.getReferenceCount("key"));
+
+		registry.unregisterReference("key");
+		assertTrue(registry.isRegistered("key"));
+		verify(state, never()).discardState();
+
+		registry.unregisterReference("key");
+		assertFalse(registry.isRegistered("key"));
+		assertEquals(0, registry.getReferenceCount("key"));
+		verify(state, times(1)).discardState();
+	}
+
+	/**
+	 * Tests that a second physical copy of an already registered state object is discarded
+	 * and replaced by the registered one.
+	 */
+	@Test
+	public void testDuplicateIsDiscarded() throws Exception {
+		SharedStateRegistry registry = new SharedStateRegistry();
+		StreamStateHandle original = mock(StreamStateHandle.class);
+		StreamStateHandle duplicate = mock(StreamStateHandle.class);
+
+		registry.registerReference("key", original);
+		assertSame(original, registry.registerReference("key", duplicate));
+
+		verify(duplicate, times(1)).discardState();
+		verify(original, never()).discardState();
+		assertEquals(2, registry.getReferenceCount("key"));
+	}
+
+	/**
+	 * Tests that an incremental snapshot which was never registered only discards the files
+	 * that were uploaded for it, and not the files it reuses from earlier snapshots.
+	 */
+	@Test
+	public void testDiscardUnregisteredIncrementalSnapshot() throws Exception {
+		StreamStateHandle meta = mock(StreamStateHandle.class);
+		StreamStateHandle newFile = mock(StreamStateHandle.class);
+		StreamStateHandle referencedFile = mock(StreamStateHandle.class);
+		StreamStateHandle privateFile = mock(StreamStateHandle.class);
+
+		IncrementalKeyGroupsStateHandle stateHandle = createIncrementalSnapshot(
+				1L, meta, newFile, referencedFile, privateFile);
+
+		stateHandle.discardState();
+
+		verify(meta, times(1)).discardState();
+		verify(newFile, times(1)).discardState();
+		verify(privateFile, times(1)).discardState();
+		verify(referencedFile, never()).discardState();
+	}
+
+	/**
+	 * Tests that shared files of registered incremental snapshots survive until the last
+	 * snapshot that references them is discarded.
+	 */
+	@Test
+	public void testDiscardRegisteredIncrementalSnapshots() throws Exception {
+		SharedStateRegistry registry = new SharedStateRegistry();
+
+		StreamStateHandle sharedFile = mock(StreamStateHandle.class);
+		StreamStateHandle otherFile = mock(StreamStateHandle.class);
+
+		IncrementalKeyGroupsStateHandle first = new IncrementalKeyGroupsStateHandle(
+				new KeyGroupRange(0, 9),
+				"backend",
+				1L,
+				mock(StreamStateHandle.class),
+				Collections.singletonMap("1.sst", sharedFile),
+				Collections.<String, StreamStateHandle>emptyMap(),
+				Collections.<String, StreamStateHandle>emptyMap());
+
+		first.registerSharedStates(registry);
+
+		IncrementalKeyGroupsStateHandle second = createIncrementalSnapshot(
+				2L, mock(StreamStateHandle.class), otherFile, sharedFile, mock(StreamStateHandle.class));
+
+		second.checkReferencedSharedState(registry);
+		second.registerSharedStates(registry);
+
+		first.discardState(registry);
+		verify(sharedFile, never()).discardState();
+
+		second.discardState(registry);
+		verify(sharedFile, times(1)).discardState();
+		verify(otherFile, times(1)).discardState();
+	}
+
+	/**
+	 * Tests that a snapshot which references a shared file that is no longer registered is rejected.
+	 */
+	@Test
+	public void testReferenceToDiscardedSharedState() throws Exception {
+		IncrementalKeyGroupsStateHandle stateHandle = createIncrementalSnapshot(
+				2L,
+				mock(StreamStateHandle.class),
+				mock(StreamStateHandle.class),
+				mock(StreamStateHandle.class),
+				mock(StreamStateHandle.class));
+
+		try {
+			stateHandle.checkReferencedSharedState(new SharedStateRegistry());
+			fail("Expected an IllegalStateException");
+		} catch (IllegalStateException ignored) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests that an incremental snapshot cannot be split for a different parallelism.
+	 */
+	@Test
+	public void testIncrementalSnapshotKeyGroupIntersection() throws Exception {
+		IncrementalKeyGroupsStateHandle stateHandle = createIncrementalSnapshot(
+				1L,
+				mock(StreamStateHandle.class),
+				mock(StreamStateHandle.class),
+				mock(StreamStateHandle.class),
+				mock(StreamStateHandle.class));
+
+		assertSame(stateHandle, stateHandle.getKeyGroupIntersection(new KeyGroupRange(0, 9)));
+		assertEquals(0, stateHandle.getKeyGroupIntersection(new KeyGroupRange(10, 19)).getNumberOfKeyGroups());
+
+		try {
+			stateHandle.getKeyGroupIntersection(new KeyGroupRange(0, 4));
+			fail("Expected an UnsupportedOperationException");
+		} catch (UnsupportedOperationException ignored) {
+			// expected
+		}
+	}
+
+	private static IncrementalKeyGroupsStateHandle createIncrementalSnapshot(
+			long checkpointId,
+			StreamStateHandle meta,
+			StreamStateHandle newFile,
+			StreamStateHandle referencedFile,
+			StreamStateHandle privateFile) {
+
+		Map<String, StreamStateHandle> newSharedState = new HashMap<>();
+		newSharedState.put(checkpointId + "0.sst", newFile);
+
+		return new IncrementalKeyGroupsStateHandle(
+				new KeyGroupRange(0, 9),
+				"backend",
+				checkpointId,
+				meta,
+				newSharedState,
+				Collections.singletonMap("1.sst", referencedFile),
+				Collections.singletonMap("MANIFEST", privateFile));
+	}
+}
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state;
+
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.core.fs.FSDataInputStream;
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.runtime.state.filesystem.FileStateHandle;
+import org.apache.flink.runtime.state.filesystem.FsCheckpointStreamFactory;
+import org.apache.flink.util.FileUtils;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link TaskLocalStateStore}.
+ */
+public class TaskLocalStateStoreTest extends TestLogger {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private File subtaskDirectory;
+
+	private CheckpointStreamFactory primaryFactory;
+
+	private TaskLocalStateCleaner cleaner;
+
+	@Before
+	public void setup() throws IOException {
+		subtaskDirectory = new File(temporaryFolder.newFolder(), "subtask");
+		primaryFactory = new FsCheckpointStreamFactory(
+				new Path(temporaryFolder.newFolder().toURI()), new JobID(), 0);
+		cleaner = new TaskLocalStateCleaner();
+	}
+
+	@After
+	public void shutdownCleaner() {
+		cleaner.shutdown();
+	}
+
+	/**
+	 * Tests that the next execution attempt restores the state of a confirmed checkpoint from the
+	 * local copy, even if the primary copy is gone.
+	 */
+	@Test
+	public void testRestoreFromLocalCopy() throws Exception {
+		TaskLocalStateStore store = new TaskLocalStateStore(subtaskDirectory, cleaner, getClass().getClassLoader());
+		CheckpointStreamFactory streamFactory = store.createStreamFactory(primaryFactory);
+
+		byte[] keyedState = new byte[] {1, 2, 3, 4};
+		byte[] operatorState = new byte[] {5, 6, 7};
+
+		StreamStateHandle keyedHandle = writeState(streamFactory, 1L, keyedState);
+		StreamStateHandle operatorHandle = writeState(streamFactory, 1L, operatorState);
+
+		store.confirmCheckpoint(1L);
+
+		// the primary copies are gone, only the local copies are left
+		((FileStateHandle) keyedHandle).discardState();
+		((FileStateHandle) operatorHandle).discardState();
+
+		TaskLocalStateStore restoredStore = new TaskLocalStateStore(subtaskDirectory, cleaner, getClass().getClassLoader());
+		TaskStateHandles restored = restoredStore.retrieveLocalCopies(createTaskStateHandles(keyedHandle, operatorHandle));
+
+		KeyGroupsStateHandle restoredKeyedHandle = restored.getManagedKeyedState().iterator().next();
+		OperatorStateHandle restoredOperatorHandle = restored.getManagedOperatorState().get(0).iterator().next();
+
+		assertTrue(restoredKeyedHandle.getDelegateStateHandle() instanceof LocalCopyStreamStateHandle);
+		assertTrue(restoredOperatorHandle.getDelegateStateHandle() instanceof LocalCopyStreamStateHandle);
+
+		assertArrayEquals(keyedState, readState(restoredKeyedHandle));
+		assertArrayEquals(operatorState, readState(restoredOperatorHandle));
+	}
+
+	/**
+	 * Tests that state without a local copy is restored from the primary copy.
+	 */
+	@Test
+	public void testRestoreFromPrimaryCopy() throws Exception {
+		TaskLocalStateStore store = new TaskLocalStateStore(subtaskDirectory, cleaner, getClass().getClassLoader());
+		CheckpointStreamFactory streamFactory = store.createStreamFactory(primaryFactory);
+
+		byte[] state = new byte[] {1, 2, 3, 4};
+
+		// checkpoint 1 is confirmed, but its local copy is lost
+		StreamStateHandle lostHandle = writeState(streamFactory, 1L, state);
+		store.confirmCheckpoint(1L);
+		FileUtils.deleteDirectory(subtaskDirectory);
+
+		// checkpoint 2 is never confirmed
+		StreamStateHandle unconfirmedHandle = writeState(streamFactory, 2L, state);
+
+		TaskStateHandles stateHandles = createTaskStateHandles(lostHandle, unconfirmedHandle);
+		TaskStateHandles restored = new TaskLocalStateStore(subtaskDirectory, cleaner, getClass().getClassLoader())
+				.retrieveLocalCopies(stateHandles);
+
+		assertSame(lostHandle, restored.getManagedKeyedState().iterator().next().getDelegateStateHandle());
+		assertSame(unconfirmedHandle, restored.getManagedOperatorState().get(0).iterator().next().getDelegateStateHandle());
+	}
+
+	/**
+	 * Tests that a local copy which cannot be opened falls back to the primary copy.
+	 */
+	@Test
+	public void testLocalCopyFallsBackToPrimaryCopy() throws Exception {
+		byte[] state = new byte[] {1, 2, 3, 4};
+		StreamStateHandle primaryHandle = writeState(primaryFactory, 1L, state);
+
+		File missingFile = new File(temporaryFolder.getRoot(), "missing");
+		LocalCopyStreamStateHandle handle = new LocalCopyStreamStateHandle(
+				new FileStateHandle(new Path(missingFile.toURI()), state.length), primaryHandle);
+
+		assertArrayEquals(state, readState(handle));
+	}
+
+	/**
+	 * Tests that confirming a checkpoint deletes the local copies of earlier checkpoints.
+	 */
+	@Test
+	public void testConfirmDeletesEarlierCheckpoints() throws Exception {
+		TaskLocalStateStore store = new TaskLocalStateStore(subtaskDirectory, cleaner, getClass().getClassLoader());
+		CheckpointStreamFactory streamFactory = store.createStreamFactory(primaryFactory);
+
+		writeState(streamFactory, 1L, new byte[] {1});
+		store.confirmCheckpoint(1L);
+
+		writeState(streamFactory, 2L, new byte[] {2});
+		writeState(streamFactory, 3L, new byte[] {3});
+		store.confirmCheckpoint(3L);
+
+		assertFalse(new File(subtaskDirectory, "chk_1").exists());
+		assertFalse(new File(subtaskDirectory, "chk_2").exists());
+		assertTrue(new File(subtaskDirectory, "chk_3").exists());
+
+		store.dispose();
+		assertFalse(subtaskDirectory.exists());
+	}
+
+	/**
+	 * Tests that releasing the store of a cancelled or failed subtask deletes the local copies of
+	 * unconfirmed checkpoints and keeps the confirmed ones for a new execution attempt.
+	 */
+	@Test
+	public void testReleaseKeepsConfirmedCheckpoint() throws Exception {
+		TaskLocalStateStore store = new TaskLocalStateStore(subtaskDirectory, cleaner, getClass().getClassLoader());
+		CheckpointStreamFactory streamFactory = store.createStreamFactory(primaryFactory);
+
+		writeState(streamFactory, 1L, new byte[] {1});
+		store.confirmCheckpoint(1L);
+
+		writeState(streamFactory, 2L, new byte[] {2});
+
+		store.release();
+
+		assertTrue(new File(subtaskDirectory, "chk_1").exists());
+		assertFalse(new File(subtaskDirectory, "chk_2").exists());
+
+		// a new execution attempt claims the local copies
+		TaskLocalStateStore restoredStore = new TaskLocalStateStore(subtaskDirectory, cleaner, getClass().getClassLoader());
+		restoredStore.dispose();
+		assertFalse(subtaskDirectory.exists());
+	}
+
+	/**
+	 * Tests that the local copies of a released subtask are deleted after the retention time, unless a
+	 * new execution attempt claims them.
+	 */
+	@Test
+	public void testReleasedStateIsDeletedAfterRetention() throws Exception {
+		TaskLocalStateCleaner shortRetentionCleaner = new TaskLocalStateCleaner(10L);
+
+		try {
+			TaskLocalStateStore store = new TaskLocalStateStore(
+					subtaskDirectory, shortRetentionCleaner, getClass().getClassLoader());
+
+			writeState(store.createStreamFactory(primaryFactory), 1L, new byte[] {1});
+			store.confirmCheckpoint(1L);
+			store.release();
+
+			long deadline = System.currentTimeMillis() + 10000L;
+			while (subtaskDirectory.exists() && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10L);
+			}
+
+			assertFalse(subtaskDirectory.exists());
+		} finally {
+			shortRetentionCleaner.shutdown();
+		}
+	}
+
+	/**
+	 * Tests that shutting down the cleaner of the TaskManager deletes the local copies of released
+	 * subtasks right away, and that subtasks which are released afterwards are deleted right away.
+	 */
+	@Test
+	public void testShutdownDeletesReleasedState() throws Exception {
+		TaskLocalStateStore store = new TaskLocalStateStore(subtaskDirectory, cleaner, getClass().getClassLoader());
+
+		writeState(store.createStreamFactory(primaryFactory), 1L, new byte[] {1});
+		store.confirmCheckpoint(1L);
+		store.release();
+
+		assertTrue(subtaskDirectory.exists());
+
+		cleaner.shutdown();
+		assertFalse(subtaskDirectory.exists());
+
+		TaskLocalStateStore laterStore = new TaskLocalStateStore(subtaskDirectory, cleaner, getClass().getClassLoader());
+		writeState(laterStore.createStreamFactory(primaryFactory), 2L, new byte[] {2});
+		laterStore.confirmCheckpoint(2L);
+		laterStore.release();
+
+		assertFalse(subtaskDirectory.exists());
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static StreamStateHandle writeState(
+			CheckpointStreamFactory streamFactory,
+			long checkpointId,
+			byte[] state) throws Exception {
+
+		CheckpointStreamFactory.CheckpointStateOutputStream out =
+				streamFactory.createCheckpointStateOutputStream(checkpointId, checkpointId);
+
+		out.write(state);
+		return out.closeAndGetHandle();
+	}
+
+	private static byte[] readState(StreamStateHandle handle) throws IOException {
+		try (FSDataInputStream in = handle.openInputStream()) {
+			byte[] state = new byte[(int) handle.getStateSize()];
+			int offset = 0;
+			int read;
+			while (offset < state.length && (read = in.read(state, offset, state.length - offset)) != -1) {
+				offset += read;
+			}
+			return Arrays.copyOf(state, offset);
+		}
+	}
+
+	private static TaskStateHandles createTaskStateHandles(
+			StreamStateHandle keyedHandle,
+			StreamStateHandle operatorHandle) {
+
+		KeyGroupsStateHandle keyGroupsStateHandle = new KeyGroupsStateHandle(
+				new KeyGroupRangeOffsets(new KeyGroupRange(0, 0)), keyedHandle);
+
+		OperatorStateHandle operatorStateHandle = new OperatorStateHandle(
+				new HashMap<String, OperatorStateHandle.StateMetaInfo>(), operatorHandle);
+
+		return new TaskStateHandles(
+				null,
+				Collections.<Collection<OperatorStateHandle>>singletonList(Collections.singletonList(operatorStateHandle)),
+				null,
+				Collections.singletonList(keyGroupsStateHandle),
+				null);
+	}
+}
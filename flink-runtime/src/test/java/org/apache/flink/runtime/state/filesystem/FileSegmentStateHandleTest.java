@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.filesystem;
+
+import org.apache.flink.api.common.JobID;
+import org.apache.flink.core.fs.FSDataInputStream;
+import org.apache.flink.core.fs.Path;
+import org.apache.flink.runtime.state.CheckpointStreamFactory.CheckpointStateOutputStream;
+import org.apache.flink.runtime.state.SharedStateRegistry;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.util.TestLogger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link FileSegmentStateHandle} and the container files of the
+ * {@link FsCheckpointStreamFactory}.
+ */
+public class FileSegmentStateHandleTest extends TestLogger {
+
+	private static final int FILE_STATE_THRESHOLD = 100;
+
+	private static final int CONTAINER_STATE_THRESHOLD = 10 * 1024;
+
+	@Rule
+	public final TemporaryFolder tmp = new TemporaryFolder();
+
+	/**
+	 * Tests that small states of different streams of the same checkpoint share one container
+	 * file and can be read back independently.
+	 */
+	@Test
+	public void testStatesOfOneCheckpointShareContainerFile() throws Exception {
+		JobID jobId = new JobID();
+		Path basePath = new Path(tmp.newFolder().toURI());
+
+		FsCheckpointStreamFactory firstFactory = createFactory(basePath, jobId);
+		FsCheckpointStreamFactory secondFactory = createFactory(basePath, jobId);
+
+		byte[] firstState = randomBytes(1000, 1L);
+		byte[] secondState = randomBytes(CONTAINER_STATE_THRESHOLD, 2L);
+
+		FileSegmentStateHandle firstHandle = (FileSegmentStateHandle) writeState(firstFactory, 5L, firstState);
+		FileSegmentStateHandle secondHandle = (FileSegmentStateHandle) writeState(secondFactory, 5L, secondState);
+
+		assertEquals(firstHandle.getFilePath(), secondHandle.getFilePath());
+		assertEquals(firstState.length, firstHandle.getStateSize());
+		assertEquals(secondState.length, secondHandle.getStateSize());
+
+		assertArrayEquals(firstState, readState(firstHandle));
+		assertArrayEquals(secondState, readState(secondHandle));
+
+		// seeking is relative to the start of the segment
+		FSDataInputStream inStream = secondHandle.openInputStream();
+		try {
+			inStream.seek(10L);
+			assertEquals(10L, inStream.getPos());
+			assertEquals(secondState[10], (byte) inStream.read());
+		} finally {
+			inStream.close();
+		}
+
+		// a later checkpoint starts a new container file
+		FileSegmentStateHandle laterHandle = (FileSegmentStateHandle) writeState(firstFactory, 6L, firstState);
+		assertNotEquals(firstHandle.getFilePath(), laterHandle.getFilePath());
+
+		// a late state of the older checkpoint is written to a file of its own
+		assertTrue(writeState(secondFactory, 5L, firstState) instanceof FileStateHandle);
+	}
+
+	/**
+	 * Tests that states above the container threshold and states that do not belong to a
+	 * checkpoint are written to files of their own.
+	 */
+	@Test
+	public void testLargeAndNonCheckpointStatesAreNotInContainers() throws Exception {
+		FsCheckpointStreamFactory factory = createFactory(new Path(tmp.newFolder().toURI()), new JobID());
+
+		assertTrue(writeState(factory, 1L, randomBytes(CONTAINER_STATE_THRESHOLD + 1, 3L)) instanceof FileStateHandle);
+		assertTrue(writeState(factory, 0L, randomBytes(1000, 4L)) instanceof FileStateHandle);
+	}
+
+	/**
+	 * Tests that a container file is deleted when the last registered segment in it is
+	 * unregistered, and that discarding segments does not delete it.
+	 */
+	@Test
+	public void testContainerFileIsReferenceCounted() throws Exception {
+		JobID jobId = new JobID();
+		FsCheckpointStreamFactory factory = createFactory(new Path(tmp.newFolder().toURI()), jobId);
+
+		FileSegmentStateHandle first = (FileSegmentStateHandle) writeState(factory, 1L, randomBytes(1000, 5L));
+		FileSegmentStateHandle second = (FileSegmentStateHandle) writeState(factory, 1L, randomBytes(1000, 6L));
+		FileSegmentStateHandle unregistered = (FileSegmentStateHandle) writeState(factory, 1L, randomBytes(1000, 7L));
+
+		File containerFile = new File(first.getFilePath().toUri());
+		assertTrue(containerFile.exists());
+
+		SharedStateRegistry registry = new SharedStateRegistry();
+		first.registerSharedState(registry);
+		second.registerSharedState(registry);
+		assertEquals(2, registry.getReferenceCount(first.getSharedStateRegistryKey()));
+
+		unregistered.discardState();
+		first.discardState();
+		assertTrue(containerFile.exists());
+
+		first.unregisterSharedState(registry);
+		assertTrue(containerFile.exists());
+		assertArrayEquals(randomBytes(1000, 6L), readState(second));
+
+		second.unregisterSharedState(registry);
+		assertFalse(containerFile.exists());
+		assertFalse(registry.isRegistered(first.getSharedStateRegistryKey()));
+	}
+
+	/**
+	 * Tests that a segment which is registered as the shared file of incremental snapshots holds
+	 * a reference to its container file for as long as it is registered.
+	 */
+	@Test
+	public void testSharedSegmentHoldsContainerReference() throws Exception {
+		FsCheckpointStreamFactory factory = createFactory(new Path(tmp.newFolder().toURI()), new JobID());
+
+		FileSegmentStateHandle sharedFile = (FileSegmentStateHandle) writeState(factory, 1L, randomBytes(1000, 12L));
+		File containerFile = new File(sharedFile.getFilePath().toUri());
+
+		SharedStateRegistry registry = new SharedStateRegistry();
+		registry.registerReference("backend-1.sst", sharedFile);
+		registry.registerReference("backend-1.sst", sharedFile);
+		assertEquals(1, registry.getReferenceCount(sharedFile.getSharedStateRegistryKey()));
+
+		registry.unregisterReference("backend-1.sst");
+		assertTrue(containerFile.exists());
+
+		registry.unregisterReference("backend-1.sst");
+		assertFalse(containerFile.exists());
+		assertFalse(registry.isRegistered(sharedFile.getSharedStateRegistryKey()));
+	}
+
+	/**
+	 * Tests that the {@link FileStateContainerCleaner} deletes the container files of aborted
+	 * checkpoints, whose segments are never registered, and keeps the registered container files.
+	 */
+	@Test
+	public void testCleanerDeletesUnregisteredContainerFiles() throws Exception {
+		FsCheckpointStreamFactory factory = createFactory(new Path(tmp.newFolder().toURI()), new JobID());
+
+		FileSegmentStateHandle completed = (FileSegmentStateHandle) writeState(factory, 1L, randomBytes(1000, 8L));
+		FileSegmentStateHandle aborted = (FileSegmentStateHandle) writeState(factory, 2L, randomBytes(1000, 9L));
+		FileSegmentStateHandle pending = (FileSegmentStateHandle) writeState(factory, 3L, randomBytes(1000, 10L));
+
+		final SharedStateRegistry registry = new SharedStateRegistry();
+		completed.registerSharedState(registry);
+
+		FileStateContainerCleaner cleaner = new FileStateContainerCleaner();
+		cleaner.addJobDirectories(Collections.singletonList(completed));
+
+		cleaner.deleteUnreferencedContainers(3L, false, new FileStateContainerCleaner.ContainerReferences() {
+			@Override
+			public boolean isReferenced(long checkpointId, Path containerFile) {
+				return checkpointId == 3L || registry.isRegistered(containerFile.toString());
+			}
+		});
+
+		assertTrue(new File(completed.getFilePath().toUri()).exists());
+		assertFalse(new File(aborted.getFilePath().toUri()).exists());
+		assertTrue(new File(pending.getFilePath().toUri()).exists());
+
+		// a late state of the aborted checkpoint does not create a new container file
+		assertTrue(writeState(factory, 2L, randomBytes(1000, 11L)) instanceof FileStateHandle);
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static FsCheckpointStreamFactory createFactory(Path basePath, JobID jobId) throws IOException {
+		return new FsCheckpointStreamFactory(basePath, jobId, FILE_STATE_THRESHOLD, CONTAINER_STATE_THRESHOLD);
+	}
+
+	private static StreamStateHandle writeState(
+			FsCheckpointStreamFactory factory,
+			long checkpointId,
+			byte[] state) throws Exception {
+
+		CheckpointStateOutputStream outStream = factory.createCheckpointStateOutputStream(checkpointId, 0L);
+		outStream.write(state);
+		return outStream.closeAndGetHandle();
+	}
+
+	private static byte[] readState(StreamStateHandle handle) throws IOException {
+		byte[] state = new byte[(int) handle.getStateSize()];
+
+		FSDataInputStream inStream = handle.openInputStream();
+		try {
+			int offset = 0;
+			int read;
+			while (offset < state.length && (read = inStream.read(state, offset, state.length - offset)) >= 0) {
+				offset += read;
+			}
+			assertEquals(state.length, offset);
+			assertEquals(-1, inStream.read());
+		} finally {
+			inStream.close();
+		}
+
+		return state;
+	}
+
+	private static byte[] randomBytes(int length, long seed) {
+		byte[] bytes = new byte[length];
+		new Random(seed).nextBytes(bytes);
+		return bytes;
+	}
+}
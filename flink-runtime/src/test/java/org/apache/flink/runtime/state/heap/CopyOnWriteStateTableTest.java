@@ -23,13 +23,19 @@ import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.common.typeutils.base.IntSerializer;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.api.java.tuple.Tuple3;
+import org.apache.flink.core.memory.ByteArrayInputStreamWithPos;
+import org.apache.flink.core.memory.ByteArrayOutputStreamWithPos;
+import org.apache.flink.core.memory.DataInputViewStreamWrapper;
+import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
 import org.apache.flink.runtime.state.ArrayListSerializer;
 import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyedBackendSerializationProxy;
 import org.apache.flink.runtime.state.RegisteredBackendStateMetaInfo;
 import org.apache.flink.runtime.state.StateTransformationFunction;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -380,6 +386,120 @@ public class CopyOnWriteStateTableTest {
 		Assert.assertTrue(originalState5 == stateTable.get(5, 1));
 	}
 
+	/**
+	 * This tests that a delta snapshot only contains the entries that were modified, read, or removed since the base
+	 * snapshot, and that replaying it on top of the base snapshot restores the current state.
+	 */
+	@Test
+	public void testDeltaSnapshot() throws Exception {
+		RegisteredBackendStateMetaInfo<Integer, ArrayList<Integer>> metaInfo =
+				new RegisteredBackendStateMetaInfo<>(
+						StateDescriptor.Type.UNKNOWN,
+						"test",
+						IntSerializer.INSTANCE,
+						new ArrayListSerializer<>(IntSerializer.INSTANCE)); // we use mutable state objects.
+
+		final MockInternalKeyContext<Integer> keyContext = new MockInternalKeyContext<>(IntSerializer.INSTANCE);
+
+		final CopyOnWriteStateTable<Integer, Integer, ArrayList<Integer>> stateTable =
+				new CopyOnWriteStateTable<>(keyContext, metaInfo, true);
+
+		for (int i = 1; i <= 10; ++i) {
+			ArrayList<Integer> state = new ArrayList<>(1);
+			state.add(i);
+			stateTable.put(i, 1, state);
+		}
+
+		// the base snapshot contains all entries
+		CopyOnWriteStateTableSnapshot<Integer, Integer, ArrayList<Integer>> baseSnapshot = stateTable.createSnapshot();
+		int baseVersion = baseSnapshot.getSnapshotVersion();
+		byte[] baseBytes = writeDelta(baseSnapshot, keyContext.getKeyGroupRange());
+		baseSnapshot.release();
+
+		final CopyOnWriteStateTable<Integer, Integer, ArrayList<Integer>> restoredTable =
+				new CopyOnWriteStateTable<>(keyContext, metaInfo);
+		applyDelta(restoredTable, baseBytes, keyContext.getKeyGroupRange());
+		Assert.assertEquals(10, restoredTable.size());
+
+		// modify, read and modify in place, remove, and remove and re-insert
+		ArrayList<Integer> newState = new ArrayList<>(1);
+		newState.add(42);
+		stateTable.put(2, 1, newState);
+		stateTable.get(3, 1).add(43);
+		stateTable.remove(4, 1);
+		stateTable.remove(5, 1);
+		stateTable.put(5, 1, newState);
+		stateTable.remove(11, 1);
+
+		Assert.assertEquals(2, stateTable.numRemovedEntries());
+
+		CopyOnWriteStateTableSnapshot<Integer, Integer, ArrayList<Integer>> deltaSnapshot =
+				stateTable.createDeltaSnapshot(baseVersion);
+		int deltaVersion = deltaSnapshot.getSnapshotVersion();
+		byte[] deltaBytes = writeDelta(deltaSnapshot, keyContext.getKeyGroupRange());
+		deltaSnapshot.release();
+
+		// the delta alone only contains the modified entries
+		final CopyOnWriteStateTable<Integer, Integer, ArrayList<Integer>> deltaOnlyTable =
+				new CopyOnWriteStateTable<>(keyContext, metaInfo);
+		applyDelta(deltaOnlyTable, deltaBytes, keyContext.getKeyGroupRange());
+		Assert.assertEquals(3, deltaOnlyTable.size());
+		Assert.assertTrue(deltaOnlyTable.containsKey(2, 1));
+		Assert.assertTrue(deltaOnlyTable.containsKey(3, 1));
+		Assert.assertTrue(deltaOnlyTable.containsKey(5, 1));
+
+		// the base and the delta together restore the current state
+		applyDelta(restoredTable, deltaBytes, keyContext.getKeyGroupRange());
+		Assert.assertEquals(stateTable.size(), restoredTable.size());
+		for (StateEntry<Integer, Integer, ArrayList<Integer>> entry : stateTable) {
+			Assert.assertEquals(entry.getState(), restoredTable.get(entry.getKey(), entry.getNamespace()));
+		}
+		Assert.assertFalse(restoredTable.containsKey(4, 1));
+
+		// removals before the new base are no longer needed
+		stateTable.pruneRemovedEntries(deltaVersion);
+		Assert.assertEquals(0, stateTable.numRemovedEntries());
+
+		// nothing changed since the last delta
+		deltaSnapshot = stateTable.createDeltaSnapshot(deltaVersion);
+		deltaBytes = writeDelta(deltaSnapshot, keyContext.getKeyGroupRange());
+		deltaSnapshot.release();
+
+		final CopyOnWriteStateTable<Integer, Integer, ArrayList<Integer>> emptyDeltaTable =
+				new CopyOnWriteStateTable<>(keyContext, metaInfo);
+		applyDelta(emptyDeltaTable, deltaBytes, keyContext.getKeyGroupRange());
+		Assert.assertEquals(0, emptyDeltaTable.size());
+	}
+
+	private static byte[] writeDelta(
+			CopyOnWriteStateTableSnapshot<?, ?, ?> snapshot,
+			KeyGroupRange keyGroupRange) throws IOException {
+
+		final ByteArrayOutputStreamWithPos out = new ByteArrayOutputStreamWithPos(1024);
+		final DataOutputViewStreamWrapper dov = new DataOutputViewStreamWrapper(out);
+
+		for (Integer keyGroup : keyGroupRange) {
+			snapshot.writeDeltaInKeyGroup(dov, keyGroup);
+		}
+
+		return out.toByteArray();
+	}
+
+	private static void applyDelta(
+			StateTable<?, ?, ?> stateTable,
+			byte[] delta,
+			KeyGroupRange keyGroupRange) throws IOException {
+
+		final DataInputViewStreamWrapper div = new DataInputViewStreamWrapper(new ByteArrayInputStreamWithPos(delta));
+
+		final StateTableByKeyGroupReader keyGroupReader =
+				StateTableByKeyGroupReaders.deltaReaderForVersion(stateTable, KeyedBackendSerializationProxy.VERSION);
+
+		for (Integer keyGroup : keyGroupRange) {
+			keyGroupReader.readMappingsInKeyGroup(div, keyGroup);
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	private static <K, N, S> Tuple3<K, N, S>[] convert(CopyOnWriteStateTable.StateTableEntry<K, N, S>[] snapshot, int mapSize) {
 
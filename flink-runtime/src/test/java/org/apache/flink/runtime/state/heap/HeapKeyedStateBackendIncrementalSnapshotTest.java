@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.IncrementalKeyGroupsStateHandle;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupsStateHandle;
+import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.VoidNamespace;
+import org.apache.flink.runtime.state.VoidNamespaceSerializer;
+import org.apache.flink.runtime.state.internal.InternalValueState;
+import org.apache.flink.runtime.state.memory.MemCheckpointStreamFactory;
+import org.apache.flink.util.FutureUtil;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for the incremental checkpoints of the {@link HeapKeyedStateBackend}.
+ */
+public class HeapKeyedStateBackendIncrementalSnapshotTest {
+
+	private static final int NUM_KEYS = 1000;
+
+	@Test
+	public void testDeltaSnapshotOnTopOfCompletedCheckpoint() throws Exception {
+		final ValueStateDescriptor<String> stateDescr = new ValueStateDescriptor<>("my-state", String.class);
+		stateDescr.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		final CheckpointStreamFactory streamFactory = new MemCheckpointStreamFactory(1024 * 1024);
+
+		HeapKeyedStateBackend<String> keyedBackend = createKeyedBackend();
+
+		try {
+			InternalValueState<VoidNamespace, String> state =
+					keyedBackend.createValueState(VoidNamespaceSerializer.INSTANCE, stateDescr);
+			state.setCurrentNamespace(VoidNamespace.INSTANCE);
+
+			for (int i = 0; i < NUM_KEYS; ++i) {
+				keyedBackend.setCurrentKey("key-" + i);
+				state.update("value-" + i);
+			}
+
+			// the first checkpoint has no base and contains all state
+			IncrementalKeyGroupsStateHandle snapshot1 = (IncrementalKeyGroupsStateHandle) FutureUtil.runIfNotDoneAndGet(
+					keyedBackend.snapshot(1L, 1L, streamFactory, CheckpointOptions.forFullCheckpoint()));
+
+			assertEquals(Collections.singleton("chk-1"), snapshot1.getNewSharedState().keySet());
+			assertTrue(snapshot1.getReferencedSharedState().isEmpty());
+
+			keyedBackend.notifyCheckpointComplete(1L);
+
+			keyedBackend.setCurrentKey("key-1");
+			state.update("changed");
+			keyedBackend.setCurrentKey("key-2");
+			state.clear();
+
+			// the second checkpoint is a delta on top of the first one
+			IncrementalKeyGroupsStateHandle snapshot2 = (IncrementalKeyGroupsStateHandle) FutureUtil.runIfNotDoneAndGet(
+					keyedBackend.snapshot(2L, 2L, streamFactory, CheckpointOptions.forFullCheckpoint()));
+
+			assertEquals(Collections.singleton("chk-2"), snapshot2.getNewSharedState().keySet());
+			assertEquals(snapshot1.getNewSharedState(), snapshot2.getReferencedSharedState());
+			assertEquals(snapshot1.getBackendIdentifier(), snapshot2.getBackendIdentifier());
+
+			StreamStateHandle fullSnapshot = snapshot1.getNewSharedState().get("chk-1");
+			StreamStateHandle deltaSnapshot = snapshot2.getNewSharedState().get("chk-2");
+			assertTrue(deltaSnapshot.getStateSize() < fullSnapshot.getStateSize() / 2);
+
+			// savepoints are always full snapshots
+			KeyGroupsStateHandle savepoint = FutureUtil.runIfNotDoneAndGet(
+					keyedBackend.snapshot(3L, 3L, streamFactory, CheckpointOptions.forSavepoint("ignored")));
+
+			assertFalse(savepoint instanceof IncrementalKeyGroupsStateHandle);
+
+			keyedBackend.dispose();
+
+			// restoring replays the full snapshot and the delta
+			keyedBackend = createKeyedBackend();
+			keyedBackend.restore(Collections.<KeyGroupsStateHandle>singletonList(snapshot2));
+
+			state = keyedBackend.createValueState(VoidNamespaceSerializer.INSTANCE, stateDescr);
+			state.setCurrentNamespace(VoidNamespace.INSTANCE);
+
+			for (int i = 0; i < NUM_KEYS; ++i) {
+				keyedBackend.setCurrentKey("key-" + i);
+
+				if (i == 1) {
+					assertEquals("changed", state.value());
+				} else if (i == 2) {
+					assertNull(state.value());
+				} else {
+					assertEquals("value-" + i, state.value());
+				}
+			}
+
+			assertEquals(NUM_KEYS - 1, keyedBackend.numStateEntries());
+
+			// the restored backend continues the chain of the restored checkpoint
+			keyedBackend.setCurrentKey("key-3");
+			state.update("changed again");
+
+			IncrementalKeyGroupsStateHandle snapshot4 = (IncrementalKeyGroupsStateHandle) FutureUtil.runIfNotDoneAndGet(
+					keyedBackend.snapshot(4L, 4L, streamFactory, CheckpointOptions.forFullCheckpoint()));
+
+			assertEquals(snapshot2.getBackendIdentifier(), snapshot4.getBackendIdentifier());
+			assertEquals(snapshot2.getSharedState(), snapshot4.getReferencedSharedState());
+			assertEquals(Collections.singleton("chk-4"), snapshot4.getNewSharedState().keySet());
+		} finally {
+			keyedBackend.dispose();
+		}
+	}
+
+	private static HeapKeyedStateBackend<String> createKeyedBackend() {
+		return new HeapKeyedStateBackend<>(
+				mock(TaskKvStateRegistry.class),
+				StringSerializer.INSTANCE,
+				HeapKeyedStateBackendIncrementalSnapshotTest.class.getClassLoader(),
+				16,
+				new KeyGroupRange(0, 15),
+				true,
+				true,
+				new ExecutionConfig());
+	}
+}
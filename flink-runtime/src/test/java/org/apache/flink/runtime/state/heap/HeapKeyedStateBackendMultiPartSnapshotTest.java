@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.runtime.state.heap;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.state.CheckpointStreamFactory;
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KeyGroupsStateHandle;
+import org.apache.flink.runtime.state.MultiStreamStateHandle;
+import org.apache.flink.runtime.state.StateTransferPool;
+import org.apache.flink.runtime.state.VoidNamespace;
+import org.apache.flink.runtime.state.VoidNamespaceSerializer;
+import org.apache.flink.runtime.state.internal.InternalValueState;
+import org.apache.flink.runtime.state.memory.MemCheckpointStreamFactory;
+import org.apache.flink.util.FutureUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for the full snapshots of the {@link HeapKeyedStateBackend} that are written in multiple parts.
+ */
+public class HeapKeyedStateBackendMultiPartSnapshotTest {
+
+	private static final int NUM_KEYS = 1000;
+
+	private static final int MAX_PARALLELISM = 16;
+
+	private StateTransferPool stateTransferPool;
+
+	@Before
+	public void createStateTransferPool() {
+		// fewer threads than parts, so that the pool has to queue transfers
+		stateTransferPool = new StateTransferPool(2);
+	}
+
+	@After
+	public void shutdownStateTransferPool() {
+		stateTransferPool.shutdown();
+	}
+
+	@Test
+	public void testSnapshotAndRestoreInParts() throws Exception {
+		final ValueStateDescriptor<String> stateDescr = new ValueStateDescriptor<>("my-state", String.class);
+		stateDescr.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		final CheckpointStreamFactory streamFactory = new MemCheckpointStreamFactory(1024 * 1024);
+
+		HeapKeyedStateBackend<String> keyedBackend = createKeyedBackend(new KeyGroupRange(0, MAX_PARALLELISM - 1), 4);
+		KeyGroupsStateHandle snapshot;
+
+		try {
+			InternalValueState<VoidNamespace, String> state =
+					keyedBackend.createValueState(VoidNamespaceSerializer.INSTANCE, stateDescr);
+			state.setCurrentNamespace(VoidNamespace.INSTANCE);
+
+			for (int i = 0; i < NUM_KEYS; ++i) {
+				keyedBackend.setCurrentKey("key-" + i);
+				state.update("value-" + i);
+			}
+
+			snapshot = FutureUtil.runIfNotDoneAndGet(
+					keyedBackend.snapshot(1L, 1L, streamFactory, CheckpointOptions.forFullCheckpoint()));
+		} finally {
+			keyedBackend.dispose();
+		}
+
+		assertTrue(snapshot.getDelegateStateHandle() instanceof MultiStreamStateHandle);
+		assertEquals(4, ((MultiStreamStateHandle) snapshot.getDelegateStateHandle()).getStateHandles().size());
+
+		// restore with read-ahead and without
+		assertRestoredState(snapshot, new KeyGroupRange(0, MAX_PARALLELISM - 1), 4, stateDescr);
+		assertRestoredState(snapshot, new KeyGroupRange(0, MAX_PARALLELISM - 1), 1, stateDescr);
+
+		// restore with a different parallelism, which skips parts of the snapshot
+		KeyGroupRange firstHalf = new KeyGroupRange(0, MAX_PARALLELISM / 2 - 1);
+		KeyGroupRange secondHalf = new KeyGroupRange(MAX_PARALLELISM / 2, MAX_PARALLELISM - 1);
+		assertRestoredState(snapshot.getKeyGroupIntersection(firstHalf), firstHalf, 4, stateDescr);
+		assertRestoredState(snapshot.getKeyGroupIntersection(secondHalf), secondHalf, 4, stateDescr);
+	}
+
+	@Test
+	public void testSnapshotFailsAfterStateTransferPoolShutdown() throws Exception {
+		final ValueStateDescriptor<String> stateDescr = new ValueStateDescriptor<>("my-state", String.class);
+		stateDescr.initializeSerializerUnlessSet(new ExecutionConfig());
+
+		HeapKeyedStateBackend<String> keyedBackend = createKeyedBackend(new KeyGroupRange(0, MAX_PARALLELISM - 1), 4);
+
+		try {
+			InternalValueState<VoidNamespace, String> state =
+					keyedBackend.createValueState(VoidNamespaceSerializer.INSTANCE, stateDescr);
+			state.setCurrentNamespace(VoidNamespace.INSTANCE);
+			keyedBackend.setCurrentKey("key");
+			state.update("value");
+
+			stateTransferPool.shutdown();
+
+			try {
+				FutureUtil.runIfNotDoneAndGet(keyedBackend.snapshot(
+						1L, 1L, new MemCheckpointStreamFactory(1024 * 1024), CheckpointOptions.forFullCheckpoint()));
+				fail("The snapshot should fail after the state transfer pool has been shut down.");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+		} finally {
+			keyedBackend.dispose();
+		}
+	}
+
+	private void assertRestoredState(
+			KeyGroupsStateHandle snapshot,
+			KeyGroupRange keyGroupRange,
+			int numberOfTransferParts,
+			ValueStateDescriptor<String> stateDescr) throws Exception {
+
+		HeapKeyedStateBackend<String> keyedBackend = createKeyedBackend(keyGroupRange, numberOfTransferParts);
+
+		try {
+			keyedBackend.restore(Collections.singletonList(snapshot));
+
+			InternalValueState<VoidNamespace, String> state =
+					keyedBackend.createValueState(VoidNamespaceSerializer.INSTANCE, stateDescr);
+			state.setCurrentNamespace(VoidNamespace.INSTANCE);
+
+			for (int i = 0; i < NUM_KEYS; ++i) {
+				String key = "key-" + i;
+				if (keyGroupRange.contains(KeyGroupRangeAssignment.assignToKeyGroup(key, MAX_PARALLELISM))) {
+					keyedBackend.setCurrentKey(key);
+					assertEquals("value-" + i, state.value());
+				}
+			}
+
+			assertEquals(countKeysInKeyGroupRange(keyGroupRange), keyedBackend.numStateEntries());
+		} finally {
+			keyedBackend.dispose();
+		}
+	}
+
+	private static int countKeysInKeyGroupRange(KeyGroupRange keyGroupRange) {
+		int count = 0;
+		for (int i = 0; i < NUM_KEYS; ++i) {
+			if (keyGroupRange.contains(KeyGroupRangeAssignment.assignToKeyGroup("key-" + i, MAX_PARALLELISM))) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	private HeapKeyedStateBackend<String> createKeyedBackend(
+			KeyGroupRange keyGroupRange,
+			int numberOfTransferParts) {
+
+		HeapKeyedStateBackend<String> keyedBackend = new HeapKeyedStateBackend<>(
+				mock(TaskKvStateRegistry.class),
+				StringSerializer.INSTANCE,
+				HeapKeyedStateBackendMultiPartSnapshotTest.class.getClassLoader(),
+				MAX_PARALLELISM,
+				keyGroupRange,
+				true,
+				new ExecutionConfig());
+
+		keyedBackend.setNumberOfTransferParts(numberOfTransferParts, stateTransferPool);
+		return keyedBackend;
+	}
+}
@@ -49,6 +49,8 @@ import org.apache.flink.runtime.resourcemanager.StandaloneResourceManager;
 import org.apache.flink.runtime.resourcemanager.slotmanager.DefaultSlotManager;
 import org.apache.flink.runtime.resourcemanager.slotmanager.SlotManagerFactory;
 import org.apache.flink.runtime.rpc.TestingSerialRpcService;
+import org.apache.flink.runtime.state.StateTransferPool;
+import org.apache.flink.runtime.state.TaskLocalStateCleaner;
 import org.apache.flink.runtime.taskexecutor.slot.SlotOffer;
 import org.apache.flink.runtime.taskexecutor.slot.TaskSlotTable;
 import org.apache.flink.runtime.taskexecutor.slot.TimerService;
@@ -115,6 +117,8 @@ public class TaskExecutorITCase {
 		final TaskManagerMetricGroup taskManagerMetricGroup = mock(TaskManagerMetricGroup.class);
 		final BroadcastVariableManager broadcastVariableManager = mock(BroadcastVariableManager.class);
 		final FileCache fileCache = mock(FileCache.class);
+		final StateTransferPool stateTransferPool = mock(StateTransferPool.class);
+		final TaskLocalStateCleaner taskLocalStateCleaner = mock(TaskLocalStateCleaner.class);
 		final TaskSlotTable taskSlotTable = new TaskSlotTable(Arrays.asList(resourceProfile), new TimerService<AllocationID>(scheduledExecutorService, 100L));
 		final JobManagerTable jobManagerTable = new JobManagerTable();
 		final JobLeaderService jobLeaderService = new JobLeaderService(taskManagerLocation);
@@ -142,6 +146,8 @@ public class TaskExecutorITCase {
 			taskManagerMetricGroup,
 			broadcastVariableManager,
 			fileCache,
+			stateTransferPool,
+			taskLocalStateCleaner,
 			taskSlotTable,
 			jobManagerTable,
 			jobLeaderService,
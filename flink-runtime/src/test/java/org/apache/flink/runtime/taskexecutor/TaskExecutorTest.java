@@ -68,6 +68,8 @@ import org.apache.flink.runtime.resourcemanager.messages.taskexecutor.TMSlotRequ
 import org.apache.flink.runtime.resourcemanager.messages.taskexecutor.TMSlotRequestRejected;
 import org.apache.flink.runtime.resourcemanager.messages.taskexecutor.TMSlotRequestReply;
 import org.apache.flink.runtime.rpc.TestingSerialRpcService;
+import org.apache.flink.runtime.state.StateTransferPool;
+import org.apache.flink.runtime.state.TaskLocalStateCleaner;
 import org.apache.flink.runtime.taskexecutor.slot.SlotOffer;
 import org.apache.flink.runtime.taskexecutor.slot.TaskSlotTable;
 import org.apache.flink.runtime.taskexecutor.slot.TimerService;
@@ -181,6 +183,8 @@ public class TaskExecutorTest extends TestLogger {
 				mock(TaskManagerMetricGroup.class),
 				mock(BroadcastVariableManager.class),
 				mock(FileCache.class),
+				mock(StateTransferPool.class),
+				mock(TaskLocalStateCleaner.class),
 				taskSlotTable,
 				new JobManagerTable(),
 				jobLeaderService,
@@ -287,6 +291,8 @@ public class TaskExecutorTest extends TestLogger {
 				mock(TaskManagerMetricGroup.class),
 				mock(BroadcastVariableManager.class),
 				mock(FileCache.class),
+				mock(StateTransferPool.class),
+				mock(TaskLocalStateCleaner.class),
 				taskSlotTable,
 				mock(JobManagerTable.class),
 				mock(JobLeaderService.class),
@@ -356,6 +362,8 @@ public class TaskExecutorTest extends TestLogger {
 				mock(TaskManagerMetricGroup.class),
 				mock(BroadcastVariableManager.class),
 				mock(FileCache.class),
+				mock(StateTransferPool.class),
+				mock(TaskLocalStateCleaner.class),
 				taskSlotTable,
 				mock(JobManagerTable.class),
 				mock(JobLeaderService.class),
@@ -439,6 +447,8 @@ public class TaskExecutorTest extends TestLogger {
 				mock(TaskManagerMetricGroup.class),
 				mock(BroadcastVariableManager.class),
 				mock(FileCache.class),
+				mock(StateTransferPool.class),
+				mock(TaskLocalStateCleaner.class),
 				taskSlotTable,
 				mock(JobManagerTable.class),
 				mock(JobLeaderService.class),
@@ -571,6 +581,8 @@ public class TaskExecutorTest extends TestLogger {
 				taskManagerMetricGroup,
 				mock(BroadcastVariableManager.class),
 				mock(FileCache.class),
+				mock(StateTransferPool.class),
+				mock(TaskLocalStateCleaner.class),
 				taskSlotTable,
 				jobManagerTable,
 				mock(JobLeaderService.class),
@@ -688,6 +700,8 @@ public class TaskExecutorTest extends TestLogger {
 				mock(TaskManagerMetricGroup.class),
 				mock(BroadcastVariableManager.class),
 				mock(FileCache.class),
+				mock(StateTransferPool.class),
+				mock(TaskLocalStateCleaner.class),
 				taskSlotTable,
 				jobManagerTable,
 				jobLeaderService,
@@ -802,6 +816,8 @@ public class TaskExecutorTest extends TestLogger {
 				mock(TaskManagerMetricGroup.class),
 				mock(BroadcastVariableManager.class),
 				mock(FileCache.class),
+				mock(StateTransferPool.class),
+				mock(TaskLocalStateCleaner.class),
 				taskSlotTable,
 				jobManagerTable,
 				jobLeaderService,
@@ -879,6 +895,8 @@ public class TaskExecutorTest extends TestLogger {
 				mock(TaskManagerMetricGroup.class),
 				mock(BroadcastVariableManager.class),
 				mock(FileCache.class),
+				mock(StateTransferPool.class),
+				mock(TaskLocalStateCleaner.class),
 				mock(TaskSlotTable.class),
 				mock(JobManagerTable.class),
 				mock(JobLeaderService.class),
@@ -1023,6 +1041,8 @@ public class TaskExecutorTest extends TestLogger {
 				mock(TaskManagerMetricGroup.class),
 				mock(BroadcastVariableManager.class),
 				mock(FileCache.class),
+				mock(StateTransferPool.class),
+				mock(TaskLocalStateCleaner.class),
 				taskSlotTable,
 				jobManagerTable,
 				jobLeaderService,
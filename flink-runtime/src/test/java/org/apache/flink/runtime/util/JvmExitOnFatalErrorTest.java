@@ -51,6 +51,8 @@ import org.apache.flink.runtime.jobgraph.tasks.InputSplitProvider;
 import org.apache.flink.runtime.memory.MemoryManager;
 import org.apache.flink.runtime.operators.testutils.UnregisteredTaskMetricsGroup;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.state.StateTransferPool;
+import org.apache.flink.runtime.state.TaskLocalStateCleaner;
 import org.apache.flink.runtime.taskexecutor.TaskManagerConfiguration;
 import org.apache.flink.runtime.taskmanager.CheckpointResponder;
 import org.apache.flink.runtime.taskmanager.Task;
@@ -182,6 +184,8 @@ public class JvmExitOnFatalErrorTest {
 						new NoOpCheckpointResponder(),
 						new FallbackLibraryCacheManager(),
 						new FileCache(tmInfo.getTmpDirectories()),
+						new StateTransferPool(1),
+						new TaskLocalStateCleaner(),
 						tmInfo,
 						new UnregisteredTaskMetricsGroup(),
 						new NoOpResultPartitionConsumableNotifier(),
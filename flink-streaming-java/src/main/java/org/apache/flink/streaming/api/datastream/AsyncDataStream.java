@@ -21,19 +21,26 @@ import org.apache.flink.annotation.PublicEvolving;
 import org.apache.flink.api.common.typeinfo.TypeInformation;
 import org.apache.flink.api.java.Utils;
 import org.apache.flink.api.java.typeutils.TypeExtractor;
+import org.apache.flink.streaming.api.functions.async.AsyncBatchFunction;
 import org.apache.flink.streaming.api.functions.async.AsyncFunction;
+import org.apache.flink.streaming.api.operators.async.AsyncBatchWaitOperator;
 import org.apache.flink.streaming.api.operators.async.AsyncWaitOperator;
 
 import java.util.concurrent.TimeUnit;
 
 /**
- * A helper class to apply {@link AsyncFunction} to a data stream.
+ * A helper class to apply {@link AsyncFunction} or {@link AsyncBatchFunction} to a data stream.
  * <p>
  * <pre>{@code
  * DataStream<String> input = ...
  * AsyncFunction<String, Tuple<String, String>> asyncFunc = ...
  *
  * AsyncDataStream.orderedWait(input, asyncFunc, timeout, TimeUnit.MILLISECONDS, 100);
+ *
+ * AsyncBatchFunction<String, Tuple<String, String>> asyncBatchFunc = ...
+ *
+ * // batches of up to 50 inputs, flushed at the latest 10 milliseconds after their first input
+ * AsyncDataStream.orderedWait(input, asyncBatchFunc, timeout, TimeUnit.MILLISECONDS, 100, 50, 10);
  * }
  * </pre>
  */
@@ -77,6 +84,45 @@ public class AsyncDataStream {
 		return in.transform("async wait operator", outTypeInfo, operator);
 	}
 
+	/**
+	 * Add an AsyncBatchWaitOperator.
+	 *
+	 * @param in The {@link DataStream} where the {@link AsyncBatchWaitOperator} will be added.
+	 * @param func {@link AsyncBatchFunction} wrapped inside {@link AsyncBatchWaitOperator}.
+	 * @param timeout for the asynchronous operation to complete
+	 * @param bufSize The max number of inputs the {@link AsyncBatchWaitOperator} can hold inside.
+	 * @param mode Processing mode for {@link AsyncBatchWaitOperator}.
+	 * @param maxBatchSize The max number of inputs in one batch.
+	 * @param maxBatchDelay The max time the first input of a batch waits for the batch to be triggered.
+	 * @param <IN> Input type.
+	 * @param <OUT> Output type.
+	 * @return A new {@link SingleOutputStreamOperator}
+	 */
+	private static <IN, OUT> SingleOutputStreamOperator<OUT> addBatchOperator(
+			DataStream<IN> in,
+			AsyncBatchFunction<IN, OUT> func,
+			long timeout,
+			int bufSize,
+			OutputMode mode,
+			int maxBatchSize,
+			long maxBatchDelay) {
+
+		TypeInformation<OUT> outTypeInfo =
+			TypeExtractor.getUnaryOperatorReturnType(func, AsyncBatchFunction.class, false,
+				true, in.getType(), Utils.getCallLocationName(), true);
+
+		// create transform
+		AsyncBatchWaitOperator<IN, OUT> operator = new AsyncBatchWaitOperator<>(
+			in.getExecutionEnvironment().clean(func),
+			timeout,
+			bufSize,
+			mode,
+			maxBatchSize,
+			maxBatchDelay);
+
+		return in.transform("async batch wait operator", outTypeInfo, operator);
+	}
+
 	/**
 	 * Add an AsyncWaitOperator. The order of output stream records may be reordered.
 	 *
@@ -167,4 +213,70 @@ public class AsyncDataStream {
 			DEFAULT_QUEUE_CAPACITY,
 			OutputMode.ORDERED);
 	}
+
+	/**
+	 * Add an AsyncBatchWaitOperator. The inputs are handed to the {@link AsyncBatchFunction} in
+	 * batches. The order of output stream records may be reordered.
+	 *
+	 * @param in Input {@link DataStream}
+	 * @param func {@link AsyncBatchFunction}
+	 * @param timeout for the asynchronous operation of an input to complete
+	 * @param timeUnit of the given timeout and batch delay
+	 * @param capacity The max number of inputs whose async i/o operation can be in flight
+	 * @param maxBatchSize The max number of inputs in one batch
+	 * @param maxBatchDelay The max time the first input of a batch waits for the batch to be triggered
+	 * @param <IN> Type of input record
+	 * @param <OUT> Type of output record
+	 * @return A new {@link SingleOutputStreamOperator}.
+	 */
+	public static <IN, OUT> SingleOutputStreamOperator<OUT> unorderedWait(
+			DataStream<IN> in,
+			AsyncBatchFunction<IN, OUT> func,
+			long timeout,
+			TimeUnit timeUnit,
+			int capacity,
+			int maxBatchSize,
+			long maxBatchDelay) {
+		return addBatchOperator(
+			in,
+			func,
+			timeUnit.toMillis(timeout),
+			capacity,
+			OutputMode.UNORDERED,
+			maxBatchSize,
+			timeUnit.toMillis(maxBatchDelay));
+	}
+
+	/**
+	 * Add an AsyncBatchWaitOperator. The inputs are handed to the {@link AsyncBatchFunction} in
+	 * batches. The order to process input records is guaranteed to be the same as input ones.
+	 *
+	 * @param in Input {@link DataStream}
+	 * @param func {@link AsyncBatchFunction}
+	 * @param timeout for the asynchronous operation of an input to complete
+	 * @param timeUnit of the given timeout and batch delay
+	 * @param capacity The max number of inputs whose async i/o operation can be in flight
+	 * @param maxBatchSize The max number of inputs in one batch
+	 * @param maxBatchDelay The max time the first input of a batch waits for the batch to be triggered
+	 * @param <IN> Type of input record
+	 * @param <OUT> Type of output record
+	 * @return A new {@link SingleOutputStreamOperator}.
+	 */
+	public static <IN, OUT> SingleOutputStreamOperator<OUT> orderedWait(
+			DataStream<IN> in,
+			AsyncBatchFunction<IN, OUT> func,
+			long timeout,
+			TimeUnit timeUnit,
+			int capacity,
+			int maxBatchSize,
+			long maxBatchDelay) {
+		return addBatchOperator(
+			in,
+			func,
+			timeUnit.toMillis(timeout),
+			capacity,
+			OutputMode.ORDERED,
+			maxBatchSize,
+			timeUnit.toMillis(maxBatchDelay));
+	}
 }
@@ -28,12 +28,16 @@ import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
 import org.apache.flink.streaming.api.functions.co.CoFlatMapFunction;
 import org.apache.flink.streaming.api.functions.co.CoMapFunction;
 import org.apache.flink.streaming.api.functions.co.CoProcessFunction;
+import org.apache.flink.streaming.api.functions.co.KeyedBroadcastProcessFunction;
 import org.apache.flink.streaming.api.operators.TwoInputStreamOperator;
 import org.apache.flink.streaming.api.operators.co.CoProcessOperator;
 import org.apache.flink.streaming.api.operators.co.CoStreamFlatMap;
 import org.apache.flink.streaming.api.operators.co.CoStreamMap;
+import org.apache.flink.streaming.api.operators.co.KeyedBroadcastProcessOperator;
 import org.apache.flink.streaming.api.operators.co.KeyedCoProcessOperator;
+import org.apache.flink.streaming.api.transformations.PartitionTransformation;
 import org.apache.flink.streaming.api.transformations.TwoInputTransformation;
+import org.apache.flink.streaming.runtime.partitioner.BroadcastPartitioner;
 
 import static java.util.Objects.requireNonNull;
 
@@ -293,6 +297,80 @@ public class ConnectedStreams<IN1, IN2> {
 		return transform("Co-Process", outputType, operator);
 	}
 
+	/**
+	 * Applies the given {@link KeyedBroadcastProcessFunction} on the connected input streams,
+	 * thereby creating a transformed output stream. The first input must be a {@link KeyedStream}
+	 * and the second input must be a {@link DataStream#broadcast() broadcast} stream.
+	 *
+	 * <p>The function is called for every element in the input streams and can produce zero or
+	 * more output elements. The elements of the broadcast stream are kept in the
+	 * {@link org.apache.flink.api.common.state.BroadcastState broadcast state}, which is read when
+	 * processing the elements of the keyed stream.
+	 *
+	 * @param function The {@link KeyedBroadcastProcessFunction} that is called for each element
+	 *                      in the stream.
+	 *
+	 * @param <R> The type of elements emitted by the {@code KeyedBroadcastProcessFunction}.
+	 *
+	 * @return The transformed {@link DataStream}.
+	 */
+	@PublicEvolving
+	public <R> SingleOutputStreamOperator<R> process(
+			KeyedBroadcastProcessFunction<IN1, IN2, R> function) {
+
+		TypeInformation<R> outTypeInfo = TypeExtractor.getBinaryOperatorReturnType(function,
+				KeyedBroadcastProcessFunction.class, false, true, getType1(), getType2(),
+				Utils.getCallLocationName(), true);
+
+		return process(function, outTypeInfo);
+	}
+
+	/**
+	 * Applies the given {@link KeyedBroadcastProcessFunction} on the connected input streams,
+	 * thereby creating a transformed output stream. The first input must be a {@link KeyedStream}
+	 * and the second input must be a {@link DataStream#broadcast() broadcast} stream.
+	 *
+	 * @param function The {@link KeyedBroadcastProcessFunction} that is called for each element
+	 *                      in the stream.
+	 *
+	 * @param <R> The type of elements emitted by the {@code KeyedBroadcastProcessFunction}.
+	 *
+	 * @return The transformed {@link DataStream}.
+	 */
+	@Internal
+	@SuppressWarnings("unchecked")
+	public <R> SingleOutputStreamOperator<R> process(
+			KeyedBroadcastProcessFunction<IN1, IN2, R> function,
+			TypeInformation<R> outputType) {
+
+		if (!(inputStream1 instanceof KeyedStream)) {
+			throw new UnsupportedOperationException("A KeyedBroadcastProcessFunction requires " +
+					"the first input to be a KeyedStream.");
+		}
+
+		if (!(inputStream2.getTransformation() instanceof PartitionTransformation) ||
+				!(((PartitionTransformation<?>) inputStream2.getTransformation()).getPartitioner()
+						instanceof BroadcastPartitioner)) {
+			throw new UnsupportedOperationException("A KeyedBroadcastProcessFunction requires " +
+					"the second input to be a broadcast stream.");
+		}
+
+		KeyedStream<IN1, ?> keyedInput1 = (KeyedStream<IN1, ?>) inputStream1;
+
+		TwoInputStreamOperator<IN1, IN2, R> operator =
+				new KeyedBroadcastProcessOperator<>(inputStream1.clean(function));
+
+		SingleOutputStreamOperator<R> returnStream = transform("Keyed-Broadcast-Process", outputType, operator);
+
+		// only the keyed input sets the key of the operator, the broadcast input has no key
+		TwoInputTransformation<IN1, IN2, R> transform =
+				(TwoInputTransformation<IN1, IN2, R>) returnStream.getTransformation();
+		transform.setStateKeySelectors(keyedInput1.getKeySelector(), null);
+		transform.setStateKeyType(keyedInput1.getKeyType());
+
+		return returnStream;
+	}
+
 	@PublicEvolving
 	public <R> SingleOutputStreamOperator<R> transform(String functionName,
 			TypeInformation<R> outTypeInfo,
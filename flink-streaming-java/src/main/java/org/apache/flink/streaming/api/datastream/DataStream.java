@@ -59,6 +59,7 @@ import org.apache.flink.streaming.api.functions.sink.OutputFormatSinkFunction;
 import org.apache.flink.streaming.api.functions.sink.PrintSinkFunction;
 import org.apache.flink.streaming.api.functions.sink.SinkFunction;
 import org.apache.flink.streaming.api.functions.sink.SocketClientSink;
+import org.apache.flink.streaming.api.operators.KeyGroupVerifyingOperator;
 import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
 import org.apache.flink.streaming.api.operators.ProcessOperator;
 import org.apache.flink.streaming.api.operators.StreamFilter;
@@ -301,6 +302,72 @@ public class DataStream<T> {
 				getType(), getExecutionConfig())));
 	}
 
+	/**
+	 * Reinterprets this {@link DataStream} as a {@link KeyedStream} without partitioning it again.
+	 * The operators on the returned stream are connected to this stream by a forward connection,
+	 * so they can be chained to it, and they still have keyed state and timers.
+	 *
+	 * <p><b>IMPORTANT:</b> The stream must already be partitioned exactly as {@code keyBy()} would
+	 * partition it with the given key selector, i.e. every element must be at the parallel subtask
+	 * that {@link org.apache.flink.runtime.state.KeyGroupRangeAssignment} assigns to its key, and the
+	 * keyed operators must have the same parallelism as this stream. Otherwise keyed state and
+	 * timers are assigned to the wrong subtasks, which leads to wrong results and failures on restore.
+	 *
+	 * @param keySelector The key selector that the stream is partitioned by.
+	 * @param <K> The type of the key.
+	 * @return The reinterpreted {@link KeyedStream}.
+	 */
+	@PublicEvolving
+	public <K> KeyedStream<T, K> reinterpretAsKeyedStream(KeySelector<T, K> keySelector) {
+		return reinterpretAsKeyedStream(
+				keySelector,
+				TypeExtractor.getKeySelectorTypes(keySelector, getType()),
+				false);
+	}
+
+	/**
+	 * Reinterprets this {@link DataStream} as a {@link KeyedStream} without partitioning it again.
+	 * See {@link #reinterpretAsKeyedStream(KeySelector)} for the conditions that the stream must fulfill.
+	 *
+	 * <p>If {@code verifyPartitioning} is set, every element is checked to be at the subtask that its
+	 * key is assigned to, and the job fails on the first element that is not. This check costs the
+	 * key extraction and key group computation per element and is meant for testing and debugging.
+	 *
+	 * @param keySelector The key selector that the stream is partitioned by.
+	 * @param keyType The type information of the key.
+	 * @param verifyPartitioning Whether to verify the partitioning of every element.
+	 * @param <K> The type of the key.
+	 * @return The reinterpreted {@link KeyedStream}.
+	 */
+	@PublicEvolving
+	public <K> KeyedStream<T, K> reinterpretAsKeyedStream(
+			KeySelector<T, K> keySelector,
+			TypeInformation<K> keyType,
+			boolean verifyPartitioning) {
+
+		DataStream<T> input = this;
+
+		if (verifyPartitioning) {
+			SingleOutputStreamOperator<T> verified = transform(
+					"Key Group Verification",
+					getType(),
+					new KeyGroupVerifyingOperator<>(clean(keySelector)));
+
+			// the verification must see the elements at the subtasks where they are, without a rebalance
+			if (getParallelism() > 0) {
+				verified.getTransformation().setParallelism(getParallelism());
+			}
+
+			input = verified;
+		}
+
+		PartitionTransformation<T> partitionTransformation = new PartitionTransformation<>(
+				input.getTransformation(),
+				new ForwardPartitioner<T>());
+
+		return new KeyedStream<>(input, partitionTransformation, clean(keySelector), keyType);
+	}
+
 	/**
 	 * Partitions a tuple DataStream on the specified key fields using a custom partitioner.
 	 * This method takes the key position to partition on, and a partitioner that accepts the key type.
@@ -42,6 +42,7 @@ import org.apache.flink.streaming.api.functions.ProcessFunction;
 import org.apache.flink.streaming.api.functions.aggregation.AggregationFunction;
 import org.apache.flink.streaming.api.functions.aggregation.ComparableAggregator;
 import org.apache.flink.streaming.api.functions.aggregation.SumAggregator;
+import org.apache.flink.streaming.api.functions.co.ProcessJoinFunction;
 import org.apache.flink.streaming.api.functions.query.QueryableAppendingStateOperator;
 import org.apache.flink.streaming.api.functions.query.QueryableValueStateOperator;
 import org.apache.flink.streaming.api.functions.sink.SinkFunction;
@@ -50,8 +51,11 @@ import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
 import org.apache.flink.streaming.api.operators.KeyedProcessOperator;
 import org.apache.flink.streaming.api.operators.StreamGroupedFold;
 import org.apache.flink.streaming.api.operators.StreamGroupedReduce;
+import org.apache.flink.streaming.api.operators.StreamLocalGroupedReduce;
+import org.apache.flink.streaming.api.operators.co.IntervalJoinOperator;
 import org.apache.flink.streaming.api.transformations.OneInputTransformation;
 import org.apache.flink.streaming.api.transformations.PartitionTransformation;
+import org.apache.flink.streaming.api.transformations.StreamTransformation;
 import org.apache.flink.streaming.api.windowing.assigners.GlobalWindows;
 import org.apache.flink.streaming.api.windowing.assigners.SlidingEventTimeWindows;
 import org.apache.flink.streaming.api.windowing.assigners.SlidingProcessingTimeWindows;
@@ -67,6 +71,7 @@ import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
 import org.apache.flink.streaming.api.windowing.windows.Window;
 import org.apache.flink.streaming.runtime.partitioner.KeyGroupStreamPartitioner;
 import org.apache.flink.streaming.runtime.partitioner.StreamPartitioner;
+import org.apache.flink.util.Preconditions;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -118,11 +123,36 @@ public class KeyedStream<T, KEY> extends DataStream<T> {
 	 *            Function for determining state partitions
 	 */
 	public KeyedStream(DataStream<T> dataStream, KeySelector<T, KEY> keySelector, TypeInformation<KEY> keyType) {
-		super(
-			dataStream.getExecutionEnvironment(),
+		this(
+			dataStream,
 			new PartitionTransformation<>(
 				dataStream.getTransformation(),
-				new KeyGroupStreamPartitioner<>(keySelector, StreamGraphGenerator.DEFAULT_LOWER_BOUND_MAX_PARALLELISM)));
+				new KeyGroupStreamPartitioner<>(keySelector, StreamGraphGenerator.DEFAULT_LOWER_BOUND_MAX_PARALLELISM)),
+			keySelector,
+			keyType);
+	}
+
+	/**
+	 * Creates a new {@link KeyedStream} using the given {@link KeySelector} and {@link TypeInformation}
+	 * to partition operator state by key, where the partitioning is defined by a {@link PartitionTransformation}.
+	 *
+	 * @param stream
+	 *            Base stream of data
+	 * @param partitionTransformation
+	 *            Function that determines how the keys are distributed to downstream operator(s)
+	 * @param keySelector
+	 *            Function for determining state partitions
+	 * @param keyType
+	 *            The type of the key
+	 */
+	@Internal
+	KeyedStream(
+			DataStream<T> stream,
+			PartitionTransformation<T> partitionTransformation,
+			KeySelector<T, KEY> keySelector,
+			TypeInformation<KEY> keyType) {
+
+		super(stream.getExecutionEnvironment(), partitionTransformation);
 		this.keySelector = keySelector;
 		this.keyType = validateKeyType(keyType);
 	}
@@ -305,6 +335,36 @@ public class KeyedStream<T, KEY> extends DataStream<T> {
 		return transform("Process", outputType, operator);
 	}
 
+	// ------------------------------------------------------------------------
+	//  Joining
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Joins the elements of this {@code KeyedStream} with the elements of another
+	 * {@code KeyedStream} that have the same key and whose timestamps lie within a time interval
+	 * relative to each other. The interval is given with {@link IntervalJoin#between(Time, Time)}.
+	 *
+	 * <p>Contrary to a window join, the joined pairs are emitted as soon as both elements have
+	 * arrived, and each element is only kept until the watermark passed its interval. Interval
+	 * joins are only supported in event time.
+	 *
+	 * <p>Example:
+	 * <pre>{@code
+	 * orders.keyBy(...)
+	 *     .intervalJoin(shipments.keyBy(...))
+	 *     .between(Time.minutes(0), Time.minutes(5))
+	 *     .process(new ProcessJoinFunction<Order, Shipment, Result>() { ... });
+	 * }</pre>
+	 *
+	 * @param otherStream The other keyed stream to join with
+	 * @param <T1> The type of the elements of the other stream
+	 * @return An {@link IntervalJoin} on which the time interval is set
+	 */
+	@PublicEvolving
+	public <T1> IntervalJoin<T, T1, KEY> intervalJoin(KeyedStream<T1, KEY> otherStream) {
+		return new IntervalJoin<>(this, otherStream);
+	}
+
 
 	// ------------------------------------------------------------------------
 	//  Windowing
@@ -387,6 +447,62 @@ public class KeyedStream<T, KEY> extends DataStream<T> {
 		return new WindowedStream<>(this, assigner);
 	}
 
+	// ------------------------------------------------------------------------
+	//  Local pre-aggregation
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Combines the elements with the same key locally, before they are partitioned by key. The
+	 * combining operator is chained to the operator before the {@code keyBy()}, buffers one partial
+	 * aggregate per key and timestamp, and sends the partial aggregates to the keyed stream that is
+	 * returned. This neutralizes hot keys, which otherwise overload the single subtask they are
+	 * sent to.
+	 *
+	 * <p>The buffered partial aggregates are emitted when {@code maxBufferedKeys} partial aggregates
+	 * are buffered, when {@code maxBufferTime} has passed since the first element was buffered, and
+	 * before every watermark. On checkpoints they are stored in the operator state.
+	 *
+	 * <p>The combiner must be associative, and the operation on the returned stream must accept
+	 * partial aggregates as inputs, for example a {@link #reduce(ReduceFunction)} with the same
+	 * function. Only elements with the same timestamp are combined, and a partial aggregate keeps
+	 * that timestamp. Event time windows on the returned stream therefore see each element in the
+	 * same window as without the local combining.
+	 *
+	 * @param combiner The {@link ReduceFunction} that combines two elements with the same key.
+	 * @param maxBufferedKeys The maximum number of partial aggregates, i.e. of distinct keys and
+	 *                        timestamps, that are buffered.
+	 * @param maxBufferTime The maximum time for which a partial aggregate is buffered.
+	 * @return The keyed stream of the partial aggregates.
+	 */
+	@PublicEvolving
+	public KeyedStream<T, KEY> combineLocally(ReduceFunction<T> combiner, int maxBufferedKeys, Time maxBufferTime) {
+		if (!(getTransformation() instanceof PartitionTransformation) ||
+				!(((PartitionTransformation<T>) getTransformation()).getPartitioner() instanceof KeyGroupStreamPartitioner)) {
+			throw new UnsupportedOperationException("Local combining is only supported on streams that " +
+					"are partitioned by keyBy().");
+		}
+
+		StreamTransformation<T> input = ((PartitionTransformation<T>) getTransformation()).getInput();
+
+		SingleOutputStreamOperator<T> combined = new DataStream<>(getExecutionEnvironment(), input)
+				.transform(
+						"Local Combine",
+						getType(),
+						new StreamLocalGroupedReduce<>(
+								clean(combiner),
+								keySelector,
+								getType().createSerializer(getExecutionConfig()),
+								maxBufferedKeys,
+								maxBufferTime.toMilliseconds()));
+
+		// the combining operator must be chained to its input, so that the elements are combined before the shuffle
+		if (input.getParallelism() > 0) {
+			combined.getTransformation().setParallelism(input.getParallelism());
+		}
+
+		return new KeyedStream<>(combined, keySelector, keyType);
+	}
+
 	// ------------------------------------------------------------------------
 	//  Non-Windowed aggregation operations
 	// ------------------------------------------------------------------------
@@ -793,4 +909,160 @@ public class KeyedStream<T, KEY> extends DataStream<T> {
 				getKeyType().createSerializer(getExecutionConfig()));
 	}
 
+	// ------------------------------------------------------------------------
+	//  Interval join
+	// ------------------------------------------------------------------------
+
+	/**
+	 * An interval join of two {@link KeyedStream KeyedStreams}, for which the time interval has
+	 * not been set yet.
+	 *
+	 * @param <T1> The type of the elements of the first stream
+	 * @param <T2> The type of the elements of the second stream
+	 * @param <KEY> The type of the key of both streams
+	 */
+	@PublicEvolving
+	public static class IntervalJoin<T1, T2, KEY> {
+
+		private final KeyedStream<T1, KEY> streamOne;
+
+		private final KeyedStream<T2, KEY> streamTwo;
+
+		IntervalJoin(KeyedStream<T1, KEY> streamOne, KeyedStream<T2, KEY> streamTwo) {
+			this.streamOne = Preconditions.checkNotNull(streamOne);
+			this.streamTwo = Preconditions.checkNotNull(streamTwo);
+		}
+
+		/**
+		 * Sets the time interval of the join. An element {@code left} of the first stream is
+		 * joined with an element {@code right} of the second stream if
+		 * {@code left.timestamp + lowerBound <= right.timestamp <= left.timestamp + upperBound}.
+		 * Both bounds are inclusive by default.
+		 *
+		 * @param lowerBound The lower bound, may be negative
+		 * @param upperBound The upper bound, may be negative
+		 * @return An {@link IntervalJoined} to which the join function is given
+		 */
+		public IntervalJoined<T1, T2, KEY> between(Time lowerBound, Time upperBound) {
+			TimeCharacteristic timeCharacteristic =
+				streamOne.getExecutionEnvironment().getStreamTimeCharacteristic();
+
+			if (timeCharacteristic != TimeCharacteristic.EventTime) {
+				throw new UnsupportedOperationException("Interval joins are only supported in event time.");
+			}
+
+			Preconditions.checkNotNull(lowerBound, "The lower bound must not be null.");
+			Preconditions.checkNotNull(upperBound, "The upper bound must not be null.");
+
+			return new IntervalJoined<>(
+				streamOne,
+				streamTwo,
+				lowerBound.toMilliseconds(),
+				upperBound.toMilliseconds());
+		}
+	}
+
+	/**
+	 * An interval join of two {@link KeyedStream KeyedStreams} with a time interval, to which the
+	 * join function is given with {@link #process(ProcessJoinFunction)}.
+	 *
+	 * @param <IN1> The type of the elements of the first stream
+	 * @param <IN2> The type of the elements of the second stream
+	 * @param <KEY> The type of the key of both streams
+	 */
+	@PublicEvolving
+	public static class IntervalJoined<IN1, IN2, KEY> {
+
+		private final KeyedStream<IN1, KEY> left;
+
+		private final KeyedStream<IN2, KEY> right;
+
+		private final long lowerBound;
+
+		private final long upperBound;
+
+		private boolean lowerBoundInclusive = true;
+
+		private boolean upperBoundInclusive = true;
+
+		IntervalJoined(KeyedStream<IN1, KEY> left, KeyedStream<IN2, KEY> right, long lowerBound, long upperBound) {
+			Preconditions.checkArgument(lowerBound <= upperBound,
+				"The lower bound of the interval join must not be larger than the upper bound.");
+
+			this.left = left;
+			this.right = right;
+			this.lowerBound = lowerBound;
+			this.upperBound = upperBound;
+		}
+
+		/**
+		 * Excludes the lower bound from the time interval.
+		 */
+		public IntervalJoined<IN1, IN2, KEY> lowerBoundExclusive() {
+			this.lowerBoundInclusive = false;
+			return this;
+		}
+
+		/**
+		 * Excludes the upper bound from the time interval.
+		 */
+		public IntervalJoined<IN1, IN2, KEY> upperBoundExclusive() {
+			this.upperBoundInclusive = false;
+			return this;
+		}
+
+		/**
+		 * Completes the join by applying the given {@link ProcessJoinFunction} to every joined
+		 * pair of elements.
+		 *
+		 * @param processJoinFunction The function that is called for every joined pair
+		 * @param <OUT> The type of the elements emitted by the function
+		 * @return The joined {@link DataStream}
+		 */
+		public <OUT> SingleOutputStreamOperator<OUT> process(ProcessJoinFunction<IN1, IN2, OUT> processJoinFunction) {
+			Preconditions.checkNotNull(processJoinFunction);
+
+			TypeInformation<OUT> outputType = TypeExtractor.getBinaryOperatorReturnType(
+				processJoinFunction,
+				ProcessJoinFunction.class,
+				false,
+				true,
+				left.getType(),
+				right.getType(),
+				Utils.getCallLocationName(),
+				true);
+
+			return process(processJoinFunction, outputType);
+		}
+
+		/**
+		 * Completes the join by applying the given {@link ProcessJoinFunction} to every joined
+		 * pair of elements.
+		 *
+		 * @param processJoinFunction The function that is called for every joined pair
+		 * @param outputType {@link TypeInformation} for the result type of the function
+		 * @param <OUT> The type of the elements emitted by the function
+		 * @return The joined {@link DataStream}
+		 */
+		public <OUT> SingleOutputStreamOperator<OUT> process(
+				ProcessJoinFunction<IN1, IN2, OUT> processJoinFunction,
+				TypeInformation<OUT> outputType) {
+
+			Preconditions.checkNotNull(processJoinFunction);
+			Preconditions.checkNotNull(outputType);
+
+			IntervalJoinOperator<KEY, IN1, IN2, OUT> operator = new IntervalJoinOperator<>(
+				lowerBound,
+				upperBound,
+				lowerBoundInclusive,
+				upperBoundInclusive,
+				left.getType().createSerializer(left.getExecutionConfig()),
+				right.getType().createSerializer(right.getExecutionConfig()),
+				left.clean(processJoinFunction));
+
+			return left
+				.connect(right)
+				.transform("Interval Join", outputType, operator);
+		}
+	}
 }
@@ -51,6 +51,7 @@ import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
 import org.apache.flink.streaming.api.windowing.assigners.BaseAlignedWindowAssigner;
 import org.apache.flink.streaming.api.windowing.assigners.MergingWindowAssigner;
 import org.apache.flink.streaming.api.windowing.assigners.SlidingAlignedProcessingTimeWindows;
+import org.apache.flink.streaming.api.windowing.assigners.SlidingEventTimeWindows;
 import org.apache.flink.streaming.api.windowing.assigners.SlidingProcessingTimeWindows;
 import org.apache.flink.streaming.api.windowing.assigners.TumblingAlignedProcessingTimeWindows;
 import org.apache.flink.streaming.api.windowing.assigners.TumblingProcessingTimeWindows;
@@ -64,6 +65,7 @@ import org.apache.flink.streaming.api.windowing.windows.Window;
 import org.apache.flink.streaming.runtime.operators.windowing.AccumulatingProcessingTimeWindowOperator;
 import org.apache.flink.streaming.runtime.operators.windowing.AggregatingProcessingTimeWindowOperator;
 import org.apache.flink.streaming.runtime.operators.windowing.EvictingWindowOperator;
+import org.apache.flink.streaming.runtime.operators.windowing.SlidingWindowPanes;
 import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalAggregateProcessWindowFunction;
 import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalIterableProcessWindowFunction;
 import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalIterableWindowFunction;
@@ -128,6 +130,9 @@ public class WindowedStream<T, K, W extends Window> {
  	 */
 	private OutputTag<T> lateDataOutputTag;
 
+	/** Whether the contents of sliding time windows are stored in non-overlapping panes. */
+	private boolean panesEnabled;
+
 	@PublicEvolving
 	public WindowedStream(KeyedStream<T, K> input,
 			WindowAssigner<? super T, W> windowAssigner) {
@@ -149,6 +154,10 @@ public class WindowedStream<T, K, W extends Window> {
 			throw new UnsupportedOperationException("Cannot use a " + windowAssigner.getClass().getSimpleName() + " with a custom trigger.");
 		}
 
+		if (panesEnabled && !SlidingWindowPanes.isSupportedTrigger(trigger)) {
+			throw new UnsupportedOperationException("Cannot use the trigger " + trigger + " if the window contents are stored in panes.");
+		}
+
 		this.trigger = trigger;
 		return this;
 	}
@@ -202,10 +211,52 @@ public class WindowedStream<T, K, W extends Window> {
 		if (windowAssigner instanceof BaseAlignedWindowAssigner) {
 			throw new UnsupportedOperationException("Cannot use a " + windowAssigner.getClass().getSimpleName() + " with an Evictor.");
 		}
+
+		if (panesEnabled) {
+			throw new UnsupportedOperationException("Cannot use an Evictor if the window contents are stored in panes.");
+		}
 		this.evictor = evictor;
 		return this;
 	}
 
+	/**
+	 * Stores the contents of the sliding time windows in non-overlapping panes.
+	 *
+	 * <p>By default, an element is added to the state of each sliding window that it belongs to,
+	 * which means that each element (or each incremental aggregate) is stored and updated
+	 * {@code size / slide} times. With panes, each element is added once to the pane of its
+	 * timestamp, whose size is the greatest common divisor of window size and slide. The contents
+	 * of the panes of a window are combined when the window is evaluated.
+	 *
+	 * <p>Panes can be used with {@link SlidingEventTimeWindows} and
+	 * {@link SlidingProcessingTimeWindows} for {@code reduce()}, {@code aggregate()},
+	 * {@code apply()} and {@code process()}, but not with an {@link Evictor} or a folding window
+	 * function. As the panes are shared by several windows, the trigger must never purge the
+	 * window contents. Only the built-in triggers except the
+	 * {@link org.apache.flink.streaming.api.windowing.triggers.PurgingTrigger} are therefore
+	 * supported, custom triggers are rejected.
+	 *
+	 * <p>Note that the window state of an operator with panes is not compatible with the state
+	 * of the same operator without panes.
+	 */
+	@PublicEvolving
+	public WindowedStream<T, K, W> enablePanes() {
+		if (!(windowAssigner instanceof SlidingEventTimeWindows) && !(windowAssigner instanceof SlidingProcessingTimeWindows)) {
+			throw new UnsupportedOperationException("Panes can only be used with sliding time windows.");
+		}
+
+		if (evictor != null) {
+			throw new UnsupportedOperationException("Cannot use panes together with an Evictor.");
+		}
+
+		if (!SlidingWindowPanes.isSupportedTrigger(trigger)) {
+			throw new UnsupportedOperationException("Cannot use panes together with the trigger " + trigger + ".");
+		}
+
+		this.panesEnabled = true;
+		return this;
+	}
+
 
 	// ------------------------------------------------------------------------
 	//  Operations on the keyed windows
@@ -389,7 +440,8 @@ public class WindowedStream<T, K, W extends Window> {
 					trigger,
 					allowedLateness,
 					lateDataOutputTag,
-					legacyWindowOpType);
+					legacyWindowOpType,
+					panesEnabled);
 		}
 
 		return input.transform(opName, resultType, operator);
@@ -483,7 +535,9 @@ public class WindowedStream<T, K, W extends Window> {
 							new InternalSingleValueProcessWindowFunction<>(function),
 							trigger,
 							allowedLateness,
-							lateDataOutputTag);
+							lateDataOutputTag,
+							LegacyWindowOperatorType.NONE,
+							panesEnabled);
 		}
 
 		return input.transform(opName, resultType, operator);
@@ -635,7 +689,9 @@ public class WindowedStream<T, K, W extends Window> {
 				new InternalSingleValueWindowFunction<>(function),
 				trigger,
 				allowedLateness,
-				lateDataOutputTag);
+				lateDataOutputTag,
+				LegacyWindowOperatorType.NONE,
+				panesEnabled);
 		}
 
 		return input.transform(opName, resultType, operator);
@@ -748,7 +804,9 @@ public class WindowedStream<T, K, W extends Window> {
 							new InternalSingleValueProcessWindowFunction<>(windowFunction),
 							trigger,
 							allowedLateness,
-							lateDataOutputTag);
+							lateDataOutputTag,
+							LegacyWindowOperatorType.NONE,
+							panesEnabled);
 		}
 
 		return input.transform(opName, windowResultType, operator);
@@ -940,7 +998,9 @@ public class WindowedStream<T, K, W extends Window> {
 					new InternalSingleValueWindowFunction<>(windowFunction),
 					trigger,
 					allowedLateness,
-					lateDataOutputTag);
+					lateDataOutputTag,
+					LegacyWindowOperatorType.NONE,
+					panesEnabled);
 		}
 
 		return input.transform(opName, resultType, operator);
@@ -1069,7 +1129,9 @@ public class WindowedStream<T, K, W extends Window> {
 					new InternalSingleValueProcessWindowFunction<>(windowFunction),
 					trigger,
 					allowedLateness,
-					lateDataOutputTag);
+					lateDataOutputTag,
+					LegacyWindowOperatorType.NONE,
+					panesEnabled);
 		}
 
 		return input.transform(opName, resultType, operator);
@@ -1210,7 +1272,8 @@ public class WindowedStream<T, K, W extends Window> {
 					trigger,
 					allowedLateness,
 					lateDataOutputTag,
-					legacyWindowOpType);
+					legacyWindowOpType,
+					panesEnabled);
 		}
 
 		return input.transform(opName, resultType, operator);
@@ -1310,7 +1373,9 @@ public class WindowedStream<T, K, W extends Window> {
 					new InternalSingleValueWindowFunction<>(function),
 					trigger,
 					allowedLateness,
-					lateDataOutputTag);
+					lateDataOutputTag,
+					LegacyWindowOperatorType.NONE,
+					panesEnabled);
 		}
 
 		return input.transform(opName, resultType, operator);
@@ -1412,7 +1477,9 @@ public class WindowedStream<T, K, W extends Window> {
 				new InternalSingleValueWindowFunction<>(function),
 				trigger,
 				allowedLateness,
-				lateDataOutputTag);
+				lateDataOutputTag,
+				LegacyWindowOperatorType.NONE,
+				panesEnabled);
 		}
 
 		return input.transform(opName, resultType, operator);
@@ -70,6 +70,9 @@ public class CheckpointConfig implements java.io.Serializable {
 	/** Cleanup behaviour for persistent checkpoints. */
 	private ExternalizedCheckpointCleanup externalizedCheckpointCleanup;
 
+	/** Flag to let checkpoint barriers overtake in-flight data instead of aligning the inputs */
+	private boolean unalignedCheckpointsEnabled;
+
 	// ------------------------------------------------------------------------
 
 	/**
@@ -230,6 +233,46 @@ public class CheckpointConfig implements java.io.Serializable {
 		this.forceCheckpointing = forceCheckpointing;
 	}
 
+	/**
+	 * Enables or disables unaligned checkpoints.
+	 *
+	 * <p>Unaligned checkpoints only apply to the {@link CheckpointingMode#EXACTLY_ONCE} mode. Instead
+	 * of blocking the inputs that already received a checkpoint barrier until the barriers of all
+	 * inputs arrived, a task takes its snapshot as soon as the first barrier arrives. Barriers are
+	 * put in front of the data that is still queued at the sending task, and the records that are
+	 * in flight between the tasks at the time of the checkpoint become part of the checkpoint. On
+	 * recovery, these records are processed again before any new input.
+	 *
+	 * <p>Barriers overtake the data that is queued at the sending and at the receiving task. Only the
+	 * data that is in transit on the network is not overtaken. The in-flight records are kept on
+	 * the heap of the receiving task until the checkpoint has received all of its barriers. A
+	 * checkpoint that needs to keep more in-flight records than configured by
+	 * {@code task.checkpoint.unaligned.max-in-flight-size} is aborted.
+	 *
+	 * <p>Unaligned checkpoints keep checkpoint durations low under backpressure, at the cost of
+	 * larger checkpoints. A checkpoint that contains in-flight records cannot be restored with a
+	 * different parallelism, and it cannot be stored as a savepoint or externalized checkpoint.
+	 * Unaligned checkpoints can therefore not be combined with externalized checkpoints, and
+	 * savepoints are always aligned: their barriers do not overtake any data, and the
+	 * inputs that delivered the barrier of a savepoint are blocked until all of its barriers arrived.
+	 *
+	 * @param enabled Flag to indicate whether unaligned checkpoints are enabled.
+	 */
+	@PublicEvolving
+	public void enableUnalignedCheckpoints(boolean enabled) {
+		this.unalignedCheckpointsEnabled = enabled;
+	}
+
+	/**
+	 * Returns whether unaligned checkpoints are enabled.
+	 *
+	 * @return <code>true</code> if unaligned checkpoints are enabled.
+	 */
+	@PublicEvolving
+	public boolean isUnalignedCheckpointsEnabled() {
+		return unalignedCheckpointsEnabled;
+	}
+
 	/**
 	 * Enables checkpoints to be persisted externally.
 	 *
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.functions.async;
+
+import org.apache.flink.annotation.PublicEvolving;
+import org.apache.flink.api.common.functions.Function;
+import org.apache.flink.streaming.api.functions.async.collector.AsyncCollector;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A function to trigger one Async I/O operation for a batch of stream inputs, for example a
+ * multi-get request against an external key-value store.
+ *
+ * <p>The operator collects inputs until either the maximum batch size is reached or the maximum
+ * batch delay has passed, and then calls #asyncInvokeBatch once for all of them. Every input comes
+ * with its own {@link AsyncCollector}, through which the result of that input is handed back to
+ * the operator. The collectors of one batch can be completed independently and in any order; in
+ * the ordered output mode the operator still emits the results in the order of the inputs.
+ *
+ * <p>Example usage:
+ *
+ * <pre>{@code
+ * public class MultiGetFunc implements AsyncBatchFunction<String, String> {
+ *
+ *   public void asyncInvokeBatch(List<String> keys, final List<AsyncCollector<String>> collectors) {
+ *     ListenableFuture<List<String>> future = store.multiGet(keys);
+ *     Futures.addCallback(future, new FutureCallback<List<String>>() {
+ *       public void onSuccess(List<String> values) {
+ *         for (int i = 0; i < values.size(); i++) {
+ *           collectors.get(i).collect(Collections.singleton(values.get(i)));
+ *         }
+ *       }
+ *       public void onFailure(Throwable thrown) {
+ *         for (AsyncCollector<String> collector : collectors) {
+ *           collector.collect(thrown);
+ *         }
+ *       }
+ *     });
+ *   }
+ * }
+ * }</pre>
+ *
+ * @param <IN> The type of the input elements.
+ * @param <OUT> The type of the returned elements.
+ */
+@PublicEvolving
+public interface AsyncBatchFunction<IN, OUT> extends Function, Serializable {
+
+	/**
+	 * Trigger one async operation for a batch of stream inputs.
+	 *
+	 * @param inputs elements coming from an upstream task
+	 * @param collectors to collect the result data, one for each input at the same position
+	 * @exception Exception in case of a user code error. An exception will make the task fail and
+	 * trigger fail-over process.
+	 */
+	void asyncInvokeBatch(List<IN> inputs, List<AsyncCollector<OUT>> collectors) throws Exception;
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.functions.co;
+
+import org.apache.flink.annotation.PublicEvolving;
+import org.apache.flink.api.common.functions.AbstractRichFunction;
+import org.apache.flink.api.common.state.BroadcastState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.ReadOnlyBroadcastState;
+import org.apache.flink.streaming.api.TimeDomain;
+import org.apache.flink.streaming.api.TimerService;
+import org.apache.flink.util.Collector;
+
+/**
+ * A function that processes the elements of a keyed stream together with the elements of a
+ * broadcast stream, for example to apply a set of rules that is sent to all parallel instances
+ * to the elements of the keyed stream.
+ *
+ * <p>The elements of the broadcast stream are stored in the {@link BroadcastState broadcast state}
+ * in {@link #processBroadcastElement(Object, Context, Collector)}. Because every parallel instance
+ * receives all elements of the broadcast stream, the broadcast state holds the same contents on
+ * all parallel instances, as long as it is only modified based on the broadcast elements.
+ * For this reason, {@link #processElement(Object, ReadOnlyContext, Collector)} and
+ * {@link #onTimer(long, OnTimerContext, Collector)} only get read-only access to the broadcast
+ * state.
+ *
+ * <p>The elements of the keyed stream can use keyed state and timers, as in a
+ * {@link org.apache.flink.streaming.api.functions.ProcessFunction}. Keyed state must not be
+ * accessed when processing the broadcast elements, because they do not belong to any key.
+ *
+ * @param <IN1> Type of the elements of the keyed stream.
+ * @param <IN2> Type of the elements of the broadcast stream.
+ * @param <OUT> Output type.
+ */
+@PublicEvolving
+public abstract class KeyedBroadcastProcessFunction<IN1, IN2, OUT> extends AbstractRichFunction {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * This method is called for each element in the keyed stream.
+	 *
+	 * <p>This function can output zero or more elements using the {@link Collector} parameter,
+	 * read the broadcast state and set timers using the {@link ReadOnlyContext} parameter.
+	 *
+	 * @param value The stream element
+	 * @param ctx A {@link ReadOnlyContext} that allows querying the timestamp of the element,
+	 *            getting a {@link TimerService} for registering timers and querying the time,
+	 *            and reading the broadcast state.
+	 *            The context is only valid during the invocation of this method, do not store it.
+	 * @param out The collector to emit resulting elements to
+	 * @throws Exception The function may throw exceptions which cause the streaming program
+	 *                   to fail and go into recovery.
+	 */
+	public abstract void processElement(IN1 value, ReadOnlyContext ctx, Collector<OUT> out) throws Exception;
+
+	/**
+	 * This method is called for each element in the broadcast stream.
+	 *
+	 * <p>This function can output zero or more elements using the {@link Collector} parameter
+	 * and update the broadcast state using the {@link Context} parameter. The state must only be
+	 * modified based on the broadcast element, so that it stays identical on all parallel instances.
+	 *
+	 * @param value The stream element
+	 * @param ctx A {@link Context} that allows querying the timestamp of the element and
+	 *            accessing the broadcast state.
+	 *            The context is only valid during the invocation of this method, do not store it.
+	 * @param out The collector to emit resulting elements to
+	 * @throws Exception The function may throw exceptions which cause the streaming program
+	 *                   to fail and go into recovery.
+	 */
+	public abstract void processBroadcastElement(IN2 value, Context ctx, Collector<OUT> out) throws Exception;
+
+	/**
+	 * Called when a timer set using {@link TimerService} fires.
+	 *
+	 * @param timestamp The timestamp of the firing timer.
+	 * @param ctx An {@link OnTimerContext} that allows querying the timestamp of the firing timer,
+	 *            querying the {@link TimeDomain} of the firing timer, getting a
+	 *            {@link TimerService} for registering timers and querying the time,
+	 *            and reading the broadcast state.
+	 *            The context is only valid during the invocation of this method, do not store it.
+	 * @param out The collector for returning result values.
+	 *
+	 * @throws Exception This method may throw exceptions. Throwing an exception will cause the operation
+	 *                   to fail and may trigger recovery.
+	 */
+	public void onTimer(long timestamp, OnTimerContext ctx, Collector<OUT> out) throws Exception {}
+
+	/**
+	 * The information that is available in all methods of the function.
+	 */
+	public abstract class BaseContext {
+
+		/**
+		 * Timestamp of the element currently being processed or timestamp of a firing timer.
+		 *
+		 * <p>This might be {@code null}, for example if the time characteristic of your program
+		 * is set to {@link org.apache.flink.streaming.api.TimeCharacteristic#ProcessingTime}.
+		 */
+		public abstract Long timestamp();
+
+		/** Returns the current processing time. */
+		public abstract long currentProcessingTime();
+
+		/** Returns the current event-time watermark. */
+		public abstract long currentWatermark();
+	}
+
+	/**
+	 * Information available in an invocation of
+	 * {@link #processBroadcastElement(Object, Context, Collector)}.
+	 */
+	public abstract class Context extends BaseContext {
+
+		/**
+		 * Fetches the {@link BroadcastState} with the specified name.
+		 *
+		 * @param stateDescriptor the {@link MapStateDescriptor} of the state to be fetched.
+		 * @return The required {@link BroadcastState broadcast state}.
+		 */
+		public abstract <K, V> BroadcastState<K, V> getBroadcastState(
+				MapStateDescriptor<K, V> stateDescriptor) throws Exception;
+	}
+
+	/**
+	 * Information available in an invocation of {@link #processElement(Object, ReadOnlyContext, Collector)}
+	 * or {@link #onTimer(long, OnTimerContext, Collector)}.
+	 */
+	public abstract class ReadOnlyContext extends BaseContext {
+
+		/**
+		 * Fetches a read-only view of the {@link BroadcastState} with the specified name.
+		 *
+		 * @param stateDescriptor the {@link MapStateDescriptor} of the state to be fetched.
+		 * @return The required read-only view of the broadcast state.
+		 */
+		public abstract <K, V> ReadOnlyBroadcastState<K, V> getBroadcastState(
+				MapStateDescriptor<K, V> stateDescriptor) throws Exception;
+
+		/**
+		 * A {@link TimerService} for querying time and registering timers.
+		 */
+		public abstract TimerService timerService();
+	}
+
+	/**
+	 * Information available in an invocation of {@link #onTimer(long, OnTimerContext, Collector)}.
+	 */
+	public abstract class OnTimerContext extends ReadOnlyContext {
+		/**
+		 * The {@link TimeDomain} of the firing timer.
+		 */
+		public abstract TimeDomain timeDomain();
+	}
+}
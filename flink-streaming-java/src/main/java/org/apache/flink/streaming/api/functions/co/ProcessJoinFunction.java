@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.functions.co;
+
+import org.apache.flink.annotation.PublicEvolving;
+import org.apache.flink.api.common.functions.AbstractRichFunction;
+import org.apache.flink.util.Collector;
+
+/**
+ * A function that processes two joined elements and produces a single output one.
+ *
+ * <p>This function will get called for every joined pair of elements of an interval join of two
+ * {@link org.apache.flink.streaming.api.datastream.KeyedStream KeyedStreams}. The timestamp of the
+ * joined pair is the larger timestamp of the two elements, and it is also the timestamp of the
+ * elements emitted by this function.
+ *
+ * @param <IN1> Type of the first input.
+ * @param <IN2> Type of the second input.
+ * @param <OUT> Output type.
+ */
+@PublicEvolving
+public abstract class ProcessJoinFunction<IN1, IN2, OUT> extends AbstractRichFunction {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * This method is called for each joined pair of elements. It can output zero or more elements
+	 * through the provided {@link Collector} and has access to the timestamps of the joined
+	 * elements through the provided {@link Context}.
+	 *
+	 * @param left The element of the first input
+	 * @param right The element of the second input
+	 * @param ctx A {@link Context} that allows querying the timestamps of the joined elements.
+	 *            The context is only valid during the invocation of this method, do not store it.
+	 * @param out The collector to emit resulting elements to
+	 * @throws Exception The function may throw exceptions which cause the streaming program
+	 *                   to fail and go into recovery.
+	 */
+	public abstract void processElement(IN1 left, IN2 right, Context ctx, Collector<OUT> out) throws Exception;
+
+	/**
+	 * Information available in an invocation of {@link #processElement(Object, Object, Context, Collector)}.
+	 */
+	public abstract class Context {
+
+		/**
+		 * Timestamp of the element of the first input.
+		 */
+		public abstract long getLeftTimestamp();
+
+		/**
+		 * Timestamp of the element of the second input.
+		 */
+		public abstract long getRightTimestamp();
+
+		/**
+		 * Timestamp of the joined pair, which is the larger of the two timestamps.
+		 */
+		public abstract long getTimestamp();
+	}
+}
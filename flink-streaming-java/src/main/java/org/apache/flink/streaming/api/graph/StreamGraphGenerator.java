@@ -23,6 +23,8 @@ import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
 import org.apache.flink.streaming.api.functions.source.InputFormatSourceFunction;
+import org.apache.flink.streaming.api.operators.KeyGroupVerifyingOperator;
+import org.apache.flink.streaming.api.operators.StreamOperator;
 import org.apache.flink.streaming.api.transformations.CoFeedbackTransformation;
 import org.apache.flink.streaming.api.transformations.FeedbackTransformation;
 import org.apache.flink.streaming.api.transformations.OneInputTransformation;
@@ -567,6 +569,10 @@ public class StreamGraphGenerator {
 			streamGraph.addEdge(inputId, transform.getId(), 0);
 		}
 
+		if (transform.getStateKeySelector() != null) {
+			configureKeyGroupVerifiers(transform.getId(), transform.getMaxParallelism());
+		}
+
 		return Collections.singleton(transform.getId());
 	}
 
@@ -625,9 +631,32 @@ public class StreamGraphGenerator {
 			);
 		}
 
+		if (transform.getStateKeySelector1() != null || transform.getStateKeySelector2() != null) {
+			configureKeyGroupVerifiers(transform.getId(), transform.getMaxParallelism());
+		}
+
 		return Collections.singleton(transform.getId());
 	}
 
+	/**
+	 * Hands the maximum parallelism of a keyed operator to the {@link KeyGroupVerifyingOperator
+	 * key group verifiers} in front of it, so that the verifiers check the key group assignment
+	 * of the keyed operator and not their own one.
+	 */
+	private void configureKeyGroupVerifiers(int keyedNodeId, int maxParallelism) {
+		if (maxParallelism <= 0) {
+			return;
+		}
+
+		for (StreamEdge inEdge : streamGraph.getStreamNode(keyedNodeId).getInEdges()) {
+			StreamOperator<?> inputOperator = inEdge.getSourceVertex().getOperator();
+
+			if (inputOperator instanceof KeyGroupVerifyingOperator) {
+				((KeyGroupVerifyingOperator<?, ?>) inputOperator).setMaxParallelism(maxParallelism);
+			}
+		}
+	}
+
 	/**
 	 * Determines the slot sharing group for an operation based on the slot sharing group set by
 	 * the user and the slot sharing groups of the inputs.
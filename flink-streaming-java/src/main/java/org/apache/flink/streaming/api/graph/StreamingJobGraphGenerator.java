@@ -408,6 +408,8 @@ public class StreamingJobGraphGenerator {
 		config.setCheckpointingEnabled(ceckpointCfg.isCheckpointingEnabled());
 		if (ceckpointCfg.isCheckpointingEnabled()) {
 			config.setCheckpointMode(ceckpointCfg.getCheckpointingMode());
+			config.setUnalignedCheckpointsEnabled(ceckpointCfg.isUnalignedCheckpointsEnabled() &&
+					ceckpointCfg.getCheckpointingMode() == CheckpointingMode.EXACTLY_ONCE);
 		}
 		else {
 			// the "at-least-once" input handler is slightly cheaper (in the absence of checkpoints),
@@ -565,6 +567,13 @@ public class StreamingJobGraphGenerator {
 			if (cleanup == null) {
 				throw new IllegalStateException("Externalized checkpoints enabled, but no cleanup mode configured.");
 			}
+			// the savepoint format of externalized checkpoints cannot hold in-flight records
+			if (cfg.isCheckpointingEnabled() && cfg.isUnalignedCheckpointsEnabled() &&
+					cfg.getCheckpointingMode() == CheckpointingMode.EXACTLY_ONCE) {
+				throw new IllegalStateException("Externalized checkpoints cannot be combined with unaligned " +
+						"checkpoints, because the records that are in flight during an unaligned checkpoint " +
+						"cannot be stored in an externalized checkpoint. Disable one of them in the CheckpointConfig.");
+			}
 			externalizedCheckpointSettings = ExternalizedCheckpointSettings.externalizeCheckpoints(cleanup.deleteOnCancellation());
 		} else {
 			externalizedCheckpointSettings = ExternalizedCheckpointSettings.none();
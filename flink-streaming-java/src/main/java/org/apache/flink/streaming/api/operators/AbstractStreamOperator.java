@@ -41,6 +41,7 @@ import org.apache.flink.runtime.checkpoint.CheckpointOptions;
 import org.apache.flink.runtime.checkpoint.CheckpointOptions.CheckpointType;
 import org.apache.flink.runtime.metrics.groups.OperatorMetricGroup;
 import org.apache.flink.runtime.state.AbstractKeyedStateBackend;
+import org.apache.flink.runtime.state.CheckpointListener;
 import org.apache.flink.runtime.state.CheckpointStreamFactory;
 import org.apache.flink.runtime.state.DefaultKeyedStateStore;
 import org.apache.flink.runtime.state.KeyGroupRange;
@@ -211,7 +212,8 @@ public abstract class AbstractStreamOperator<OUT>
 				getKeyedStateBackend().getNumberOfKeyGroups(),
 				getKeyedStateBackend().getKeyGroupRange(),
 				this,
-				getRuntimeContext().getProcessingTimeService());
+				getRuntimeContext().getProcessingTimeService(),
+				getTimerQueueFactory());
 		}
 
 		if (restoring) {
@@ -404,7 +406,29 @@ public abstract class AbstractStreamOperator<OUT>
 	 * @param context context that provides information and means required for taking a snapshot
 	 */
 	public void snapshotState(StateSnapshotContext context) throws Exception {
-		if (getKeyedStateBackend() != null) {
+		if (getKeyedStateBackend() != null && context instanceof StateSnapshotContextSynchronousImpl) {
+
+			// copy the timers now and write them in the asynchronous part of the checkpoint
+			final InternalTimeServiceManager.TimeServicesSnapshot<?, ?> timeServicesSnapshot =
+				timeServiceManager.snapshotTimeServices();
+
+			((StateSnapshotContextSynchronousImpl) context).setAsyncKeyedStateWriter(
+				new StateSnapshotContextSynchronousImpl.AsyncKeyedStateWriter() {
+					@Override
+					public void writeKeyedState(KeyedStateCheckpointOutputStream out) throws Exception {
+						try {
+							DataOutputViewStreamWrapper outView = new DataOutputViewStreamWrapper(out);
+							for (int keyGroupIdx : out.getKeyGroupList()) {
+								out.startNewKeyGroup(keyGroupIdx);
+								timeServicesSnapshot.writeStateForKeyGroup(outView, keyGroupIdx);
+							}
+						} catch (Exception exception) {
+							throw new Exception("Could not write timer service of " + getOperatorName() +
+								" to checkpoint state stream.", exception);
+						}
+					}
+				});
+		} else if (getKeyedStateBackend() != null) {
 			KeyedStateCheckpointOutputStream out;
 
 			try {
@@ -484,7 +508,11 @@ public abstract class AbstractStreamOperator<OUT>
 	}
 
 	@Override
-	public void notifyOfCompletedCheckpoint(long checkpointId) throws Exception {}
+	public void notifyOfCompletedCheckpoint(long checkpointId) throws Exception {
+		if (keyedStateBackend instanceof CheckpointListener) {
+			((CheckpointListener) keyedStateBackend).notifyCheckpointComplete(checkpointId);
+		}
+	}
 
 	/**
 	 * Returns a checkpoint stream factory for the provided options.
@@ -566,6 +594,16 @@ public abstract class AbstractStreamOperator<OUT>
 		return (KeyedStateBackend<K>) keyedStateBackend;
 	}
 
+	/**
+	 * Returns the keyed state backend as the factory for the timer queues of the timer services,
+	 * or {@code null} if the backend does not keep timers and the timers are kept on the Java heap.
+	 */
+	@SuppressWarnings("unchecked")
+	private InternalTimerQueueFactory<Object> getTimerQueueFactory() {
+		return keyedStateBackend instanceof InternalTimerQueueFactory ?
+			(InternalTimerQueueFactory<Object>) keyedStateBackend : null;
+	}
+
 	public OperatorStateBackend getOperatorStateBackend() {
 		return operatorStateBackend;
 	}
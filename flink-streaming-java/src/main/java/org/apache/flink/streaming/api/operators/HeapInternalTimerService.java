@@ -21,7 +21,6 @@ import org.apache.flink.annotation.VisibleForTesting;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.core.memory.DataInputViewStreamWrapper;
 import org.apache.flink.core.memory.DataOutputViewStreamWrapper;
-import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
 import org.apache.flink.runtime.state.KeyGroupsList;
 import org.apache.flink.streaming.runtime.tasks.ProcessingTimeCallback;
 import org.apache.flink.streaming.runtime.tasks.ProcessingTimeService;
@@ -29,8 +28,9 @@ import org.apache.flink.util.InstantiationUtil;
 import org.apache.flink.util.Preconditions;
 
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.PriorityQueue;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
 
@@ -39,6 +39,11 @@ import static org.apache.flink.util.Preconditions.checkNotNull;
 
 /**
  * {@link InternalTimerService} that stores timers on the Java heap.
+ *
+ * <p>By default, the timers are kept in {@link InternalTimerHeap InternalTimerHeaps}, which de-duplicate and
+ * index the timers by key-group and remove timers in O(log n). If the service is given an
+ * {@link InternalTimerQueueFactory}, e.g. a keyed state backend that keeps timers itself, the timers are kept
+ * in the queues of that factory instead.
  */
 public class HeapInternalTimerService<K, N> implements InternalTimerService<N>, ProcessingTimeCallback {
 
@@ -46,23 +51,29 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 
 	private final KeyContext keyContext;
 
+	/** The name of the service, which is unique within the operator */
+	private final String name;
+
+	/** Factory for the timer queues, or null if the timers are kept in {@link InternalTimerHeap InternalTimerHeaps} */
+	private final InternalTimerQueueFactory<K> timerQueueFactory;
+
+	private final int totalKeyGroups;
+
 	/**
-	 * Processing time timers that are currently in-flight.
+	 * Processing time timers that are currently in-flight. The queues are created once the
+	 * namespace serializer is known, i.e. when the service is started or restored.
 	 */
-	private final Set<InternalTimer<K, N>>[] processingTimeTimersByKeyGroup;
-	private final PriorityQueue<InternalTimer<K, N>> processingTimeTimersQueue;
+	private InternalTimerQueue<K, N> processingTimeTimersQueue;
 
 	/**
 	 * Event time timers that are currently in-flight.
 	 */
-	private final Set<InternalTimer<K, N>>[] eventTimeTimersByKeyGroup;
-	private final PriorityQueue<InternalTimer<K, N>> eventTimeTimersQueue;
+	private InternalTimerQueue<K, N> eventTimeTimersQueue;
 
 	/**
 	 * Information concerning the local key-group range
 	 */
 	private final KeyGroupsList localKeyGroupRange;
-	private final int totalKeyGroups;
 	private final int localKeyGroupRangeStartIdx;
 
 	/**
@@ -99,10 +110,26 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 		KeyContext keyContext,
 		ProcessingTimeService processingTimeService) {
 
+		this(null, totalKeyGroups, localKeyGroupRange, keyContext, processingTimeService, null);
+	}
+
+	public HeapInternalTimerService(
+		String name,
+		int totalKeyGroups,
+		KeyGroupsList localKeyGroupRange,
+		KeyContext keyContext,
+		ProcessingTimeService processingTimeService,
+		InternalTimerQueueFactory<K> timerQueueFactory) {
+
+		checkArgument(timerQueueFactory == null || name != null,
+			"Timer services with a timer queue factory need a name.");
+
+		this.name = name;
+		this.timerQueueFactory = timerQueueFactory;
+		this.totalKeyGroups = totalKeyGroups;
 		this.keyContext = checkNotNull(keyContext);
 		this.processingTimeService = checkNotNull(processingTimeService);
 
-		this.totalKeyGroups = totalKeyGroups;
 		this.localKeyGroupRange = checkNotNull(localKeyGroupRange);
 
 		// find the starting index of the local key-group range
@@ -111,15 +138,25 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 			startIdx = Math.min(keyGroupIdx, startIdx);
 		}
 		this.localKeyGroupRangeStartIdx = startIdx;
+	}
 
-		// the list of ids of the key-groups this task is responsible for
-		int localKeyGroups = this.localKeyGroupRange.getNumberOfKeyGroups();
+	/**
+	 * Creates the timer queues, if they were not created before.
+	 */
+	private void createTimerQueues(TypeSerializer<N> namespaceSerializer) {
+		if (eventTimeTimersQueue != null) {
+			return;
+		}
 
-		this.eventTimeTimersQueue = new PriorityQueue<>(100);
-		this.eventTimeTimersByKeyGroup = new HashSet[localKeyGroups];
+		if (timerQueueFactory != null) {
+			eventTimeTimersQueue = timerQueueFactory.createTimerQueue(name + "/event", namespaceSerializer);
+			processingTimeTimersQueue = timerQueueFactory.createTimerQueue(name + "/processing", namespaceSerializer);
+		}
 
-		this.processingTimeTimersQueue = new PriorityQueue<>(100);
-		this.processingTimeTimersByKeyGroup = new HashSet[localKeyGroups];
+		if (eventTimeTimersQueue == null || processingTimeTimersQueue == null) {
+			eventTimeTimersQueue = new InternalTimerHeap<>(128, localKeyGroupRange, totalKeyGroups);
+			processingTimeTimersQueue = new InternalTimerHeap<>(128, localKeyGroupRange, totalKeyGroups);
+		}
 	}
 
 	/**
@@ -162,9 +199,12 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 
 			this.timerSerializer = new InternalTimer.TimerSerializer<>(this.keySerializer, this.namespaceSerializer);
 
+			createTimerQueues(namespaceSerializer);
+
 			// re-register the restored timers (if any)
-			if (processingTimeTimersQueue.size() > 0) {
-				nextTimer = processingTimeService.registerTimer(processingTimeTimersQueue.peek().getTimestamp(), this);
+			InternalTimer<K, N> headTimer = processingTimeTimersQueue.peek();
+			if (headTimer != null) {
+				nextTimer = processingTimeService.registerTimer(headTimer.getTimestamp(), this);
 			}
 			this.isInitialized = true;
 		} else {
@@ -189,14 +229,12 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 	public void registerProcessingTimeTimer(N namespace, long time) {
 		InternalTimer<K, N> timer = new InternalTimer<>(time, (K) keyContext.getCurrentKey(), namespace);
 
-		// make sure we only put one timer per key into the queue
-		Set<InternalTimer<K, N>> timerSet = getProcessingTimeTimerSetForTimer(timer);
-		if (timerSet.add(timer)) {
+		InternalTimer<K, N> oldHead = processingTimeTimersQueue.peek();
 
-			InternalTimer<K, N> oldHead = processingTimeTimersQueue.peek();
-			long nextTriggerTime = oldHead != null ? oldHead.getTimestamp() : Long.MAX_VALUE;
+		// the queue makes sure we only have one timer per key and namespace
+		if (processingTimeTimersQueue.add(timer)) {
 
-			processingTimeTimersQueue.add(timer);
+			long nextTriggerTime = oldHead != null ? oldHead.getTimestamp() : Long.MAX_VALUE;
 
 			// check if we need to re-schedule our timer to earlier
 			if (time < nextTriggerTime) {
@@ -211,28 +249,19 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 	@Override
 	public void registerEventTimeTimer(N namespace, long time) {
 		InternalTimer<K, N> timer = new InternalTimer<>(time, (K) keyContext.getCurrentKey(), namespace);
-		Set<InternalTimer<K, N>> timerSet = getEventTimeTimerSetForTimer(timer);
-		if (timerSet.add(timer)) {
-			eventTimeTimersQueue.add(timer);
-		}
+		eventTimeTimersQueue.add(timer);
 	}
 
 	@Override
 	public void deleteProcessingTimeTimer(N namespace, long time) {
 		InternalTimer<K, N> timer = new InternalTimer<>(time, (K) keyContext.getCurrentKey(), namespace);
-		Set<InternalTimer<K, N>> timerSet = getProcessingTimeTimerSetForTimer(timer);
-		if (timerSet.remove(timer)) {
-			processingTimeTimersQueue.remove(timer);
-		}
+		processingTimeTimersQueue.remove(timer);
 	}
 
 	@Override
 	public void deleteEventTimeTimer(N namespace, long time) {
 		InternalTimer<K, N> timer = new InternalTimer<>(time, (K) keyContext.getCurrentKey(), namespace);
-		Set<InternalTimer<K, N>> timerSet = getEventTimeTimerSetForTimer(timer);
-		if (timerSet.remove(timer)) {
-			eventTimeTimersQueue.remove(timer);
-		}
+		eventTimeTimersQueue.remove(timer);
 	}
 
 	@Override
@@ -245,10 +274,7 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 
 		while ((timer = processingTimeTimersQueue.peek()) != null && timer.getTimestamp() <= time) {
 
-			Set<InternalTimer<K, N>> timerSet = getProcessingTimeTimerSetForTimer(timer);
-
-			timerSet.remove(timer);
-			processingTimeTimersQueue.remove();
+			processingTimeTimersQueue.poll();
 
 			keyContext.setCurrentKey(timer.getKey());
 			triggerTarget.onProcessingTime(timer);
@@ -268,9 +294,7 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 
 		while ((timer = eventTimeTimersQueue.peek()) != null && timer.getTimestamp() <= time) {
 
-			Set<InternalTimer<K, N>> timerSet = getEventTimeTimerSetForTimer(timer);
-			timerSet.remove(timer);
-			eventTimeTimersQueue.remove();
+			eventTimeTimersQueue.poll();
 
 			keyContext.setCurrentKey(timer.getKey());
 			triggerTarget.onEventTime(timer);
@@ -283,26 +307,65 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 	 * @param keyGroupIdx the id of the key-group to be put in the snapshot.
 	 */
 	public void snapshotTimersForKeyGroup(DataOutputViewStreamWrapper stream, int keyGroupIdx) throws Exception {
+		writeTimers(
+			stream,
+			keySerializer,
+			namespaceSerializer,
+			timerSerializer,
+			eventTimeTimersQueue.getTimersForKeyGroupSnapshot(keyGroupIdx),
+			processingTimeTimersQueue.getTimersForKeyGroupSnapshot(keyGroupIdx));
+	}
+
+	/**
+	 * Takes the timers of all local key-groups, so that they can be written in the asynchronous part of a
+	 * checkpoint while timers are registered and fire. The timer queues hand out copy-on-write views of
+	 * their timers, so this does not copy the timers of the key-groups.
+	 *
+	 * @return the snapshot of the timers, which writes the same format as {@link #snapshotTimersForKeyGroup}.
+	 */
+	TimersSnapshot<K, N> snapshotTimers() {
+		Map<Integer, Collection<InternalTimer<K, N>>> eventTimers = new HashMap<>();
+		Map<Integer, Collection<InternalTimer<K, N>>> processingTimers = new HashMap<>();
+
+		for (int keyGroupIdx : localKeyGroupRange) {
+			eventTimers.put(keyGroupIdx, eventTimeTimersQueue.getTimersForKeyGroupSnapshot(keyGroupIdx));
+			processingTimers.put(keyGroupIdx, processingTimeTimersQueue.getTimersForKeyGroupSnapshot(keyGroupIdx));
+		}
+
+		// the serializers are used concurrently to the task thread
+		InternalTimer.TimerSerializer<K, N> timerSerializerCopy = timerSerializer != null ?
+			new InternalTimer.TimerSerializer<>(keySerializer.duplicate(), namespaceSerializer.duplicate()) :
+			null;
+
+		return new TimersSnapshot<>(keySerializer, namespaceSerializer, timerSerializerCopy, eventTimers, processingTimers);
+	}
+
+	private static <K, N> void writeTimers(
+			DataOutputViewStreamWrapper stream,
+			TypeSerializer<K> keySerializer,
+			TypeSerializer<N> namespaceSerializer,
+			InternalTimer.TimerSerializer<K, N> timerSerializer,
+			Collection<InternalTimer<K, N>> eventTimers,
+			Collection<InternalTimer<K, N>> processingTimers) throws Exception {
+
 		InstantiationUtil.serializeObject(stream, keySerializer);
 		InstantiationUtil.serializeObject(stream, namespaceSerializer);
 
 		// write the event time timers
-		Set<InternalTimer<K, N>> eventTimers = getEventTimeTimerSetForKeyGroup(keyGroupIdx);
 		if (eventTimers != null) {
 			stream.writeInt(eventTimers.size());
 			for (InternalTimer<K, N> timer : eventTimers) {
-				this.timerSerializer.serialize(timer, stream);
+				timerSerializer.serialize(timer, stream);
 			}
 		} else {
 			stream.writeInt(0);
 		}
 
 		// write the processing time timers
-		Set<InternalTimer<K, N>> processingTimers = getProcessingTimeTimerSetForKeyGroup(keyGroupIdx);
 		if (processingTimers != null) {
 			stream.writeInt(processingTimers.size());
 			for (InternalTimer<K, N> timer : processingTimers) {
-				this.timerSerializer.serialize(timer, stream);
+				timerSerializer.serialize(timer, stream);
 			}
 		} else {
 			stream.writeInt(0);
@@ -338,109 +401,36 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 		checkArgument(localKeyGroupRange.contains(keyGroupIdx),
 			"Key Group " + keyGroupIdx + " does not belong to the local range.");
 
+		createTimerQueues(this.namespaceDeserializer);
+
 		// read the event time timers
 		int sizeOfEventTimeTimers = stream.readInt();
-		if (sizeOfEventTimeTimers > 0) {
-			Set<InternalTimer<K, N>> eventTimers = getEventTimeTimerSetForKeyGroup(keyGroupIdx);
-			for (int i = 0; i < sizeOfEventTimeTimers; i++) {
-				InternalTimer<K, N> timer = timerSerializer.deserialize(stream);
-				eventTimers.add(timer);
-				eventTimeTimersQueue.add(timer);
-			}
+		for (int i = 0; i < sizeOfEventTimeTimers; i++) {
+			InternalTimer<K, N> timer = timerSerializer.deserialize(stream);
+			eventTimeTimersQueue.add(timer);
 		}
 
 		// read the processing time timers
 		int sizeOfProcessingTimeTimers = stream.readInt();
-		if (sizeOfProcessingTimeTimers > 0) {
-			Set<InternalTimer<K, N>> processingTimers = getProcessingTimeTimerSetForKeyGroup(keyGroupIdx);
-			for (int i = 0; i < sizeOfProcessingTimeTimers; i++) {
-				InternalTimer<K, N> timer = timerSerializer.deserialize(stream);
-				processingTimers.add(timer);
-				processingTimeTimersQueue.add(timer);
-			}
-		}
-	}
-
-	/**
-	 * Retrieve the set of event time timers for the key-group this timer belongs to.
-	 *
-	 * @param timer the timer whose key-group we are searching.
-	 * @return the set of registered timers for the key-group.
-	 */
-	private Set<InternalTimer<K, N>> getEventTimeTimerSetForTimer(InternalTimer<K, N> timer) {
-		checkArgument(localKeyGroupRange != null, "The operator has not been initialized.");
-		int keyGroupIdx = KeyGroupRangeAssignment.assignToKeyGroup(timer.getKey(), this.totalKeyGroups);
-		return getEventTimeTimerSetForKeyGroup(keyGroupIdx);
-	}
-
-	/**
-	 * Retrieve the set of event time timers for the requested key-group.
-	 *
-	 * @param keyGroupIdx the index of the key group we are interested in.
-	 * @return the set of registered timers for the key-group.
-	 */
-	private Set<InternalTimer<K, N>> getEventTimeTimerSetForKeyGroup(int keyGroupIdx) {
-		int localIdx = getIndexForKeyGroup(keyGroupIdx);
-		Set<InternalTimer<K, N>> timers = eventTimeTimersByKeyGroup[localIdx];
-		if (timers == null) {
-			timers = new HashSet<>();
-			eventTimeTimersByKeyGroup[localIdx] = timers;
-		}
-		return timers;
-	}
-
-	/**
-	 * Retrieve the set of processing time timers for the key-group this timer belongs to.
-	 *
-	 * @param timer the timer whose key-group we are searching.
-	 * @return the set of registered timers for the key-group.
-	 */
-	private Set<InternalTimer<K, N>> getProcessingTimeTimerSetForTimer(InternalTimer<K, N> timer) {
-		checkArgument(localKeyGroupRange != null, "The operator has not been initialized.");
-		int keyGroupIdx = KeyGroupRangeAssignment.assignToKeyGroup(timer.getKey(), this.totalKeyGroups);
-		return getProcessingTimeTimerSetForKeyGroup(keyGroupIdx);
-	}
-
-	/**
-	 * Retrieve the set of processing time timers for the requested key-group.
-	 *
-	 * @param keyGroupIdx the index of the key group we are interested in.
-	 * @return the set of registered timers for the key-group.
-	 */
-	private Set<InternalTimer<K, N>> getProcessingTimeTimerSetForKeyGroup(int keyGroupIdx) {
-		int localIdx = getIndexForKeyGroup(keyGroupIdx);
-		Set<InternalTimer<K, N>> timers = processingTimeTimersByKeyGroup[localIdx];
-		if (timers == null) {
-			timers = new HashSet<>();
-			processingTimeTimersByKeyGroup[localIdx] = timers;
+		for (int i = 0; i < sizeOfProcessingTimeTimers; i++) {
+			InternalTimer<K, N> timer = timerSerializer.deserialize(stream);
+			processingTimeTimersQueue.add(timer);
 		}
-		return timers;
-	}
-
-	/**
-	 * Computes the index of the requested key-group in the local datastructures.
-	 * <li/>
-	 * Currently we assume that each task is assigned a continuous range of key-groups,
-	 * e.g. 1,2,3,4, and not 1,3,5. We leverage this to keep the different states by
-	 * key-grouped in arrays instead of maps, where the offset for each key-group is
-	 * the key-group id (an int) minus the id of the first key-group in the local range.
-	 * This is for performance reasons.
-	 */
-	private int getIndexForKeyGroup(int keyGroupIdx) {
-		checkArgument(localKeyGroupRange.contains(keyGroupIdx),
-			"Key Group " + keyGroupIdx + " does not belong to the local range.");
-		return keyGroupIdx - this.localKeyGroupRangeStartIdx;
 	}
 
 	public int numProcessingTimeTimers() {
-		return this.processingTimeTimersQueue.size();
+		return processingTimeTimersQueue != null ? processingTimeTimersQueue.size() : 0;
 	}
 
 	public int numEventTimeTimers() {
-		return this.eventTimeTimersQueue.size();
+		return eventTimeTimersQueue != null ? eventTimeTimersQueue.size() : 0;
 	}
 
 	public int numProcessingTimeTimers(N namespace) {
+		if (processingTimeTimersQueue == null) {
+			return 0;
+		}
+
 		int count = 0;
 		for (InternalTimer<K, N> timer : processingTimeTimersQueue) {
 			if (timer.getNamespace().equals(namespace)) {
@@ -451,6 +441,10 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 	}
 
 	public int numEventTimeTimers(N namespace) {
+		if (eventTimeTimersQueue == null) {
+			return 0;
+		}
+
 		int count = 0;
 		for (InternalTimer<K, N> timer : eventTimeTimersQueue) {
 			if (timer.getNamespace().equals(namespace)) {
@@ -467,11 +461,60 @@ public class HeapInternalTimerService<K, N> implements InternalTimerService<N>,
 
 	@VisibleForTesting
 	public Set<InternalTimer<K, N>>[] getEventTimeTimersPerKeyGroup() {
-		return this.eventTimeTimersByKeyGroup;
+		return ((InternalTimerHeap<K, N>) this.eventTimeTimersQueue).getTimersPerKeyGroup();
 	}
 
 	@VisibleForTesting
 	public Set<InternalTimer<K, N>>[] getProcessingTimeTimersPerKeyGroup() {
-		return this.processingTimeTimersByKeyGroup;
+		return ((InternalTimerHeap<K, N>) this.processingTimeTimersQueue).getTimersPerKeyGroup();
+	}
+
+	/**
+	 * The timers of a {@link HeapInternalTimerService}, taken in the synchronous part of a checkpoint.
+	 */
+	static final class TimersSnapshot<K, N> {
+
+		private final TypeSerializer<K> keySerializer;
+
+		private final TypeSerializer<N> namespaceSerializer;
+
+		private final InternalTimer.TimerSerializer<K, N> timerSerializer;
+
+		/** The event time timers by key-group, the timers of a key-group may be null */
+		private final Map<Integer, Collection<InternalTimer<K, N>>> eventTimers;
+
+		/** The processing time timers by key-group, the timers of a key-group may be null */
+		private final Map<Integer, Collection<InternalTimer<K, N>>> processingTimers;
+
+		TimersSnapshot(
+				TypeSerializer<K> keySerializer,
+				TypeSerializer<N> namespaceSerializer,
+				InternalTimer.TimerSerializer<K, N> timerSerializer,
+				Map<Integer, Collection<InternalTimer<K, N>>> eventTimers,
+				Map<Integer, Collection<InternalTimer<K, N>>> processingTimers) {
+
+			this.keySerializer = keySerializer;
+			this.namespaceSerializer = namespaceSerializer;
+			this.timerSerializer = timerSerializer;
+			this.eventTimers = checkNotNull(eventTimers);
+			this.processingTimers = checkNotNull(processingTimers);
+		}
+
+		/**
+		 * Writes the timers of the given key-group, in the format of
+		 * {@link HeapInternalTimerService#snapshotTimersForKeyGroup}.
+		 */
+		void writeTimersForKeyGroup(DataOutputViewStreamWrapper stream, int keyGroupIdx) throws Exception {
+			checkArgument(eventTimers.containsKey(keyGroupIdx),
+				"Key Group " + keyGroupIdx + " does not belong to the local range.");
+
+			writeTimers(
+				stream,
+				keySerializer,
+				namespaceSerializer,
+				timerSerializer,
+				eventTimers.get(keyGroupIdx),
+				processingTimers.get(keyGroupIdx));
+		}
 	}
 }
@@ -31,6 +31,7 @@ import org.apache.flink.util.Preconditions;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -52,6 +53,9 @@ class InternalTimeServiceManager<K, N> {
 
 	private final ProcessingTimeService processingTimeService;
 
+	/** Factory for the timer queues, or null if the timers are kept on the Java heap */
+	private final InternalTimerQueueFactory<K> timerQueueFactory;
+
 	private final Map<String, HeapInternalTimerService<K, N>> timerServices;
 	private final InternalWatermarkCallbackService<K> watermarkCallbackService;
 
@@ -59,7 +63,8 @@ class InternalTimeServiceManager<K, N> {
 			int totalKeyGroups,
 			KeyGroupsList localKeyGroupRange,
 			KeyContext keyContext,
-			ProcessingTimeService processingTimeService) {
+			ProcessingTimeService processingTimeService,
+			InternalTimerQueueFactory<K> timerQueueFactory) {
 
 		Preconditions.checkArgument(totalKeyGroups > 0);
 		this.totalKeyGroups = totalKeyGroups;
@@ -67,6 +72,7 @@ class InternalTimeServiceManager<K, N> {
 
 		this.keyContext = Preconditions.checkNotNull(keyContext);
 		this.processingTimeService = Preconditions.checkNotNull(processingTimeService);
+		this.timerQueueFactory = timerQueueFactory;
 
 		this.timerServices = new HashMap<>();
 		this.watermarkCallbackService = new InternalWatermarkCallbackService<>(totalKeyGroups, localKeyGroupRange, keyContext);
@@ -106,14 +112,23 @@ class InternalTimeServiceManager<K, N> {
 
 		HeapInternalTimerService<K, N> timerService = timerServices.get(name);
 		if (timerService == null) {
-			timerService = new HeapInternalTimerService<>(totalKeyGroups,
-				localKeyGroupRange, keyContext, processingTimeService);
+			timerService = createTimerService(name);
 			timerServices.put(name, timerService);
 		}
 		timerService.startTimerService(keySerializer, namespaceSerializer, triggerable);
 		return timerService;
 	}
 
+	private HeapInternalTimerService<K, N> createTimerService(String name) {
+		return new HeapInternalTimerService<>(
+			name,
+			totalKeyGroups,
+			localKeyGroupRange,
+			keyContext,
+			processingTimeService,
+			timerQueueFactory);
+	}
+
 	public void advanceWatermark(Watermark watermark) throws Exception {
 		for (HeapInternalTimerService<?, ?> service : timerServices.values()) {
 			service.advanceWatermark(watermark.getTimestamp());
@@ -144,6 +159,24 @@ class InternalTimeServiceManager<K, N> {
 		}
 	}
 
+	/**
+	 * Copies the timers of all timer services and the keys of the watermark callback service, so that they
+	 * can be written in the asynchronous part of a checkpoint.
+	 *
+	 * @return the copy, which writes the same format as {@link #snapshotStateForKeyGroup}.
+	 */
+	TimeServicesSnapshot<K, N> snapshotTimeServices() {
+		Map<String, HeapInternalTimerService.TimersSnapshot<K, N>> timers = new LinkedHashMap<>();
+		for (Map.Entry<String, HeapInternalTimerService<K, N>> entry : timerServices.entrySet()) {
+			timers.put(entry.getKey(), entry.getValue().snapshotTimers());
+		}
+
+		InternalWatermarkCallbackService.KeysSnapshot<K> keys =
+			watermarkCallbackService != null ? watermarkCallbackService.snapshotKeys() : null;
+
+		return new TimeServicesSnapshot<>(timers, keys);
+	}
+
 	public void restoreStateForKeyGroup(DataInputViewStreamWrapper stream, int keyGroupIdx,
 										ClassLoader userCodeClassLoader) throws IOException, ClassNotFoundException {
 
@@ -153,11 +186,7 @@ class InternalTimeServiceManager<K, N> {
 
 			HeapInternalTimerService<K, N> timerService = timerServices.get(serviceName);
 			if (timerService == null) {
-				timerService = new HeapInternalTimerService<>(
-					totalKeyGroups,
-					localKeyGroupRange,
-					keyContext,
-					processingTimeService);
+				timerService = createTimerService(serviceName);
 				timerServices.put(serviceName, timerService);
 			}
 			timerService.restoreTimersForKeyGroup(stream, keyGroupIdx, userCodeClassLoader);
@@ -193,4 +222,45 @@ class InternalTimeServiceManager<K, N> {
 	public int numKeysForWatermarkCallback() {
 		return watermarkCallbackService.numKeysForWatermarkCallback();
 	}
+
+	/**
+	 * A copy of the state of the time services, taken in the synchronous part of a checkpoint.
+	 */
+	static final class TimeServicesSnapshot<K, N> {
+
+		private final Map<String, HeapInternalTimerService.TimersSnapshot<K, N>> timers;
+
+		/** The keys of the watermark callback service, or null if there is no such service */
+		private final InternalWatermarkCallbackService.KeysSnapshot<K> keys;
+
+		TimeServicesSnapshot(
+				Map<String, HeapInternalTimerService.TimersSnapshot<K, N>> timers,
+				InternalWatermarkCallbackService.KeysSnapshot<K> keys) {
+
+			this.timers = Preconditions.checkNotNull(timers);
+			this.keys = keys;
+		}
+
+		/**
+		 * Writes the copied state of the given key-group, in the format of
+		 * {@link InternalTimeServiceManager#snapshotStateForKeyGroup}.
+		 */
+		void writeStateForKeyGroup(DataOutputViewStreamWrapper stream, int keyGroupIdx) throws Exception {
+			stream.writeInt(timers.size());
+
+			for (Map.Entry<String, HeapInternalTimerService.TimersSnapshot<K, N>> entry : timers.entrySet()) {
+				stream.writeUTF(entry.getKey());
+				entry.getValue().writeTimersForKeyGroup(stream, keyGroupIdx);
+			}
+
+			// write a byte indicating if there was a key
+			// registry service instantiated (1) or not (0).
+			if (keys != null) {
+				stream.writeByte(1);
+				keys.writeKeysForKeyGroup(stream, keyGroupIdx);
+			} else {
+				stream.writeByte(0);
+			}
+		}
+	}
 }
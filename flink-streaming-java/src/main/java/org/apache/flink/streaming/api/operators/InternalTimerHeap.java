@@ -0,0 +1,329 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.annotation.VisibleForTesting;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.runtime.state.KeyGroupsList;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * A priority queue of {@link InternalTimer InternalTimers} with set semantics, ordered by timestamp.
+ *
+ * <p>The timers are kept in an array-based binary heap. Every timer knows its index in the heap, so that
+ * a timer can be removed in O(log n) instead of the O(n) scan of {@link java.util.PriorityQueue#remove(Object)}.
+ * In addition, the timers are indexed by key-group, which de-duplicates timers, finds the stored instance
+ * of a timer that is removed, and gives access to all timers of a key-group for snapshots.
+ *
+ * <p>The heap uses 1-based indexing, i.e. the head of the queue is at index 1, and the children of the
+ * timer at index i are at the indexes 2i and 2i + 1.
+ *
+ * <p>The timers of a key-group that are handed out for a snapshot are copy-on-write: the queue keeps
+ * using the same timers of the key-group until it changes them next, and copies them only then. Taking a
+ * snapshot therefore costs O(#key-groups) instead of O(#timers), and only key-groups whose timers change
+ * while the snapshot is written are copied.
+ *
+ * @param <K> Type of the keys to which timers are scoped.
+ * @param <N> Type of the namespace to which timers are scoped.
+ */
+@Internal
+public class InternalTimerHeap<K, N> implements InternalTimerQueue<K, N> {
+
+	/** The index of the head of the queue in the heap array */
+	private static final int QUEUE_HEAD_INDEX = 1;
+
+	/** The timers of the local key-groups, by key-group, where a map maps each timer to itself */
+	private final HashMap<InternalTimer<K, N>, InternalTimer<K, N>>[] timersByKeyGroup;
+
+	/** Whether the timers of a key-group are part of a snapshot and must be copied before they are changed */
+	private final boolean[] timersSharedWithSnapshot;
+
+	/** The local key-groups */
+	private final KeyGroupsList localKeyGroupRange;
+
+	/** The total number of key-groups of the job */
+	private final int totalKeyGroups;
+
+	/** The id of the first local key-group */
+	private final int localKeyGroupRangeStartIdx;
+
+	/** The binary heap, starting at {@link #QUEUE_HEAD_INDEX} */
+	private InternalTimer<K, N>[] queue;
+
+	/** The number of timers in the heap */
+	private int size;
+
+	@SuppressWarnings("unchecked")
+	public InternalTimerHeap(int minimumCapacity, KeyGroupsList localKeyGroupRange, int totalKeyGroups) {
+		this.localKeyGroupRange = checkNotNull(localKeyGroupRange);
+		this.totalKeyGroups = totalKeyGroups;
+
+		// find the starting index of the local key-group range
+		int startIdx = Integer.MAX_VALUE;
+		for (Integer keyGroupIdx : localKeyGroupRange) {
+			startIdx = Math.min(keyGroupIdx, startIdx);
+		}
+		this.localKeyGroupRangeStartIdx = startIdx;
+
+		this.timersByKeyGroup = new HashMap[localKeyGroupRange.getNumberOfKeyGroups()];
+		this.timersSharedWithSnapshot = new boolean[localKeyGroupRange.getNumberOfKeyGroups()];
+		this.queue = new InternalTimer[QUEUE_HEAD_INDEX + minimumCapacity];
+		this.size = 0;
+	}
+
+	@Override
+	public InternalTimer<K, N> peek() {
+		return size > 0 ? queue[QUEUE_HEAD_INDEX] : null;
+	}
+
+	@Override
+	public InternalTimer<K, N> poll() {
+		if (size == 0) {
+			return null;
+		}
+
+		InternalTimer<K, N> head = queue[QUEUE_HEAD_INDEX];
+		getTimersForKeyGroupOfTimer(head).remove(head);
+		removeFromHeapAtIndex(QUEUE_HEAD_INDEX);
+		return head;
+	}
+
+	@Override
+	public boolean add(InternalTimer<K, N> timer) {
+		HashMap<InternalTimer<K, N>, InternalTimer<K, N>> timers = getTimersForKeyGroupOfTimer(timer);
+
+		if (timers.containsKey(timer)) {
+			return false;
+		}
+
+		timers.put(timer, timer);
+		addToHeap(timer);
+		return true;
+	}
+
+	@Override
+	public boolean remove(InternalTimer<K, N> timer) {
+		InternalTimer<K, N> storedTimer = getTimersForKeyGroupOfTimer(timer).remove(timer);
+
+		if (storedTimer == null) {
+			return false;
+		}
+
+		removeFromHeapAtIndex(storedTimer.getTimerHeapIndex());
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the timers of the given key-group, or {@code null} if the key-group never had timers.
+	 */
+	public Set<InternalTimer<K, N>> getTimersForKeyGroup(int keyGroupIdx) {
+		HashMap<InternalTimer<K, N>, InternalTimer<K, N>> timers = timersByKeyGroup[getIndexForKeyGroup(keyGroupIdx)];
+		return timers != null ? timers.keySet() : null;
+	}
+
+	/**
+	 * Returns the timers of the given key-group, or {@code null} if the key-group never had timers. The
+	 * returned timers are not changed by later changes to the queue, which copies them before it changes
+	 * the timers of the key-group the next time.
+	 */
+	@Override
+	public Collection<InternalTimer<K, N>> getTimersForKeyGroupSnapshot(int keyGroupIdx) {
+		int localIdx = getIndexForKeyGroup(keyGroupIdx);
+		HashMap<InternalTimer<K, N>, InternalTimer<K, N>> timers = timersByKeyGroup[localIdx];
+
+		if (timers == null) {
+			return null;
+		}
+
+		timersSharedWithSnapshot[localIdx] = true;
+		return timers.keySet();
+	}
+
+	@VisibleForTesting
+	@SuppressWarnings("unchecked")
+	Set<InternalTimer<K, N>>[] getTimersPerKeyGroup() {
+		Set<InternalTimer<K, N>>[] timersPerKeyGroup = new Set[timersByKeyGroup.length];
+
+		for (int i = 0; i < timersByKeyGroup.length; ++i) {
+			timersPerKeyGroup[i] = timersByKeyGroup[i] != null ? timersByKeyGroup[i].keySet() : null;
+		}
+
+		return timersPerKeyGroup;
+	}
+
+	/**
+	 * Returns an iterator over all timers in no particular order. The iterator does not support removal.
+	 */
+	@Override
+	public Iterator<InternalTimer<K, N>> iterator() {
+		return new Iterator<InternalTimer<K, N>>() {
+
+			private int index = QUEUE_HEAD_INDEX;
+
+			@Override
+			public boolean hasNext() {
+				return index < QUEUE_HEAD_INDEX + size;
+			}
+
+			@Override
+			public InternalTimer<K, N> next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return queue[index++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("The timer heap does not support removal through iterators.");
+			}
+		};
+	}
+
+	// ------------------------------------------------------------------------
+	//  key-groups
+	// ------------------------------------------------------------------------
+
+	private HashMap<InternalTimer<K, N>, InternalTimer<K, N>> getTimersForKeyGroupOfTimer(InternalTimer<K, N> timer) {
+		int keyGroupIdx = KeyGroupRangeAssignment.assignToKeyGroup(timer.getKey(), totalKeyGroups);
+		int localIdx = getIndexForKeyGroup(keyGroupIdx);
+
+		HashMap<InternalTimer<K, N>, InternalTimer<K, N>> timers = timersByKeyGroup[localIdx];
+		if (timers == null) {
+			timers = new HashMap<>();
+			timersByKeyGroup[localIdx] = timers;
+		} else if (timersSharedWithSnapshot[localIdx]) {
+			// the timers are about to change, leave the ones of the snapshot as they are
+			timers = new HashMap<>(timers);
+			timersByKeyGroup[localIdx] = timers;
+			timersSharedWithSnapshot[localIdx] = false;
+		}
+		return timers;
+	}
+
+	/**
+	 * Computes the index of the requested key-group in the local datastructures, assuming that
+	 * each task is assigned a continuous range of key-groups.
+	 */
+	private int getIndexForKeyGroup(int keyGroupIdx) {
+		checkArgument(localKeyGroupRange.contains(keyGroupIdx),
+			"Key Group " + keyGroupIdx + " does not belong to the local range.");
+		return keyGroupIdx - localKeyGroupRangeStartIdx;
+	}
+
+	// ------------------------------------------------------------------------
+	//  binary heap
+	// ------------------------------------------------------------------------
+
+	private void addToHeap(InternalTimer<K, N> timer) {
+		int newIndex = QUEUE_HEAD_INDEX + size;
+
+		if (newIndex >= queue.length) {
+			queue = Arrays.copyOf(queue, QUEUE_HEAD_INDEX + 2 * Math.max(size, 1));
+		}
+
+		++size;
+		moveToIndex(timer, newIndex);
+		siftUp(newIndex);
+	}
+
+	private void removeFromHeapAtIndex(int removeIndex) {
+		int lastIndex = QUEUE_HEAD_INDEX + size - 1;
+
+		InternalTimer<K, N> removed = queue[removeIndex];
+		InternalTimer<K, N> last = queue[lastIndex];
+
+		queue[lastIndex] = null;
+		--size;
+
+		if (removeIndex != lastIndex) {
+			moveToIndex(last, removeIndex);
+			siftDown(removeIndex);
+
+			// the last timer may also be smaller than the parent of the removed timer
+			if (queue[removeIndex] == last) {
+				siftUp(removeIndex);
+			}
+		}
+
+		removed.setTimerHeapIndex(InternalTimer.NOT_CONTAINED);
+	}
+
+	private void siftUp(int index) {
+		InternalTimer<K, N> timer = queue[index];
+		long timestamp = timer.getTimestamp();
+
+		int parentIndex = index >>> 1;
+		while (parentIndex >= QUEUE_HEAD_INDEX && timestamp < queue[parentIndex].getTimestamp()) {
+			moveToIndex(queue[parentIndex], index);
+			index = parentIndex;
+			parentIndex = index >>> 1;
+		}
+
+		moveToIndex(timer, index);
+	}
+
+	private void siftDown(int index) {
+		InternalTimer<K, N> timer = queue[index];
+		long timestamp = timer.getTimestamp();
+		int lastIndex = QUEUE_HEAD_INDEX + size - 1;
+
+		int childIndex = index << 1;
+		while (childIndex <= lastIndex) {
+			// pick the smaller of the two children
+			if (childIndex < lastIndex && queue[childIndex + 1].getTimestamp() < queue[childIndex].getTimestamp()) {
+				++childIndex;
+			}
+
+			if (timestamp <= queue[childIndex].getTimestamp()) {
+				break;
+			}
+
+			moveToIndex(queue[childIndex], index);
+			index = childIndex;
+			childIndex = index << 1;
+		}
+
+		moveToIndex(timer, index);
+	}
+
+	private void moveToIndex(InternalTimer<K, N> timer, int index) {
+		queue[index] = timer;
+		timer.setTimerHeapIndex(index);
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+
+import java.util.Collection;
+
+/**
+ * A priority queue of {@link InternalTimer InternalTimers} with set semantics, ordered by timestamp,
+ * in which the {@link HeapInternalTimerService} keeps its processing time and event time timers.
+ *
+ * <p>The timers of a queue are scoped to the local key-groups of the operator.
+ *
+ * @param <K> Type of the keys to which timers are scoped.
+ * @param <N> Type of the namespace to which timers are scoped.
+ */
+@Internal
+public interface InternalTimerQueue<K, N> extends Iterable<InternalTimer<K, N>> {
+
+	/**
+	 * Returns the timer with the smallest timestamp, or {@code null} if the queue is empty.
+	 */
+	InternalTimer<K, N> peek();
+
+	/**
+	 * Removes and returns the timer with the smallest timestamp, or {@code null} if the queue is empty.
+	 */
+	InternalTimer<K, N> poll();
+
+	/**
+	 * Adds the timer, unless an equal timer is already in the queue.
+	 *
+	 * @return true if the timer was added, false if an equal timer was already in the queue. Queues that
+	 *         cannot cheaply tell whether an equal timer exists may also return true for duplicates.
+	 */
+	boolean add(InternalTimer<K, N> timer);
+
+	/**
+	 * Removes the timer that is equal to the given timer, if any.
+	 *
+	 * @return true if a timer was removed, false if no equal timer was in the queue. Queues that
+	 *         cannot cheaply tell whether an equal timer exists may always return true.
+	 */
+	boolean remove(InternalTimer<K, N> timer);
+
+	/**
+	 * Returns the number of timers in the queue. Depending on the queue, this may require a scan
+	 * over all timers.
+	 */
+	int size();
+
+	/**
+	 * Returns the timers of the given key-group that are written to the snapshot of the timer service,
+	 * or {@code null} if there are none. Queues whose timers are already part of the snapshot of the
+	 * keyed state backend always return {@code null}.
+	 *
+	 * <p>The returned timers must not be changed by later changes to the queue, because they may be
+	 * written in the asynchronous part of a checkpoint.
+	 */
+	Collection<InternalTimer<K, N>> getTimersForKeyGroupSnapshot(int keyGroupIdx);
+}
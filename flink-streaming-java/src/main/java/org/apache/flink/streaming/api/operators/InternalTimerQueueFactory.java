@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+
+/**
+ * Factory for the {@link InternalTimerQueue InternalTimerQueues} of the timer services of an operator.
+ * A keyed state backend can implement this interface to keep the timers of the operator in the
+ * backend, instead of on the Java heap.
+ *
+ * @param <K> Type of the keys to which timers are scoped.
+ */
+@Internal
+public interface InternalTimerQueueFactory<K> {
+
+	/**
+	 * Creates the timer queue with the given name.
+	 *
+	 * @param name The unique name of the queue within the operator.
+	 * @param namespaceSerializer The serializer for the namespaces of the timers.
+	 * @param <N> Type of the namespace to which timers are scoped.
+	 *
+	 * @return The timer queue, or {@code null} if the timers should be kept on the Java heap.
+	 */
+	<N> InternalTimerQueue<K, N> createTimerQueue(String name, TypeSerializer<N> namespaceSerializer);
+}
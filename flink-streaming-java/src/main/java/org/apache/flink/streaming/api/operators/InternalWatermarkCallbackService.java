@@ -29,7 +29,12 @@ import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.util.InstantiationUtil;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import static org.apache.flink.util.Preconditions.checkArgument;
@@ -244,12 +249,40 @@ public class InternalWatermarkCallbackService<K> {
 		// we cleanup also here to avoid checkpointing the deletion set
 		cleanupRegisteredKeys();
 
-		Set<K> keySet = getRegisteredKeysForKeyGroup(keyGroupIdx);
-		if (keySet != null) {
-			stream.writeInt(keySet.size());
+		writeKeys(stream, keySerializer, getRegisteredKeysForKeyGroup(keyGroupIdx));
+	}
+
+	/**
+	 * Copies the registered keys of all local key-groups, so that they can be written in the asynchronous
+	 * part of a checkpoint while keys are registered and unregistered.
+	 *
+	 * @return the copy of the keys, which writes the same format as {@link #snapshotKeysForKeyGroup}.
+	 */
+	KeysSnapshot<K> snapshotKeys() {
+
+		// we cleanup also here to avoid checkpointing the deletion set
+		cleanupRegisteredKeys();
+
+		Map<Integer, Collection<K>> keys = new HashMap<>();
+		for (int keyGroupIdx : localKeyGroupRange) {
+			Set<K> keySet = registeredKeysByKeyGroup[getIndexForKeyGroup(keyGroupIdx)];
+			keys.put(keyGroupIdx, keySet != null ? new ArrayList<>(keySet) : Collections.<K>emptyList());
+		}
+
+		// the serializer is used concurrently to the task thread
+		return new KeysSnapshot<>(keySerializer != null ? keySerializer.duplicate() : null, keys);
+	}
+
+	private static <K> void writeKeys(
+			DataOutputViewStreamWrapper stream,
+			TypeSerializer<K> keySerializer,
+			Collection<K> keys) throws Exception {
+
+		if (keys != null) {
+			stream.writeInt(keys.size());
 
 			InstantiationUtil.serializeObject(stream, keySerializer);
-			for (K key : keySet) {
+			for (K key : keys) {
 				keySerializer.serialize(key, stream);
 			}
 		} else {
@@ -294,4 +327,31 @@ public class InternalWatermarkCallbackService<K> {
 		}
 		return count;
 	}
+
+	/**
+	 * A copy of the registered keys of an {@link InternalWatermarkCallbackService}, taken in the synchronous
+	 * part of a checkpoint.
+	 */
+	static final class KeysSnapshot<K> {
+
+		private final TypeSerializer<K> keySerializer;
+
+		private final Map<Integer, Collection<K>> keys;
+
+		KeysSnapshot(TypeSerializer<K> keySerializer, Map<Integer, Collection<K>> keys) {
+			this.keySerializer = keySerializer;
+			this.keys = checkNotNull(keys);
+		}
+
+		/**
+		 * Writes the copied keys of the given key-group, in the format of
+		 * {@link InternalWatermarkCallbackService#snapshotKeysForKeyGroup}.
+		 */
+		void writeKeysForKeyGroup(DataOutputViewStreamWrapper stream, int keyGroupIdx) throws Exception {
+			checkArgument(keys.containsKey(keyGroupIdx),
+				"Key Group " + keyGroupIdx + " does not belong to the local range.");
+
+			writeKeys(stream, keySerializer, keys.get(keyGroupIdx));
+		}
+	}
 }
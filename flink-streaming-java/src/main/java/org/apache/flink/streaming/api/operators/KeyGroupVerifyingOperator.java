@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.util.Preconditions;
+
+/**
+ * An operator that forwards all elements and checks that every element arrives at the parallel
+ * subtask which {@link KeyGroupRangeAssignment} assigns to its key. It verifies streams that are
+ * reinterpreted as keyed streams without being partitioned by {@code keyBy()}.
+ *
+ * <p>The operator is inserted in front of the forward connection to the keyed operator and runs
+ * with the same parallelism. The keyed operator may have a different maximum parallelism, which
+ * is therefore handed to the verifier with {@link #setMaxParallelism(int)} when the stream graph
+ * is generated. Without it, the verifier uses its own maximum parallelism.
+ *
+ * @param <T> The type of the elements.
+ * @param <KEY> The type of the key.
+ */
+@Internal
+public class KeyGroupVerifyingOperator<T, KEY> extends AbstractStreamOperator<T>
+		implements OneInputStreamOperator<T, T> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final KeySelector<T, KEY> keySelector;
+
+	/** The maximum parallelism of the keyed operator, or -1 to use the one of this operator */
+	private int maxParallelism = -1;
+
+	public KeyGroupVerifyingOperator(KeySelector<T, KEY> keySelector) {
+		this.keySelector = Preconditions.checkNotNull(keySelector);
+
+		chainingStrategy = ChainingStrategy.ALWAYS;
+	}
+
+	/**
+	 * Sets the maximum parallelism of the keyed operator that consumes the verified stream.
+	 */
+	public void setMaxParallelism(int maxParallelism) {
+		Preconditions.checkArgument(maxParallelism > 0, "The maximum parallelism must be positive.");
+		this.maxParallelism = maxParallelism;
+	}
+
+	public int getMaxParallelism() {
+		return maxParallelism;
+	}
+
+	@Override
+	public void processElement(StreamRecord<T> element) throws Exception {
+		KEY key = keySelector.getKey(element.getValue());
+
+		int subtaskIndex = getRuntimeContext().getIndexOfThisSubtask();
+		int expectedSubtaskIndex = KeyGroupRangeAssignment.assignKeyToParallelOperator(
+				key,
+				maxParallelism > 0 ? maxParallelism : getRuntimeContext().getMaxNumberOfParallelSubtasks(),
+				getRuntimeContext().getNumberOfParallelSubtasks());
+
+		if (subtaskIndex != expectedSubtaskIndex) {
+			throw new IllegalStateException("The key " + key + " belongs to subtask " + expectedSubtaskIndex +
+					" but arrived at subtask " + subtaskIndex + ". The stream is not partitioned consistently " +
+					"with the key group assignment and cannot be reinterpreted as a keyed stream.");
+		}
+
+		output.collect(element);
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.api.java.tuple.Tuple2;
+import org.apache.flink.runtime.state.StateInitializationContext;
+import org.apache.flink.runtime.state.StateSnapshotContext;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
+import org.apache.flink.streaming.runtime.streamrecord.StreamElementSerializer;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.runtime.tasks.ProcessingTimeCallback;
+import org.apache.flink.util.Preconditions;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An operator that combines the elements with the same key locally, before they are partitioned
+ * by key. It is the streaming counterpart of the combiner of a batch reduce: a few hot keys are
+ * reduced to a few partial aggregates per flush, so that they do not overload a single subtask
+ * of the keyed operator that computes the final aggregates.
+ *
+ * <p>The operator buffers one partial aggregate per key and timestamp and emits all of them when
+ * <ul>
+ *     <li>the number of partial aggregates reaches {@code maxBufferedKeys},</li>
+ *     <li>{@code maxBufferTime} milliseconds of processing time have passed since the first element
+ *     was buffered,</li>
+ *     <li>a watermark arrives, so that no partial aggregate becomes late downstream, or</li>
+ *     <li>the operator is closed.</li>
+ * </ul>
+ *
+ * <p>Because the checkpoint barrier is forwarded before the operator state is snapshotted, the
+ * buffered partial aggregates are not flushed on checkpoints but stored in the operator state.
+ *
+ * <p>Only elements with the same timestamp are combined, so a partial aggregate has the timestamp
+ * of all elements that were combined into it. Downstream event time operations, like windows,
+ * therefore assign a partial aggregate exactly like each of its elements. Elements without a
+ * timestamp are combined per key.
+ *
+ * @param <IN> The type of the elements.
+ * @param <KEY> The type of the key.
+ */
+@Internal
+public class StreamLocalGroupedReduce<IN, KEY> extends AbstractUdfStreamOperator<IN, ReduceFunction<IN>>
+		implements OneInputStreamOperator<IN, IN> {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String STATE_NAME = "_local_reduce_buffer_";
+
+	private final KeySelector<IN, KEY> keySelector;
+
+	private final TypeSerializer<IN> serializer;
+
+	/** Number of buffered partial aggregates at which the buffer is flushed */
+	private final int maxBufferedKeys;
+
+	/** Processing time in milliseconds after which a non-empty buffer is flushed */
+	private final long maxBufferTime;
+
+	/** The partial aggregates by key and timestamp, in the order in which they were started */
+	private transient Map<Tuple2<KEY, Long>, StreamRecord<IN>> buffer;
+
+	/** Number of the current buffer, used to ignore the timers of buffers that were already flushed */
+	private transient long currentBuffer;
+
+	/** Whether the partial aggregates must be copied because the input objects are reused */
+	private transient boolean copyValues;
+
+	private transient ListState<StreamElement> checkpointedBuffer;
+
+	public StreamLocalGroupedReduce(
+			ReduceFunction<IN> reducer,
+			KeySelector<IN, KEY> keySelector,
+			TypeSerializer<IN> serializer,
+			int maxBufferedKeys,
+			long maxBufferTime) {
+		super(reducer);
+
+		Preconditions.checkArgument(maxBufferedKeys > 0, "The maximum number of buffered keys must be positive.");
+		Preconditions.checkArgument(maxBufferTime > 0L, "The maximum buffer time must be positive.");
+
+		this.keySelector = Preconditions.checkNotNull(keySelector);
+		this.serializer = Preconditions.checkNotNull(serializer);
+		this.maxBufferedKeys = maxBufferedKeys;
+		this.maxBufferTime = maxBufferTime;
+
+		chainingStrategy = ChainingStrategy.ALWAYS;
+	}
+
+	@Override
+	public void initializeState(StateInitializationContext context) throws Exception {
+		super.initializeState(context);
+
+		buffer = new LinkedHashMap<>();
+		copyValues = getExecutionConfig().isObjectReuseEnabled();
+
+		checkpointedBuffer = context.getOperatorStateStore().getOperatorState(
+				new ListStateDescriptor<>(STATE_NAME, new StreamElementSerializer<>(serializer)));
+
+		if (context.isRestored()) {
+			// partial aggregates of the same key may come from different subtasks after rescaling
+			for (StreamElement element : checkpointedBuffer.get()) {
+				addToBuffer(element.<IN>asRecord());
+			}
+		}
+	}
+
+	@Override
+	public void open() throws Exception {
+		super.open();
+
+		if (!buffer.isEmpty()) {
+			registerFlushTimer();
+		}
+	}
+
+	@Override
+	public void processElement(StreamRecord<IN> element) throws Exception {
+		boolean wasEmpty = buffer.isEmpty();
+
+		addToBuffer(element);
+
+		if (buffer.size() >= maxBufferedKeys) {
+			flush();
+		} else if (wasEmpty) {
+			registerFlushTimer();
+		}
+	}
+
+	@Override
+	public void processWatermark(Watermark mark) throws Exception {
+		flush();
+		super.processWatermark(mark);
+	}
+
+	@Override
+	public void snapshotState(StateSnapshotContext context) throws Exception {
+		super.snapshotState(context);
+
+		checkpointedBuffer.clear();
+		for (StreamRecord<IN> partialAggregate : buffer.values()) {
+			checkpointedBuffer.add(partialAggregate);
+		}
+	}
+
+	@Override
+	public void close() throws Exception {
+		flush();
+		super.close();
+	}
+
+	private void addToBuffer(StreamRecord<IN> element) throws Exception {
+		IN value = element.getValue();
+		Long timestamp = element.hasTimestamp() ? element.getTimestamp() : null;
+		Tuple2<KEY, Long> bufferKey = new Tuple2<>(keySelector.getKey(value), timestamp);
+
+		StreamRecord<IN> partialAggregate = buffer.get(bufferKey);
+
+		if (partialAggregate == null) {
+			if (copyValues) {
+				// the key may refer to the reused input object, so it is taken from the copy
+				value = serializer.copy(value);
+				bufferKey = new Tuple2<>(keySelector.getKey(value), timestamp);
+			}
+			buffer.put(bufferKey, element.copy(value));
+		} else {
+			IN reduced = userFunction.reduce(partialAggregate.getValue(), value);
+			if (copyValues) {
+				reduced = serializer.copy(reduced);
+			}
+
+			partialAggregate.replace(reduced);
+		}
+	}
+
+	private void registerFlushTimer() {
+		final long flushedBuffer = currentBuffer;
+
+		getProcessingTimeService().registerTimer(
+				getProcessingTimeService().getCurrentProcessingTime() + maxBufferTime,
+				new ProcessingTimeCallback() {
+					@Override
+					public void onProcessingTime(long timestamp) throws Exception {
+						if (flushedBuffer == currentBuffer) {
+							flush();
+						}
+					}
+				});
+	}
+
+	private void flush() {
+		if (buffer.isEmpty()) {
+			return;
+		}
+
+		for (StreamRecord<IN> partialAggregate : buffer.values()) {
+			output.collect(partialAggregate);
+		}
+
+		buffer.clear();
+		++currentBuffer;
+	}
+}
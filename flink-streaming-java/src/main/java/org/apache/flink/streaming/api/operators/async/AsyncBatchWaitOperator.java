@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators.async;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.streaming.api.datastream.AsyncDataStream;
+import org.apache.flink.streaming.api.functions.async.AsyncBatchFunction;
+import org.apache.flink.streaming.api.functions.async.collector.AsyncCollector;
+import org.apache.flink.streaming.api.graph.StreamConfig;
+import org.apache.flink.streaming.api.operators.Output;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.runtime.tasks.ProcessingTimeCallback;
+import org.apache.flink.streaming.runtime.tasks.StreamTask;
+import org.apache.flink.util.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link AsyncBatchWaitOperator} asynchronously processes incoming stream records in batches.
+ * It collects the inputs until either {@code maxBatchSize} inputs are buffered or
+ * {@code maxBatchDelay} milliseconds have passed since the first input of the batch arrived, and
+ * then calls the {@link AsyncBatchFunction} once for the whole batch.
+ *
+ * <p>Every input is added to the operator's stream element queue when it arrives, with its own
+ * {@link AsyncCollector}. The batch function completes these collectors, so the results are
+ * demultiplexed by the queue in the same way as for the {@link AsyncWaitOperator}. Since the
+ * buffered inputs are already part of the queue, they are also part of the operator's snapshots.
+ * A batch is flushed early when a watermark arrives, when the queue is full and when the operator
+ * is closed, so that the operator never waits for entries whose async operation has not been started.
+ *
+ * <p>Note that the timeout of an input includes the time that the input waits for its batch.
+ *
+ * @param <IN> Input type for the operator.
+ * @param <OUT> Output type for the operator.
+ */
+@Internal
+public class AsyncBatchWaitOperator<IN, OUT> extends AbstractAsyncWaitOperator<IN, OUT, AsyncBatchFunction<IN, OUT>> {
+	private static final long serialVersionUID = 1L;
+
+	/** Maximum number of inputs in one batch */
+	private final int maxBatchSize;
+
+	/** Maximum time in milliseconds that the first input of a batch waits for the batch to be flushed */
+	private final long maxBatchDelay;
+
+	/** Inputs of the current batch */
+	private transient List<IN> bufferedInputs;
+
+	/** Collectors of the current batch, at the same positions as their inputs */
+	private transient List<AsyncCollector<OUT>> bufferedCollectors;
+
+	/** Number of the current batch, used to ignore the delay timers of batches that were already flushed */
+	private transient long currentBatch;
+
+	public AsyncBatchWaitOperator(
+			AsyncBatchFunction<IN, OUT> asyncBatchFunction,
+			long timeout,
+			int capacity,
+			AsyncDataStream.OutputMode outputMode,
+			int maxBatchSize,
+			long maxBatchDelay) {
+		super(asyncBatchFunction, timeout, capacity, outputMode);
+
+		Preconditions.checkArgument(maxBatchSize > 0, "The maximum batch size should be greater than 0.");
+		Preconditions.checkArgument(maxBatchDelay > 0L, "The maximum batch delay should be greater than 0.");
+
+		this.maxBatchSize = maxBatchSize;
+		this.maxBatchDelay = maxBatchDelay;
+	}
+
+	@Override
+	public void setup(StreamTask<?, ?> containingTask, StreamConfig config, Output<StreamRecord<OUT>> output) {
+		super.setup(containingTask, config, output);
+
+		// the buffers must exist before the operator is opened, because open replays the recovered elements
+		this.bufferedInputs = new ArrayList<>(maxBatchSize);
+		this.bufferedCollectors = new ArrayList<>(maxBatchSize);
+	}
+
+	@Override
+	protected void invoke(IN input, AsyncCollector<OUT> collector) throws Exception {
+		bufferedInputs.add(input);
+		bufferedCollectors.add(collector);
+
+		if (bufferedInputs.size() >= maxBatchSize) {
+			flush();
+		} else if (bufferedInputs.size() == 1) {
+			final long batch = currentBatch;
+
+			getProcessingTimeService().registerTimer(
+				getProcessingTimeService().getCurrentProcessingTime() + maxBatchDelay,
+				new ProcessingTimeCallback() {
+					@Override
+					public void onProcessingTime(long timestamp) throws Exception {
+						if (batch == currentBatch) {
+							flush();
+						}
+					}
+				});
+		}
+	}
+
+	@Override
+	protected void flush() throws Exception {
+		if (bufferedInputs.isEmpty()) {
+			return;
+		}
+
+		List<IN> inputs = bufferedInputs;
+		List<AsyncCollector<OUT>> collectors = bufferedCollectors;
+
+		bufferedInputs = new ArrayList<>(maxBatchSize);
+		bufferedCollectors = new ArrayList<>(maxBatchSize);
+		++currentBatch;
+
+		userFunction.asyncInvokeBatch(inputs, collectors);
+	}
+}
@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators.co;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.api.common.typeutils.base.ListSerializer;
+import org.apache.flink.api.common.typeutils.base.LongSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.streaming.api.functions.co.ProcessJoinFunction;
+import org.apache.flink.streaming.api.operators.AbstractUdfStreamOperator;
+import org.apache.flink.streaming.api.operators.InternalTimer;
+import org.apache.flink.streaming.api.operators.InternalTimerService;
+import org.apache.flink.streaming.api.operators.TimestampedCollector;
+import org.apache.flink.streaming.api.operators.Triggerable;
+import org.apache.flink.streaming.api.operators.TwoInputStreamOperator;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * An operator that joins the elements of two keyed streams whose timestamps lie within a time
+ * interval relative to each other. An element {@code left} of the first input is joined with an
+ * element {@code right} of the second input with the same key, if
+ *
+ * <pre>{@code
+ *   left.timestamp + lowerBound <= right.timestamp <= left.timestamp + upperBound
+ * }</pre>
+ *
+ * <p>Both inputs are buffered in {@link MapState}, indexed by timestamp. Every arriving element is
+ * joined right away with the buffered elements of the other input, so matches are emitted as soon
+ * as both elements have arrived. An element is removed from the buffer by an event-time timer, once
+ * the watermark guarantees that no more elements of the other input can join with it. Elements whose
+ * timestamps are not larger than the current watermark are late and dropped.
+ *
+ * @param <K> The type of the key of both inputs
+ * @param <T1> The type of the elements of the first input
+ * @param <T2> The type of the elements of the second input
+ * @param <OUT> The type of the joined elements
+ */
+@Internal
+public class IntervalJoinOperator<K, T1, T2, OUT>
+		extends AbstractUdfStreamOperator<OUT, ProcessJoinFunction<T1, T2, OUT>>
+		implements TwoInputStreamOperator<T1, T2, OUT>, Triggerable<K, String> {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String LEFT_BUFFER = "LEFT_BUFFER";
+	private static final String RIGHT_BUFFER = "RIGHT_BUFFER";
+	private static final String CLEANUP_TIMER_NAME = "CLEANUP_TIMER";
+	private static final String CLEANUP_NAMESPACE_LEFT = "CLEANUP_LEFT";
+	private static final String CLEANUP_NAMESPACE_RIGHT = "CLEANUP_RIGHT";
+
+	/** The inclusive lower bound of the timestamp of the right element, relative to the left one */
+	private final long lowerBound;
+
+	/** The inclusive upper bound of the timestamp of the right element, relative to the left one */
+	private final long upperBound;
+
+	private final TypeSerializer<T1> leftTypeSerializer;
+
+	private final TypeSerializer<T2> rightTypeSerializer;
+
+	private transient MapState<Long, List<T1>> leftBuffer;
+
+	private transient MapState<Long, List<T2>> rightBuffer;
+
+	private transient TimestampedCollector<OUT> collector;
+
+	private transient ContextImpl context;
+
+	private transient InternalTimerService<String> internalTimerService;
+
+	/**
+	 * Creates a new IntervalJoinOperator.
+	 *
+	 * @param lowerBound The lower bound of the timestamp of the right element, relative to the left one
+	 * @param upperBound The upper bound of the timestamp of the right element, relative to the left one
+	 * @param lowerBoundInclusive Whether the lower bound is inclusive
+	 * @param upperBoundInclusive Whether the upper bound is inclusive
+	 * @param leftTypeSerializer The serializer of the elements of the first input
+	 * @param rightTypeSerializer The serializer of the elements of the second input
+	 * @param udf The function that is called for every joined pair of elements
+	 */
+	public IntervalJoinOperator(
+			long lowerBound,
+			long upperBound,
+			boolean lowerBoundInclusive,
+			boolean upperBoundInclusive,
+			TypeSerializer<T1> leftTypeSerializer,
+			TypeSerializer<T2> rightTypeSerializer,
+			ProcessJoinFunction<T1, T2, OUT> udf) {
+
+		super(checkNotNull(udf));
+
+		checkArgument(lowerBound <= upperBound,
+			"The lower bound of the interval join must not be larger than the upper bound.");
+
+		this.lowerBound = lowerBoundInclusive ? lowerBound : lowerBound + 1L;
+		this.upperBound = upperBoundInclusive ? upperBound : upperBound - 1L;
+
+		checkArgument(this.lowerBound <= this.upperBound,
+			"The interval of the interval join must not be empty.");
+
+		this.leftTypeSerializer = checkNotNull(leftTypeSerializer);
+		this.rightTypeSerializer = checkNotNull(rightTypeSerializer);
+	}
+
+	@Override
+	public void open() throws Exception {
+		super.open();
+
+		collector = new TimestampedCollector<>(output);
+		context = new ContextImpl(userFunction);
+
+		internalTimerService = getInternalTimerService(CLEANUP_TIMER_NAME, StringSerializer.INSTANCE, this);
+
+		leftBuffer = getPartitionedState(new MapStateDescriptor<>(
+			LEFT_BUFFER,
+			LongSerializer.INSTANCE,
+			new ListSerializer<>(leftTypeSerializer)));
+
+		rightBuffer = getPartitionedState(new MapStateDescriptor<>(
+			RIGHT_BUFFER,
+			LongSerializer.INSTANCE,
+			new ListSerializer<>(rightTypeSerializer)));
+	}
+
+	/**
+	 * Buffers the element of the first input and joins it with the buffered elements of the
+	 * second input whose timestamps lie within the bounds.
+	 */
+	@Override
+	public void processElement1(StreamRecord<T1> record) throws Exception {
+		final T1 value = record.getValue();
+		final long timestamp = getTimestamp(record);
+
+		if (isLate(timestamp)) {
+			return;
+		}
+
+		addToBuffer(leftBuffer, value, timestamp);
+
+		// the entries are null if nothing has been buffered for the current key yet
+		Iterable<Map.Entry<Long, List<T2>>> rightBuckets = rightBuffer.entries();
+		if (rightBuckets != null) {
+			for (Map.Entry<Long, List<T2>> bucket : rightBuckets) {
+				final long rightTimestamp = bucket.getKey();
+				if (rightTimestamp < timestamp + lowerBound || rightTimestamp > timestamp + upperBound) {
+					continue;
+				}
+
+				for (T2 rightValue : bucket.getValue()) {
+					collect(value, rightValue, timestamp, rightTimestamp);
+				}
+			}
+		}
+
+		// no element of the second input can join with this element once the watermark passed the upper bound
+		long cleanupTime = (upperBound > 0L) ? timestamp + upperBound : timestamp;
+		internalTimerService.registerEventTimeTimer(CLEANUP_NAMESPACE_LEFT, cleanupTime);
+	}
+
+	/**
+	 * Buffers the element of the second input and joins it with the buffered elements of the
+	 * first input whose timestamps lie within the bounds.
+	 */
+	@Override
+	public void processElement2(StreamRecord<T2> record) throws Exception {
+		final T2 value = record.getValue();
+		final long timestamp = getTimestamp(record);
+
+		if (isLate(timestamp)) {
+			return;
+		}
+
+		addToBuffer(rightBuffer, value, timestamp);
+
+		// the entries are null if nothing has been buffered for the current key yet
+		Iterable<Map.Entry<Long, List<T1>>> leftBuckets = leftBuffer.entries();
+		if (leftBuckets != null) {
+			for (Map.Entry<Long, List<T1>> bucket : leftBuckets) {
+				final long leftTimestamp = bucket.getKey();
+				if (leftTimestamp < timestamp - upperBound || leftTimestamp > timestamp - lowerBound) {
+					continue;
+				}
+
+				for (T1 leftValue : bucket.getValue()) {
+					collect(leftValue, value, leftTimestamp, timestamp);
+				}
+			}
+		}
+
+		// no element of the first input can join with this element once the watermark passed the lower bound
+		long cleanupTime = (lowerBound < 0L) ? timestamp - lowerBound : timestamp;
+		internalTimerService.registerEventTimeTimer(CLEANUP_NAMESPACE_RIGHT, cleanupTime);
+	}
+
+	@Override
+	public void onEventTime(InternalTimer<K, String> timer) throws Exception {
+		long timerTimestamp = timer.getTimestamp();
+		String namespace = timer.getNamespace();
+
+		if (CLEANUP_NAMESPACE_LEFT.equals(namespace)) {
+			long timestamp = (upperBound > 0L) ? timerTimestamp - upperBound : timerTimestamp;
+			leftBuffer.remove(timestamp);
+		} else if (CLEANUP_NAMESPACE_RIGHT.equals(namespace)) {
+			long timestamp = (lowerBound < 0L) ? timerTimestamp + lowerBound : timerTimestamp;
+			rightBuffer.remove(timestamp);
+		} else {
+			throw new RuntimeException("Invalid namespace " + namespace + " of the cleanup timer.");
+		}
+	}
+
+	@Override
+	public void onProcessingTime(InternalTimer<K, String> timer) throws Exception {
+		throw new UnsupportedOperationException("Interval joins are only supported in event time.");
+	}
+
+	private boolean isLate(long timestamp) {
+		// after a watermark, no more elements with smaller or equal timestamps are expected
+		return timestamp <= internalTimerService.currentWatermark();
+	}
+
+	private void collect(T1 left, T2 right, long leftTimestamp, long rightTimestamp) throws Exception {
+		final long resultTimestamp = Math.max(leftTimestamp, rightTimestamp);
+
+		collector.setAbsoluteTimestamp(resultTimestamp);
+		context.leftTimestamp = leftTimestamp;
+		context.rightTimestamp = rightTimestamp;
+		context.resultTimestamp = resultTimestamp;
+
+		userFunction.processElement(left, right, context, collector);
+	}
+
+	private static <T> void addToBuffer(MapState<Long, List<T>> buffer, T value, long timestamp) throws Exception {
+		List<T> elementsWithSameTimestamp = buffer.get(timestamp);
+		if (elementsWithSameTimestamp == null) {
+			elementsWithSameTimestamp = new ArrayList<>();
+		}
+		elementsWithSameTimestamp.add(value);
+		buffer.put(timestamp, elementsWithSameTimestamp);
+	}
+
+	private static long getTimestamp(StreamRecord<?> record) {
+		if (!record.hasTimestamp()) {
+			throw new RuntimeException("Record has no timestamp. Elements of interval joins need " +
+				"meaningful timestamps. Is the time characteristic set to 'EventTime', or did you " +
+				"forget to call 'DataStream.assignTimestampsAndWatermarks(...)'?");
+		}
+		return record.getTimestamp();
+	}
+
+	/**
+	 * The context that is given to the {@link ProcessJoinFunction} for every joined pair.
+	 */
+	private final class ContextImpl extends ProcessJoinFunction<T1, T2, OUT>.Context {
+
+		private long leftTimestamp = Long.MIN_VALUE;
+
+		private long rightTimestamp = Long.MIN_VALUE;
+
+		private long resultTimestamp = Long.MIN_VALUE;
+
+		ContextImpl(ProcessJoinFunction<T1, T2, OUT> function) {
+			function.super();
+		}
+
+		@Override
+		public long getLeftTimestamp() {
+			return leftTimestamp;
+		}
+
+		@Override
+		public long getRightTimestamp() {
+			return rightTimestamp;
+		}
+
+		@Override
+		public long getTimestamp() {
+			return resultTimestamp;
+		}
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.flink.streaming.api.operators.co;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.state.BroadcastState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.ReadOnlyBroadcastState;
+import org.apache.flink.runtime.state.OperatorStateBackend;
+import org.apache.flink.runtime.state.VoidNamespace;
+import org.apache.flink.runtime.state.VoidNamespaceSerializer;
+import org.apache.flink.streaming.api.SimpleTimerService;
+import org.apache.flink.streaming.api.TimeDomain;
+import org.apache.flink.streaming.api.TimerService;
+import org.apache.flink.streaming.api.functions.co.KeyedBroadcastProcessFunction;
+import org.apache.flink.streaming.api.operators.AbstractUdfStreamOperator;
+import org.apache.flink.streaming.api.operators.InternalTimer;
+import org.apache.flink.streaming.api.operators.InternalTimerService;
+import org.apache.flink.streaming.api.operators.TimestampedCollector;
+import org.apache.flink.streaming.api.operators.Triggerable;
+import org.apache.flink.streaming.api.operators.TwoInputStreamOperator;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.runtime.tasks.ProcessingTimeService;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * A {@link TwoInputStreamOperator} for executing {@link KeyedBroadcastProcessFunction KeyedBroadcastProcessFunctions}.
+ * The first input is a keyed stream, the second input is a broadcast stream whose elements are
+ * stored in the {@link BroadcastState broadcast state} of the operator.
+ *
+ * @param <K> The key type of the first input.
+ * @param <IN1> The type of the elements of the keyed input.
+ * @param <IN2> The type of the elements of the broadcast input.
+ * @param <OUT> The output type of the operator.
+ */
+@Internal
+public class KeyedBroadcastProcessOperator<K, IN1, IN2, OUT>
+		extends AbstractUdfStreamOperator<OUT, KeyedBroadcastProcessFunction<IN1, IN2, OUT>>
+		implements TwoInputStreamOperator<IN1, IN2, OUT>, Triggerable<K, VoidNamespace> {
+
+	private static final long serialVersionUID = 1L;
+
+	private transient TimestampedCollector<OUT> collector;
+
+	private transient ContextImpl<IN1, IN2, OUT> context;
+
+	private transient ReadOnlyContextImpl<IN1, IN2, OUT> readOnlyContext;
+
+	private transient OnTimerContextImpl<IN1, IN2, OUT> onTimerContext;
+
+	public KeyedBroadcastProcessOperator(KeyedBroadcastProcessFunction<IN1, IN2, OUT> function) {
+		super(function);
+	}
+
+	@Override
+	public void open() throws Exception {
+		super.open();
+		collector = new TimestampedCollector<>(output);
+
+		InternalTimerService<VoidNamespace> internalTimerService =
+				getInternalTimerService("user-timers", VoidNamespaceSerializer.INSTANCE, this);
+
+		TimerService timerService = new SimpleTimerService(internalTimerService);
+
+		context = new ContextImpl<>(
+				userFunction, getOperatorStateBackend(), getProcessingTimeService(), internalTimerService);
+		readOnlyContext = new ReadOnlyContextImpl<>(
+				userFunction, getOperatorStateBackend(), getProcessingTimeService(), internalTimerService, timerService);
+		onTimerContext = new OnTimerContextImpl<>(
+				userFunction, getOperatorStateBackend(), getProcessingTimeService(), internalTimerService, timerService);
+	}
+
+	@Override
+	public void processElement1(StreamRecord<IN1> element) throws Exception {
+		collector.setTimestamp(element);
+		readOnlyContext.element = element;
+		userFunction.processElement(element.getValue(), readOnlyContext, collector);
+		readOnlyContext.element = null;
+	}
+
+	@Override
+	public void processElement2(StreamRecord<IN2> element) throws Exception {
+		collector.setTimestamp(element);
+		context.element = element;
+		userFunction.processBroadcastElement(element.getValue(), context, collector);
+		context.element = null;
+	}
+
+	@Override
+	public void onEventTime(InternalTimer<K, VoidNamespace> timer) throws Exception {
+		collector.setAbsoluteTimestamp(timer.getTimestamp());
+		onTimerContext.timeDomain = TimeDomain.EVENT_TIME;
+		onTimerContext.timer = timer;
+		userFunction.onTimer(timer.getTimestamp(), onTimerContext, collector);
+		onTimerContext.timeDomain = null;
+		onTimerContext.timer = null;
+	}
+
+	@Override
+	public void onProcessingTime(InternalTimer<K, VoidNamespace> timer) throws Exception {
+		collector.setAbsoluteTimestamp(timer.getTimestamp());
+		onTimerContext.timeDomain = TimeDomain.PROCESSING_TIME;
+		onTimerContext.timer = timer;
+		userFunction.onTimer(timer.getTimestamp(), onTimerContext, collector);
+		onTimerContext.timeDomain = null;
+		onTimerContext.timer = null;
+	}
+
+	private static class ContextImpl<IN1, IN2, OUT>
+			extends KeyedBroadcastProcessFunction<IN1, IN2, OUT>.Context {
+
+		private final OperatorStateBackend operatorStateBackend;
+
+		private final ProcessingTimeService processingTimeService;
+
+		private final InternalTimerService<VoidNamespace> internalTimerService;
+
+		private StreamRecord<?> element;
+
+		ContextImpl(
+				KeyedBroadcastProcessFunction<IN1, IN2, OUT> function,
+				OperatorStateBackend operatorStateBackend,
+				ProcessingTimeService processingTimeService,
+				InternalTimerService<VoidNamespace> internalTimerService) {
+			function.super();
+			this.operatorStateBackend = checkNotNull(operatorStateBackend);
+			this.processingTimeService = checkNotNull(processingTimeService);
+			this.internalTimerService = checkNotNull(internalTimerService);
+		}
+
+		@Override
+		public Long timestamp() {
+			checkState(element != null);
+
+			if (element.hasTimestamp()) {
+				return element.getTimestamp();
+			} else {
+				return null;
+			}
+		}
+
+		@Override
+		public long currentProcessingTime() {
+			return processingTimeService.getCurrentProcessingTime();
+		}
+
+		@Override
+		public long currentWatermark() {
+			return internalTimerService.currentWatermark();
+		}
+
+		@Override
+		public <K, V> BroadcastState<K, V> getBroadcastState(MapStateDescriptor<K, V> stateDescriptor) throws Exception {
+			return operatorStateBackend.getBroadcastState(stateDescriptor);
+		}
+	}
+
+	private static class ReadOnlyContextImpl<IN1, IN2, OUT>
+			extends KeyedBroadcastProcessFunction<IN1, IN2, OUT>.ReadOnlyContext {
+
+		private final OperatorStateBackend operatorStateBackend;
+
+		private final ProcessingTimeService processingTimeService;
+
+		private final InternalTimerService<VoidNamespace> internalTimerService;
+
+		private final TimerService timerService;
+
+		private StreamRecord<?> element;
+
+		ReadOnlyContextImpl(
+				KeyedBroadcastProcessFunction<IN1, IN2, OUT> function,
+				OperatorStateBackend operatorStateBackend,
+				ProcessingTimeService processingTimeService,
+				InternalTimerService<VoidNamespace> internalTimerService,
+				TimerService timerService) {
+			function.super();
+			this.operatorStateBackend = checkNotNull(operatorStateBackend);
+			this.processingTimeService = checkNotNull(processingTimeService);
+			this.internalTimerService = checkNotNull(internalTimerService);
+			this.timerService = checkNotNull(timerService);
+		}
+
+		@Override
+		public Long timestamp() {
+			checkState(element != null);
+
+			if (element.hasTimestamp()) {
+				return element.getTimestamp();
+			} else {
+				return null;
+			}
+		}
+
+		@Override
+		public long currentProcessingTime() {
+			return processingTimeService.getCurrentProcessingTime();
+		}
+
+		@Override
+		public long currentWatermark() {
+			return internalTimerService.currentWatermark();
+		}
+
+		@Override
+		public <K, V> ReadOnlyBroadcastState<K, V> getBroadcastState(MapStateDescriptor<K, V> stateDescriptor) throws Exception {
+			return operatorStateBackend.getBroadcastState(stateDescriptor);
+		}
+
+		@Override
+		public TimerService timerService() {
+			return timerService;
+		}
+	}
+
+	private static class OnTimerContextImpl<IN1, IN2, OUT>
+			extends KeyedBroadcastProcessFunction<IN1, IN2, OUT>.OnTimerContext {
+
+		private final OperatorStateBackend operatorStateBackend;
+
+		private final ProcessingTimeService processingTimeService;
+
+		private final InternalTimerService<VoidNamespace> internalTimerService;
+
+		private final TimerService timerService;
+
+		private TimeDomain timeDomain;
+
+		private InternalTimer<?, VoidNamespace> timer;
+
+		OnTimerContextImpl(
+				KeyedBroadcastProcessFunction<IN1, IN2, OUT> function,
+				OperatorStateBackend operatorStateBackend,
+				ProcessingTimeService processingTimeService,
+				InternalTimerService<VoidNamespace> internalTimerService,
+				TimerService timerService) {
+			function.super();
+			this.operatorStateBackend = checkNotNull(operatorStateBackend);
+			this.processingTimeService = checkNotNull(processingTimeService);
+			this.internalTimerService = checkNotNull(internalTimerService);
+			this.timerService = checkNotNull(timerService);
+		}
+
+		@Override
+		public TimeDomain timeDomain() {
+			checkState(timeDomain != null);
+			return timeDomain;
+		}
+
+		@Override
+		public Long timestamp() {
+			checkState(timer != null);
+			return timer.getTimestamp();
+		}
+
+		@Override
+		public long currentProcessingTime() {
+			return processingTimeService.getCurrentProcessingTime();
+		}
+
+		@Override
+		public long currentWatermark() {
+			return internalTimerService.currentWatermark();
+		}
+
+		@Override
+		public <K, V> ReadOnlyBroadcastState<K, V> getBroadcastState(MapStateDescriptor<K, V> stateDescriptor) throws Exception {
+			return operatorStateBackend.getBroadcastState(stateDescriptor);
+		}
+
+		@Override
+		public TimerService timerService() {
+			return timerService;
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.concurrent.Future;
+import org.apache.flink.runtime.concurrent.impl.FlinkCompletableFuture;
+import org.apache.flink.runtime.util.DataInputDeserializer;
+import org.apache.flink.runtime.util.DataOutputSerializer;
+
+import java.io.IOException;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+import static org.apache.flink.util.Preconditions.checkState;
+
+/**
+ * The in-flight record log collects the records that were in flight towards a task when an
+ * unaligned checkpoint was taken, i.e., records that the task processes after its snapshot but
+ * that the upstream tasks emitted before theirs. These records become part of the checkpoint and
+ * are processed again before any other input when the task is restored.
+ *
+ * <p>Each entry consists of the index of the logical input of the task that the record was received
+ * on, followed by the serialized record. Only records are logged. Watermarks, stream statuses and
+ * latency markers are regenerated by the upstream tasks after a restore.
+ *
+ * <p>The log keeps the serialized records on the heap until all barriers of the checkpoint arrived
+ * and the in-flight buffers were consumed. The {@link UnalignedBarrierHandler} watches the
+ * {@link #getNumLoggedBytes() size of the log} and aborts the checkpoint once the configured limit
+ * is exceeded.
+ *
+ * <p>The log is written by the {@link CheckpointBarrierHandler} and the input processor, both of
+ * which run in the task thread. The result of a checkpoint is handed to the asynchronous part of
+ * the checkpoint through a future.
+ */
+@Internal
+public class InFlightRecordLog {
+
+	/** The serialized records of the checkpoint in progress */
+	private final DataOutputSerializer records = new DataOutputSerializer(1024);
+
+	/** The ID of the checkpoint for which records are logged, -1 if none */
+	private long currentCheckpointId = -1L;
+
+	/** The future that receives the logged records of the current checkpoint */
+	private FlinkCompletableFuture<byte[]> currentResult;
+
+	/** The records restored from a checkpoint, which need to be processed before any new input */
+	private DataInputDeserializer restoredRecords;
+
+	// ------------------------------------------------------------------------
+	//  Logging
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Starts logging the in-flight records for the given checkpoint.
+	 */
+	public void startCheckpoint(long checkpointId) {
+		checkState(currentResult == null, "Logging of checkpoint %s is still in progress.", currentCheckpointId);
+
+		this.currentCheckpointId = checkpointId;
+		this.currentResult = new FlinkCompletableFuture<>();
+		this.records.clear();
+	}
+
+	/**
+	 * Checks whether records are currently being logged for a checkpoint.
+	 */
+	public boolean isLogging() {
+		return currentResult != null;
+	}
+
+	/**
+	 * Checks whether any record was logged for the current checkpoint.
+	 */
+	public boolean hasLoggedRecords() {
+		return records.length() > 0;
+	}
+
+	/**
+	 * Gets the number of bytes that were logged for the current checkpoint.
+	 */
+	public long getNumLoggedBytes() {
+		return records.length();
+	}
+
+	/**
+	 * Adds a record to the log of the current checkpoint.
+	 *
+	 * @param inputIndex The index of the logical input that the record was received on.
+	 * @param record The record to log.
+	 * @param serializer The serializer for the record.
+	 */
+	public <T> void log(int inputIndex, T record, TypeSerializer<T> serializer) throws IOException {
+		checkState(currentResult != null, "No checkpoint in progress.");
+
+		records.writeInt(inputIndex);
+		serializer.serialize(record, records);
+	}
+
+	/**
+	 * Completes the log of the current checkpoint, handing the logged records to the
+	 * asynchronous part of the checkpoint.
+	 */
+	public void completeCheckpoint() {
+		if (currentResult != null) {
+			currentResult.complete(records.getCopyOfBuffer());
+			reset();
+		}
+	}
+
+	/**
+	 * Aborts the log of the current checkpoint, if there is one.
+	 *
+	 * @param cause The reason why the checkpoint was aborted.
+	 */
+	public void abortCheckpoint(Throwable cause) {
+		if (currentResult != null) {
+			currentResult.completeExceptionally(cause);
+			reset();
+		}
+	}
+
+	/**
+	 * Gets the future for the logged records of the given checkpoint.
+	 *
+	 * @return The future for the records, or null, if no records are logged for the checkpoint.
+	 */
+	public Future<byte[]> getCheckpointResult(long checkpointId) {
+		return currentResult != null && currentCheckpointId == checkpointId ? currentResult : null;
+	}
+
+	private void reset() {
+		currentResult = null;
+		currentCheckpointId = -1L;
+		records.clear();
+		records.pruneBuffer();
+	}
+
+	// ------------------------------------------------------------------------
+	//  Restoring
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Sets the records that were restored from a checkpoint.
+	 */
+	public void setRestoredRecords(byte[] restoredRecords) {
+		this.restoredRecords = new DataInputDeserializer(checkNotNull(restoredRecords));
+	}
+
+	/**
+	 * Checks whether there are restored records left to be processed.
+	 */
+	public boolean hasRestoredRecords() {
+		if (restoredRecords != null && restoredRecords.available() == 0) {
+			restoredRecords = null;
+		}
+		return restoredRecords != null;
+	}
+
+	/**
+	 * Reads the input index of the next restored record. Must be followed by a call to
+	 * {@link #readRestoredRecord(TypeSerializer)}.
+	 */
+	public int readRestoredInputIndex() throws IOException {
+		return restoredRecords.readInt();
+	}
+
+	/**
+	 * Reads the next restored record.
+	 */
+	public <T> T readRestoredRecord(TypeSerializer<T> serializer) throws IOException {
+		return serializer.deserialize(restoredRecords);
+	}
+}
@@ -23,6 +23,7 @@ import org.apache.flink.annotation.Internal;
 import org.apache.flink.util.OutputTag;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.runtime.event.AbstractEvent;
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
 import org.apache.flink.runtime.io.network.api.writer.RecordWriter;
 import org.apache.flink.runtime.plugable.SerializationDelegate;
 import org.apache.flink.streaming.api.operators.Output;
@@ -145,6 +146,10 @@ public class RecordWriterOutput<OUT> implements Output<StreamRecord<OUT>> {
 	public void broadcastEvent(AbstractEvent event) throws IOException, InterruptedException {
 		recordWriter.broadcastEvent(event);
 	}
+
+	public void broadcastCheckpointBarrier(CheckpointBarrier barrier) throws IOException, InterruptedException {
+		recordWriter.broadcastCheckpointBarrier(barrier);
+	}
 	
 	
 	public void flush() throws IOException {
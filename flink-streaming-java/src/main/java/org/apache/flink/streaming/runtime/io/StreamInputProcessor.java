@@ -50,6 +50,7 @@ import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.streamrecord.StreamElementSerializer;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
 import org.apache.flink.streaming.runtime.streamstatus.StreamStatusMaintainer;
+import org.apache.flink.streaming.runtime.tasks.Mailbox;
 
 import static org.apache.flink.util.Preconditions.checkNotNull;
 
@@ -62,9 +63,10 @@ import static org.apache.flink.util.Preconditions.checkNotNull;
  * all inputs has advanced, or that a {@link StreamStatus} needs to be propagated downstream to denote a status change.
  *
  * <p>
- * Forwarding elements, watermarks, or status status elements must be protected by synchronizing on the given lock
- * object. This ensures that we don't call methods on a {@link OneInputStreamOperator} concurrently
- * with the timer callback or other things.
+ * Forwarding elements, watermarks, or status status elements must be protected by synchronizing on the lock
+ * of the given {@link Mailbox}. This ensures that we don't call methods on a {@link OneInputStreamOperator} concurrently
+ * with the timer callback or other things. The lock is held for all records of a buffer, and the mails of the
+ * timers and other threads are run between the records.
  * 
  * @param <IN> The type of the record that can be read with this record reader.
  */
@@ -79,8 +81,24 @@ public class StreamInputProcessor<IN> {
 
 	private final CheckpointBarrierHandler barrierHandler;
 
+	/** The barrier handler if checkpoints are unaligned, null otherwise */
+	private final UnalignedBarrierHandler unalignedBarrierHandler;
+
 	private final Object lock;
 
+	/** The mailbox of the task, whose mails are run between the records */
+	private final Mailbox mailbox;
+
+	// ---------------- In-flight records ------------------
+
+	/** The log for the records that are in flight during unaligned checkpoints */
+	private final InFlightRecordLog inFlightRecordLog;
+
+	private final StreamElementSerializer<IN> elementSerializer;
+
+	/** Flag whether the records completed by the current buffer are in flight */
+	private boolean currentBufferInFlight;
+
 	// ---------------- Status and Watermark Valve ------------------
 
 	/** Valve that controls how watermarks and stream statuses are forwarded. */
@@ -112,7 +130,9 @@ public class StreamInputProcessor<IN> {
 			TypeSerializer<IN> inputSerializer,
 			StatefulTask checkpointedTask,
 			CheckpointingMode checkpointMode,
-			Object lock,
+			boolean unalignedCheckpoints,
+			InFlightRecordLog inFlightRecordLog,
+			Mailbox mailbox,
 			IOManager ioManager,
 			Configuration taskManagerConfig,
 			StreamStatusMaintainer streamStatusMaintainer,
@@ -120,7 +140,20 @@ public class StreamInputProcessor<IN> {
 
 		InputGate inputGate = InputGateUtil.createInputGate(inputGates);
 
-		if (checkpointMode == CheckpointingMode.EXACTLY_ONCE) {
+		this.inFlightRecordLog = checkNotNull(inFlightRecordLog);
+
+		if (checkpointMode == CheckpointingMode.EXACTLY_ONCE && unalignedCheckpoints) {
+			long maxInFlight = taskManagerConfig.getLong(TaskManagerOptions.TASK_CHECKPOINT_IN_FLIGHT_BYTES_LIMIT);
+			if (!(maxInFlight == -1 || maxInFlight > 0)) {
+				throw new IllegalConfigurationException(
+						TaskManagerOptions.TASK_CHECKPOINT_IN_FLIGHT_BYTES_LIMIT.key()
+						+ " must be positive or -1 (infinite)");
+			}
+			this.unalignedBarrierHandler = new UnalignedBarrierHandler(inputGate, ioManager, inFlightRecordLog, maxInFlight);
+			this.barrierHandler = unalignedBarrierHandler;
+		}
+		else if (checkpointMode == CheckpointingMode.EXACTLY_ONCE) {
+			this.unalignedBarrierHandler = null;
 			long maxAlign = taskManagerConfig.getLong(TaskManagerOptions.TASK_CHECKPOINT_ALIGNMENT_BYTES_LIMIT);
 			if (!(maxAlign == -1 || maxAlign > 0)) {
 				throw new IllegalConfigurationException(
@@ -130,6 +163,7 @@ public class StreamInputProcessor<IN> {
 			this.barrierHandler = new BarrierBuffer(inputGate, ioManager, maxAlign);
 		}
 		else if (checkpointMode == CheckpointingMode.AT_LEAST_ONCE) {
+			this.unalignedBarrierHandler = null;
 			this.barrierHandler = new BarrierTracker(inputGate);
 		}
 		else {
@@ -140,10 +174,11 @@ public class StreamInputProcessor<IN> {
 			this.barrierHandler.registerCheckpointEventHandler(checkpointedTask);
 		}
 
-		this.lock = checkNotNull(lock);
+		this.mailbox = checkNotNull(mailbox);
+		this.lock = mailbox.getCheckpointLock();
 		
-		StreamElementSerializer<IN> ser = new StreamElementSerializer<>(inputSerializer);
-		this.deserializationDelegate = new NonReusingDeserializationDelegate<>(ser);
+		this.elementSerializer = new StreamElementSerializer<>(inputSerializer);
+		this.deserializationDelegate = new NonReusingDeserializationDelegate<>(elementSerializer);
 
 		// Initialize one deserializer per input channel
 		this.recordDeserializers = new SpillingAdaptiveSpanningRecordDeserializer[inputGate.getNumberOfInputChannels()];
@@ -162,7 +197,7 @@ public class StreamInputProcessor<IN> {
 
 		this.statusWatermarkValve = new StatusWatermarkValve(
 				numInputChannels,
-				new ForwardingValveOutputHandler(streamOperator, lock));
+				new ForwardingValveOutputHandler(streamOperator));
 	}
 
 	public boolean processInput() throws Exception {
@@ -173,49 +208,40 @@ public class StreamInputProcessor<IN> {
 			numRecordsIn = ((OperatorMetricGroup) streamOperator.getMetricGroup()).getIOMetricGroup().getNumRecordsInCounter();
 		}
 
+		// the records that were in flight at the restored checkpoint go before any new input
+		if (inFlightRecordLog.hasRestoredRecords()) {
+			inFlightRecordLog.readRestoredInputIndex();
+			StreamRecord<IN> record = inFlightRecordLog.readRestoredRecord(elementSerializer).asRecord();
+			synchronized (lock) {
+				numRecordsIn.inc();
+				streamOperator.setKeyContextElement1(record);
+				streamOperator.processElement(record);
+			}
+			return true;
+		}
+
 		while (true) {
 			if (currentRecordDeserializer != null) {
-				DeserializationResult result = currentRecordDeserializer.getNextRecord(deserializationDelegate);
-
-				if (result.isBufferConsumed()) {
-					currentRecordDeserializer.getCurrentBuffer().recycle();
-					currentRecordDeserializer = null;
-				}
-
-				if (result.isFullRecord()) {
-					StreamElement recordOrMark = deserializationDelegate.getInstance();
-
-					if (recordOrMark.isWatermark()) {
-						// handle watermark
-						statusWatermarkValve.inputWatermark(recordOrMark.asWatermark(), currentChannel);
-						continue;
-					} else if (recordOrMark.isStreamStatus()) {
-						// handle stream status
-						statusWatermarkValve.inputStreamStatus(recordOrMark.asStreamStatus(), currentChannel);
-						continue;
-					} else if (recordOrMark.isLatencyMarker()) {
-						// handle latency marker
-						synchronized (lock) {
-							streamOperator.processLatencyMarker(recordOrMark.asLatencyMarker());
-						}
-						continue;
-					} else {
-						// now we can do the actual processing
-						StreamRecord<IN> record = recordOrMark.asRecord();
-						synchronized (lock) {
-							numRecordsIn.inc();
-							streamOperator.setKeyContextElement1(record);
-							streamOperator.processElement(record);
-						}
-						return true;
+				// the lock is taken once for all records of the buffer, the actions of
+				// other threads are run between the records through the mailbox
+				synchronized (lock) {
+					mailbox.startProcessing();
+					try {
+						processBuffer();
+					} finally {
+						mailbox.stopProcessing();
 					}
+					mailbox.processMails();
 				}
+				return true;
 			}
 
 			final BufferOrEvent bufferOrEvent = barrierHandler.getNextNonBlocked();
 			if (bufferOrEvent != null) {
 				if (bufferOrEvent.isBuffer()) {
 					currentChannel = bufferOrEvent.getChannelIndex();
+					currentBufferInFlight = unalignedBarrierHandler != null &&
+							unalignedBarrierHandler.isLastBufferInFlight();
 					currentRecordDeserializer = recordDeserializers[currentChannel];
 					currentRecordDeserializer.setNextBuffer(bufferOrEvent.getBuffer());
 				}
@@ -237,6 +263,50 @@ public class StreamInputProcessor<IN> {
 		}
 	}
 
+	/**
+	 * Processes the records of the current buffer, until the buffer is consumed. The caller must
+	 * hold the lock and have started the processing of the mailbox.
+	 */
+	private void processBuffer() throws Exception {
+		while (currentRecordDeserializer != null) {
+			DeserializationResult result = currentRecordDeserializer.getNextRecord(deserializationDelegate);
+
+			if (result.isBufferConsumed()) {
+				currentRecordDeserializer.getCurrentBuffer().recycle();
+				currentRecordDeserializer = null;
+			}
+
+			if (result.isFullRecord()) {
+				StreamElement recordOrMark = deserializationDelegate.getInstance();
+
+				if (recordOrMark.isWatermark()) {
+					// handle watermark
+					statusWatermarkValve.inputWatermark(recordOrMark.asWatermark(), currentChannel);
+				} else if (recordOrMark.isStreamStatus()) {
+					// handle stream status
+					statusWatermarkValve.inputStreamStatus(recordOrMark.asStreamStatus(), currentChannel);
+				} else if (recordOrMark.isLatencyMarker()) {
+					// handle latency marker
+					streamOperator.processLatencyMarker(recordOrMark.asLatencyMarker());
+				} else {
+					if (currentBufferInFlight) {
+						inFlightRecordLog.log(0, recordOrMark, elementSerializer);
+					}
+
+					// now we can do the actual processing
+					StreamRecord<IN> record = recordOrMark.asRecord();
+					numRecordsIn.inc();
+					streamOperator.setKeyContextElement1(record);
+					streamOperator.processElement(record);
+				}
+
+				if (mailbox.hasMail()) {
+					mailbox.processMails();
+				}
+			}
+		}
+	}
+
 	/**
 	 * Sets the metric group for this StreamInputProcessor.
 	 * 
@@ -271,22 +341,21 @@ public class StreamInputProcessor<IN> {
 		barrierHandler.cleanup();
 	}
 
+	/**
+	 * Forwards the output of the valve to the operator. The valve is only fed while holding the lock.
+	 */
 	private class ForwardingValveOutputHandler implements StatusWatermarkValve.ValveOutputHandler {
 		private final OneInputStreamOperator<IN, ?> operator;
-		private final Object lock;
 
-		private ForwardingValveOutputHandler(final OneInputStreamOperator<IN, ?> operator, final Object lock) {
+		private ForwardingValveOutputHandler(final OneInputStreamOperator<IN, ?> operator) {
 			this.operator = checkNotNull(operator);
-			this.lock = checkNotNull(lock);
 		}
 
 		@Override
 		public void handleWatermark(Watermark watermark) {
 			try {
-				synchronized (lock) {
-					lastEmittedWatermark = watermark.getTimestamp();
-					operator.processWatermark(watermark);
-				}
+				lastEmittedWatermark = watermark.getTimestamp();
+				operator.processWatermark(watermark);
 			} catch (Exception e) {
 				throw new RuntimeException("Exception occurred while processing valve output watermark: ", e);
 			}
@@ -296,9 +365,7 @@ public class StreamInputProcessor<IN> {
 		@Override
 		public void handleStreamStatus(StreamStatus streamStatus) {
 			try {
-				synchronized (lock) {
-					streamStatusMaintainer.toggleStreamStatus(streamStatus);
-				}
+				streamStatusMaintainer.toggleStreamStatus(streamStatus);
 			} catch (Exception e) {
 				throw new RuntimeException("Exception occurred while processing valve output stream status: ", e);
 			}
@@ -46,6 +46,7 @@ import org.apache.flink.streaming.runtime.streamrecord.StreamElement;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.streamrecord.StreamElementSerializer;
 import org.apache.flink.streaming.runtime.streamstatus.StreamStatusMaintainer;
+import org.apache.flink.streaming.runtime.tasks.Mailbox;
 
 import java.io.IOException;
 import java.util.Collection;
@@ -61,9 +62,10 @@ import static org.apache.flink.util.Preconditions.checkNotNull;
  * all inputs has advanced, or changes the task's {@link StreamStatus} once status change is toggled.
  *
  * <p>
- * Forwarding elements, watermarks, or status status elements must be protected by synchronizing on the given lock
- * object. This ensures that we don't call methods on a {@link TwoInputStreamOperator} concurrently
- * with the timer callback or other things.
+ * Forwarding elements, watermarks, or status status elements must be protected by synchronizing on the lock
+ * of the given {@link Mailbox}. This ensures that we don't call methods on a {@link TwoInputStreamOperator} concurrently
+ * with the timer callback or other things. The lock is held for all records of a buffer, and the mails of the
+ * timers and other threads are run between the records.
  *
  * @param <IN1> The type of the records that arrive on the first input
  * @param <IN2> The type of the records that arrive on the second input
@@ -80,8 +82,25 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 
 	private final CheckpointBarrierHandler barrierHandler;
 
+	/** The barrier handler if checkpoints are unaligned, null otherwise */
+	private final UnalignedBarrierHandler unalignedBarrierHandler;
+
 	private final Object lock;
 
+	/** The mailbox of the task, whose mails are run between the records */
+	private final Mailbox mailbox;
+
+	// ---------------- In-flight records ------------------
+
+	/** The log for the records that are in flight during unaligned checkpoints */
+	private final InFlightRecordLog inFlightRecordLog;
+
+	private final StreamElementSerializer<IN1> elementSerializer1;
+	private final StreamElementSerializer<IN2> elementSerializer2;
+
+	/** Flag whether the records completed by the current buffer are in flight */
+	private boolean currentBufferInFlight;
+
 	// ---------------- Status and Watermark Valves ------------------
 
 	/**
@@ -126,7 +145,9 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 			TypeSerializer<IN2> inputSerializer2,
 			StatefulTask checkpointedTask,
 			CheckpointingMode checkpointMode,
-			Object lock,
+			boolean unalignedCheckpoints,
+			InFlightRecordLog inFlightRecordLog,
+			Mailbox mailbox,
 			IOManager ioManager,
 			Configuration taskManagerConfig,
 			StreamStatusMaintainer streamStatusMaintainer,
@@ -134,7 +155,20 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 
 		final InputGate inputGate = InputGateUtil.createInputGate(inputGates1, inputGates2);
 
-		if (checkpointMode == CheckpointingMode.EXACTLY_ONCE) {
+		this.inFlightRecordLog = checkNotNull(inFlightRecordLog);
+
+		if (checkpointMode == CheckpointingMode.EXACTLY_ONCE && unalignedCheckpoints) {
+			long maxInFlight = taskManagerConfig.getLong(TaskManagerOptions.TASK_CHECKPOINT_IN_FLIGHT_BYTES_LIMIT);
+			if (!(maxInFlight == -1 || maxInFlight > 0)) {
+				throw new IllegalConfigurationException(
+						TaskManagerOptions.TASK_CHECKPOINT_IN_FLIGHT_BYTES_LIMIT.key()
+								+ " must be positive or -1 (infinite)");
+			}
+			this.unalignedBarrierHandler = new UnalignedBarrierHandler(inputGate, ioManager, inFlightRecordLog, maxInFlight);
+			this.barrierHandler = unalignedBarrierHandler;
+		}
+		else if (checkpointMode == CheckpointingMode.EXACTLY_ONCE) {
+			this.unalignedBarrierHandler = null;
 			long maxAlign = taskManagerConfig.getLong(TaskManagerOptions.TASK_CHECKPOINT_ALIGNMENT_BYTES_LIMIT);
 			if (!(maxAlign == -1 || maxAlign > 0)) {
 				throw new IllegalConfigurationException(
@@ -144,6 +178,7 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 			this.barrierHandler = new BarrierBuffer(inputGate, ioManager, maxAlign);
 		}
 		else if (checkpointMode == CheckpointingMode.AT_LEAST_ONCE) {
+			this.unalignedBarrierHandler = null;
 			this.barrierHandler = new BarrierTracker(inputGate);
 		}
 		else {
@@ -154,13 +189,14 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 			this.barrierHandler.registerCheckpointEventHandler(checkpointedTask);
 		}
 
-		this.lock = checkNotNull(lock);
+		this.mailbox = checkNotNull(mailbox);
+		this.lock = mailbox.getCheckpointLock();
 		
-		StreamElementSerializer<IN1> ser1 = new StreamElementSerializer<>(inputSerializer1);
-		this.deserializationDelegate1 = new NonReusingDeserializationDelegate<>(ser1);
+		this.elementSerializer1 = new StreamElementSerializer<>(inputSerializer1);
+		this.deserializationDelegate1 = new NonReusingDeserializationDelegate<>(elementSerializer1);
 
-		StreamElementSerializer<IN2> ser2 = new StreamElementSerializer<>(inputSerializer2);
-		this.deserializationDelegate2 = new NonReusingDeserializationDelegate<>(ser2);
+		this.elementSerializer2 = new StreamElementSerializer<>(inputSerializer2);
+		this.deserializationDelegate2 = new NonReusingDeserializationDelegate<>(elementSerializer2);
 
 		// Initialize one deserializer per input channel
 		this.recordDeserializers = new SpillingAdaptiveSpanningRecordDeserializer[inputGate.getNumberOfInputChannels()];
@@ -188,8 +224,8 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 		this.streamStatusMaintainer = checkNotNull(streamStatusMaintainer);
 		this.streamOperator = checkNotNull(streamOperator);
 
-		this.statusWatermarkValve1 = new StatusWatermarkValve(numInputChannels1, new ForwardingValveOutputHandler1(streamOperator, lock));
-		this.statusWatermarkValve2 = new StatusWatermarkValve(numInputChannels2, new ForwardingValveOutputHandler2(streamOperator, lock));
+		this.statusWatermarkValve1 = new StatusWatermarkValve(numInputChannels1, new ForwardingValveOutputHandler1(streamOperator));
+		this.statusWatermarkValve2 = new StatusWatermarkValve(numInputChannels2, new ForwardingValveOutputHandler2(streamOperator));
 
 	}
 
@@ -198,73 +234,39 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 			return false;
 		}
 
-		while (true) {
-			if (currentRecordDeserializer != null) {
-				DeserializationResult result;
-				if (currentChannel < numInputChannels1) {
-					result = currentRecordDeserializer.getNextRecord(deserializationDelegate1);
-				} else {
-					result = currentRecordDeserializer.getNextRecord(deserializationDelegate2);
+		// the records that were in flight at the restored checkpoint go before any new input
+		if (inFlightRecordLog.hasRestoredRecords()) {
+			if (inFlightRecordLog.readRestoredInputIndex() == 0) {
+				StreamRecord<IN1> record = inFlightRecordLog.readRestoredRecord(elementSerializer1).asRecord();
+				synchronized (lock) {
+					streamOperator.setKeyContextElement1(record);
+					streamOperator.processElement1(record);
 				}
-
-				if (result.isBufferConsumed()) {
-					currentRecordDeserializer.getCurrentBuffer().recycle();
-					currentRecordDeserializer = null;
+			}
+			else {
+				StreamRecord<IN2> record = inFlightRecordLog.readRestoredRecord(elementSerializer2).asRecord();
+				synchronized (lock) {
+					streamOperator.setKeyContextElement2(record);
+					streamOperator.processElement2(record);
 				}
+			}
+			return true;
+		}
 
-				if (result.isFullRecord()) {
-					if (currentChannel < numInputChannels1) {
-						StreamElement recordOrWatermark = deserializationDelegate1.getInstance();
-						if (recordOrWatermark.isWatermark()) {
-							statusWatermarkValve1.inputWatermark(recordOrWatermark.asWatermark(), currentChannel);
-							continue;
-						}
-						else if (recordOrWatermark.isStreamStatus()) {
-							statusWatermarkValve1.inputStreamStatus(recordOrWatermark.asStreamStatus(), currentChannel);
-							continue;
-						}
-						else if (recordOrWatermark.isLatencyMarker()) {
-							synchronized (lock) {
-								streamOperator.processLatencyMarker1(recordOrWatermark.asLatencyMarker());
-							}
-							continue;
-						}
-						else {
-							StreamRecord<IN1> record = recordOrWatermark.asRecord();
-							synchronized (lock) {
-								streamOperator.setKeyContextElement1(record);
-								streamOperator.processElement1(record);
-							}
-							return true;
-
-						}
-					}
-					else {
-						StreamElement recordOrWatermark = deserializationDelegate2.getInstance();
-						if (recordOrWatermark.isWatermark()) {
-							statusWatermarkValve2.inputWatermark(recordOrWatermark.asWatermark(), currentChannel - numInputChannels1);
-							continue;
-						}
-						else if (recordOrWatermark.isStreamStatus()) {
-							statusWatermarkValve2.inputStreamStatus(recordOrWatermark.asStreamStatus(), currentChannel - numInputChannels1);
-							continue;
-						}
-						else if (recordOrWatermark.isLatencyMarker()) {
-							synchronized (lock) {
-								streamOperator.processLatencyMarker2(recordOrWatermark.asLatencyMarker());
-							}
-							continue;
-						}
-						else {
-							StreamRecord<IN2> record = recordOrWatermark.asRecord();
-							synchronized (lock) {
-								streamOperator.setKeyContextElement2(record);
-								streamOperator.processElement2(record);
-							}
-							return true;
-						}
+		while (true) {
+			if (currentRecordDeserializer != null) {
+				// the lock is taken once for all records of the buffer, the actions of
+				// other threads are run between the records through the mailbox
+				synchronized (lock) {
+					mailbox.startProcessing();
+					try {
+						processBuffer();
+					} finally {
+						mailbox.stopProcessing();
 					}
+					mailbox.processMails();
 				}
+				return true;
 			}
 
 			final BufferOrEvent bufferOrEvent = barrierHandler.getNextNonBlocked();
@@ -272,6 +274,8 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 
 				if (bufferOrEvent.isBuffer()) {
 					currentChannel = bufferOrEvent.getChannelIndex();
+					currentBufferInFlight = unalignedBarrierHandler != null &&
+							unalignedBarrierHandler.isLastBufferInFlight();
 					currentRecordDeserializer = recordDeserializers[currentChannel];
 					currentRecordDeserializer.setNextBuffer(bufferOrEvent.getBuffer());
 	
@@ -293,6 +297,75 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 		}
 	}
 
+	/**
+	 * Processes the records of the current buffer, until the buffer is consumed. The caller must
+	 * hold the lock and have started the processing of the mailbox.
+	 */
+	private void processBuffer() throws Exception {
+		while (currentRecordDeserializer != null) {
+			DeserializationResult result;
+			if (currentChannel < numInputChannels1) {
+				result = currentRecordDeserializer.getNextRecord(deserializationDelegate1);
+			} else {
+				result = currentRecordDeserializer.getNextRecord(deserializationDelegate2);
+			}
+
+			if (result.isBufferConsumed()) {
+				currentRecordDeserializer.getCurrentBuffer().recycle();
+				currentRecordDeserializer = null;
+			}
+
+			if (result.isFullRecord()) {
+				if (currentChannel < numInputChannels1) {
+					StreamElement recordOrWatermark = deserializationDelegate1.getInstance();
+					if (recordOrWatermark.isWatermark()) {
+						statusWatermarkValve1.inputWatermark(recordOrWatermark.asWatermark(), currentChannel);
+					}
+					else if (recordOrWatermark.isStreamStatus()) {
+						statusWatermarkValve1.inputStreamStatus(recordOrWatermark.asStreamStatus(), currentChannel);
+					}
+					else if (recordOrWatermark.isLatencyMarker()) {
+						streamOperator.processLatencyMarker1(recordOrWatermark.asLatencyMarker());
+					}
+					else {
+						if (currentBufferInFlight) {
+							inFlightRecordLog.log(0, recordOrWatermark, elementSerializer1);
+						}
+
+						StreamRecord<IN1> record = recordOrWatermark.asRecord();
+						streamOperator.setKeyContextElement1(record);
+						streamOperator.processElement1(record);
+					}
+				}
+				else {
+					StreamElement recordOrWatermark = deserializationDelegate2.getInstance();
+					if (recordOrWatermark.isWatermark()) {
+						statusWatermarkValve2.inputWatermark(recordOrWatermark.asWatermark(), currentChannel - numInputChannels1);
+					}
+					else if (recordOrWatermark.isStreamStatus()) {
+						statusWatermarkValve2.inputStreamStatus(recordOrWatermark.asStreamStatus(), currentChannel - numInputChannels1);
+					}
+					else if (recordOrWatermark.isLatencyMarker()) {
+						streamOperator.processLatencyMarker2(recordOrWatermark.asLatencyMarker());
+					}
+					else {
+						if (currentBufferInFlight) {
+							inFlightRecordLog.log(1, recordOrWatermark, elementSerializer2);
+						}
+
+						StreamRecord<IN2> record = recordOrWatermark.asRecord();
+						streamOperator.setKeyContextElement2(record);
+						streamOperator.processElement2(record);
+					}
+				}
+
+				if (mailbox.hasMail()) {
+					mailbox.processMails();
+				}
+			}
+		}
+	}
+
 	/**
 	 * Sets the metric group for this StreamTwoInputProcessor.
 	 *
@@ -327,22 +400,21 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 		barrierHandler.cleanup();
 	}
 
+	/**
+	 * Forwards the output of the valve of the first input to the operator. The valve is only fed while holding the lock.
+	 */
 	private class ForwardingValveOutputHandler1 implements StatusWatermarkValve.ValveOutputHandler {
 		private final TwoInputStreamOperator<IN1, IN2, ?> operator;
-		private final Object lock;
 
-		private ForwardingValveOutputHandler1(final TwoInputStreamOperator<IN1, IN2, ?> operator, final Object lock) {
+		private ForwardingValveOutputHandler1(final TwoInputStreamOperator<IN1, IN2, ?> operator) {
 			this.operator = checkNotNull(operator);
-			this.lock = checkNotNull(lock);
 		}
 
 		@Override
 		public void handleWatermark(Watermark watermark) {
 			try {
-				synchronized (lock) {
-					lastEmittedWatermark1 = watermark.getTimestamp();
-					operator.processWatermark1(watermark);
-				}
+				lastEmittedWatermark1 = watermark.getTimestamp();
+				operator.processWatermark1(watermark);
 			} catch (Exception e) {
 				throw new RuntimeException("Exception occurred while processing valve output watermark: ", e);
 			}
@@ -351,18 +423,16 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 		@Override
 		public void handleStreamStatus(StreamStatus streamStatus) {
 			try {
-				synchronized (lock) {
-					firstStatus = streamStatus;
-
-					// check if we need to toggle the task's stream status
-					if (!streamStatus.equals(streamStatusMaintainer.getStreamStatus())) {
-						if (streamStatus.isActive()) {
-							// we're no longer idle if at least one input has become active
-							streamStatusMaintainer.toggleStreamStatus(StreamStatus.ACTIVE);
-						} else if (secondStatus.isIdle()) {
-							// we're idle once both inputs are idle
-							streamStatusMaintainer.toggleStreamStatus(StreamStatus.IDLE);
-						}
+				firstStatus = streamStatus;
+
+				// check if we need to toggle the task's stream status
+				if (!streamStatus.equals(streamStatusMaintainer.getStreamStatus())) {
+					if (streamStatus.isActive()) {
+						// we're no longer idle if at least one input has become active
+						streamStatusMaintainer.toggleStreamStatus(StreamStatus.ACTIVE);
+					} else if (secondStatus.isIdle()) {
+						// we're idle once both inputs are idle
+						streamStatusMaintainer.toggleStreamStatus(StreamStatus.IDLE);
 					}
 				}
 			} catch (Exception e) {
@@ -371,22 +441,21 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 		}
 	}
 
+	/**
+	 * Forwards the output of the valve of the second input to the operator. The valve is only fed while holding the lock.
+	 */
 	private class ForwardingValveOutputHandler2 implements StatusWatermarkValve.ValveOutputHandler {
 		private final TwoInputStreamOperator<IN1, IN2, ?> operator;
-		private final Object lock;
 
-		private ForwardingValveOutputHandler2(final TwoInputStreamOperator<IN1, IN2, ?> operator, final Object lock) {
+		private ForwardingValveOutputHandler2(final TwoInputStreamOperator<IN1, IN2, ?> operator) {
 			this.operator = checkNotNull(operator);
-			this.lock = checkNotNull(lock);
 		}
 
 		@Override
 		public void handleWatermark(Watermark watermark) {
 			try {
-				synchronized (lock) {
-					lastEmittedWatermark2 = watermark.getTimestamp();
-					operator.processWatermark2(watermark);
-				}
+				lastEmittedWatermark2 = watermark.getTimestamp();
+				operator.processWatermark2(watermark);
 			} catch (Exception e) {
 				throw new RuntimeException("Exception occurred while processing valve output watermark: ", e);
 			}
@@ -395,18 +464,16 @@ public class StreamTwoInputProcessor<IN1, IN2> {
 		@Override
 		public void handleStreamStatus(StreamStatus streamStatus) {
 			try {
-				synchronized (lock) {
-					secondStatus = streamStatus;
-
-					// check if we need to toggle the task's stream status
-					if (!streamStatus.equals(streamStatusMaintainer.getStreamStatus())) {
-						if (streamStatus.isActive()) {
-							// we're no longer idle if at least one input has become active
-							streamStatusMaintainer.toggleStreamStatus(StreamStatus.ACTIVE);
-						} else if (firstStatus.isIdle()) {
-							// we're idle once both inputs are idle
-							streamStatusMaintainer.toggleStreamStatus(StreamStatus.IDLE);
-						}
+				secondStatus = streamStatus;
+
+				// check if we need to toggle the task's stream status
+				if (!streamStatus.equals(streamStatusMaintainer.getStreamStatus())) {
+					if (streamStatus.isActive()) {
+						// we're no longer idle if at least one input has become active
+						streamStatusMaintainer.toggleStreamStatus(StreamStatus.ACTIVE);
+					} else if (firstStatus.isIdle()) {
+						// we're idle once both inputs are idle
+						streamStatusMaintainer.toggleStreamStatus(StreamStatus.IDLE);
 					}
 				}
 			} catch (Exception e) {
@@ -0,0 +1,612 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.runtime.checkpoint.CheckpointMetaData;
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions.CheckpointType;
+import org.apache.flink.runtime.checkpoint.decline.CheckpointDeclineException;
+import org.apache.flink.runtime.checkpoint.decline.CheckpointDeclineOnCancellationBarrierException;
+import org.apache.flink.runtime.checkpoint.decline.CheckpointDeclineSubsumedException;
+import org.apache.flink.runtime.checkpoint.decline.InFlightRecordLimitExceededException;
+import org.apache.flink.runtime.checkpoint.decline.InputEndOfStreamException;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.io.network.api.CancelCheckpointMarker;
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
+import org.apache.flink.runtime.io.network.api.EndOfPartitionEvent;
+import org.apache.flink.runtime.io.network.partition.consumer.BufferOrEvent;
+import org.apache.flink.runtime.io.network.partition.consumer.InputGate;
+import org.apache.flink.runtime.jobgraph.tasks.StatefulTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+import static org.apache.flink.util.Preconditions.checkArgument;
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The unaligned barrier handler is the {@link CheckpointBarrierHandler} for unaligned
+ * exactly-once checkpoints. It triggers the checkpoint as soon as the first barrier of a
+ * checkpoint arrives and never blocks any input channel.
+ *
+ * <p>Instead of holding back the data of channels that already delivered the barrier, the handler
+ * marks all data that belongs to the pre-checkpoint part of the streams, but is processed after
+ * the snapshot, as in flight. These are
+ * <ul>
+ *     <li>all buffers of a channel between the start of the checkpoint and the barrier of that
+ *     channel, and</li>
+ *     <li>the buffers that a barrier overtook in the upstream subpartition, see
+ *     {@link CheckpointBarrier#getNumOvertakenBuffers()}.</li>
+ * </ul>
+ * The input processor logs all records that are completed by an in-flight buffer to the
+ * {@link InFlightRecordLog}. The log of a checkpoint is complete once all barriers arrived and all
+ * in-flight buffers were consumed. If the log grows beyond the configured number of bytes, the
+ * checkpoint is aborted.
+ *
+ * <p>Barriers overtake the buffers that are still queued in the subpartition of the sending task
+ * and in the input channels of this task, and the input gate consumes a channel with such a
+ * barrier next. Only the buffers that are in transit on the network are not overtaken.
+ *
+ * <p>Savepoints cannot hold in-flight records, so their barriers never overtake any data and are
+ * aligned like in the {@link BarrierBuffer}: the channels that delivered the barrier of a savepoint
+ * are blocked and their data is spilled until the barriers of all channels arrived.
+ */
+@Internal
+public class UnalignedBarrierHandler implements CheckpointBarrierHandler {
+
+	private static final Logger LOG = LoggerFactory.getLogger(UnalignedBarrierHandler.class);
+
+	/** The gate that the handler draws its input from */
+	private final InputGate inputGate;
+
+	/** The log that receives the in-flight records */
+	private final InFlightRecordLog inFlightRecordLog;
+
+	/** The maximum number of bytes of in-flight records to log before the checkpoint aborts */
+	private final long maxInFlightBytes;
+
+	/** The total number of channels that this handler handles data from */
+	private final int totalNumberOfInputChannels;
+
+	/** Flags that indicate whether the barrier of the current checkpoint is still expected on a channel */
+	private final boolean[] pendingChannels;
+
+	/** The number of overtaken buffers that are still expected per channel */
+	private final int[] overtakenBuffers;
+
+	/** Flags that indicate whether a channel is already closed */
+	private final boolean[] closedChannels;
+
+	/** Flags that indicate whether a channel is blocked while the barriers of a savepoint align */
+	private final boolean[] blockedChannels;
+
+	/** The utility to write the data of blocked channels to a file channel */
+	private final BufferSpiller bufferSpiller;
+
+	/** The pending blocked buffer/event sequences. Must be consumed before requesting
+	 * further data from the input gate. */
+	private final ArrayDeque<BufferSpiller.SpilledBufferOrEventSequence> queuedBuffered;
+
+	/** The sequence of buffers/events that has been unblocked and must now be consumed
+	 * before requesting further data from the input gate */
+	private BufferSpiller.SpilledBufferOrEventSequence currentBuffered;
+
+	/** Handler that receives the checkpoint notifications */
+	private StatefulTask toNotifyOnCheckpoint;
+
+	/** The ID of the latest checkpoint for which barriers were received */
+	private long currentCheckpointId = -1L;
+
+	/** Flag whether the current checkpoint is in progress, i.e. in-flight data is still expected */
+	private boolean checkpointInProgress;
+
+	/** Flag whether the barriers of the current checkpoint, a savepoint, are being aligned */
+	private boolean alignmentInProgress;
+
+	/** The number of channels from which the barrier of the current checkpoint is still expected */
+	private int numPendingChannels;
+
+	/** The number of overtaken buffers that are still expected over all channels */
+	private int numPendingOvertakenBuffers;
+
+	/** Flag whether the buffer last returned by {@link #getNextNonBlocked()} is in flight */
+	private boolean lastBufferInFlight;
+
+	/** The timestamp as in {@link System#nanoTime()} at which the current checkpoint started */
+	private long startOfCheckpointTimestamp;
+
+	/** The time (in nanoseconds) that it took to receive all barriers of the latest checkpoint */
+	private long latestBarrierDelayNanos;
+
+	/** Flag to indicate whether we have drawn all available input */
+	private boolean endOfStream;
+
+	/**
+	 * Creates a new handler for unaligned checkpoints that logs any amount of in-flight records.
+	 *
+	 * @param inputGate The input gate to draw the buffers and events from.
+	 * @param ioManager The I/O manager that gives access to the temp directories, used to spill the
+	 *                  data of blocked channels while the barriers of a savepoint align.
+	 * @param inFlightRecordLog The log that receives the in-flight records.
+	 *
+	 * @throws IOException Thrown, when the spilling to temp files cannot be initialized.
+	 */
+	public UnalignedBarrierHandler(
+			InputGate inputGate,
+			IOManager ioManager,
+			InFlightRecordLog inFlightRecordLog) throws IOException {
+		this(inputGate, ioManager, inFlightRecordLog, -1);
+	}
+
+	/**
+	 * Creates a new handler for unaligned checkpoints.
+	 *
+	 * <p>The handler allows only checkpoints that log up to the given number of bytes of in-flight
+	 * records. When that number is exceeded, it aborts the checkpoint and notifies the task that
+	 * the checkpoint has been cancelled.
+	 *
+	 * @param inputGate The input gate to draw the buffers and events from.
+	 * @param ioManager The I/O manager that gives access to the temp directories, used to spill the
+	 *                  data of blocked channels while the barriers of a savepoint align.
+	 * @param inFlightRecordLog The log that receives the in-flight records.
+	 * @param maxInFlightBytes The maximum bytes of in-flight records to log before the checkpoint aborts.
+	 *
+	 * @throws IOException Thrown, when the spilling to temp files cannot be initialized.
+	 */
+	public UnalignedBarrierHandler(
+			InputGate inputGate,
+			IOManager ioManager,
+			InFlightRecordLog inFlightRecordLog,
+			long maxInFlightBytes) throws IOException {
+		checkArgument(maxInFlightBytes == -1 || maxInFlightBytes > 0);
+
+		this.inputGate = checkNotNull(inputGate);
+		this.inFlightRecordLog = checkNotNull(inFlightRecordLog);
+		this.maxInFlightBytes = maxInFlightBytes;
+		this.totalNumberOfInputChannels = inputGate.getNumberOfInputChannels();
+		this.pendingChannels = new boolean[totalNumberOfInputChannels];
+		this.overtakenBuffers = new int[totalNumberOfInputChannels];
+		this.closedChannels = new boolean[totalNumberOfInputChannels];
+		this.blockedChannels = new boolean[totalNumberOfInputChannels];
+
+		this.bufferSpiller = new BufferSpiller(ioManager, inputGate.getPageSize());
+		this.queuedBuffered = new ArrayDeque<>();
+
+		inputGate.enableCheckpointBarrierOvertaking();
+	}
+
+	// ------------------------------------------------------------------------
+	//  Buffer and barrier handling
+	// ------------------------------------------------------------------------
+
+	@Override
+	public BufferOrEvent getNextNonBlocked() throws Exception {
+		while (true) {
+			// the previously returned buffer is fully consumed at this point
+			if (lastBufferInFlight) {
+				lastBufferInFlight = false;
+				checkSizeLimit();
+			}
+
+			if (checkpointInProgress && numPendingChannels == 0 && numPendingOvertakenBuffers == 0) {
+				completeCheckpoint();
+			}
+
+			// process buffered BufferOrEvents before grabbing new ones
+			BufferOrEvent next;
+			if (currentBuffered != null) {
+				next = currentBuffered.getNext();
+				if (next == null) {
+					completeBufferedSequence();
+					continue;
+				}
+			}
+			else if (!endOfStream) {
+				next = inputGate.getNextBufferOrEvent();
+			}
+			else {
+				// final end of both input and buffered data
+				return null;
+			}
+
+			if (next == null) {
+				// end of input stream. stream continues with the buffered data
+				endOfStream = true;
+				if (checkpointInProgress || alignmentInProgress) {
+					abortCheckpoint(new InputEndOfStreamException());
+				}
+				continue;
+			}
+
+			final int channelIndex = next.getChannelIndex();
+
+			if (blockedChannels[channelIndex]) {
+				// the channel delivered the barrier of the savepoint, its data waits for the others
+				bufferSpiller.add(next);
+			}
+			else if (next.isBuffer()) {
+				if (checkpointInProgress) {
+					if (overtakenBuffers[channelIndex] > 0) {
+						overtakenBuffers[channelIndex]--;
+						numPendingOvertakenBuffers--;
+						lastBufferInFlight = true;
+					}
+					else {
+						lastBufferInFlight = pendingChannels[channelIndex];
+					}
+				}
+				return next;
+			}
+			else if (next.getEvent().getClass() == CheckpointBarrier.class) {
+				processBarrier((CheckpointBarrier) next.getEvent(), channelIndex);
+			}
+			else if (next.getEvent().getClass() == CancelCheckpointMarker.class) {
+				processCancellationBarrier((CancelCheckpointMarker) next.getEvent());
+			}
+			else {
+				if (next.getEvent().getClass() == EndOfPartitionEvent.class) {
+					processEndOfPartition(channelIndex);
+				}
+				return next;
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the buffer that was last returned by {@link #getNextNonBlocked()} is in
+	 * flight, i.e., whether the records completed by this buffer need to be logged.
+	 */
+	public boolean isLastBufferInFlight() {
+		return lastBufferInFlight;
+	}
+
+	private void completeBufferedSequence() throws IOException {
+		LOG.debug("Finished feeding back buffered data");
+
+		currentBuffered.cleanup();
+		currentBuffered = queuedBuffered.pollFirst();
+		if (currentBuffered != null) {
+			currentBuffered.open();
+		}
+	}
+
+	private void processBarrier(CheckpointBarrier receivedBarrier, int channelIndex) throws Exception {
+		final long barrierId = receivedBarrier.getId();
+
+		if (barrierId > currentCheckpointId) {
+			if (checkpointInProgress || alignmentInProgress) {
+				// we did not complete the current checkpoint, another started before
+				LOG.warn("Received checkpoint barrier for checkpoint {} before completing current checkpoint {}. " +
+						"Skipping current checkpoint.", barrierId, currentCheckpointId);
+
+				abortCheckpoint(new CheckpointDeclineSubsumedException(barrierId));
+			}
+
+			if (receivedBarrier.getCheckpointOptions().getCheckpointType() == CheckpointType.SAVEPOINT) {
+				beginAlignment(receivedBarrier, channelIndex);
+			}
+			else {
+				beginCheckpoint(receivedBarrier, channelIndex);
+			}
+		}
+		else if (barrierId == currentCheckpointId && checkpointInProgress) {
+			onBarrier(receivedBarrier, channelIndex);
+		}
+		else if (barrierId == currentCheckpointId && alignmentInProgress) {
+			onAlignedBarrier(receivedBarrier, channelIndex);
+		}
+
+		// else: trailing barrier from either
+		//   - a previous (subsumed) checkpoint
+		//   - the current checkpoint if it was already canceled
+	}
+
+	private void processCancellationBarrier(CancelCheckpointMarker cancelBarrier) throws Exception {
+		final long barrierId = cancelBarrier.getCheckpointId();
+
+		if (barrierId > currentCheckpointId) {
+			if (checkpointInProgress || alignmentInProgress) {
+				LOG.warn("Received cancellation barrier for checkpoint {} before completing current checkpoint {}. " +
+						"Skipping current checkpoint.", barrierId, currentCheckpointId);
+
+				abortCheckpoint(new CheckpointDeclineSubsumedException(barrierId));
+			}
+
+			// the next checkpoint starts as canceled
+			currentCheckpointId = barrierId;
+			notifyAbort(barrierId, new CheckpointDeclineOnCancellationBarrierException());
+		}
+		else if (barrierId == currentCheckpointId && (checkpointInProgress || alignmentInProgress)) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Checkpoint {} canceled, discarding in-flight records", barrierId);
+			}
+
+			abortCheckpoint(new CheckpointDeclineOnCancellationBarrierException());
+		}
+
+		// else: ignore trailing (cancellation) barrier from an earlier checkpoint (obsolete now)
+	}
+
+	private void processEndOfPartition(int channelIndex) throws Exception {
+		closedChannels[channelIndex] = true;
+
+		if ((checkpointInProgress || alignmentInProgress) && pendingChannels[channelIndex]) {
+			// no chance to receive the barrier from this channel
+			abortCheckpoint(new InputEndOfStreamException());
+		}
+	}
+
+	private void beginCheckpoint(CheckpointBarrier barrier, int channelIndex) throws Exception {
+		currentCheckpointId = barrier.getId();
+		checkpointInProgress = true;
+		resetPendingChannels();
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Starting unaligned checkpoint {}.", currentCheckpointId);
+		}
+
+		inFlightRecordLog.startCheckpoint(currentCheckpointId);
+		onBarrier(barrier, channelIndex);
+
+		// the snapshot is taken right away, all data that is still to come before the
+		// barriers of the other channels is logged
+		notifyCheckpoint(barrier);
+	}
+
+	private void beginAlignment(CheckpointBarrier barrier, int channelIndex) throws Exception {
+		currentCheckpointId = barrier.getId();
+		alignmentInProgress = true;
+		resetPendingChannels();
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Starting stream alignment for savepoint {}.", currentCheckpointId);
+		}
+
+		onAlignedBarrier(barrier, channelIndex);
+	}
+
+	private void resetPendingChannels() {
+		startOfCheckpointTimestamp = System.nanoTime();
+
+		numPendingChannels = 0;
+		numPendingOvertakenBuffers = 0;
+		for (int i = 0; i < totalNumberOfInputChannels; i++) {
+			pendingChannels[i] = !closedChannels[i];
+			overtakenBuffers[i] = 0;
+			if (pendingChannels[i]) {
+				numPendingChannels++;
+			}
+		}
+	}
+
+	private void onAlignedBarrier(CheckpointBarrier barrier, int channelIndex) throws Exception {
+		if (pendingChannels[channelIndex]) {
+			pendingChannels[channelIndex] = false;
+			blockedChannels[channelIndex] = true;
+			numPendingChannels--;
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Received savepoint barrier from channel {}", channelIndex);
+			}
+		}
+		else {
+			throw new IOException("Stream corrupt: Repeated barrier for same checkpoint on input " + channelIndex);
+		}
+
+		if (numPendingChannels == 0) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Received all barriers, triggering savepoint {} at {}",
+						barrier.getId(), barrier.getTimestamp());
+			}
+
+			alignmentInProgress = false;
+			latestBarrierDelayNanos = System.nanoTime() - startOfCheckpointTimestamp;
+			startOfCheckpointTimestamp = 0L;
+
+			releaseBlocks();
+			notifyCheckpoint(barrier);
+		}
+	}
+
+	private void onBarrier(CheckpointBarrier barrier, int channelIndex) throws IOException {
+		if (pendingChannels[channelIndex]) {
+			pendingChannels[channelIndex] = false;
+			numPendingChannels--;
+
+			overtakenBuffers[channelIndex] = barrier.getNumOvertakenBuffers();
+			numPendingOvertakenBuffers += barrier.getNumOvertakenBuffers();
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Received barrier from channel {}, overtaking {} buffers",
+						channelIndex, barrier.getNumOvertakenBuffers());
+			}
+		}
+		else {
+			throw new IOException("Stream corrupt: Repeated barrier for same checkpoint on input " + channelIndex);
+		}
+	}
+
+	private void completeCheckpoint() throws Exception {
+		latestBarrierDelayNanos = System.nanoTime() - startOfCheckpointTimestamp;
+		startOfCheckpointTimestamp = 0L;
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Received all barriers and in-flight data of checkpoint {}", currentCheckpointId);
+		}
+
+		checkpointInProgress = false;
+		inFlightRecordLog.completeCheckpoint();
+	}
+
+	private void checkSizeLimit() throws Exception {
+		if (checkpointInProgress && maxInFlightBytes > 0 && inFlightRecordLog.getNumLoggedBytes() > maxInFlightBytes) {
+			// exceeded our limit - abort this checkpoint
+			LOG.info("Checkpoint {} aborted because in-flight record volume limit ({} bytes) exceeded",
+					currentCheckpointId, maxInFlightBytes);
+
+			abortCheckpoint(new InFlightRecordLimitExceededException(maxInFlightBytes));
+		}
+	}
+
+	private void abortCheckpoint(CheckpointDeclineException cause) throws Exception {
+		checkpointInProgress = false;
+		startOfCheckpointTimestamp = 0L;
+
+		if (alignmentInProgress) {
+			alignmentInProgress = false;
+			releaseBlocks();
+		}
+
+		for (int i = 0; i < totalNumberOfInputChannels; i++) {
+			pendingChannels[i] = false;
+			overtakenBuffers[i] = 0;
+		}
+		numPendingChannels = 0;
+		numPendingOvertakenBuffers = 0;
+
+		// the task took its snapshot already, so the log must not be left pending
+		inFlightRecordLog.abortCheckpoint(cause);
+		notifyAbort(currentCheckpointId, cause);
+	}
+
+	/**
+	 * Releases the blocks on all channels after the alignment of a savepoint. Makes sure the
+	 * just written data is the next to be consumed.
+	 */
+	private void releaseBlocks() throws IOException {
+		LOG.debug("End of stream alignment, feeding buffered data back");
+
+		for (int i = 0; i < totalNumberOfInputChannels; i++) {
+			blockedChannels[i] = false;
+		}
+
+		if (currentBuffered == null) {
+			// common case: no more buffered data
+			currentBuffered = bufferSpiller.rollOver();
+			if (currentBuffered != null) {
+				currentBuffered.open();
+			}
+		}
+		else {
+			// uncommon case: buffered data pending
+			// since we did not fully drain the previous sequence, we need to allocate a new buffer for this one
+			BufferSpiller.SpilledBufferOrEventSequence bufferedNow = bufferSpiller.rollOverWithNewBuffer();
+			if (bufferedNow != null) {
+				bufferedNow.open();
+				queuedBuffered.addFirst(currentBuffered);
+				currentBuffered = bufferedNow;
+			}
+		}
+	}
+
+	private void notifyCheckpoint(CheckpointBarrier checkpointBarrier) throws Exception {
+		if (toNotifyOnCheckpoint != null) {
+			CheckpointMetaData checkpointMetaData =
+					new CheckpointMetaData(checkpointBarrier.getId(), checkpointBarrier.getTimestamp());
+
+			// only savepoints buffer data while their barriers align
+			final boolean aligned = checkpointBarrier.getCheckpointOptions().getCheckpointType() == CheckpointType.SAVEPOINT;
+
+			CheckpointMetrics checkpointMetrics = new CheckpointMetrics()
+					.setBytesBufferedInAlignment(aligned && currentBuffered != null ? currentBuffered.size() : 0L)
+					.setAlignmentDurationNanos(aligned ? latestBarrierDelayNanos : 0L);
+
+			toNotifyOnCheckpoint.triggerCheckpointOnBarrier(
+				checkpointMetaData,
+				checkpointBarrier.getCheckpointOptions(),
+				checkpointMetrics);
+		}
+	}
+
+	private void notifyAbort(long checkpointId, CheckpointDeclineException cause) throws Exception {
+		if (toNotifyOnCheckpoint != null) {
+			toNotifyOnCheckpoint.abortCheckpointOnBarrier(checkpointId, cause);
+		}
+	}
+
+	@Override
+	public void registerCheckpointEventHandler(StatefulTask toNotifyOnCheckpoint) {
+		if (this.toNotifyOnCheckpoint == null) {
+			this.toNotifyOnCheckpoint = toNotifyOnCheckpoint;
+		}
+		else {
+			throw new IllegalStateException("UnalignedBarrierHandler already has a registered checkpoint notifyee");
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return currentBuffered == null;
+	}
+
+	@Override
+	public void cleanup() throws IOException {
+		if (checkpointInProgress) {
+			checkpointInProgress = false;
+			inFlightRecordLog.abortCheckpoint(new IllegalStateException("The input was closed."));
+		}
+
+		bufferSpiller.close();
+		if (currentBuffered != null) {
+			currentBuffered.cleanup();
+		}
+		for (BufferSpiller.SpilledBufferOrEventSequence seq : queuedBuffered) {
+			seq.cleanup();
+		}
+		queuedBuffered.clear();
+	}
+
+	// ------------------------------------------------------------------------
+	//  Properties
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Gets the ID defining the current pending, or just completed, checkpoint.
+	 *
+	 * @return The ID of the pending of completed checkpoint.
+	 */
+	public long getCurrentCheckpointId() {
+		return currentCheckpointId;
+	}
+
+	/**
+	 * Unaligned checkpoints never block any input. Instead, this reports the time between the
+	 * first and the last barrier of the current or latest checkpoint. For savepoints, this is the
+	 * time that the inputs were blocked for the alignment.
+	 */
+	@Override
+	public long getAlignmentDurationNanos() {
+		long start = this.startOfCheckpointTimestamp;
+		if (start <= 0) {
+			return latestBarrierDelayNanos;
+		} else {
+			return System.nanoTime() - start;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("last checkpoint: %d, pending barriers: %d, pending overtaken buffers: %d",
+				currentCheckpointId, numPendingChannels, numPendingOvertakenBuffers);
+	}
+}
@@ -0,0 +1,442 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.operators.windowing;
+
+import org.apache.commons.math3.util.ArithmeticUtils;
+
+import org.apache.flink.annotation.Internal;
+import org.apache.flink.api.common.functions.AggregateFunction;
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.state.AggregatingStateDescriptor;
+import org.apache.flink.api.common.state.AppendingState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.state.ReducingStateDescriptor;
+import org.apache.flink.api.common.state.StateDescriptor;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.runtime.state.KeyedStateBackend;
+import org.apache.flink.runtime.state.internal.InternalListState;
+import org.apache.flink.runtime.state.internal.InternalReducingState;
+import org.apache.flink.runtime.state.internal.InternalValueState;
+import org.apache.flink.streaming.api.windowing.assigners.SlidingEventTimeWindows;
+import org.apache.flink.streaming.api.windowing.assigners.SlidingProcessingTimeWindows;
+import org.apache.flink.streaming.api.windowing.assigners.WindowAssigner;
+import org.apache.flink.streaming.api.windowing.triggers.ContinuousEventTimeTrigger;
+import org.apache.flink.streaming.api.windowing.triggers.ContinuousProcessingTimeTrigger;
+import org.apache.flink.streaming.api.windowing.triggers.CountTrigger;
+import org.apache.flink.streaming.api.windowing.triggers.DeltaTrigger;
+import org.apache.flink.streaming.api.windowing.triggers.EventTimeTrigger;
+import org.apache.flink.streaming.api.windowing.triggers.ProcessingTimeTrigger;
+import org.apache.flink.streaming.api.windowing.triggers.Trigger;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores the contents of sliding time windows in non-overlapping panes.
+ *
+ * <p>A sliding window of size {@code size} and slide {@code slide} overlaps with
+ * {@code size / slide} other windows. Instead of adding each element to all windows that it is
+ * assigned to, the element is added once to the pane that contains its timestamp. The panes have
+ * the size of the greatest common divisor of window size and slide, so that each window consists
+ * of a whole number of panes. When a window is evaluated, the contents of its panes are combined.
+ *
+ * <p>This is the keyed state counterpart of the {@link AbstractKeyedTimePanes} of the aligned
+ * processing time window operators. The panes are namespaces of a keyed state, so they work with
+ * every state backend and are part of the regular checkpoints.
+ *
+ * <p>A pane is no longer needed once the last window that contains it has been cleaned up. As the
+ * windows are cleaned up in the order of their end timestamps, the panes are discarded with
+ * {@link #clearRetiredPanes(TimeWindow)} when the window with the same start timestamp is
+ * cleaned up.
+ *
+ * @param <IN> The type of the elements that are added to the panes.
+ * @param <ACC> The type of the combined contents of a window.
+ */
+@Internal
+public abstract class SlidingWindowPanes<IN, ACC> {
+
+	private final long size;
+
+	private final long slide;
+
+	private final long offset;
+
+	private final long paneSize;
+
+	SlidingWindowPanes(long size, long slide, long offset) {
+		this.size = size;
+		this.slide = slide;
+		this.offset = offset;
+		this.paneSize = ArithmeticUtils.gcd(size, slide);
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Returns the pane that contains the given timestamp.
+	 */
+	public TimeWindow getPane(long timestamp) {
+		final long start = TimeWindow.getWindowStartWithOffset(timestamp, offset, paneSize);
+		return new TimeWindow(start, start + paneSize);
+	}
+
+	/**
+	 * Returns all windows that contain the given pane, latest window first. These are the same
+	 * windows that the sliding window assigner assigns to an element of the pane.
+	 */
+	public List<TimeWindow> getWindows(TimeWindow pane) {
+		final List<TimeWindow> windows = new ArrayList<>((int) (size / slide));
+		final long lastStart = TimeWindow.getWindowStartWithOffset(pane.getStart(), offset, slide);
+
+		for (long start = lastStart; start > pane.getStart() - size; start -= slide) {
+			windows.add(new TimeWindow(start, start + size));
+		}
+
+		return windows;
+	}
+
+	/**
+	 * Adds the given value to the given pane of the current key.
+	 */
+	public abstract void add(TimeWindow pane, IN value) throws Exception;
+
+	/**
+	 * Returns the combined contents of all panes of the given window for the current key, or
+	 * {@code null} if all panes are empty.
+	 */
+	public abstract ACC get(TimeWindow window) throws Exception;
+
+	/**
+	 * Clears the panes of the current key that are not part of any window that ends after the
+	 * given window, which is about to be cleaned up.
+	 */
+	public void clearRetiredPanes(TimeWindow window) throws Exception {
+		final long end = window.getStart() + Math.min(slide, size);
+
+		for (long start = window.getStart(); start < end; start += paneSize) {
+			clear(new TimeWindow(start, start + paneSize));
+		}
+	}
+
+	protected abstract void clear(TimeWindow pane);
+
+	/**
+	 * Returns the panes of the given window, earliest pane first.
+	 */
+	protected List<TimeWindow> getPanes(TimeWindow window) {
+		final List<TimeWindow> panes = new ArrayList<>((int) (size / paneSize));
+
+		for (long start = window.getStart(); start < window.getEnd(); start += paneSize) {
+			panes.add(new TimeWindow(start, start + paneSize));
+		}
+
+		return panes;
+	}
+
+	// ------------------------------------------------------------------------
+	//  Factory
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Checks whether the contents of the windows of the given assigner with the given state can
+	 * be stored in panes.
+	 */
+	public static boolean isSupported(WindowAssigner<?, ?> windowAssigner, StateDescriptor<?, ?> windowStateDescriptor) {
+		return (windowAssigner instanceof SlidingEventTimeWindows || windowAssigner instanceof SlidingProcessingTimeWindows) &&
+			(windowStateDescriptor instanceof ReducingStateDescriptor ||
+				windowStateDescriptor instanceof AggregatingStateDescriptor ||
+				windowStateDescriptor instanceof ListStateDescriptor);
+	}
+
+	/**
+	 * Checks whether the given trigger can be used with panes. A trigger must not purge the
+	 * contents of a window, because the panes are shared by several windows. As the result of a
+	 * custom trigger is only known at runtime, only the built-in triggers that never purge are
+	 * supported.
+	 */
+	public static boolean isSupportedTrigger(Trigger<?, ?> trigger) {
+		final Class<?> triggerClass = trigger.getClass();
+
+		return triggerClass == EventTimeTrigger.class ||
+			triggerClass == ProcessingTimeTrigger.class ||
+			triggerClass == ContinuousEventTimeTrigger.class ||
+			triggerClass == ContinuousProcessingTimeTrigger.class ||
+			triggerClass == CountTrigger.class ||
+			triggerClass == DeltaTrigger.class;
+	}
+
+	/**
+	 * Creates the panes for the windows of the given sliding window assigner. The pane state is
+	 * created in the given keyed state backend.
+	 *
+	 * @param windowAssigner The sliding time window assigner
+	 * @param windowStateDescriptor The descriptor of the state that holds the window contents
+	 * @param keyedStateBackend The keyed state backend of the window operator
+	 */
+	@SuppressWarnings("unchecked")
+	public static <IN, ACC> SlidingWindowPanes<IN, ACC> create(
+			WindowAssigner<?, ?> windowAssigner,
+			StateDescriptor<? extends AppendingState<IN, ACC>, ?> windowStateDescriptor,
+			KeyedStateBackend<?> keyedStateBackend) throws Exception {
+
+		if (!isSupported(windowAssigner, windowStateDescriptor)) {
+			throw new UnsupportedOperationException("The contents of the windows of " + windowAssigner +
+				" with a " + windowStateDescriptor.getType() + " window state cannot be stored in panes.");
+		}
+
+		final long size;
+		final long slide;
+		final long offset;
+
+		if (windowAssigner instanceof SlidingEventTimeWindows) {
+			SlidingEventTimeWindows assigner = (SlidingEventTimeWindows) windowAssigner;
+			size = assigner.getSize();
+			slide = assigner.getSlide();
+			offset = assigner.getOffset();
+		} else {
+			SlidingProcessingTimeWindows assigner = (SlidingProcessingTimeWindows) windowAssigner;
+			size = assigner.getSize();
+			slide = assigner.getSlide();
+			offset = assigner.getOffset();
+		}
+
+		final TimeWindow.Serializer paneSerializer = new TimeWindow.Serializer();
+
+		if (windowStateDescriptor instanceof ReducingStateDescriptor) {
+			ReducingStateDescriptor<IN> stateDescriptor = (ReducingStateDescriptor<IN>) windowStateDescriptor;
+
+			InternalReducingState<TimeWindow, IN> state = (InternalReducingState<TimeWindow, IN>)
+				keyedStateBackend.getOrCreateKeyedState(paneSerializer, stateDescriptor);
+
+			return (SlidingWindowPanes<IN, ACC>) new ReducingPanes<>(
+				size, slide, offset, state, stateDescriptor.getReduceFunction(), stateDescriptor.getSerializer());
+		}
+		else if (windowStateDescriptor instanceof AggregatingStateDescriptor) {
+			return createAggregatingPanes(
+				size, slide, offset, (AggregatingStateDescriptor<IN, ?, ACC>) windowStateDescriptor, keyedStateBackend);
+		}
+		else {
+			ListStateDescriptor<IN> stateDescriptor = (ListStateDescriptor<IN>) windowStateDescriptor;
+
+			InternalListState<TimeWindow, IN> state = (InternalListState<TimeWindow, IN>)
+				keyedStateBackend.getOrCreateKeyedState(paneSerializer, stateDescriptor);
+
+			return (SlidingWindowPanes<IN, ACC>) new ListPanes<>(size, slide, offset, state);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <IN, PANE, OUT> SlidingWindowPanes<IN, OUT> createAggregatingPanes(
+			long size,
+			long slide,
+			long offset,
+			AggregatingStateDescriptor<IN, PANE, OUT> stateDescriptor,
+			KeyedStateBackend<?> keyedStateBackend) throws Exception {
+
+		// the panes hold the accumulators, which are only turned into a result for whole windows
+		ValueStateDescriptor<PANE> paneStateDescriptor =
+			new ValueStateDescriptor<>(stateDescriptor.getName(), stateDescriptor.getSerializer());
+
+		InternalValueState<TimeWindow, PANE> state = (InternalValueState<TimeWindow, PANE>)
+			keyedStateBackend.getOrCreateKeyedState(new TimeWindow.Serializer(), paneStateDescriptor);
+
+		return new AggregatingPanes<>(
+			size, slide, offset, state, stateDescriptor.getAggregateFunction(), stateDescriptor.getSerializer());
+	}
+
+	// ------------------------------------------------------------------------
+	//  Pane implementations
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Panes that hold the reduced value of their elements.
+	 */
+	private static final class ReducingPanes<T> extends SlidingWindowPanes<T, T> {
+
+		private final InternalReducingState<TimeWindow, T> state;
+
+		private final ReduceFunction<T> reduceFunction;
+
+		private final TypeSerializer<T> serializer;
+
+		ReducingPanes(
+				long size,
+				long slide,
+				long offset,
+				InternalReducingState<TimeWindow, T> state,
+				ReduceFunction<T> reduceFunction,
+				TypeSerializer<T> serializer) {
+
+			super(size, slide, offset);
+			this.state = state;
+			this.reduceFunction = reduceFunction;
+			this.serializer = serializer;
+		}
+
+		@Override
+		public void add(TimeWindow pane, T value) throws Exception {
+			state.setCurrentNamespace(pane);
+			state.add(value);
+		}
+
+		@Override
+		public T get(TimeWindow window) throws Exception {
+			T result = null;
+
+			for (TimeWindow pane : getPanes(window)) {
+				state.setCurrentNamespace(pane);
+				T value = state.get();
+
+				if (value == null) {
+					continue;
+				} else if (result == null) {
+					// the reduce function may modify its first argument, which must not be the stored value
+					result = serializer.copy(value);
+				} else {
+					result = reduceFunction.reduce(result, value);
+				}
+			}
+
+			return result;
+		}
+
+		@Override
+		protected void clear(TimeWindow pane) {
+			state.setCurrentNamespace(pane);
+			state.clear();
+		}
+	}
+
+	/**
+	 * Panes that hold the accumulator of an {@link AggregateFunction} for their elements.
+	 */
+	private static final class AggregatingPanes<IN, PANE, OUT> extends SlidingWindowPanes<IN, OUT> {
+
+		private final InternalValueState<TimeWindow, PANE> state;
+
+		private final AggregateFunction<IN, PANE, OUT> aggregateFunction;
+
+		private final TypeSerializer<PANE> serializer;
+
+		AggregatingPanes(
+				long size,
+				long slide,
+				long offset,
+				InternalValueState<TimeWindow, PANE> state,
+				AggregateFunction<IN, PANE, OUT> aggregateFunction,
+				TypeSerializer<PANE> serializer) {
+
+			super(size, slide, offset);
+			this.state = state;
+			this.aggregateFunction = aggregateFunction;
+			this.serializer = serializer;
+		}
+
+		@Override
+		public void add(TimeWindow pane, IN value) throws Exception {
+			state.setCurrentNamespace(pane);
+
+			PANE accumulator = state.value();
+			if (accumulator == null) {
+				accumulator = aggregateFunction.createAccumulator();
+			}
+
+			aggregateFunction.add(value, accumulator);
+			state.update(accumulator);
+		}
+
+		@Override
+		public OUT get(TimeWindow window) throws Exception {
+			PANE windowAccumulator = null;
+
+			for (TimeWindow pane : getPanes(window)) {
+				state.setCurrentNamespace(pane);
+				PANE accumulator = state.value();
+
+				if (accumulator == null) {
+					continue;
+				}
+
+				// merging may modify the accumulators, which must not be the stored ones
+				windowAccumulator = windowAccumulator == null ?
+					serializer.copy(accumulator) :
+					aggregateFunction.merge(windowAccumulator, serializer.copy(accumulator));
+			}
+
+			return windowAccumulator == null ? null : aggregateFunction.getResult(windowAccumulator);
+		}
+
+		@Override
+		protected void clear(TimeWindow pane) {
+			state.setCurrentNamespace(pane);
+			state.clear();
+		}
+	}
+
+	/**
+	 * Panes that hold the list of their elements.
+	 */
+	private static final class ListPanes<T> extends SlidingWindowPanes<T, Iterable<T>> {
+
+		private final InternalListState<TimeWindow, T> state;
+
+		ListPanes(long size, long slide, long offset, InternalListState<TimeWindow, T> state) {
+			super(size, slide, offset);
+			this.state = state;
+		}
+
+		@Override
+		public void add(TimeWindow pane, T value) throws Exception {
+			state.setCurrentNamespace(pane);
+			state.add(value);
+		}
+
+		@Override
+		public Iterable<T> get(TimeWindow window) throws Exception {
+			List<T> result = null;
+
+			for (TimeWindow pane : getPanes(window)) {
+				state.setCurrentNamespace(pane);
+				Iterable<T> elements = state.get();
+
+				if (elements == null) {
+					continue;
+				}
+
+				if (result == null) {
+					result = new ArrayList<>();
+				}
+
+				for (T element : elements) {
+					result.add(element);
+				}
+			}
+
+			return result;
+		}
+
+		@Override
+		protected void clear(TimeWindow pane) {
+			state.setCurrentNamespace(pane);
+			state.clear();
+		}
+	}
+}
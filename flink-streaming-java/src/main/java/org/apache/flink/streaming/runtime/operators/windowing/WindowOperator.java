@@ -61,6 +61,7 @@ import org.apache.flink.streaming.api.windowing.assigners.TumblingProcessingTime
 import org.apache.flink.streaming.api.windowing.assigners.WindowAssigner;
 import org.apache.flink.streaming.api.windowing.triggers.Trigger;
 import org.apache.flink.streaming.api.windowing.triggers.TriggerResult;
+import org.apache.flink.streaming.api.windowing.windows.TimeWindow;
 import org.apache.flink.streaming.api.windowing.windows.Window;
 import org.apache.flink.streaming.runtime.operators.windowing.functions.InternalWindowFunction;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
@@ -140,6 +141,12 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 	 */
 	private final OutputTag<IN> lateDataOutputTag;
 
+	/**
+	 * Whether the contents of sliding time windows are stored in non-overlapping panes, see
+	 * {@link SlidingWindowPanes}. Each element is then stored once instead of once per window.
+	 */
+	private final boolean panesEnabled;
+
 	// ------------------------------------------------------------------------
 	// State that is not checkpointed
 	// ------------------------------------------------------------------------
@@ -147,6 +154,9 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 	/** The state in which the window contents is stored. Each window is a namespace */
 	private transient InternalAppendingState<W, IN, ACC> windowState;
 
+	/** The panes in which the window contents is stored instead of the {@link #windowState}, if enabled */
+	private transient SlidingWindowPanes<IN, ACC> windowPanes;
+
 	/**
 	 * The {@link #windowState}, typed to merging state for merging windows.
 	 * Null if the window state is not mergeable.
@@ -230,6 +240,31 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 			OutputTag<IN> lateDataOutputTag,
 			LegacyWindowOperatorType legacyWindowOperatorType) {
 
+		this(windowAssigner, windowSerializer, keySelector, keySerializer, windowStateDescriptor,
+			windowFunction, trigger, allowedLateness, lateDataOutputTag, legacyWindowOperatorType, false);
+	}
+
+	/**
+	 * Creates a new {@code WindowOperator} based on the given policies and user functions.
+	 *
+	 * <p>If {@code panesEnabled} is set, the contents of the sliding time windows are stored in
+	 * non-overlapping panes. This requires a {@link SlidingWindowPanes#isSupported(WindowAssigner,
+	 * StateDescriptor) supported} window assigner and window state, and a {@link
+	 * SlidingWindowPanes#isSupportedTrigger(Trigger) supported} trigger that never purges.
+	 */
+	public WindowOperator(
+			WindowAssigner<? super IN, W> windowAssigner,
+			TypeSerializer<W> windowSerializer,
+			KeySelector<IN, K> keySelector,
+			TypeSerializer<K> keySerializer,
+			StateDescriptor<? extends AppendingState<IN, ACC>, ?> windowStateDescriptor,
+			InternalWindowFunction<ACC, OUT, K, W> windowFunction,
+			Trigger<? super IN, ? super W> trigger,
+			long allowedLateness,
+			OutputTag<IN> lateDataOutputTag,
+			LegacyWindowOperatorType legacyWindowOperatorType,
+			boolean panesEnabled) {
+
 		super(windowFunction);
 
 		checkArgument(!(windowAssigner instanceof BaseAlignedWindowAssigner),
@@ -242,6 +277,14 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 		checkArgument(windowStateDescriptor == null || windowStateDescriptor.isSerializerInitialized(),
 				"window state serializer is not properly initialized");
 
+		if (panesEnabled) {
+			checkArgument(SlidingWindowPanes.isSupported(windowAssigner, windowStateDescriptor),
+				"Panes can only be used with sliding time windows and a reducing, aggregating or list window state.");
+			checkArgument(SlidingWindowPanes.isSupportedTrigger(trigger),
+				"Panes can only be used with the built-in triggers that never purge, because the panes are " +
+					"shared by several windows. The trigger " + trigger + " is not supported.");
+		}
+
 		this.windowAssigner = checkNotNull(windowAssigner);
 		this.windowSerializer = checkNotNull(windowSerializer);
 		this.keySelector = checkNotNull(keySelector);
@@ -251,6 +294,7 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 		this.allowedLateness = allowedLateness;
 		this.lateDataOutputTag = lateDataOutputTag;
 		this.legacyWindowOperatorType = legacyWindowOperatorType;
+		this.panesEnabled = panesEnabled;
 
 		setChainingStrategy(ChainingStrategy.ALWAYS);
 	}
@@ -275,7 +319,10 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 
 		// create (or restore) the state that hold the actual window contents
 		// NOTE - the state may be null in the case of the overriding evicting window operator
-		if (windowStateDescriptor != null) {
+		if (panesEnabled) {
+			windowPanes = SlidingWindowPanes.create(windowAssigner, windowStateDescriptor, getKeyedStateBackend());
+		}
+		else if (windowStateDescriptor != null) {
 			windowState = (InternalAppendingState<W, IN, ACC>) getOrCreateKeyedState(windowSerializer, windowStateDescriptor);
 		}
 
@@ -330,9 +377,20 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 	}
 
 	@Override
+	@SuppressWarnings("unchecked")
 	public void processElement(StreamRecord<IN> element) throws Exception {
-		final Collection<W> elementWindows = windowAssigner.assignWindows(
-			element.getValue(), element.getTimestamp(), windowAssignerContext);
+		final Collection<W> elementWindows;
+		final TimeWindow elementPane;
+
+		if (windowPanes != null) {
+			// the windows of the pane are the windows that the sliding window assigner assigns
+			elementPane = windowPanes.getPane(getPaneTimestamp(element));
+			elementWindows = (Collection<W>) (Collection<?>) windowPanes.getWindows(elementPane);
+		} else {
+			elementPane = null;
+			elementWindows = windowAssigner.assignWindows(
+				element.getValue(), element.getTimestamp(), windowAssignerContext);
+		}
 
 		//if element is handled by none of assigned elementWindows
 		boolean isSkippedElement = true;
@@ -405,6 +463,8 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 			// need to make sure to update the merging state in state
 			mergingWindows.persist();
 		} else {
+			boolean isAddedToPane = false;
+
 			for (W window: elementWindows) {
 
 				// drop if the window is already late
@@ -413,8 +473,16 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 				}
 				isSkippedElement = false;
 
-				windowState.setCurrentNamespace(window);
-				windowState.add(element.getValue());
+				if (windowPanes != null) {
+					// the element is stored once, in the pane that all of its windows share
+					if (!isAddedToPane) {
+						windowPanes.add(elementPane, element.getValue());
+						isAddedToPane = true;
+					}
+				} else {
+					windowState.setCurrentNamespace(window);
+					windowState.add(element.getValue());
+				}
 
 				context.key = key;
 				context.window = window;
@@ -422,7 +490,7 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 				TriggerResult triggerResult = context.onElement(element);
 
 				if (triggerResult.isFire()) {
-					ACC contents = windowState.get();
+					ACC contents = windowPanes != null ? windowPanes.get((TimeWindow) window) : windowState.get();
 					if (contents == null) {
 						continue;
 					}
@@ -430,7 +498,7 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 				}
 
 				if (triggerResult.isPurge()) {
-					windowState.clear();
+					purgeWindowState();
 				}
 				registerCleanupTimer(window);
 			}
@@ -464,12 +532,16 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 				windowState.setCurrentNamespace(stateWindow);
 			}
 		} else {
-			windowState.setCurrentNamespace(context.window);
+			if (windowPanes == null) {
+				windowState.setCurrentNamespace(context.window);
+			}
 			mergingWindows = null;
 		}
 
 		ACC contents = null;
-		if (windowState != null) {
+		if (windowPanes != null) {
+			contents = windowPanes.get((TimeWindow) context.window);
+		} else if (windowState != null) {
 			contents = windowState.get();
 		}
 
@@ -479,7 +551,7 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 				emitWindowContents(context.window, contents);
 			}
 			if (triggerResult.isPurge()) {
-				windowState.clear();
+				purgeWindowState();
 			}
 		}
 
@@ -512,12 +584,16 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 				windowState.setCurrentNamespace(stateWindow);
 			}
 		} else {
-			windowState.setCurrentNamespace(context.window);
+			if (windowPanes == null) {
+				windowState.setCurrentNamespace(context.window);
+			}
 			mergingWindows = null;
 		}
 
 		ACC contents = null;
-		if (windowState != null) {
+		if (windowPanes != null) {
+			contents = windowPanes.get((TimeWindow) context.window);
+		} else if (windowState != null) {
 			contents = windowState.get();
 		}
 
@@ -527,7 +603,7 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 				emitWindowContents(context.window, contents);
 			}
 			if (triggerResult.isPurge()) {
-				windowState.clear();
+				purgeWindowState();
 			}
 		}
 
@@ -552,7 +628,11 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 			W window,
 			AppendingState<IN, ACC> windowState,
 			MergingWindowSet<W> mergingWindows) throws Exception {
-		windowState.clear();
+		if (windowPanes != null) {
+			windowPanes.clearRetiredPanes((TimeWindow) window);
+		} else {
+			windowState.clear();
+		}
 		context.clear();
 		if (mergingWindows != null) {
 			mergingWindows.retireWindow(window);
@@ -560,6 +640,33 @@ public class WindowOperator<K, IN, ACC, OUT, W extends Window>
 		}
 	}
 
+	/**
+	 * Clears the contents of the current window when the trigger purges the window. The triggers
+	 * that are allowed with panes never purge.
+	 */
+	private void purgeWindowState() {
+		if (windowPanes != null) {
+			throw new IllegalStateException("The trigger " + trigger + " purged a window, " +
+				"which is not supported if the window contents are stored in panes.");
+		}
+		windowState.clear();
+	}
+
+	/**
+	 * Returns the timestamp that determines the pane of the given element.
+	 */
+	private long getPaneTimestamp(StreamRecord<IN> element) {
+		if (!windowAssigner.isEventTime()) {
+			return windowAssignerContext.getCurrentProcessingTime();
+		} else if (element.getTimestamp() > Long.MIN_VALUE) {
+			return element.getTimestamp();
+		} else {
+			throw new RuntimeException("Record has Long.MIN_VALUE timestamp (= no timestamp marker). " +
+				"Is the time characteristic set to 'ProcessingTime', or did you forget to call " +
+				"'DataStream.assignTimestampsAndWatermarks(...)'?");
+		}
+	}
+
 	/**
 	 * Emits the contents of the given window using the {@link InternalWindowFunction}.
 	 */
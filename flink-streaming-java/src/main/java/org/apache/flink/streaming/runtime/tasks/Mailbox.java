@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.tasks;
+
+import org.apache.flink.annotation.Internal;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.apache.flink.util.Preconditions.checkNotNull;
+
+/**
+ * The mailbox of a {@link StreamTask}, through which other threads hand actions (mails) to the
+ * task, such as timer callbacks and checkpoint notifications.
+ *
+ * <p>While the task thread is processing input, it holds the checkpoint lock for a whole batch of
+ * records and runs the mails itself between two records. Threads that put mails in this phase do
+ * not contend for the checkpoint lock and never delay the record processing for longer than the
+ * mail takes. If the task thread is not processing (for example because it waits for input, or
+ * because it is the thread of a source task), the thread that puts the mail runs it itself while
+ * holding the checkpoint lock, like all actions did before the mailbox existed.
+ *
+ * <p>Mails are always run while holding the checkpoint lock, so they may safely interact with the
+ * operators of the task.
+ *
+ * <p>The task thread must not release the checkpoint lock while it is processing, because the
+ * mails would not be run in that time. Code that needs to wait on the checkpoint lock while
+ * processing must use {@link #waitOnCheckpointLock()}.
+ */
+@Internal
+public class Mailbox {
+
+	/** The checkpoint lock that is held while running the mails */
+	private final Object checkpointLock;
+
+	/** The mails that have not been run yet */
+	private final ConcurrentLinkedQueue<Mail> mails = new ConcurrentLinkedQueue<>();
+
+	/** Flag whether the task thread is processing and runs the mails itself */
+	private volatile boolean isProcessing;
+
+	public Mailbox(Object checkpointLock) {
+		this.checkpointLock = checkNotNull(checkpointLock);
+	}
+
+	public Object getCheckpointLock() {
+		return checkpointLock;
+	}
+
+	/**
+	 * Puts a mail into this mailbox. The mail is run either by the task thread between two records,
+	 * or directly by the calling thread if the task thread is not processing.
+	 *
+	 * <p>If the calling thread runs the mails, exceptions of the mails are thrown from this method.
+	 *
+	 * @param mail The mail to run while holding the checkpoint lock
+	 */
+	public void put(Mail mail) throws Exception {
+		mails.add(checkNotNull(mail));
+
+		// the task thread checks the mails after it stopped processing, so at least one of
+		// the two threads sees the mail
+		if (!isProcessing) {
+			synchronized (checkpointLock) {
+				processMails();
+			}
+		}
+	}
+
+	/**
+	 * Checks whether there are mails that have not been run yet.
+	 */
+	public boolean hasMail() {
+		return !mails.isEmpty();
+	}
+
+	/**
+	 * Runs all mails that have not been run yet. The caller must hold the checkpoint lock.
+	 */
+	public void processMails() throws Exception {
+		Mail mail;
+		while ((mail = mails.poll()) != null) {
+			mail.run();
+		}
+	}
+
+	/**
+	 * Marks that the task thread starts processing. From now on, the task thread runs the mails
+	 * until {@link #stopProcessing()} is called. The caller must hold the checkpoint lock.
+	 */
+	public void startProcessing() {
+		isProcessing = true;
+	}
+
+	/**
+	 * Marks that the task thread stops processing. The task thread has to call
+	 * {@link #processMails()} afterwards, before it releases the checkpoint lock, to run
+	 * the mails that were put while it was processing.
+	 */
+	public void stopProcessing() {
+		isProcessing = false;
+	}
+
+	public boolean isProcessing() {
+		return isProcessing;
+	}
+
+	/**
+	 * Waits on the checkpoint lock until it is notified. If the task thread is processing, the
+	 * mails are run by their senders while the task thread waits. The caller must hold the
+	 * checkpoint lock.
+	 */
+	public void waitOnCheckpointLock() throws Exception {
+		final boolean wasProcessing = isProcessing;
+
+		isProcessing = false;
+		try {
+			processMails();
+			checkpointLock.wait();
+		} finally {
+			isProcessing = wasProcessing;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * An action that is run by the mailbox while holding the checkpoint lock.
+	 */
+	public interface Mail {
+
+		void run() throws Exception;
+	}
+}
@@ -47,7 +47,9 @@ public class OneInputStreamTask<IN, OUT> extends StreamTask<OUT, OneInputStreamO
 					inSerializer,
 					this,
 					configuration.getCheckpointMode(),
-					getCheckpointLock(),
+					configuration.isUnalignedCheckpointsEnabled(),
+					getInFlightRecordLog(),
+					getMailbox(),
 					getEnvironment().getIOManager(),
 					getEnvironment().getTaskManagerInfo().getConfiguration(),
 					getStreamStatusMaintainer(),
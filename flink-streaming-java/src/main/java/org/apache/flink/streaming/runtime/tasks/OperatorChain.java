@@ -23,6 +23,7 @@ import org.apache.flink.api.common.typeutils.TypeSerializer;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.metrics.Counter;
 import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions.CheckpointType;
 import org.apache.flink.runtime.execution.Environment;
 import org.apache.flink.runtime.io.network.api.CancelCheckpointMarker;
 import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
@@ -78,6 +79,9 @@ public class OperatorChain<OUT, OP extends StreamOperator<OUT>> implements Strea
 
 	private final OP headOperator;
 
+	/** Flag whether checkpoint barriers may overtake the data that is queued in the outputs */
+	private final boolean unalignedCheckpoints;
+
 	/**
 	 * Current status of the input stream of the operator chain.
 	 * Watermarks explicitly generated by operators in the chain (i.e. timestamp
@@ -92,6 +96,7 @@ public class OperatorChain<OUT, OP extends StreamOperator<OUT>> implements Strea
 		final StreamConfig configuration = containingTask.getConfiguration();
 
 		headOperator = configuration.getStreamOperator(userCodeClassloader);
+		unalignedCheckpoints = configuration.isUnalignedCheckpointsEnabled();
 
 		// we read the chained configs, and the order of record writer registrations by output name
 		Map<Integer, StreamConfig> chainedConfigs = configuration.getTransitiveChainedTaskConfigs(userCodeClassloader);
@@ -169,8 +174,17 @@ public class OperatorChain<OUT, OP extends StreamOperator<OUT>> implements Strea
 	public void broadcastCheckpointBarrier(long id, long timestamp, CheckpointOptions checkpointOptions) throws IOException {
 		try {
 			CheckpointBarrier barrier = new CheckpointBarrier(id, timestamp, checkpointOptions);
-			for (RecordWriterOutput<?> streamOutput : streamOutputs) {
-				streamOutput.broadcastEvent(barrier);
+
+			// savepoints cannot hold in-flight data, so only regular checkpoints overtake the queued data
+			if (unalignedCheckpoints && checkpointOptions.getCheckpointType() == CheckpointType.FULL_CHECKPOINT) {
+				for (RecordWriterOutput<?> streamOutput : streamOutputs) {
+					streamOutput.broadcastCheckpointBarrier(barrier);
+				}
+			}
+			else {
+				for (RecordWriterOutput<?> streamOutput : streamOutputs) {
+					streamOutput.broadcastEvent(barrier);
+				}
 			}
 		}
 		catch (InterruptedException e) {
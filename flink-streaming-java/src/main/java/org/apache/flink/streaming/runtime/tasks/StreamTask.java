@@ -20,11 +20,15 @@ package org.apache.flink.streaming.runtime.tasks;
 import org.apache.flink.annotation.Internal;
 import org.apache.flink.api.common.accumulators.Accumulator;
 import org.apache.flink.api.common.typeutils.TypeSerializer;
+import org.apache.flink.configuration.CoreOptions;
 import org.apache.flink.core.fs.CloseableRegistry;
+import org.apache.flink.core.fs.FSDataInputStream;
 import org.apache.flink.runtime.checkpoint.CheckpointMetaData;
 import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
 import org.apache.flink.runtime.checkpoint.CheckpointOptions;
 import org.apache.flink.runtime.checkpoint.SubtaskState;
+import org.apache.flink.runtime.checkpoint.decline.CheckpointDeclineException;
+import org.apache.flink.runtime.concurrent.Future;
 import org.apache.flink.runtime.execution.CancelTaskException;
 import org.apache.flink.runtime.execution.Environment;
 import org.apache.flink.runtime.io.network.api.CancelCheckpointMarker;
@@ -43,6 +47,7 @@ import org.apache.flink.runtime.state.OperatorStateHandle;
 import org.apache.flink.runtime.state.StateBackend;
 import org.apache.flink.runtime.state.StateUtil;
 import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.TaskLocalStateStore;
 import org.apache.flink.runtime.state.TaskStateHandles;
 import org.apache.flink.runtime.taskmanager.DispatcherThreadFactory;
 import org.apache.flink.streaming.api.TimeCharacteristic;
@@ -50,6 +55,7 @@ import org.apache.flink.streaming.api.graph.StreamConfig;
 import org.apache.flink.streaming.api.operators.OperatorSnapshotResult;
 import org.apache.flink.streaming.api.operators.Output;
 import org.apache.flink.streaming.api.operators.StreamOperator;
+import org.apache.flink.streaming.runtime.io.InFlightRecordLog;
 import org.apache.flink.streaming.runtime.io.RecordWriterOutput;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
 import org.apache.flink.streaming.runtime.streamstatus.StreamStatusMaintainer;
@@ -60,12 +66,14 @@ import org.apache.flink.util.Preconditions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RunnableFuture;
@@ -107,7 +115,9 @@ import java.util.concurrent.atomic.AtomicReference;
  *
  * <p> The {@code StreamTask} has a lock object called {@code lock}. All calls to methods on a
  * {@code StreamOperator} must be synchronized on this lock object to ensure that no methods
- * are called concurrently.
+ * are called concurrently. Other threads hand their actions to the task through the task's
+ * {@link Mailbox}, which runs them while holding the lock, either in the task thread between
+ * two records or directly in the calling thread if the task thread is not processing records.
  *
  * @param <OUT>
  * @param <OP>
@@ -131,6 +141,9 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 	 */
 	private final Object lock = new Object();
 
+	/** The mailbox through which other threads hand actions to the task, run while holding the lock */
+	private final Mailbox mailbox = new Mailbox(lock);
+
 	/** the head operator that consumes the input streams of this task */
 	protected OP headOperator;
 
@@ -158,6 +171,13 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 
 	private TaskStateHandles restoreStateHandles;
 
+	/** Keeps local copies of the checkpointed state for recovery, null if local recovery is disabled */
+	private TaskLocalStateStore localStateStore;
+
+	/** The log for the records that are in flight towards this task during unaligned checkpoints,
+	 * null if the task has no network inputs */
+	private InFlightRecordLog inFlightRecordLog;
+
 	/** The currently active background materialization threads */
 	private final CloseableRegistry cancelables = new CloseableRegistry();
 
@@ -205,6 +225,7 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 	public final void invoke() throws Exception {
 
 		boolean disposed = false;
+		boolean localStateDisposed = false;
 		try {
 			// -------- Initialize ---------
 			LOG.debug("Initializing {}.", getName());
@@ -214,6 +235,7 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 			configuration = new StreamConfig(getTaskConfiguration());
 
 			stateBackend = createStateBackend();
+			localStateStore = createLocalStateStore();
 
 			accumulatorMap = getEnvironment().getAccumulatorRegistry().getUserMap();
 
@@ -222,7 +244,7 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 				ThreadFactory timerThreadFactory =
 					new DispatcherThreadFactory(TRIGGER_THREAD_GROUP, "Time Trigger for " + getName());
 
-				timerService = new SystemProcessingTimeService(this, getCheckpointLock(), timerThreadFactory);
+				timerService = new SystemProcessingTimeService(this, mailbox, timerThreadFactory);
 			}
 
 			operatorChain = new OperatorChain<>(this);
@@ -292,6 +314,12 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 			// still let the computation fail
 			tryDisposeAllOperators();
 			disposed = true;
+
+			// the task finished and will not be recovered, so its local state is not needed anymore
+			if (localStateStore != null) {
+				localStateStore.dispose();
+				localStateDisposed = true;
+			}
 		}
 		finally {
 			// clean up everything we initialized
@@ -318,6 +346,12 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 				LOG.error("Could not shut down async checkpoint threads", t);
 			}
 
+			// the task was cancelled or failed, and its local state is only kept for a new
+			// execution attempt of the subtask on this TaskManager
+			if (localStateStore != null && !localStateDisposed) {
+				localStateStore.release();
+			}
+
 			// we must! perform this cleanup
 			try {
 				cleanup();
@@ -484,6 +518,27 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 		return lock;
 	}
 
+	/**
+	 * Gets the mailbox through which actions of other threads are run while holding the
+	 * checkpoint lock.
+	 *
+	 * @return The mailbox of this task
+	 */
+	public Mailbox getMailbox() {
+		return mailbox;
+	}
+
+	/**
+	 * Gets the log for the records that are in flight towards this task during unaligned
+	 * checkpoints, and that were restored from such a checkpoint.
+	 */
+	InFlightRecordLog getInFlightRecordLog() {
+		if (inFlightRecordLog == null) {
+			inFlightRecordLog = new InFlightRecordLog();
+		}
+		return inFlightRecordLog;
+	}
+
 	public StreamConfig getConfiguration() {
 		return configuration;
 	}
@@ -625,21 +680,32 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 	}
 
 	@Override
-	public void notifyCheckpointComplete(long checkpointId) throws Exception {
-		synchronized (lock) {
-			if (isRunning) {
-				LOG.debug("Notification of complete checkpoint for task {}", getName());
+	public void notifyCheckpointComplete(final long checkpointId) throws Exception {
+		mailbox.put(new Mailbox.Mail() {
+			@Override
+			public void run() throws Exception {
+				notifyOperatorsOfCompletedCheckpoint(checkpointId);
+			}
+		});
+	}
 
-				for (StreamOperator<?> operator : operatorChain.getAllOperators()) {
-					if (operator != null) {
-						operator.notifyOfCompletedCheckpoint(checkpointId);
-					}
+	private void notifyOperatorsOfCompletedCheckpoint(long checkpointId) throws Exception {
+		if (isRunning) {
+			LOG.debug("Notification of complete checkpoint for task {}", getName());
+
+			for (StreamOperator<?> operator : operatorChain.getAllOperators()) {
+				if (operator != null) {
+					operator.notifyOfCompletedCheckpoint(checkpointId);
 				}
 			}
-			else {
-				LOG.debug("Ignoring notification of complete checkpoint for not-running task {}", getName());
+
+			if (localStateStore != null) {
+				localStateStore.confirmCheckpoint(checkpointId);
 			}
 		}
+		else {
+			LOG.debug("Ignoring notification of complete checkpoint for not-running task {}", getName());
+		}
 	}
 
 	private void checkpointState(
@@ -647,11 +713,15 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 			CheckpointOptions checkpointOptions,
 			CheckpointMetrics checkpointMetrics) throws Exception {
 
+		final Future<byte[]> futureInFlightRecords = inFlightRecordLog != null ?
+			inFlightRecordLog.getCheckpointResult(checkpointMetaData.getCheckpointId()) : null;
+
 		CheckpointingOperation checkpointingOperation = new CheckpointingOperation(
 			this,
 			checkpointMetaData,
 			checkpointOptions,
-			checkpointMetrics);
+			checkpointMetrics,
+			futureInFlightRecords);
 
 		checkpointingOperation.executeCheckpointing();
 	}
@@ -662,7 +732,13 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 
 		if (restored) {
 			checkRestorePreconditions(operatorChain.getChainLength());
+
+			if (localStateStore != null) {
+				restoreStateHandles = localStateStore.retrieveLocalCopies(restoreStateHandles);
+			}
+
 			initializeOperators(true);
+			restoreInFlightRecords(restoreStateHandles.getInFlightState());
 			restoreStateHandles = null; // free for GC
 		} else {
 			initializeOperators(false);
@@ -683,6 +759,28 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 		}
 	}
 
+	private void restoreInFlightRecords(StreamStateHandle inFlightState) throws IOException {
+		if (inFlightState == null) {
+			return;
+		}
+
+		FSDataInputStream in = inFlightState.openInputStream();
+		cancelables.registerClosable(in);
+		try {
+			ByteArrayOutputStream records = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				records.write(buffer, 0, read);
+			}
+
+			getInFlightRecordLog().setRestoredRecords(records.toByteArray());
+		} finally {
+			cancelables.unregisterClosable(in);
+			in.close();
+		}
+	}
+
 	private void checkRestorePreconditions(int operatorChainLength) {
 
 		ChainedStateHandle<StreamStateHandle> nonPartitionableOperatorStates =
@@ -723,6 +821,24 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 		}
 	}
 
+	private TaskLocalStateStore createLocalStateStore() {
+		Environment env = getEnvironment();
+
+		if (!env.getTaskManagerInfo().getConfiguration().getBoolean(CoreOptions.LOCAL_RECOVERY)) {
+			return null;
+		}
+
+		LOG.info("Keeping local copies of the checkpointed state of task {} for recovery.", getName());
+
+		return TaskLocalStateStore.forSubtask(
+				env.getIOManager().getSpillingDirectories(),
+				env.getJobID(),
+				env.getJobVertexId(),
+				env.getTaskInfo().getIndexOfThisSubtask(),
+				env.getTaskLocalStateCleaner(),
+				getUserCodeClassLoader());
+	}
+
 	public OperatorStateBackend createOperatorStateBackend(
 			StreamOperator<?> op, Collection<OperatorStateHandle> restoreStateHandles) throws Exception {
 
@@ -784,9 +900,11 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 	 * anything else.</b>
 	 */
 	public CheckpointStreamFactory createCheckpointStreamFactory(StreamOperator<?> operator) throws IOException {
-		return stateBackend.createStreamFactory(
+		CheckpointStreamFactory streamFactory = stateBackend.createStreamFactory(
 				getEnvironment().getJobID(),
 				createOperatorIdentifier(operator, configuration.getVertexID()));
+
+		return localStateStore != null ? localStateStore.createStreamFactory(streamFactory) : streamFactory;
 	}
 
 	public CheckpointStreamFactory createSavepointStreamFactory(StreamOperator<?> operator, String targetLocation) throws IOException {
@@ -854,6 +972,9 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 
 		private List<StreamStateHandle> nonPartitionedStateHandles;
 
+		/** The records that were in flight during an unaligned checkpoint, null for aligned checkpoints */
+		private final Future<byte[]> futureInFlightRecords;
+
 		private final CheckpointMetaData checkpointMetaData;
 		private final CheckpointMetrics checkpointMetrics;
 
@@ -866,11 +987,13 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 				StreamTask<?, ?> owner,
 				List<StreamStateHandle> nonPartitionedStateHandles,
 				List<OperatorSnapshotResult> snapshotInProgressList,
+				Future<byte[]> futureInFlightRecords,
 				CheckpointMetaData checkpointMetaData,
 				CheckpointMetrics checkpointMetrics,
 				long asyncStartNanos) {
 
 			this.owner = Preconditions.checkNotNull(owner);
+			this.futureInFlightRecords = futureInFlightRecords;
 			this.snapshotInProgressList = Preconditions.checkNotNull(snapshotInProgressList);
 			this.checkpointMetaData = Preconditions.checkNotNull(checkpointMetaData);
 			this.checkpointMetrics = Preconditions.checkNotNull(checkpointMetrics);
@@ -910,6 +1033,21 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 					}
 				}
 
+				final StreamStateHandle inFlightStateHandle;
+				try {
+					inFlightStateHandle = materializeInFlightRecords();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof CheckpointDeclineException) {
+						// the barrier handler declined the checkpoint already
+						LOG.debug("{} - checkpoint {} was declined while logging the in-flight records.",
+							owner.getName(), checkpointMetaData.getCheckpointId(), e.getCause());
+						cleanup();
+						return;
+					} else {
+						throw e;
+					}
+				}
+
 				final long asyncEndNanos = System.nanoTime();
 				final long asyncDurationMillis = (asyncEndNanos - asyncStartNanos) / 1_000_000;
 
@@ -929,7 +1067,8 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 						chainedOperatorStateBackend,
 						chainedOperatorStateStream,
 						keyedStateHandleBackend,
-						keyedStateHandleStream);
+						keyedStateHandleStream,
+						inFlightStateHandle);
 
 				if (asyncCheckpointState.compareAndSet(CheckpointingOperation.AsynCheckpointState.RUNNING,
 						CheckpointingOperation.AsynCheckpointState.COMPLETED)) {
@@ -983,15 +1122,47 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 			}
 		}
 
+		/**
+		 * Waits until all records that were in flight during an unaligned checkpoint are logged,
+		 * and writes them to a checkpoint stream.
+		 */
+		private StreamStateHandle materializeInFlightRecords() throws Exception {
+			if (futureInFlightRecords == null) {
+				return null;
+			}
+
+			final byte[] records = futureInFlightRecords.get();
+			if (records.length == 0) {
+				return null;
+			}
+
+			CheckpointStreamFactory.CheckpointStateOutputStream out = owner
+					.createCheckpointStreamFactory(owner.headOperator)
+					.createCheckpointStateOutputStream(
+							checkpointMetaData.getCheckpointId(),
+							checkpointMetaData.getTimestamp());
+
+			owner.cancelables.registerClosable(out);
+			try {
+				out.write(records);
+				return out.closeAndGetHandle();
+			} finally {
+				owner.cancelables.unregisterClosable(out);
+				out.close();
+			}
+		}
+
 		private SubtaskState createSubtaskStateFromSnapshotStateHandles(
 				ChainedStateHandle<StreamStateHandle> chainedNonPartitionedOperatorsState,
 				ChainedStateHandle<OperatorStateHandle> chainedOperatorStateBackend,
 				ChainedStateHandle<OperatorStateHandle> chainedOperatorStateStream,
 				KeyGroupsStateHandle keyedStateHandleBackend,
-				KeyGroupsStateHandle keyedStateHandleStream) {
+				KeyGroupsStateHandle keyedStateHandleStream,
+				StreamStateHandle inFlightStateHandle) {
 
 			boolean hasAnyState = keyedStateHandleBackend != null
 					|| keyedStateHandleStream != null
+					|| inFlightStateHandle != null
 					|| !chainedOperatorStateBackend.isEmpty()
 					|| !chainedOperatorStateStream.isEmpty()
 					|| !chainedNonPartitionedOperatorsState.isEmpty();
@@ -1004,7 +1175,8 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 					chainedOperatorStateBackend,
 					chainedOperatorStateStream,
 					keyedStateHandleBackend,
-					keyedStateHandleStream)
+					keyedStateHandleStream,
+					inFlightStateHandle)
 					: null;
 		}
 
@@ -1013,6 +1185,11 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 				LOG.debug("Cleanup AsyncCheckpointRunnable for checkpoint {} of {}.", checkpointMetaData.getCheckpointId(), owner.getName());
 				Exception exception = null;
 
+				// stop waiting for the in-flight records
+				if (futureInFlightRecords != null) {
+					futureInFlightRecords.cancel(true);
+				}
+
 				// clean up ongoing operator snapshot results and non partitioned state handles
 				for (OperatorSnapshotResult operatorSnapshotResult : snapshotInProgressList) {
 					if (operatorSnapshotResult != null) {
@@ -1057,6 +1234,9 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 		private final CheckpointOptions checkpointOptions;
 		private final CheckpointMetrics checkpointMetrics;
 
+		/** The future for the records that were in flight during the checkpoint, null if there are none */
+		private final Future<byte[]> futureInFlightRecords;
+
 		private final StreamOperator<?>[] allOperators;
 
 		private long startSyncPartNano;
@@ -1071,12 +1251,14 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 				StreamTask<?, ?> owner,
 				CheckpointMetaData checkpointMetaData,
 				CheckpointOptions checkpointOptions,
-				CheckpointMetrics checkpointMetrics) {
+				CheckpointMetrics checkpointMetrics,
+				Future<byte[]> futureInFlightRecords) {
 
 			this.owner = Preconditions.checkNotNull(owner);
 			this.checkpointMetaData = Preconditions.checkNotNull(checkpointMetaData);
 			this.checkpointOptions = Preconditions.checkNotNull(checkpointOptions);
 			this.checkpointMetrics = Preconditions.checkNotNull(checkpointMetrics);
+			this.futureInFlightRecords = futureInFlightRecords;
 			this.allOperators = owner.operatorChain.getAllOperators();
 			this.nonPartitionedStates = new ArrayList<>(allOperators.length);
 			this.snapshotInProgressList = new ArrayList<>(allOperators.length);
@@ -1175,6 +1357,7 @@ public abstract class StreamTask<OUT, OP extends StreamOperator<OUT>>
 					owner,
 					nonPartitionedStates,
 					snapshotInProgressList,
+					futureInFlightRecords,
 					checkpointMetaData,
 					checkpointMetrics,
 					startAsyncPartNano);
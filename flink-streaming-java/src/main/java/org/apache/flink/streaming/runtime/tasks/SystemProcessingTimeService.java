@@ -49,8 +49,8 @@ public class SystemProcessingTimeService extends ProcessingTimeService {
 	/** The containing task that owns this time service provider. */
 	private final AsyncExceptionHandler task;
 
-	/** The lock that timers acquire upon triggering */
-	private final Object checkpointLock;
+	/** The mailbox through which the timers are triggered while holding the checkpoint lock */
+	private final Mailbox mailbox;
 
 	/** The executor service that schedules and calls the triggers of this task*/
 	private final ScheduledThreadPoolExecutor timerService;
@@ -67,8 +67,16 @@ public class SystemProcessingTimeService extends ProcessingTimeService {
 			Object checkpointLock,
 			ThreadFactory threadFactory) {
 
+		this(task, new Mailbox(checkpointLock), threadFactory);
+	}
+
+	public SystemProcessingTimeService(
+			AsyncExceptionHandler task,
+			Mailbox mailbox,
+			ThreadFactory threadFactory) {
+
 		this.task = checkNotNull(task);
-		this.checkpointLock = checkNotNull(checkpointLock);
+		this.mailbox = checkNotNull(mailbox);
 
 		this.status = new AtomicInteger(STATUS_ALIVE);
 
@@ -107,7 +115,7 @@ public class SystemProcessingTimeService extends ProcessingTimeService {
 		// that way we save unnecessary volatile accesses for each timer
 		try {
 			return timerService.schedule(
-					new TriggerTask(task, checkpointLock, target, timestamp), delay, TimeUnit.MILLISECONDS);
+					new TriggerTask(task, mailbox, target, timestamp), delay, TimeUnit.MILLISECONDS);
 		}
 		catch (RejectedExecutionException e) {
 			final int status = this.status.get();
@@ -132,7 +140,7 @@ public class SystemProcessingTimeService extends ProcessingTimeService {
 		// that way we save unnecessary volatile accesses for each timer
 		try {
 			return timerService.scheduleAtFixedRate(
-				new RepeatedTriggerTask(task, checkpointLock, callback, nextTimestamp, period),
+				new RepeatedTriggerTask(task, mailbox, callback, nextTimestamp, period),
 				initialDelay,
 				period,
 				TimeUnit.MILLISECONDS);
@@ -199,27 +207,39 @@ public class SystemProcessingTimeService extends ProcessingTimeService {
 	 */
 	private static final class TriggerTask implements Runnable {
 
-		private final Object lock;
+		private final Mailbox mailbox;
 		private final ProcessingTimeCallback target;
 		private final long timestamp;
 		private final AsyncExceptionHandler exceptionHandler;
 
-		TriggerTask(AsyncExceptionHandler exceptionHandler, final Object lock, ProcessingTimeCallback target, long timestamp) {
+		TriggerTask(AsyncExceptionHandler exceptionHandler, final Mailbox mailbox, ProcessingTimeCallback target, long timestamp) {
 			this.exceptionHandler = exceptionHandler;
-			this.lock = lock;
+			this.mailbox = mailbox;
 			this.target = target;
 			this.timestamp = timestamp;
 		}
 
 		@Override
 		public void run() {
-			synchronized (lock) {
-				try {
-					target.onProcessingTime(timestamp);
-				} catch (Throwable t) {
-					TimerException asyncException = new TimerException(t);
-					exceptionHandler.handleAsyncException("Caught exception while processing timer.", asyncException);
-				}
+			try {
+				mailbox.put(new Mailbox.Mail() {
+					@Override
+					public void run() {
+						trigger();
+					}
+				});
+			} catch (Throwable t) {
+				TimerException asyncException = new TimerException(t);
+				exceptionHandler.handleAsyncException("Caught exception while processing timer.", asyncException);
+			}
+		}
+
+		private void trigger() {
+			try {
+				target.onProcessingTime(timestamp);
+			} catch (Throwable t) {
+				TimerException asyncException = new TimerException(t);
+				exceptionHandler.handleAsyncException("Caught exception while processing timer.", asyncException);
 			}
 		}
 	}
@@ -228,7 +248,7 @@ public class SystemProcessingTimeService extends ProcessingTimeService {
 	 * Internal task which is repeatedly called by the processing time service.
 	 */
 	private static final class RepeatedTriggerTask implements Runnable {
-		private final Object lock;
+		private final Mailbox mailbox;
 		private final ProcessingTimeCallback target;
 		private final long period;
 		private final AsyncExceptionHandler exceptionHandler;
@@ -237,11 +257,11 @@ public class SystemProcessingTimeService extends ProcessingTimeService {
 
 		private RepeatedTriggerTask(
 				AsyncExceptionHandler exceptionHandler,
-				Object lock,
+				Mailbox mailbox,
 				ProcessingTimeCallback target,
 				long nextTimestamp,
 				long period) {
-			this.lock = Preconditions.checkNotNull(lock);
+			this.mailbox = Preconditions.checkNotNull(mailbox);
 			this.target = Preconditions.checkNotNull(target);
 			this.period = period;
 			this.exceptionHandler = Preconditions.checkNotNull(exceptionHandler);
@@ -251,12 +271,26 @@ public class SystemProcessingTimeService extends ProcessingTimeService {
 
 		@Override
 		public void run() {
+			final long timestamp = nextTimestamp;
+
 			try {
-				synchronized (lock) {
-					target.onProcessingTime(nextTimestamp);
-				}
+				mailbox.put(new Mailbox.Mail() {
+					@Override
+					public void run() {
+						trigger(timestamp);
+					}
+				});
+			} catch (Throwable t) {
+				TimerException asyncException = new TimerException(t);
+				exceptionHandler.handleAsyncException("Caught exception while processing repeated timer task.", asyncException);
+			}
 
-				nextTimestamp += period;
+			nextTimestamp += period;
+		}
+
+		private void trigger(long timestamp) {
+			try {
+				target.onProcessingTime(timestamp);
 			} catch (Throwable t) {
 				TimerException asyncException = new TimerException(t);
 				exceptionHandler.handleAsyncException("Caught exception while processing repeated timer task.", asyncException);
@@ -70,7 +70,9 @@ public class TwoInputStreamTask<IN1, IN2, OUT> extends StreamTask<OUT, TwoInputS
 				inputDeserializer1, inputDeserializer2,
 				this,
 				configuration.getCheckpointMode(),
-				getCheckpointLock(),
+				configuration.isUnalignedCheckpointsEnabled(),
+				getInFlightRecordLog(),
+				getMailbox(),
 				getEnvironment().getIOManager(),
 				getEnvironment().getTaskManagerInfo().getConfiguration(),
 				getStreamStatusMaintainer(),
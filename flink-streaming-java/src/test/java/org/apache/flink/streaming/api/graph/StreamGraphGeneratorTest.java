@@ -29,9 +29,11 @@ import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
 import org.apache.flink.streaming.api.functions.co.CoMapFunction;
 import org.apache.flink.streaming.api.functions.sink.DiscardingSink;
 import org.apache.flink.streaming.api.operators.AbstractStreamOperator;
+import org.apache.flink.streaming.api.operators.KeyGroupVerifyingOperator;
 import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
 import org.apache.flink.streaming.api.operators.Output;
 import org.apache.flink.streaming.api.operators.OutputTypeConfigurable;
+import org.apache.flink.streaming.api.operators.StreamOperator;
 import org.apache.flink.streaming.api.operators.TwoInputStreamOperator;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.partitioner.BroadcastPartitioner;
@@ -417,6 +419,43 @@ public class StreamGraphGeneratorTest {
 		StreamPartitioner<?> streamPartitioner2 = keyedResultNode.getInEdges().get(1).getPartitioner();
 	}
 
+	/**
+	 * Tests that the key group verifier of a stream that is reinterpreted as keyed uses the
+	 * maximum parallelism of the keyed operator that consumes the stream.
+	 */
+	@Test
+	public void testMaxParallelismOfKeyGroupVerifier() {
+		int keyedMaxParallelism = 17;
+
+		StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+		env.setParallelism(4);
+		env.getConfig().setMaxParallelism(42);
+
+		DataStream<Integer> source = env.fromElements(1, 2, 3);
+
+		DataStream<Integer> keyedResult = source.reinterpretAsKeyedStream(
+			new KeySelector<Integer, Integer>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public Integer getKey(Integer value) throws Exception {
+					return value;
+				}
+			},
+			BasicTypeInfo.INT_TYPE_INFO,
+			true).map(new NoOpIntMap()).setMaxParallelism(keyedMaxParallelism);
+
+		keyedResult.addSink(new DiscardingSink<Integer>());
+
+		StreamGraph graph = env.getStreamGraph();
+
+		StreamNode keyedResultNode = graph.getStreamNode(keyedResult.getId());
+		StreamOperator<?> verifier = keyedResultNode.getInEdges().get(0).getSourceVertex().getOperator();
+
+		assertTrue(verifier instanceof KeyGroupVerifyingOperator);
+		assertEquals(keyedMaxParallelism, ((KeyGroupVerifyingOperator<?, ?>) verifier).getMaxParallelism());
+	}
+
 	private static class OutputTypeConfigurableOperationWithTwoInputs
 			extends AbstractStreamOperator<Integer>
 			implements TwoInputStreamOperator<Integer, Integer, Integer>, OutputTypeConfigurable<Integer> {
@@ -22,6 +22,8 @@ import org.apache.flink.api.common.functions.FlatMapFunction;
 import org.apache.flink.api.common.functions.MapFunction;
 import org.apache.flink.api.common.functions.ReduceFunction;
 import org.apache.flink.api.common.operators.ResourceSpec;
+import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.flink.api.java.functions.KeySelector;
 import org.apache.flink.api.java.tuple.Tuple2;
 import org.apache.flink.runtime.io.network.partition.ResultPartitionType;
 import org.apache.flink.runtime.jobgraph.JobGraph;
@@ -31,6 +33,7 @@ import org.apache.flink.streaming.api.datastream.DataStream;
 import org.apache.flink.streaming.api.datastream.DataStreamSink;
 import org.apache.flink.streaming.api.datastream.IterativeStream;
 import org.apache.flink.streaming.api.datastream.SingleOutputStreamOperator;
+import org.apache.flink.streaming.api.environment.CheckpointConfig;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
 import org.apache.flink.streaming.api.functions.sink.SinkFunction;
 import org.apache.flink.streaming.api.functions.source.ParallelSourceFunction;
@@ -46,6 +49,7 @@ import java.util.Map;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 @SuppressWarnings("serial")
 public class StreamingJobGraphGeneratorTest extends TestLogger {
@@ -122,6 +126,28 @@ public class StreamingJobGraphGeneratorTest extends TestLogger {
 		assertEquals(Long.MAX_VALUE, snapshottingSettings.getCheckpointInterval());
 	}
 
+	/**
+	 * Tests that unaligned checkpoints cannot be combined with externalized checkpoints, whose
+	 * format cannot hold the in-flight records.
+	 */
+	@Test
+	public void testUnalignedCheckpointsWithExternalizedCheckpoints() throws Exception {
+		StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+		env.enableCheckpointing(1000L);
+		env.getCheckpointConfig().enableUnalignedCheckpoints(true);
+		env.getCheckpointConfig().enableExternalizedCheckpoints(
+				CheckpointConfig.ExternalizedCheckpointCleanup.RETAIN_ON_CANCELLATION);
+
+		env.fromElements(1, 2, 3).print();
+
+		try {
+			env.getStreamGraph().getJobGraph();
+			fail("Unaligned checkpoints should not be allowed with externalized checkpoints.");
+		} catch (IllegalStateException expected) {
+			// expected
+		}
+	}
+
 	/**
 	 * Verifies that the chain start/end is correctly set.
 	 */
@@ -161,6 +187,54 @@ public class StreamingJobGraphGeneratorTest extends TestLogger {
 		assertTrue(printConfig.isChainEnd());
 	}
 
+	/**
+	 * Verifies that a keyed operator on a stream that is reinterpreted as keyed is chained to its
+	 * input, and that it still gets the key selector for its keyed state.
+	 */
+	@Test
+	public void testReinterpretedKeyedStreamIsChained() throws Exception {
+		StreamExecutionEnvironment env = StreamExecutionEnvironment.getExecutionEnvironment();
+		env.setParallelism(4);
+
+		// CHAIN(Source -> Key Group Verification -> Keyed Reduce -> Sink)
+		env.generateSequence(1L, 100L)
+			.reinterpretAsKeyedStream(
+				new KeySelector<Long, Long>() {
+					@Override
+					public Long getKey(Long value) throws Exception {
+						return value;
+					}
+				},
+				BasicTypeInfo.LONG_TYPE_INFO,
+				true)
+			.reduce(new ReduceFunction<Long>() {
+				@Override
+				public Long reduce(Long value1, Long value2) throws Exception {
+					return value1 + value2;
+				}
+			})
+			.addSink(new SinkFunction<Long>() {
+				@Override
+				public void invoke(Long value) throws Exception {
+				}
+			});
+
+		StreamGraph streamGraph = env.getStreamGraph();
+
+		boolean foundReduce = false;
+		for (StreamNode node : streamGraph.getStreamNodes()) {
+			if (node.getOperatorName().equals("Keyed Reduce")) {
+				assertTrue(node.getStatePartitioner1() != null);
+				foundReduce = true;
+			}
+		}
+		assertTrue(foundReduce);
+
+		JobGraph jobGraph = new StreamingJobGraphGenerator(streamGraph, 4 /* default parallelism */).createJobGraph();
+
+		assertEquals(1, jobGraph.getNumberOfVertices());
+	}
+
 	/**
 	 * Verifies that the resources are merged correctly for chained operators (covers source and sink cases)
 	 * when generating job graph
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.runtime.state.KeyGroupRange;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link InternalTimerHeap}.
+ */
+public class InternalTimerHeapTest {
+
+	private static final int MAX_PARALLELISM = 128;
+
+	@Test
+	public void testSetSemantics() {
+		InternalTimerHeap<Integer, String> heap = createHeap();
+
+		assertTrue(heap.add(new InternalTimer<>(10L, 1, "a")));
+		assertFalse(heap.add(new InternalTimer<>(10L, 1, "a")));
+		assertTrue(heap.add(new InternalTimer<>(10L, 1, "b")));
+		assertEquals(2, heap.size());
+
+		assertTrue(heap.remove(new InternalTimer<>(10L, 1, "a")));
+		assertFalse(heap.remove(new InternalTimer<>(10L, 1, "a")));
+		assertEquals(1, heap.size());
+
+		int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(1, MAX_PARALLELISM);
+		assertEquals(1, heap.getTimersForKeyGroup(keyGroup).size());
+	}
+
+	/**
+	 * Randomly adds and removes timers and checks that the timers are polled in timestamp order.
+	 */
+	@Test
+	public void testRandomAddRemovePoll() {
+		Random random = new Random(42L);
+		InternalTimerHeap<Integer, String> heap = createHeap();
+		Set<InternalTimer<Integer, String>> expected = new HashSet<>();
+		List<InternalTimer<Integer, String>> added = new ArrayList<>();
+
+		for (int i = 0; i < 10000; ++i) {
+			InternalTimer<Integer, String> timer =
+					new InternalTimer<>(random.nextInt(1000), random.nextInt(500), "ns");
+
+			assertEquals(expected.add(timer), heap.add(timer));
+			added.add(timer);
+
+			// remove an equal copy of a random timer, like the timer service does
+			if (random.nextInt(3) == 0) {
+				InternalTimer<Integer, String> toRemove = added.get(random.nextInt(added.size()));
+				InternalTimer<Integer, String> copy =
+						new InternalTimer<>(toRemove.getTimestamp(), toRemove.getKey(), toRemove.getNamespace());
+
+				assertEquals(expected.remove(copy), heap.remove(copy));
+			}
+
+			assertEquals(expected.size(), heap.size());
+		}
+
+		long lastTimestamp = Long.MIN_VALUE;
+		InternalTimer<Integer, String> timer;
+
+		while ((timer = heap.poll()) != null) {
+			assertTrue(timer.getTimestamp() >= lastTimestamp);
+			assertTrue(expected.remove(timer));
+			lastTimestamp = timer.getTimestamp();
+		}
+
+		assertTrue(expected.isEmpty());
+		assertTrue(heap.isEmpty());
+		assertNull(heap.peek());
+
+		for (Set<InternalTimer<Integer, String>> timers : heap.getTimersPerKeyGroup()) {
+			assertTrue(timers == null || timers.isEmpty());
+		}
+	}
+
+	/**
+	 * Tests that the timers handed out for a snapshot do not change when the heap changes afterwards.
+	 */
+	@Test
+	public void testSnapshotIsNotChangedByLaterChanges() {
+		InternalTimerHeap<Integer, String> heap = createHeap();
+		int keyGroup = KeyGroupRangeAssignment.assignToKeyGroup(1, MAX_PARALLELISM);
+
+		heap.add(new InternalTimer<>(10L, 1, "a"));
+		heap.add(new InternalTimer<>(20L, 1, "b"));
+
+		Collection<InternalTimer<Integer, String>> snapshot = heap.getTimersForKeyGroupSnapshot(keyGroup);
+		Set<InternalTimer<Integer, String>> expected = new HashSet<>(snapshot);
+
+		heap.add(new InternalTimer<>(30L, 1, "c"));
+		heap.remove(new InternalTimer<>(20L, 1, "b"));
+		assertEquals(new InternalTimer<>(10L, 1, "a"), heap.poll());
+
+		assertEquals(expected, new HashSet<>(snapshot));
+		assertEquals(1, heap.getTimersForKeyGroup(keyGroup).size());
+		assertTrue(heap.getTimersForKeyGroup(keyGroup).contains(new InternalTimer<>(30L, 1, "c")));
+
+		// the next snapshot sees the changes
+		assertEquals(heap.getTimersForKeyGroup(keyGroup), new HashSet<>(heap.getTimersForKeyGroupSnapshot(keyGroup)));
+	}
+
+	private static InternalTimerHeap<Integer, String> createHeap() {
+		return new InternalTimerHeap<>(1, new KeyGroupRange(0, MAX_PARALLELISM - 1), MAX_PARALLELISM);
+	}
+}
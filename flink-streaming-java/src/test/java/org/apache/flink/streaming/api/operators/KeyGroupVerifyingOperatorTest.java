@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.runtime.state.KeyGroupRangeAssignment;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.TestHarnessUtil;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Tests for {@link KeyGroupVerifyingOperator}.
+ */
+public class KeyGroupVerifyingOperatorTest {
+
+	private static final int MAX_PARALLELISM = 128;
+
+	private static final int PARALLELISM = 2;
+
+	@Test
+	public void testForwardsElementsOfOwnKeyGroups() throws Exception {
+		OneInputStreamOperatorTestHarness<Integer, Integer> testHarness = createTestHarness(0);
+
+		testHarness.open();
+
+		int key = findKeyForSubtask(0);
+		testHarness.processElement(new StreamRecord<>(key, 1L));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new StreamRecord<>(key, 1L));
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	@Test
+	public void testFailsOnElementOfOtherSubtask() throws Exception {
+		OneInputStreamOperatorTestHarness<Integer, Integer> testHarness = createTestHarness(0);
+
+		testHarness.open();
+
+		try {
+			testHarness.processElement(new StreamRecord<>(findKeyForSubtask(1), 1L));
+			Assert.fail("Expected an exception for an element of another subtask.");
+		} catch (IllegalStateException expected) {
+			// expected
+		}
+
+		testHarness.close();
+	}
+
+	// Utilities
+
+	private static OneInputStreamOperatorTestHarness<Integer, Integer> createTestHarness(int subtaskIndex) throws Exception {
+		return new OneInputStreamOperatorTestHarness<>(
+				new KeyGroupVerifyingOperator<>(new IdentityKeySelector()),
+				MAX_PARALLELISM,
+				PARALLELISM,
+				subtaskIndex);
+	}
+
+	private static int findKeyForSubtask(int subtaskIndex) {
+		int key = 0;
+		while (KeyGroupRangeAssignment.assignKeyToParallelOperator(key, MAX_PARALLELISM, PARALLELISM) != subtaskIndex) {
+			++key;
+		}
+		return key;
+	}
+
+	private static class IdentityKeySelector implements KeySelector<Integer, Integer> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Integer getKey(Integer value) throws Exception {
+			return value;
+		}
+	}
+}
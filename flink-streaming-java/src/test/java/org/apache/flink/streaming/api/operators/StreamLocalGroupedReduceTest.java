@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators;
+
+import org.apache.flink.api.common.functions.ReduceFunction;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.runtime.tasks.OperatorStateHandles;
+import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.TestHarnessUtil;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Tests for {@link StreamLocalGroupedReduce}. These test that:
+ *
+ * <ul>
+ *     <li>Elements with the same key and timestamp are combined until the buffer is full</li>
+ *     <li>Elements with different timestamps are not combined</li>
+ *     <li>The buffer is flushed after the maximum buffer time and before watermarks</li>
+ *     <li>The buffered partial aggregates are snapshotted and restored</li>
+ * </ul>
+ */
+public class StreamLocalGroupedReduceTest {
+
+	@Test
+	public void testFlushOnFullBuffer() throws Exception {
+		OneInputStreamOperatorTestHarness<Integer, Integer> testHarness = createTestHarness(2, 1000L);
+
+		testHarness.open();
+
+		testHarness.processElement(new StreamRecord<>(2, 1L));
+		testHarness.processElement(new StreamRecord<>(4, 1L));
+		testHarness.processElement(new StreamRecord<>(6, 1L));
+
+		Assert.assertTrue(testHarness.getOutput().isEmpty());
+
+		// the second key fills the buffer
+		testHarness.processElement(new StreamRecord<>(1, 4L));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new StreamRecord<>(12, 1L));
+		expectedOutput.add(new StreamRecord<>(1, 4L));
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	@Test
+	public void testFlushOnWatermark() throws Exception {
+		OneInputStreamOperatorTestHarness<Integer, Integer> testHarness = createTestHarness(10, 1000L);
+
+		testHarness.open();
+
+		testHarness.processElement(new StreamRecord<>(2, 1L));
+		testHarness.processElement(new StreamRecord<>(3, 2L));
+		testHarness.processElement(new StreamRecord<>(5, 2L));
+		testHarness.processWatermark(new Watermark(5L));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new StreamRecord<>(2, 1L));
+		expectedOutput.add(new StreamRecord<>(8, 2L));
+		expectedOutput.add(new Watermark(5L));
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	@Test
+	public void testFlushAfterBufferTime() throws Exception {
+		OneInputStreamOperatorTestHarness<Integer, Integer> testHarness = createTestHarness(10, 100L);
+
+		testHarness.open();
+		testHarness.setProcessingTime(0L);
+
+		testHarness.processElement(new StreamRecord<>(2, 1L));
+		testHarness.setProcessingTime(50L);
+		testHarness.processElement(new StreamRecord<>(4, 1L));
+
+		testHarness.setProcessingTime(99L);
+		Assert.assertTrue(testHarness.getOutput().isEmpty());
+
+		testHarness.setProcessingTime(100L);
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new StreamRecord<>(6, 1L));
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	@Test
+	public void testSnapshotAndRestore() throws Exception {
+		OneInputStreamOperatorTestHarness<Integer, Integer> testHarness = createTestHarness(10, 1000L);
+
+		testHarness.open();
+
+		testHarness.processElement(new StreamRecord<>(2, 1L));
+		testHarness.processElement(new StreamRecord<>(4, 1L));
+
+		OperatorStateHandles snapshot = testHarness.snapshot(0L, 0L);
+
+		// the buffer is not flushed by the checkpoint
+		Assert.assertTrue(testHarness.getOutput().isEmpty());
+
+		testHarness.close();
+
+		testHarness = createTestHarness(10, 1000L);
+		testHarness.setup();
+		testHarness.initializeState(snapshot);
+		testHarness.open();
+
+		testHarness.processElement(new StreamRecord<>(6, 1L));
+		testHarness.close();
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new StreamRecord<>(12, 1L));
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+	}
+
+	@Test
+	public void testNoCombiningOfDifferentTimestamps() throws Exception {
+		OneInputStreamOperatorTestHarness<Integer, Integer> testHarness = createTestHarness(10, 1000L);
+
+		testHarness.open();
+
+		// the elements might belong to different event time windows downstream
+		testHarness.processElement(new StreamRecord<>(2, 1L));
+		testHarness.processElement(new StreamRecord<>(4, 2L));
+		testHarness.processElement(new StreamRecord<>(6, 1L));
+		testHarness.processWatermark(new Watermark(5L));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new StreamRecord<>(8, 1L));
+		expectedOutput.add(new StreamRecord<>(4, 2L));
+		expectedOutput.add(new Watermark(5L));
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	// Utilities
+
+	private static OneInputStreamOperatorTestHarness<Integer, Integer> createTestHarness(
+			int maxBufferedKeys,
+			long maxBufferTime) throws Exception {
+
+		StreamLocalGroupedReduce<Integer, Integer> operator = new StreamLocalGroupedReduce<>(
+				new SumReducer(), new ParityKeySelector(), IntSerializer.INSTANCE, maxBufferedKeys, maxBufferTime);
+
+		return new OneInputStreamOperatorTestHarness<>(operator, IntSerializer.INSTANCE);
+	}
+
+	private static class SumReducer implements ReduceFunction<Integer> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Integer reduce(Integer value1, Integer value2) throws Exception {
+			return value1 + value2;
+		}
+	}
+
+	private static class ParityKeySelector implements KeySelector<Integer, Integer> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Integer getKey(Integer value) throws Exception {
+			return value % 2;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators.async;
+
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.streaming.api.datastream.AsyncDataStream;
+import org.apache.flink.streaming.api.functions.async.AsyncBatchFunction;
+import org.apache.flink.streaming.api.functions.async.collector.AsyncCollector;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.OneInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.TestHarnessUtil;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link AsyncBatchWaitOperator}. These test that the batches are triggered by their
+ * size, by their delay, by watermarks, by a full queue and when closing the operator.
+ */
+public class AsyncBatchWaitOperatorTest extends TestLogger {
+
+	private static final long TIMEOUT = 1000L;
+
+	/** Sizes of the batches the {@link DoublingBatchFunction} has been called with */
+	private static final List<Integer> BATCH_SIZES = Collections.synchronizedList(new ArrayList<Integer>());
+
+	@Before
+	public void clearBatchSizes() {
+		BATCH_SIZES.clear();
+	}
+
+	@Test
+	public void testBatchSizeTriggersBatch() throws Exception {
+		OneInputStreamOperatorTestHarness<Integer, Integer> testHarness =
+				createTestHarness(AsyncDataStream.OutputMode.ORDERED, 10, 3, 100L);
+
+		testHarness.open();
+
+		synchronized (testHarness.getCheckpointLock()) {
+			for (int i = 1; i <= 7; ++i) {
+				testHarness.processElement(new StreamRecord<>(i, i));
+			}
+
+			assertEquals(Arrays.asList(3, 3), BATCH_SIZES);
+
+			// closing flushes the last incomplete batch
+			testHarness.close();
+		}
+
+		assertEquals(Arrays.asList(3, 3, 1), BATCH_SIZES);
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		for (int i = 1; i <= 7; ++i) {
+			expectedOutput.add(new StreamRecord<>(2 * i, i));
+		}
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+	}
+
+	@Test
+	public void testBatchDelayTriggersBatch() throws Exception {
+		OneInputStreamOperatorTestHarness<Integer, Integer> testHarness =
+				createTestHarness(AsyncDataStream.OutputMode.UNORDERED, 10, 10, 5L);
+
+		testHarness.open();
+		testHarness.setProcessingTime(0L);
+
+		synchronized (testHarness.getCheckpointLock()) {
+			testHarness.processElement(new StreamRecord<>(1, 1L));
+			testHarness.processElement(new StreamRecord<>(2, 2L));
+		}
+
+		testHarness.setProcessingTime(4L);
+		assertEquals(Collections.<Integer>emptyList(), BATCH_SIZES);
+
+		testHarness.setProcessingTime(5L);
+		assertEquals(Collections.singletonList(2), BATCH_SIZES);
+
+		synchronized (testHarness.getCheckpointLock()) {
+			testHarness.processElement(new StreamRecord<>(3, 3L));
+			testHarness.close();
+		}
+
+		// the timer of the last batch must not trigger an empty batch
+		assertEquals(Arrays.asList(2, 1), BATCH_SIZES);
+	}
+
+	@Test
+	public void testWatermarkTriggersBatch() throws Exception {
+		OneInputStreamOperatorTestHarness<Integer, Integer> testHarness =
+				createTestHarness(AsyncDataStream.OutputMode.UNORDERED, 10, 10, 100L);
+
+		testHarness.open();
+
+		synchronized (testHarness.getCheckpointLock()) {
+			testHarness.processElement(new StreamRecord<>(1, 1L));
+			testHarness.processElement(new StreamRecord<>(2, 2L));
+			testHarness.processWatermark(new Watermark(2L));
+
+			assertEquals(Collections.singletonList(2), BATCH_SIZES);
+
+			testHarness.processElement(new StreamRecord<>(3, 3L));
+			testHarness.close();
+		}
+
+		Object[] output = testHarness.getOutput().toArray();
+
+		assertEquals(4, output.length);
+		assertEquals(new Watermark(2L), output[2]);
+		assertEquals(new StreamRecord<>(6, 3L), output[3]);
+	}
+
+	@Test
+	public void testFullQueueTriggersBatch() throws Exception {
+		OneInputStreamOperatorTestHarness<Integer, Integer> testHarness =
+				createTestHarness(AsyncDataStream.OutputMode.ORDERED, 2, 10, 100L);
+
+		testHarness.open();
+
+		synchronized (testHarness.getCheckpointLock()) {
+			testHarness.processElement(new StreamRecord<>(1, 1L));
+			testHarness.processElement(new StreamRecord<>(2, 2L));
+
+			// the queue is full, so the operator has to trigger the batch before it can wait
+			testHarness.processElement(new StreamRecord<>(3, 3L));
+
+			assertEquals(Collections.singletonList(2), BATCH_SIZES);
+
+			testHarness.close();
+		}
+
+		assertEquals(Arrays.asList(2, 1), BATCH_SIZES);
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new StreamRecord<>(2, 1L));
+		expectedOutput.add(new StreamRecord<>(4, 2L));
+		expectedOutput.add(new StreamRecord<>(6, 3L));
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+	}
+
+	private static OneInputStreamOperatorTestHarness<Integer, Integer> createTestHarness(
+			AsyncDataStream.OutputMode mode,
+			int capacity,
+			int maxBatchSize,
+			long maxBatchDelay) throws Exception {
+
+		AsyncBatchWaitOperator<Integer, Integer> operator = new AsyncBatchWaitOperator<>(
+			new DoublingBatchFunction(),
+			TIMEOUT,
+			capacity,
+			mode,
+			maxBatchSize,
+			maxBatchDelay);
+
+		return new OneInputStreamOperatorTestHarness<>(operator, IntSerializer.INSTANCE);
+	}
+
+	/**
+	 * Records the size of every batch and completes all inputs of the batch with their doubled value.
+	 */
+	private static class DoublingBatchFunction implements AsyncBatchFunction<Integer, Integer> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void asyncInvokeBatch(List<Integer> inputs, List<AsyncCollector<Integer>> collectors) {
+			BATCH_SIZES.add(inputs.size());
+
+			for (int i = 0; i < inputs.size(); ++i) {
+				collectors.get(i).collect(Collections.singleton(2 * inputs.get(i)));
+			}
+		}
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators.co;
+
+import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.streaming.api.functions.co.ProcessJoinFunction;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.util.KeyedTwoInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.TestHarnessUtil;
+import org.apache.flink.util.Collector;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Test;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the {@link IntervalJoinOperator}.
+ */
+public class IntervalJoinOperatorTest extends TestLogger {
+
+	@Test
+	public void testJoinWithinInclusiveBounds() throws Exception {
+		KeyedTwoInputStreamOperatorTestHarness<String, String, String, String> testHarness =
+				createTestHarness(-1L, 2L, true, true);
+
+		testHarness.setup();
+		testHarness.open();
+
+		testHarness.processElement1(new StreamRecord<>("a10", 10L));
+		testHarness.processElement2(new StreamRecord<>("a8", 8L));
+		testHarness.processElement2(new StreamRecord<>("a9", 9L));
+		testHarness.processElement2(new StreamRecord<>("a12", 12L));
+		testHarness.processElement2(new StreamRecord<>("a13", 13L));
+
+		// the element of the second input arrives first
+		testHarness.processElement2(new StreamRecord<>("b5", 5L));
+		testHarness.processElement1(new StreamRecord<>("b4", 4L));
+
+		// elements with other keys are not joined
+		testHarness.processElement2(new StreamRecord<>("c10", 10L));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new StreamRecord<>("a10:a9", 10L));
+		expectedOutput.add(new StreamRecord<>("a10:a12", 12L));
+		expectedOutput.add(new StreamRecord<>("b4:b5", 5L));
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	@Test
+	public void testJoinWithinExclusiveBounds() throws Exception {
+		KeyedTwoInputStreamOperatorTestHarness<String, String, String, String> testHarness =
+				createTestHarness(0L, 2L, false, false);
+
+		testHarness.setup();
+		testHarness.open();
+
+		testHarness.processElement1(new StreamRecord<>("a10", 10L));
+		testHarness.processElement2(new StreamRecord<>("a10", 10L));
+		testHarness.processElement2(new StreamRecord<>("a11", 11L));
+		testHarness.processElement2(new StreamRecord<>("a12", 12L));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new StreamRecord<>("a10:a11", 11L));
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	/**
+	 * Checks that late elements are dropped and that the buffered elements are removed once the
+	 * watermark guarantees that they cannot be joined anymore.
+	 */
+	@Test
+	public void testLateElementsAndStateCleanup() throws Exception {
+		KeyedTwoInputStreamOperatorTestHarness<String, String, String, String> testHarness =
+				createTestHarness(-1L, 2L, true, true);
+
+		testHarness.setup();
+		testHarness.open();
+
+		testHarness.processElement1(new StreamRecord<>("a10", 10L));
+
+		testHarness.processWatermark1(new Watermark(10L));
+		testHarness.processWatermark2(new Watermark(10L));
+
+		// the left element is still buffered until the watermark passes 12
+		testHarness.processElement2(new StreamRecord<>("a12", 12L));
+
+		// late elements are dropped
+		testHarness.processElement1(new StreamRecord<>("a9", 9L));
+		testHarness.processElement2(new StreamRecord<>("a10", 10L));
+
+		assertEquals(2, testHarness.numKeyedStateEntries());
+
+		testHarness.processWatermark1(new Watermark(13L));
+		testHarness.processWatermark2(new Watermark(13L));
+
+		assertEquals(0, testHarness.numKeyedStateEntries());
+		assertEquals(0, testHarness.numEventTimeTimers());
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+		expectedOutput.add(new Watermark(10L));
+		expectedOutput.add(new StreamRecord<>("a10:a12", 12L));
+		expectedOutput.add(new Watermark(13L));
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyIntervalIsRejected() throws Exception {
+		new IntervalJoinOperator<>(
+				0L,
+				0L,
+				false,
+				true,
+				StringSerializer.INSTANCE,
+				StringSerializer.INSTANCE,
+				new ConcatenatingJoinFunction());
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static KeyedTwoInputStreamOperatorTestHarness<String, String, String, String> createTestHarness(
+			long lowerBound,
+			long upperBound,
+			boolean lowerBoundInclusive,
+			boolean upperBoundInclusive) throws Exception {
+
+		IntervalJoinOperator<String, String, String, String> operator = new IntervalJoinOperator<>(
+				lowerBound,
+				upperBound,
+				lowerBoundInclusive,
+				upperBoundInclusive,
+				StringSerializer.INSTANCE,
+				StringSerializer.INSTANCE,
+				new ConcatenatingJoinFunction());
+
+		return new KeyedTwoInputStreamOperatorTestHarness<>(
+				operator,
+				new FirstCharKeySelector(),
+				new FirstCharKeySelector(),
+				BasicTypeInfo.STRING_TYPE_INFO);
+	}
+
+	private static class FirstCharKeySelector implements KeySelector<String, String> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public String getKey(String value) throws Exception {
+			return value.substring(0, 1);
+		}
+	}
+
+	private static class ConcatenatingJoinFunction extends ProcessJoinFunction<String, String, String> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void processElement(String left, String right, Context ctx, Collector<String> out) throws Exception {
+			assertEquals(Math.max(ctx.getLeftTimestamp(), ctx.getRightTimestamp()), ctx.getTimestamp());
+			out.collect(left + ":" + right);
+		}
+	}
+}
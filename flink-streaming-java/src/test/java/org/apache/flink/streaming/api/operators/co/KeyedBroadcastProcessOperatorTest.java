@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.api.operators.co;
+
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.ReadOnlyBroadcastState;
+import org.apache.flink.api.common.typeinfo.BasicTypeInfo;
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.api.common.typeutils.base.StringSerializer;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.streaming.api.functions.co.KeyedBroadcastProcessFunction;
+import org.apache.flink.streaming.api.watermark.Watermark;
+import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.flink.streaming.runtime.tasks.OperatorStateHandles;
+import org.apache.flink.streaming.util.KeyedTwoInputStreamOperatorTestHarness;
+import org.apache.flink.streaming.util.TestHarnessUtil;
+import org.apache.flink.streaming.util.TwoInputStreamOperatorTestHarness;
+import org.apache.flink.util.Collector;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Test;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Tests {@link KeyedBroadcastProcessOperator}.
+ */
+public class KeyedBroadcastProcessOperatorTest extends TestLogger {
+
+	private static final MapStateDescriptor<String, Integer> THRESHOLD_DESCRIPTOR =
+			new MapStateDescriptor<>("thresholds", StringSerializer.INSTANCE, IntSerializer.INSTANCE);
+
+	@Test
+	public void testBroadcastStateIsReadByKeyedSide() throws Exception {
+
+		TwoInputStreamOperatorTestHarness<Integer, Integer, String> testHarness = createTestHarness();
+
+		testHarness.setup();
+		testHarness.open();
+
+		testHarness.processElement1(new StreamRecord<>(5, 12L));
+		testHarness.processElement2(new StreamRecord<>(4, 13L));
+		testHarness.processElement1(new StreamRecord<>(5, 14L));
+		testHarness.processElement1(new StreamRecord<>(3, 15L));
+
+		testHarness.processWatermark1(new Watermark(20L));
+		testHarness.processWatermark2(new Watermark(20L));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+
+		expectedOutput.add(new StreamRecord<>("5 below null", 12L));
+		expectedOutput.add(new StreamRecord<>("THRESHOLD:4", 13L));
+		expectedOutput.add(new StreamRecord<>("5 above 4", 14L));
+		expectedOutput.add(new StreamRecord<>("3 below 4", 15L));
+		expectedOutput.add(new StreamRecord<>("TIMER:4", 15L));
+		expectedOutput.add(new Watermark(20L));
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	@Test
+	public void testSnapshotAndRestore() throws Exception {
+
+		TwoInputStreamOperatorTestHarness<Integer, Integer, String> testHarness = createTestHarness();
+
+		testHarness.setup();
+		testHarness.open();
+
+		testHarness.processElement2(new StreamRecord<>(4, 13L));
+
+		OperatorStateHandles snapshot = testHarness.snapshot(0, 0);
+
+		testHarness.close();
+
+		testHarness = createTestHarness();
+
+		testHarness.setup();
+		testHarness.initializeState(snapshot);
+		testHarness.open();
+
+		testHarness.processElement1(new StreamRecord<>(5, 14L));
+
+		ConcurrentLinkedQueue<Object> expectedOutput = new ConcurrentLinkedQueue<>();
+
+		expectedOutput.add(new StreamRecord<>("5 above 4", 14L));
+
+		TestHarnessUtil.assertOutputEquals("Output was not correct.", expectedOutput, testHarness.getOutput());
+
+		testHarness.close();
+	}
+
+	private static TwoInputStreamOperatorTestHarness<Integer, Integer, String> createTestHarness() throws Exception {
+		KeyedBroadcastProcessOperator<String, Integer, Integer, String> operator =
+				new KeyedBroadcastProcessOperator<>(new ThresholdFunction());
+
+		return new KeyedTwoInputStreamOperatorTestHarness<>(
+				operator,
+				new IntToStringKeySelector(),
+				null,
+				BasicTypeInfo.STRING_TYPE_INFO);
+	}
+
+	private static class IntToStringKeySelector implements KeySelector<Integer, String> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public String getKey(Integer value) throws Exception {
+			return "" + value;
+		}
+	}
+
+	/**
+	 * Stores the broadcast elements as the current threshold and compares the keyed elements
+	 * against it. Elements below the threshold register a timer that emits the threshold again.
+	 */
+	private static class ThresholdFunction extends KeyedBroadcastProcessFunction<Integer, Integer, String> {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void processElement(Integer value, ReadOnlyContext ctx, Collector<String> out) throws Exception {
+			Integer threshold = ctx.getBroadcastState(THRESHOLD_DESCRIPTOR).get("threshold");
+
+			if (threshold != null && value >= threshold) {
+				out.collect(value + " above " + threshold);
+			} else {
+				out.collect(value + " below " + threshold);
+				if (threshold != null) {
+					ctx.timerService().registerEventTimeTimer(ctx.timestamp());
+				}
+			}
+		}
+
+		@Override
+		public void processBroadcastElement(Integer value, Context ctx, Collector<String> out) throws Exception {
+			ctx.getBroadcastState(THRESHOLD_DESCRIPTOR).put("threshold", value);
+			out.collect("THRESHOLD:" + value);
+		}
+
+		@Override
+		public void onTimer(long timestamp, OnTimerContext ctx, Collector<String> out) throws Exception {
+			ReadOnlyBroadcastState<String, Integer> state = ctx.getBroadcastState(THRESHOLD_DESCRIPTOR);
+			out.collect("TIMER:" + state.get("threshold"));
+		}
+	}
+}
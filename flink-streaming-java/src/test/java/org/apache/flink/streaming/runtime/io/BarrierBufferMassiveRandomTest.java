@@ -171,5 +171,8 @@ public class BarrierBufferMassiveRandomTest {
 		public int getPageSize() {
 			return PAGE_SIZE;
 		}
+
+		@Override
+		public void enableCheckpointBarrierOvertaking() {}
 	}
 }
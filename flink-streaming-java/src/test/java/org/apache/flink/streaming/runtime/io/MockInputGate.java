@@ -93,4 +93,8 @@ public class MockInputGate implements InputGate {
 	public void registerListener(InputGateListener listener) {
 	}
 
+	@Override
+	public void enableCheckpointBarrierOvertaking() {
+	}
+
 }
@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.io;
+
+import org.apache.flink.api.common.typeutils.base.IntSerializer;
+import org.apache.flink.core.memory.MemorySegmentFactory;
+import org.apache.flink.runtime.checkpoint.CheckpointMetaData;
+import org.apache.flink.runtime.checkpoint.CheckpointMetrics;
+import org.apache.flink.runtime.checkpoint.CheckpointOptions;
+import org.apache.flink.runtime.checkpoint.decline.CheckpointDeclineException;
+import org.apache.flink.runtime.checkpoint.decline.CheckpointDeclineOnCancellationBarrierException;
+import org.apache.flink.runtime.checkpoint.decline.InFlightRecordLimitExceededException;
+import org.apache.flink.runtime.concurrent.Future;
+import org.apache.flink.runtime.io.disk.iomanager.IOManager;
+import org.apache.flink.runtime.io.disk.iomanager.IOManagerAsync;
+import org.apache.flink.runtime.io.network.api.CancelCheckpointMarker;
+import org.apache.flink.runtime.io.network.api.CheckpointBarrier;
+import org.apache.flink.runtime.io.network.buffer.Buffer;
+import org.apache.flink.runtime.io.network.buffer.FreeingBufferRecycler;
+import org.apache.flink.runtime.io.network.partition.consumer.BufferOrEvent;
+import org.apache.flink.runtime.jobgraph.tasks.StatefulTask;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for the behavior of the {@link UnalignedBarrierHandler}.
+ */
+public class UnalignedBarrierHandlerTest {
+
+	private static final int PAGE_SIZE = 512;
+
+	private static IOManager IO_MANAGER;
+
+	@BeforeClass
+	public static void setup() {
+		IO_MANAGER = new IOManagerAsync();
+	}
+
+	@AfterClass
+	public static void shutdownIOManager() {
+		IO_MANAGER.shutdown();
+	}
+
+	/**
+	 * Tests that the checkpoint is triggered on the first barrier, that no channel is blocked,
+	 * and that exactly the buffers before the barriers of the other channels are in flight.
+	 */
+	@Test
+	public void testTriggerOnFirstBarrierWithoutBlocking() throws Exception {
+		BufferOrEvent[] sequence = {
+				createBuffer(0), createBuffer(1),
+				createBarrier(1, 0, 0),
+				createBuffer(0), createBuffer(1), createBuffer(1),
+				createBarrier(1, 1, 0),
+				createBuffer(1), createBuffer(0)
+		};
+
+		MockInputGate gate = new MockInputGate(PAGE_SIZE, 2, Arrays.asList(sequence));
+		InFlightRecordLog log = new InFlightRecordLog();
+		UnalignedBarrierHandler handler = new UnalignedBarrierHandler(gate, IO_MANAGER, log);
+
+		StatefulTask task = mock(StatefulTask.class);
+		handler.registerCheckpointEventHandler(task);
+
+		assertNextBuffer(sequence[0], false, handler);
+		assertNextBuffer(sequence[1], false, handler);
+
+		// the barrier of channel 0 triggers the checkpoint, but does not block channel 0
+		assertNextBuffer(sequence[3], false, handler);
+		verify(task, times(1)).triggerCheckpointOnBarrier(
+				any(CheckpointMetaData.class), any(CheckpointOptions.class), any(CheckpointMetrics.class));
+
+		Future<byte[]> result = log.getCheckpointResult(1L);
+		assertNotNull(result);
+
+		assertNextBuffer(sequence[4], true, handler);
+		log.log(0, 42, IntSerializer.INSTANCE);
+		assertNextBuffer(sequence[5], true, handler);
+		assertFalse(result.isDone());
+
+		// the barrier of channel 1 completes the checkpoint
+		assertNextBuffer(sequence[7], false, handler);
+		assertTrue(result.isDone());
+		assertEquals(8, result.get().length);
+
+		assertNextBuffer(sequence[8], false, handler);
+		assertNull(handler.getNextNonBlocked());
+
+		verify(task, never()).abortCheckpointOnBarrier(anyLong(), any(Throwable.class));
+	}
+
+	/**
+	 * Tests that the buffers overtaken by a barrier are in flight.
+	 */
+	@Test
+	public void testOvertakenBuffersAreInFlight() throws Exception {
+		BufferOrEvent[] sequence = {
+				createBarrier(1, 0, 2),
+				createBuffer(0), createBuffer(0), createBuffer(0)
+		};
+
+		MockInputGate gate = new MockInputGate(PAGE_SIZE, 1, Arrays.asList(sequence));
+		InFlightRecordLog log = new InFlightRecordLog();
+		UnalignedBarrierHandler handler = new UnalignedBarrierHandler(gate, IO_MANAGER, log);
+		handler.registerCheckpointEventHandler(mock(StatefulTask.class));
+
+		assertNextBuffer(sequence[1], true, handler);
+
+		Future<byte[]> result = log.getCheckpointResult(1L);
+		assertNotNull(result);
+
+		assertNextBuffer(sequence[2], true, handler);
+		assertFalse(result.isDone());
+
+		assertNextBuffer(sequence[3], false, handler);
+		assertTrue(result.isDone());
+		assertEquals(0, result.get().length);
+	}
+
+	/**
+	 * Tests that a cancellation barrier aborts the logging of the in-flight records.
+	 */
+	@Test
+	public void testCancellationBarrierAbortsCheckpoint() throws Exception {
+		BufferOrEvent[] sequence = {
+				createBarrier(1, 0, 0),
+				createBuffer(1),
+				createCancellationBarrier(1, 1),
+				createBuffer(1)
+		};
+
+		MockInputGate gate = new MockInputGate(PAGE_SIZE, 2, Arrays.asList(sequence));
+		InFlightRecordLog log = new InFlightRecordLog();
+		UnalignedBarrierHandler handler = new UnalignedBarrierHandler(gate, IO_MANAGER, log);
+
+		StatefulTask task = mock(StatefulTask.class);
+		handler.registerCheckpointEventHandler(task);
+
+		assertNextBuffer(sequence[1], true, handler);
+		Future<byte[]> result = log.getCheckpointResult(1L);
+
+		assertNextBuffer(sequence[3], false, handler);
+		verify(task).abortCheckpointOnBarrier(eq(1L), any(CheckpointDeclineOnCancellationBarrierException.class));
+		assertFailedWith(CheckpointDeclineOnCancellationBarrierException.class, result);
+		assertFalse(log.isLogging());
+	}
+
+	/**
+	 * Tests that the checkpoint is aborted once the logged in-flight records exceed the limit.
+	 */
+	@Test
+	public void testInFlightRecordLimitAbortsCheckpoint() throws Exception {
+		BufferOrEvent[] sequence = {
+				createBarrier(1, 0, 0),
+				createBuffer(1), createBuffer(1), createBuffer(1),
+				createBarrier(1, 1, 0)
+		};
+
+		MockInputGate gate = new MockInputGate(PAGE_SIZE, 2, Arrays.asList(sequence));
+		InFlightRecordLog log = new InFlightRecordLog();
+		UnalignedBarrierHandler handler = new UnalignedBarrierHandler(gate, IO_MANAGER, log, 8L);
+
+		StatefulTask task = mock(StatefulTask.class);
+		handler.registerCheckpointEventHandler(task);
+
+		assertNextBuffer(sequence[1], true, handler);
+		Future<byte[]> result = log.getCheckpointResult(1L);
+
+		// each entry takes 8 bytes, the first one is still within the limit
+		log.log(0, 42, IntSerializer.INSTANCE);
+		assertNextBuffer(sequence[2], true, handler);
+		log.log(0, 43, IntSerializer.INSTANCE);
+
+		assertNextBuffer(sequence[3], false, handler);
+		verify(task).abortCheckpointOnBarrier(eq(1L), any(InFlightRecordLimitExceededException.class));
+		assertFailedWith(InFlightRecordLimitExceededException.class, result);
+		assertFalse(log.isLogging());
+
+		// the trailing barrier of the aborted checkpoint is ignored
+		assertNull(handler.getNextNonBlocked());
+		verify(task, times(1)).abortCheckpointOnBarrier(anyLong(), any(Throwable.class));
+	}
+
+	/**
+	 * Tests that savepoint barriers are aligned: the channels that delivered the barrier are
+	 * blocked, nothing is in flight, and the savepoint is triggered once all barriers arrived.
+	 */
+	@Test
+	public void testSavepointIsAligned() throws Exception {
+		BufferOrEvent[] sequence = {
+				createBuffer(0),
+				createSavepointBarrier(1, 0),
+				createBuffer(0), createBuffer(1),
+				createSavepointBarrier(1, 1),
+				createBuffer(1)
+		};
+
+		MockInputGate gate = new MockInputGate(PAGE_SIZE, 2, Arrays.asList(sequence));
+		InFlightRecordLog log = new InFlightRecordLog();
+		UnalignedBarrierHandler handler = new UnalignedBarrierHandler(gate, IO_MANAGER, log);
+
+		StatefulTask task = mock(StatefulTask.class);
+		handler.registerCheckpointEventHandler(task);
+
+		assertNextBuffer(sequence[0], false, handler);
+
+		// channel 0 is blocked, its buffer is held back until the savepoint is triggered
+		assertNextBuffer(sequence[3], false, handler);
+		verify(task, never()).triggerCheckpointOnBarrier(
+				any(CheckpointMetaData.class), any(CheckpointOptions.class), any(CheckpointMetrics.class));
+		assertFalse(log.isLogging());
+
+		// the buffered data of channel 0 comes right after the last barrier
+		BufferOrEvent next = handler.getNextNonBlocked();
+		assertFalse(handler.isLastBufferInFlight());
+		assertTrue(next.isBuffer());
+		assertEquals(0, next.getChannelIndex());
+		verify(task, times(1)).triggerCheckpointOnBarrier(
+				any(CheckpointMetaData.class), any(CheckpointOptions.class), any(CheckpointMetrics.class));
+		assertNull(log.getCheckpointResult(1L));
+
+		assertNextBuffer(sequence[5], false, handler);
+		assertNull(handler.getNextNonBlocked());
+		assertTrue(handler.isEmpty());
+
+		verify(task, never()).abortCheckpointOnBarrier(anyLong(), any(Throwable.class));
+		handler.cleanup();
+	}
+
+	// ------------------------------------------------------------------------
+	//  Utils
+	// ------------------------------------------------------------------------
+
+	private static void assertNextBuffer(
+			BufferOrEvent expected,
+			boolean expectedInFlight,
+			UnalignedBarrierHandler handler) throws Exception {
+
+		assertEquals(expected, handler.getNextNonBlocked());
+		assertEquals(expectedInFlight, handler.isLastBufferInFlight());
+	}
+
+	private static void assertFailedWith(Class<? extends CheckpointDeclineException> expected, Future<byte[]> result)
+			throws InterruptedException {
+
+		try {
+			result.get();
+			fail("The result of the aborted checkpoint should not be available");
+		} catch (ExecutionException e) {
+			assertTrue(expected.isInstance(e.getCause()));
+		}
+	}
+
+	private static BufferOrEvent createBarrier(long id, int channel, int numOvertakenBuffers) {
+		return new BufferOrEvent(new CheckpointBarrier(
+				id, System.currentTimeMillis(), CheckpointOptions.forFullCheckpoint(), numOvertakenBuffers), channel);
+	}
+
+	private static BufferOrEvent createSavepointBarrier(long id, int channel) {
+		return new BufferOrEvent(new CheckpointBarrier(
+				id, System.currentTimeMillis(), CheckpointOptions.forSavepoint("file:///savepoint")), channel);
+	}
+
+	private static BufferOrEvent createCancellationBarrier(long id, int channel) {
+		return new BufferOrEvent(new CancelCheckpointMarker(id), channel);
+	}
+
+	private static BufferOrEvent createBuffer(int channel) {
+		return new BufferOrEvent(
+				new Buffer(MemorySegmentFactory.wrap(new byte[]{1, 2}), FreeingBufferRecycler.INSTANCE), channel);
+	}
+}
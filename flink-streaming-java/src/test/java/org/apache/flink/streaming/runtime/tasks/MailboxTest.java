@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.streaming.runtime.tasks;
+
+import org.apache.flink.core.testutils.CheckedThread;
+import org.apache.flink.core.testutils.OneShotLatch;
+import org.apache.flink.streaming.runtime.operators.TestProcessingTimeServiceTest.ReferenceSettingExceptionHandler;
+import org.apache.flink.util.TestLogger;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link Mailbox}.
+ */
+public class MailboxTest extends TestLogger {
+
+	@Test
+	public void testMailIsRunByCallerIfNotProcessing() throws Exception {
+		final Object lock = new Object();
+		final Mailbox mailbox = new Mailbox(lock);
+		final AtomicBoolean hasRun = new AtomicBoolean();
+
+		mailbox.put(new Mailbox.Mail() {
+			@Override
+			public void run() {
+				assertTrue(Thread.holdsLock(lock));
+				hasRun.set(true);
+			}
+		});
+
+		assertTrue(hasRun.get());
+		assertFalse(mailbox.hasMail());
+	}
+
+	@Test
+	public void testMailIsDeferredWhileProcessing() throws Exception {
+		final Object lock = new Object();
+		final Mailbox mailbox = new Mailbox(lock);
+		final AtomicBoolean hasRun = new AtomicBoolean();
+
+		synchronized (lock) {
+			mailbox.startProcessing();
+
+			CheckedThread sender = new CheckedThread() {
+				@Override
+				public void go() throws Exception {
+					mailbox.put(new Mailbox.Mail() {
+						@Override
+						public void run() {
+							hasRun.set(true);
+						}
+					});
+				}
+			};
+			sender.start();
+
+			// the sender must not block on the lock that is held by the processing thread
+			sender.sync();
+
+			assertFalse(hasRun.get());
+			assertTrue(mailbox.hasMail());
+
+			mailbox.stopProcessing();
+			mailbox.processMails();
+
+			assertTrue(hasRun.get());
+			assertFalse(mailbox.hasMail());
+		}
+	}
+
+	/**
+	 * Puts mails while the processing starts and stops concurrently, and checks that every mail is
+	 * run exactly once.
+	 */
+	@Test
+	public void testNoMailIsLostWhenProcessingStops() throws Exception {
+		final int numMails = 100000;
+
+		final Object lock = new Object();
+		final Mailbox mailbox = new Mailbox(lock);
+		final AtomicInteger numRuns = new AtomicInteger();
+
+		final Mailbox.Mail mail = new Mailbox.Mail() {
+			@Override
+			public void run() {
+				assertTrue(Thread.holdsLock(lock));
+				numRuns.incrementAndGet();
+			}
+		};
+
+		CheckedThread sender = new CheckedThread() {
+			@Override
+			public void go() throws Exception {
+				for (int i = 0; i < numMails; i++) {
+					mailbox.put(mail);
+				}
+			}
+		};
+		sender.start();
+
+		while (sender.isAlive()) {
+			synchronized (lock) {
+				mailbox.startProcessing();
+				try {
+					if (mailbox.hasMail()) {
+						mailbox.processMails();
+					}
+				} finally {
+					mailbox.stopProcessing();
+				}
+				mailbox.processMails();
+			}
+		}
+
+		sender.sync();
+
+		assertEquals(numMails, numRuns.get());
+		assertFalse(mailbox.hasMail());
+	}
+
+	@Test
+	public void testMailsAreRunWhileWaitingOnCheckpointLock() throws Exception {
+		final Object lock = new Object();
+		final Mailbox mailbox = new Mailbox(lock);
+		final AtomicBoolean hasRun = new AtomicBoolean();
+
+		synchronized (lock) {
+			mailbox.startProcessing();
+
+			CheckedThread sender = new CheckedThread() {
+				@Override
+				public void go() throws Exception {
+					mailbox.put(new Mailbox.Mail() {
+						@Override
+						public void run() {
+							hasRun.set(true);
+							lock.notifyAll();
+						}
+					});
+				}
+			};
+			sender.start();
+
+			while (!hasRun.get()) {
+				mailbox.waitOnCheckpointLock();
+			}
+
+			assertTrue(mailbox.isProcessing());
+
+			mailbox.stopProcessing();
+			sender.sync();
+		}
+	}
+
+	@Test
+	public void testTimersAreRunBetweenRecordsWhileProcessing() throws Exception {
+		final Object lock = new Object();
+		final Mailbox mailbox = new Mailbox(lock);
+		final AtomicReference<Throwable> errorRef = new AtomicReference<>();
+		final OneShotLatch timerFired = new OneShotLatch();
+		final AtomicBoolean isProcessingRecord = new AtomicBoolean();
+
+		final SystemProcessingTimeService timer = new SystemProcessingTimeService(
+				new ReferenceSettingExceptionHandler(errorRef), mailbox, null);
+
+		try {
+			synchronized (lock) {
+				mailbox.startProcessing();
+
+				timer.registerTimer(System.currentTimeMillis(), new ProcessingTimeCallback() {
+					@Override
+					public void onProcessingTime(long timestamp) {
+						assertTrue(Thread.holdsLock(lock));
+						assertFalse(isProcessingRecord.get());
+						timerFired.trigger();
+					}
+				});
+
+				// "process records" until the timer fired
+				while (!timerFired.isTriggered()) {
+					isProcessingRecord.set(true);
+					Thread.sleep(1);
+					isProcessingRecord.set(false);
+
+					if (mailbox.hasMail()) {
+						mailbox.processMails();
+					}
+				}
+
+				mailbox.stopProcessing();
+				mailbox.processMails();
+			}
+
+			// check that no asynchronous error was reported
+			if (errorRef.get() != null) {
+				throw new Exception(errorRef.get());
+			}
+		}
+		finally {
+			timer.shutdownService();
+		}
+	}
+}
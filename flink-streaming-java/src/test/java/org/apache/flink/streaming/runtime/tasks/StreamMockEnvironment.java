@@ -53,6 +53,8 @@ import org.apache.flink.runtime.plugable.DeserializationDelegate;
 import org.apache.flink.runtime.plugable.NonReusingDeserializationDelegate;
 import org.apache.flink.runtime.query.KvStateRegistry;
 import org.apache.flink.runtime.query.TaskKvStateRegistry;
+import org.apache.flink.runtime.state.StateTransferPool;
+import org.apache.flink.runtime.state.TaskLocalStateCleaner;
 import org.apache.flink.runtime.taskmanager.TaskManagerRuntimeInfo;
 import org.apache.flink.runtime.util.TestingTaskManagerRuntimeInfo;
 
@@ -317,6 +319,16 @@ public class StreamMockEnvironment implements Environment {
 		return this.bcVarManager;
 	}
 
+	@Override
+	public StateTransferPool getStateTransferPool() {
+		return null;
+	}
+
+	@Override
+	public TaskLocalStateCleaner getTaskLocalStateCleaner() {
+		return null;
+	}
+
 	@Override
 	public AccumulatorRegistry getAccumulatorRegistry() {
 		return accumulatorRegistry;
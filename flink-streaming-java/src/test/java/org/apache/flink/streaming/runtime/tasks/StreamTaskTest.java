@@ -65,7 +65,9 @@ import org.apache.flink.runtime.state.KeyGroupsStateHandle;
 import org.apache.flink.runtime.state.OperatorStateBackend;
 import org.apache.flink.runtime.state.OperatorStateHandle;
 import org.apache.flink.runtime.state.StateBackendFactory;
+import org.apache.flink.runtime.state.StateTransferPool;
 import org.apache.flink.runtime.state.StreamStateHandle;
+import org.apache.flink.runtime.state.TaskLocalStateCleaner;
 import org.apache.flink.runtime.state.TaskStateHandles;
 import org.apache.flink.runtime.taskmanager.CheckpointResponder;
 import org.apache.flink.runtime.taskmanager.Task;
@@ -808,6 +810,8 @@ public class StreamTaskTest extends TestLogger {
 			mock(CheckpointResponder.class),
 			libCache,
 			mock(FileCache.class),
+			mock(StateTransferPool.class),
+			mock(TaskLocalStateCleaner.class),
 			new TestingTaskManagerRuntimeInfo(taskManagerConfig, new String[] {System.getProperty("java.io.tmpdir")}),
 			new UnregisteredTaskMetricsGroup(),
 			consumableNotifier,
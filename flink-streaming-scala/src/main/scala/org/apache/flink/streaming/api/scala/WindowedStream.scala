@@ -108,6 +108,20 @@ class WindowedStream[T, K, W <: Window](javaStream: JavaWStream[T, K, W]) {
     this
   }
 
+  /**
+   * Stores the contents of the sliding time windows in non-overlapping panes, so that each
+   * element is stored once instead of once per window.
+   *
+   * Panes can only be used with sliding time windows and not with an [[Evictor]], a folding
+   * window function or a purging trigger. The window state of an operator with panes is not
+   * compatible with the state of the same operator without panes.
+   */
+  @PublicEvolving
+  def enablePanes(): WindowedStream[T, K, W] = {
+    javaStream.enablePanes()
+    this
+  }
+
   // ------------------------------------------------------------------------
   //  Operations on the keyed windows
   // ------------------------------------------------------------------------